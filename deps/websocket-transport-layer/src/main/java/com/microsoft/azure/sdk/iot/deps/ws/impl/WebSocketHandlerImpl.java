@@ -7,10 +7,9 @@ package com.microsoft.azure.sdk.iot.deps.ws.impl;
 import com.microsoft.azure.sdk.iot.deps.ws.WebSocketHandler;
 import com.microsoft.azure.sdk.iot.deps.ws.WebSocketHeader;
 
-import java.io.*;
-
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import java.security.SecureRandom;
 
@@ -18,6 +17,11 @@ import java.util.*;
 
 public class WebSocketHandlerImpl implements WebSocketHandler
 {
+    // SecureRandom is costly to create and to call, so all handlers share one pool of masking keys
+    private static final SecureRandom MASKING_KEY_RANDOM = new SecureRandom();
+    private static final byte[] MASKING_KEY_POOL = new byte[1024];
+    private static int maskingKeyPoolPosition = MASKING_KEY_POOL.length;
+
     private WebSocketUpgrade _webSocketUpgrade = null;
 
     @Override
@@ -94,14 +98,18 @@ public class WebSocketHandlerImpl implements WebSocketHandler
             // Get data length
             final int DATA_LENGTH = srcBuffer.remaining();
 
-            // Auto growing buffer for the WS frame, initialized to minimum size
-            ByteArrayOutputStream webSocketFrame = new ByteArrayOutputStream(WebSocketHeader.MIN_HEADER_LENGTH_MASKED + DATA_LENGTH);
+            // Check the frame fits before writing anything to the destination buffer
+            dstBuffer.clear();
+            if (dstBuffer.capacity() < calculateHeaderSize(DATA_LENGTH) + DATA_LENGTH)
+            {
+                throw new OutOfMemoryError("insufficient output buffer size");
+            }
 
             // Create the first byte
             // We always send final WebSocket frame
             // We always send binary message (AMQP)
             byte firstByte = (byte) (WebSocketHeader.FINBIT_MASK | WebSocketHeader.OPCODE_BINARY);
-            webSocketFrame.write(firstByte);
+            dstBuffer.put(firstByte);
 
             // Create the second byte
             // RFC: "client MUST mask all frames that it sends to the server"
@@ -111,60 +119,46 @@ public class WebSocketHandlerImpl implements WebSocketHandler
             if (DATA_LENGTH <= WebSocketHeader.PAYLOAD_SHORT_MAX)
             {
                 secondByte = (byte) (secondByte | DATA_LENGTH);
-                webSocketFrame.write(secondByte);
+                dstBuffer.put(secondByte);
             }
             // RFC: If 126, the following 2 bytes interpreted as a 16-bit unsigned integer are the payload length
             else if (DATA_LENGTH <= WebSocketHeader.PAYLOAD_MEDIUM_MAX)
             {
                 // Create payload byte
                 secondByte = (byte) (secondByte | WebSocketHeader.PAYLOAD_EXTENDED_16);
-                webSocketFrame.write(secondByte);
+                dstBuffer.put(secondByte);
 
                 // Create extended length bytes
-                webSocketFrame.write((byte) (DATA_LENGTH >>> 8));
-                webSocketFrame.write((byte) (DATA_LENGTH));
+                dstBuffer.put((byte) (DATA_LENGTH >>> 8));
+                dstBuffer.put((byte) (DATA_LENGTH));
             }
             // RFC: If 127, the following 8 bytes interpreted as a 64-bit unsigned integer (the most significant bit MUST be 0) are the payload length.
             // No need for "else if" because if it is longer than what 8 byte length can hold... all bets are off anyway
             else
             {
                 secondByte = (byte) (secondByte | WebSocketHeader.PAYLOAD_EXTENDED_64);
-                webSocketFrame.write(secondByte);
-
-                webSocketFrame.write((byte) (DATA_LENGTH >>> 56));
-                webSocketFrame.write((byte) (DATA_LENGTH >>> 48));
-                webSocketFrame.write((byte) (DATA_LENGTH >>> 40));
-                webSocketFrame.write((byte) (DATA_LENGTH >>> 32));
-                webSocketFrame.write((byte) (DATA_LENGTH >>> 24));
-                webSocketFrame.write((byte) (DATA_LENGTH >>> 16));
-                webSocketFrame.write((byte) (DATA_LENGTH >>> 8));
-                webSocketFrame.write((byte) (DATA_LENGTH));
+                dstBuffer.put(secondByte);
+
+                // Widen before shifting, an int shift by 32 or more wraps around
+                final long LONG_DATA_LENGTH = DATA_LENGTH;
+                dstBuffer.put((byte) (LONG_DATA_LENGTH >>> 56));
+                dstBuffer.put((byte) (LONG_DATA_LENGTH >>> 48));
+                dstBuffer.put((byte) (LONG_DATA_LENGTH >>> 40));
+                dstBuffer.put((byte) (LONG_DATA_LENGTH >>> 32));
+                dstBuffer.put((byte) (LONG_DATA_LENGTH >>> 24));
+                dstBuffer.put((byte) (LONG_DATA_LENGTH >>> 16));
+                dstBuffer.put((byte) (LONG_DATA_LENGTH >>> 8));
+                dstBuffer.put((byte) (LONG_DATA_LENGTH));
             }
 
             // Write mask
-            webSocketFrame.write(MASKING_KEY[0]);
-            webSocketFrame.write(MASKING_KEY[1]);
-            webSocketFrame.write(MASKING_KEY[2]);
-            webSocketFrame.write(MASKING_KEY[3]);
+            dstBuffer.put(MASKING_KEY[0]);
+            dstBuffer.put(MASKING_KEY[1]);
+            dstBuffer.put(MASKING_KEY[2]);
+            dstBuffer.put(MASKING_KEY[3]);
 
-            // Write masked data
-            for (int i = 0; i < DATA_LENGTH; i++)
-            {
-                byte nextByte = srcBuffer.get();
-                nextByte ^= MASKING_KEY[i % 4];
-                webSocketFrame.write(nextByte);
-            }
-
-            // Copy frame to destination buffer
-            dstBuffer.clear();
-            if (dstBuffer.capacity() >= webSocketFrame.size())
-            {
-                dstBuffer.put(webSocketFrame.toByteArray());
-            }
-            else
-            {
-                throw new OutOfMemoryError("insufficient output buffer size");
-            }
+            // Write masked data straight into the destination buffer
+            maskPayload(srcBuffer, dstBuffer, MASKING_KEY);
         }
         else
         {
@@ -268,12 +262,82 @@ public class WebSocketHandlerImpl implements WebSocketHandler
     protected byte[] createRandomMaskingKey()
     {
         final byte[] maskingKey = new byte[4];
-        Random random = new SecureRandom();
-        random.nextBytes(maskingKey);
+
+        // Keys come from a shared pool refilled from SecureRandom, one refill serves many frames
+        synchronized (MASKING_KEY_POOL)
+        {
+            if (maskingKeyPoolPosition == MASKING_KEY_POOL.length)
+            {
+                MASKING_KEY_RANDOM.nextBytes(MASKING_KEY_POOL);
+                maskingKeyPoolPosition = 0;
+            }
+
+            System.arraycopy(MASKING_KEY_POOL, maskingKeyPoolPosition, maskingKey, 0, maskingKey.length);
+            maskingKeyPoolPosition += maskingKey.length;
+        }
 
         return maskingKey;
     }
 
+    /**
+     * XOR all remaining bytes of the source buffer with the masking key into the destination buffer.
+     * Heap buffers are masked on their backing arrays, other buffers eight bytes at a time while both
+     * share the same byte order, and whatever is left byte by byte.
+     *
+     * @param srcBuffer the payload to mask, fully consumed on return
+     * @param dstBuffer the buffer receiving the masked payload at its current position
+     * @param maskingKey the 4 byte masking key
+     */
+    static void maskPayload(ByteBuffer srcBuffer, ByteBuffer dstBuffer, byte[] maskingKey)
+    {
+        final int DATA_LENGTH = srcBuffer.remaining();
+        int i = 0;
+
+        if (srcBuffer.hasArray() && dstBuffer.hasArray())
+        {
+            final byte[] src = srcBuffer.array();
+            final byte[] dst = dstBuffer.array();
+            final int srcOffset = srcBuffer.arrayOffset() + srcBuffer.position();
+            final int dstOffset = dstBuffer.arrayOffset() + dstBuffer.position();
+            final byte key0 = maskingKey[0];
+            final byte key1 = maskingKey[1];
+            final byte key2 = maskingKey[2];
+            final byte key3 = maskingKey[3];
+
+            for (; i + 4 <= DATA_LENGTH; i += 4)
+            {
+                dst[dstOffset + i] = (byte) (src[srcOffset + i] ^ key0);
+                dst[dstOffset + i + 1] = (byte) (src[srcOffset + i + 1] ^ key1);
+                dst[dstOffset + i + 2] = (byte) (src[srcOffset + i + 2] ^ key2);
+                dst[dstOffset + i + 3] = (byte) (src[srcOffset + i + 3] ^ key3);
+            }
+
+            srcBuffer.position(srcBuffer.position() + i);
+            dstBuffer.position(dstBuffer.position() + i);
+        }
+        else if (srcBuffer.order() == dstBuffer.order())
+        {
+            int mask = ((maskingKey[0] & 0xFF) << 24) | ((maskingKey[1] & 0xFF) << 16) | ((maskingKey[2] & 0xFF) << 8) | (maskingKey[3] & 0xFF);
+            if (dstBuffer.order() == ByteOrder.LITTLE_ENDIAN)
+            {
+                mask = Integer.reverseBytes(mask);
+            }
+
+            // Both halves hold the same 4 bytes, so the long mask lines up with the key in either byte order
+            final long LONG_MASK = ((long) mask << 32) | (mask & 0xFFFFFFFFL);
+            for (; i + 8 <= DATA_LENGTH; i += 8)
+            {
+                dstBuffer.putLong(srcBuffer.getLong() ^ LONG_MASK);
+            }
+        }
+
+        // i is a multiple of 4 here, so the key index carries on from the loops above
+        for (; i < DATA_LENGTH; i++)
+        {
+            dstBuffer.put((byte) (srcBuffer.get() ^ maskingKey[i & 3]));
+        }
+    }
+
     public int calculateHeaderSize(int payloadSize)
     {
         int retVal = 0;
@@ -20,7 +20,9 @@ import java.util.Map;
 
 public class WebSocketImpl implements WebSocket, TransportLayer
 {
-    private int _maxFrameSize = (4 * 1024) + (16 * WebSocketHeader.MED_HEADER_LENGTH_MASKED);
+    public static final int DEFAULT_MAX_FRAME_SIZE = (4 * 1024) + (16 * WebSocketHeader.MED_HEADER_LENGTH_MASKED);
+
+    private final int _maxFrameSize;
     private boolean _tail_closed = false;
     private final ByteBuffer _inputBuffer;
     private boolean _head_closed = false;
@@ -51,6 +53,24 @@ public class WebSocketImpl implements WebSocket, TransportLayer
 
     public WebSocketImpl()
     {
+        this(DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    /**
+     * Create a WebSocket layer whose buffers hold frames of up to the given size, header included.
+     * Larger frames let AMQP transfers go out in fewer WebSocket frames.
+     *
+     * @param maxFrameSize the size in bytes of the input, output and ping buffers
+     * @throws IllegalArgumentException if the size cannot hold the largest WebSocket header
+     */
+    public WebSocketImpl(int maxFrameSize)
+    {
+        if (maxFrameSize <= WebSocketHeader.MAX_HEADER_LENGTH_MASKED)
+        {
+            throw new IllegalArgumentException("maxFrameSize must be larger than the WebSocket header");
+        }
+
+        _maxFrameSize = maxFrameSize;
         _inputBuffer = newWriteableBuffer(_maxFrameSize);
         _outputBuffer = newWriteableBuffer(_maxFrameSize);
         _pingBuffer = newWriteableBuffer(_maxFrameSize);
@@ -151,6 +171,11 @@ public class WebSocketImpl implements WebSocket, TransportLayer
         return _wsInputBuffer;
     }
 
+    public int getMaxFrameSize()
+    {
+        return _maxFrameSize;
+    }
+
     @Override
     public Boolean getEnabled()
     {
@@ -354,22 +379,14 @@ public class WebSocketImpl implements WebSocket, TransportLayer
                                     readInputBuffer();
                                     _temp.flip();
 
-                                    final byte[] data;
-                                    if(_temp.remaining() >= _lastLength-_bytesRead)
-                                    {
-                                        data = new byte[(int)(_lastLength-_bytesRead)];
-                                        _temp.get(data, 0, (int)(_lastLength-_bytesRead));
-                                        _wsInputBuffer.put(data);
-                                        _bytesRead += _lastLength-_bytesRead;
-                                    }
-                                    //Otherwise the remaining bytes is < the rest that we need
-                                    else
-                                    {
-                                        data = new byte[_temp.remaining()];
-                                        _temp.get(data);
-                                        _wsInputBuffer.put(data);
-                                        _bytesRead += data.length;
-                                    }
+                                    //Move only the rest of this frame, or everything we have if it is shorter,
+                                    //by narrowing the limit instead of copying through a temporary array
+                                    final int frameBytes = (int) Math.min(_temp.remaining(), _lastLength - _bytesRead);
+                                    final int tempLimit = _temp.limit();
+                                    _temp.limit(_temp.position() + frameBytes);
+                                    _wsInputBuffer.put(_temp);
+                                    _temp.limit(tempLimit);
+                                    _bytesRead += frameBytes;
 
                                     //Send whatever we have
                                     sendToUnderlyingInput();
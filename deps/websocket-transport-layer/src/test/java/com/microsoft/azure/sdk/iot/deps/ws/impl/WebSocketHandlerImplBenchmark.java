@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+package com.microsoft.azure.sdk.iot.deps.ws.impl;
+
+import com.microsoft.azure.sdk.iot.deps.ws.WebSocketHeader;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Random;
+
+/**
+ * Measures WebSocketHandlerImpl.wrapBuffer on heap buffers, against the framing it replaced: the
+ * frame built in a ByteArrayOutputStream one byte at a time, masked one byte at a time with a key
+ * from a new SecureRandom, then copied into the destination buffer.
+ */
+public class WebSocketHandlerImplBenchmark
+{
+    private static final int[] PAYLOAD_SIZES = { 100, 4096, 65536 };
+    private static final int WARMUP_BYTES = 512 * 1024 * 1024;
+    private static final int MEASURED_BYTES = 512 * 1024 * 1024;
+
+    private static volatile int sink;
+
+    private interface Framing
+    {
+        void wrapBuffer(ByteBuffer srcBuffer, ByteBuffer dstBuffer);
+    }
+
+    public static void main(String[] args)
+    {
+        final WebSocketHandlerImpl webSocketHandler = new WebSocketHandlerImpl();
+
+        for (int payloadSize : PAYLOAD_SIZES)
+        {
+            ByteBuffer srcBuffer = ByteBuffer.allocate(payloadSize);
+            ByteBuffer dstBuffer = ByteBuffer.allocate(payloadSize + WebSocketHeader.MED_HEADER_LENGTH_MASKED + 8);
+            int iterations = Math.max(1000, MEASURED_BYTES / payloadSize / 8);
+
+            double before = measure("wrapBuffer, " + payloadSize + " B payload, previous framing", srcBuffer, dstBuffer, iterations,
+                    new Framing()
+                    {
+                        @Override
+                        public void wrapBuffer(ByteBuffer srcBuffer, ByteBuffer dstBuffer)
+                        {
+                            previousWrapBuffer(srcBuffer, dstBuffer);
+                        }
+                    });
+            double after = measure("wrapBuffer, " + payloadSize + " B payload, in place", srcBuffer, dstBuffer, iterations,
+                    new Framing()
+                    {
+                        @Override
+                        public void wrapBuffer(ByteBuffer srcBuffer, ByteBuffer dstBuffer)
+                        {
+                            webSocketHandler.wrapBuffer(srcBuffer, dstBuffer);
+                        }
+                    });
+            System.out.println(String.format("%-56s %14.1fx", "speedup", before / after));
+        }
+    }
+
+    private static double measure(String name, ByteBuffer srcBuffer, ByteBuffer dstBuffer, int iterations, Framing framing)
+    {
+        int warmupIterations = Math.max(1000, WARMUP_BYTES / srcBuffer.capacity() / 8);
+        for (int i = 0; i < warmupIterations; i++)
+        {
+            srcBuffer.clear();
+            framing.wrapBuffer(srcBuffer, dstBuffer);
+            sink += dstBuffer.position();
+        }
+
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+        {
+            srcBuffer.clear();
+            framing.wrapBuffer(srcBuffer, dstBuffer);
+            sink += dstBuffer.position();
+        }
+        double nanosPerFrame = (double) (System.nanoTime() - startNanos) / iterations;
+
+        System.out.println(String.format("%-56s %14.1f ns/frame", name, nanosPerFrame));
+        return nanosPerFrame;
+    }
+
+    /* wrapBuffer before the in-place framing, including its 64-bit length, which wrapped the shifts of an int. */
+    private static void previousWrapBuffer(ByteBuffer srcBuffer, ByteBuffer dstBuffer)
+    {
+        if (srcBuffer.remaining() > 0)
+        {
+            final byte[] MASKING_KEY = new byte[4];
+            Random random = new SecureRandom();
+            random.nextBytes(MASKING_KEY);
+
+            final int DATA_LENGTH = srcBuffer.remaining();
+            ByteArrayOutputStream webSocketFrame = new ByteArrayOutputStream(WebSocketHeader.MIN_HEADER_LENGTH_MASKED + DATA_LENGTH);
+
+            byte firstByte = (byte) (WebSocketHeader.FINBIT_MASK | WebSocketHeader.OPCODE_BINARY);
+            webSocketFrame.write(firstByte);
+
+            byte secondByte = WebSocketHeader.MASKBIT_MASK;
+            if (DATA_LENGTH <= WebSocketHeader.PAYLOAD_SHORT_MAX)
+            {
+                secondByte = (byte) (secondByte | DATA_LENGTH);
+                webSocketFrame.write(secondByte);
+            }
+            else if (DATA_LENGTH <= WebSocketHeader.PAYLOAD_MEDIUM_MAX)
+            {
+                secondByte = (byte) (secondByte | WebSocketHeader.PAYLOAD_EXTENDED_16);
+                webSocketFrame.write(secondByte);
+                webSocketFrame.write((byte) (DATA_LENGTH >>> 8));
+                webSocketFrame.write((byte) (DATA_LENGTH));
+            }
+            else
+            {
+                secondByte = (byte) (secondByte | WebSocketHeader.PAYLOAD_EXTENDED_64);
+                webSocketFrame.write(secondByte);
+                webSocketFrame.write((byte) (DATA_LENGTH >>> 56));
+                webSocketFrame.write((byte) (DATA_LENGTH >>> 48));
+                webSocketFrame.write((byte) (DATA_LENGTH >>> 40));
+                webSocketFrame.write((byte) (DATA_LENGTH >>> 32));
+                webSocketFrame.write((byte) (DATA_LENGTH >>> 24));
+                webSocketFrame.write((byte) (DATA_LENGTH >>> 16));
+                webSocketFrame.write((byte) (DATA_LENGTH >>> 8));
+                webSocketFrame.write((byte) (DATA_LENGTH));
+            }
+
+            webSocketFrame.write(MASKING_KEY[0]);
+            webSocketFrame.write(MASKING_KEY[1]);
+            webSocketFrame.write(MASKING_KEY[2]);
+            webSocketFrame.write(MASKING_KEY[3]);
+
+            for (int i = 0; i < DATA_LENGTH; i++)
+            {
+                byte nextByte = srcBuffer.get();
+                nextByte ^= MASKING_KEY[i % 4];
+                webSocketFrame.write(nextByte);
+            }
+
+            dstBuffer.clear();
+            if (dstBuffer.capacity() >= webSocketFrame.size())
+            {
+                dstBuffer.put(webSocketFrame.toByteArray());
+            }
+            else
+            {
+                throw new OutOfMemoryError("insufficient output buffer size");
+            }
+        }
+        else
+        {
+            dstBuffer.clear();
+        }
+    }
+}
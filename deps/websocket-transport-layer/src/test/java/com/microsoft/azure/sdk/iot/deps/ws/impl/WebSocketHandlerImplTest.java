@@ -26,6 +26,7 @@ import org.junit.Test;
 
 import javax.xml.bind.DatatypeConverter;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.security.SecureRandom;
 import java.util.*;
 
@@ -703,10 +704,10 @@ public class WebSocketHandlerImplTest
         expected[0] = (byte) (WebSocketHeader.FINBIT_MASK | WebSocketHeader.OPCODE_BINARY);
         expected[1] = (byte) (WebSocketHeader.MASKBIT_MASK | WebSocketHeader.PAYLOAD_EXTENDED_64);
 
-        expected[2] = (byte) (payloadLength >>> 56);
-        expected[3] = (byte) (payloadLength >>> 48);
-        expected[4] = (byte) (payloadLength >>> 40);
-        expected[5] = (byte) (payloadLength >>> 32);
+        expected[2] = (byte) ((long) payloadLength >>> 56);
+        expected[3] = (byte) ((long) payloadLength >>> 48);
+        expected[4] = (byte) ((long) payloadLength >>> 40);
+        expected[5] = (byte) ((long) payloadLength >>> 32);
         expected[6] = (byte) (payloadLength >>> 24);
         expected[7] = (byte) (payloadLength >>> 16);
         expected[8] = (byte) (payloadLength >>> 8);
@@ -779,10 +780,10 @@ public class WebSocketHandlerImplTest
         expected[0] = (byte) (WebSocketHeader.FINBIT_MASK | WebSocketHeader.OPCODE_BINARY);
         expected[1] = (byte) (WebSocketHeader.MASKBIT_MASK | WebSocketHeader.PAYLOAD_EXTENDED_64);
 
-        expected[2] = (byte) (payloadLength >>> 56);
-        expected[3] = (byte) (payloadLength >>> 48);
-        expected[4] = (byte) (payloadLength >>> 40);
-        expected[5] = (byte) (payloadLength >>> 32);
+        expected[2] = (byte) ((long) payloadLength >>> 56);
+        expected[3] = (byte) ((long) payloadLength >>> 48);
+        expected[4] = (byte) ((long) payloadLength >>> 40);
+        expected[5] = (byte) ((long) payloadLength >>> 32);
         expected[6] = (byte) (payloadLength >>> 24);
         expected[7] = (byte) (payloadLength >>> 16);
         expected[8] = (byte) (payloadLength >>> 8);
@@ -906,6 +907,79 @@ public class WebSocketHandlerImplTest
 //        assertTrue(Arrays.equals(expected, actual));
 //    }
 
+    @Test
+    public void testWrapBuffer_large_payload_length_bytes()
+    {
+        WebSocketHandlerImpl webSocketHandler = new WebSocketHandlerImpl();
+
+        int payloadLength = WebSocketHeader.PAYLOAD_MEDIUM_MAX + 1;
+        ByteBuffer srcBuffer = ByteBuffer.allocate(payloadLength);
+        ByteBuffer dstBuffer = ByteBuffer.allocate(payloadLength + WebSocketHeader.MAX_HEADER_LENGTH_MASKED);
+
+        webSocketHandler.wrapBuffer(srcBuffer, dstBuffer);
+        dstBuffer.flip();
+
+        dstBuffer.position(2);
+        assertEquals(payloadLength, dstBuffer.getLong());
+    }
+
+    @Test
+    public void testMaskPayload_matches_byte_masking()
+    {
+        byte[] maskingKey = new byte[]{(byte) 0x81, 0x02, (byte) 0xF3, 0x04};
+
+        for (ByteOrder srcOrder : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN})
+        {
+            for (ByteOrder dstOrder : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN})
+            {
+                for (int payloadLength = 1; payloadLength <= 19; payloadLength++)
+                {
+                    byte[] data = new byte[payloadLength];
+                    new SecureRandom().nextBytes(data);
+
+                    byte[] expected = new byte[payloadLength];
+                    for (int i = 0; i < payloadLength; i++)
+                    {
+                        expected[i] = (byte) (data[i] ^ maskingKey[i % 4]);
+                    }
+
+                    ByteBuffer heapSrcBuffer = ByteBuffer.wrap(data).order(srcOrder);
+                    ByteBuffer heapDstBuffer = ByteBuffer.allocate(payloadLength).order(dstOrder);
+                    ByteBuffer directSrcBuffer = ByteBuffer.allocateDirect(payloadLength).order(srcOrder);
+                    ByteBuffer directDstBuffer = ByteBuffer.allocateDirect(payloadLength).order(dstOrder);
+                    directSrcBuffer.put(data);
+                    directSrcBuffer.flip();
+
+                    WebSocketHandlerImpl.maskPayload(heapSrcBuffer, heapDstBuffer, maskingKey);
+                    WebSocketHandlerImpl.maskPayload(directSrcBuffer, directDstBuffer, maskingKey);
+
+                    byte[] directActual = new byte[payloadLength];
+                    directDstBuffer.flip();
+                    directDstBuffer.get(directActual);
+
+                    assertEquals(0, heapSrcBuffer.remaining());
+                    assertEquals(0, heapDstBuffer.remaining());
+                    assertEquals(0, directSrcBuffer.remaining());
+                    assertTrue(Arrays.equals(expected, heapDstBuffer.array()));
+                    assertTrue(Arrays.equals(expected, directActual));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCreateRandomMaskingKey()
+    {
+        WebSocketHandlerImpl webSocketHandler = new WebSocketHandlerImpl();
+
+        byte[] first = webSocketHandler.createRandomMaskingKey();
+        byte[] second = webSocketHandler.createRandomMaskingKey();
+        byte[] third = webSocketHandler.createRandomMaskingKey();
+
+        assertEquals(4, first.length);
+        assertFalse(Arrays.equals(first, second) && Arrays.equals(second, third));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testWrapBuffer_src_buffer_null()
     {
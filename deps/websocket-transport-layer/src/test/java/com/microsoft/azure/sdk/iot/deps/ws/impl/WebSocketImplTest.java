@@ -83,6 +83,26 @@ public class WebSocketImplTest
         assertFalse(webSocketImpl.getEnabled());
     }
 
+    @Test
+    public void testConstructor_max_frame_size()
+    {
+        int maxFrameSize = 64 * 1024;
+
+        WebSocketImpl webSocketImpl = new WebSocketImpl(maxFrameSize);
+
+        assertEquals(maxFrameSize, webSocketImpl.getMaxFrameSize());
+        assertEquals(maxFrameSize, webSocketImpl.getInputBuffer().capacity());
+        assertEquals(maxFrameSize, webSocketImpl.getOutputBuffer().capacity());
+        assertEquals(maxFrameSize, webSocketImpl.getPingBuffer().capacity());
+        assertEquals(maxFrameSize, webSocketImpl.getWsInputBuffer().capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_max_frame_size_too_small()
+    {
+        new WebSocketImpl(WebSocketHeader.MAX_HEADER_LENGTH_MASKED);
+    }
+
     @Test
     public void testConfigure_handler_null()
     {
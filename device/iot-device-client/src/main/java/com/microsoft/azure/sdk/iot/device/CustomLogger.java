@@ -10,6 +10,21 @@ public class CustomLogger {
     private Logger logger;
     private static final int CALLING_METHOD_NAME_DEPTH = 2;
 
+    /**
+     * A log argument that is formatted as the name of the method that logged
+     * the message. Unlike {@link #getMethodName()}, the stack is only walked
+     * when the message is actually logged, so passing this argument costs
+     * nothing when the log level is disabled.
+     */
+    public static final Object CALLING_METHOD_NAME = new Object()
+    {
+        @Override
+        public String toString()
+        {
+            return findCallingMethodName();
+        }
+    };
+
     public CustomLogger(Class<?> clazz)
     {
         logger = Logger.getLogger(clazz);
@@ -71,6 +86,14 @@ public class CustomLogger {
         }
     }
 
+    public void LogError(String message, Throwable t, Object...params)
+    {
+        if(logger.isEnabledFor(Level.ERROR))
+        {
+            logger.error(String.format(message, params), t);
+        }
+    }
+
     public void LogError(Throwable exception)
     {
         if(logger.isEnabledFor(Level.ERROR))
@@ -83,4 +106,43 @@ public class CustomLogger {
     {
         return Thread.currentThread().getStackTrace()[CALLING_METHOD_NAME_DEPTH].getMethodName();
     }
+
+    /**
+     * Returns a log argument that is formatted as the body of the given
+     * message, decoded using UTF-8. The body is only copied and decoded when
+     * the message is actually logged.
+     *
+     * @param message the message whose body is logged.
+     * @return the log argument.
+     */
+    public static Object lazyMessageBody(final Message message)
+    {
+        return new Object()
+        {
+            @Override
+            public String toString()
+            {
+                return new String(message.getBytes(), Message.DEFAULT_IOTHUB_MESSAGE_CHARSET);
+            }
+        };
+    }
+
+    /**
+     * Returns the name of the method that called into this logger, that is,
+     * the method of the first stack frame after the last frame of this class.
+     */
+    private static String findCallingMethodName()
+    {
+        StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
+        String loggerClassName = CustomLogger.class.getName();
+        for (int i = stackTrace.length - 2; i >= 0; i--)
+        {
+            if (stackTrace[i].getClassName().equals(loggerClassName))
+            {
+                return stackTrace[i + 1].getMethodName();
+            }
+        }
+
+        return "unknown";
+    }
 }
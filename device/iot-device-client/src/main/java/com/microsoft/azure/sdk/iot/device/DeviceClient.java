@@ -9,6 +9,7 @@ import com.microsoft.azure.sdk.iot.device.transport.https.HttpsTransport;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubReceiveTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubSendTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransport;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportWorker;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttTransport;
 
 import java.io.Closeable;
@@ -21,6 +22,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -54,6 +56,16 @@ public final class DeviceClient implements Closeable
     protected final static String SET_MINIMUM_POLLING_INTERVAL = "SetMinimumPollingInterval";
     protected final static String SET_CERTIFICATE_PATH = "SetCertificatePath";
     protected final static String SET_SAS_TOKEN_EXPIRY_TIME = "SetSASTokenExpiryTime";
+    protected final static String SET_MAX_IN_FLIGHT_MESSAGES = "SetMaxInFlightMessages";
+    protected final static String SET_EVENT_DRIVEN_TRANSPORT = "SetEventDrivenTransport";
+    protected final static String SET_MAX_QUEUED_MESSAGES = "SetMaxQueuedMessages";
+    protected final static String SET_QUEUE_OVERFLOW_POLICY = "SetQueueOverflowPolicy";
+    protected final static String SET_QUEUE_BLOCK_TIMEOUT = "SetQueueBlockTimeout";
+    protected final static String SET_WEBSOCKET_MAX_FRAME_SIZE = "SetWebSocketMaxFrameSize";
+    protected final static String SET_SAS_TOKEN_RENEWAL_FRACTION = "SetSASTokenRenewalFraction";
+    protected final static String SET_DEVICE_METHOD_EXECUTOR = "SetDeviceMethodExecutor";
+    protected final static String SET_DEVICE_METHOD_TIMEOUT = "SetDeviceMethodTimeout";
+    protected final static String SET_DEVICE_METHOD_CONCURRENCY_LIMIT = "SetDeviceMethodConcurrencyLimit";
 
     /**
      * The number of milliseconds the transport will wait between
@@ -90,6 +102,7 @@ public final class DeviceClient implements Closeable
     private DeviceMethod deviceMethod;
 
     protected ScheduledExecutorService taskScheduler;
+    protected IotHubTransportWorker transportWorker;
     protected IotHubClientState state;
     protected long RECEIVE_PERIOD_MILLIS;
     protected CustomLogger logger;
@@ -161,7 +174,7 @@ public final class DeviceClient implements Closeable
 
         initIotHubClient(hostname, deviceId, sharedAccessKey, sharedAccessToken, protocol);
         this.logger = new CustomLogger(this.getClass());
-        logger.LogInfo("DeviceClient object is created successfully, method name is %s ", logger.getMethodName());
+        logger.LogInfo("DeviceClient object is created successfully, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
     }
 
     /**
@@ -184,7 +197,8 @@ public final class DeviceClient implements Closeable
             try
             {
                 //Codes_SRS_DEVICECLIENT_25_054: [**The function shall create default IotHubSSL context if no certificate input was provided by user and save it by calling setIotHubSSLContext.**]**
-                IotHubSSLContext iotHubSSLContext = new IotHubSSLContext();
+                //Codes_SRS_DEVICECLIENT_21_075: [**The function shall acquire the IotHubSSL context from the IotHubSSLContextCache, so clients trusting the same certificates share it.**]**
+                IotHubSSLContext iotHubSSLContext = IotHubSSLContextCache.acquire();
                 this.config.setIotHubSSLContext(iotHubSSLContext);
             }
             catch (Exception e)
@@ -198,7 +212,7 @@ public final class DeviceClient implements Closeable
             try
             {
                 //Codes_SRS_DEVICECLIENT_25_055: [**The function shall create IotHubSSL context with the certificate path if input was provided by user and save it by calling setIotHubSSLContext.**]**
-                IotHubSSLContext iotHubSSLContext = new IotHubSSLContext(this.config.getPathToCertificate(), true);
+                IotHubSSLContext iotHubSSLContext = IotHubSSLContextCache.acquire(this.config.getPathToCertificate(), true);
                 this.config.setIotHubSSLContext(iotHubSSLContext);
             }
             catch (Exception e)
@@ -212,7 +226,7 @@ public final class DeviceClient implements Closeable
             try
             {
                 //Codes_SRS_DEVICECLIENT_25_056: [**The function shall create IotHubSSL context with the certificate String if input was provided by user and save it by calling setIotHubSSLContext.**]**
-                IotHubSSLContext iotHubSSLContext = new IotHubSSLContext(this.config.getUserCertificateString(), false);
+                IotHubSSLContext iotHubSSLContext = IotHubSSLContextCache.acquire(this.config.getUserCertificateString(), false);
                 this.config.setIotHubSSLContext(iotHubSSLContext);
             }
             catch (Exception e)
@@ -222,9 +236,41 @@ public final class DeviceClient implements Closeable
             }
         }
 
+        if (this.config.isEventDrivenTransport())
+        {
+            // Codes_SRS_DEVICECLIENT_21_061: [If the event driven transport is enabled, the function shall create an IotHubTransportWorker
+            // and save it in the config before opening the transport, so the transport can signal the messages it receives.]
+            // Only HTTPS has to poll the IoT Hub for messages, the other transports signal every message they receive.
+            long receivePeriodMillis = (this.transport.getClass() == HttpsTransport.class) ? RECEIVE_PERIOD_MILLIS : 0;
+            this.transportWorker = new IotHubTransportWorker(this.transport, SEND_PERIOD_MILLIS, receivePeriodMillis);
+            this.config.setTransportWorker(this.transportWorker);
+        }
+
         // Codes_SRS_DEVICECLIENT_11_035: [The function shall open the transport to communicate with an IoT Hub.]
         // Codes_SRS_DEVICECLIENT_11_036: [If an error occurs in opening the transport, the function shall throw an IOException.]
-        this.transport.open();
+        try
+        {
+            this.transport.open();
+        }
+        catch (IOException e)
+        {
+            this.config.setTransportWorker(null);
+            this.transportWorker = null;
+            // Codes_SRS_DEVICECLIENT_21_076: [If the transport fails to open, the function shall release the IotHubSSL context.]
+            IotHubSSLContextCache.release(this.config.getIotHubSSLContext());
+            this.config.setIotHubSSLContext(null);
+            throw e;
+        }
+
+        if (this.transportWorker != null)
+        {
+            // Codes_SRS_DEVICECLIENT_21_062: [If the event driven transport is enabled, the function shall run the IotHubTransportWorker
+            // on a single thread instead of scheduling the send and receive tasks.]
+            this.taskScheduler = Executors.newSingleThreadScheduledExecutor();
+            this.taskScheduler.execute(this.transportWorker);
+            this.state = IotHubClientState.OPEN;
+            return;
+        }
 
         IotHubSendTask sendTask = new IotHubSendTask(this.transport);
         IotHubReceiveTask receiveTask = new IotHubReceiveTask(this.transport);
@@ -265,10 +311,20 @@ public final class DeviceClient implements Closeable
         while (!this.transport.isEmpty())
         {
 
+        }
+        if (this.transportWorker != null)
+        {
+            // Codes_SRS_DEVICECLIENT_21_063: [If the event driven transport is enabled, the function shall stop the IotHubTransportWorker.]
+            this.transportWorker.stop();
+            this.config.setTransportWorker(null);
+            this.transportWorker = null;
         }
         this.taskScheduler.shutdown();
         // Codes_SRS_DEVICECLIENT_11_037: [The function shall close the transport.]
         this.transport.close();
+        // Codes_SRS_DEVICECLIENT_21_077: [The function shall release the IotHubSSL context, so the cache can drop it once no client uses it.]
+        IotHubSSLContextCache.release(this.config.getIotHubSSLContext());
+        this.config.setIotHubSSLContext(null);
         this.state = IotHubClientState.CLOSED;
     }
 
@@ -303,9 +359,16 @@ public final class DeviceClient implements Closeable
             throw new IllegalArgumentException("Cannot send message 'null'.");
         }
 
-        logger.LogInfo("Message with messageid %s along with callback and callbackcontext is added to the queue, method name is %s ", message.getMessageId(), logger.getMethodName());
+        logger.LogInfo("Message with messageid %s along with callback and callbackcontext is added to the queue, method name is %s ", message.getMessageId(), CustomLogger.CALLING_METHOD_NAME);
         // Codes_SRS_DEVICECLIENT_11_006: [The function shall add the message, with its associated callback and callback context, to the transport.]
         transport.addMessage(message, callback, callbackContext);
+
+        // Codes_SRS_DEVICECLIENT_21_064: [If the event driven transport is enabled, the function shall signal the IotHubTransportWorker to send the message.]
+        IotHubTransportWorker worker = this.transportWorker;
+        if (worker != null)
+        {
+            worker.signalSend();
+        }
     }
 
     /**
@@ -503,6 +566,48 @@ public final class DeviceClient implements Closeable
         this.deviceMethod.subscribeToDeviceMethod(deviceMethodCallback, deviceMethodCallbackContext);
     }
 
+    /**
+     * Returns the number of messages waiting to be sent, so producers can
+     * throttle before the queue fills up.
+     *
+     * @return the number of messages waiting to be sent.
+     */
+    public int getQueuedMessageCount()
+    {
+        // Codes_SRS_DEVICECLIENT_21_087: [The function shall return the number of messages waiting to be sent by the transport.]
+        return this.transport.getQueuedMessageCount();
+    }
+
+    /**
+     * Returns the number of messages sent to the IoT Hub which were not
+     * acknowledged yet.
+     *
+     * @return the number of messages in progress.
+     */
+    public int getInProgressMessageCount()
+    {
+        // Codes_SRS_DEVICECLIENT_21_088: [The function shall return the number of messages in progress in the transport.]
+        return this.transport.getInProgressMessageCount();
+    }
+
+    /**
+     * Returns the number of messages the IoT Hub is ready to accept. Only the
+     * AMQP transport is granted link credit.
+     *
+     * @return the remaining link credit, or -1 if the transport is not AMQP,
+     * is not open or the IoT Hub did not grant any credit yet.
+     */
+    public int getLinkCredit()
+    {
+        // Codes_SRS_DEVICECLIENT_21_089: [If the transport is AMQP, the function shall return its remaining link credit, and -1 otherwise.]
+        if (this.transport.getClass() == AmqpsTransport.class)
+        {
+            return ((AmqpsTransport) this.transport).getLinkCredit();
+        }
+
+        return -1;
+    }
+
 
     /**
      * Initializes an IoT Hub device client with the given parameters.
@@ -596,7 +701,7 @@ public final class DeviceClient implements Closeable
 
     private void setOption_SetMinimumPollingInterval(Object value)
     {
-        logger.LogInfo("Setting MinimumPollingInterval as %s milliseconds, method name is %s ", value, logger.getMethodName());
+        logger.LogInfo("Setting MinimumPollingInterval as %s milliseconds, method name is %s ", value, CustomLogger.CALLING_METHOD_NAME);
         if (!value.equals(null)) {
             if (this.state != IotHubClientState.CLOSED) {
                 throw new IllegalStateException("setOption " + SET_MINIMUM_POLLING_INTERVAL +
@@ -617,7 +722,7 @@ public final class DeviceClient implements Closeable
 
     private void setOption_SetCertificatePath(Object value)
     {
-        logger.LogInfo("Setting CertificatePath as %s, method name is %s ", value, logger.getMethodName());
+        logger.LogInfo("Setting CertificatePath as %s, method name is %s ", value, CustomLogger.CALLING_METHOD_NAME);
         if (this.state != IotHubClientState.CLOSED) {
             throw new IllegalStateException("setOption " + SET_CERTIFICATE_PATH +
                     "only works when the transport is closed");
@@ -632,7 +737,7 @@ public final class DeviceClient implements Closeable
 
     private void setOption_SetSASTokenExpiryTime(Object value)
     {
-        logger.LogInfo("Setting SASTokenExpiryTime as %s seconds, method name is %s ", value, logger.getMethodName());
+        logger.LogInfo("Setting SASTokenExpiryTime as %s seconds, method name is %s ", value, CustomLogger.CALLING_METHOD_NAME);
         if (!value.equals(null)) {
             //**Codes_SRS_DEVICECLIENT_25_009: [**"SetSASTokenExpiryTime" should have value type long**.]**
             long validTimeInSeconds;
@@ -684,7 +789,140 @@ public final class DeviceClient implements Closeable
 
     }
 
+    private void setOption_SetMaxInFlightMessages(Object value)
+    {
+        logger.LogInfo("Setting MaxInFlightMessages as %s, method name is %s ", value, CustomLogger.CALLING_METHOD_NAME);
+        if (this.state != IotHubClientState.CLOSED) {
+            throw new IllegalStateException("setOption " + SET_MAX_IN_FLIGHT_MESSAGES +
+                    " only works when the transport is closed");
+        } else {
+            // Codes_SRS_DEVICECLIENT_21_059: ["SetMaxInFlightMessages" needs to have value type int.]
+            if (value instanceof Integer)
+                this.config.setMqttMaxInFlightCount((int) value);
+            else
+                throw new IllegalArgumentException("value is not int = " + value);
+        }
+    }
+
+
+    private void setOption_SetEventDrivenTransport(Object value)
+    {
+        logger.LogInfo("Setting EventDrivenTransport as %s, method name is %s ", value, CustomLogger.CALLING_METHOD_NAME);
+        if (this.state != IotHubClientState.CLOSED) {
+            throw new IllegalStateException("setOption " + SET_EVENT_DRIVEN_TRANSPORT +
+                    " only works when the transport is closed");
+        } else {
+            // Codes_SRS_DEVICECLIENT_21_066: ["SetEventDrivenTransport" needs to have value type boolean.]
+            if (value instanceof Boolean)
+                this.config.setEventDrivenTransport((boolean) value);
+            else
+                throw new IllegalArgumentException("value is not boolean = " + value);
+        }
+    }
+
+
+    private void setOption_SetMaxQueuedMessages(Object value)
+    {
+        logger.LogInfo("Setting MaxQueuedMessages as %s, method name is %s ", value, CustomLogger.CALLING_METHOD_NAME);
+        if (this.state != IotHubClientState.CLOSED) {
+            throw new IllegalStateException("setOption " + SET_MAX_QUEUED_MESSAGES +
+                    " only works when the transport is closed");
+        } else {
+            // Codes_SRS_DEVICECLIENT_21_068: ["SetMaxQueuedMessages" needs to have value type int.]
+            if (value instanceof Integer)
+                this.config.setAmqpsMaxQueuedMessages((int) value);
+            else
+                throw new IllegalArgumentException("value is not int = " + value);
+        }
+    }
 
+    private void setOption_SetQueueOverflowPolicy(Object value)
+    {
+        logger.LogInfo("Setting QueueOverflowPolicy as %s, method name is %s ", value, CustomLogger.CALLING_METHOD_NAME);
+        if (this.state != IotHubClientState.CLOSED) {
+            throw new IllegalStateException("setOption " + SET_QUEUE_OVERFLOW_POLICY +
+                    " only works when the transport is closed");
+        } else {
+            // Codes_SRS_DEVICECLIENT_21_071: ["SetQueueOverflowPolicy" needs to have value type QueueOverflowPolicy.]
+            if (value instanceof QueueOverflowPolicy)
+                this.config.setAmqpsQueueOverflowPolicy((QueueOverflowPolicy) value);
+            else
+                throw new IllegalArgumentException("value is not QueueOverflowPolicy = " + value);
+        }
+    }
+
+    private void setOption_SetQueueBlockTimeout(Object value)
+    {
+        logger.LogInfo("Setting QueueBlockTimeout as %s, method name is %s ", value, CustomLogger.CALLING_METHOD_NAME);
+        if (this.state != IotHubClientState.CLOSED) {
+            throw new IllegalStateException("setOption " + SET_QUEUE_BLOCK_TIMEOUT +
+                    " only works when the transport is closed");
+        } else {
+            // Codes_SRS_DEVICECLIENT_21_085: ["SetQueueBlockTimeout" needs to have value type long.]
+            if (value instanceof Long)
+                this.config.setAmqpsQueueBlockTimeoutMillis((long) value);
+            else
+                throw new IllegalArgumentException("value is not long = " + value);
+        }
+    }
+
+    private void setOption_SetWebSocketMaxFrameSize(Object value)
+    {
+        logger.LogInfo("Setting WebSocketMaxFrameSize as %s bytes, method name is %s ", value, CustomLogger.CALLING_METHOD_NAME);
+        if (this.state != IotHubClientState.CLOSED) {
+            throw new IllegalStateException("setOption " + SET_WEBSOCKET_MAX_FRAME_SIZE +
+                    " only works when the transport is closed");
+        } else {
+            // Codes_SRS_DEVICECLIENT_21_091: ["SetWebSocketMaxFrameSize" needs to have value type int.]
+            if (value instanceof Integer)
+                this.config.setWebSocketMaxFrameSize((int) value);
+            else
+                throw new IllegalArgumentException("value is not int = " + value);
+        }
+    }
+
+    private void setOption_SetSASTokenRenewalFraction(Object value)
+    {
+        logger.LogInfo("Setting SASTokenRenewalFraction as %s, method name is %s ", value, CustomLogger.CALLING_METHOD_NAME);
+        // Codes_SRS_DEVICECLIENT_21_074: ["SetSASTokenRenewalFraction" needs to have value type double.]
+        if (value instanceof Double)
+            this.config.setSasTokenRenewalFraction((double) value);
+        else
+            throw new IllegalArgumentException("value is not double = " + value);
+    }
+
+
+    private void setOption_SetDeviceMethodExecutor(Object value)
+    {
+        logger.LogInfo("Setting DeviceMethodExecutor as %s, method name is %s ", value, CustomLogger.CALLING_METHOD_NAME);
+        // Codes_SRS_DEVICECLIENT_21_079: ["SetDeviceMethodExecutor" needs to have value type Executor, or null.]
+        if (value == null || value instanceof Executor)
+            this.config.setDeviceMethodExecutor((Executor) value);
+        else
+            throw new IllegalArgumentException("value is not Executor = " + value);
+    }
+
+    private void setOption_SetDeviceMethodTimeout(Object value)
+    {
+        logger.LogInfo("Setting DeviceMethodTimeout as %s, method name is %s ", value, CustomLogger.CALLING_METHOD_NAME);
+        // Codes_SRS_DEVICECLIENT_21_081: ["SetDeviceMethodTimeout" needs to have value type long.]
+        if (value instanceof Long)
+            this.config.setDeviceMethodTimeoutMillis((long) value);
+        else
+            throw new IllegalArgumentException("value is not long = " + value);
+    }
+
+    private void setOption_SetDeviceMethodConcurrencyLimit(Object value)
+    {
+        logger.LogInfo("Setting DeviceMethodConcurrencyLimit as %s, method name is %s ", value, CustomLogger.CALLING_METHOD_NAME);
+        // Codes_SRS_DEVICECLIENT_21_083: ["SetDeviceMethodConcurrencyLimit" needs to have value type Pair<String, Integer>.]
+        if (value instanceof Pair
+                && ((Pair) value).getKey() instanceof String
+                && ((Pair) value).getValue() instanceof Integer)
+            this.config.setDeviceMethodConcurrencyLimit((String) ((Pair) value).getKey(), (int) ((Pair) value).getValue());
+        else
+            throw new IllegalArgumentException("value is not Pair<String, Integer> = " + value);
+    }
 
     /**
      * Sets a runtime option identified by parameter {@code optionName}
@@ -705,6 +943,76 @@ public final class DeviceClient implements Closeable
      *         SASToken expires. If the transport is already open then setting this
      *         option will restart the transport with the updated expiry time. The
      *         value is expected to be of type {@code long}.
+     *      - <b>SetMaxInFlightMessages</b> - this option is applicable only
+     *         when the transport configured with this client is MQTT. This
+     *         option specifies how many messages may be awaiting acknowledgement
+     *         from the IoT Hub at the same time. The value is expected to be of
+     *         type {@code int}, and can only be set while the client is closed.
+     *      - <b>SetEventDrivenTransport</b> - this option is applicable for HTTP/
+     *         AMQP/MQTT. When {@code true}, messages are sent as soon as they are
+     *         queued and received messages are handled as soon as the transport
+     *         delivers them, instead of polling the transport queues every few
+     *         milliseconds, so an idle client does not use any CPU. HTTP still
+     *         polls the IoT Hub for messages every SetMinimumPollingInterval. The
+     *         value is expected to be of type {@code boolean}, and can only be set
+     *         while the client is closed.
+     *      - <b>SetMaxQueuedMessages</b> - this option is applicable only
+     *         when the transport configured with this client is AMQP. This
+     *         option specifies how many messages may be waiting to be sent at
+     *         the same time, 0 meaning no limit. Messages are only sent while
+     *         the IoT Hub grants link credit, so a bounded queue keeps a slow
+     *         IoT Hub from making the client buffer without limit. The value is
+     *         expected to be of type {@code int}, and can only be set while the
+     *         client is closed.
+     *      - <b>SetQueueOverflowPolicy</b> - this option is applicable only
+     *         when the transport configured with this client is AMQP. This
+     *         option specifies what happens to a new message when the queue
+     *         bounded by SetMaxQueuedMessages is full. See
+     *         {@link QueueOverflowPolicy}. The value is expected to be of type
+     *         {@code QueueOverflowPolicy}, and can only be set while the client
+     *         is closed.
+     *      - <b>SetQueueBlockTimeout</b> - this option is applicable only
+     *         when the transport configured with this client is AMQP. This
+     *         option specifies the time in milliseconds a message waits for
+     *         room in the queue under the BLOCK overflow policy (60 seconds by
+     *         default); the callback of a message which did not get room in
+     *         time is invoked with {@link IotHubStatusCode#ERROR}. The value is
+     *         expected to be of type {@code long}, and can only be set while
+     *         the client is closed.
+     *      - <b>SetWebSocketMaxFrameSize</b> - this option is applicable only
+     *         when the transport configured with this client is AMQP. This
+     *         option specifies the size in bytes, header included, of the
+     *         largest WebSocket frame the AMQPS_WS connection sends and
+     *         receives (about 4 KB by default). Larger frames carry a big
+     *         message in fewer frames. The value is expected to be of type
+     *         {@code int}, and can only be set while the client is closed.
+     *      - <b>SetSASTokenRenewalFraction</b> - this option is applicable for
+     *         HTTP/AMQP/MQTT when the client uses a device key. This option
+     *         specifies the fraction of the SASToken lifetime after which the
+     *         token is renewed, between 0 and 1 exclusive (0.75 by default).
+     *         MQTT authenticates again with the renewed token and AMQP reconnects
+     *         with it, before the previous token expires. The value is expected
+     *         to be of type {@code double}, and applies from the next renewal.
+     *      - <b>SetDeviceMethodExecutor</b> - this option is applicable for
+     *         device methods. This option specifies the {@code Executor} which
+     *         invokes the device method callbacks, so a slow device method does
+     *         not hold back the other methods, the device twin and the
+     *         cloud-to-device messages. When {@code null} (the default) the
+     *         callbacks are invoked one at a time on the thread which receives
+     *         the requests. The client does not shut the executor down. The
+     *         value is expected to be of type {@code Executor}.
+     *      - <b>SetDeviceMethodTimeout</b> - this option is applicable for
+     *         device methods. This option specifies the time in milliseconds
+     *         after which a device method which did not respond is answered
+     *         with the status {@link DeviceMethod#METHOD_TIMEOUT_STATUS}; its late
+     *         response is dropped. 0 (the default) means no timeout. The value
+     *         is expected to be of type {@code long}.
+     *      - <b>SetDeviceMethodConcurrencyLimit</b> - this option is applicable
+     *         for device methods. This option specifies how many invocations of
+     *         one device method may run on the SetDeviceMethodExecutor at the
+     *         same time; further requests wait, in the order they arrived, for
+     *         a running invocation to end. The value is expected to be of type
+     *         {@code Pair<String, Integer>} holding the method name and limit.
      *
      * @param optionName the option name to modify
      * @param value an object of the appropriate type for the option's value
@@ -725,7 +1033,7 @@ public final class DeviceClient implements Closeable
                         setOption_SetMinimumPollingInterval(value);
 
                     } else {
-                        logger.LogError("optionName is unknown = %s for %s, method name is %s ", optionName, this.transport.getClass(), logger.getMethodName());
+                        logger.LogError("optionName is unknown = %s for %s, method name is %s ", optionName, this.transport.getClass(), CustomLogger.CALLING_METHOD_NAME);
                         // Codes_SRS_DEVICECLIENT_02_001: [If optionName is null or not an option
                         // handled by the client, then it shall throw IllegalArgumentException.]
                         throw new IllegalArgumentException("optionName is unknown = " + optionName
@@ -743,7 +1051,7 @@ public final class DeviceClient implements Closeable
                         setOption_SetCertificatePath(value);
 
                     } else {
-                        logger.LogError("optionName is unknown = %s for %s, method name is %s ", optionName, this.transport.getClass(), logger.getMethodName());
+                        logger.LogError("optionName is unknown = %s for %s, method name is %s ", optionName, this.transport.getClass(), CustomLogger.CALLING_METHOD_NAME);
                         // Codes_SRS_DEVICECLIENT_02_001: [If optionName is null or not an option handled by the
                         // client, then it shall throw IllegalArgumentException.]
                         throw new IllegalArgumentException("optionName is unknown = " + optionName +
@@ -760,7 +1068,24 @@ public final class DeviceClient implements Closeable
                         setOption_SetSASTokenExpiryTime(value);
 
                     } else {
-                        logger.LogError("optionName is unknown = %s for %s, method name is %s ", optionName, this.transport.getClass(), logger.getMethodName());
+                        logger.LogError("optionName is unknown = %s for %s, method name is %s ", optionName, this.transport.getClass(), CustomLogger.CALLING_METHOD_NAME);
+                        // Codes_SRS_DEVICECLIENT_02_001: [If optionName is null or not an option handled by the
+                        // client, then it shall throw IllegalArgumentException.]
+                        throw new IllegalArgumentException("optionName is unknown = " + optionName +
+                                " for " + this.transport.getClass());
+                    }
+                    break;
+                }
+
+                //**Codes_SRS_DEVICECLIENT_21_058: [**"SetMaxInFlightMessages" - number of messages which may be awaiting acknowledgement at the same time.**]**
+                case SET_MAX_IN_FLIGHT_MESSAGES: {
+                    //**Codes_SRS_DEVICECLIENT_21_060: [**"SetMaxInFlightMessages" is available only for MQTT.**]**
+                    if (this.transport.getClass() == MqttTransport.class)
+                    {
+                        setOption_SetMaxInFlightMessages(value);
+
+                    } else {
+                        logger.LogError("optionName is unknown = %s for %s, method name is %s ", optionName, this.transport.getClass(), CustomLogger.CALLING_METHOD_NAME);
                         // Codes_SRS_DEVICECLIENT_02_001: [If optionName is null or not an option handled by the
                         // client, then it shall throw IllegalArgumentException.]
                         throw new IllegalArgumentException("optionName is unknown = " + optionName +
@@ -769,6 +1094,104 @@ public final class DeviceClient implements Closeable
                     break;
                 }
 
+                //**Codes_SRS_DEVICECLIENT_21_065: [**"SetEventDrivenTransport" - whether the transport queues are processed when work is signaled instead of at a fixed rate.**]**
+                case SET_EVENT_DRIVEN_TRANSPORT: {
+                    setOption_SetEventDrivenTransport(value);
+                    break;
+                }
+
+                //**Codes_SRS_DEVICECLIENT_21_067: [**"SetMaxQueuedMessages" - number of messages which may be waiting to be sent at the same time.**]**
+                case SET_MAX_QUEUED_MESSAGES: {
+                    //**Codes_SRS_DEVICECLIENT_21_069: [**"SetMaxQueuedMessages" is available only for AMQP.**]**
+                    if (this.transport.getClass() == AmqpsTransport.class)
+                    {
+                        setOption_SetMaxQueuedMessages(value);
+
+                    } else {
+                        logger.LogError("optionName is unknown = %s for %s, method name is %s ", optionName, this.transport.getClass(), CustomLogger.CALLING_METHOD_NAME);
+                        // Codes_SRS_DEVICECLIENT_02_001: [If optionName is null or not an option handled by the
+                        // client, then it shall throw IllegalArgumentException.]
+                        throw new IllegalArgumentException("optionName is unknown = " + optionName +
+                                " for " + this.transport.getClass());
+                    }
+                    break;
+                }
+
+                //**Codes_SRS_DEVICECLIENT_21_070: [**"SetQueueOverflowPolicy" - what happens to a new message when the send queue is full.**]**
+                case SET_QUEUE_OVERFLOW_POLICY: {
+                    //**Codes_SRS_DEVICECLIENT_21_072: [**"SetQueueOverflowPolicy" is available only for AMQP.**]**
+                    if (this.transport.getClass() == AmqpsTransport.class)
+                    {
+                        setOption_SetQueueOverflowPolicy(value);
+
+                    } else {
+                        logger.LogError("optionName is unknown = %s for %s, method name is %s ", optionName, this.transport.getClass(), CustomLogger.CALLING_METHOD_NAME);
+                        // Codes_SRS_DEVICECLIENT_02_001: [If optionName is null or not an option handled by the
+                        // client, then it shall throw IllegalArgumentException.]
+                        throw new IllegalArgumentException("optionName is unknown = " + optionName +
+                                " for " + this.transport.getClass());
+                    }
+                    break;
+                }
+
+                //**Codes_SRS_DEVICECLIENT_21_084: [**"SetQueueBlockTimeout" - time a new message waits for room in a full send queue.**]**
+                case SET_QUEUE_BLOCK_TIMEOUT: {
+                    //**Codes_SRS_DEVICECLIENT_21_086: [**"SetQueueBlockTimeout" is available only for AMQP.**]**
+                    if (this.transport.getClass() == AmqpsTransport.class)
+                    {
+                        setOption_SetQueueBlockTimeout(value);
+
+                    } else {
+                        logger.LogError("optionName is unknown = %s for %s, method name is %s ", optionName, this.transport.getClass(), CustomLogger.CALLING_METHOD_NAME);
+                        // Codes_SRS_DEVICECLIENT_02_001: [If optionName is null or not an option handled by the
+                        // client, then it shall throw IllegalArgumentException.]
+                        throw new IllegalArgumentException("optionName is unknown = " + optionName +
+                                " for " + this.transport.getClass());
+                    }
+                    break;
+                }
+
+                //**Codes_SRS_DEVICECLIENT_21_090: [**"SetWebSocketMaxFrameSize" - largest WebSocket frame, header included, of the AMQP connection over web sockets.**]**
+                case SET_WEBSOCKET_MAX_FRAME_SIZE: {
+                    //**Codes_SRS_DEVICECLIENT_21_092: [**"SetWebSocketMaxFrameSize" is available only for AMQP.**]**
+                    if (this.transport.getClass() == AmqpsTransport.class)
+                    {
+                        setOption_SetWebSocketMaxFrameSize(value);
+
+                    } else {
+                        logger.LogError("optionName is unknown = %s for %s, method name is %s ", optionName, this.transport.getClass(), CustomLogger.CALLING_METHOD_NAME);
+                        // Codes_SRS_DEVICECLIENT_02_001: [If optionName is null or not an option handled by the
+                        // client, then it shall throw IllegalArgumentException.]
+                        throw new IllegalArgumentException("optionName is unknown = " + optionName +
+                                " for " + this.transport.getClass());
+                    }
+                    break;
+                }
+
+                //**Codes_SRS_DEVICECLIENT_21_073: [**"SetSASTokenRenewalFraction" - fraction of the SAS token lifetime after which the token is renewed.**]**
+                case SET_SAS_TOKEN_RENEWAL_FRACTION: {
+                    setOption_SetSASTokenRenewalFraction(value);
+                    break;
+                }
+
+                //**Codes_SRS_DEVICECLIENT_21_078: [**"SetDeviceMethodExecutor" - executor which invokes the device method callbacks.**]**
+                case SET_DEVICE_METHOD_EXECUTOR: {
+                    setOption_SetDeviceMethodExecutor(value);
+                    break;
+                }
+
+                //**Codes_SRS_DEVICECLIENT_21_080: [**"SetDeviceMethodTimeout" - time after which a device method without response is answered with a timeout.**]**
+                case SET_DEVICE_METHOD_TIMEOUT: {
+                    setOption_SetDeviceMethodTimeout(value);
+                    break;
+                }
+
+                //**Codes_SRS_DEVICECLIENT_21_082: [**"SetDeviceMethodConcurrencyLimit" - number of invocations of a device method which may run at the same time.**]**
+                case SET_DEVICE_METHOD_CONCURRENCY_LIMIT: {
+                    setOption_SetDeviceMethodConcurrencyLimit(value);
+                    break;
+                }
+
                 default:
                     throw new IllegalArgumentException("optionName is unknown = " + optionName);
             }
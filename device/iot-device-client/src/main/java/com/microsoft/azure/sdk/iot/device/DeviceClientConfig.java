@@ -3,9 +3,17 @@
 
 package com.microsoft.azure.sdk.iot.device;
 
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenManager;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportWorker;
+import com.microsoft.azure.sdk.iot.deps.ws.WebSocketHeader;
+import com.microsoft.azure.sdk.iot.deps.ws.impl.WebSocketImpl;
+
 import javax.net.ssl.SSLContext;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * Configuration settings for an IoT Hub client. Validates all user-defined
@@ -26,6 +34,43 @@ public final class DeviceClientConfig
     public static final int DEFAULT_READ_TIMEOUT_MILLIS = 240000;
     /** The default value for messageLockTimeoutSecs. */
     public static final int DEFAULT_MESSAGE_LOCK_TIMEOUT_SECS = 180;
+    /** The default value for mqttMaxInFlightCount. */
+    public static final int DEFAULT_MQTT_MAX_IN_FLIGHT_COUNT = 10;
+    /** The default value for sasTokenRenewalFraction. */
+    public static final double DEFAULT_SAS_TOKEN_RENEWAL_FRACTION = 0.75;
+    /** The default value for amqpsQueueBlockTimeoutMillis. */
+    public static final long DEFAULT_AMQPS_QUEUE_BLOCK_TIMEOUT_MILLIS = 60000;
+    /** The default value for webSocketMaxFrameSize. */
+    public static final int DEFAULT_WEBSOCKET_MAX_FRAME_SIZE = WebSocketImpl.DEFAULT_MAX_FRAME_SIZE;
+
+    /** The number of MQTT messages which may be awaiting acknowledgement from the IoT Hub at the same time. */
+    private int mqttMaxInFlightCount = DEFAULT_MQTT_MAX_IN_FLIGHT_COUNT;
+
+    /** The number of AMQPS messages which may be waiting to be sent, or 0 if the queue is unbounded. */
+    private int amqpsMaxQueuedMessages = 0;
+    /** What the AMQPS transport does with a new message when its queue is full. */
+    private QueueOverflowPolicy amqpsQueueOverflowPolicy = QueueOverflowPolicy.REJECT;
+    /** The longest time a new AMQPS message waits for room in the queue under the BLOCK overflow policy. */
+    private long amqpsQueueBlockTimeoutMillis = DEFAULT_AMQPS_QUEUE_BLOCK_TIMEOUT_MILLIS;
+    /** The largest WebSocket frame, header included, which the AMQPS_WS transport sends and receives. */
+    private int webSocketMaxFrameSize = DEFAULT_WEBSOCKET_MAX_FRAME_SIZE;
+
+    /** The fraction of the SAS token lifetime after which the token is renewed. */
+    private double sasTokenRenewalFraction = DEFAULT_SAS_TOKEN_RENEWAL_FRACTION;
+    /** The cache of the current SAS token, created on first use. */
+    private IotHubSasTokenManager sasTokenManager;
+
+    /** Whether the transport queues are processed when work is signaled instead of at a fixed rate. */
+    private boolean eventDrivenTransport = false;
+    /** The worker to be signaled about new transport work, or null if the queues are polled. */
+    private IotHubTransportWorker transportWorker;
+
+    /** The executor which invokes the device method callbacks, or null to invoke them on the receive thread. */
+    private Executor deviceMethodExecutor = null;
+    /** The time after which a device method without response is answered with a timeout, or 0 for no timeout. */
+    private long deviceMethodTimeoutMillis = 0;
+    /** The number of invocations of each device method which may run at the same time. */
+    private final Map<String, Integer> deviceMethodConcurrencyLimits = new ConcurrentHashMap<>();
 
     protected final String iotHubHostname;
     protected final String iotHubName;
@@ -100,7 +145,7 @@ public final class DeviceClientConfig
         // Codes_SRS_DEVICECLIENTCONFIG_25_017: [**The constructor shall save sharedAccessToken.**] **
         this.sharedAccessToken = sharedAccessToken;
         this.logger = new CustomLogger(this.getClass());
-        logger.LogInfo("DeviceClientConfig object is created successfully with IotHubName=%s, deviceID=%s , method name is %s ", this.iotHubName, this.deviceId, logger.getMethodName());
+        logger.LogInfo("DeviceClientConfig object is created successfully with IotHubName=%s, deviceID=%s , method name is %s ", this.iotHubName, this.deviceId, CustomLogger.CALLING_METHOD_NAME);
     }
 
     /**
@@ -376,6 +421,354 @@ public final class DeviceClientConfig
     }
 
 
+    /**
+     * Getter for the number of MQTT messages which may be awaiting
+     * acknowledgement from the IoT Hub at the same time.
+     *
+     * @return the MQTT in-flight message window.
+     */
+    public int getMqttMaxInFlightCount()
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_040: [The function shall return the value of mqttMaxInFlightCount.]
+        return this.mqttMaxInFlightCount;
+    }
+
+    /**
+     * Setter for the number of MQTT messages which may be awaiting
+     * acknowledgement from the IoT Hub at the same time.
+     *
+     * @param maxInFlightCount the MQTT in-flight message window.
+     * @throws IllegalArgumentException if maxInFlightCount is less than 1.
+     */
+    public void setMqttMaxInFlightCount(int maxInFlightCount)
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_041: [If maxInFlightCount is less than 1, the function shall throw IllegalArgumentException.]
+        if (maxInFlightCount < 1)
+        {
+            throw new IllegalArgumentException("maxInFlightCount must be at least 1");
+        }
+
+        // Codes_SRS_DEVICECLIENTCONFIG_21_042: [The function shall set the value of mqttMaxInFlightCount.]
+        this.mqttMaxInFlightCount = maxInFlightCount;
+    }
+
+    /**
+     * Getter for the event driven transport mode.
+     *
+     * @return {@code true} if the transport queues are processed only when new
+     * work is signaled, and {@code false} if they are polled at a fixed rate.
+     */
+    public boolean isEventDrivenTransport()
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_043: [The function shall return the value of eventDrivenTransport.]
+        return this.eventDrivenTransport;
+    }
+
+    /**
+     * Setter for the event driven transport mode.
+     *
+     * @param eventDrivenTransport {@code true} to process the transport queues
+     * only when new work is signaled, {@code false} to poll them at a fixed rate.
+     */
+    public void setEventDrivenTransport(boolean eventDrivenTransport)
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_044: [The function shall set the value of eventDrivenTransport.]
+        this.eventDrivenTransport = eventDrivenTransport;
+    }
+
+    /**
+     * Getter for the worker which processes the transport queues in the event
+     * driven mode.
+     *
+     * @return the worker to be signaled about new transport work, or {@code null}
+     * if the transport queues are polled.
+     */
+    public IotHubTransportWorker getTransportWorker()
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_045: [The function shall return the value of transportWorker.]
+        return this.transportWorker;
+    }
+
+    /**
+     * Setter for the worker which processes the transport queues in the event
+     * driven mode.
+     *
+     * @param transportWorker the worker to be signaled about new transport work.
+     * Can be {@code null}.
+     */
+    public void setTransportWorker(IotHubTransportWorker transportWorker)
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_046: [The function shall set the value of transportWorker.]
+        this.transportWorker = transportWorker;
+    }
+
+    /**
+     * Getter for the number of AMQPS messages which may be waiting to be sent
+     * at the same time.
+     *
+     * @return the bound of the AMQPS send queue, or 0 if it is unbounded.
+     */
+    public int getAmqpsMaxQueuedMessages()
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_047: [The function shall return the value of amqpsMaxQueuedMessages.]
+        return this.amqpsMaxQueuedMessages;
+    }
+
+    /**
+     * Setter for the number of AMQPS messages which may be waiting to be sent
+     * at the same time.
+     *
+     * @param maxQueuedMessages the bound of the AMQPS send queue, or 0 to leave it unbounded.
+     * @throws IllegalArgumentException if maxQueuedMessages is negative.
+     */
+    public void setAmqpsMaxQueuedMessages(int maxQueuedMessages)
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_048: [If maxQueuedMessages is negative, the function shall throw IllegalArgumentException.]
+        if (maxQueuedMessages < 0)
+        {
+            throw new IllegalArgumentException("maxQueuedMessages must not be negative");
+        }
+
+        // Codes_SRS_DEVICECLIENTCONFIG_21_049: [The function shall set the value of amqpsMaxQueuedMessages.]
+        this.amqpsMaxQueuedMessages = maxQueuedMessages;
+    }
+
+    /**
+     * Getter for what the AMQPS transport does with a new message when its
+     * send queue is full.
+     *
+     * @return the overflow policy of the AMQPS send queue.
+     */
+    public QueueOverflowPolicy getAmqpsQueueOverflowPolicy()
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_050: [The function shall return the value of amqpsQueueOverflowPolicy.]
+        return this.amqpsQueueOverflowPolicy;
+    }
+
+    /**
+     * Setter for what the AMQPS transport does with a new message when its
+     * send queue is full.
+     *
+     * @param queueOverflowPolicy the overflow policy of the AMQPS send queue.
+     * @throws IllegalArgumentException if queueOverflowPolicy is null.
+     */
+    public void setAmqpsQueueOverflowPolicy(QueueOverflowPolicy queueOverflowPolicy)
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_051: [If queueOverflowPolicy is null, the function shall throw IllegalArgumentException.]
+        if (queueOverflowPolicy == null)
+        {
+            throw new IllegalArgumentException("queueOverflowPolicy must not be null");
+        }
+
+        // Codes_SRS_DEVICECLIENTCONFIG_21_052: [The function shall set the value of amqpsQueueOverflowPolicy.]
+        this.amqpsQueueOverflowPolicy = queueOverflowPolicy;
+    }
+
+    /**
+     * Getter for the longest time a new AMQPS message waits for room in the
+     * send queue when the overflow policy is BLOCK.
+     *
+     * @return the queue block timeout in milliseconds.
+     */
+    public long getAmqpsQueueBlockTimeoutMillis()
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_065: [The function shall return the value of amqpsQueueBlockTimeoutMillis.]
+        return this.amqpsQueueBlockTimeoutMillis;
+    }
+
+    /**
+     * Setter for the longest time a new AMQPS message waits for room in the
+     * send queue when the overflow policy is BLOCK.
+     *
+     * @param timeoutMillis the queue block timeout in milliseconds.
+     * @throws IllegalArgumentException if timeoutMillis is not positive.
+     */
+    public void setAmqpsQueueBlockTimeoutMillis(long timeoutMillis)
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_066: [If timeoutMillis is not positive, the function shall throw IllegalArgumentException.]
+        if (timeoutMillis <= 0)
+        {
+            throw new IllegalArgumentException("timeoutMillis must be positive");
+        }
+
+        // Codes_SRS_DEVICECLIENTCONFIG_21_067: [The function shall set the value of amqpsQueueBlockTimeoutMillis.]
+        this.amqpsQueueBlockTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Getter for the largest WebSocket frame, header included, which the
+     * AMQPS_WS transport sends and receives.
+     *
+     * @return the WebSocket maximum frame size in bytes.
+     */
+    public int getWebSocketMaxFrameSize()
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_068: [The function shall return the value of webSocketMaxFrameSize.]
+        return this.webSocketMaxFrameSize;
+    }
+
+    /**
+     * Setter for the largest WebSocket frame, header included, which the
+     * AMQPS_WS transport sends and receives. Larger frames carry a big
+     * message in fewer frames.
+     *
+     * @param maxFrameSize the WebSocket maximum frame size in bytes.
+     * @throws IllegalArgumentException if maxFrameSize cannot hold the largest WebSocket frame header.
+     */
+    public void setWebSocketMaxFrameSize(int maxFrameSize)
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_069: [If maxFrameSize is not larger than the largest WebSocket frame header, the function shall throw IllegalArgumentException.]
+        if (maxFrameSize <= WebSocketHeader.MAX_HEADER_LENGTH_MASKED)
+        {
+            throw new IllegalArgumentException("maxFrameSize must be larger than the WebSocket frame header");
+        }
+
+        // Codes_SRS_DEVICECLIENTCONFIG_21_070: [The function shall set the value of webSocketMaxFrameSize.]
+        this.webSocketMaxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * Getter for the fraction of the SAS token lifetime after which the token
+     * is renewed.
+     *
+     * @return the SAS token renewal fraction.
+     */
+    public double getSasTokenRenewalFraction()
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_053: [The function shall return the value of sasTokenRenewalFraction.]
+        return this.sasTokenRenewalFraction;
+    }
+
+    /**
+     * Setter for the fraction of the SAS token lifetime after which the token
+     * is renewed.
+     *
+     * @param renewalFraction the SAS token renewal fraction.
+     * @throws IllegalArgumentException if renewalFraction is not greater than 0 and less than 1.
+     */
+    public void setSasTokenRenewalFraction(double renewalFraction)
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_054: [If renewalFraction is not greater than 0 and less than 1, the function shall throw IllegalArgumentException.]
+        if (!((renewalFraction > 0) && (renewalFraction < 1)))
+        {
+            throw new IllegalArgumentException("renewalFraction must be greater than 0 and less than 1");
+        }
+
+        // Codes_SRS_DEVICECLIENTCONFIG_21_055: [The function shall set the value of sasTokenRenewalFraction.]
+        this.sasTokenRenewalFraction = renewalFraction;
+    }
+
+    /**
+     * Getter for the executor which invokes the device method callbacks.
+     *
+     * @return the device method executor, or {@code null} if the callbacks
+     * are invoked on the thread which receives the device method requests.
+     */
+    public Executor getDeviceMethodExecutor()
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_057: [The function shall return the value of deviceMethodExecutor.]
+        return this.deviceMethodExecutor;
+    }
+
+    /**
+     * Setter for the executor which invokes the device method callbacks, so a
+     * slow device method does not hold back the other received messages.
+     *
+     * @param executor the device method executor, or {@code null} to invoke the
+     * callbacks on the thread which receives the device method requests.
+     */
+    public void setDeviceMethodExecutor(Executor executor)
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_058: [The function shall set the value of deviceMethodExecutor.]
+        this.deviceMethodExecutor = executor;
+    }
+
+    /**
+     * Getter for the time after which a device method which did not respond is
+     * answered with a timeout status.
+     *
+     * @return the device method timeout in milliseconds, or 0 if there is no timeout.
+     */
+    public long getDeviceMethodTimeoutMillis()
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_059: [The function shall return the value of deviceMethodTimeoutMillis.]
+        return this.deviceMethodTimeoutMillis;
+    }
+
+    /**
+     * Setter for the time after which a device method which did not respond is
+     * answered with a timeout status.
+     *
+     * @param timeoutMillis the device method timeout in milliseconds, or 0 for no timeout.
+     * @throws IllegalArgumentException if timeoutMillis is negative.
+     */
+    public void setDeviceMethodTimeoutMillis(long timeoutMillis)
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_060: [If timeoutMillis is negative, the function shall throw IllegalArgumentException.]
+        if (timeoutMillis < 0)
+        {
+            throw new IllegalArgumentException("timeoutMillis cannot be negative");
+        }
+
+        // Codes_SRS_DEVICECLIENTCONFIG_21_061: [The function shall set the value of deviceMethodTimeoutMillis.]
+        this.deviceMethodTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Getter for the number of invocations of a device method which may run at
+     * the same time.
+     *
+     * @param methodName the name of the device method.
+     * @return the concurrency limit of the method, or 0 if it is not limited.
+     */
+    public int getDeviceMethodConcurrencyLimit(String methodName)
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_062: [The function shall return the concurrency limit set for methodName, or 0 if none was set.]
+        Integer limit = (methodName == null) ? null : this.deviceMethodConcurrencyLimits.get(methodName);
+        return (limit == null) ? 0 : limit;
+    }
+
+    /**
+     * Setter for the number of invocations of a device method which may run at
+     * the same time. Further invocations wait for a running one to end.
+     *
+     * @param methodName the name of the device method.
+     * @param limit the concurrency limit of the method.
+     * @throws IllegalArgumentException if methodName is null or empty, or limit is less than 1.
+     */
+    public void setDeviceMethodConcurrencyLimit(String methodName, int limit)
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_063: [If methodName is null or empty, or limit is less than 1, the function shall throw IllegalArgumentException.]
+        if (methodName == null || methodName.isEmpty())
+        {
+            throw new IllegalArgumentException("methodName cannot be null or empty");
+        }
+        if (limit < 1)
+        {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+
+        // Codes_SRS_DEVICECLIENTCONFIG_21_064: [The function shall set the concurrency limit of methodName.]
+        this.deviceMethodConcurrencyLimits.put(methodName, limit);
+    }
+
+    /**
+     * Getter for the manager which caches and renews the SAS token of this
+     * device client.
+     *
+     * @return the SAS token manager.
+     */
+    public synchronized IotHubSasTokenManager getSasTokenManager()
+    {
+        // Codes_SRS_DEVICECLIENTCONFIG_21_056: [The function shall create the IotHubSasTokenManager for this config on its first call, and return the same one afterwards.]
+        if (this.sasTokenManager == null)
+        {
+            this.sasTokenManager = new IotHubSasTokenManager(this);
+        }
+
+        return this.sasTokenManager;
+    }
+
     /**
      * Getter for the timeout, in seconds, for the lock that the client has on a
      * received message.
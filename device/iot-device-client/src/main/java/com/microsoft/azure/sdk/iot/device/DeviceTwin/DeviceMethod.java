@@ -6,8 +6,41 @@ package com.microsoft.azure.sdk.iot.device.DeviceTwin;
 import com.microsoft.azure.sdk.iot.deps.serializer.Method;
 import com.microsoft.azure.sdk.iot.device.*;
 
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public final class DeviceMethod
 {
+    /** The status sent to the IoT Hub when a device method does not respond within the configured timeout. */
+    public static final int METHOD_TIMEOUT_STATUS = 504;
+
+    /* The response deadlines of every device client in the process share one daemon thread. */
+    private static final ScheduledThreadPoolExecutor DEADLINE_EXECUTOR = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "azure-iot-sdk-device-method-timeout");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    static
+    {
+        DEADLINE_EXECUTOR.setRemoveOnCancelPolicy(true);
+    }
+
     private DeviceMethodCallback deviceMethodCallback;
     private Object deviceMethodCallbackContext;
     private IotHubEventCallback deviceMethodStatusCallback;
@@ -16,6 +49,8 @@ public final class DeviceMethod
 
     private boolean isSubscribed = false;
 
+    private final Map<String, MethodInvocations> methodInvocations = new HashMap<>();
+
     private DeviceClient client;
     private DeviceClientConfig config;
 
@@ -56,54 +91,28 @@ public final class DeviceMethod
                             {
                                 isSubscribed = true;
                             }
-                            try
+
+                            DeviceMethodInvocation invocation = new DeviceMethodInvocation(methodMessage);
+
+                            long timeoutMillis = config.getDeviceMethodTimeoutMillis();
+                            if (timeoutMillis > 0)
                             {
                                 /*
-                                **Codes_SRS_DEVICEMETHOD_25_008: [**If the message is of type DeviceMethod and DEVICE_OPERATION_METHOD_RECEIVE_REQUEST then user registered device method callback gets invoked providing the user with method name and payload along with the user context. **]**
+                                **Codes_SRS_DEVICEMETHOD_21_016: [**If a device method timeout is configured and the user callback has not returned when it expires, this method shall send a response with status METHOD_TIMEOUT_STATUS and the request id of the invoking message, and drop the late response of the user callback.**]**
                                  */
-                                DeviceMethodData responseData = deviceMethodCallback.call(methodMessage.getMethodName(), methodMessage.getBytes(), deviceMethodCallbackContext);
-                                /*
-                                **Codes_SRS_DEVICEMETHOD_25_010: [**User is expected to provide response message and status upon invoking the device method callback.**]**
-                                 */
-                                if (responseData != null)
-                                {
-                                    /*
-                                    **Codes_SRS_DEVICEMETHOD_25_011: [**If the user callback is successful and user has successfully provided the response message and status, then this method shall build a device method message of type DEVICE_OPERATION_METHOD_SEND_RESPONSE, serilize the user data by invoking Method from serializer and save the user data as payload in the message before sending it to IotHub via sendeventAsync before marking the result as complete**]**
-                                    **Codes_SRS_DEVICEMETHOD_25_015: [**User can provide null response message upon invoking the device method callback which will be serialized as is, before sending it to IotHub.**]**
-                                     */
-                                    Method methodObject = new Method(responseData.getResponseMessage());
-                                    DeviceMethodMessage responseMessage = new DeviceMethodMessage(methodObject.toJson().getBytes());
-                                    /*
-                                    **Codes_SRS_DEVICEMETHOD_25_012: [**The device method message sent to IotHub shall have same the request id as the invoking message.**]**
-                                     */
-                                    responseMessage.setRequestId(methodMessage.getRequestId());
-                                    /*
-                                    **Codes_SRS_DEVICEMETHOD_25_013: [**The device method message sent to IotHub shall have the status provided by the user as the message status.**]**
-                                     */
-                                    responseMessage.setStatus(String.valueOf(responseData.getStatus()));
-                                    responseMessage.setDeviceOperationType(DeviceOperations.DEVICE_OPERATION_METHOD_SEND_RESPONSE);
-
-                                    client.sendEventAsync(responseMessage, new deviceMethodRequestMessageCallback(), null);
-                                    result = IotHubMessageResult.COMPLETE;
-                                }
-                                else
-                                {
-                                    logger.LogInfo("User callback did not send any data for response");
-                                    result = IotHubMessageResult.REJECT;
-                                    /*
-                                    **Codes_SRS_DEVICEMETHOD_25_014: [**If the user invoked callback failed for any reason then the user shall be notified on the status callback registered by the user as ERROR before marking the status of the sent message as Rejected.**]**
-                                     */
-                                    deviceMethodStatusCallback.execute(iotHubStatus, deviceMethodStatusCallbackContext);
-                                }
+                                invocation.scheduleDeadline(timeoutMillis);
+                            }
+
+                            if (startInvocation(invocation))
+                            {
+                                result = dispatch(invocation);
                             }
-                            catch (Exception e)
+                            else
                             {
-                                logger.LogInfo("User callback did not succeed");
-                                result = IotHubMessageResult.REJECT;
                                 /*
-                                **Codes_SRS_DEVICEMETHOD_25_014: [**If the user invoked callback failed for any reason then the user shall be notified on the status callback registered by the user as ERROR before marking the status of the sent message as Rejected.**]**
+                                **Codes_SRS_DEVICEMETHOD_21_017: [**If the number of running invocations of the method reached its concurrency limit, this method shall queue the request, invoke it when a running invocation of the same method ends, and mark the result as complete.**]**
                                  */
-                                deviceMethodStatusCallback.execute(iotHubStatus, deviceMethodStatusCallbackContext);
+                                result = IotHubMessageResult.COMPLETE;
                             }
                         }
                         else
@@ -122,6 +131,217 @@ public final class DeviceMethod
         }
     }
 
+    private final class DeviceMethodInvocation implements Runnable
+    {
+        private final DeviceMethodMessage methodMessage;
+        private final AtomicBoolean responded = new AtomicBoolean(false);
+        private volatile ScheduledFuture<?> deadline = null;
+        private volatile IotHubMessageResult result = IotHubMessageResult.ABANDON;
+
+        private DeviceMethodInvocation(DeviceMethodMessage methodMessage)
+        {
+            this.methodMessage = methodMessage;
+        }
+
+        private void scheduleDeadline(final long timeoutMillis)
+        {
+            this.deadline = DEADLINE_EXECUTOR.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    logger.LogInfo("Device method %s did not respond within %d milliseconds", methodMessage.getMethodName(), timeoutMillis);
+                    sendResponse(DeviceMethodInvocation.this, new DeviceMethodData(METHOD_TIMEOUT_STATUS,
+                            "Device method " + methodMessage.getMethodName() + " did not respond within " + timeoutMillis + " milliseconds"));
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                if (!this.responded.get())
+                {
+                    this.result = invokeDeviceMethod(this);
+                }
+            }
+            finally
+            {
+                endInvocation(this);
+            }
+        }
+    }
+
+    /* Invocations running and waiting for one device method, bounded by its concurrency limit. */
+    private static final class MethodInvocations
+    {
+        private int running = 0;
+        private final Queue<DeviceMethodInvocation> waiting = new ArrayDeque<>();
+    }
+
+    private IotHubMessageResult invokeDeviceMethod(DeviceMethodInvocation invocation)
+    {
+        DeviceMethodMessage methodMessage = invocation.methodMessage;
+        IotHubStatusCode iotHubStatus = IotHubStatusCode.ERROR;
+        try
+        {
+            /*
+            **Codes_SRS_DEVICEMETHOD_25_008: [**If the message is of type DeviceMethod and DEVICE_OPERATION_METHOD_RECEIVE_REQUEST then user registered device method callback gets invoked providing the user with method name and payload along with the user context. **]**
+             */
+            DeviceMethodData responseData = deviceMethodCallback.call(methodMessage.getMethodName(), methodMessage.getBytes(), deviceMethodCallbackContext);
+            /*
+            **Codes_SRS_DEVICEMETHOD_25_010: [**User is expected to provide response message and status upon invoking the device method callback.**]**
+             */
+            if (responseData != null)
+            {
+                sendResponse(invocation, responseData);
+                return IotHubMessageResult.COMPLETE;
+            }
+            else
+            {
+                logger.LogInfo("User callback did not send any data for response");
+                /*
+                **Codes_SRS_DEVICEMETHOD_25_014: [**If the user invoked callback failed for any reason then the user shall be notified on the status callback registered by the user as ERROR before marking the status of the sent message as Rejected.**]**
+                 */
+                deviceMethodStatusCallback.execute(iotHubStatus, deviceMethodStatusCallbackContext);
+                return IotHubMessageResult.REJECT;
+            }
+        }
+        catch (Exception e)
+        {
+            logger.LogInfo("User callback did not succeed");
+            /*
+            **Codes_SRS_DEVICEMETHOD_25_014: [**If the user invoked callback failed for any reason then the user shall be notified on the status callback registered by the user as ERROR before marking the status of the sent message as Rejected.**]**
+             */
+            deviceMethodStatusCallback.execute(iotHubStatus, deviceMethodStatusCallbackContext);
+            return IotHubMessageResult.REJECT;
+        }
+    }
+
+    private void sendResponse(DeviceMethodInvocation invocation, DeviceMethodData responseData)
+    {
+        if (!invocation.responded.compareAndSet(false, true))
+        {
+            logger.LogInfo("Dropping the late response of device method %s", invocation.methodMessage.getMethodName());
+            return;
+        }
+
+        ScheduledFuture<?> deadline = invocation.deadline;
+        if (deadline != null)
+        {
+            deadline.cancel(false);
+        }
+
+        /*
+        **Codes_SRS_DEVICEMETHOD_25_011: [**If the user callback is successful and user has successfully provided the response message and status, then this method shall build a device method message of type DEVICE_OPERATION_METHOD_SEND_RESPONSE, serilize the user data by invoking Method from serializer and save the user data as payload in the message before sending it to IotHub via sendeventAsync before marking the result as complete**]**
+        **Codes_SRS_DEVICEMETHOD_25_015: [**User can provide null response message upon invoking the device method callback which will be serialized as is, before sending it to IotHub.**]**
+         */
+        Method methodObject = new Method(responseData.getResponseMessage());
+        DeviceMethodMessage responseMessage = new DeviceMethodMessage(methodObject.toJson().getBytes());
+        /*
+        **Codes_SRS_DEVICEMETHOD_25_012: [**The device method message sent to IotHub shall have same the request id as the invoking message.**]**
+         */
+        responseMessage.setRequestId(invocation.methodMessage.getRequestId());
+        /*
+        **Codes_SRS_DEVICEMETHOD_25_013: [**The device method message sent to IotHub shall have the status provided by the user as the message status.**]**
+         */
+        responseMessage.setStatus(String.valueOf(responseData.getStatus()));
+        responseMessage.setDeviceOperationType(DeviceOperations.DEVICE_OPERATION_METHOD_SEND_RESPONSE);
+
+        try
+        {
+            client.sendEventAsync(responseMessage, new deviceMethodRequestMessageCallback(), null);
+        }
+        catch (IllegalStateException e)
+        {
+            logger.LogError("Could not send the response of device method %s: %s", invocation.methodMessage.getMethodName(), e.getMessage());
+        }
+    }
+
+    /* Takes a slot of the concurrency limit of the method, or queues the invocation if none is free. */
+    private boolean startInvocation(DeviceMethodInvocation invocation)
+    {
+        String methodName = invocation.methodMessage.getMethodName();
+        int limit = config.getDeviceMethodConcurrencyLimit(methodName);
+        synchronized (methodInvocations)
+        {
+            MethodInvocations invocations = methodInvocations.get(methodName);
+            if (invocations == null)
+            {
+                invocations = new MethodInvocations();
+                methodInvocations.put(methodName, invocations);
+            }
+
+            if (limit > 0 && invocations.running >= limit)
+            {
+                invocations.waiting.add(invocation);
+                return false;
+            }
+
+            invocations.running++;
+            return true;
+        }
+    }
+
+    /* Hands the slot of an ended invocation to the oldest waiting invocation of the same method, if any. */
+    private void endInvocation(DeviceMethodInvocation invocation)
+    {
+        String methodName = invocation.methodMessage.getMethodName();
+        DeviceMethodInvocation next;
+        synchronized (methodInvocations)
+        {
+            MethodInvocations invocations = methodInvocations.get(methodName);
+            next = invocations.waiting.poll();
+            if (next == null)
+            {
+                invocations.running--;
+                if (invocations.running == 0)
+                {
+                    methodInvocations.remove(methodName);
+                }
+            }
+        }
+
+        if (next != null)
+        {
+            dispatch(next);
+        }
+    }
+
+    private IotHubMessageResult dispatch(DeviceMethodInvocation invocation)
+    {
+        Executor executor = config.getDeviceMethodExecutor();
+        if (executor == null)
+        {
+            /*
+            **Codes_SRS_DEVICEMETHOD_21_018: [**If no device method executor is configured, this method shall invoke the user callback on the calling thread and return its result.**]**
+             */
+            invocation.run();
+            return invocation.result;
+        }
+
+        try
+        {
+            /*
+            **Codes_SRS_DEVICEMETHOD_21_019: [**If a device method executor is configured, this method shall invoke the user callback on the executor and mark the result as complete.**]**
+             */
+            executor.execute(invocation);
+            return IotHubMessageResult.COMPLETE;
+        }
+        catch (RejectedExecutionException e)
+        {
+            /*
+            **Codes_SRS_DEVICEMETHOD_21_020: [**If the executor rejects the invocation, the user shall be notified on the status callback as ERROR and the result marked as Rejected.**]**
+             */
+            logger.LogError("Device method executor rejected %s", invocation.methodMessage.getMethodName());
+            endInvocation(invocation);
+            deviceMethodStatusCallback.execute(IotHubStatusCode.ERROR, deviceMethodStatusCallbackContext);
+            return IotHubMessageResult.REJECT;
+        }
+    }
+
     private final class deviceMethodRequestMessageCallback implements IotHubEventCallback
     {
         @Override
@@ -151,6 +151,16 @@ public class IotHubCertificateManager
         }
     }
 
+    /**
+     * Getter for the certificates used to communicate with IotHub, as PEM text
+     * @return The PEM text of the valid certificates, or null if none could be defined.
+     */
+    String getValidCert()
+    {
+        //Codes_SRS_IOTHUBCERTIFICATEMANAGER_21_012: [*This method shall return the valid certificate text.**]**
+        return this.validCert;
+    }
+
     /**
      * Setter for a valid certificate path provided by user
      * @param certPath The valid path where a certificate could be loaded from.
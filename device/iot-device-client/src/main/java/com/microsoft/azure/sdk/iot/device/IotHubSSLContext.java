@@ -70,6 +70,30 @@ public class IotHubSSLContext
         generateSSLContext(certManager);
     }
 
+    /**
+     * Creates a SSLContext for the IotHub trusting the certificates of the given certificate manager.
+     * @param certManager Certificate manager holding the certificates to be used to communicate with IotHub
+     * @throws NoSuchAlgorithmException   if no Provider supports a TrustManagerFactorySpi implementation for the specified protocol.
+     * @throws KeyStoreException  if no Provider supports a KeyStoreSpi implementation for the specified type or
+     *                            if the keystore has not been initialized,
+     *                            or the given alias already exists and does not identify an entry containing a trusted certificate,
+     *                            or this operation fails for some other reason.
+     * @throws KeyManagementException As per https://docs.oracle.com/javase/7/docs/api/java/security/KeyManagementException.html
+     * @throws IOException If the certificate provided was null or invalid
+     * @throws CertificateException As per https://docs.oracle.com/javase/7/docs/api/java/security/cert/CertificateException.html
+     */
+    IotHubSSLContext(IotHubCertificateManager certManager) throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException, CertificateException
+    {
+        if (certManager == null)
+        {
+            //Codes_SRS_IOTHUBSSLCONTEXT_21_018: [**The constructor shall throw IllegalArgumentException if the certificate manager is null.**]**
+            throw new IllegalArgumentException("Certificate manager cannot be null");
+        }
+
+        //Codes_SRS_IOTHUBSSLCONTEXT_21_019: [**The constructor shall create the SSL context with the certificates of the given certificate manager.**]**
+        generateSSLContext(certManager);
+    }
+
     private void generateSSLContext(IotHubCertificateManager certificate) throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException, CertificateException
     {
         //Codes_SRS_IOTHUBSSLCONTEXT_25_002: [**The constructor shall create default SSL context for TLSv1.2.**]**
@@ -0,0 +1,146 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+import java.io.IOException;
+import java.security.KeyManagementException;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Process wide cache of the IotHub SSL contexts, one per set of trusted certificates.
+ *
+ * <p>Building a context parses the certificates, fills a key store and seeds a
+ * secure random, which adds up when many clients start at once. Sharing the
+ * context also shares its TLS client session cache, so MQTT, AMQP and HTTPS
+ * connections to the same IotHub resume an existing session instead of doing a
+ * full handshake, across reconnects and across devices.
+ *
+ * <p>Each client acquires a context when it opens and releases it when it
+ * closes. A context is dropped from the cache when its last client releases it.
+ */
+public final class IotHubSSLContextCache
+{
+    private static final Map<String, CachedContext> contexts = new HashMap<>();
+
+    private IotHubSSLContextCache()
+    {
+    }
+
+    /**
+     * Acquires the SSL context trusting the default IotHub certificates.
+     *
+     * @return the shared IotHubSSLContext.
+     * @throws NoSuchAlgorithmException if the SSL context could not be created.
+     * @throws KeyStoreException if the SSL context could not be created.
+     * @throws KeyManagementException if the SSL context could not be created.
+     * @throws IOException if the certificates could not be read.
+     * @throws CertificateException if the certificates could not be parsed.
+     */
+    static IotHubSSLContext acquire() throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException, CertificateException
+    {
+        // Codes_SRS_IOTHUBSSLCONTEXTCACHE_21_001: [The function shall acquire the SSL context for the default certificates.]
+        return acquire(new IotHubCertificateManager());
+    }
+
+    /**
+     * Acquires the SSL context trusting the given certificates.
+     *
+     * @param cert the certificates, or the path to the file holding them.
+     * @param isPath if {@code cert} is a path or not.
+     * @return the shared IotHubSSLContext.
+     * @throws IllegalArgumentException if the cert is null.
+     * @throws NoSuchAlgorithmException if the SSL context could not be created.
+     * @throws KeyStoreException if the SSL context could not be created.
+     * @throws KeyManagementException if the SSL context could not be created.
+     * @throws IOException if the certificates could not be read.
+     * @throws CertificateException if the certificates could not be parsed.
+     */
+    static IotHubSSLContext acquire(String cert, boolean isPath) throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException, CertificateException
+    {
+        if (cert == null)
+        {
+            // Codes_SRS_IOTHUBSSLCONTEXTCACHE_21_002: [If the cert is null, the function shall throw IllegalArgumentException.]
+            throw new IllegalArgumentException("Cert cannot be null");
+        }
+
+        // Codes_SRS_IOTHUBSSLCONTEXTCACHE_21_003: [The function shall read the certificates from the path if isPath is true, or use the cert itself otherwise.]
+        IotHubCertificateManager certManager = new IotHubCertificateManager();
+        if (isPath)
+        {
+            certManager.setValidCertPath(cert);
+        }
+        else
+        {
+            certManager.setValidCert(cert);
+        }
+
+        return acquire(certManager);
+    }
+
+    /**
+     * Releases a context acquired from this cache. Contexts that do not come
+     * from the cache are ignored.
+     *
+     * @param iotHubSSLContext the context to release, can be {@code null}.
+     */
+    static synchronized void release(IotHubSSLContext iotHubSSLContext)
+    {
+        if (iotHubSSLContext == null)
+        {
+            // Codes_SRS_IOTHUBSSLCONTEXTCACHE_21_007: [If the context is null, the function shall do nothing.]
+            return;
+        }
+
+        Iterator<CachedContext> iterator = contexts.values().iterator();
+        while (iterator.hasNext())
+        {
+            CachedContext cachedContext = iterator.next();
+            if (cachedContext.context == iotHubSSLContext)
+            {
+                // Codes_SRS_IOTHUBSSLCONTEXTCACHE_21_008: [The function shall remove the context from the cache when its last reference is released.]
+                cachedContext.references--;
+                if (cachedContext.references == 0)
+                {
+                    iterator.remove();
+                }
+                return;
+            }
+        }
+
+        // Codes_SRS_IOTHUBSSLCONTEXTCACHE_21_009: [If the context is not in the cache, the function shall do nothing.]
+    }
+
+    private static synchronized IotHubSSLContext acquire(IotHubCertificateManager certManager) throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException, CertificateException
+    {
+        // Codes_SRS_IOTHUBSSLCONTEXTCACHE_21_004: [The function shall key the cache by the text of the trusted certificates.]
+        String trustedCertificates = certManager.getValidCert();
+        CachedContext cachedContext = contexts.get(trustedCertificates);
+        if (cachedContext == null)
+        {
+            // Codes_SRS_IOTHUBSSLCONTEXTCACHE_21_005: [If there is no context for the certificates, the function shall create one and cache it.]
+            cachedContext = new CachedContext(new IotHubSSLContext(certManager));
+            contexts.put(trustedCertificates, cachedContext);
+        }
+
+        // Codes_SRS_IOTHUBSSLCONTEXTCACHE_21_006: [The function shall count one more reference to the context and return it.]
+        cachedContext.references++;
+        return cachedContext.context;
+    }
+
+    private static final class CachedContext
+    {
+        private final IotHubSSLContext context;
+        private int references;
+
+        private CachedContext(IotHubSSLContext context)
+        {
+            this.context = context;
+        }
+    }
+}
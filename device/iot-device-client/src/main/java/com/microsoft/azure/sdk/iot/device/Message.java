@@ -5,9 +5,11 @@ package com.microsoft.azure.sdk.iot.device;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Message
 {
@@ -15,6 +17,23 @@ public class Message
 
     public static final Charset DEFAULT_IOTHUB_MESSAGE_CHARSET = StandardCharsets.UTF_8;
 
+    /**
+     * Generated ids share a random UUID drawn once per process, so only the first
+     * message pays for the SecureRandom. The node field of each id is offset by a
+     * sequence number, which keeps the ids of 2^48 messages unique.
+     */
+    private static final UUID GENERATED_ID_BASE = UUID.randomUUID();
+    private static final long GENERATED_ID_NODE_MASK = 0x0000FFFFFFFFFFFFL;
+    private static final AtomicLong generatedIdSequence = new AtomicLong();
+
+    private static final CustomLogger logger = new CustomLogger(Message.class);
+
+    /**
+     * Messages with up to this many properties find them by a case-insensitive scan,
+     * which is cheaper than hashing for a few properties.
+     */
+    private static final int PROPERTY_INDEX_THRESHOLD = 8;
+
 
     // ----- Data Fields -----
 
@@ -108,9 +127,16 @@ public class Message
     private MessageType messageType;
 
     /**
-     * User-defined properties.
+     * User-defined properties, in the order they were first set.
      */
     private ArrayList<MessageProperty> properties;
+    private List<MessageProperty> readOnlyProperties;
+
+    /**
+     * Positions of the user-defined properties by lower case name, once there are
+     * more than PROPERTY_INDEX_THRESHOLD of them.
+     */
+    private HashMap<String, Integer> propertyIndex;
 
     /// <summary>
     /// The message body
@@ -121,7 +147,6 @@ public class Message
      * Stream that will provide the bytes for the body of the
      */
     private ByteArrayInputStream bodyStream;
-    private CustomLogger logger;
 
     // ----- Constructors -----
 
@@ -197,6 +222,22 @@ public class Message
         return bodyClone;
     }
 
+    /**
+     * A read-only view of the body, which does not copy it.
+     * @return A read-only buffer over this Message body, or null if the Message has no body.
+     */
+    public ByteBuffer getBodyBuffer()
+    {
+        // Codes_SRS_MESSAGE_21_037: [The function shall return a read-only buffer over the message body, without copying it.]
+        if (this.body == null)
+        {
+            // Codes_SRS_MESSAGE_21_038: [If the message has no body, the function shall return null.]
+            return null;
+        }
+
+        return ByteBuffer.wrap(this.body).asReadOnlyBuffer();
+    }
+
     /**
      * Gets the values of user-defined properties of this Message.
      * @param name Name of the user-defined property to search for.
@@ -204,22 +245,15 @@ public class Message
      */
     public String getProperty(String name) {
 
-        MessageProperty messageProperty = null;
-
-        for (MessageProperty currentMessageProperty: this.properties) {
-            if (currentMessageProperty.hasSameName(name)) {
-                messageProperty = currentMessageProperty;
-                break;
-            }
-        }
+        int propertyPosition = findProperty(name);
 
         // Codes_SRS_MESSAGE_11_034: [If no value associated with the property name is found, the function shall return null.]
-        if (messageProperty == null) {
+        if (propertyPosition < 0) {
             return null;
         }
 
         // Codes_SRS_MESSAGE_11_032: [The function shall return the value associated with the message property name, where the name can be either the HTTPS or AMQPS property name.]
-        return messageProperty.getValue();
+        return this.properties.get(propertyPosition).getValue();
     }
 
     /**
@@ -240,21 +274,26 @@ public class Message
         }
 
         // Codes_SRS_MESSAGE_11_026: [The function shall set the message property to the given value.]
-        MessageProperty messageProperty = null;
+        MessageProperty messageProperty = new MessageProperty(name, value);
+        logger.LogInfo("Setting message property with name=%s and value=%s, method name is %s ", name, value, CustomLogger.CALLING_METHOD_NAME);
 
-        for (MessageProperty currentMessageProperty: this.properties) {
-            if (currentMessageProperty.hasSameName(name)) {
-                messageProperty = currentMessageProperty;
-                break;
-            }
+        int propertyPosition = findProperty(name);
+        if (propertyPosition >= 0) {
+            // Codes_SRS_MESSAGE_21_042: [If the property is already set, the function shall replace its value and keep its position.]
+            this.properties.set(propertyPosition, messageProperty);
         }
-
-        if (messageProperty != null) {
-            this.properties.remove(messageProperty);
+        else {
+            this.properties.add(messageProperty);
+            if (this.propertyIndex != null) {
+                this.propertyIndex.put(name.toLowerCase(Locale.ROOT), this.properties.size() - 1);
+            }
+            else if (this.properties.size() > PROPERTY_INDEX_THRESHOLD) {
+                this.propertyIndex = new HashMap<>();
+                for (int i = 0; i < this.properties.size(); i++) {
+                    this.propertyIndex.put(this.properties.get(i).getName().toLowerCase(Locale.ROOT), i);
+                }
+            }
         }
-
-        logger.LogInfo("Setting message property with name=%s and value=%s, method name is %s ", name, value, logger.getMethodName());
-        this.properties.add(new MessageProperty(name, value));
     }
 
     /**
@@ -267,19 +306,68 @@ public class Message
         return properties.toArray(new MessageProperty[this.properties.size()]);
     }
 
+    /**
+     * Returns a read-only view of the message properties, in the order they were
+     * set. Unlike {@link #getProperties()}, it does not copy them.
+     *
+     * @return a read-only view of the message properties.
+     */
+    public List<MessageProperty> getPropertyList() {
+        // Codes_SRS_MESSAGE_21_041: [The function shall return a read-only view of the message properties, without copying them.]
+        if (this.readOnlyProperties == null) {
+            this.readOnlyProperties = Collections.unmodifiableList(this.properties);
+        }
+
+        return this.readOnlyProperties;
+    }
+
     // ----- Private Methods -----
 
     /**
      * Internal initializer method for a new Message instance.
      */
     private void initialize() {
-        this.lockToken = UUID.randomUUID().toString();
-        this.messageId = UUID.randomUUID().toString();
-        this.correlationId = UUID.randomUUID().toString();
+        // Codes_SRS_MESSAGE_21_039: [The message shall be created with a unique generated messageId, which the getter returns until another one is set.]
+        this.messageId = generateId();
+        // Codes_SRS_MESSAGE_21_040: [The message shall be created with a unique generated correlationId, which the getter returns until another one is set.]
+        this.correlationId = generateId();
         this.feedbackStatusCode = FeedbackStatusCodeEnum.none;
         this.ack = FeedbackStatusCodeEnum.none;
         this.properties = new ArrayList<MessageProperty>();
-        this.logger = new CustomLogger(this.getClass());
+    }
+
+    /**
+     * Returns the position of the property with the given name, compared in a
+     * case-insensitive manner, or -1 if the property is not set.
+     */
+    private int findProperty(String name) {
+        if (name == null) {
+            return -1;
+        }
+
+        if (this.propertyIndex != null) {
+            Integer propertyPosition = this.propertyIndex.get(name.toLowerCase(Locale.ROOT));
+            return (propertyPosition == null) ? -1 : propertyPosition;
+        }
+
+        for (int i = 0; i < this.properties.size(); i++) {
+            if (this.properties.get(i).hasSameName(name)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns a new unique id, in the UUID format.
+     */
+    private static String generateId()
+    {
+        long leastSignificantBits = GENERATED_ID_BASE.getLeastSignificantBits();
+        long node = (leastSignificantBits + generatedIdSequence.incrementAndGet()) & GENERATED_ID_NODE_MASK;
+        return new UUID(GENERATED_ID_BASE.getMostSignificantBits(),
+                (leastSignificantBits & ~GENERATED_ID_NODE_MASK) | node).toString();
     }
 
     /**
@@ -301,7 +389,7 @@ public class Message
             long currentTime = System.currentTimeMillis();
             if (currentTime > expiryTime)
             {
-                logger.LogWarn("The message with messageid %s expired on %s, method name is %s ", this.getMessageId(), new Date(), logger.getMethodName());
+                logger.LogWarn("The message with messageid %s expired on %s, method name is %s ", this.getMessageId(), new Date(), CustomLogger.CALLING_METHOD_NAME);
                 messageExpired = true;
             }
             else
@@ -357,7 +445,7 @@ public class Message
     {
         long currentTime = System.currentTimeMillis();
         this.expiryTime = currentTime + timeOut;
-        logger.LogInfo("The message with messageid %s has expiry time as %s milliseconds and the message will expire on %s, method name is %s ", this.getMessageId(), timeOut, new Date(this.expiryTime), logger.getMethodName());
+        logger.LogInfo("The message with messageid %s has expiry time as %s milliseconds and the message will expire on %s, method name is %s ", this.getMessageId(), timeOut, new Date(this.expiryTime), CustomLogger.CALLING_METHOD_NAME);
     }
 
     /**
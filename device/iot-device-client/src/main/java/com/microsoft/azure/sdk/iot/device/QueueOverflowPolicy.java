@@ -0,0 +1,23 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+/**
+ * What the transport does with a new message when its bounded queue of
+ * messages waiting to be sent is full.
+ * <p>
+ * {@code BLOCK} makes the caller wait until there is room in the queue,
+ * {@code DROP_OLDEST} discards the message which has been waiting the longest,
+ * and {@code REJECT} discards the new message. The callback of a discarded
+ * message is invoked with {@link IotHubStatusCode#THROTTLED}.
+ * <p>
+ * {@code BLOCK} waits at most the SetQueueBlockTimeout option, after which the
+ * callback of the new message is invoked with {@link IotHubStatusCode#ERROR}.
+ * A message sent from a callback of the client is discarded instead of waiting,
+ * since that callback runs on the thread which sends the queued messages.
+ */
+public enum QueueOverflowPolicy
+{
+    BLOCK, DROP_OLDEST, REJECT
+}
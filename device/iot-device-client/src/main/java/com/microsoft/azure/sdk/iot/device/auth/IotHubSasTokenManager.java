@@ -0,0 +1,193 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.auth;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the current SAS token of one device client, so the transports do not
+ * sign a new token for every request. A token signed with the device key is
+ * renewed once the configured fraction of its lifetime has passed, and the
+ * registered {@link IotHubSasTokenRenewalListener}s are told about the new one.
+ */
+public final class IotHubSasTokenManager
+{
+    /* The renewals of every device client in the process share one daemon thread. */
+    private static final ScheduledExecutorService RENEWAL_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "azure-iot-sdk-sas-token-renewal");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /* A token is never renewed sooner than this after it was signed. */
+    private static final long MIN_RENEWAL_DELAY_MILLIS = 1000;
+
+    private static final CustomLogger logger = new CustomLogger(IotHubSasTokenManager.class);
+
+    private final DeviceClientConfig config;
+    private final List<IotHubSasTokenRenewalListener> listeners = new CopyOnWriteArrayList<>();
+
+    private String sasToken = null;
+    private long tokenValidSecs = 0;
+    private long renewalTimeMillis = 0;
+    private ScheduledFuture<?> pendingRenewal = null;
+
+    /**
+     * Constructor.
+     *
+     * @param config the device client config.
+     */
+    public IotHubSasTokenManager(DeviceClientConfig config)
+    {
+        // Codes_SRS_IOTHUBSASTOKENMANAGER_21_001: [The constructor shall throw IllegalArgumentException if the config is null.]
+        if (config == null)
+        {
+            throw new IllegalArgumentException("config cannot be null");
+        }
+
+        // Codes_SRS_IOTHUBSASTOKENMANAGER_21_002: [The constructor shall save the config.]
+        this.config = config;
+    }
+
+    /**
+     * Returns the current SAS token, signing a new one only if there is none
+     * yet or if the current one is due for renewal.
+     *
+     * @return the string representation of the SAS token.
+     */
+    public synchronized String getSasToken()
+    {
+        // Codes_SRS_IOTHUBSASTOKENMANAGER_21_003: [If there is no current token, or the token was signed with the device key
+        // and it is due for renewal or the token lifetime in the config changed, the function shall create a new IotHubSasToken
+        // valid for the token lifetime in the config.]
+        if ((this.sasToken == null) ||
+                (isRenewable() && ((System.currentTimeMillis() >= this.renewalTimeMillis) || (this.tokenValidSecs != this.config.getTokenValidSecs()))))
+        {
+            renew();
+        }
+
+        // Codes_SRS_IOTHUBSASTOKENMANAGER_21_004: [The function shall return the current token.]
+        return this.sasToken;
+    }
+
+    /**
+     * Registers a listener to be told about every renewed token. While there is
+     * a listener, the token is renewed in the background even if no request
+     * asks for it.
+     *
+     * @param listener the listener to be added.
+     */
+    public synchronized void addRenewalListener(IotHubSasTokenRenewalListener listener)
+    {
+        // Codes_SRS_IOTHUBSASTOKENMANAGER_21_005: [The function shall throw IllegalArgumentException if the listener is null.]
+        if (listener == null)
+        {
+            throw new IllegalArgumentException("listener cannot be null");
+        }
+
+        // Codes_SRS_IOTHUBSASTOKENMANAGER_21_006: [The function shall add the listener and, if the token was signed with the
+        // device key, schedule the renewal of the current token.]
+        this.listeners.add(listener);
+        if (isRenewable() && (this.pendingRenewal == null))
+        {
+            scheduleRenewal();
+        }
+    }
+
+    /**
+     * Unregisters a listener. The background renewal stops with the last listener.
+     *
+     * @param listener the listener to be removed.
+     */
+    public synchronized void removeRenewalListener(IotHubSasTokenRenewalListener listener)
+    {
+        // Codes_SRS_IOTHUBSASTOKENMANAGER_21_007: [The function shall remove the listener and, if there is no listener left,
+        // cancel the scheduled renewal.]
+        this.listeners.remove(listener);
+        if (this.listeners.isEmpty() && (this.pendingRenewal != null))
+        {
+            this.pendingRenewal.cancel(false);
+            this.pendingRenewal = null;
+        }
+    }
+
+    /**
+     * Tokens given in the config cannot be renewed, only the ones signed with the device key.
+     */
+    private boolean isRenewable()
+    {
+        return this.config.getDeviceKey() != null;
+    }
+
+    private void renew()
+    {
+        long now = System.currentTimeMillis();
+        this.tokenValidSecs = this.config.getTokenValidSecs();
+        this.sasToken = new IotHubSasToken(this.config, now / 1000L + this.tokenValidSecs + 1L).toString();
+        this.renewalTimeMillis = now + Math.max(MIN_RENEWAL_DELAY_MILLIS,
+                (long) (this.tokenValidSecs * 1000L * this.config.getSasTokenRenewalFraction()));
+    }
+
+    private void scheduleRenewal()
+    {
+        getSasToken();
+        long delay = Math.max(0, this.renewalTimeMillis - System.currentTimeMillis());
+        this.pendingRenewal = RENEWAL_EXECUTOR.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                renewAndNotify();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void renewAndNotify()
+    {
+        String renewedToken;
+        synchronized (this)
+        {
+            if (this.listeners.isEmpty())
+            {
+                return;
+            }
+
+            // Codes_SRS_IOTHUBSASTOKENMANAGER_21_008: [When the renewal is due, the manager shall create a new token and
+            // schedule its renewal.]
+            renew();
+            renewedToken = this.sasToken;
+            scheduleRenewal();
+        }
+
+        // Codes_SRS_IOTHUBSASTOKENMANAGER_21_009: [The manager shall tell every listener about the new token. A listener
+        // which throws shall not keep the others from being told, and its exception shall be logged.]
+        for (IotHubSasTokenRenewalListener listener : this.listeners)
+        {
+            try
+            {
+                listener.onSasTokenRenewed(renewedToken);
+            }
+            catch (Exception e)
+            {
+                // the listener keeps its previous token until it reconnects
+                logger.LogError("SAS token renewal listener %s failed, method name is %s ", e, listener, CustomLogger.CALLING_METHOD_NAME);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.auth;
+
+/**
+ * An interface for the transports which keep a session open with the SAS token
+ * they authenticated with.
+ *
+ * The {@link IotHubSasTokenManager} calls
+ * {@link IotHubSasTokenRenewalListener#onSasTokenRenewed(String)} when it
+ * renews the token, before the previous one expires.
+ */
+public interface IotHubSasTokenRenewalListener
+{
+    /**
+     * Called when the SAS token was renewed.
+     *
+     * @param sasToken the string representation of the new SAS token.
+     */
+    void onSasTokenRenewed(String sasToken);
+}
@@ -75,4 +75,20 @@ public interface IotHubTransport extends Closeable
      * and {@code false} otherwise.
      */
     boolean isEmpty();
+
+    /**
+     * Returns the number of messages waiting to be sent, so producers can
+     * throttle before the queue fills up.
+     *
+     * @return the number of messages waiting to be sent.
+     */
+    int getQueuedMessageCount();
+
+    /**
+     * Returns the number of messages sent to the IoT Hub which were not
+     * acknowledged yet.
+     *
+     * @return the number of messages in progress.
+     */
+    int getInProgressMessageCount();
 }
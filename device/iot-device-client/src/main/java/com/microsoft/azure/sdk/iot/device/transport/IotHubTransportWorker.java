@@ -0,0 +1,163 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+
+/**
+ * Event driven alternative to scheduling {@link IotHubSendTask} and {@link IotHubReceiveTask}
+ * at a fixed rate. The worker sleeps until the client or the transport signals new work, so an
+ * idle client does not wake up at all. Meant to be run once on a dedicated thread.
+ */
+public final class IotHubTransportWorker implements Runnable
+{
+    private final IotHubTransport transport;
+    private final IotHubSendTask sendTask;
+    private final IotHubReceiveTask receiveTask;
+    private final long sendRetryPeriodMillis;
+    private final long receivePeriodMillis;
+
+    private final Object workLock = new Object();
+    private boolean sendPending = true;
+    private int pendingReceives = 0;
+    private boolean stopped = false;
+
+    /**
+     * Private logger for class
+     */
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
+    /**
+     * Constructor.
+     *
+     * @param transport the transport whose queues are to be processed.
+     * @param sendRetryPeriodMillis the number of milliseconds to wait before retrying while
+     * the transport still has messages or callbacks outstanding.
+     * @param receivePeriodMillis the number of milliseconds between polls for received messages,
+     * or 0 if the transport signals every message it receives.
+     */
+    public IotHubTransportWorker(IotHubTransport transport, long sendRetryPeriodMillis, long receivePeriodMillis)
+    {
+        // Codes_SRS_IOTHUBTRANSPORTWORKER_21_001: [If the transport is null, the constructor shall throw an IllegalArgumentException.]
+        if (transport == null)
+        {
+            throw new IllegalArgumentException("Parameter 'transport' must not be null");
+        }
+
+        // Codes_SRS_IOTHUBTRANSPORTWORKER_21_002: [If sendRetryPeriodMillis is not positive or receivePeriodMillis is negative, the constructor shall throw an IllegalArgumentException.]
+        if (sendRetryPeriodMillis <= 0 || receivePeriodMillis < 0)
+        {
+            throw new IllegalArgumentException("Send retry period must be positive and receive period must not be negative");
+        }
+
+        // Codes_SRS_IOTHUBTRANSPORTWORKER_21_003: [The constructor shall save the transport and create the send and receive tasks for it.]
+        this.transport = transport;
+        this.sendTask = new IotHubSendTask(transport);
+        this.receiveTask = new IotHubReceiveTask(transport);
+        this.sendRetryPeriodMillis = sendRetryPeriodMillis;
+        this.receivePeriodMillis = receivePeriodMillis;
+    }
+
+    /**
+     * Signals that a message was queued to be sent, or that a sent message
+     * was acknowledged and its callback is ready to be invoked.
+     */
+    public void signalSend()
+    {
+        synchronized (this.workLock)
+        {
+            // Codes_SRS_IOTHUBTRANSPORTWORKER_21_004: [The function shall wake up the worker to run the send task.]
+            this.sendPending = true;
+            this.workLock.notifyAll();
+        }
+    }
+
+    /**
+     * Signals that a message was received from the IoT Hub.
+     */
+    public void signalReceive()
+    {
+        synchronized (this.workLock)
+        {
+            // Codes_SRS_IOTHUBTRANSPORTWORKER_21_005: [The function shall wake up the worker to run the receive task once for each signal.]
+            this.pendingReceives++;
+            this.workLock.notifyAll();
+        }
+    }
+
+    /**
+     * Makes the worker return from {@link #run()} once its current round is done.
+     */
+    public void stop()
+    {
+        synchronized (this.workLock)
+        {
+            // Codes_SRS_IOTHUBTRANSPORTWORKER_21_006: [The function shall wake up the worker and make run return.]
+            this.stopped = true;
+            this.workLock.notifyAll();
+        }
+    }
+
+    public void run()
+    {
+        long nextReceivePollMillis = System.currentTimeMillis();
+        boolean sendOutstanding = true;
+
+        while (true)
+        {
+            int receiveRounds;
+            synchronized (this.workLock)
+            {
+                if (!this.stopped && !this.sendPending && this.pendingReceives == 0)
+                {
+                    // Codes_SRS_IOTHUBTRANSPORTWORKER_21_007: [If no work was signaled, the function shall wait until it is signaled, until the
+                    // send retry period elapses while the transport is not empty, or until the next receive poll is due.]
+                    long waitMillis = sendOutstanding ? this.sendRetryPeriodMillis : 0;
+                    if (this.receivePeriodMillis > 0)
+                    {
+                        long untilReceivePoll = Math.max(1, nextReceivePollMillis - System.currentTimeMillis());
+                        waitMillis = (waitMillis == 0) ? untilReceivePoll : Math.min(waitMillis, untilReceivePoll);
+                    }
+
+                    try
+                    {
+                        this.workLock.wait(waitMillis);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        logger.LogDebug("Transport worker interrupted while waiting for work", e);
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+
+                // Codes_SRS_IOTHUBTRANSPORTWORKER_21_008: [If the worker was stopped, the function shall return.]
+                if (this.stopped)
+                {
+                    return;
+                }
+
+                receiveRounds = this.pendingReceives;
+                this.pendingReceives = 0;
+                this.sendPending = false;
+            }
+
+            // Codes_SRS_IOTHUBTRANSPORTWORKER_21_009: [If the receive period is positive, the function shall also run the receive task once every receive period.]
+            if (this.receivePeriodMillis > 0 && System.currentTimeMillis() >= nextReceivePollMillis)
+            {
+                receiveRounds = Math.max(receiveRounds, 1);
+                nextReceivePollMillis = System.currentTimeMillis() + this.receivePeriodMillis;
+            }
+
+            // Codes_SRS_IOTHUBTRANSPORTWORKER_21_010: [On every wake up, the function shall run the send task, and then the receive task once for each pending receive.]
+            this.sendTask.run();
+            for (int i = 0; i < receiveRounds; i++)
+            {
+                this.receiveTask.run();
+            }
+
+            sendOutstanding = !this.transport.isEmpty();
+        }
+    }
+}
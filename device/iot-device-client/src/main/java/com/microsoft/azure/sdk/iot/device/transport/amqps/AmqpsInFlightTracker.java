@@ -0,0 +1,294 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.device.transport.IotHubOutboundPacket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tracks the messages sent to the IoT Hub which were not acknowledged yet,
+ * keyed by the delivery tag they were sent with. Unlike hash codes, delivery
+ * tags come from a counter, so they are unique for the lifetime of the
+ * connection and an acknowledgement is never correlated with the wrong message.
+ * <p>
+ * The packets are kept in an open addressing table of primitive {@code long}
+ * keys, so tracking a message does not allocate. Because the tags are
+ * increasing, the oldest unacknowledged message is always the one with the
+ * lowest tag, which lets expired messages be found without scanning the table.
+ */
+public final class AmqpsInFlightTracker
+{
+    private static final int MIN_CAPACITY = 16;
+
+    private final long timeoutMillis;
+
+    private long[] tags;
+    private long[] sentTimes;
+    private IotHubOutboundPacket[] packets;
+    private int size;
+
+    /** No tracked message has a tag lower than this one. */
+    private long lowestTag;
+    /** No tracked message has a tag higher than this one. */
+    private long highestTag;
+
+    /**
+     * Constructor.
+     *
+     * @param timeoutMillis the number of milliseconds after which a message
+     * which was not acknowledged is considered lost.
+     */
+    public AmqpsInFlightTracker(long timeoutMillis)
+    {
+        // Codes_SRS_AMQPSINFLIGHTTRACKER_21_001: [If timeoutMillis is not positive, the constructor shall throw an IllegalArgumentException.]
+        if (timeoutMillis <= 0)
+        {
+            throw new IllegalArgumentException("timeoutMillis must be positive");
+        }
+
+        // Codes_SRS_AMQPSINFLIGHTTRACKER_21_002: [The constructor shall create an empty tracker.]
+        this.timeoutMillis = timeoutMillis;
+        this.allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Starts tracking a message.
+     *
+     * @param deliveryTag the delivery tag the message was sent with. Must not be negative.
+     * @param packet the packet of the message.
+     * @param nowMillis the current time, in milliseconds.
+     */
+    public synchronized void put(long deliveryTag, IotHubOutboundPacket packet, long nowMillis)
+    {
+        // Codes_SRS_AMQPSINFLIGHTTRACKER_21_003: [If the delivery tag is negative or the packet is null, the function shall throw an IllegalArgumentException.]
+        if (deliveryTag < 0 || packet == null)
+        {
+            throw new IllegalArgumentException("deliveryTag must not be negative and packet must not be null");
+        }
+
+        if ((this.size + 1) * 2 > this.tags.length)
+        {
+            this.rehash(this.tags.length * 2);
+        }
+
+        // Codes_SRS_AMQPSINFLIGHTTRACKER_21_004: [The function shall save the packet and the time it was sent under the delivery tag, replacing any packet saved under the same tag.]
+        int index = this.indexOf(deliveryTag);
+        if (this.packets[index] == null)
+        {
+            if (this.size == 0)
+            {
+                this.lowestTag = deliveryTag;
+                this.highestTag = deliveryTag;
+            }
+            else
+            {
+                this.lowestTag = Math.min(this.lowestTag, deliveryTag);
+                this.highestTag = Math.max(this.highestTag, deliveryTag);
+            }
+            this.size++;
+        }
+
+        this.tags[index] = deliveryTag;
+        this.sentTimes[index] = nowMillis;
+        this.packets[index] = packet;
+    }
+
+    /**
+     * Stops tracking the message sent with the given delivery tag.
+     *
+     * @param deliveryTag the delivery tag the message was sent with.
+     *
+     * @return the packet of the message, or {@code null} if no message is tracked with this tag.
+     */
+    public synchronized IotHubOutboundPacket remove(long deliveryTag)
+    {
+        // Codes_SRS_AMQPSINFLIGHTTRACKER_21_005: [The function shall stop tracking the message sent with the delivery tag and return its packet,
+        // or return null if no message is tracked with this tag.]
+        int index = this.indexOf(deliveryTag);
+        IotHubOutboundPacket packet = this.packets[index];
+        if (packet != null)
+        {
+            this.delete(index);
+        }
+
+        return packet;
+    }
+
+    /**
+     * Stops tracking the messages which were not acknowledged within the timeout.
+     *
+     * @param nowMillis the current time, in milliseconds.
+     *
+     * @return the packets of the expired messages, oldest first.
+     */
+    public synchronized List<IotHubOutboundPacket> removeExpired(long nowMillis)
+    {
+        // Codes_SRS_AMQPSINFLIGHTTRACKER_21_006: [The function shall stop tracking the messages which were sent at least timeoutMillis
+        // before nowMillis, and return their packets ordered by delivery tag.]
+        List<IotHubOutboundPacket> expired = new ArrayList<>();
+        while (this.size > 0)
+        {
+            int index = this.indexOf(this.lowestTag);
+            if (this.packets[index] != null)
+            {
+                if (nowMillis - this.sentTimes[index] < this.timeoutMillis)
+                {
+                    break;
+                }
+
+                expired.add(this.packets[index]);
+                this.delete(index);
+            }
+
+            this.lowestTag++;
+        }
+
+        return expired;
+    }
+
+    /**
+     * Stops tracking all the messages.
+     *
+     * @return the packets of all the tracked messages, ordered by delivery tag.
+     */
+    public synchronized List<IotHubOutboundPacket> removeAll()
+    {
+        // Codes_SRS_AMQPSINFLIGHTTRACKER_21_007: [The function shall stop tracking all the messages and return their packets ordered by delivery tag.]
+        List<IotHubOutboundPacket> all = new ArrayList<>(this.size);
+        if (this.size > 0 && this.highestTag - this.lowestTag < this.tags.length)
+        {
+            for (long tag = this.lowestTag; tag <= this.highestTag; tag++)
+            {
+                int index = this.indexOf(tag);
+                if (this.packets[index] != null)
+                {
+                    all.add(this.packets[index]);
+                }
+            }
+        }
+        else if (this.size > 0)
+        {
+            // the tags are too sparse to walk them, so sort the table instead
+            long[] sortedTags = new long[this.size];
+            int count = 0;
+            for (int i = 0; i < this.packets.length; i++)
+            {
+                if (this.packets[i] != null)
+                {
+                    sortedTags[count++] = this.tags[i];
+                }
+            }
+            Arrays.sort(sortedTags);
+            for (long tag : sortedTags)
+            {
+                all.add(this.packets[this.indexOf(tag)]);
+            }
+        }
+
+        this.allocate(MIN_CAPACITY);
+        return all;
+    }
+
+    /**
+     * Returns the number of tracked messages.
+     *
+     * @return the number of messages which were sent but not acknowledged yet.
+     */
+    public synchronized int size()
+    {
+        // Codes_SRS_AMQPSINFLIGHTTRACKER_21_008: [The function shall return the number of tracked messages.]
+        return this.size;
+    }
+
+    /**
+     * Returns {@code true} if no message is tracked.
+     *
+     * @return {@code true} if no message is tracked, and {@code false} otherwise.
+     */
+    public synchronized boolean isEmpty()
+    {
+        // Codes_SRS_AMQPSINFLIGHTTRACKER_21_009: [The function shall return true if no message is tracked, and false otherwise.]
+        return this.size == 0;
+    }
+
+    private void allocate(int capacity)
+    {
+        this.tags = new long[capacity];
+        this.sentTimes = new long[capacity];
+        this.packets = new IotHubOutboundPacket[capacity];
+        this.size = 0;
+    }
+
+    private void rehash(int capacity)
+    {
+        long[] oldTags = this.tags;
+        long[] oldSentTimes = this.sentTimes;
+        IotHubOutboundPacket[] oldPackets = this.packets;
+        int oldSize = this.size;
+
+        this.allocate(capacity);
+        for (int i = 0; i < oldPackets.length; i++)
+        {
+            if (oldPackets[i] != null)
+            {
+                int index = this.indexOf(oldTags[i]);
+                this.tags[index] = oldTags[i];
+                this.sentTimes[index] = oldSentTimes[i];
+                this.packets[index] = oldPackets[i];
+            }
+        }
+        this.size = oldSize;
+    }
+
+    /**
+     * Returns the slot holding the tag, or the empty slot where it would be inserted.
+     */
+    private int indexOf(long tag)
+    {
+        int mask = this.tags.length - 1;
+        int index = mix(tag) & mask;
+        while (this.packets[index] != null && this.tags[index] != tag)
+        {
+            index = (index + 1) & mask;
+        }
+
+        return index;
+    }
+
+    /**
+     * Empties the slot, shifting back the entries which probed past it so
+     * that lookups never need tombstones.
+     */
+    private void delete(int index)
+    {
+        int mask = this.tags.length - 1;
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (this.packets[next] != null)
+        {
+            int home = mix(this.tags[next]) & mask;
+            // move the entry into the hole unless its home slot lies cyclically in (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask))
+            {
+                this.tags[hole] = this.tags[next];
+                this.sentTimes[hole] = this.sentTimes[next];
+                this.packets[hole] = this.packets[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        this.packets[hole] = null;
+        this.size--;
+    }
+
+    private static int mix(long tag)
+    {
+        long h = tag * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
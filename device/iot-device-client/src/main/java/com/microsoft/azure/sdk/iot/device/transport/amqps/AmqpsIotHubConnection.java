@@ -7,12 +7,15 @@ package com.microsoft.azure.sdk.iot.device.transport.amqps;
 
 import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubSasToken;
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenRenewalListener;
 import com.microsoft.azure.sdk.iot.device.transport.State;
 import com.microsoft.azure.sdk.iot.device.transport.TransportUtils;
 import com.microsoft.azure.sdk.iot.deps.ws.impl.WebSocketImpl;
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Section;
 import org.apache.qpid.proton.amqp.messaging.Source;
 import org.apache.qpid.proton.amqp.messaging.Target;
 import org.apache.qpid.proton.amqp.transport.DeliveryState;
@@ -31,6 +34,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 
@@ -52,15 +56,42 @@ public final class AmqpsIotHubConnection extends BaseHandler
     private static final String receiveEndpointFormat = "/devices/%s/messages/devicebound";
     private final String receiveEndpoint;
 
-    private int linkCredit = -1;
+    /**
+     * The number of messages the IoT Hub is ready to accept on the sender link. The send thread
+     * consumes it while the reactor thread replaces it on every link flow, so it is only changed
+     * atomically.
+     */
+    private final AtomicInteger linkCredit = new AtomicInteger(-1);
     /** The {@link Delivery} tag. */
     private long nextTag = 0;
+
+    // Encoding buffer reused by every sendMessage call, the sender link copies the encoded bytes into the delivery.
+    private static final int MIN_ENCODE_BUFFER_SIZE = 1024;
+    // Room left next to the body for the header, properties and application properties of a message.
+    private static final int ENCODE_BUFFER_OVERHEAD = 1024;
+    // Largest encoding buffer kept between sends, a larger one only serves the message that needed it.
+    private static final int MAX_RETAINED_ENCODE_BUFFER_SIZE = 64 * 1024;
+    private byte[] encodeBuffer = new byte[MIN_ENCODE_BUFFER_SIZE];
     private static final String versionIdentifierKey = "com.microsoft:client-version";
     private static final String webSocketPath = "/$iothub/websocket";
     private static final String webSocketSubProtocol = "AMQPWSB10";
     private static final int amqpPort = 5671;
     private static final int amqpWebSocketPort = 443;
     private String sasToken;
+    // Renewed SAS token the reactor thread has not reconnected with yet, if any.
+    private volatile String renewedSasToken;
+
+    // Hands the renewed SAS tokens over to the reactor thread.
+    private final IotHubSasTokenRenewalListener sasTokenRenewalListener = new IotHubSasTokenRenewalListener()
+    {
+        @Override
+        public void onSasTokenRenewed(String sasToken)
+        {
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_21_008: [When the SAS token is renewed, the connection shall save it for the
+            // reactor thread.]
+            renewedSasToken = sasToken;
+        }
+    };
 
     private Sender sender;
     private Receiver receiver;
@@ -160,14 +191,14 @@ public final class AmqpsIotHubConnection extends BaseHandler
             logger.LogError(e);
             throw new IOException("Could not create Proton reactor");
         }
-        logger.LogInfo("AmqpsIotHubConnection object is created successfully using port %s in %s method ", useWebSockets ? amqpWebSocketPort : amqpPort, logger.getMethodName());
+        logger.LogInfo("AmqpsIotHubConnection object is created successfully using port %s in %s method ", useWebSockets ? amqpWebSocketPort : amqpPort, CustomLogger.CALLING_METHOD_NAME);
     }
 
     /**
      * Opens the {@link AmqpsIotHubConnection}.
      * <p>
      *     If the current connection is not open, this method
-     *     will create a new {@link IotHubSasToken}. This method will
+     *     will get the {@link IotHubSasToken} from the config. This method will
      *     start the {@link Reactor}, set the connection to open and make it ready for sending.
      * </p>
      *
@@ -205,6 +236,10 @@ public final class AmqpsIotHubConnection extends BaseHandler
                 logger.LogError(e);
                 throw new IOException("Waited too long for the connection to open.");
             }
+
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_21_007: [The function shall register with the IotHubSasTokenManager of the
+            // config to be told when the SAS token is renewed.]
+            this.config.getSasTokenManager().addRenewalListener(this.sasTokenRenewalListener);
         }
     }
 
@@ -217,6 +252,8 @@ public final class AmqpsIotHubConnection extends BaseHandler
      */
     public void close() throws IOException
     {
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_21_009: [The function shall stop listening to the SAS token renewals.]
+        this.config.getSasTokenManager().removeRenewalListener(this.sasTokenRenewalListener);
 
         closeAsync();
 
@@ -233,7 +270,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
         }
 
         if (this.executorService != null) {
-            logger.LogInfo("Shutdown of executor service has started, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Shutdown of executor service has started, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
             this.executorService.shutdown();
             try {
                 // Wait a while for existing tasks to terminate
@@ -249,18 +286,18 @@ public final class AmqpsIotHubConnection extends BaseHandler
                 // (Re-)Cancel if current thread also interrupted
                 this.executorService.shutdownNow();
             }
-            logger.LogInfo("Shutdown of executor service completed, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Shutdown of executor service completed, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
         }
     }
 
     private void openAsync() throws IOException
     {
-        // Codes_SRS_AMQPSIOTHUBCONNECTION_15_008: [The function shall create a new sasToken valid for the duration
-        // specified in config to be used for the communication with IoTHub.]
-        this.sasToken = new IotHubSasToken(this.config, System.currentTimeMillis() / 1000L +
-                this.config.getTokenValidSecs() + 1L).toString();
-				
-        logger.LogInfo("SAS Token is created successfully, method name is %s ", logger.getMethodName());
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_15_008: [The function shall get the sasToken to be used for the communication
+        // with IoTHub from the IotHubSasTokenManager of the config.]
+        this.sasToken = this.config.getSasTokenManager().getSasToken();
+        this.renewedSasToken = null;
+
+        logger.LogInfo("SAS Token is obtained successfully, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
 
         if (this.reactor == null)
         {
@@ -275,7 +312,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
         IotHubReactor iotHubReactor = new IotHubReactor(reactor);
         ReactorRunner reactorRunner = new ReactorRunner(iotHubReactor);
         executorService.submit(reactorRunner);
-        logger.LogInfo("Reactor is assigned to executor service, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Reactor is assigned to executor service, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
     }
 
     private void closeAsync()
@@ -298,74 +335,199 @@ public final class AmqpsIotHubConnection extends BaseHandler
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_014: [The function shall stop the Proton reactor.]
 
         this.reactor.stop();
-        logger.LogInfo("Proton reactor has been stopped, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Proton reactor has been stopped, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
+    }
+
+    /**
+     * Reserves the delivery tag of a message to be sent, so the caller can track the
+     * message before the IoT Hub has any chance to acknowledge it.
+     * @return The reserved delivery tag, never used by any other message of this connection.
+     */
+    public synchronized long reserveDeliveryTag()
+    {
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_21_013: [The function shall return the next value of the delivery tag counter and advance it.]
+        return this.nextTag++;
+    }
+
+    /**
+     * Creates a binary message using the given content and messageId. Sends the created message using the sender link,
+     * with a newly reserved delivery tag.
+     * @param message The message to be sent.
+     * @return The delivery tag of the message, or -1 if the connection is closed or there is not enough credit.
+     */
+    public long sendMessage(Message message)
+    {
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_21_014: [Without a delivery tag, the function shall send the message with a newly reserved delivery tag.]
+        return this.sendMessage(message, this.reserveDeliveryTag());
     }
 
     /**
      * Creates a binary message using the given content and messageId. Sends the created message using the sender link.
      * @param message The message to be sent.
-     * @return An {@link Integer} representing the hash of the message, or -1 if the connection is closed.
+     * @param tagValue The delivery tag reserved for the message by {@link #reserveDeliveryTag()}.
+     * @return The delivery tag of the message, or -1 if the connection is closed or there is not enough credit.
      */
-    public Integer sendMessage(Message message)
+    public long sendMessage(Message message, long tagValue)
     {
-        Integer deliveryHash;
+        long deliveryTag;
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is CLOSED or there is not enough
         // credit, the function shall return -1.]
-        if (this.state == State.CLOSED || this.linkCredit <= 0)
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_21_003: [The function shall consume one unit of the saved link credit for every message it sends.]
+        if (this.state == State.CLOSED || !this.consumeLinkCredit())
         {
-            deliveryHash = -1;
+            deliveryTag = -1;
         }
         else
         {
 
             // Codes_SRS_AMQPSIOTHUBCONNECTION_15_016: [The function shall encode the message and copy the contents to the byte buffer.]
-            byte[] msgData = new byte[1024];
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_21_001: [The function shall reuse the encoding buffer of the connection, and shall grow it
+            // up front to the size of the message body plus its overhead instead of waiting for the encoding to overflow.]
+            int expectedSize = estimateEncodedSize(message);
+            if (this.encodeBuffer.length < expectedSize)
+            {
+                this.encodeBuffer = new byte[expectedSize];
+            }
+            byte[] msgData = this.encodeBuffer;
             int length;
 
-            logger.LogInfo("Started encoding of message - entering in while loop, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Started encoding of message - entering in while loop, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
             while (true)
             {
                 try
                 {
                     length = message.encode(msgData, 0, msgData.length);
-                    logger.LogInfo("Completed encoding of message, length is %s - breaking the while loop to come out, method name is %s ", length, logger.getMethodName());
+                    logger.LogInfo("Completed encoding of message, length is %s - breaking the while loop to come out, method name is %s ", length, CustomLogger.CALLING_METHOD_NAME);
                     break;
                 }
                 catch (BufferOverflowException e)
                 {
                     logger.LogError(e);
                     msgData = new byte[msgData.length * 2];
+                    this.encodeBuffer = msgData;
                 }
             }
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_21_012: [If the encoding buffer grew past MAX_RETAINED_ENCODE_BUFFER_SIZE,
+            // the function shall not keep it for the next messages.]
+            if (this.encodeBuffer.length > MAX_RETAINED_ENCODE_BUFFER_SIZE)
+            {
+                this.encodeBuffer = new byte[MIN_ENCODE_BUFFER_SIZE];
+            }
+
             // Codes_SRS_AMQPSIOTHUBCONNECTION_15_017: [The function shall set the delivery tag for the sender.]
-            byte[] tag = String.valueOf(this. nextTag++).getBytes();
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_21_002: [The delivery tag shall be the big-endian binary value of a counter, without its leading zero bytes.]
+            byte[] tag = toDeliveryTag(tagValue);
 	    Delivery dlv = sender.delivery(tag);
 	    try
 	    {
-            logger.LogInfo("Attempting to send the message using the sender link, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Attempting to send the message using the sender link, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
             // Codes_SRS_AMQPSIOTHUBCONNECTION_15_018: [The function shall attempt to send the message using the sender link.]
             sender.send(msgData, 0, length);
 
-            logger.LogInfo("Advancing the sender link, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Advancing the sender link, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
             // Codes_SRS_AMQPSIOTHUBCONNECTION_15_019: [The function shall advance the sender link.]
             sender.advance();
 
-            // Codes_SRS_AMQPSIOTHUBCONNECTION_15_020: [The function shall set the delivery hash to the value returned by the sender link.]
-            deliveryHash = dlv.hashCode();
-            logger.LogInfo("Delivery hash returned by the sender link %s, method name is %s ", deliveryHash, logger.getMethodName());
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_21_006: [The function shall identify the message by the counter value of its delivery tag,
+            // which unlike the hash of the delivery is never reused during the lifetime of the connection.]
+            deliveryTag = tagValue;
+            logger.LogInfo("Message sent with delivery tag %s, method name is %s ", deliveryTag, CustomLogger.CALLING_METHOD_NAME);
         }
         catch (Exception e)
         {
             // If proton failed sending, release dlv object. Otherwise release it when received a disposition frame from proton.
             sender.advance();
             dlv.free();
-            deliveryHash = -1;
+            deliveryTag = -1;
+            // the message was not sent, so it gives back the credit it took
+            this.linkCredit.incrementAndGet();
 	    }
 	}
 
-        // Codes_SRS_AMQPSIOTHUBCONNECTION_15_021: [The function shall return the delivery hash.]
-        return deliveryHash;
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_15_021: [The function shall return the delivery tag.]
+        return deliveryTag;
+    }
+
+    /**
+     * Takes one unit of link credit, unless there is none left.
+     * @return true if a unit of credit was taken.
+     */
+    private boolean consumeLinkCredit()
+    {
+        while (true)
+        {
+            int credit = this.linkCredit.get();
+            if (credit <= 0)
+            {
+                return false;
+            }
+
+            if (this.linkCredit.compareAndSet(credit, credit - 1))
+            {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Estimates the number of bytes needed to encode a message from the size of its body.
+     * @param message The message to be encoded.
+     * @return The estimated encoded size.
+     */
+    private static int estimateEncodedSize(Message message)
+    {
+        Section body = message.getBody();
+        if (body instanceof Data && ((Data) body).getValue() != null)
+        {
+            return ((Data) body).getValue().getLength() + ENCODE_BUFFER_OVERHEAD;
+        }
+
+        return MIN_ENCODE_BUFFER_SIZE;
+    }
+
+    /**
+     * Converts a delivery counter to a delivery tag, big-endian and without its leading zero bytes.
+     * @param tag The delivery counter.
+     * @return The delivery tag.
+     */
+    private static byte[] toDeliveryTag(long tag)
+    {
+        int length = 1;
+        for (long rest = tag >>> 8; rest != 0; rest >>>= 8)
+        {
+            length++;
+        }
+
+        byte[] deliveryTag = new byte[length];
+        for (int i = length - 1; i >= 0; i--)
+        {
+            deliveryTag[i] = (byte) tag;
+            tag >>>= 8;
+        }
+
+        return deliveryTag;
+    }
+
+    /**
+     * Decodes the counter value of a delivery tag created by {@link #toDeliveryTag(long)}.
+     * @param deliveryTag The delivery tag.
+     * @return The counter value of the tag, or -1 if it is not a valid tag.
+     */
+    private static long fromDeliveryTag(byte[] deliveryTag)
+    {
+        if (deliveryTag == null || deliveryTag.length == 0 || deliveryTag.length > 8)
+        {
+            return -1;
+        }
+
+        long tag = 0;
+        for (byte b : deliveryTag)
+        {
+            tag = (tag << 8) | (b & 0xFF);
+        }
+
+        return tag;
     }
 
     /**
@@ -383,7 +545,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
         {
             try
             {
-                logger.LogInfo("Acknowledgement for received message is %s, method name is %s ", result.name(), logger.getMethodName());
+                logger.LogInfo("Acknowledgement for received message is %s, method name is %s ", result.name(), CustomLogger.CALLING_METHOD_NAME);
                 // Codes_SRS_AMQPSIOTHUBCONNECTION_15_023: [If the message result is COMPLETE, ABANDON, or REJECT,
                 // the function shall acknowledge the last message with acknowledgement type COMPLETE, ABANDON, or REJECT respectively.]
                 switch (result)
@@ -399,7 +561,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
                         break;
                     default:
                         // should never happen.
-                        logger.LogError("Invalid IoT Hub message result (%s), method name is %s ", result.name(), logger.getMethodName());
+                        logger.LogError("Invalid IoT Hub message result (%s), method name is %s ", result.name(), CustomLogger.CALLING_METHOD_NAME);
                         throw new IllegalStateException("Invalid IoT Hub message result.");
                 }
 
@@ -422,7 +584,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onConnectionInit(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.CALLING_METHOD_NAME);
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_025: [The event handler shall get the Connection (Proton) object from the event handler and set the host name on the connection.]
         this.connection = event.getConnection();
         this.connection.setHostname(this.hostName);
@@ -445,7 +607,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
         this.session.open();
         receiver.open();
         sender.open();
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.CALLING_METHOD_NAME);
     }
 
     /**
@@ -455,14 +617,15 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onConnectionBound(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.CALLING_METHOD_NAME);
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_030: [The event handler shall get the Transport (Proton) object from the event.]
         Transport transport = event.getConnection().getTransport();
         if(transport != null){
 
             if (this.useWebSockets)
             {
-                WebSocketImpl webSocket = new WebSocketImpl();
+                // Codes_SRS_AMQPSIOTHUBCONNECTION_21_015: [If web sockets are used, the event handler shall add a WebSocket layer with the maximum frame size of the configuration to the Transport.]
+                WebSocketImpl webSocket = new WebSocketImpl(this.config.getWebSocketMaxFrameSize());
                 webSocket.configure(this.hostName, webSocketPath, 0, webSocketSubProtocol, null, null);
                 ((TransportInternal)transport).addTransportLayer(webSocket);
             }
@@ -472,21 +635,25 @@ public final class AmqpsIotHubConnection extends BaseHandler
             sasl.plain(this.userName, this.sasToken);
 
             SslDomain domain = makeDomain(SslDomain.Mode.CLIENT);
-            transport.ssl(domain);
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_21_011: [The event handler shall give the IoT Hub host name and port to the SSL layer,
+            // so the TLS session can be resumed from the client session cache of the shared SSL context.]
+            // Without peer details proton creates an SSLEngine with no host, and such engines never resume a session.
+            int port = this.useWebSockets ? amqpWebSocketPort : amqpPort;
+            transport.ssl(domain, Proton.sslPeerDetails(this.config.getIotHubHostname(), port));
         }
         synchronized (openLock)
         {
             openLock.notifyLock();
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.CALLING_METHOD_NAME);
     }
 
     @Override
     public void onConnectionUnbound(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.CALLING_METHOD_NAME);
         this.state = State.CLOSED;
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.CALLING_METHOD_NAME);
     }
 
     /**
@@ -496,7 +663,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onReactorInit(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.CALLING_METHOD_NAME);
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_033: [The event handler shall set the current handler to handle the connection events.]
         if(this.useWebSockets)
         {
@@ -507,13 +674,36 @@ public final class AmqpsIotHubConnection extends BaseHandler
         {
             event.getReactor().connectionToHost(this.config.getIotHubHostname(), amqpPort, this);
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.CALLING_METHOD_NAME);
+    }
+
+    /**
+     * Event handler for the reactor quiesced event, raised whenever the reactor runs out of work.
+     * @param event Proton Event object
+     */
+    @Override
+    public void onReactorQuiesced(Event event)
+    {
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_21_010: [If the SAS token was renewed while the connection is open, the event
+        // handler shall notify the listeners that the connection was lost, and close the connection to open it again
+        // right away with the renewed token.]
+        if ((this.renewedSasToken != null) && (this.state == State.OPEN) && !this.reconnectCall)
+        {
+            logger.LogInfo("Reconnecting with the renewed SAS token, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
+            this.renewedSasToken = null;
+            this.reconnectCall = true;
+            for (ServerListener listener : listeners)
+            {
+                listener.connectionLost();
+            }
+            closeAsync();
+        }
     }
 
     @Override
     public void onReactorFinal(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.CALLING_METHOD_NAME);
         synchronized (closeLock)
         {
             closeLock.notifyLock();
@@ -533,7 +723,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
                 e.printStackTrace();
             }
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.CALLING_METHOD_NAME);
     }
 
     /**
@@ -543,29 +733,29 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onDelivery(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.CALLING_METHOD_NAME);
         if(event.getLink().getName().equals(receiveTag))
         {
-            logger.LogInfo("Reading the receiver link, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Reading the receiver link, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
             // Codes_SRS_AMQPSIOTHUBCONNECTION_15_034: [If this link is the Receiver link, the event handler shall get the Receiver and Delivery (Proton) objects from the event.]
             Receiver receiveLink = (Receiver) event.getLink();
             Delivery delivery = receiveLink.current();
             if (delivery.isReadable() && !delivery.isPartial()) {
-                logger.LogInfo("Reading the received buffer, method name is %s ", logger.getMethodName());
+                logger.LogInfo("Reading the received buffer, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
                 // Codes_SRS_AMQPSIOTHUBCONNECTION_15_035: [The event handler shall read the received buffer.]
                 int size = delivery.pending();
                 byte[] buffer = new byte[size];
                 int read = receiveLink.recv(buffer, 0, buffer.length);
                 receiveLink.advance();
-                logger.LogInfo("Reading the received buffer completed, method name is %s ", logger.getMethodName());
+                logger.LogInfo("Reading the received buffer completed, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
                 // Codes_SRS_AMQPSIOTHUBCONNECTION_15_036: [The event handler shall create an AmqpsMessage object from the decoded buffer.]
                 AmqpsMessage msg = new AmqpsMessage();
 
                 // Codes_SRS_AMQPSIOTHUBCONNECTION_15_037: [The event handler shall set the AmqpsMessage Deliver (Proton) object.]
                 msg.setDelivery(delivery);
-                logger.LogInfo("Decoding the received message , method name is %s ", logger.getMethodName());
+                logger.LogInfo("Decoding the received message , method name is %s ", CustomLogger.CALLING_METHOD_NAME);
                 msg.decode(buffer, 0, read);
-                logger.LogInfo("Decoding the received message completed , method name is %s ", logger.getMethodName());
+                logger.LogInfo("Decoding the received message completed , method name is %s ", CustomLogger.CALLING_METHOD_NAME);
                 // Codes_SRS_AMQPSIOTHUBCONNECTION_15_049: [All the listeners shall be notified that a message was received from the server.]
                 this.messageReceivedFromServer(msg);
             }
@@ -575,25 +765,25 @@ public final class AmqpsIotHubConnection extends BaseHandler
             //Sender specific section for dispositions it receives
             if(event.getType() == Event.Type.DELIVERY)
             {
-                logger.LogInfo("Reading the delivery event in Sender link, method name is %s ", logger.getMethodName());
+                logger.LogInfo("Reading the delivery event in Sender link, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
                 // Codes_SRS_AMQPSIOTHUBCONNECTION_15_038: [If this link is the Sender link and the event type is DELIVERY, the event handler shall get the Delivery (Proton) object from the event.]
                 Delivery d = event.getDelivery();
                 DeliveryState remoteState = d.getRemoteState();
 
-                // Codes_SRS_AMQPSIOTHUBCONNECTION_15_039: [The event handler shall note the remote delivery state and use it and the Delivery (Proton) hash code to inform the AmqpsIotHubConnection of the message receipt.]
+                // Codes_SRS_AMQPSIOTHUBCONNECTION_15_039: [The event handler shall note the remote delivery state and use it and the Delivery (Proton) tag to inform the AmqpsIotHubConnection of the message receipt.]
                 boolean state = remoteState.equals(Accepted.getInstance());
-                logger.LogInfo("Is state of remote Delivery COMPLETE ? %s, method name is %s ", state, logger.getMethodName());
-                logger.LogInfo("Inform listener that a message has been sent to IoT Hub along with remote state, method name is %s ", logger.getMethodName());
+                logger.LogInfo("Is state of remote Delivery COMPLETE ? %s, method name is %s ", state, CustomLogger.CALLING_METHOD_NAME);
+                logger.LogInfo("Inform listener that a message has been sent to IoT Hub along with remote state, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
                 //let any listener know that the message was received by the server
                 for(ServerListener listener : listeners)
                 {
-                    listener.messageSent(d.hashCode(), state);
+                    listener.messageSent(fromDeliveryTag(d.getTag()), state);
                 }
 		        // release the delivery object which created in sendMessage().
 		        d.free();
             }
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.CALLING_METHOD_NAME);
     }
 
     /**
@@ -603,11 +793,25 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onLinkFlow(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.CALLING_METHOD_NAME);
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_040: [The event handler shall save the remaining link credit.]
-        this.linkCredit = event.getLink().getCredit();
-		logger.LogDebug("The link credit value is %s, method name is %s", this.linkCredit, logger.getMethodName());
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        Link link = event.getLink();
+        if (link instanceof Sender)
+        {
+            int credit = link.getCredit();
+            this.linkCredit.set(credit);
+            logger.LogDebug("The link credit value is %s, method name is %s", credit, CustomLogger.CALLING_METHOD_NAME);
+
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_21_004: [If the sender link has credit, all the listeners shall be notified that messages can be sent.]
+            if (credit > 0)
+            {
+                for (ServerListener listener : listeners)
+                {
+                    listener.linkCreditAvailable(credit);
+                }
+            }
+        }
+        logger.LogDebug("Exited from method %s", CustomLogger.CALLING_METHOD_NAME);
     }
 
     /**
@@ -618,14 +822,14 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onLinkRemoteOpen(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.CALLING_METHOD_NAME);
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_041: [The connection state shall be considered OPEN when the sender link is open remotely.]
         Link link = event.getLink();
         if (link.getName().equals(sendTag))
         {
             this.state = State.OPEN;
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.CALLING_METHOD_NAME);
     }
 
     /**
@@ -637,17 +841,17 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onLinkRemoteClose(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.CALLING_METHOD_NAME);
         this.state = State.CLOSED;
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_042 [The event handler shall attempt to startReconnect to the IoTHub.]
         if (event.getLink().getName().equals(sendTag))
         {
-            logger.LogInfo("Starting to reconnect to IotHub, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Starting to reconnect to IotHub, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
             // Codes_SRS_AMQPSIOTHUBCONNECTION_15_048: [The event handler shall attempt to startReconnect to IoTHub.]
             startReconnect();
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.CALLING_METHOD_NAME);
     }
 
     /**
@@ -657,7 +861,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onLinkInit(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.CALLING_METHOD_NAME);
         Link link = event.getLink();
         if(link.getName().equals(sendTag))
         {
@@ -680,7 +884,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
             // Codes_SRS_AMQPSIOTHUBCONNECTION_14_047: [If the link is the Receiver link, the event handler shall set its source to the created Source (Proton) object.]
             link.setSource(source);
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.CALLING_METHOD_NAME);
     }
 
     /**
@@ -690,12 +894,24 @@ public final class AmqpsIotHubConnection extends BaseHandler
     @Override
     public void onTransportError(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogDebug("Entered in method %s", CustomLogger.CALLING_METHOD_NAME);
         this.state = State.CLOSED;
-        logger.LogInfo("Starting to reconnect to IotHub, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Starting to reconnect to IotHub, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_048: [The event handler shall attempt to startReconnect to IoTHub.]
         startReconnect();
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogDebug("Exited from method %s", CustomLogger.CALLING_METHOD_NAME);
+    }
+
+    /**
+     * Getter for the number of messages the IoT Hub is ready to accept on the
+     * sender link, as last granted by the IoT Hub minus the messages sent since.
+     *
+     * @return the remaining link credit, or -1 if the IoT Hub did not grant any yet.
+     */
+    public int getLinkCredit()
+    {
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_21_005: [The function shall return the remaining link credit.]
+        return this.linkCredit.get();
     }
 
     /**
@@ -724,7 +940,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
             currentReconnectionAttempt = 0;
 
         System.out.println("Lost connection to the server. Reconnection attempt " + currentReconnectionAttempt++ + "...");
-        logger.LogInfo("Lost connection to the server. Reconnection attempt %s, method name is %s ", currentReconnectionAttempt, logger.getMethodName());
+        logger.LogInfo("Lost connection to the server. Reconnection attempt %s, method name is %s ", currentReconnectionAttempt, CustomLogger.CALLING_METHOD_NAME);
         try
         {
             Thread.sleep(TransportUtils.generateSleepInterval(currentReconnectionAttempt));
@@ -742,7 +958,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
      */
     private void messageReceivedFromServer(AmqpsMessage msg)
     {
-        logger.LogInfo("All the listeners are informed that a message has been received, method name is %s ", logger.getMethodName());
+        logger.LogInfo("All the listeners are informed that a message has been received, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
         for(ServerListener listener : listeners)
         {
             listener.messageReceived(msg);
@@ -0,0 +1,230 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.MessageProperty;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Properties;
+import org.apache.qpid.proton.message.impl.MessageImpl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts messages between the Proton and the IoT Hub representations. The
+ * Proton system properties copied into the IoT Hub message are resolved once,
+ * in a fixed table, instead of looking up the getters of every received message.
+ */
+public final class AmqpsMessageCodec
+{
+    /**
+     * The Proton system properties, named after their getters, which the IoT Hub
+     * message exposes as message properties.
+     */
+    private enum SystemProperty
+    {
+        MESSAGE_ID("messageId")
+        {
+            Object get(Properties properties) { return properties.getMessageId(); }
+        },
+        USER_ID("userId")
+        {
+            Object get(Properties properties) { return properties.getUserId(); }
+        },
+        TO("to")
+        {
+            Object get(Properties properties) { return properties.getTo(); }
+        },
+        SUBJECT("subject")
+        {
+            Object get(Properties properties) { return properties.getSubject(); }
+        },
+        REPLY_TO("replyTo")
+        {
+            Object get(Properties properties) { return properties.getReplyTo(); }
+        },
+        CORRELATION_ID("correlationId")
+        {
+            Object get(Properties properties) { return properties.getCorrelationId(); }
+        },
+        CONTENT_TYPE("contentType")
+        {
+            Object get(Properties properties) { return properties.getContentType(); }
+        },
+        CONTENT_ENCODING("contentEncoding")
+        {
+            Object get(Properties properties) { return properties.getContentEncoding(); }
+        },
+        ABSOLUTE_EXPIRY_TIME("absoluteExpiryTime")
+        {
+            Object get(Properties properties) { return properties.getAbsoluteExpiryTime(); }
+        },
+        CREATION_TIME("creationTime")
+        {
+            Object get(Properties properties) { return properties.getCreationTime(); }
+        },
+        GROUP_ID("groupId")
+        {
+            Object get(Properties properties) { return properties.getGroupId(); }
+        },
+        GROUP_SEQUENCE("groupSequence")
+        {
+            Object get(Properties properties) { return properties.getGroupSequence(); }
+        },
+        REPLY_TO_GROUP_ID("replyToGroupId")
+        {
+            Object get(Properties properties) { return properties.getReplyToGroupId(); }
+        };
+
+        private final String propertyName;
+
+        SystemProperty(String propertyName)
+        {
+            this.propertyName = propertyName;
+        }
+
+        abstract Object get(Properties properties);
+    }
+
+    /** The system properties whose names are not reserved, in the order they are copied. */
+    private static final SystemProperty[] COPIED_SYSTEM_PROPERTIES;
+
+    static
+    {
+        List<SystemProperty> copiedSystemProperties = new ArrayList<>();
+        for (SystemProperty systemProperty : SystemProperty.values())
+        {
+            if (!MessageProperty.RESERVED_PROPERTY_NAMES.contains(systemProperty.propertyName))
+            {
+                copiedSystemProperties.add(systemProperty);
+            }
+        }
+
+        COPIED_SYSTEM_PROPERTIES = copiedSystemProperties.toArray(new SystemProperty[copiedSystemProperties.size()]);
+    }
+
+    /**
+     * Converts a Proton message to the corresponding IoT Hub message.
+     *
+     * @param protonMsg the Proton message.
+     *
+     * @return the corresponding IoT Hub message.
+     */
+    public static Message protonMessageToIoTHubMessage(MessageImpl protonMsg)
+    {
+        // Codes_SRS_AMQPSMESSAGECODEC_21_001: [The function shall copy the body of the Proton message into the IoT Hub message.]
+        Binary body = ((Data) protonMsg.getBody()).getValue();
+        byte[] msgBody = new byte[body.getLength()];
+        System.arraycopy(body.getArray(), body.getArrayOffset(), msgBody, 0, body.getLength());
+        Message msg = new Message(msgBody);
+
+        // Codes_SRS_AMQPSMESSAGECODEC_21_002: [The function shall copy every non-null Proton system property whose name is not reserved
+        // and whose value only uses US-ASCII characters into the IoT Hub message properties.]
+        Properties properties = protonMsg.getProperties();
+        if (properties != null)
+        {
+            for (SystemProperty systemProperty : COPIED_SYSTEM_PROPERTIES)
+            {
+                Object value = systemProperty.get(properties);
+                if (value != null)
+                {
+                    String val = value.toString();
+                    if (isAscii(val))
+                    {
+                        msg.setProperty(systemProperty.propertyName, val);
+                    }
+                }
+            }
+        }
+
+        // Codes_SRS_AMQPSMESSAGECODEC_21_003: [The function shall copy every application property whose name is not reserved into the IoT Hub message properties.]
+        ApplicationProperties applicationProperties = protonMsg.getApplicationProperties();
+        if (applicationProperties != null && applicationProperties.getValue() != null)
+        {
+            Map<String, Object> userProperties = applicationProperties.getValue();
+            for (Map.Entry<String, Object> entry : userProperties.entrySet())
+            {
+                if (!MessageProperty.RESERVED_PROPERTY_NAMES.contains(entry.getKey()))
+                {
+                    msg.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+                }
+            }
+        }
+
+        return msg;
+    }
+
+    /**
+     * Converts an IoT Hub message to the corresponding Proton message.
+     *
+     * @param message the IoT Hub message.
+     *
+     * @return the corresponding Proton message.
+     */
+    public static MessageImpl iotHubMessageToProtonMessage(Message message)
+    {
+        MessageImpl outgoingMessage = (MessageImpl) Proton.message();
+
+        // Codes_SRS_AMQPSMESSAGECODEC_21_004: [The function shall set the message id of the Proton message to the one of the IoT Hub message, if any.]
+        Properties properties = new Properties();
+        if (message.getMessageId() != null)
+        {
+            properties.setMessageId(message.getMessageId());
+        }
+        outgoingMessage.setProperties(properties);
+
+        // Codes_SRS_AMQPSMESSAGECODEC_21_005: [The function shall add every user property whose name is not reserved to the application properties
+        // of the Proton message, and shall not set application properties if there are none.]
+        List<MessageProperty> messageProperties = message.getPropertyList();
+        if (!messageProperties.isEmpty())
+        {
+            // sized so the map never rehashes while it is filled
+            Map<String, String> userProperties = new HashMap<>((messageProperties.size() * 4 + 2) / 3);
+            for (int i = 0; i < messageProperties.size(); i++)
+            {
+                MessageProperty messageProperty = messageProperties.get(i);
+                if (!MessageProperty.RESERVED_PROPERTY_NAMES.contains(messageProperty.getName()))
+                {
+                    userProperties.put(messageProperty.getName(), messageProperty.getValue());
+                }
+            }
+
+            if (!userProperties.isEmpty())
+            {
+                outgoingMessage.setApplicationProperties(new ApplicationProperties(userProperties));
+            }
+        }
+
+        // Codes_SRS_AMQPSMESSAGECODEC_21_006: [The function shall set the body of the IoT Hub message as the data section of the Proton message.]
+        outgoingMessage.setBody(new Data(new Binary(message.getBytes())));
+
+        return outgoingMessage;
+    }
+
+    /**
+     * Returns true if the string only uses US-ASCII.
+     */
+    private static boolean isAscii(String s)
+    {
+        for (int i = 0; i < s.length(); i++)
+        {
+            if (s.charAt(i) > 0x7F)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private AmqpsMessageCodec()
+    {
+    }
+}
@@ -8,20 +8,12 @@ import com.microsoft.azure.sdk.iot.device.Message;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubCallbackPacket;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubOutboundPacket;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransport;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportWorker;
 import com.microsoft.azure.sdk.iot.device.transport.State;
 import com.microsoft.azure.sdk.iot.device.CustomLogger;
-import org.apache.qpid.proton.Proton;
-import org.apache.qpid.proton.amqp.Binary;
-import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
-import org.apache.qpid.proton.amqp.messaging.Data;
-import org.apache.qpid.proton.amqp.messaging.Properties;
-import org.apache.qpid.proton.amqp.messaging.Section;
 import org.apache.qpid.proton.message.impl.MessageImpl;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.*;
 
@@ -44,10 +36,33 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
     private AmqpsIotHubConnection connection;
 
     /** Messages waiting to be sent to the IoT Hub. */
-    private final Queue<IotHubOutboundPacket> waitingMessages = new LinkedBlockingDeque<>();
+    private final Deque<IotHubOutboundPacket> waitingMessages = new LinkedBlockingDeque<>();
 
-    /** Messages which are sent to the IoT Hub but did not receive ack yet. */
-    private Map<Integer, IotHubOutboundPacket> inProgressMessages = new ConcurrentHashMap<>();
+    /** Guards the bound of the queue of messages waiting to be sent. */
+    private final Object queueLock = new Object();
+
+    /**
+     * Whether the current thread is invoking the callbacks of this transport. Such a
+     * thread is the one which sends the queued messages, so it must never wait for
+     * room in the queue.
+     */
+    private final ThreadLocal<Boolean> invokingCallbacks = new ThreadLocal<Boolean>()
+    {
+        @Override
+        protected Boolean initialValue()
+        {
+            return false;
+        }
+    };
+
+    /**
+     * The number of milliseconds after which a message sent to the IoT Hub
+     * without being acknowledged is sent again.
+     */
+    private static final long IN_PROGRESS_TIMEOUT_MILLIS = 60000;
+
+    /** Messages which are sent to the IoT Hub but did not receive ack yet, keyed by delivery tag. */
+    private AmqpsInFlightTracker inProgressMessages = new AmqpsInFlightTracker(IN_PROGRESS_TIMEOUT_MILLIS);
 
     /** Messages received from the IoT Hub */
     private Queue<AmqpsMessage> receivedMessages = new LinkedBlockingQueue<>();
@@ -92,7 +107,11 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
         {
             return;
         }
-        logger.LogInfo("Opening the connection..., method name is %s ", logger.getMethodName());
+        logger.LogInfo("Opening the connection..., method name is %s ", CustomLogger.CALLING_METHOD_NAME);
+        // Codes_SRS_AMQPSTRANSPORT_21_053: [The function shall buffer the messages left in progress by a previous connection to be sent again,
+        // since their delivery tags are not valid on a new connection.]
+        this.waitingMessages.addAll(this.inProgressMessages.removeAll());
+
         // Codes_SRS_AMQPSTRANSPORT_15_004: [The function shall open an AMQPS connection with the IoT Hub given in the configuration.]
         this.connection = new AmqpsIotHubConnection(this.config, this.useWebSockets);
         try
@@ -110,7 +129,7 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
 
         // Codes_SRS_AMQPSTRANSPORT_15_006: [If the connection was opened successfully, the transport state shall be set to OPEN.]
         this.state = State.OPEN;
-        logger.LogInfo("Connection has been opened, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Connection has been opened, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
     }
 
     /**
@@ -125,17 +144,23 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
         // Codes_SRS_AMQPSTRANSPORT_15_007: [If the AMQPS connection is closed, the function shall do nothing.]
         if (this.state == State.CLOSED)
         {
-            logger.LogInfo("The connection is already in closed state, method name is %s ", logger.getMethodName());
+            logger.LogInfo("The connection is already in closed state, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
             return;
         }
 
-        logger.LogInfo("Starting to close the connection..., method name is %s ", logger.getMethodName());
+        logger.LogInfo("Starting to close the connection..., method name is %s ", CustomLogger.CALLING_METHOD_NAME);
         // Codes_SRS_AMQPSTRANSPORT_15_008: [The function shall close an AMQPS connection with the IoT Hub given in the configuration.]
         this.connection.close();
 
         // Codes_SRS_AMQPSTRANSPORT_15_009: [The function shall set the transport state to CLOSED.]
         this.state = State.CLOSED;
-        logger.LogInfo("Connection has been closed, method name is %s ", logger.getMethodName());
+
+        // Codes_SRS_AMQPSTRANSPORT_21_047: [The function shall wake up the callers blocked waiting for room in the queue.]
+        synchronized (this.queueLock)
+        {
+            this.queueLock.notifyAll();
+        }
+        logger.LogInfo("Connection has been closed, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
     }
 
     /**
@@ -152,13 +177,92 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
         // Codes_SRS_AMQPSTRANSPORT_15_010: [If the AMQPS session is closed, the function shall throw an IllegalStateException.]
         if (this.state == State.CLOSED)
         {
-            logger.LogError("Cannot add a message when the AMQPS transport is closed, method name is %s ", logger.getMethodName());
+            logger.LogError("Cannot add a message when the AMQPS transport is closed, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
             throw new IllegalStateException("Cannot add a message when the AMQPS transport is closed.");
         }
 
         // Codes_SRS_AMQPSTRANSPORT_15_011: [The function shall add a packet containing the message, callback, and callback context to the queue of messages waiting to be sent.]
         IotHubOutboundPacket packet = new IotHubOutboundPacket(message, callback, callbackContext);
-        this.waitingMessages.add(packet);
+        int maxQueuedMessages = this.config.getAmqpsMaxQueuedMessages();
+        if (maxQueuedMessages <= 0)
+        {
+            this.waitingMessages.add(packet);
+            return;
+        }
+
+        synchronized (this.queueLock)
+        {
+            long blockDeadlineMillis = 0;
+            while (this.waitingMessages.size() >= maxQueuedMessages)
+            {
+                QueueOverflowPolicy policy = this.config.getAmqpsQueueOverflowPolicy();
+                if (policy == QueueOverflowPolicy.REJECT)
+                {
+                    // Codes_SRS_AMQPSTRANSPORT_21_043: [If the queue is full and the overflow policy is REJECT, the function shall not
+                    // queue the message, and shall add a callback with the THROTTLED status to the callback list.]
+                    logger.LogWarn("The queue of messages waiting to be sent is full, rejecting the message, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
+                    this.callbackList.add(new IotHubCallbackPacket(IotHubStatusCode.THROTTLED, callback, callbackContext));
+                    return;
+                }
+                else if (policy == QueueOverflowPolicy.DROP_OLDEST)
+                {
+                    // Codes_SRS_AMQPSTRANSPORT_21_044: [If the queue is full and the overflow policy is DROP_OLDEST, the function shall remove
+                    // the message which has been waiting the longest, and shall add a callback with the THROTTLED status for it to the callback list.]
+                    IotHubOutboundPacket droppedPacket = this.waitingMessages.poll();
+                    if (droppedPacket != null)
+                    {
+                        logger.LogWarn("The queue of messages waiting to be sent is full, dropping the oldest message, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
+                        this.callbackList.add(new IotHubCallbackPacket(IotHubStatusCode.THROTTLED, droppedPacket.getCallback(), droppedPacket.getContext()));
+                    }
+                }
+                else if (this.invokingCallbacks.get())
+                {
+                    // Codes_SRS_AMQPSTRANSPORT_21_056: [If the queue is full, the overflow policy is BLOCK and the caller is a callback
+                    // invoked by this transport, the function shall not wait, since the caller is the thread which sends the queued
+                    // messages, and shall add a callback with the THROTTLED status to the callback list.]
+                    logger.LogWarn("The queue of messages waiting to be sent is full and a transport callback cannot wait for room, rejecting the message, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
+                    this.callbackList.add(new IotHubCallbackPacket(IotHubStatusCode.THROTTLED, callback, callbackContext));
+                    return;
+                }
+                else
+                {
+                    // Codes_SRS_AMQPSTRANSPORT_21_045: [If the queue is full and the overflow policy is BLOCK, the function shall wait until
+                    // there is room in the queue, and shall throw an IllegalStateException if the transport is closed or the caller is
+                    // interrupted in the meantime.]
+                    long nowMillis = System.currentTimeMillis();
+                    if (blockDeadlineMillis == 0)
+                    {
+                        blockDeadlineMillis = nowMillis + this.config.getAmqpsQueueBlockTimeoutMillis();
+                    }
+                    else if (nowMillis >= blockDeadlineMillis)
+                    {
+                        // Codes_SRS_AMQPSTRANSPORT_21_057: [If there is no room in the queue within the queue block timeout of the
+                        // config, the function shall not queue the message, and shall add a callback with the ERROR status to the callback list.]
+                        logger.LogError("No room in the queue of messages waiting to be sent within %s ms, failing the message, method name is %s ", this.config.getAmqpsQueueBlockTimeoutMillis(), CustomLogger.CALLING_METHOD_NAME);
+                        this.callbackList.add(new IotHubCallbackPacket(IotHubStatusCode.ERROR, callback, callbackContext));
+                        return;
+                    }
+
+                    try
+                    {
+                        this.queueLock.wait(Math.max(1, blockDeadlineMillis - nowMillis));
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for room in the AMQPS send queue.");
+                    }
+
+                    if (this.state == State.CLOSED)
+                    {
+                        logger.LogError("Cannot add a message when the AMQPS transport is closed, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
+                        throw new IllegalStateException("Cannot add a message when the AMQPS transport is closed.");
+                    }
+                }
+            }
+
+            this.waitingMessages.add(packet);
+        }
     }
 
     /**
@@ -177,61 +281,81 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
         // Codes_SRS_AMQPSTRANSPORT_15_012: [If the AMQPS session is closed, the function shall throw an IllegalStateException.]
         if (this.state == State.CLOSED)
         {
-            logger.LogError("Cannot send messages when the AMQPS transport is closed, method name is %s ", logger.getMethodName());
+            logger.LogError("Cannot send messages when the AMQPS transport is closed, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
             throw new IllegalStateException("Cannot send messages when the AMQPS transport is closed.");
         }
 
+        // Codes_SRS_AMQPSTRANSPORT_21_054: [The function shall put the messages in progress which were not acknowledged within
+        // the timeout back at the head of the waiting list, oldest first, to be sent again.]
+        List<IotHubOutboundPacket> expiredMessages = this.inProgressMessages.removeExpired(System.currentTimeMillis());
+        for (int i = expiredMessages.size() - 1; i >= 0; i--)
+        {
+            logger.LogWarn("Message with messageid %s was not acknowledged by IoTHub in time, it is buffered to be sent again, method name is %s ", expiredMessages.get(i).getMessage().getMessageId(), CustomLogger.CALLING_METHOD_NAME);
+            this.waitingMessages.addFirst(expiredMessages.get(i));
+        }
+
         // Codes_SRS_AMQPSTRANSPORT_15_013: [If there are no messages in the waiting list, the function shall return.]
         if (this.waitingMessages.size() <= 0)
         {
             return;
         }
 
-        Collection<IotHubOutboundPacket> failedMessages = new ArrayList<>() ;
-
         // Codes_SRS_AMQPSTRANSPORT_15_014: [The function shall attempt to send every message on its waiting list, one at a time.]
         while (!this.waitingMessages.isEmpty())
         {
-           logger.LogInfo("Get the message from waiting message queue to be sent to IoT Hub, method name is %s ", logger.getMethodName());
-           IotHubOutboundPacket packet = this.waitingMessages.remove();
+           logger.LogInfo("Get the message from waiting message queue to be sent to IoT Hub, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
+           IotHubOutboundPacket packet = this.waitingMessages.poll();
+           if (packet == null)
+           {
+               break;
+           }
 
             Message message = packet.getMessage();
 
             // Codes_SRS_AMQPSTRANSPORT_15_015: [The function shall skip messages with null or empty body.]
-            if (message != null && message.getBytes().length > 0)
+            if (message != null && message.getBodyBuffer().hasRemaining())
             {
                 // Codes_SRS_AMQPSTRANSPORT_15_039: [If the message is expired, the function shall create a callback
                 // with the MESSAGE_EXPIRED status and add it to the callback list.]
                 if (message.isExpired())
                 {
-                    logger.LogInfo("Creating a callback for the expired message with MESSAGE_EXPIRED status, method name is %s ", logger.getMethodName());
+                    logger.LogInfo("Creating a callback for the expired message with MESSAGE_EXPIRED status, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
                     IotHubCallbackPacket callbackPacket = new IotHubCallbackPacket(IotHubStatusCode.MESSAGE_EXPIRED, packet.getCallback(), packet.getContext());
                     this.callbackList.add(callbackPacket);
                 }
                 else
                 {
-                    logger.LogInfo("Converting the IoT Hub message into AmqpsMessage, method name is %s ", logger.getMethodName());
+                    logger.LogInfo("Converting the IoT Hub message into AmqpsMessage, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
                     // Codes_SRS_AMQPSTRANSPORT_15_036: [The function shall create a new Proton message from the IoTHub message.]
                     MessageImpl protonMessage = iotHubMessageToProtonMessage(message);
 
-                    // Codes_SRS_AMQPSTRANSPORT_15_037: [The function shall attempt to send the Proton message to IoTHub using the underlying AMQPS connection.]
-                    Integer sendHash = connection.sendMessage(protonMessage);
-
                     // Codes_SRS_AMQPSTRANSPORT_15_016: [If the sent message hash is valid, it shall be added to the in progress map.]
-                    if (sendHash != -1)
-                    {
-                        this.inProgressMessages.put(sendHash, packet);
-                    }
+                    // Codes_SRS_AMQPSTRANSPORT_21_055: [The messages in progress shall be tracked by the delivery tag they were sent with, along with the time they were sent.]
+                    // Codes_SRS_AMQPSTRANSPORT_21_060: [The function shall track the message under a delivery tag reserved from the connection
+                    // before sending it, so an acknowledgement which arrives before the send returns finds the message.]
+                    long deliveryTag = connection.reserveDeliveryTag();
+                    this.inProgressMessages.put(deliveryTag, packet, System.currentTimeMillis());
+
+                    // Codes_SRS_AMQPSTRANSPORT_15_037: [The function shall attempt to send the Proton message to IoTHub using the underlying AMQPS connection.]
                     // Codes_SRS_AMQPSTRANSPORT_15_017: [If the sent message hash is not valid, it shall be buffered to be sent in a subsequent attempt.]
-                    else
+                    // Codes_SRS_AMQPSTRANSPORT_21_046: [If the sent message hash is not valid, the function shall put the message back at the head
+                    // of the waiting list and stop sending until the IoT Hub grants more link credit.]
+                    // Codes_SRS_AMQPSTRANSPORT_21_061: [If the message could not be sent, the function shall stop tracking it.]
+                    if (connection.sendMessage(protonMessage, deliveryTag) == -1)
                     {
-                        failedMessages.add(packet);
+                        this.inProgressMessages.remove(deliveryTag);
+                        this.waitingMessages.addFirst(packet);
+                        break;
                     }
                 }
             }
         }
 
-        this.waitingMessages.addAll(failedMessages);
+        // Codes_SRS_AMQPSTRANSPORT_21_047: [The function shall wake up the callers blocked waiting for room in the queue.]
+        synchronized (this.queueLock)
+        {
+            this.queueLock.notifyAll();
+        }
     }
 
     /**
@@ -244,21 +368,31 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
         // Codes_SRS_AMQPSTRANSPORT_15_019: [If the transport closed, the function shall throw an IllegalStateException.]
         if (this.state == State.CLOSED)
         {
-            logger.LogError("Cannot invoke callbacks when AMQPS transport is closed, method name is %s ", logger.getMethodName());
+            logger.LogError("Cannot invoke callbacks when AMQPS transport is closed, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
             throw new IllegalStateException("Cannot invoke callbacks when AMQPS transport is closed.");
         }
 
-        // Codes_SRS_AMQPSTRANSPORT_15_020: [The function shall invoke all the callbacks from the callback queue.]
-        while (!this.callbackList.isEmpty())
+        // Codes_SRS_AMQPSTRANSPORT_21_058: [While it invokes the callbacks, the function shall mark the current thread as invoking
+        // the callbacks of this transport.]
+        this.invokingCallbacks.set(true);
+        try
         {
-            IotHubCallbackPacket packet = this.callbackList.remove();
-
-            IotHubStatusCode status = packet.getStatus();
-            IotHubEventCallback callback = packet.getCallback();
-            Object context = packet.getContext();
-            
-            logger.LogInfo("Invoking the callback function for sent message, IoT Hub responded to message with status %s, method name is %s ", status.name(), logger.getMethodName());
-            callback.execute(status, context);
+            // Codes_SRS_AMQPSTRANSPORT_15_020: [The function shall invoke all the callbacks from the callback queue.]
+            while (!this.callbackList.isEmpty())
+            {
+                IotHubCallbackPacket packet = this.callbackList.remove();
+
+                IotHubStatusCode status = packet.getStatus();
+                IotHubEventCallback callback = packet.getCallback();
+                Object context = packet.getContext();
+
+                logger.LogInfo("Invoking the callback function for sent message, IoT Hub responded to message with status %s, method name is %s ", status.name(), CustomLogger.CALLING_METHOD_NAME);
+                callback.execute(status, context);
+            }
+        }
+        finally
+        {
+            this.invokingCallbacks.set(false);
         }
     }
 
@@ -277,17 +411,17 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
         // Codes_SRS_AMQPSTRANSPORT_15_021: [If the transport is closed, the function shall throw an IllegalStateException.]
         if (this.state == State.CLOSED)
         {
-            logger.LogError("Cannot handle messages when AMQPS transport is closed, method name is %s ", logger.getMethodName());
+            logger.LogError("Cannot handle messages when AMQPS transport is closed, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
             throw new IllegalStateException("Cannot handle messages when AMQPS transport is closed.");
         }
         
-        logger.LogInfo("Get the callback function for the received message, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Get the callback function for the received message, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
         MessageCallback callback = this.config.getMessageCallback();
 
         // Codes_SRS_AMQPSTRANSPORT_15_025: [If no callback is defined, the list of received messages is cleared.]
         if (callback == null)
         {
-            logger.LogError("Callback is not defined therefore response to IoT Hub cannot be generated. All received messages will be removed from receive message queue, method name is %s ", logger.getMethodName());
+            logger.LogError("Callback is not defined therefore response to IoT Hub cannot be generated. All received messages will be removed from receive message queue, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
             this.receivedMessages.clear();
             return;
         }
@@ -296,9 +430,9 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
         // Codes_SRS_AMQPSTRANSPORT_15_024: [If no message was received from IotHub, the function shall return.]
         if (this.receivedMessages.size() > 0)
         {
-            logger.LogInfo("Consuming a message received from IoT Hub using receive message queue, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Consuming a message received from IoT Hub using receive message queue, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
             AmqpsMessage receivedMessage = this.receivedMessages.remove();
-            logger.LogInfo("Converting the AmqpsMessage to IoT Hub message, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Converting the AmqpsMessage to IoT Hub message, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
             Message message = protonMessageToIoTHubMessage(receivedMessage);
 
 			// set  messageId from messageId property if it exists. Fix for GitHub issue #990
@@ -307,16 +441,27 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
 			  message.setMessageId(message.getProperty("messageId"));
 			}
                     
-            logger.LogInfo("Executing the callback function for received message, method name is %s ", logger.getMethodName());
+            logger.LogInfo("Executing the callback function for received message, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
             // Codes_SRS_AMQPSTRANSPORT_15_026: [The function shall invoke the callback on the message.]
-            IotHubMessageResult result = callback.execute(message, this.config.getMessageContext());
+            // Codes_SRS_AMQPSTRANSPORT_21_059: [While it invokes the callback, the function shall mark the current thread as invoking
+            // the callbacks of this transport.]
+            IotHubMessageResult result;
+            this.invokingCallbacks.set(true);
+            try
+            {
+                result = callback.execute(message, this.config.getMessageContext());
+            }
+            finally
+            {
+                this.invokingCallbacks.set(false);
+            }
 
             // Codes_SRS_AMQPSTRANSPORT_15_027: [The function shall return the message result (one of COMPLETE, ABANDON, or REJECT) to the IoT Hub.]
             Boolean ackResult = this.connection.sendMessageResult(receivedMessage, result);
             // Codes_SRS_AMQPSTRANSPORT_15_028: [If the result could not be sent to IoTHub, the message shall be put back in the received messages queue to be processed again.]
             if (!ackResult)
             {
-                logger.LogWarn("Callback did not return a response for IoT Hub. Message has been added in the queue to be processed again, method name is %s", logger.getMethodName());
+                logger.LogWarn("Callback did not return a response for IoT Hub. Message has been added in the queue to be processed again, method name is %s", CustomLogger.CALLING_METHOD_NAME);
                 receivedMessages.add(receivedMessage);
             }
         }
@@ -326,28 +471,36 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
      * When a message is acknowledged by IoTHub, it is removed from the list of in progress messages and its callback
      * is added to the list of callbacks to be executed. If the message was not successfully delivered, it is buffered
      * to be sent again.
-     * @param messageHash The hash of the message.
+     * @param deliveryTag The delivery tag the message was sent with.
      * @param deliveryState The state of the delivery.
      */
-    public void messageSent(Integer messageHash, Boolean deliveryState)
+    public void messageSent(long deliveryTag, Boolean deliveryState)
     {
         // Codes_SRS_AMQPSTRANSPORT_15_029: [If the hash cannot be found in the list of keys for the messages in progress, the method returns.]
-        if (inProgressMessages.containsKey(messageHash))
+        IotHubOutboundPacket packet = inProgressMessages.remove(deliveryTag);
+        if (packet != null)
         {
-            IotHubOutboundPacket packet = inProgressMessages.remove(messageHash);
             if (deliveryState)
             {
-                logger.LogInfo("Message with messageid %s has been successfully delivered to IoTHub, adding a callback to callbacklist with IotHubStatusCode.OK_EMPTY, method name is %s ", packet.getMessage().getMessageId(), logger.getMethodName());
+                logger.LogInfo("Message with messageid %s has been successfully delivered to IoTHub, adding a callback to callbacklist with IotHubStatusCode.OK_EMPTY, method name is %s ", packet.getMessage().getMessageId(), CustomLogger.CALLING_METHOD_NAME);
                 // Codes_SRS_AMQPSTRANSPORT_15_030: [If the message was successfully delivered,
                 // its callback is added to the list of callbacks to be executed.]
                 IotHubCallbackPacket callbackPacket = new IotHubCallbackPacket(IotHubStatusCode.OK_EMPTY, packet.getCallback(), packet.getContext());
                 this.callbackList.add(callbackPacket);
             } else
             {
-                logger.LogInfo("Message with messageid %s was not delivered to IoTHub, it is buffered to be sent again, method name is %s ", packet.getMessage().getMessageId(), logger.getMethodName());
+                logger.LogInfo("Message with messageid %s was not delivered to IoTHub, it is buffered to be sent again, method name is %s ", packet.getMessage().getMessageId(), CustomLogger.CALLING_METHOD_NAME);
                 // Codes_SRS_AMQPSTRANSPORT_15_031: [If the message was not delivered successfully, it is buffered to be sent again.]
                 waitingMessages.add(packet);
             }
+
+            // Codes_SRS_AMQPSTRANSPORT_21_040: [If the hash was found, the function shall signal the transport worker
+            // saved in the config, if any, to invoke the callback or resend the message.]
+            IotHubTransportWorker transportWorker = this.config.getTransportWorker();
+            if (transportWorker != null)
+            {
+                transportWorker.signalSend();
+            }
         }
     }
 
@@ -356,15 +509,32 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
      */
     public void connectionLost()
     {
-        logger.LogInfo("The messages in progress are buffered to be sent again due to a connection loss, method name is %s ", logger.getMethodName());
+        logger.LogInfo("The messages in progress are buffered to be sent again due to a connection loss, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
         // Codes_SRS_AMQPSTRANSPORT_15_032: [The messages in progress are buffered to be sent again.]
-        for (Map.Entry<Integer, IotHubOutboundPacket> entry : inProgressMessages.entrySet())
+        // Codes_SRS_AMQPSTRANSPORT_15_033: [The map of messages in progress is cleared.]
+        this.waitingMessages.addAll(inProgressMessages.removeAll());
+
+        // Codes_SRS_AMQPSTRANSPORT_21_041: [The function shall signal the transport worker saved in the config, if any, to resend the messages.]
+        IotHubTransportWorker transportWorker = this.config.getTransportWorker();
+        if (transportWorker != null)
         {
-            this.waitingMessages.add(entry.getValue());
+            transportWorker.signalSend();
         }
+    }
 
-        // Codes_SRS_AMQPSTRANSPORT_15_033: [The map of messages in progress is cleared.]
-        inProgressMessages.clear();
+    /**
+     * When the IoT Hub grants link credit, the messages waiting for it can be sent.
+     * @param linkCredit The number of messages the IoT Hub is ready to accept.
+     */
+    public void linkCreditAvailable(int linkCredit)
+    {
+        logger.LogDebug("The IoT Hub granted a link credit of %s, method name is %s ", linkCredit, CustomLogger.CALLING_METHOD_NAME);
+        // Codes_SRS_AMQPSTRANSPORT_21_048: [If the waiting list is not empty, the function shall signal the transport worker saved in the config, if any, to send the messages.]
+        IotHubTransportWorker transportWorker = this.config.getTransportWorker();
+        if (transportWorker != null && !this.waitingMessages.isEmpty())
+        {
+            transportWorker.signalSend();
+        }
     }
 
     /**
@@ -373,9 +543,16 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
      */
     public void messageReceived(AmqpsMessage message)
     {
-        logger.LogInfo("Message with hashcode %s is received from IotHub on %s, method name is %s ", message.hashCode(), new Date(), logger.getMethodName());
+        logger.LogInfo("Message with hashcode %s is received from IotHub on %s, method name is %s ", message.hashCode(), new Date(), CustomLogger.CALLING_METHOD_NAME);
         // Codes_SRS_AMQPSTRANSPORT_15_034: [The message received is added to the list of messages to be processed.]
         this.receivedMessages.add(message);
+
+        // Codes_SRS_AMQPSTRANSPORT_21_042: [The function shall signal the transport worker saved in the config, if any, to handle the message.]
+        IotHubTransportWorker transportWorker = this.config.getTransportWorker();
+        if (transportWorker != null)
+        {
+            transportWorker.signalReceive();
+        }
     }
 
     /**
@@ -389,8 +566,50 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
     {
         // Codes_SRS_AMQPSTRANSPORT_15_035: [The function shall return true if the waiting list,
         // in progress list and callback list are all empty, and false otherwise.]
-        return this.waitingMessages.isEmpty() && this.inProgressMessages.size() == 0 && this.callbackList.isEmpty();
+        return this.waitingMessages.isEmpty() && this.inProgressMessages.isEmpty() && this.callbackList.isEmpty();
+
+    }
+
+    /**
+     * Returns the number of messages waiting to be sent, so producers can
+     * throttle before the queue fills up.
+     *
+     * @return the number of messages waiting to be sent.
+     */
+    public int getQueuedMessageCount()
+    {
+        // Codes_SRS_AMQPSTRANSPORT_21_049: [The function shall return the number of messages in the waiting list.]
+        return this.waitingMessages.size();
+    }
+
+    /**
+     * Returns the number of messages sent to the IoT Hub which were not
+     * acknowledged yet.
+     *
+     * @return the number of messages in progress.
+     */
+    public int getInProgressMessageCount()
+    {
+        // Codes_SRS_AMQPSTRANSPORT_21_050: [The function shall return the number of messages in the in progress map.]
+        return this.inProgressMessages.size();
+    }
+
+    /**
+     * Returns the number of messages the IoT Hub is ready to accept.
+     *
+     * @return the remaining link credit, or -1 if the transport is not open
+     * or the IoT Hub did not grant any credit yet.
+     */
+    public int getLinkCredit()
+    {
+        // Codes_SRS_AMQPSTRANSPORT_21_051: [If the transport is closed, the function shall return -1.]
+        if (this.state == State.CLOSED || this.connection == null)
+        {
+            return -1;
+        }
 
+        // Codes_SRS_AMQPSTRANSPORT_21_052: [The function shall return the remaining link credit of the connection.]
+        return this.connection.getLinkCredit();
     }
 
     /**
@@ -402,61 +621,10 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
      */
     private Message protonMessageToIoTHubMessage(MessageImpl protonMsg)
     {
-        logger.LogInfo("Started converting AmpqsMessage into IoT Hub message, method name is %s ", logger.getMethodName());
-        Data d = (Data) protonMsg.getBody();
-        Binary b = d.getValue();
-        byte[] msgBody = new byte[b.getLength()];
-        ByteBuffer buffer = b.asByteBuffer();
-        buffer.get(msgBody);
-
-        Message msg = new Message(msgBody);
-        logger.LogInfo("Content of received message is %s, method name is %s ", new String(msg.getBytes(), Message.DEFAULT_IOTHUB_MESSAGE_CHARSET), logger.getMethodName());
-        Properties properties = protonMsg.getProperties();
-        //Call all of the getters for the Proton message Properties and set those properties
-        //in the IoT Hub message properties if they exist.
-        for (Method m : properties.getClass().getMethods())
-        {
-            if (m.getName().startsWith("get"))
-            {
-                try
-                {
-                    String propertyName = Character.toLowerCase(m.getName().charAt(3)) + m.getName().substring(4);
-                    Object value = m.invoke(properties);
-                    if (value != null && !propertyName.equals("class"))
-                    {
-                        String val = value.toString();
-
-                        if (MessageProperty.isValidAppProperty(propertyName, val))
-                        {
-                            msg.setProperty(propertyName, val);
-                        }
-                    }
-                }
-                catch (IllegalAccessException e)
-                {
-                    logger.LogError("Attempted to access private or protected member of class during message conversion." + e.getMessage());
-                }
-                catch (InvocationTargetException e)
-                {
-                   logger.LogError("Exception thrown while attempting to get member variable. See: " + e.getMessage());
-                }
-            }
-        }
-
-        // Setting the user properties
-        if (protonMsg.getApplicationProperties() != null)
-        {
-            Map<String, String> applicationProperties = protonMsg.getApplicationProperties().getValue();
-            for (Map.Entry<String, String> entry : applicationProperties.entrySet())
-            {
-                String propertyKey = entry.getKey();
-                if (!MessageProperty.RESERVED_PROPERTY_NAMES.contains(propertyKey))
-                {
-                    msg.setProperty(entry.getKey(), entry.getValue());
-                }
-            }
-        }
-        logger.LogInfo("Completed the conversion of AmpqsMessage into IoT Hub message, method name is %s ", logger.getMethodName());
+        logger.LogInfo("Started converting AmpqsMessage into IoT Hub message, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
+        Message msg = AmqpsMessageCodec.protonMessageToIoTHubMessage(protonMsg);
+        logger.LogInfo("Content of received message is %s, method name is %s ", CustomLogger.lazyMessageBody(msg), CustomLogger.CALLING_METHOD_NAME);
+        logger.LogInfo("Completed the conversion of AmpqsMessage into IoT Hub message, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
         return msg;
     }
 
@@ -467,37 +635,11 @@ public final class AmqpsTransport implements IotHubTransport, ServerListener
      */
     private MessageImpl iotHubMessageToProtonMessage(com.microsoft.azure.sdk.iot.device.Message message)
     {
-        logger.LogInfo("Started converting IoT Hub message into AmpqsMessage, method name is %s ", logger.getMethodName());
-        MessageImpl outgoingMessage = (MessageImpl) Proton.message();
-        logger.LogInfo("Content of message is %s, method name is %s ", new String(message.getBytes(), Message.DEFAULT_IOTHUB_MESSAGE_CHARSET), logger.getMethodName());
-        Properties properties = new Properties();
-        if(message.getMessageId() != null)
-        {
-            properties.setMessageId(message.getMessageId());
-        }
-        outgoingMessage.setProperties(properties);
-
+        logger.LogInfo("Started converting IoT Hub message into AmpqsMessage, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
+        logger.LogInfo("Content of message is %s, method name is %s ", CustomLogger.lazyMessageBody(message), CustomLogger.CALLING_METHOD_NAME);
         // Codes_SRS_AMQPSTRANSPORT_15_038: [The function shall add all user properties to the application properties of the Proton message.]
-        if (message.getProperties().length > 0)
-        {
-            Map<String, String> userProperties = new HashMap<>(message.getProperties().length);
-            for(MessageProperty messageProperty : message.getProperties())
-            {
-                if (!MessageProperty.RESERVED_PROPERTY_NAMES.contains(messageProperty.getName()))
-                {
-                    userProperties.put(messageProperty.getName(), messageProperty.getValue());
-                }
-
-            }
-
-            ApplicationProperties applicationProperties = new ApplicationProperties(userProperties);
-            outgoingMessage.setApplicationProperties(applicationProperties);
-        }
-
-        Binary binary = new Binary(message.getBytes());
-        Section section = new Data(binary);
-        outgoingMessage.setBody(section);
-        logger.LogInfo("Started converting IoT Hub message into AmpqsMessage, method name is %s ", logger.getMethodName());
+        MessageImpl outgoingMessage = AmqpsMessageCodec.iotHubMessageToProtonMessage(message);
+        logger.LogInfo("Completed converting IoT Hub message into AmpqsMessage, method name is %s ", CustomLogger.CALLING_METHOD_NAME);
         return outgoingMessage;
     }
 }
\ No newline at end of file
@@ -10,10 +10,10 @@ public interface ServerListener
 {
     /**
      * Method executed when a message was acknowledged by IoTHub.
-     * @param messageHash The hash of the message.
+     * @param deliveryTag The delivery tag the message was sent with.
      * @param deliveryState The state of the delivery.
      */
-    void messageSent(Integer messageHash, Boolean deliveryState);
+    void messageSent(long deliveryTag, Boolean deliveryState);
 
     /**
      * Method executed when a message was received from IoTHub.
@@ -25,4 +25,10 @@ public interface ServerListener
      * Method executed when the connection with the IoTHub is lost.
      */
     void connectionLost();
+
+    /**
+     * Method executed when IoTHub grants credit to send messages on the sender link.
+     * @param linkCredit The number of messages IoTHub is ready to accept.
+     */
+    void linkCreditAvailable(int linkCredit);
 }
@@ -3,11 +3,11 @@
 
 package com.microsoft.azure.sdk.iot.device.transport.https;
 
-import com.microsoft.azure.sdk.iot.device.Message;
 import com.microsoft.azure.sdk.iot.device.MessageProperty;
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import javax.naming.SizeLimitExceededException;
 
@@ -32,8 +32,17 @@ public final class HttpsBatchMessage implements HttpsMessage
      */
     public static Charset BATCH_CHARSET = StandardCharsets.UTF_8;
 
-    /** The current batched message body. */
-    protected String batchBody;
+    /** The initial capacity of the batch body buffer, in bytes. */
+    private static final int INITIAL_BATCH_BODY_CAPACITY = 1024;
+
+    /**
+     * The current batched message body, encoded using UTF-8. The body is
+     * stored as an open JSON array, that is, without its closing bracket,
+     * and the buffer always keeps one free byte for that bracket.
+     */
+    protected byte[] batchBody;
+    /** The number of bytes of {@code batchBody} currently in use. */
+    protected int batchBodyLength;
     /** The current number of messages in the batch. */
     protected int numMsgs;
 
@@ -41,12 +50,16 @@ public final class HttpsBatchMessage implements HttpsMessage
     public HttpsBatchMessage()
     {
         // Codes_SRS_HTTPSBATCHMESSAGE_11_001: [The constructor shall initialize the batch message with the body as an empty JSON array.]
-        this.batchBody = "[]";
+        this.batchBody = new byte[INITIAL_BATCH_BODY_CAPACITY];
+        this.batchBody[0] = '[';
+        this.batchBodyLength = 1;
         this.numMsgs = 0;
     }
 
     /**
-     * Adds a message to the batch.
+     * Adds a message to the batch. The message is encoded directly at the end
+     * of the batch body, so adding a message only costs the size of the
+     * message itself.
      *
      * @param msg the message to be added.
      *
@@ -57,26 +70,37 @@ public final class HttpsBatchMessage implements HttpsMessage
     public void addMessage(HttpsSingleMessage msg)
             throws SizeLimitExceededException
     {
-        String jsonMsg = msgToJson(msg);
-        // Codes_SRS_HTTPSBATCHMESSAGE_11_002: [The function shall add the message as a JSON object appended to the current JSON array.]
-        String newBatchBody = addJsonObjToArray(jsonMsg, this.batchBody);
+        int previousLength = this.batchBodyLength;
 
         // Codes_SRS_HTTPSBATCHMESSAGE_11_008: [If adding the message causes the batched message to exceed 256 kb in size, the function shall throw a SizeLimitExceededException.]
         // Codes_SRS_HTTPSBATCHMESSAGE_11_009: [If the function throws a SizeLimitExceedException, the batched message shall remain as if the message was never added.]
-        byte[] newBatchBodyBytes = newBatchBody.getBytes(BATCH_CHARSET);
-
-        if (newBatchBodyBytes.length > SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES) {
-            String errMsg = String.format("Service-bound message size (%d bytes) cannot exceed %d bytes.\n",
-                    newBatchBodyBytes.length, SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES);
-            throw new SizeLimitExceededException(errMsg);
+        // each append checks the size limit before it writes or grows the buffer, so an oversized message is
+        // rejected without growing the batch body past the limit.
+        try
+        {
+            // Codes_SRS_HTTPSBATCHMESSAGE_11_002: [The function shall add the message as a JSON object appended to the current JSON array.]
+            if (this.numMsgs > 0)
+            {
+                appendByte(',');
+            }
+            appendMsgJson(msg);
+        }
+        catch (SizeLimitExceededException e)
+        {
+            this.batchBodyLength = previousLength;
+            throw e;
         }
 
-        this.batchBody = newBatchBody;
         this.numMsgs++;
     }
 
     /**
-     * Returns the current batch body as a UTF-8 encoded byte array.
+     * Returns the current batch body as a UTF-8 encoded byte array. The
+     * closing bracket is written into the slot kept free for it, and the
+     * buffer is trimmed to the body at most once for each state of the batch,
+     * so calling this function again without adding a message does not copy
+     * the body. The returned array is the batch body itself; adding a message
+     * afterwards moves the batch to a new buffer and leaves it unchanged.
      *
      * @return the current batch body as a UTF-8 encoded byte array.
      */
@@ -84,7 +108,13 @@ public final class HttpsBatchMessage implements HttpsMessage
     {
         // Codes_SRS_HTTPSBATCHMESSAGE_11_006: [The function shall return the current batch message body.]
         // Codes_SRS_HTTPSBATCHMESSAGE_11_007: [The batch message body shall be encoded using UTF-8.]
-        return this.batchBody.getBytes(BATCH_CHARSET);
+        this.batchBody[this.batchBodyLength] = ']';
+        if (this.batchBody.length != this.batchBodyLength + 1)
+        {
+            // Codes_SRS_HTTPSBATCHMESSAGE_21_013: [The function shall not copy the body again if no message was added since its last call.]
+            this.batchBody = Arrays.copyOf(this.batchBody, this.batchBodyLength + 1);
+        }
+        return this.batchBody;
     }
 
     /**
@@ -121,68 +151,202 @@ public final class HttpsBatchMessage implements HttpsMessage
     }
 
     /**
-     * Converts a service-bound message to a JSON object with the correct
-     * format.
+     * Appends a service-bound message to the batch body as a JSON object with
+     * the correct format.
      *
      * @param msg the message to be converted to a corresponding JSON object.
      *
-     * @return the JSON string representation of the message.
+     * @throws SizeLimitExceededException if the JSON object does not fit in
+     * the batched message.
      */
-    protected static String msgToJson(HttpsSingleMessage msg)
+    protected void appendMsgJson(HttpsSingleMessage msg) throws SizeLimitExceededException
     {
-        StringBuilder jsonMsg = new StringBuilder("{");
+        appendAscii("{");
         // Codes_SRS_HTTPSBATCHMESSAGE_11_003: [The JSON object shall have the field "body" set to the raw message.]
-        jsonMsg.append("\"body\":");
-        jsonMsg.append("\"" + msg.getBodyAsString() + "\",");
+        appendAscii("\"body\":\"");
+        appendString(msg.getBodyAsString());
+        appendAscii("\",");
         // Codes_SRS_HTTPSBATCHMESSAGE_11_004: [The JSON object shall have the field "base64Encoded" set to whether the raw message was Base64-encoded.]
-        jsonMsg.append("\"base64Encoded\":");
-        jsonMsg.append(Boolean.toString(msg.isBase64Encoded()));
+        appendAscii("\"base64Encoded\":");
+        appendAscii(Boolean.toString(msg.isBase64Encoded()));
         // Codes_SRS_HTTPSBATCHMESSAGE_11_005: [The JSON object shall have the field "properties" set to a JSON object which has the field "content-type" set to the content type of the raw message.]
         MessageProperty[] properties = msg.getProperties();
         int numProperties = properties.length;
         if (numProperties > 0)
         {
-            jsonMsg.append(",");
-            jsonMsg.append("\"properties\":");
-            jsonMsg.append("{");
-            for (int i = 0; i < numProperties - 1; ++i)
+            appendAscii(",\"properties\":{");
+            for (int i = 0; i < numProperties; ++i)
             {
                 MessageProperty property = properties[i];
-                jsonMsg.append("\"" + property.getName() + "\":");
-                jsonMsg.append("\"" + property.getValue() + "\",");
+                if (i > 0)
+                {
+                    appendByte(',');
+                }
+                appendByte('"');
+                appendString(property.getName());
+                appendAscii("\":\"");
+                appendString(property.getValue());
+                appendByte('"');
+            }
+            appendByte('}');
+        }
+        appendByte('}');
+    }
+
+    /**
+     * Appends a string that is known to only contain US-ASCII characters to
+     * the batch body.
+     *
+     * @param s the string to be appended.
+     *
+     * @throws SizeLimitExceededException if the string does not fit in the
+     * batched message.
+     */
+    private void appendAscii(String s) throws SizeLimitExceededException
+    {
+        int length = s.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; ++i)
+        {
+            this.batchBody[this.batchBodyLength++] = (byte) s.charAt(i);
+        }
+    }
+
+    /**
+     * Appends a string to the batch body, encoded using UTF-8. Unpaired
+     * surrogates are replaced by '?', as {@link String#getBytes(Charset)} does.
+     *
+     * @param s the string to be appended.
+     *
+     * @throws SizeLimitExceededException if the encoded string does not fit
+     * in the batched message.
+     */
+    private void appendString(String s) throws SizeLimitExceededException
+    {
+        int length = s.length();
+        ensureCapacity(encodedLength(s));
+        byte[] buffer = this.batchBody;
+        int position = this.batchBodyLength;
+        for (int i = 0; i < length; ++i)
+        {
+            char c = s.charAt(i);
+            if (c < 0x80)
+            {
+                buffer[position++] = (byte) c;
             }
-            if (numProperties > 0)
+            else if (c < 0x800)
             {
-                MessageProperty property = properties[numProperties - 1];
-                jsonMsg.append("\"" + property.getName() + "\":");
-                jsonMsg.append("\"" + property.getValue() + "\"");
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c)
+                    && i + 1 < length
+                    && Character.isLowSurrogate(s.charAt(i + 1)))
+            {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            else if (Character.isSurrogate(c))
+            {
+                buffer[position++] = (byte) '?';
+            }
+            else
+            {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
             }
-            jsonMsg.append("}");
         }
-        jsonMsg.append("}");
+        this.batchBodyLength = position;
+    }
 
-        return jsonMsg.toString();
+    /**
+     * Appends a single US-ASCII character to the batch body.
+     *
+     * @param c the character to be appended.
+     *
+     * @throws SizeLimitExceededException if the character does not fit in the
+     * batched message.
+     */
+    private void appendByte(char c) throws SizeLimitExceededException
+    {
+        ensureCapacity(1);
+        this.batchBody[this.batchBodyLength++] = (byte) c;
     }
 
     /**
-     * Adds a JSON object to a JSON array.
+     * Returns the number of bytes of a string encoded by
+     * {@link #appendString(String)}, without encoding it.
      *
-     * @param jsonObj the object to be added to the JSON array.
-     * @param jsonArray the JSON array.
+     * @param s the string to be measured.
      *
-     * @return the JSON string representation of the JSON array with the object
-     * added.
+     * @return the number of bytes of the string encoded using UTF-8.
      */
-    protected static String addJsonObjToArray(String jsonObj, String jsonArray)
+    private static int encodedLength(String s)
     {
-        if (jsonArray.equals("[]"))
+        int length = s.length();
+        int encodedLength = 0;
+        for (int i = 0; i < length; ++i)
         {
-            return "[" + jsonObj + "]";
+            char c = s.charAt(i);
+            if (c < 0x80)
+            {
+                encodedLength += 1;
+            }
+            else if (c < 0x800)
+            {
+                encodedLength += 2;
+            }
+            else if (Character.isHighSurrogate(c)
+                    && i + 1 < length
+                    && Character.isLowSurrogate(s.charAt(i + 1)))
+            {
+                ++i;
+                encodedLength += 4;
+            }
+            else if (Character.isSurrogate(c))
+            {
+                encodedLength += 1;
+            }
+            else
+            {
+                encodedLength += 3;
+            }
         }
+        return encodedLength;
+    }
 
-        // removes the closing brace of the JSON array.
-        String openJsonArray = jsonArray.substring(0, jsonArray.length() - 1);
+    /**
+     * Grows the batch body buffer, if needed, so that it can hold the given
+     * number of additional bytes. The capacity is at least doubled on each
+     * growth, so appending to the batch takes amortized constant time per byte,
+     * but never grows past the largest batched message.
+     *
+     * @param additionalBytes the number of bytes about to be appended.
+     *
+     * @throws SizeLimitExceededException if the additional bytes, and the
+     * closing bracket of the JSON array, do not fit in the batched message.
+     */
+    private void ensureCapacity(int additionalBytes) throws SizeLimitExceededException
+    {
+        // the closing bracket of the JSON array is counted here, as it is only written by getBody().
+        long newBatchBodySize = (long) this.batchBodyLength + additionalBytes + 1;
+        if (newBatchBodySize > SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES)
+        {
+            String errMsg = String.format("Service-bound message size (%d bytes) cannot exceed %d bytes.\n",
+                    newBatchBodySize, SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES);
+            throw new SizeLimitExceededException(errMsg);
+        }
 
-        return openJsonArray + "," + jsonObj + "]";
+        // keeps a free byte for the closing bracket, so getBody() never needs to grow the buffer.
+        int requiredCapacity = this.batchBodyLength + additionalBytes + 1;
+        if (requiredCapacity > this.batchBody.length)
+        {
+            int newCapacity = Math.min(Math.max(2 * this.batchBody.length, requiredCapacity), SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES);
+            this.batchBody = Arrays.copyOf(this.batchBody, newCapacity);
+        }
     }
 }
@@ -7,7 +7,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.ProtocolException;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +30,25 @@ import javax.net.ssl.SSLContext;
  */
 public class HttpsConnection
 {
+    /** The size of the chunks in which a response stream is read. */
+    private static final int READ_CHUNK_SIZE = 8 * 1024;
+
+    /**
+     * The largest read buffer that is kept for reuse by the reading thread.
+     * Larger buffers are only used for the response that needed them.
+     */
+    private static final int MAX_POOLED_READ_BUFFER_SIZE = 256 * 1024;
+
+    /** The per-thread buffer that response streams are read into. */
+    private static final ThreadLocal<byte[]> READ_BUFFER = new ThreadLocal<byte[]>()
+    {
+        @Override
+        protected byte[] initialValue()
+        {
+            return new byte[READ_CHUNK_SIZE];
+        }
+    };
+
     /** The underlying HTTPS connection. */
     protected final HttpsURLConnection connection;
 
@@ -87,6 +105,8 @@ public class HttpsConnection
         // Codes_SRS_HTTPSCONNECTION_11_003: [The function shall send a request to the URL given in the constructor.]
         // Codes_SRS_HTTPSCONNECTION_11_005: [The function shall throw an IOException if the connection could not be established, or the server responded with a bad status code.]
         this.connection.connect();
+        // Codes_SRS_HTTPSCONNECTION_21_027: [The function shall count the request in the HttpsConnectionPool statistics.]
+        HttpsConnectionPool.requestSent();
     }
 
     /**
@@ -192,13 +212,29 @@ public class HttpsConnection
         // Codes_SRS_HTTPSCONNECTION_11_011: [The function shall read from the input stream (response stream) and return the response.]
         // Codes_SRS_HTTPSCONNECTION_11_012: [The function shall throw an IOException if the input stream could not be accessed.]
         InputStream inputStream = this.connection.getInputStream();
-        byte[] input = readInputStream(inputStream);
+        byte[] input = readInputStream(inputStream, this.connection.getContentLength());
         // Codes_SRS_HTTPSCONNECTION_11_019: [The function shall close the input stream after it has been completely read.]
         inputStream.close();
 
         return input;
     }
 
+    /**
+     * Returns the input stream (response stream) without reading it, so that
+     * the response can be parsed as it arrives instead of being copied into
+     * memory first. To allow the underlying connection to be reused, the
+     * caller must read the stream to its end and close it.
+     *
+     * @return the response stream.
+     *
+     * @throws IOException if the input stream could not be accessed, for
+     * example if the server could not be reached.
+     */
+    public InputStream getInputStream() throws IOException
+    {
+        return this.connection.getInputStream();
+    }
+
     /**
      * Reads from the error stream and returns the error reason.
      *
@@ -217,7 +253,7 @@ public class HttpsConnection
         // if there is no error reason, getErrorStream() returns null.
         if (errorStream != null)
         {
-            error = readInputStream(errorStream);
+            error = readInputStream(errorStream, this.connection.getContentLength());
             // Codes_SRS_HTTPSCONNECTION_11_020: [The function shall close the error stream after it has been completely read.]
             errorStream.close();
         }
@@ -267,23 +303,71 @@ public class HttpsConnection
     protected static byte[] readInputStream(InputStream stream)
             throws IOException
     {
-        ArrayList<Byte> byteBuffer = new ArrayList<>();
-        int nextByte = -1;
-        // read(byte[]) reads the byte into the buffer and returns the number
-        // of bytes read, or -1 if the end of the stream has been reached.
-        while ((nextByte = stream.read()) > -1)
+        return readInputStream(stream, -1);
+    }
+
+    /**
+     * Reads the input stream until the stream is empty. The stream is read in
+     * chunks into a buffer that is reused by the calling thread, or into a
+     * buffer sized from the content length, up to the largest pooled buffer,
+     * if the content does not fit in it.
+     *
+     * @param stream the input stream.
+     * @param contentLength the expected length of the content, as given by
+     * the 'Content-Length' header, or -1 if it is not known.
+     *
+     * @return the content of the input stream.
+     *
+     * @throws IOException if the input stream could not be read from.
+     */
+    protected static byte[] readInputStream(InputStream stream, int contentLength)
+            throws IOException
+    {
+        byte[] buffer = READ_BUFFER.get();
+        if (contentLength > buffer.length)
+        {
+            // the content length comes from the server, so it is only trusted up to the pooled size;
+            // longer content grows the buffer as it actually arrives.
+            buffer = new byte[Math.min(contentLength, MAX_POOLED_READ_BUFFER_SIZE)];
+        }
+
+        int length = 0;
+        while (true)
         {
-            byteBuffer.add((byte) nextByte);
+            if (length == buffer.length)
+            {
+                // the buffer is full, only grow it if the content does not end here.
+                int nextByte = stream.read();
+                if (nextByte < 0)
+                {
+                    break;
+                }
+
+                buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                buffer[length++] = (byte) nextByte;
+            }
+
+            // read(byte[], int, int) returns the number of bytes read, or -1
+            // if the end of the stream has been reached.
+            int bytesRead = stream.read(buffer, length, buffer.length - length);
+            if (bytesRead < 0)
+            {
+                break;
+            }
+            length += bytesRead;
         }
 
-        int bufferSize = byteBuffer.size();
-        byte[] byteArray = new byte[bufferSize];
-        for (int i = 0; i < bufferSize; ++i)
+        if (buffer.length <= MAX_POOLED_READ_BUFFER_SIZE)
+        {
+            READ_BUFFER.set(buffer);
+        }
+        else if (length == buffer.length)
         {
-            byteArray[i] = byteBuffer.get(i);
+            // the buffer was sized for this content only, so it can be handed out as is.
+            return buffer;
         }
 
-        return byteArray;
+        return Arrays.copyOf(buffer, length);
     }
 
     protected void setSSLContext(SSLContext sslContext) throws IllegalArgumentException
@@ -294,7 +378,8 @@ public class HttpsConnection
             throw new IllegalArgumentException("SSL context cannot be null");
         }
         //Codes_SRS_HTTPSCONNECTION_25_024: [**The function shall set the the SSL context with the given value.**]**
-        this.connection.setSSLSocketFactory(sslContext.getSocketFactory());
+        // Codes_SRS_HTTPSCONNECTION_21_026: [The function shall use the socket factory shared by the HttpsConnectionPool for the SSL context, so the connection can be reused by later requests.]
+        this.connection.setSSLSocketFactory(HttpsConnectionPool.getSocketFactory(sslContext));
     }
 
     protected HttpsConnection()
@@ -0,0 +1,167 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.https;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Lets the HTTPS requests to an IoT Hub reuse their persistent TLS connections.
+ * </p>
+ * <p>
+ * Java keeps the idle connections of {@link javax.net.ssl.HttpsURLConnection}
+ * in a keep-alive cache per host, but only hands one out again to a request
+ * which uses the very same {@link SSLSocketFactory} instance. Since
+ * {@link SSLContext#getSocketFactory()} creates a new factory on every call,
+ * the requests get their factory from here, one per SSL context. The size of
+ * the pool of idle connections per host is set by the {@code http.maxConnections}
+ * system property.
+ * </p>
+ */
+public final class HttpsConnectionPool
+{
+    private static final Map<SSLContext, SSLSocketFactory> socketFactories = new WeakHashMap<>();
+
+    private static final AtomicLong openedConnectionCount = new AtomicLong();
+    private static final AtomicLong sentRequestCount = new AtomicLong();
+
+    private HttpsConnectionPool()
+    {
+    }
+
+    /**
+     * Returns the socket factory shared by all the requests using the given
+     * SSL context.
+     *
+     * @param sslContext the SSL context of the requests.
+     * @return the shared socket factory.
+     * @throws IllegalArgumentException if the SSL context is null.
+     */
+    public static SSLSocketFactory getSocketFactory(SSLContext sslContext)
+    {
+        // Codes_SRS_HTTPSCONNECTIONPOOL_21_001: [The function shall throw IllegalArgumentException if the SSL context is null.]
+        if (sslContext == null)
+        {
+            throw new IllegalArgumentException("SSL context cannot be null");
+        }
+
+        synchronized (socketFactories)
+        {
+            // Codes_SRS_HTTPSCONNECTIONPOOL_21_002: [The function shall return the same socket factory for the same SSL context,
+            // creating it on the first call.]
+            SSLSocketFactory socketFactory = socketFactories.get(sslContext);
+            if (socketFactory == null)
+            {
+                socketFactory = new CountingSSLSocketFactory(sslContext.getSocketFactory());
+                socketFactories.put(sslContext, socketFactory);
+            }
+
+            return socketFactory;
+        }
+    }
+
+    /**
+     * Getter for the number of TLS connections opened by the HTTPS requests
+     * since the process started.
+     *
+     * @return the number of opened connections.
+     */
+    public static long getOpenedConnectionCount()
+    {
+        // Codes_SRS_HTTPSCONNECTIONPOOL_21_003: [The function shall return the number of sockets created by the shared socket factories.]
+        return openedConnectionCount.get();
+    }
+
+    /**
+     * Getter for the number of HTTPS requests sent since the process started.
+     * Together with {@link #getOpenedConnectionCount()}, tells how often the
+     * requests reused a connection.
+     *
+     * @return the number of sent requests.
+     */
+    public static long getSentRequestCount()
+    {
+        // Codes_SRS_HTTPSCONNECTIONPOOL_21_004: [The function shall return the number of requests sent by HttpsConnection.]
+        return sentRequestCount.get();
+    }
+
+    static void requestSent()
+    {
+        sentRequestCount.incrementAndGet();
+    }
+
+    /**
+     * Counts the sockets, and thus the TLS handshakes, of the requests.
+     */
+    private static final class CountingSSLSocketFactory extends SSLSocketFactory
+    {
+        private final SSLSocketFactory socketFactory;
+
+        private CountingSSLSocketFactory(SSLSocketFactory socketFactory)
+        {
+            this.socketFactory = socketFactory;
+        }
+
+        @Override
+        public Socket createSocket() throws IOException
+        {
+            openedConnectionCount.incrementAndGet();
+            return this.socketFactory.createSocket();
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException
+        {
+            openedConnectionCount.incrementAndGet();
+            return this.socketFactory.createSocket(socket, host, port, autoClose);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException
+        {
+            openedConnectionCount.incrementAndGet();
+            return this.socketFactory.createSocket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException
+        {
+            openedConnectionCount.incrementAndGet();
+            return this.socketFactory.createSocket(host, port, localHost, localPort);
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException
+        {
+            openedConnectionCount.incrementAndGet();
+            return this.socketFactory.createSocket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException
+        {
+            openedConnectionCount.incrementAndGet();
+            return this.socketFactory.createSocket(address, port, localAddress, localPort);
+        }
+
+        @Override
+        public String[] getDefaultCipherSuites()
+        {
+            return this.socketFactory.getDefaultCipherSuites();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites()
+        {
+            return this.socketFactory.getSupportedCipherSuites();
+        }
+    }
+}
@@ -4,7 +4,6 @@
 package com.microsoft.azure.sdk.iot.device.transport.https;
 
 import com.microsoft.azure.sdk.iot.device.*;
-import com.microsoft.azure.sdk.iot.device.auth.IotHubSasToken;
 import com.microsoft.azure.sdk.iot.device.net.*;
 import com.microsoft.azure.sdk.iot.device.transport.TransportUtils;
 
@@ -17,8 +16,11 @@ import java.net.URL;
  */
 public class HttpsIotHubConnection
 {
-    /** The HTTPS connection lock. */
-    protected static final Object HTTPS_CONNECTION_LOCK = new Object();
+    /**
+     * The HTTPS connection lock. Each connection has its own, so the requests
+     * of different device clients can use their pooled connections in parallel.
+     */
+    protected final Object httpsConnectionLock = new Object();
 
     /** The client configuration. */
     protected final DeviceClientConfig config;
@@ -37,7 +39,7 @@ public class HttpsIotHubConnection
      */
     public HttpsIotHubConnection(DeviceClientConfig config)
     {
-        synchronized (HTTPS_CONNECTION_LOCK)
+        synchronized (httpsConnectionLock)
         {
             // Codes_SRS_HTTPSIOTHUBCONNECTION_11_001: [The constructor shall save the client configuration.]
             this.config = config;
@@ -55,7 +57,7 @@ public class HttpsIotHubConnection
      */
     public IotHubStatusCode sendEvent(HttpsMessage msg) throws IOException
     {
-        synchronized (HTTPS_CONNECTION_LOCK)
+        synchronized (httpsConnectionLock)
         {
             String iotHubHostname = this.config.getIotHubHostname();
             String deviceId = this.config.getDeviceId();
@@ -64,8 +66,7 @@ public class HttpsIotHubConnection
             // Codes_SRS_HTTPSIOTHUBCONNECTION_11_002: [The function shall send a request to the URL 'https://[iotHubHostname]/devices/[deviceId]/messages/events?api-version=2016-02-03'.]
             IotHubEventUri eventUri = new IotHubEventUri(iotHubHostname, deviceId);
             URL eventUrl = new URL("https://" + eventUri.toString());
-            IotHubSasToken sasToken = new IotHubSasToken(this.config, System.currentTimeMillis() / 1000l +
-                    this.config.getTokenValidSecs() + 1l);
+            String sasToken = this.config.getSasTokenManager().getSasToken();
 
             // Codes_SRS_HTTPSIOTHUBCONNECTION_11_003: [The function shall send a POST request.]
             // Codes_SRS_HTTPSIOTHUBCONNECTION_11_004: [The function shall set the request body to the message body.]
@@ -79,8 +80,8 @@ public class HttpsIotHubConnection
             }
             // Codes_SRS_HTTPSIOTHUBCONNECTION_11_006: [The function shall set the request read timeout to be the configuration parameter readTimeoutMillis.]
             request.setReadTimeoutMillis(readTimeoutMillis).
-                    // Codes_SRS_HTTPSIOTHUBCONNECTION_11_007: [The function shall set the header field 'authorization' to be a valid SAS token generated from the configuration parameters.]
-                            setHeaderField("authorization", sasToken.toString()).
+                    // Codes_SRS_HTTPSIOTHUBCONNECTION_11_007: [The function shall set the header field 'authorization' to be the SAS token cached by the IotHubSasTokenManager of the configuration.]
+                            setHeaderField("authorization", sasToken).
                     // Codes_SRS_HTTPSIOTHUBCONNECTION_11_008: [The function shall set the header field 'iothub-to' to be '/devices/[deviceId]/messages/events'.]
                             setHeaderField("iothub-to", eventUri.getPath()).
                     // Codes_SRS_HTTPSIOTHUBCONNECTION_11_009: [The function shall set the header field 'content-type' to be the message content type.]
@@ -106,7 +107,7 @@ public class HttpsIotHubConnection
      */
     public Message receiveMessage() throws IOException
     {
-        synchronized (HTTPS_CONNECTION_LOCK)
+        synchronized (httpsConnectionLock)
         {
             String iotHubHostname = this.config.getIotHubHostname();
             String deviceId = this.config.getDeviceId();
@@ -117,17 +118,16 @@ public class HttpsIotHubConnection
             IotHubMessageUri messageUri = new IotHubMessageUri(iotHubHostname, deviceId);
             URL messageUrl = new URL("https://" + messageUri.toString());
 
-            IotHubSasToken sasToken = new IotHubSasToken(this.config, System.currentTimeMillis() / 1000l +
-                    this.config.getTokenValidSecs() + 1l);
+            String sasToken = this.config.getSasTokenManager().getSasToken();
 
             // Codes_SRS_HTTPSIOTHUBCONNECTION_11_014: [The function shall send a GET request.]
             HttpsRequest request =
                     new HttpsRequest(messageUrl, HttpsMethod.GET, new byte[0]).
                             // Codes_SRS_HTTPSIOTHUBCONNECTION_11_015: [The function shall set the request read timeout to be the configuration parameter readTimeoutMillis.]
                                     setReadTimeoutMillis(readTimeoutMillis).
-                            // Codes_SRS_HTTPSIOTHUBCONNECTION_11_016: [The function shall set the header field 'authorization' to be a valid SAS token generated from the configuration parameters.]
+                            // Codes_SRS_HTTPSIOTHUBCONNECTION_11_016: [The function shall set the header field 'authorization' to be the SAS token cached by the IotHubSasTokenManager of the configuration.]
                                     setHeaderField("authorization",
-                                    sasToken.toString()).
+                                    sasToken).
                             // Codes_SRS_HTTPSIOTHUBCONNECTION_11_017: [The function shall set the header field 'iothub-to' to be '/devices/[deviceId]/messages/devicebound'.]
                                     setHeaderField("iothub-to",
                                     messageUri.getPath()).
@@ -171,7 +171,7 @@ public class HttpsIotHubConnection
     public void sendMessageResult(IotHubMessageResult result)
             throws IOException
     {
-        synchronized (HTTPS_CONNECTION_LOCK)
+        synchronized (httpsConnectionLock)
         {
             // Codes_SRS_HTTPSIOTHUBCONNECTION_11_039: [If the function is called before receiveMessage() returns a message, the function shall throw an IllegalStateException.]
             if (this.messageEtag == null)
@@ -239,13 +239,12 @@ public class HttpsIotHubConnection
                             "Invalid message result specified.");
             }
 
-            IotHubSasToken sasToken = new IotHubSasToken(this.config, System.currentTimeMillis() / 1000l +
-                                    this.config.getTokenValidSecs() + 1l);
+            String sasToken = this.config.getSasTokenManager().getSasToken();
 
             // Codes_SRS_HTTPSIOTHUBCONNECTION_11_033: [The function shall set the request read timeout to be the configuration parameter readTimeoutMillis.]
             request.setReadTimeoutMillis(readTimeoutMillis).
-                    // Codes_SRS_HTTPSIOTHUBCONNECTION_11_034: [The function shall set the header field 'authorization' to be a valid SAS token generated from the configuration parameters.]
-                            setHeaderField("authorization", sasToken.toString()).
+                    // Codes_SRS_HTTPSIOTHUBCONNECTION_11_034: [The function shall set the header field 'authorization' to be the SAS token cached by the IotHubSasTokenManager of the configuration.]
+                            setHeaderField("authorization", sasToken).
                     setHeaderField("iothub-to", resultPath).
                     // Codes_SRS_HTTPSIOTHUBCONNECTION_11_035: [The function shall set the header field 'if-match' to be the e-tag saved when receiveMessage() was previously called.]
                             setHeaderField("if-match", this.messageEtag);
@@ -3,6 +3,7 @@
 
 package com.microsoft.azure.sdk.iot.device.transport.https;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -73,6 +74,17 @@ public class HttpsResponse
         return Arrays.copyOf(this.body, this.body.length);
     }
 
+    /**
+     * Getter for a read-only view of the response body. Unlike
+     * {@link #getBody()}, the body is not copied.
+     *
+     * @return a read-only view of the response body.
+     */
+    public ByteBuffer getBodyAsByteBuffer()
+    {
+        return ByteBuffer.wrap(this.body).asReadOnlyBuffer();
+    }
+
     /**
      * Getter for a header field.
      *
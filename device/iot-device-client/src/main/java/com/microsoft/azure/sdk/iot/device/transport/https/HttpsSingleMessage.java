@@ -8,6 +8,7 @@ import com.microsoft.azure.sdk.iot.device.MessageProperty;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 /** A single HTTPS message. */
@@ -34,8 +35,7 @@ public final class HttpsSingleMessage implements HttpsMessage
         int systemPropertyLength = 0;
 
         // Codes_SRS_HTTPSSINGLEMESSAGE_11_001: [The parsed HttpsSingleMessage shall have a copy of the original message body as its body.]
-        byte[] msgBody = message.getBytes();
-        httpsMsg.body = Arrays.copyOf(msgBody, msgBody.length);
+        httpsMsg.body = message.getBytes();
 
         // Codes_SRS_HTTPSSINGLEMESSAGE_21_014: [If the message contains messageId, the parsed HttpsSingleMessage shall add the property 'iothub-messageid' with the messageId value.]
         if(message.getMessageId() != null)
@@ -44,12 +44,12 @@ public final class HttpsSingleMessage implements HttpsMessage
         }
 
         // Codes_SRS_HTTPSSINGLEMESSAGE_11_003: [The parsed HttpsSingleMessage shall add the prefix 'iothub-app-' to each of the message properties.]
-        MessageProperty[] msgProperties = message.getProperties();
-        httpsMsg.properties = new MessageProperty[msgProperties.length + systemPropertyLength];
+        List<MessageProperty> msgProperties = message.getPropertyList();
+        httpsMsg.properties = new MessageProperty[msgProperties.size() + systemPropertyLength];
         int countProperty;
-        for (countProperty = 0; countProperty < msgProperties.length; ++countProperty)
+        for (countProperty = 0; countProperty < msgProperties.size(); ++countProperty)
         {
-            MessageProperty property = msgProperties[countProperty];
+            MessageProperty property = msgProperties.get(countProperty);
 
             httpsMsg.properties[countProperty] = new MessageProperty(
                     HTTPS_APP_PROPERTY_PREFIX + property.getName(),
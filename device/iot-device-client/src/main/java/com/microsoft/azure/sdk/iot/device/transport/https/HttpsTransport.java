@@ -273,6 +273,29 @@ public final class HttpsTransport implements IotHubTransport
         return this.waitingList.isEmpty() && this.inProgressList.isEmpty() && this.callbackList.isEmpty();
     }
 
+    /**
+     * Returns the number of messages waiting to be sent.
+     *
+     * @return the number of messages waiting to be sent.
+     */
+    public int getQueuedMessageCount()
+    {
+        // Codes_SRS_HTTPSTRANSPORT_21_001: [The function shall return the number of messages in the waiting list.]
+        return this.waitingList.size();
+    }
+
+    /**
+     * Returns the number of messages sent to the IoT Hub which were not
+     * acknowledged yet.
+     *
+     * @return the number of messages in progress.
+     */
+    public int getInProgressMessageCount()
+    {
+        // Codes_SRS_HTTPSTRANSPORT_21_002: [The function shall return the number of messages in the in progress list.]
+        return this.inProgressList.size();
+    }
+
     /**
      * Moves as many messages as can be sent in one HTTPS request from the
      * waiting list to the in-progress list. If a single message is moved to the
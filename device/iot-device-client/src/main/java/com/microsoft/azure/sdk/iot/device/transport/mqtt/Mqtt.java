@@ -5,27 +5,32 @@ package com.microsoft.azure.sdk.iot.device.transport.mqtt;
 
 import com.microsoft.azure.sdk.iot.device.IotHubSSLContext;
 import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportWorker;
 import com.microsoft.azure.sdk.iot.device.transport.TransportUtils;
 import org.eclipse.paho.client.mqttv3.*;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 
 import java.io.IOException;
 import java.security.*;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 abstract public class Mqtt implements MqttCallback
 {
+    // paho mqtt allows 10 messages in flight at the same time unless configured otherwise
+    static final int DEFAULT_MAX_IN_FLIGHT_COUNT = 10;
 
     abstract String parseTopic() throws IOException;
     abstract byte[] parsePayload(String topic) throws IOException;
 
      /*
-     Variables which apply to all the concrete classes as well as to Mqtt and are to be instantiated only once
-     in lifetime.
+     Variables which belong to one mqtt broker connection. The concrete classes serving the same device
+     share them through the Mqtt(Mqtt) constructor, so each device client gets its own connection.
      */
-    private static MqttConnectionInfo info ;
-    protected static ConcurrentSkipListMap<String, byte[]> allReceivedMessages;
-    private static Object MQTT_LOCK;
+    private MqttConnectionInfo info;
+    protected MqttReceivedMessages receivedMessages;
+    private Object mqttLock;
 
     /*
       Inner class which holds the basic information related to Mqtt Client Async.
@@ -42,19 +47,26 @@ abstract public class Mqtt implements MqttCallback
         private static final int qos = 1;
         private static final int MAX_WAIT_TIME = 1000;
 
-        // paho mqtt only supports 10 messages in flight at the same time
-        private static final int maxInFlightCount = 10;
+        // publishes awaiting their PUBACK, bounded by the in-flight window
+        private final Semaphore inFlightWindow;
 
+        // worker of the event driven mode to be woken up when a message arrives, if any
+        private volatile IotHubTransportWorker transportWorker = null;
 
-        MqttConnectionInfo(String serverURI, String clientId, String userName, String password, IotHubSSLContext iotHubSSLContext) throws IOException
+        MqttConnectionInfo(String serverURI, String clientId, String userName, String password, IotHubSSLContext iotHubSSLContext, int maxInFlightCount) throws IOException
         {
+            this.inFlightWindow = new Semaphore(maxInFlightCount);
             try
             {
 
-                mqttAsyncClient = new MqttAsyncClient(serverURI, clientId, new MemoryPersistence());
+                mqttAsyncClient = new MqttAsyncClient(serverURI, clientId, new MemoryPersistence(), new MqttPingScheduler());
                 mqttAsyncClient.setCallback(Mqtt.this);
+                /*
+                **Codes_SRS_Mqtt_21_063: [**The constructor shall make the connection acknowledge the received messages only when asked, so a message the received messages queue rejects stays with the IoT Hub.**]**
+                 */
+                mqttAsyncClient.setManualAcks(true);
                 connectionOptions = new MqttConnectOptions();
-                this.updateConnectionOptions(userName, password, iotHubSSLContext);
+                this.updateConnectionOptions(userName, password, iotHubSSLContext, maxInFlightCount);
             }
             catch (MqttException e)
             {
@@ -76,9 +88,10 @@ abstract public class Mqtt implements MqttCallback
          *
          * @param userName the user name for the mqtt broker connection.
          * @param userPassword the user password for the mqtt broker connection.
+         * @param maxInFlightCount the number of publishes which may await acknowledgement at the same time.
          */
 
-        private void updateConnectionOptions(String userName, String userPassword, IotHubSSLContext iotHubSSLContext)
+        private void updateConnectionOptions(String userName, String userPassword, IotHubSSLContext iotHubSSLContext, int maxInFlightCount)
         {
             this.connectionOptions.setKeepAliveInterval(keepAliveInterval);
             this.connectionOptions.setCleanSession(setCleanSession);
@@ -86,24 +99,19 @@ abstract public class Mqtt implements MqttCallback
             this.connectionOptions.setUserName(userName);
             this.connectionOptions.setPassword(userPassword.toCharArray());
             this.connectionOptions.setSocketFactory(iotHubSSLContext.getIotHubSSlContext().getSocketFactory());
+            this.connectionOptions.setMaxInflight(maxInFlightCount);
         }
 
     }
 
-    private void setMqttInfo(String serverURI, String clientId, String userName, String password, IotHubSSLContext iotHubSSLContext) throws IOException
+    private void setMqttInfo(String serverURI, String clientId, String userName, String password, IotHubSSLContext iotHubSSLContext, int maxInFlightCount) throws IOException
     {
         /*
-        **Codes_SRS_Mqtt_25_003: [**The constructor shall use the configuration to instantiate an instance of the inner class MqttConnectionInfo if not already created.**]**
-         */
-        /*
-        ** Codes_SRS_Mqtt_25_004: [**If an instance of the inner class MqttConnectionInfo is already created than it shall return doing nothing.**]**
+        **Codes_SRS_Mqtt_25_003: [**The constructor shall use the configuration to instantiate an instance of the inner class MqttConnectionInfo.**]**
          */
-        if (Mqtt.info == null)
-        {
-            Mqtt.info = new MqttConnectionInfo(serverURI, clientId, userName, password, iotHubSSLContext);
-            Mqtt.allReceivedMessages = new ConcurrentSkipListMap<String, byte[]>();
-            Mqtt.MQTT_LOCK = new Object();
-        }
+        this.info = new MqttConnectionInfo(serverURI, clientId, userName, password, iotHubSSLContext, maxInFlightCount);
+        this.receivedMessages = new MqttReceivedMessages(clientId);
+        this.mqttLock = new Object();
 
     }
 
@@ -118,11 +126,31 @@ abstract public class Mqtt implements MqttCallback
         /*
         ** Codes_SRS_Mqtt_25_001: [**The constructor shall instantiate MQTT lock for using base class.**]**
         */
-        if (Mqtt.MQTT_LOCK == null)
+        this.mqttLock = new Object();
+    }
+
+    /**
+     * Constructor to share the mqtt broker connection of another client of the same device.
+     *
+     * @param mqttConnection the client which owns the mqtt broker connection.
+     */
+
+    public Mqtt(Mqtt mqttConnection) throws IOException
+    {
+        if (mqttConnection == null)
         {
-            Mqtt.MQTT_LOCK = new Object();
+            /*
+            ** Codes_SRS_Mqtt_25_049: [**The constructor shall throw InvalidParameter Exception if mqttConnection is null.**]**
+             */
+            throw new InvalidParameterException("Mqtt connection cannot be null");
         }
 
+        /*
+        ** Codes_SRS_Mqtt_25_050: [**The constructor shall share the connection information, received messages queue and lock of mqttConnection.**]**
+         */
+        this.info = mqttConnection.info;
+        this.receivedMessages = mqttConnection.receivedMessages;
+        this.mqttLock = mqttConnection.mqttLock;
     }
 
     /**
@@ -135,6 +163,21 @@ abstract public class Mqtt implements MqttCallback
      */
 
     public Mqtt(String serverURI, String clientId, String userName, String userPassword, IotHubSSLContext iotHubSSLContext) throws IOException
+    {
+        this(serverURI, clientId, userName, userPassword, iotHubSSLContext, DEFAULT_MAX_IN_FLIGHT_COUNT);
+    }
+
+    /**
+     * Constructor to instantiate mqtt broker connection.
+     *
+     * @param serverURI the server uri associated with this mqtt broker connection
+     * @param clientId the client Id associated with this mqtt broker connection.
+     * @param userName the user name for the mqtt broker connection.
+     * @param userPassword the user password for the mqtt broker connection.
+     * @param maxInFlightCount the number of publishes which may await acknowledgement at the same time.
+     */
+
+    public Mqtt(String serverURI, String clientId, String userName, String userPassword, IotHubSSLContext iotHubSSLContext, int maxInFlightCount) throws IOException
     {
         /*
          ** Codes_SRS_Mqtt_25_002: [**The constructor shall throw InvalidParameter Exception if any of the parameters are null or empty .**]**
@@ -149,21 +192,29 @@ abstract public class Mqtt implements MqttCallback
             throw new InvalidParameterException();
         }
 
+        else if (maxInFlightCount < 1)
+        {
+            /*
+             ** Codes_SRS_Mqtt_21_051: [**The constructor shall throw InvalidParameter Exception if maxInFlightCount is less than 1.**]**
+             */
+            throw new InvalidParameterException("maxInFlightCount must be at least 1");
+        }
+
         try
         {
             /*
-            **Codes_SRS_Mqtt_25_003: [**The constructor shall use the configuration to instantiate an instance of the inner class MqttConnectionInfo if not already created.**]**
+            **Codes_SRS_Mqtt_25_003: [**The constructor shall use the configuration to instantiate an instance of the inner class MqttConnectionInfo.**]**
              */
-            setMqttInfo(serverURI, clientId, userName, userPassword, iotHubSSLContext);
+            setMqttInfo(serverURI, clientId, userName, userPassword, iotHubSSLContext, maxInFlightCount);
         }
         catch (IOException e)
         {
             /*
             **Codes_SRS_Mqtt_25_045: [**The constructor throws IOException if MqttException is thrown and doesn't instantiate this instance.**]**
              */
-            Mqtt.info = null;
-            Mqtt.allReceivedMessages = null;
-            Mqtt.MQTT_LOCK = null;
+            this.info = null;
+            this.receivedMessages = null;
+            this.mqttLock = null;
             throw new IOException(e.getMessage());
         }
 
@@ -177,17 +228,11 @@ abstract public class Mqtt implements MqttCallback
     public void restartBaseMqtt()
     {
         /*
-            As this is abstract class, if we ever want to restart application
-            in the current scope to create a new instance of this base class,
-            we have to unset all its static variables.
-        */
-
-        /*
-        ** Codes_SRS_Mqtt_25_046: [**restartBaseMqtt shall unset all the static variables.**]**
+        ** Codes_SRS_Mqtt_25_046: [**restartBaseMqtt shall unset the connection information, received messages queue and lock of this client.**]**
          */
-        Mqtt.MQTT_LOCK = null;
-        Mqtt.allReceivedMessages = null;
-        Mqtt.info = null;
+        this.mqttLock = null;
+        this.receivedMessages = null;
+        this.info = null;
 
     }
 
@@ -198,11 +243,11 @@ abstract public class Mqtt implements MqttCallback
 
     protected void connect() throws IOException
     {
-        synchronized (Mqtt.MQTT_LOCK)
+        synchronized (this.mqttLock)
         {
             try
             {
-                if (Mqtt.info == null)
+                if (this.info == null)
                 {
                     /*
                     ** Codes_SRS_Mqtt_25_006: [**If the inner class MqttConnectionInfo has not been instantiated then the function shall throw IOException.**]**
@@ -213,12 +258,12 @@ abstract public class Mqtt implements MqttCallback
                 /*
                 **Codes_SRS_Mqtt_25_008: [**If the MQTT connection is already open, the function shall do nothing.**]**
                  */
-                if (!Mqtt.info.mqttAsyncClient.isConnected())
+                if (!this.info.mqttAsyncClient.isConnected())
                 {
                     /*
                     **Codes_SRS_Mqtt_25_005: [**The function shall establish an MQTT connection with an IoT Hub using the provided host name, user name, device ID, and sas token.**]**
                      */
-                    IMqttToken connectToken = Mqtt.info.mqttAsyncClient.connect(Mqtt.info.connectionOptions);
+                    IMqttToken connectToken = this.info.mqttAsyncClient.connect(this.info.connectionOptions);
                     connectToken.waitForCompletion();
                 }
             }
@@ -240,22 +285,22 @@ abstract public class Mqtt implements MqttCallback
 
     protected void disconnect() throws IOException
     {
-        synchronized (Mqtt.MQTT_LOCK)
+        synchronized (this.mqttLock)
         {
             try
             {
                 /*
                 **Codes_SRS_Mqtt_25_010: [**If the MQTT connection is closed, the function shall do nothing.**]**
                  */
-                if (Mqtt.info.mqttAsyncClient.isConnected())
+                if (this.info.mqttAsyncClient.isConnected())
                 {
                     /*
                     ** Codes_SRS_Mqtt_25_009: [**The function shall close the MQTT connection.**]**
                      */
-                    IMqttToken disconnectToken = Mqtt.info.mqttAsyncClient.disconnect();
+                    IMqttToken disconnectToken = this.info.mqttAsyncClient.disconnect();
                     disconnectToken.waitForCompletion();
                 }
-                Mqtt.info.mqttAsyncClient = null;
+                this.info.mqttAsyncClient = null;
             }
             catch (MqttException e)
             {
@@ -275,17 +320,52 @@ abstract public class Mqtt implements MqttCallback
      */
     protected void publish(String publishTopic, byte[] payload) throws IOException
     {
-        synchronized (Mqtt.MQTT_LOCK)
+        this.publish(publishTopic, payload, null);
+    }
+
+    /**
+     * Method to publish to mqtt broker connection without waiting for the acknowledgement. Blocks
+     * only while the in-flight window of the connection is full.
+     *
+     * @param publishTopic the topic to publish on mqtt broker connection.
+     * @param payload   the payload to publish on publishTopic of mqtt broker connection.
+     * @param completionListener the listener notified when the IoT Hub acknowledges the message or
+     *                           the delivery fails. May be {@code null}.
+     */
+    protected void publish(String publishTopic, byte[] payload, final IMqttActionListener completionListener) throws IOException
+    {
+        if (this.info == null)
         {
-            try
+            throw new IOException("Mqtt client should be initialised atleast once before using it");
+        }
+
+        if (publishTopic == null || publishTopic.length() == 0 || payload == null)
+        {
+            /*
+            **Codes_SRS_Mqtt_25_013: [**If the either publishTopic is null or empty or if payload is null, the function shall throw an IOException.**]**
+            */
+            throw new IOException("Cannot publish on null or empty publish topic");
+        }
+
+        final Semaphore inFlightWindow = this.info.inFlightWindow;
+        boolean holdsWindowPlace = false;
+        try
+        {
+            /*
+            **Codes_SRS_Mqtt_25_048: [**publish shall wait until the number of publishes awaiting acknowledgement is less than the in-flight window of the connection.**]**
+            */
+            while (!inFlightWindow.tryAcquire(MqttConnectionInfo.MAX_WAIT_TIME, TimeUnit.MILLISECONDS))
             {
-                if (Mqtt.info == null)
+                if (!this.isConnected())
                 {
-                    System.out.println("Mqtt client should be initialised atleast once before using it");
-                    throw new InvalidParameterException();
+                    throw new IOException("Cannot publish when mqtt client is disconnected");
                 }
+            }
+            holdsWindowPlace = true;
 
-                if (!Mqtt.info.mqttAsyncClient.isConnected())
+            synchronized (this.mqttLock)
+            {
+                if (this.info.mqttAsyncClient == null || !this.info.mqttAsyncClient.isConnected())
                 {
                     /*
                     ** Codes_SRS_Mqtt_25_012: [**If the MQTT connection is closed, the function shall throw an IOException.**]**
@@ -293,52 +373,82 @@ abstract public class Mqtt implements MqttCallback
                     throw new IOException("Cannot publish when mqtt client is disconnected");
                 }
 
-                if (publishTopic == null || publishTopic.length() == 0 || payload == null)
-                {
-                    /*
-                    **Codes_SRS_Mqtt_25_013: [**If the either publishTopic is null or empty or if payload is null, the function shall throw an IOException.**]**
-                    */
-                    throw new IOException("Cannot publish on null or empty publish topic");
-                }
-
-                while (Mqtt.info.mqttAsyncClient.getPendingDeliveryTokens().length >= Mqtt.info.maxInFlightCount)
-                {
-                    /*
-                    **Codes_SRS_Mqtt_25_048: [**publish shall check for pending publish tokens by calling getPendingDeliveryTokens.
-                    * And if there are pending tokens publish shall sleep until the number of pending tokens are less than 10 as per paho limitations**]**
-                    */
-                    Thread.sleep(10);
-                }
-
                 MqttMessage mqttMessage = (payload.length == 0) ? new MqttMessage() : new MqttMessage(payload);
 
-                mqttMessage.setQos(Mqtt.info.qos);
+                mqttMessage.setQos(MqttConnectionInfo.qos);
 
                 /*
                 **Codes_SRS_Mqtt_25_014: [**The function shall publish message payload on the publishTopic specified to the IoT Hub given in the configuration.**]**
                  */
-
-                IMqttDeliveryToken publishToken = Mqtt.info.mqttAsyncClient.publish(publishTopic, mqttMessage);
-
-            }
-            catch (MqttException e)
-            {
                 /*
-                **Codes_SRS_Mqtt_25_047: [**If the Mqtt Client Async throws MqttException, the function shall throw an IOException with the message.**]**
+                **Codes_SRS_Mqtt_21_052: [**When the publish completes or fails, the function shall free its place in the in-flight window and notify completionListener, if any.**]**
                  */
-                throw new IOException("Unable to publish message on topic : " + publishTopic + " because " + e.getCause() + e.getMessage());
-            }
-            catch (InterruptedException e)
-            {
-                throw new IOException("Interrupted, Unable to publish message on topic : " + publishTopic);
+                /*
+                **Codes_SRS_Mqtt_21_062: [**The function shall free the window place and notify completionListener only for the first completion of the publish, because paho may fail a kept in-flight publish when the connection drops and complete it again after redelivering it.**]**
+                 */
+                final AtomicBoolean completed = new AtomicBoolean(false);
+                this.info.mqttAsyncClient.publish(publishTopic, mqttMessage, null, new IMqttActionListener()
+                {
+                    @Override
+                    public void onSuccess(IMqttToken asyncActionToken)
+                    {
+                        if (!completed.compareAndSet(false, true))
+                        {
+                            return;
+                        }
+
+                        inFlightWindow.release();
+                        if (completionListener != null)
+                        {
+                            completionListener.onSuccess(asyncActionToken);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(IMqttToken asyncActionToken, Throwable exception)
+                    {
+                        if (!completed.compareAndSet(false, true))
+                        {
+                            return;
+                        }
+
+                        inFlightWindow.release();
+                        if (completionListener != null)
+                        {
+                            completionListener.onFailure(asyncActionToken, exception);
+                        }
+                    }
+                });
+                // the listener owns the window place from here on
+                holdsWindowPlace = false;
             }
-            catch (Exception e)
+        }
+        catch (MqttException e)
+        {
+            /*
+            **Codes_SRS_Mqtt_25_047: [**If the Mqtt Client Async throws MqttException, the function shall throw an IOException with the message.**]**
+             */
+            throw new IOException("Unable to publish message on topic : " + publishTopic + " because " + e.getCause() + e.getMessage());
+        }
+        catch (InterruptedException e)
+        {
+            throw new IOException("Interrupted, Unable to publish message on topic : " + publishTopic);
+        }
+        catch (IOException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new IOException("Unable to publish message on topic : " + publishTopic + " " + e.getCause() + e.getMessage());
+        }
+        finally
+        {
+            if (holdsWindowPlace)
             {
-                throw new IOException("Unable to publish message on topic : " + publishTopic + " " + e.getCause() + e.getMessage());
+                inFlightWindow.release();
             }
-
         }
-
     }
 
     /**
@@ -348,11 +458,11 @@ abstract public class Mqtt implements MqttCallback
      */
     protected void subscribe(String topic) throws IOException
     {
-        synchronized (Mqtt.MQTT_LOCK)
+        synchronized (this.mqttLock)
         {
             try
             {
-                if (Mqtt.info == null)
+                if (this.info == null)
                 {
                     throw new IOException("Mqtt client should be initialised atleast once before using it");
                 }
@@ -364,7 +474,7 @@ abstract public class Mqtt implements MqttCallback
                     throw new InvalidParameterException("Topic cannot be null");
 
                 }
-                else if (!Mqtt.info.mqttAsyncClient.isConnected())
+                else if (!this.info.mqttAsyncClient.isConnected())
                 {
                     /*
                     **Codes_SRS_Mqtt_25_015: [**If the MQTT connection is closed, the function shall throw an IOexception with message.**]**
@@ -374,8 +484,8 @@ abstract public class Mqtt implements MqttCallback
                 /*
                 **Codes_SRS_Mqtt_25_017: [**The function shall subscribe to subscribeTopic specified to the IoT Hub given in the configuration.**]**
                  */
-                IMqttToken subToken = Mqtt.info.mqttAsyncClient.subscribe(topic, Mqtt.info.qos);
-                subToken.waitForCompletion(Mqtt.info.MAX_WAIT_TIME);
+                IMqttToken subToken = this.info.mqttAsyncClient.subscribe(topic, this.info.qos);
+                subToken.waitForCompletion(this.info.MAX_WAIT_TIME);
             }
             catch (MqttException e)
             {
@@ -397,11 +507,11 @@ abstract public class Mqtt implements MqttCallback
 
     protected void unsubscribe(String topic) throws IOException
     {
-        synchronized (Mqtt.MQTT_LOCK)
+        synchronized (this.mqttLock)
         {
             try
             {
-                if (!Mqtt.info.mqttAsyncClient.isConnected())
+                if (!this.info.mqttAsyncClient.isConnected())
                 {
                     /*
                     **Codes_SRS_Mqtt_25_018: [**If the MQTT connection is closed, the function shall throw an IOException with message.**]**
@@ -412,7 +522,7 @@ abstract public class Mqtt implements MqttCallback
                 /*
                 **Codes_SRS_Mqtt_25_020: [**The function shall unsubscribe from subscribeTopic specified to the IoT Hub given in the configuration.**]**
                  */
-                IMqttToken subToken = Mqtt.info.mqttAsyncClient.unsubscribe(topic);
+                IMqttToken subToken = this.info.mqttAsyncClient.unsubscribe(topic);
                 subToken.waitForCompletion();
 
             }
@@ -429,11 +539,11 @@ abstract public class Mqtt implements MqttCallback
 
     protected boolean isConnected() throws IOException
     {
-        if (Mqtt.info == null || Mqtt.info.mqttAsyncClient == null)
+        if (this.info == null || this.info.mqttAsyncClient == null)
         {
             throw new InvalidParameterException("Mqtt client should be initialised atleast once before using it");
         }
-        return Mqtt.info.mqttAsyncClient.isConnected();
+        return this.info.mqttAsyncClient.isConnected();
 
     }
 
@@ -442,9 +552,9 @@ abstract public class Mqtt implements MqttCallback
      */
     public Message receive() throws IOException
     {
-        synchronized (Mqtt.MQTT_LOCK)
+        synchronized (this.mqttLock)
         {
-            if (Mqtt.info == null)
+            if (this.info == null)
             {
                 throw new InvalidParameterException("Mqtt client should be initialised atleast once before using it");
             }
@@ -494,13 +604,13 @@ abstract public class Mqtt implements MqttCallback
     @Override
     public void connectionLost(Throwable throwable)
     {
-        synchronized (Mqtt.MQTT_LOCK)
+        synchronized (this.mqttLock)
         {
 
-            if (Mqtt.info != null && Mqtt.info.mqttAsyncClient != null)
+            if (this.info != null && this.info.mqttAsyncClient != null)
             {
                 int currentReconnectionAttempt = 0;
-                while (!Mqtt.info.mqttAsyncClient.isConnected())
+                while (!this.info.mqttAsyncClient.isConnected())
                 {
                     System.out.println("Lost connection to the server. Reconnecting " + currentReconnectionAttempt + " time.");
                     try
@@ -535,6 +645,84 @@ abstract public class Mqtt implements MqttCallback
         }
     }
 
+    /**
+     * Sets the worker to be signaled whenever a message arrives on this connection.
+     *
+     * @param transportWorker the worker of the event driven mode. Can be {@code null}
+     *                        if received messages are polled.
+     * @throws IOException if the connection has not been initialised.
+     */
+    protected void setTransportWorker(IotHubTransportWorker transportWorker) throws IOException
+    {
+        if (this.info == null)
+        {
+            /*
+            **Codes_SRS_Mqtt_21_053: [**If the inner class MqttConnectionInfo has not been instantiated then the function shall throw IOException.**]**
+             */
+            throw new IOException("Mqtt client should be initialised atleast once before using it");
+        }
+
+        /*
+        **Codes_SRS_Mqtt_21_054: [**The function shall save the transportWorker for every Mqtt instance sharing this connection.**]**
+         */
+        this.info.transportWorker = transportWorker;
+    }
+
+    /**
+     * Replaces the password of the mqtt broker connection, and connects again
+     * with it. The session is not clean, so the subscriptions and the
+     * unacknowledged publishes survive the new connect.
+     *
+     * @param userPassword the new user password for the mqtt broker connection.
+     * @throws IOException if the connection has not been initialised, or could
+     * not connect again. Retrying is left to the caller.
+     */
+    protected void updatePassword(String userPassword) throws IOException
+    {
+        if (userPassword == null || userPassword.length() == 0)
+        {
+            /*
+            **Codes_SRS_Mqtt_21_056: [**If userPassword is null or empty, the function shall throw InvalidParameter Exception.**]**
+             */
+            throw new InvalidParameterException("userPassword cannot be null or empty");
+        }
+
+        synchronized (this.mqttLock)
+        {
+            if (this.info == null || this.info.mqttAsyncClient == null)
+            {
+                /*
+                **Codes_SRS_Mqtt_21_057: [**If the inner class MqttConnectionInfo has not been instantiated then the function shall throw IOException.**]**
+                 */
+                throw new IOException("Mqtt client should be initialised atleast once before using it");
+            }
+
+            /*
+            **Codes_SRS_Mqtt_21_058: [**The function shall save userPassword in the connection options, so every later connect uses it.**]**
+             */
+            this.info.connectionOptions.setPassword(userPassword.toCharArray());
+
+            try
+            {
+                /*
+                **Codes_SRS_Mqtt_21_059: [**The function shall disconnect the MQTT connection if it is open, and connect again with the new password.**]**
+                 */
+                if (this.info.mqttAsyncClient.isConnected())
+                {
+                    this.info.mqttAsyncClient.disconnect().waitForCompletion();
+                }
+                connect();
+            }
+            catch (MqttException e)
+            {
+                /*
+                **Codes_SRS_Mqtt_21_060: [**If the function fails to disconnect or connect again, it shall throw IOException.**]**
+                 */
+                throw new IOException("Unable to connect with the new password" + e.getMessage());
+            }
+        }
+    }
+
     /**
      * Event fired when the message arrived on the MQTT broker.
      * @param topic the topic on which message arrived.
@@ -547,7 +735,48 @@ abstract public class Mqtt implements MqttCallback
         /*
         **Codes_SRS_Mqtt_25_030: [**The payload of the message and the topic is added to the received messages queue .**]**
          */
-        Mqtt.allReceivedMessages.put(topic, mqttMessage.getPayload());
+        /*
+        **Codes_SRS_Mqtt_21_061: [**The function shall not block nor throw when the received messages queue of the topic holds more messages than its high-water mark, so the connection is kept.**]**
+         */
+        boolean queued = this.receivedMessages.add(topic, mqttMessage.getPayload());
+
+        if (queued || this.receivedMessages.route(topic) == null)
+        {
+            /*
+            **Codes_SRS_Mqtt_21_064: [**The function shall acknowledge the message if it was queued, or if no channel consumes its topic.**]**
+             */
+            acknowledge(mqttMessage);
+        }
+        /*
+        **Codes_SRS_Mqtt_21_065: [**If the received messages queue of the topic is full, the function shall not acknowledge the message, so the IoT Hub delivers it again when the session resumes.**]**
+         */
+
+        /*
+        **Codes_SRS_Mqtt_21_055: [**If a transportWorker was set, the function shall signal it to handle the received message.**]**
+         */
+        IotHubTransportWorker transportWorker = (this.info != null) ? this.info.transportWorker : null;
+        if (transportWorker != null)
+        {
+            transportWorker.signalReceive();
+        }
+    }
+
+    private void acknowledge(MqttMessage mqttMessage)
+    {
+        MqttAsyncClient mqttAsyncClient = (this.info != null) ? this.info.mqttAsyncClient : null;
+        if (mqttAsyncClient == null)
+        {
+            return;
+        }
+
+        try
+        {
+            mqttAsyncClient.messageArrivedComplete(mqttMessage.getId(), mqttMessage.getQos());
+        }
+        catch (MqttException e)
+        {
+            // the connection is lost, and the IoT Hub delivers the message again when the session resumes
+        }
     }
 
     /**
@@ -36,12 +36,12 @@ public class MqttDeviceMethod extends Mqtt
     private final int METHOD_TOKEN = 3;
     private final int REQID_TOKEN = 4;
 
-    public MqttDeviceMethod() throws IOException
+    public MqttDeviceMethod(Mqtt mqttConnection) throws IOException
     {
         /*
-        Codes_SRS_MqttDeviceMethod_25_001: [**The constructor shall instantiate super class without any parameters.**]**
+        Codes_SRS_MqttDeviceMethod_25_001: [**The constructor shall instantiate super class sharing the mqtt connection of mqttConnection.**]**
          */
-        super();
+        super(mqttConnection);
         /*
         Codes_SRS_MqttDeviceMethod_25_002: [**The constructor shall create subscribe and response topics strings for device methods as per the spec.**]**
          */
@@ -74,7 +74,7 @@ public class MqttDeviceMethod extends Mqtt
         }
         if (!requestMap.isEmpty())
         {
-            logger.LogInfo("Pending %d responses to be sent to IotHub yet unsubscribed %s", requestMap.size(), logger.getMethodName());
+            logger.LogInfo("Pending %d responses to be sent to IotHub yet unsubscribed %s", requestMap.size(), CustomLogger.CALLING_METHOD_NAME);
         }
 
     }
@@ -87,7 +87,7 @@ public class MqttDeviceMethod extends Mqtt
          */
         String topic = null;
 
-        if (allReceivedMessages == null)
+        if (receivedMessages == null)
         {
             /*
             Codes_SRS_MqttDeviceMethod_25_007: [**If receiveMessage queue is null then parseTopic shall throw IOException.**]**
@@ -98,26 +98,13 @@ public class MqttDeviceMethod extends Mqtt
         /*
         Codes_SRS_MqttDeviceMethod_25_006: [**If received messages queue is empty then parseTopic shall return null string.**]**
          */
-        if (!allReceivedMessages.isEmpty())
-        {
-
-            for (Map.Entry<String, byte[]> data : allReceivedMessages.entrySet())
-            {
-                String topicFound = data.getKey();
-
-               /*
-               Codes_SRS_MqttDeviceMethod_25_004: [**parseTopic shall look for the method topic($iothub/methods) prefix from received message queue as per spec and if found shall return it as string.**]**
-                */
-               /*
-                Codes_SRS_MqttDeviceMethod_25_005: [**If none of the topics from the received queue match the methods topic prefix then this method shall return null string .**]**
-                */
-                if (topicFound != null && topicFound.length() > METHOD.length() && topicFound.startsWith(METHOD))
-                {
-                    topic = topicFound;
-                    break;
-                }
-            }
-        }
+        /*
+        Codes_SRS_MqttDeviceMethod_25_004: [**parseTopic shall look for the method topic($iothub/methods) prefix from received message queue as per spec and if found shall return it as string.**]**
+         */
+        /*
+        Codes_SRS_MqttDeviceMethod_25_005: [**If none of the topics from the received queue match the methods topic prefix then this method shall return null string .**]**
+         */
+        topic = receivedMessages.peekTopic(MqttReceivedMessages.Channel.DEVICE_METHOD);
         return topic;
     }
 
@@ -138,7 +125,7 @@ public class MqttDeviceMethod extends Mqtt
              */
             return null;
         }
-        if (allReceivedMessages == null)
+        if (receivedMessages == null)
         {
             /*
             Codes_SRS_MqttDeviceMethod_25_012: [**If receiveMessage queue is null then this method shall throw IOException.**]**
@@ -146,31 +133,27 @@ public class MqttDeviceMethod extends Mqtt
             throw new IOException("Invalid State - topic is not null and could not be found in queue");
         }
 
-        if (!allReceivedMessages.containsKey(topic))
-        {
-            /*
-            Codes_SRS_MqttDeviceMethod_25_011: [**If the topic is non-null and received messagesqueue could not locate the payload then this method shall throw IOException**]**
-             */
-            throw new IOException("Topic should be present in received queue at this point");
-        }
-
         /*
         Codes_SRS_MqttDeviceMethod_25_009: [**parsePayload method shall look for payload for the corresponding topic from the received messagesqueue.**]**
          */
-        if (!allReceivedMessages.isEmpty())
+        /*
+        Codes_SRS_MqttDeviceMethod_25_013: [**If the topic is found in the message queue then parsePayload shall delete it from the queue and return it.**]**
+         */
+        byte[] payload = receivedMessages.poll(MqttReceivedMessages.Channel.DEVICE_METHOD, topic);
+        if (payload == null)
         {
             /*
-            Codes_SRS_MqttDeviceMethod_25_013: [**If the topic is found in the message queue then parsePayload shall delete it from the queue and return it.**]**
+            Codes_SRS_MqttDeviceMethod_25_011: [**If the topic is non-null and received messagesqueue could not locate the payload then this method shall throw IOException**]**
              */
-            return allReceivedMessages.remove(topic);
+            throw new IOException("Topic should be present in received queue at this point");
         }
 
-        return null;
+        return payload;
     }
 
     public void send(final DeviceMethodMessage message) throws IOException
     {
-        if (message == null || message.getBytes() == null)
+        if (message == null || message.getBodyBuffer() == null)
         {
             /*
             Codes_SRS_MqttDeviceMethod_25_016: [**send method shall throw an exception if the message is null.**]**
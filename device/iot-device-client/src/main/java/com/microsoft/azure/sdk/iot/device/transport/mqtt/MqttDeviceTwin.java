@@ -48,12 +48,12 @@ public class MqttDeviceTwin extends Mqtt
     private final int DESIRED_TOKEN = 4;
     private final int PATCH_VERSION_TOKEN = 5;
 
-    public MqttDeviceTwin() throws IOException
+    public MqttDeviceTwin(Mqtt mqttConnection) throws IOException
     {
         /*
-        **Codes_SRS_MQTTDEVICETWIN_25_001: [**The constructor shall instantiate super class without any parameters.**]**
+        **Codes_SRS_MQTTDEVICETWIN_25_001: [**The constructor shall instantiate super class sharing the mqtt connection of mqttConnection.**]**
          */
-        super();
+        super(mqttConnection);
         /*
         **Codes_SRS_MQTTDEVICETWIN_25_002: [**The constructor shall construct device twin response subscribeTopic.**]**
          */
@@ -86,7 +86,7 @@ public class MqttDeviceTwin extends Mqtt
 
         if (!requestMap.isEmpty())
         {
-            logger.LogInfo("Pending %d responses from IotHub yet unsubscribed %s", requestMap.size(), logger.getMethodName());
+            logger.LogInfo("Pending %d responses from IotHub yet unsubscribed %s", requestMap.size(), CustomLogger.CALLING_METHOD_NAME);
         }
     }
 
@@ -98,7 +98,7 @@ public class MqttDeviceTwin extends Mqtt
          */
         String topic = null;
 
-        if (allReceivedMessages == null)
+        if (receivedMessages == null)
         {
             /*
             **Codes_SRS_MQTTDEVICETWIN_25_007: [**If receiveMessage queue is null then parseTopic shall throw IOException.**]**
@@ -109,26 +109,13 @@ public class MqttDeviceTwin extends Mqtt
         /*
         **Codes_SRS_MQTTDEVICETWIN_25_006: [**If received messages queue is empty then parseTopic shall return null string.**]**
          */
-        if (!allReceivedMessages.isEmpty())
-        {
-
-            for (Map.Entry<String, byte[]> data : allReceivedMessages.entrySet())
-            {
-                String topicFound = data.getKey();
-
-               /*
-               **Codes_SRS_MQTTDEVICETWIN_25_004: [**parseTopic shall look for the twin topic($iothub/twin) prefix from received message queue as per spec.**]**
-                */
-               /*
-                **Codes_SRS_MQTTDEVICETWIN_25_005: [**If none of the topics from the received queue match the twin topic prefix then this method shall return null string .**]**
-                */
-                if (topicFound != null && topicFound.length() > TWIN.length() && topicFound.startsWith(TWIN))
-                {
-                    topic = topicFound;
-                    break;
-                }
-            }
-        }
+        /*
+        **Codes_SRS_MQTTDEVICETWIN_25_004: [**parseTopic shall look for the twin topic($iothub/twin) prefix from received message queue as per spec.**]**
+         */
+        /*
+        **Codes_SRS_MQTTDEVICETWIN_25_005: [**If none of the topics from the received queue match the twin topic prefix then this method shall return null string .**]**
+         */
+        topic = receivedMessages.peekTopic(MqttReceivedMessages.Channel.DEVICE_TWIN);
         return topic;
 
     }
@@ -150,7 +137,7 @@ public class MqttDeviceTwin extends Mqtt
              */
             return null;
         }
-        if (allReceivedMessages == null)
+        if (receivedMessages == null)
         {
             /*
             **Codes_SRS_MQTTDEVICETWIN_25_012: [**If receiveMessage queue is null then this method shall throw IOException.**]**
@@ -158,26 +145,22 @@ public class MqttDeviceTwin extends Mqtt
             throw new IOException("Invalid State - topic is not null and could not be found in queue");
         }
 
-        if (!allReceivedMessages.containsKey(topic))
-        {
-            /*
-            **Codes_SRS_MQTTDEVICETWIN_25_011: [**If the topic is non-null and received messagesqueue could not locate the payload then this method shall throw IOException**]**
-             */
-            throw new IOException("Topic should be present in received queue at this point");
-        }
-
         /*
         **Codes_SRS_MQTTDEVICETWIN_25_009: [**This parsePayload method look for payload for the corresponding topic from the received messagesqueue.**]**
          */
-        if (!allReceivedMessages.isEmpty())
+        /*
+        **Codes_SRS_MQTTDEVICETWIN_25_013: [**If the topic is found in the message queue then parsePayload shall delete it from the queue.**]**
+         */
+        byte[] payload = receivedMessages.poll(MqttReceivedMessages.Channel.DEVICE_TWIN, topic);
+        if (payload == null)
         {
             /*
-            **Codes_SRS_MQTTDEVICETWIN_25_013: [**If the topic is found in the message queue then parsePayload shall delete it from the queue.**]**
+            **Codes_SRS_MQTTDEVICETWIN_25_011: [**If the topic is non-null and received messagesqueue could not locate the payload then this method shall throw IOException**]**
              */
-            return allReceivedMessages.remove(topic);
+            throw new IOException("Topic should be present in received queue at this point");
         }
 
-        return null;
+        return payload;
     }
 
     private String buildTopic(final DeviceTwinMessage message) throws IOException
@@ -283,7 +266,7 @@ public class MqttDeviceTwin extends Mqtt
 
     public void send(final DeviceTwinMessage message) throws IOException
     {
-        if (message == null || message.getBytes() == null)
+        if (message == null || message.getBodyBuffer() == null)
         {
             /*
             **Tests_SRS_MQTTDEVICETWIN_25_021: [**send method shall throw an exception if the message is null.**]**
@@ -9,12 +9,19 @@ import com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceTwinMessage;
 import com.microsoft.azure.sdk.iot.device.IotHubStatusCode;
 import com.microsoft.azure.sdk.iot.device.Message;
 import com.microsoft.azure.sdk.iot.device.MessageType;
-import com.microsoft.azure.sdk.iot.device.auth.IotHubSasToken;
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenRenewalListener;
 import com.microsoft.azure.sdk.iot.device.transport.State;
 import com.microsoft.azure.sdk.iot.device.transport.TransportUtils;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 
 import java.io.IOException;
 import java.net.URLEncoder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 public class MqttIotHubConnection
@@ -38,6 +45,49 @@ public class MqttIotHubConnection
     private MqttDeviceTwin deviceTwin;
     private MqttDeviceMethod deviceMethod;
 
+    /* Renewed SAS token the connection has not authenticated with yet, if any. */
+    private final AtomicReference<String> renewedSasToken = new AtomicReference<>();
+
+    /*
+     * Authenticates the connection again with the renewed SAS token. The renewals of every connection are
+     * told on one shared thread, so the reconnect runs on a thread of this connection, which only exists
+     * while there is a renewed token to authenticate with.
+     */
+    private final ExecutorService reauthenticationExecutor = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "azure-iot-sdk-mqtt-reauthentication");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final Runnable reauthenticationTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            reauthenticate();
+        }
+    };
+
+    /* Hands the renewed SAS tokens over to the reauthentication thread. */
+    private final IotHubSasTokenRenewalListener sasTokenRenewalListener = new IotHubSasTokenRenewalListener()
+    {
+        @Override
+        public void onSasTokenRenewed(String sasToken)
+        {
+            // Codes_SRS_MQTTIOTHUBCONNECTION_21_022: [When the SAS token is renewed, the connection shall save it and
+            // authenticate again with it on the reauthentication thread, without blocking the thread telling the renewal.]
+            renewedSasToken.set(sasToken);
+            reauthenticationExecutor.execute(reauthenticationTask);
+        }
+    };
+
     /**
      * Constructs an instance from the given {@link DeviceClientConfig}
      * object.
@@ -102,21 +152,27 @@ public class MqttIotHubConnection
             // Codes_SRS_MQTTIOTHUBCONNECTION_15_004: [The function shall establish an MQTT connection
             // with an IoT Hub using the provided host name, user name, device ID, and sas token.]
             try {
-                IotHubSasToken sasToken = new IotHubSasToken(this.config, System.currentTimeMillis() / 1000l +
-                        this.config.getTokenValidSecs() + 1l);
-                this.iotHubUserPassword = sasToken.toString();
+                this.iotHubUserPassword = this.config.getSasTokenManager().getSasToken();
 
                 String clientIdentifier = "DeviceClientType=" + URLEncoder.encode(TransportUtils.javaDeviceClientIdentifier + TransportUtils.clientVersion, "UTF-8");
                 this.iotHubUserName = this.config.getIotHubHostname() + "/" + this.config.getDeviceId() + "/" + TWIN_API_VERSION + "/" + clientIdentifier;
 
 
                 this.deviceMessaging = new MqttMessaging(sslPrefix + this.config.getIotHubHostname() + sslPortSuffix,
-                        this.config.getDeviceId(), this.iotHubUserName, this.iotHubUserPassword, this.config.getIotHubSSLContext());
-                this.deviceMethod = new MqttDeviceMethod();
-                this.deviceTwin = new MqttDeviceTwin();
+                        this.config.getDeviceId(), this.iotHubUserName, this.iotHubUserPassword, this.config.getIotHubSSLContext(),
+                        this.config.getMqttMaxInFlightCount());
+                // Codes_SRS_MQTTIOTHUBCONNECTION_21_020: [The function shall set the transport worker saved in the config, if any,
+                // to be signaled when a message arrives on the connection.]
+                this.deviceMessaging.setTransportWorker(this.config.getTransportWorker());
+                this.deviceMethod = new MqttDeviceMethod(this.deviceMessaging);
+                this.deviceTwin = new MqttDeviceTwin(this.deviceMessaging);
 
                 this.deviceMessaging.start();
                 this.state = State.OPEN;
+
+                // Codes_SRS_MQTTIOTHUBCONNECTION_21_021: [The function shall register with the IotHubSasTokenManager of the
+                // config to be told when the SAS token is renewed.]
+                this.config.getSasTokenManager().addRenewalListener(this.sasTokenRenewalListener);
             }
             catch (Exception e)
             {
@@ -158,6 +214,9 @@ public class MqttIotHubConnection
 
             // Codes_SRS_MQTTIOTHUBCONNECTION_15_006: [**The function shall close the MQTT connection.]
 
+            // Codes_SRS_MQTTIOTHUBCONNECTION_21_023: [The function shall stop listening to the SAS token renewals.]
+            this.config.getSasTokenManager().removeRenewalListener(this.sasTokenRenewalListener);
+
             try
             {
                 this.deviceMethod.stop();
@@ -179,6 +238,59 @@ public class MqttIotHubConnection
         }
     }
 
+    /**
+     * Authenticates the open connection again with the last renewed SAS token,
+     * retrying with a growing delay until it succeeds or the connection is closed.
+     */
+    private void reauthenticate()
+    {
+        String sasToken = this.renewedSasToken.getAndSet(null);
+        int currentReconnectionAttempt = 0;
+        while (sasToken != null)
+        {
+            synchronized (MQTT_CONNECTION_LOCK)
+            {
+                // Codes_SRS_MQTTIOTHUBCONNECTION_21_024: [If the connection is closed, the reauthentication shall do nothing,
+                // because the next open gets the renewed token from the IotHubSasTokenManager.]
+                if (this.state != State.OPEN)
+                {
+                    return;
+                }
+
+                String newerSasToken = this.renewedSasToken.getAndSet(null);
+                if (newerSasToken != null)
+                {
+                    sasToken = newerSasToken;
+                }
+
+                // Codes_SRS_MQTTIOTHUBCONNECTION_21_025: [The reauthentication shall update the password of the
+                // connection with the renewed token, which connects again with it.]
+                this.iotHubUserPassword = sasToken;
+                try
+                {
+                    this.deviceMessaging.updatePassword(sasToken);
+                    return;
+                }
+                catch (IOException e)
+                {
+                    currentReconnectionAttempt++;
+                }
+            }
+
+            // Codes_SRS_MQTTIOTHUBCONNECTION_21_026: [If the connection fails to connect again, the reauthentication
+            // shall retry with exponential backoff, without holding the connection lock while it waits.]
+            try
+            {
+                Thread.sleep(TransportUtils.generateSleepInterval(currentReconnectionAttempt));
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
     /**
      * Sends an event message.
      *
@@ -190,16 +302,43 @@ public class MqttIotHubConnection
      */
     public IotHubStatusCode sendEvent(Message message) throws IllegalStateException
     {
-        synchronized (MQTT_CONNECTION_LOCK)
+        return this.sendEvent(message, null);
+    }
+
+    /**
+     * Sends an event message without waiting for the IoT Hub to acknowledge it.
+     * If the message is handed to the connection, {@code completionListener} is
+     * notified once the IoT Hub acknowledges it or its delivery fails.
+     *
+     * @param message the event message.
+     * @param completionListener the listener notified when the send completes. May be {@code null}.
+     *
+     * @return the status code from sending the event message. The listener is
+     * only notified if the status code is OK_EMPTY.
+     *
+     * @throws IllegalStateException if the MqttIotHubConnection is not open
+     */
+    public IotHubStatusCode sendEvent(Message message, IMqttActionListener completionListener) throws IllegalStateException
+    {
+        // Codes_SRS_MQTTIOTHUBCONNECTION_15_010: [If the message is null or empty,
+        // the function shall return status code BAD_FORMAT.]
+        if (message == null || message.getBodyBuffer() == null ||
+                ((message.getMessageType() != MessageType.DeviceTwin && message.getMessageType() != MessageType.DeviceMethods) && !message.getBodyBuffer().hasRemaining()))
         {
-            // Codes_SRS_MQTTIOTHUBCONNECTION_15_010: [If the message is null or empty,
-            // the function shall return status code BAD_FORMAT.]
-            if (message == null || message.getBytes() == null ||
-                    ((message.getMessageType() != MessageType.DeviceTwin && message.getMessageType() != MessageType.DeviceMethods) && message.getBytes().length == 0))
-            {
-                return IotHubStatusCode.BAD_FORMAT;
-            }
+            return IotHubStatusCode.BAD_FORMAT;
+        }
+
+        // Codes_SRS_MQTTIOTHUBCONNECTION_15_008: [The function shall send an event message
+        // to the IoT Hub given in the configuration.]
+        // Codes_SRS_MQTTIOTHUBCONNECTION_15_011: [If the message was successfully received by the service,
+        // the function shall return status code OK_EMPTY.]
+        IotHubStatusCode result = IotHubStatusCode.OK_EMPTY;
 
+        MqttDeviceMethod deviceMethod = null;
+        MqttDeviceTwin deviceTwin = null;
+        MqttMessaging deviceMessaging;
+        synchronized (MQTT_CONNECTION_LOCK)
+        {
             // Codes_SRS_MQTTIOTHUBCONNECTION_15_013: [If the MQTT connection is closed,
             // the function shall throw an IllegalStateException.]
             if (this.state == State.CLOSED)
@@ -207,39 +346,63 @@ public class MqttIotHubConnection
                 throw new IllegalStateException("Cannot send event using a closed MQTT connection");
             }
 
-            // Codes_SRS_MQTTIOTHUBCONNECTION_15_008: [The function shall send an event message
-            // to the IoT Hub given in the configuration.]
-            // Codes_SRS_MQTTIOTHUBCONNECTION_15_011: [If the message was successfully received by the service,
-            // the function shall return status code OK_EMPTY.]
-            IotHubStatusCode result = IotHubStatusCode.OK_EMPTY;
-
             try
             {
-                // Codes_SRS_MQTTIOTHUBCONNECTION_15_009: [The function shall send the message payload.]
                 if (message.getMessageType() == MessageType.DeviceMethods)
                 {
-                    this.deviceMethod.start();
-                    this.deviceMethod.send((DeviceMethodMessage) message);
+                    deviceMethod = this.deviceMethod;
+                    deviceMethod.start();
                 }
                 else if (message.getMessageType() == MessageType.DeviceTwin)
                 {
-                    this.deviceTwin.start();
-                    this.deviceTwin.send((DeviceTwinMessage) message);
-                }
-                else
-                {
-                    this.deviceMessaging.send(message);
+                    deviceTwin = this.deviceTwin;
+                    deviceTwin.start();
                 }
             }
-            // Codes_SRS_MQTTIOTHUBCONNECTION_15_012: [If the message was not successfully
-            // received by the service, the function shall return status code ERROR.]
             catch (Exception e)
             {
-                result = IotHubStatusCode.ERROR;
+                return IotHubStatusCode.ERROR;
             }
+            deviceMessaging = this.deviceMessaging;
+        }
 
-            return result;
+        // Codes_SRS_MQTTIOTHUBCONNECTION_21_027: [The function shall publish the message without holding the
+        // connection lock, so a publish waiting for room in the in-flight window does not block close,
+        // reauthentication or the other sends.]
+        try
+        {
+            // Codes_SRS_MQTTIOTHUBCONNECTION_15_009: [The function shall send the message payload.]
+            if (deviceMethod != null)
+            {
+                deviceMethod.send((DeviceMethodMessage) message);
+            }
+            else if (deviceTwin != null)
+            {
+                deviceTwin.send((DeviceTwinMessage) message);
+            }
+            else
+            {
+                // Codes_SRS_MQTTIOTHUBCONNECTION_21_018: [The function shall pass completionListener
+                // to the messaging client, to be notified when the IoT Hub acknowledges the event.]
+                deviceMessaging.send(message, completionListener);
+                return result;
+            }
+        }
+        // Codes_SRS_MQTTIOTHUBCONNECTION_15_012: [If the message was not successfully
+        // received by the service, the function shall return status code ERROR.]
+        catch (Exception e)
+        {
+            return IotHubStatusCode.ERROR;
         }
+
+        // Codes_SRS_MQTTIOTHUBCONNECTION_21_019: [If the device twin or device method message was sent,
+        // the function shall notify completionListener right away.]
+        if (completionListener != null)
+        {
+            completionListener.onSuccess(null);
+        }
+
+        return result;
     }
 
     /**
@@ -6,9 +6,10 @@ package com.microsoft.azure.sdk.iot.device.transport.mqtt;
 import com.microsoft.azure.sdk.iot.device.IotHubSSLContext;
 import com.microsoft.azure.sdk.iot.device.Message;
 import com.microsoft.azure.sdk.iot.device.MessageProperty;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 
 import java.io.IOException;
-import java.util.Map;
+import java.util.List;
 import java.util.concurrent.Semaphore;
 
 public class MqttMessaging extends Mqtt
@@ -29,7 +30,7 @@ public class MqttMessaging extends Mqtt
          */
         String topic = null;
 
-        if (allReceivedMessages == null)
+        if (receivedMessages == null)
         {
             /*
             **Codes_SRS_MqttMessaging_25_008: [**If receiveMessage queue is null then parseTopic shall throw IOException.**]**
@@ -37,29 +38,16 @@ public class MqttMessaging extends Mqtt
             throw new IOException("Queue cannot be null");
         }
 
-        if(!allReceivedMessages.isEmpty())
-        {
-
-           for ( Map.Entry<String, byte[]> data : allReceivedMessages.entrySet())
-           {
-               String topicFound = data.getKey();
-
-               /*
-               **Codes_SRS_MqttMessaging_25_005: [**parseTopic shall look for the subscribe topic prefix from received message queue.**]**
-                */
-               /*
-               **Codes_SRS_MqttMessaging_25_006: [**If none of the topics from the received queue match the subscribe topic prefix then this method shall return null string .**]**
-                */
-               /*
-               **Codes_SRS_MqttMessaging_25_007: [**If received messages queue is empty then parseTopic shall return null string.**]**
-                */
-               if (topicFound != null && topicFound.length() > parseTopic.length() && topicFound.startsWith(parseTopic))
-               {
-                   topic = topicFound;
-                   break;
-               }
-           }
-        }
+        /*
+        **Codes_SRS_MqttMessaging_25_005: [**parseTopic shall look for the subscribe topic prefix from received message queue.**]**
+         */
+        /*
+        **Codes_SRS_MqttMessaging_25_006: [**If none of the topics from the received queue match the subscribe topic prefix then this method shall return null string .**]**
+         */
+        /*
+        **Codes_SRS_MqttMessaging_25_007: [**If received messages queue is empty then parseTopic shall return null string.**]**
+         */
+        topic = receivedMessages.peekTopic(MqttReceivedMessages.Channel.MESSAGING);
         return topic;
     }
 
@@ -80,7 +68,7 @@ public class MqttMessaging extends Mqtt
              */
             return null;
         }
-        if (allReceivedMessages == null)
+        if (receivedMessages == null)
         {
             /*
             **Codes_SRS_MqttMessaging_25_013: [**If receiveMessage queue is null then this method shall throw IOException.**]**
@@ -88,30 +76,31 @@ public class MqttMessaging extends Mqtt
             throw new IOException("Invalid State - topic is not null and could not be found in queue");
         }
 
-        if (!allReceivedMessages.containsKey(topic))
-        {
-            /*
-            **Codes_SRS_MqttMessaging_25_012: [**If the topic is non-null and received messagesqueue could not locate the payload then this method shall throw IOException**]**
-             */
-            throw new IOException("Topic is should be present in received queue at this point");
-        }
-
         /*
         **Codes_SRS_MqttMessaging_25_010: [**This parsePayload method look for payload for the corresponding topic from the received messagesqueue.**]**
          */
-        if(!allReceivedMessages.isEmpty())
+        /*
+        **Codes_SRS_MqttMessaging_25_014: [**If the topic is found in the message queue then parsePayload shall delete it from the queue.**]**
+         */
+        byte[] payload = receivedMessages.poll(MqttReceivedMessages.Channel.MESSAGING, topic);
+        if (payload == null)
         {
             /*
-            **Codes_SRS_MqttMessaging_25_014: [**If the topic is found in the message queue then parsePayload shall delete it from the queue.**]**
+            **Codes_SRS_MqttMessaging_25_012: [**If the topic is non-null and received messagesqueue could not locate the payload then this method shall throw IOException**]**
              */
-            return allReceivedMessages.remove(topic);
+            throw new IOException("Topic is should be present in received queue at this point");
         }
 
-        return null;
+        return payload;
 
     }
 
     public MqttMessaging(String serverURI, String deviceId, String userName, String password, IotHubSSLContext context) throws IOException
+    {
+        this(serverURI, deviceId, userName, password, context, DEFAULT_MAX_IN_FLIGHT_COUNT);
+    }
+
+    public MqttMessaging(String serverURI, String deviceId, String userName, String password, IotHubSSLContext context, int maxInFlightCount) throws IOException
     {
         /*
         **Codes_SRS_MqttMessaging_25_001: [**The constructor shall throw InvalidParameter Exception if any of the parameters are null or empty .**]**
@@ -119,7 +108,7 @@ public class MqttMessaging extends Mqtt
         /*
         **Codes_SRS_MqttMessaging_25_002: [**The constructor shall use the configuration to instantiate super class and passing the parameters.**]**
          */
-        super(serverURI, deviceId, userName, password, context);
+        super(serverURI, deviceId, userName, password, context, maxInFlightCount);
         /*
         **Codes_SRS_MqttMessaging_25_003: [**The constructor construct publishTopic and subscribeTopic from deviceId.**]**
          */
@@ -165,7 +154,20 @@ public class MqttMessaging extends Mqtt
 
     public void send(Message message) throws IOException
     {
-        if (message == null || message.getBytes() == null)
+        this.send(message, null);
+    }
+
+    /**
+     * Publishes the message without waiting for the IoT Hub to acknowledge it.
+     *
+     * @param message the message to publish.
+     * @param completionListener the listener notified when the IoT Hub acknowledges the message or
+     *                           the delivery fails. May be {@code null}.
+     * @throws IOException if the message cannot be published.
+     */
+    public void send(Message message, IMqttActionListener completionListener) throws IOException
+    {
+        if (message == null || message.getBodyBuffer() == null)
         {
             /*
             **Codes_SRS_MqttMessaging_25_025: [**send method shall throw an exception if the message is null.**]**
@@ -173,15 +175,16 @@ public class MqttMessaging extends Mqtt
             throw new IOException("Message cannot be null");
         }
 
-        MessageProperty[] messageProperties = message.getProperties();
+        List<MessageProperty> messageProperties = message.getPropertyList();
         String messagePublishTopic;
-        if(messageProperties.length > 0)
+        if(!messageProperties.isEmpty())
         {
             StringBuilder stringBuilder = new StringBuilder();
             stringBuilder.append(this.publishTopic);
             boolean needAmpersand = false;
-            for(MessageProperty property : message.getProperties())
+            for(int i = 0; i < messageProperties.size(); i++)
             {
+                MessageProperty property = messageProperties.get(i);
                 if(needAmpersand)
                 {
                     stringBuilder.append(PROPERTY_SEPARATOR);
@@ -213,7 +216,7 @@ public class MqttMessaging extends Mqtt
         /*
         **Codes_SRS_MqttMessaging_25_024: [**send method shall publish a message to the IOT Hub on the publish topic by calling method publish().**]**
          */
-        this.publish(messagePublishTopic, message.getBytes());
+        this.publish(messagePublishTopic, message.getBytes(), completionListener);
 
     }
 
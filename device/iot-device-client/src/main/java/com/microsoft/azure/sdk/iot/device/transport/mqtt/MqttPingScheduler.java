@@ -0,0 +1,145 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.mqtt;
+
+import org.eclipse.paho.client.mqttv3.MqttPingSender;
+import org.eclipse.paho.client.mqttv3.internal.ClientComms;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keep alive ping sender which schedules the pings of every mqtt broker connection in the process
+ * on one shared daemon thread, instead of the timer thread paho starts for each connection.
+ * The activity checks themselves run on a small, fixed pool of daemon threads, because paho may
+ * handle a failed keep alive inside checkForActivity, and a connection which is being lost shall not
+ * hold up the pings of the other connections.
+ */
+public class MqttPingScheduler implements MqttPingSender
+{
+    private static final ScheduledExecutorService PING_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "azure-iot-sdk-mqtt-ping");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /*
+     * Threads which run the activity checks, whatever the number of connections. There are at least two,
+     * so one connection which is being lost does not hold up the checks of the others.
+     */
+    static final int CHECK_THREAD_COUNT = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final ExecutorService CHECK_EXECUTOR = Executors.newFixedThreadPool(CHECK_THREAD_COUNT,
+            new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "azure-iot-sdk-mqtt-ping-check");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private ClientComms comms = null;
+    private ScheduledFuture<?> pendingPing = null;
+
+    /*
+     * Incremented by stop. A check carries the generation it was scheduled in and does not run in a later one,
+     * since cancelling its future does not reach a check which was already handed to the check threads.
+     */
+    private volatile int generation = 0;
+    private boolean stopped = false;
+
+    @Override
+    public void init(ClientComms comms)
+    {
+        if (comms == null)
+        {
+            /*
+            **Codes_SRS_MQTTPINGSCHEDULER_25_001: [**init shall throw IllegalArgumentException if comms is null.**]**
+             */
+            throw new IllegalArgumentException("ClientComms cannot be null");
+        }
+
+        /*
+        **Codes_SRS_MQTTPINGSCHEDULER_25_002: [**init shall save the comms whose keep alive is to be scheduled.**]**
+         */
+        this.comms = comms;
+    }
+
+    @Override
+    public synchronized void start()
+    {
+        /*
+        **Codes_SRS_MQTTPINGSCHEDULER_25_003: [**start shall schedule the first activity check after the keep alive interval of comms.**]**
+         */
+        this.stopped = false;
+        this.schedule(this.comms.getKeepAlive());
+    }
+
+    @Override
+    public synchronized void stop()
+    {
+        /*
+        **Codes_SRS_MQTTPINGSCHEDULER_25_004: [**stop shall cancel the pending activity check, if any, and keep the checks scheduled before it from running, even the ones already handed to the check thread pool.**]**
+         */
+        this.stopped = true;
+        this.generation++;
+        if (this.pendingPing != null)
+        {
+            this.pendingPing.cancel(false);
+            this.pendingPing = null;
+        }
+    }
+
+    @Override
+    public synchronized void schedule(long delayInMilliseconds)
+    {
+        /*
+        **Codes_SRS_MQTTPINGSCHEDULER_25_006: [**schedule shall do nothing after stop until start is called again, since a check which was running when stop was called schedules the next one.**]**
+         */
+        if (this.stopped)
+        {
+            return;
+        }
+
+        /*
+        **Codes_SRS_MQTTPINGSCHEDULER_25_005: [**schedule shall run comms.checkForActivity on the check thread pool after delayInMilliseconds, so the shared ping thread never blocks on a connection.**]**
+         */
+        final int scheduledGeneration = this.generation;
+        this.pendingPing = PING_EXECUTOR.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (generation != scheduledGeneration)
+                {
+                    return;
+                }
+                CHECK_EXECUTOR.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        if (generation == scheduledGeneration)
+                        {
+                            comms.checkForActivity();
+                        }
+                    }
+                });
+            }
+        }, delayInMilliseconds, TimeUnit.MILLISECONDS);
+    }
+}
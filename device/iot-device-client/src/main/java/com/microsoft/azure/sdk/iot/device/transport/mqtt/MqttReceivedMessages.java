@@ -0,0 +1,306 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.mqtt;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Received messages of one mqtt broker connection. Each message is routed once, when it
+ * arrives, by its topic prefix into the FIFO queue of the channel (device messaging,
+ * device twin or device method) which consumes it, so messages on the same topic never
+ * replace each other and each channel reads them in arrival order.
+ *
+ * Adding a message never blocks the Paho callback thread nor drops the connection. A
+ * channel which falls behind is reported with a warning each time its queue grows past the
+ * high-water mark and a count of the messages queued above it. Past the capacity of its
+ * queue, a message is rejected instead of queued: the connection acknowledges only the
+ * messages it queued, so the IoT Hub keeps a rejected message and delivers it again when
+ * the session resumes, and it stops sending once too many messages await acknowledgement.
+ */
+public final class MqttReceivedMessages
+{
+    enum Channel
+    {
+        MESSAGING,
+        DEVICE_TWIN,
+        DEVICE_METHOD
+    }
+
+    // messages which may wait in the queue of one channel before it is reported as falling behind
+    static final int DEFAULT_HIGH_WATER_MARK = 1000;
+
+    // messages which may wait in the queue of one channel before the next ones are rejected
+    static final int DEFAULT_CAPACITY = 10 * DEFAULT_HIGH_WATER_MARK;
+
+    private static final String IOTHUB_TOPIC_PREFIX = "$iothub/";
+    private static final String TWIN_TOPIC = "twin/";
+    private static final String METHODS_TOPIC = "methods/";
+
+    private final String messagingPrefix;
+    private final int highWaterMark;
+    private final Map<Channel, BlockingQueue<ReceivedMessage>> queues = new EnumMap<>(Channel.class);
+    private final AtomicLong messagesAboveHighWaterMark = new AtomicLong();
+    private final AtomicLong rejectedMessages = new AtomicLong();
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
+    private static final class ReceivedMessage
+    {
+        private final String topic;
+        private final byte[] payload;
+
+        private ReceivedMessage(String topic, byte[] payload)
+        {
+            this.topic = topic;
+            this.payload = payload;
+        }
+    }
+
+    MqttReceivedMessages(String deviceId)
+    {
+        this(deviceId, DEFAULT_HIGH_WATER_MARK);
+    }
+
+    MqttReceivedMessages(String deviceId, int highWaterMark)
+    {
+        this(deviceId, highWaterMark, DEFAULT_CAPACITY);
+    }
+
+    MqttReceivedMessages(String deviceId, int highWaterMark, int capacity)
+    {
+        if (deviceId == null || deviceId.isEmpty())
+        {
+            /*
+            **Codes_SRS_MQTTRECEIVEDMESSAGES_21_001: [**The constructor shall throw IllegalArgumentException if the deviceId is null or empty.**]**
+             */
+            throw new IllegalArgumentException("deviceId cannot be null or empty");
+        }
+
+        if (highWaterMark < 1)
+        {
+            /*
+            **Codes_SRS_MQTTRECEIVEDMESSAGES_21_002: [**The constructor shall throw IllegalArgumentException if the highWaterMark is less than 1.**]**
+             */
+            throw new IllegalArgumentException("highWaterMark must be at least 1");
+        }
+
+        if (capacity < highWaterMark)
+        {
+            /*
+            **Codes_SRS_MQTTRECEIVEDMESSAGES_21_017: [**The constructor shall throw IllegalArgumentException if the capacity is less than the highWaterMark.**]**
+             */
+            throw new IllegalArgumentException("capacity cannot be less than highWaterMark");
+        }
+
+        /*
+        **Codes_SRS_MQTTRECEIVEDMESSAGES_21_003: [**The constructor shall create one queue of the provided capacity for each channel.**]**
+         */
+        this.messagingPrefix = "devices/" + deviceId + "/messages/devicebound/";
+        this.highWaterMark = highWaterMark;
+        for (Channel channel : Channel.values())
+        {
+            this.queues.put(channel, new LinkedBlockingQueue<ReceivedMessage>(capacity));
+        }
+    }
+
+    /**
+     * Finds the channel which consumes the messages of the provided topic.
+     *
+     * @param topic the topic on which the message arrived.
+     * @return the channel of the topic, or {@code null} if no channel consumes it.
+     */
+    Channel route(String topic)
+    {
+        if (topic == null)
+        {
+            return null;
+        }
+
+        if (topic.startsWith(IOTHUB_TOPIC_PREFIX))
+        {
+            /*
+            **Codes_SRS_MQTTRECEIVEDMESSAGES_21_004: [**The function shall route topics starting with `$iothub/twin/` to the device twin channel and topics starting with `$iothub/methods/` to the device method channel.**]**
+             */
+            int offset = IOTHUB_TOPIC_PREFIX.length();
+            if (topic.startsWith(TWIN_TOPIC, offset))
+            {
+                return Channel.DEVICE_TWIN;
+            }
+            if (topic.startsWith(METHODS_TOPIC, offset))
+            {
+                return Channel.DEVICE_METHOD;
+            }
+        }
+        else if (topic.length() > messagingPrefix.length() && topic.startsWith(messagingPrefix))
+        {
+            /*
+            **Codes_SRS_MQTTRECEIVEDMESSAGES_21_005: [**The function shall route topics starting with `devices/<deviceId>/messages/devicebound/` to the messaging channel.**]**
+             */
+            return Channel.MESSAGING;
+        }
+
+        /*
+        **Codes_SRS_MQTTRECEIVEDMESSAGES_21_006: [**The function shall return null if no channel consumes the topic.**]**
+         */
+        return null;
+    }
+
+    /**
+     * Adds a received message to the end of the queue of its channel, without waiting.
+     *
+     * @param topic the topic on which the message arrived.
+     * @param payload the payload of the message.
+     * @return {@code true} if the message was queued, {@code false} if no channel consumes its topic
+     * or the queue of its channel is full.
+     */
+    boolean add(String topic, byte[] payload)
+    {
+        Channel channel = route(topic);
+        if (channel == null)
+        {
+            /*
+            **Codes_SRS_MQTTRECEIVEDMESSAGES_21_007: [**If no channel consumes the topic, the function shall not queue the message and return false.**]**
+             */
+            return false;
+        }
+
+        /*
+        **Codes_SRS_MQTTRECEIVEDMESSAGES_21_008: [**The function shall add the topic and payload to the end of the queue of the channel of the topic, and return true.**]**
+         */
+        BlockingQueue<ReceivedMessage> queue = this.queues.get(channel);
+        if (!queue.offer(new ReceivedMessage(topic, payload)))
+        {
+            /*
+            **Codes_SRS_MQTTRECEIVEDMESSAGES_21_018: [**If the queue of the channel is full, the function shall not queue the message, count it in the rejected messages, log a warning and return false, without blocking or throwing.**]**
+             */
+            this.rejectedMessages.incrementAndGet();
+            logger.LogWarn("Received messages queue of %s is full with %d messages; the message on %s is left unacknowledged", channel, queue.size(), topic);
+            return false;
+        }
+
+        int size = queue.size();
+        if (size > this.highWaterMark)
+        {
+            /*
+            **Codes_SRS_MQTTRECEIVEDMESSAGES_21_009: [**If the queue of the channel holds more messages than the highWaterMark, the function shall still queue the message, without blocking or throwing, and count it in the messages above the high-water mark.**]**
+             */
+            this.messagesAboveHighWaterMark.incrementAndGet();
+            if (size == this.highWaterMark + 1)
+            {
+                /*
+                **Codes_SRS_MQTTRECEIVEDMESSAGES_21_014: [**The function shall log a warning when the queue of the channel grows past the highWaterMark.**]**
+                 */
+                logger.LogWarn("Received messages queue of %s holds more than %d messages; the channel is not keeping up with the broker", channel, this.highWaterMark);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the topic of the oldest message of the channel without removing it.
+     *
+     * @param channel the channel to look up.
+     * @return the topic of the oldest message, or {@code null} if the channel has no messages.
+     */
+    String peekTopic(Channel channel)
+    {
+        /*
+        **Codes_SRS_MQTTRECEIVEDMESSAGES_21_010: [**The function shall return the topic of the oldest message of the channel, or null if the channel queue is empty.**]**
+         */
+        ReceivedMessage message = this.queues.get(channel).peek();
+        return (message == null) ? null : message.topic;
+    }
+
+    /**
+     * Removes the oldest message of the channel if it arrived on the provided topic.
+     *
+     * @param channel the channel to consume from.
+     * @param topic the topic returned by peekTopic.
+     * @return the payload of the removed message, or {@code null} if the oldest message of the channel is not on this topic.
+     */
+    byte[] poll(Channel channel, String topic)
+    {
+        BlockingQueue<ReceivedMessage> queue = this.queues.get(channel);
+        ReceivedMessage message = queue.peek();
+        if (message == null || !message.topic.equals(topic))
+        {
+            /*
+            **Codes_SRS_MQTTRECEIVEDMESSAGES_21_011: [**If the oldest message of the channel is not on the provided topic, the function shall return null and keep the queue unchanged.**]**
+             */
+            return null;
+        }
+
+        /*
+        **Codes_SRS_MQTTRECEIVEDMESSAGES_21_012: [**The function shall remove the oldest message of the channel and return its payload.**]**
+         */
+        queue.poll();
+        return message.payload;
+    }
+
+    /**
+     * Returns the number of messages waiting in the queue of the channel.
+     *
+     * @param channel the channel to look up.
+     * @return the number of queued messages of the channel.
+     */
+    int size(Channel channel)
+    {
+        /*
+        **Codes_SRS_MQTTRECEIVEDMESSAGES_21_015: [**The function shall return the number of messages in the queue of the channel.**]**
+         */
+        return this.queues.get(channel).size();
+    }
+
+    /**
+     * Returns the number of messages which were queued while their channel held more
+     * messages than the high-water mark.
+     *
+     * @return the number of messages queued above the high-water mark since the creation.
+     */
+    long getMessagesAboveHighWaterMarkCount()
+    {
+        /*
+        **Codes_SRS_MQTTRECEIVEDMESSAGES_21_016: [**The function shall return the number of messages queued while their channel held more messages than the highWaterMark.**]**
+         */
+        return this.messagesAboveHighWaterMark.get();
+    }
+
+    /**
+     * Returns the number of messages which were not queued because the queue of their
+     * channel was full.
+     *
+     * @return the number of rejected messages since the creation.
+     */
+    long getRejectedMessagesCount()
+    {
+        /*
+        **Codes_SRS_MQTTRECEIVEDMESSAGES_21_019: [**The function shall return the number of messages rejected because the queue of their channel was full.**]**
+         */
+        return this.rejectedMessages.get();
+    }
+
+    /**
+     * @return {@code true} if no channel has messages.
+     */
+    boolean isEmpty()
+    {
+        /*
+        **Codes_SRS_MQTTRECEIVEDMESSAGES_21_013: [**The function shall return true only if the queues of all channels are empty.**]**
+         */
+        for (BlockingQueue<ReceivedMessage> queue : this.queues.values())
+        {
+            if (!queue.isEmpty())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
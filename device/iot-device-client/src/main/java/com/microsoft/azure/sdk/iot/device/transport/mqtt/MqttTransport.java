@@ -7,11 +7,15 @@ import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubCallbackPacket;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubOutboundPacket;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransport;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportWorker;
 import com.microsoft.azure.sdk.iot.device.transport.State;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
 
 import java.io.IOException;
 import java.util.Queue;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>
@@ -43,6 +47,9 @@ public final class MqttTransport implements IotHubTransport
     /** Messages whose callbacks that are waiting to be invoked. */
     protected final Queue<IotHubCallbackPacket> callbackList;
 
+    /** Number of messages published and still waiting for the IoT Hub acknowledgement. */
+    protected final AtomicInteger inFlightCount = new AtomicInteger();
+
     protected final DeviceClientConfig config;
 
     /**
@@ -142,6 +149,10 @@ public final class MqttTransport implements IotHubTransport
      * send attempt had failed, the function will attempt to resend the messages
      * in the previous attempt.
      * </p>
+     * <p>
+     * Messages are pipelined up to the in-flight window of the connection; the
+     * callback of each message is queued when the IoT Hub acknowledges it.
+     * </p>
      * If one has not already been created, the function will initialize an
      * MQTT connection with the IoT Hub specified in the configuration.
      *
@@ -167,21 +178,48 @@ public final class MqttTransport implements IotHubTransport
             // on its waiting list, one at a time.]
             while (!this.waitingList.isEmpty())
             {
-                IotHubOutboundPacket packet = this.waitingList.remove();
+                final IotHubOutboundPacket packet = this.waitingList.remove();
 
                 try
                 {
-                    IotHubStatusCode status = this.mqttIotHubConnection.sendEvent(packet.getMessage());
+                    this.inFlightCount.incrementAndGet();
+                    IotHubStatusCode status = this.mqttIotHubConnection.sendEvent(packet.getMessage(), new IMqttActionListener()
+                    {
+                        // Codes_SRS_MQTTTRANSPORT_21_020: [Once the IoT Hub acknowledges a sent message, the function
+                        // shall add the status code OK_EMPTY along with the callback and context to the callback list.]
+                        @Override
+                        public void onSuccess(IMqttToken asyncActionToken)
+                        {
+                            callbackList.add(new IotHubCallbackPacket(IotHubStatusCode.OK_EMPTY, packet.getCallback(), packet.getContext()));
+                            inFlightCount.decrementAndGet();
+                            signalCallbackReady();
+                        }
 
-                    // Codes_SRS_MQTTTRANSPORT_15_010: [For each message being sent, the function shall add
+                        // Codes_SRS_MQTTTRANSPORT_21_021: [If the delivery of a sent message fails, the function
+                        // shall add the status code ERROR along with the callback and context to the callback list.]
+                        @Override
+                        public void onFailure(IMqttToken asyncActionToken, Throwable exception)
+                        {
+                            callbackList.add(new IotHubCallbackPacket(IotHubStatusCode.ERROR, packet.getCallback(), packet.getContext()));
+                            inFlightCount.decrementAndGet();
+                            signalCallbackReady();
+                        }
+                    });
+
+                    // Codes_SRS_MQTTTRANSPORT_15_010: [For each message that could not be sent, the function shall add
                     // the IoT Hub status code along with the callback and context to the callback list.]
-                    IotHubCallbackPacket callbackPacket = new IotHubCallbackPacket(status, packet.getCallback(), packet.getContext());
-                    this.callbackList.add(callbackPacket);
+                    if (status != IotHubStatusCode.OK_EMPTY)
+                    {
+                        IotHubCallbackPacket callbackPacket = new IotHubCallbackPacket(status, packet.getCallback(), packet.getContext());
+                        this.callbackList.add(callbackPacket);
+                        this.inFlightCount.decrementAndGet();
+                    }
                 }
                 // Codes_SRS_MQTTTRANSPORT_15_011: [If the IoT Hub could not be reached, the message
                 // shall be buffered to be sent again next time.]
                 catch (IllegalStateException e)
                 {
+                    this.inFlightCount.decrementAndGet();
                     this.waitingList.add(packet);
                 }
 
@@ -307,8 +345,8 @@ public final class MqttTransport implements IotHubTransport
         synchronized (sendMessagesLock)
         {
             // Codes_SRS_MQTTTRANSPORT_15_019: [The function shall return true if the waiting list
-            // and callback list are all empty, and false otherwise.]
-            if (this.waitingList.isEmpty() && this.callbackList.isEmpty())
+            // and callback list are all empty and no sent message awaits acknowledgement, and false otherwise.]
+            if (this.waitingList.isEmpty() && this.inFlightCount.get() == 0 && this.callbackList.isEmpty())
             {
                 return true;
             }
@@ -316,4 +354,42 @@ public final class MqttTransport implements IotHubTransport
 
         return false;
     }
+
+    /**
+     * Returns the number of messages waiting to be sent.
+     *
+     * @return the number of messages waiting to be sent.
+     */
+    public int getQueuedMessageCount()
+    {
+        // Codes_SRS_MQTTTRANSPORT_21_023: [The function shall return the number of messages in the waiting list.]
+        return this.waitingList.size();
+    }
+
+    /**
+     * Returns the number of messages published to the IoT Hub which were not
+     * acknowledged yet.
+     *
+     * @return the number of messages in flight.
+     */
+    public int getInProgressMessageCount()
+    {
+        // Codes_SRS_MQTTTRANSPORT_21_024: [The function shall return the number of messages published and still waiting for the IoT Hub acknowledgement.]
+        return this.inFlightCount.get();
+    }
+
+    /**
+     * Wakes up the transport worker of the event driven mode, if any, so the
+     * callback of an acknowledged message is invoked right away.
+     */
+    private void signalCallbackReady()
+    {
+        // Codes_SRS_MQTTTRANSPORT_21_022: [Once a sent message is acknowledged or fails, the function shall signal the
+        // transport worker saved in the config, if any, to invoke its callback.]
+        IotHubTransportWorker transportWorker = this.config.getTransportWorker();
+        if (transportWorker != null)
+        {
+            transportWorker.signalSend();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,236 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.benchmarks.com.microsoft.azure.sdk.iot.device;
+
+import com.microsoft.azure.sdk.iot.device.IotHubSSLContext;
+import com.microsoft.azure.sdk.iot.device.IotHubSSLContextCache;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.security.KeyStore;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Measures what a device client pays for its SSL context when it opens: a context built for each
+ * client, as DeviceClient.open did before, against a context acquired from IotHubSSLContextCache
+ * while other clients hold it.
+ *
+ * It then measures a TLS connect of each client to a local TLSv1.2 server: with a context built for
+ * each client, every connect is a full handshake; with the shared context, the connects after the
+ * first resume its session. The server uses an RSA 2048 self-signed certificate made by keytool at
+ * startup, so the numbers hold the handshakes but not the network latency.
+ */
+public class IotHubSSLContextCacheBenchmark
+{
+    private static final char[] KEYSTORE_PASSWORD = "benchmark".toCharArray();
+    private static final int SETUP_WARMUP_ITERATIONS = 100;
+    private static final int SETUP_ITERATIONS = 1000;
+    private static final int CONNECT_WARMUP_ITERATIONS = 100;
+    private static final int CONNECT_ITERATIONS = 1000;
+
+    public static void main(String[] args) throws Exception
+    {
+        Benchmark.quietLogging();
+
+        final Method acquireDefault = IotHubSSLContextCache.class.getDeclaredMethod("acquire");
+        final Method acquire = IotHubSSLContextCache.class.getDeclaredMethod("acquire", String.class, boolean.class);
+        final Method release = IotHubSSLContextCache.class.getDeclaredMethod("release", IotHubSSLContext.class);
+        acquireDefault.setAccessible(true);
+        acquire.setAccessible(true);
+        release.setAccessible(true);
+        final Constructor<IotHubSSLContext> defaultConstructor = IotHubSSLContext.class.getDeclaredConstructor();
+        final Constructor<IotHubSSLContext> certConstructor = IotHubSSLContext.class.getDeclaredConstructor(String.class, boolean.class);
+        defaultConstructor.setAccessible(true);
+        certConstructor.setAccessible(true);
+
+        Benchmark.Result before = Benchmark.measure("context setup, previous context per client", SETUP_WARMUP_ITERATIONS, SETUP_ITERATIONS,
+                new Benchmark.Operation()
+                {
+                    @Override
+                    public Object run() throws Exception
+                    {
+                        return defaultConstructor.newInstance();
+                    }
+                });
+        Object heldContext = acquireDefault.invoke(null);
+        Benchmark.Result after = Benchmark.measure("context setup, shared context from the cache", SETUP_WARMUP_ITERATIONS, SETUP_ITERATIONS,
+                new Benchmark.Operation()
+                {
+                    @Override
+                    public Object run() throws Exception
+                    {
+                        Object context = acquireDefault.invoke(null);
+                        release.invoke(null, context);
+                        return context;
+                    }
+                });
+        release.invoke(null, heldContext);
+        Benchmark.printSpeedup(before, after);
+
+        File directory = createTempDirectory();
+        final SSLServerSocket serverSocket = startServer(directory);
+        try
+        {
+            final int port = serverSocket.getLocalPort();
+            final String certificate = exportCertificate(directory);
+
+            final Set<String> previousSessions = new HashSet<>();
+            before = Benchmark.measure("TLS connect, previous context per client", CONNECT_WARMUP_ITERATIONS, CONNECT_ITERATIONS,
+                    new Benchmark.Operation()
+                    {
+                        @Override
+                        public Object run() throws Exception
+                        {
+                            return connect(certConstructor.newInstance(certificate, false), port, previousSessions);
+                        }
+                    });
+
+            final Set<String> sharedSessions = new HashSet<>();
+            heldContext = acquire.invoke(null, certificate, false);
+            after = Benchmark.measure("TLS connect, shared context from the cache", CONNECT_WARMUP_ITERATIONS, CONNECT_ITERATIONS,
+                    new Benchmark.Operation()
+                    {
+                        @Override
+                        public Object run() throws Exception
+                        {
+                            IotHubSSLContext context = (IotHubSSLContext) acquire.invoke(null, certificate, false);
+                            try
+                            {
+                                return connect(context, port, sharedSessions);
+                            }
+                            finally
+                            {
+                                release.invoke(null, context);
+                            }
+                        }
+                    });
+            release.invoke(null, heldContext);
+            Benchmark.printSpeedup(before, after);
+
+            int connects = CONNECT_WARMUP_ITERATIONS + CONNECT_ITERATIONS;
+            System.out.println(String.format("%-56s %14d", "resumed connects of " + connects + ", previous", connects - previousSessions.size()));
+            System.out.println(String.format("%-56s %14d", "resumed connects of " + connects + ", shared", connects - sharedSessions.size()));
+        }
+        finally
+        {
+            serverSocket.close();
+            for (File file : directory.listFiles())
+            {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    /* Connects and records the id of the TLS session, which is the id of an earlier one when the session is resumed. */
+    private static String connect(IotHubSSLContext context, int port, Set<String> sessions) throws IOException
+    {
+        try (SSLSocket socket = (SSLSocket) context.getIotHubSSlContext().getSocketFactory().createSocket("localhost", port))
+        {
+            socket.startHandshake();
+            String sessionId = new BigInteger(1, socket.getSession().getId()).toString(16);
+            sessions.add(sessionId);
+            return sessionId;
+        }
+    }
+
+    private static SSLServerSocket startServer(File directory) throws Exception
+    {
+        File keyStoreFile = new File(directory, "server.jks");
+        keytool("-genkeypair", "-alias", "server", "-keyalg", "RSA", "-keysize", "2048", "-validity", "1",
+                "-dname", "CN=localhost", "-ext", "SAN=dns:localhost,ip:127.0.0.1",
+                "-keystore", keyStoreFile.getPath(), "-storepass", new String(KEYSTORE_PASSWORD), "-keypass", new String(KEYSTORE_PASSWORD));
+
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (FileInputStream input = new FileInputStream(keyStoreFile))
+        {
+            keyStore.load(input, KEYSTORE_PASSWORD);
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, KEYSTORE_PASSWORD);
+        SSLContext serverContext = SSLContext.getInstance("TLSv1.2");
+        serverContext.init(keyManagerFactory.getKeyManagers(), null, null);
+
+        final SSLServerSocket serverSocket = (SSLServerSocket) serverContext.getServerSocketFactory().createServerSocket(0);
+        Thread server = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                while (!serverSocket.isClosed())
+                {
+                    try (SSLSocket socket = (SSLSocket) serverSocket.accept())
+                    {
+                        socket.startHandshake();
+                        socket.getInputStream().read();
+                    }
+                    catch (IOException e)
+                    {
+                        // the client closed the connection, or the benchmark closed the server
+                    }
+                }
+            }
+        }, "IotHubSSLContextCacheBenchmark-server");
+        server.setDaemon(true);
+        server.start();
+        return serverSocket;
+    }
+
+    private static String exportCertificate(File directory) throws Exception
+    {
+        File certificateFile = new File(directory, "server.pem");
+        keytool("-exportcert", "-rfc", "-alias", "server", "-file", certificateFile.getPath(),
+                "-keystore", new File(directory, "server.jks").getPath(), "-storepass", new String(KEYSTORE_PASSWORD));
+
+        ByteArrayOutputStream certificate = new ByteArrayOutputStream();
+        try (FileInputStream input = new FileInputStream(certificateFile))
+        {
+            byte[] buffer = new byte[4096];
+            for (int read = input.read(buffer); read != -1; read = input.read(buffer))
+            {
+                certificate.write(buffer, 0, read);
+            }
+        }
+        return certificate.toString("US-ASCII");
+    }
+
+    private static void keytool(String... args) throws Exception
+    {
+        String[] command = new String[args.length + 1];
+        command[0] = new File(new File(System.getProperty("java.home"), "bin"), "keytool").getPath();
+        System.arraycopy(args, 0, command, 1, args.length);
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        InputStream output = process.getInputStream();
+        while (output.read() != -1)
+        {
+            // discard the output of keytool
+        }
+        if (process.waitFor() != 0)
+        {
+            throw new IOException("keytool failed: " + command[1]);
+        }
+    }
+
+    private static File createTempDirectory() throws IOException
+    {
+        File directory = File.createTempFile("IotHubSSLContextCacheBenchmark", "");
+        if (!directory.delete() || !directory.mkdir())
+        {
+            throw new IOException("Cannot create " + directory);
+        }
+        return directory;
+    }
+}
@@ -0,0 +1,238 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.benchmarks.com.microsoft.azure.sdk.iot.device;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.MessageProperty;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the life of the user properties of a message: set N properties on a new message, read
+ * each one back, then run the property passes of the three transports on it, the MQTT publish
+ * topic, the prefixed HTTPS properties and the AMQP application properties.
+ *
+ * The baseline is a copy of the previous property storage of Message, which removed and appended a
+ * property on each set and copied the properties on each getProperties call, with the previous
+ * MessageProperty, which made a logger for each property and validated it with a regex.
+ */
+public class MessagePropertyBenchmark
+{
+    private static final int[] PROPERTY_COUNTS = { 0, 5, 30 };
+    private static final int WARMUP_ITERATIONS = 50000;
+    private static final int ITERATIONS = 200000;
+    private static final byte[] BODY = "{\"temperature\":25}".getBytes();
+    private static final String PUBLISH_TOPIC = "devices/benchmark-device/messages/events/";
+    private static final String HTTPS_APP_PROPERTY_PREFIX = "iothub-app-";
+
+    public static void main(String[] args) throws Exception
+    {
+        Benchmark.quietLogging();
+
+        for (int propertyCount : PROPERTY_COUNTS)
+        {
+            final String[] names = new String[propertyCount];
+            final String[] values = new String[propertyCount];
+            for (int i = 0; i < propertyCount; i++)
+            {
+                names[i] = "property" + i;
+                values[i] = "value" + i;
+            }
+
+            Benchmark.Result before = Benchmark.measure(propertyCount + " properties, previous storage and regex", WARMUP_ITERATIONS, ITERATIONS,
+                    new Benchmark.Operation()
+                    {
+                        @Override
+                        public Object run()
+                        {
+                            PreviousMessage message = new PreviousMessage();
+                            for (int i = 0; i < names.length; i++)
+                            {
+                                message.setProperty(names[i], values[i]);
+                            }
+                            for (String name : names)
+                            {
+                                message.getProperty(name);
+                            }
+                            return previousEncode(message);
+                        }
+                    });
+            Benchmark.Result after = Benchmark.measure(propertyCount + " properties, current", WARMUP_ITERATIONS, ITERATIONS,
+                    new Benchmark.Operation()
+                    {
+                        @Override
+                        public Object run()
+                        {
+                            Message message = new Message(BODY);
+                            for (int i = 0; i < names.length; i++)
+                            {
+                                message.setProperty(names[i], values[i]);
+                            }
+                            for (String name : names)
+                            {
+                                message.getProperty(name);
+                            }
+                            return encode(message);
+                        }
+                    });
+            Benchmark.printSpeedup(before, after);
+        }
+    }
+
+    /* The property passes of MqttMessaging, HttpsSingleMessage and AmqpsMessageCodec, on the property list. */
+    private static int encode(Message message)
+    {
+        List<MessageProperty> messageProperties = message.getPropertyList();
+        String topic = PUBLISH_TOPIC;
+        if (!messageProperties.isEmpty())
+        {
+            StringBuilder stringBuilder = new StringBuilder(PUBLISH_TOPIC);
+            for (int i = 0; i < messageProperties.size(); i++)
+            {
+                MessageProperty property = messageProperties.get(i);
+                if (i > 0)
+                {
+                    stringBuilder.append('&');
+                }
+                stringBuilder.append(property.getName()).append('=').append(property.getValue());
+            }
+            topic = stringBuilder.toString();
+        }
+
+        MessageProperty[] httpsProperties = new MessageProperty[messageProperties.size()];
+        for (int i = 0; i < messageProperties.size(); i++)
+        {
+            MessageProperty property = messageProperties.get(i);
+            httpsProperties[i] = new MessageProperty(HTTPS_APP_PROPERTY_PREFIX + property.getName(), property.getValue());
+        }
+
+        Map<String, String> userProperties = new HashMap<>((messageProperties.size() * 4 + 2) / 3);
+        for (int i = 0; i < messageProperties.size(); i++)
+        {
+            MessageProperty property = messageProperties.get(i);
+            if (!MessageProperty.RESERVED_PROPERTY_NAMES.contains(property.getName()))
+            {
+                userProperties.put(property.getName(), property.getValue());
+            }
+        }
+
+        return topic.length() + httpsProperties.length + userProperties.size();
+    }
+
+    /* The same passes before getPropertyList, each one on a copy of the properties. */
+    private static int previousEncode(PreviousMessage message)
+    {
+        PreviousMessageProperty[] messageProperties = message.getProperties();
+        String topic = PUBLISH_TOPIC;
+        if (messageProperties.length > 0)
+        {
+            StringBuilder stringBuilder = new StringBuilder(PUBLISH_TOPIC);
+            boolean needAmpersand = false;
+            for (PreviousMessageProperty property : message.getProperties())
+            {
+                if (needAmpersand)
+                {
+                    stringBuilder.append('&');
+                }
+                stringBuilder.append(property.getName()).append('=').append(property.getValue());
+                needAmpersand = true;
+            }
+            topic = stringBuilder.toString();
+        }
+
+        messageProperties = message.getProperties();
+        PreviousMessageProperty[] httpsProperties = new PreviousMessageProperty[messageProperties.length];
+        for (int i = 0; i < messageProperties.length; i++)
+        {
+            PreviousMessageProperty property = messageProperties[i];
+            httpsProperties[i] = new PreviousMessageProperty(HTTPS_APP_PROPERTY_PREFIX + property.getName(), property.getValue());
+        }
+
+        messageProperties = message.getProperties();
+        Map<String, String> userProperties = new HashMap<>(messageProperties.length);
+        for (PreviousMessageProperty property : messageProperties)
+        {
+            if (!MessageProperty.RESERVED_PROPERTY_NAMES.contains(property.getName()))
+            {
+                userProperties.put(property.getName(), property.getValue());
+            }
+        }
+
+        return topic.length() + httpsProperties.length + userProperties.size();
+    }
+
+    /* The property storage of Message before the index and getPropertyList. */
+    private static final class PreviousMessage
+    {
+        private final ArrayList<PreviousMessageProperty> properties = new ArrayList<>();
+
+        String getProperty(String name)
+        {
+            for (PreviousMessageProperty property : this.properties)
+            {
+                if (property.getName().equalsIgnoreCase(name))
+                {
+                    return property.getValue();
+                }
+            }
+            return null;
+        }
+
+        void setProperty(String name, String value)
+        {
+            PreviousMessageProperty messageProperty = null;
+            for (PreviousMessageProperty property : this.properties)
+            {
+                if (property.getName().equalsIgnoreCase(name))
+                {
+                    messageProperty = property;
+                    break;
+                }
+            }
+            if (messageProperty != null)
+            {
+                this.properties.remove(messageProperty);
+            }
+            this.properties.add(new PreviousMessageProperty(name, value));
+        }
+
+        PreviousMessageProperty[] getProperties()
+        {
+            return this.properties.toArray(new PreviousMessageProperty[this.properties.size()]);
+        }
+    }
+
+    /* MessageProperty before the single pass validation, with a logger for each property. */
+    private static final class PreviousMessageProperty
+    {
+        private final String name;
+        private final String value;
+        private final CustomLogger logger;
+
+        PreviousMessageProperty(String name, String value)
+        {
+            this.logger = new CustomLogger(this.getClass());
+            if (!name.matches("\\p{ASCII}*") || MessageProperty.RESERVED_PROPERTY_NAMES.contains(name) || !value.matches("\\p{ASCII}*"))
+            {
+                throw new IllegalArgumentException(name + " is not a valid IoT Hub message property.");
+            }
+            this.name = name;
+            this.value = value;
+        }
+
+        String getName()
+        {
+            return this.name;
+        }
+
+        String getValue()
+        {
+            return this.value;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.benchmarks.com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.IotHubEventCallback;
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubReceiveTask;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubSendTask;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransport;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportWorker;
+import tests.benchmarks.com.microsoft.azure.sdk.iot.device.Benchmark;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the time from queueing a message on the transport to the transport sending it, and the
+ * number of times an idle client wakes up, for the event driven IotHubTransportWorker against the
+ * send and receive tasks which DeviceClient schedules every 10 ms by default.
+ *
+ * The transport is a stub which sends a queued message by handing it back to the benchmark, so only
+ * the scheduling of the send and receive tasks is measured. Each message is queued as soon as the
+ * previous one was sent, that is right after a send round, so with the polled tasks it waits for
+ * almost a whole period.
+ */
+public class TransportWorkerBenchmark
+{
+    private static final long SEND_PERIOD_MILLIS = 10;
+    private static final long RECEIVE_PERIOD_MILLIS = 10;
+    private static final long IDLE_MILLIS = 5000;
+    private static final int WARMUP_ITERATIONS = 100;
+    private static final int ITERATIONS = 500;
+
+    public static void main(String[] args) throws Exception
+    {
+        Benchmark.quietLogging();
+        final Message message = new Message(new byte[256]);
+
+        final StubTransport pollingTransport = new StubTransport();
+        ScheduledExecutorService taskScheduler = Executors.newScheduledThreadPool(2);
+        taskScheduler.scheduleAtFixedRate(new IotHubSendTask(pollingTransport), 0, SEND_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        taskScheduler.scheduleAtFixedRate(new IotHubReceiveTask(pollingTransport), 0, RECEIVE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        Benchmark.Result before = Benchmark.measure("queue to send, tasks polled every 10 ms", WARMUP_ITERATIONS, ITERATIONS,
+                new Benchmark.Operation()
+                {
+                    @Override
+                    public Object run() throws Exception
+                    {
+                        pollingTransport.addMessage(message, null, null);
+                        pollingTransport.sent.acquire();
+                        return message;
+                    }
+                });
+        int pollingWakeUps = pollingTransport.countIdleWakeUps();
+        taskScheduler.shutdownNow();
+
+        final StubTransport eventDrivenTransport = new StubTransport();
+        final IotHubTransportWorker worker = new IotHubTransportWorker(eventDrivenTransport, SEND_PERIOD_MILLIS, 0);
+        Thread workerThread = new Thread(worker, "TransportWorkerBenchmark");
+        workerThread.start();
+        Benchmark.Result after = Benchmark.measure("queue to send, event driven transport worker", WARMUP_ITERATIONS, ITERATIONS,
+                new Benchmark.Operation()
+                {
+                    @Override
+                    public Object run() throws Exception
+                    {
+                        eventDrivenTransport.addMessage(message, null, null);
+                        worker.signalSend();
+                        eventDrivenTransport.sent.acquire();
+                        return message;
+                    }
+                });
+        int eventDrivenWakeUps = eventDrivenTransport.countIdleWakeUps();
+        worker.stop();
+        workerThread.join();
+
+        Benchmark.printSpeedup(before, after);
+        System.out.println(String.format("%-56s %14d", "idle wake-ups in " + IDLE_MILLIS + " ms, tasks polled", pollingWakeUps));
+        System.out.println(String.format("%-56s %14d", "idle wake-ups in " + IDLE_MILLIS + " ms, event driven", eventDrivenWakeUps));
+    }
+
+    /* A transport which sends its queued messages by releasing the sent semaphore once for each of them. */
+    private static final class StubTransport implements IotHubTransport
+    {
+        private final Queue<Message> waitingMessages = new ConcurrentLinkedQueue<>();
+        private final Semaphore sent = new Semaphore(0);
+        private final AtomicInteger wakeUps = new AtomicInteger();
+
+        private int countIdleWakeUps() throws InterruptedException
+        {
+            this.wakeUps.set(0);
+            Thread.sleep(IDLE_MILLIS);
+            return this.wakeUps.get();
+        }
+
+        @Override
+        public void open()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        @Override
+        public void addMessage(Message message, IotHubEventCallback callback, Object callbackContext)
+        {
+            this.waitingMessages.add(message);
+        }
+
+        @Override
+        public void sendMessages()
+        {
+            this.wakeUps.incrementAndGet();
+            // only the messages queued before this round, as a transport sends its queue
+            for (int count = this.waitingMessages.size(); count > 0; count--)
+            {
+                this.waitingMessages.poll();
+                this.sent.release();
+            }
+        }
+
+        @Override
+        public void invokeCallbacks()
+        {
+        }
+
+        @Override
+        public void handleMessage()
+        {
+            this.wakeUps.incrementAndGet();
+        }
+
+        @Override
+        public boolean isEmpty()
+        {
+            return this.waitingMessages.isEmpty();
+        }
+
+        @Override
+        public int getQueuedMessageCount()
+        {
+            return this.waitingMessages.size();
+        }
+
+        @Override
+        public int getInProgressMessageCount()
+        {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.benchmarks.com.microsoft.azure.sdk.iot.device.transport.https;
+
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.MessageProperty;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsBatchMessage;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsSingleMessage;
+import tests.benchmarks.com.microsoft.azure.sdk.iot.device.Benchmark;
+
+import javax.naming.SizeLimitExceededException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Measures a batch of 1, 100 and 5000 messages filled with HttpsBatchMessage.addMessage and sent
+ * with its body from getBody, as HttpsTransport does, against a copy of the batch it replaced: a
+ * String rebuilt for each added message and encoded again to check the size limit, so filling a
+ * batch took time quadratic in its size.
+ *
+ * The messages carry a 2 byte body and no property, so 5000 of them fit in one batch.
+ */
+public class HttpsBatchMessageBenchmark
+{
+    private static final int[] MESSAGE_COUNTS = { 1, 100, 5000 };
+    private static final int[] PREVIOUS_ITERATIONS = { 200000, 20000, 20 };
+    private static final int[] ITERATIONS = { 200000, 20000, 1000 };
+
+    public static void main(String[] args) throws Exception
+    {
+        Benchmark.quietLogging();
+
+        final HttpsSingleMessage message = HttpsSingleMessage.parseHttpsMessage(new Message("42"));
+        Benchmark.setField(message, "properties", new MessageProperty[0]);
+
+        for (int i = 0; i < MESSAGE_COUNTS.length; i++)
+        {
+            final int messageCount = MESSAGE_COUNTS[i];
+            Benchmark.Result before = Benchmark.measure(messageCount + " messages, previous String batch",
+                    PREVIOUS_ITERATIONS[i] / 4, PREVIOUS_ITERATIONS[i],
+                    new Benchmark.Operation()
+                    {
+                        @Override
+                        public Object run() throws Exception
+                        {
+                            PreviousBatchMessage batch = new PreviousBatchMessage();
+                            for (int j = 0; j < messageCount; j++)
+                            {
+                                batch.addMessage(message);
+                            }
+                            return batch.getBody();
+                        }
+                    });
+            Benchmark.Result after = Benchmark.measure(messageCount + " messages, append-only buffer",
+                    ITERATIONS[i] / 4, ITERATIONS[i],
+                    new Benchmark.Operation()
+                    {
+                        @Override
+                        public Object run() throws Exception
+                        {
+                            HttpsBatchMessage batch = new HttpsBatchMessage();
+                            for (int j = 0; j < messageCount; j++)
+                            {
+                                batch.addMessage(message);
+                            }
+                            return batch.getBody();
+                        }
+                    });
+            Benchmark.printSpeedup(before, after);
+        }
+    }
+
+    /* HttpsBatchMessage before the append-only buffer, for messages without properties. */
+    private static final class PreviousBatchMessage
+    {
+        private String batchBody = "[]";
+
+        void addMessage(HttpsSingleMessage msg) throws SizeLimitExceededException
+        {
+            String jsonMsg = "{" + "\"body\":" + "\"" + msg.getBodyAsString() + "\","
+                    + "\"base64Encoded\":" + Boolean.toString(msg.isBase64Encoded()) + "}";
+            String newBatchBody;
+            if (this.batchBody.equals("[]"))
+            {
+                newBatchBody = "[" + jsonMsg + "]";
+            }
+            else
+            {
+                newBatchBody = this.batchBody.substring(0, this.batchBody.length() - 1) + "," + jsonMsg + "]";
+            }
+
+            byte[] newBatchBodyBytes = newBatchBody.getBytes(StandardCharsets.UTF_8);
+            if (newBatchBodyBytes.length > HttpsBatchMessage.SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES)
+            {
+                throw new SizeLimitExceededException("Service-bound message size cannot exceed the limit.");
+            }
+            this.batchBody = newBatchBody;
+        }
+
+        byte[] getBody()
+        {
+            return this.batchBody.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
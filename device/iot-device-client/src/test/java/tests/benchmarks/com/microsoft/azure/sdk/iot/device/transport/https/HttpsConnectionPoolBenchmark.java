@@ -0,0 +1,215 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.benchmarks.com.microsoft.azure.sdk.iot.device.transport.https;
+
+import com.microsoft.azure.sdk.iot.device.IotHubSSLContext;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsConnectionPool;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsMethod;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsRequest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import tests.benchmarks.com.microsoft.azure.sdk.iot.device.Benchmark;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.security.KeyStore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures a device HTTPS request, a 256 byte POST answered with 204, sent through HttpsRequest,
+ * whose connections share the socket factory of HttpsConnectionPool, against the request it
+ * replaced: a new socket factory from the SSL context on each request, so the JDK keep-alive cache
+ * never hands the previous connection back and each request opens a new TLS connection.
+ *
+ * The server is an embedded HTTPS server on localhost, with a self-signed certificate made by
+ * keytool at startup, so the numbers hold the TLS handshake but not the network latency.
+ */
+public class HttpsConnectionPoolBenchmark
+{
+    private static final char[] KEYSTORE_PASSWORD = "benchmark".toCharArray();
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int PREVIOUS_ITERATIONS = 300;
+    private static final int ITERATIONS = 3000;
+
+    public static void main(String[] args) throws Exception
+    {
+        Benchmark.quietLogging();
+        File directory = createTempDirectory();
+        ExecutorService serverExecutor = Executors.newFixedThreadPool(4);
+        HttpsServer server = startServer(directory, serverExecutor);
+
+        try
+        {
+            final URL url = new URL("https://localhost:" + server.getAddress().getPort() + "/devices/benchmark-device/messages/events");
+            final IotHubSSLContext iotHubSSLContext = createIotHubSSLContext(exportCertificate(directory));
+            final byte[] body = new byte[256];
+
+            Benchmark.Result before = Benchmark.measure("HTTPS POST, previous socket factory per request", WARMUP_ITERATIONS, PREVIOUS_ITERATIONS,
+                    new Benchmark.Operation()
+                    {
+                        @Override
+                        public Object run() throws Exception
+                        {
+                            return previousSend(url, body, iotHubSSLContext.getIotHubSSlContext());
+                        }
+                    });
+
+            long openedConnections = HttpsConnectionPool.getOpenedConnectionCount();
+            long sentRequests = HttpsConnectionPool.getSentRequestCount();
+            Benchmark.Result after = Benchmark.measure("HTTPS POST, pooled connections", WARMUP_ITERATIONS, ITERATIONS,
+                    new Benchmark.Operation()
+                    {
+                        @Override
+                        public Object run() throws Exception
+                        {
+                            return new HttpsRequest(url, HttpsMethod.POST, body)
+                                    .setHeaderField("content-type", "application/octet-stream")
+                                    .setSSLContext(iotHubSSLContext)
+                                    .send();
+                        }
+                    });
+            Benchmark.printSpeedup(before, after);
+            System.out.println(String.format("%-56s %14d", "pooled requests sent",
+                    HttpsConnectionPool.getSentRequestCount() - sentRequests));
+            System.out.println(String.format("%-56s %14d", "pooled TLS connections opened",
+                    HttpsConnectionPool.getOpenedConnectionCount() - openedConnections));
+        }
+        finally
+        {
+            server.stop(0);
+            serverExecutor.shutdownNow();
+            for (File file : directory.listFiles())
+            {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    /* The request of HttpsConnection before HttpsConnectionPool, with its own socket factory. */
+    private static int previousSend(URL url, byte[] body, SSLContext sslContext) throws IOException
+    {
+        HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("content-type", "application/octet-stream");
+        connection.setSSLSocketFactory(sslContext.getSocketFactory());
+        connection.setDoOutput(true);
+        connection.getOutputStream().write(body);
+        connection.connect();
+
+        int responseStatus = connection.getResponseCode();
+        connection.getHeaderFields();
+        InputStream input = connection.getInputStream();
+        while (input.read() != -1)
+        {
+            // drain the response, so the connection could be reused
+        }
+        input.close();
+        return responseStatus;
+    }
+
+    private static HttpsServer startServer(File directory, ExecutorService executor) throws Exception
+    {
+        File keyStoreFile = new File(directory, "server.jks");
+        keytool("-genkeypair", "-alias", "server", "-keyalg", "RSA", "-keysize", "2048", "-validity", "1",
+                "-dname", "CN=localhost", "-ext", "SAN=dns:localhost,ip:127.0.0.1",
+                "-keystore", keyStoreFile.getPath(), "-storepass", new String(KEYSTORE_PASSWORD), "-keypass", new String(KEYSTORE_PASSWORD));
+
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (FileInputStream input = new FileInputStream(keyStoreFile))
+        {
+            keyStore.load(input, KEYSTORE_PASSWORD);
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, KEYSTORE_PASSWORD);
+        SSLContext serverContext = SSLContext.getInstance("TLS");
+        serverContext.init(keyManagerFactory.getKeyManagers(), null, null);
+
+        HttpsServer server = HttpsServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(serverContext));
+        server.createContext("/", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                InputStream input = exchange.getRequestBody();
+                while (input.read() != -1)
+                {
+                    // read the whole request body
+                }
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+        return server;
+    }
+
+    private static String exportCertificate(File directory) throws Exception
+    {
+        File certificateFile = new File(directory, "server.pem");
+        keytool("-exportcert", "-rfc", "-alias", "server", "-file", certificateFile.getPath(),
+                "-keystore", new File(directory, "server.jks").getPath(), "-storepass", new String(KEYSTORE_PASSWORD));
+
+        ByteArrayOutputStream certificate = new ByteArrayOutputStream();
+        try (FileInputStream input = new FileInputStream(certificateFile))
+        {
+            byte[] buffer = new byte[4096];
+            for (int read = input.read(buffer); read != -1; read = input.read(buffer))
+            {
+                certificate.write(buffer, 0, read);
+            }
+        }
+        return certificate.toString("US-ASCII");
+    }
+
+    /* The context trusting the given certificate, as a device client given its own certificate gets. */
+    private static IotHubSSLContext createIotHubSSLContext(String certificate) throws Exception
+    {
+        Constructor<IotHubSSLContext> constructor = IotHubSSLContext.class.getDeclaredConstructor(String.class, boolean.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(certificate, false);
+    }
+
+    private static void keytool(String... args) throws Exception
+    {
+        String[] command = new String[args.length + 1];
+        command[0] = new File(new File(System.getProperty("java.home"), "bin"), "keytool").getPath();
+        System.arraycopy(args, 0, command, 1, args.length);
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        InputStream output = process.getInputStream();
+        while (output.read() != -1)
+        {
+            // discard the output of keytool
+        }
+        if (process.waitFor() != 0)
+        {
+            throw new IOException("keytool failed: " + command[1]);
+        }
+    }
+
+    private static File createTempDirectory() throws IOException
+    {
+        File directory = File.createTempFile("HttpsConnectionPoolBenchmark", "");
+        if (!directory.delete() || !directory.mkdir())
+        {
+            throw new IOException("Cannot create " + directory);
+        }
+        return directory;
+    }
+}
@@ -0,0 +1,384 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.benchmarks.com.microsoft.azure.sdk.iot.device.transport.mqtt;
+
+import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttPingScheduler;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttPingSender;
+import org.eclipse.paho.client.mqttv3.MqttToken;
+import org.eclipse.paho.client.mqttv3.internal.ClientComms;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import tests.benchmarks.com.microsoft.azure.sdk.iot.device.Benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test of the keep alive pings of many MQTT connections in one process.
+ *
+ * First 2000 connections, whose activity check returns at once, ping every 100 ms for 3 seconds,
+ * with the paho TimerPingSender, which starts a timer thread for each connection, then with
+ * MqttPingScheduler. The test reports the threads started, the activity checks run per second
+ * against the 20000 expected, and the worst delay of a check behind its keep alive interval.
+ *
+ * Then 2000 connections with a keep alive of 200 ms and an activity check which blocks for 0.5 ms
+ * are started together, so their checks queue up on the check threads. They all stop while the
+ * queue drains, as in a network outage, and the test counts the connections which still ping after
+ * stop. The baseline is a copy of MqttPingScheduler before its stop kept the queued checks from
+ * running: such a check ran, and scheduled the next one.
+ *
+ * No broker is available to the build, so each connection is a ClientComms whose activity check
+ * schedules the next check after the keep alive interval, as paho does.
+ */
+public class MqttPingSchedulerBenchmark
+{
+    private static final int CONNECTION_COUNT = 2000;
+    private static final long STEADY_KEEP_ALIVE_MILLIS = 100;
+    private static final long STEADY_RUN_MILLIS = 3000;
+    private static final long STOP_KEEP_ALIVE_MILLIS = 200;
+    private static final long STOP_AFTER_CHECKS_MILLIS = 20;
+    private static final long SLOW_CHECK_NANOS = 500000;
+    private static final long IDLE_KEEP_ALIVE_MILLIS = 300000;
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 100;
+
+    /** Makes the ping sender of a connection. */
+    private interface SenderFactory
+    {
+        MqttPingSender create();
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        Benchmark.quietLogging();
+        final MqttAsyncClient client = new MqttAsyncClient("ssl://127.0.0.1:8883", "benchmark-device", new MemoryPersistence());
+
+        runSteadyState("timer per connection", client, new SenderFactory()
+        {
+            @Override
+            public MqttPingSender create()
+            {
+                return new TimerPingSender();
+            }
+        });
+        runSteadyState("shared scheduler", client, new SenderFactory()
+        {
+            @Override
+            public MqttPingSender create()
+            {
+                return new MqttPingScheduler();
+            }
+        });
+
+        SenderFactory previousFactory = new SenderFactory()
+        {
+            @Override
+            public MqttPingSender create()
+            {
+                return new PreviousPingScheduler();
+            }
+        };
+        SenderFactory currentFactory = new SenderFactory()
+        {
+            @Override
+            public MqttPingSender create()
+            {
+                return new MqttPingScheduler();
+            }
+        };
+        runStopWhileChecksQueued("previous stop", client, previousFactory);
+        runStopWhileChecksQueued("stop with generation", client, currentFactory);
+
+        Benchmark.Result before = measureStartStop("start and stop " + CONNECTION_COUNT + " connections, previous", client, previousFactory);
+        Benchmark.Result after = measureStartStop("start and stop " + CONNECTION_COUNT + " connections, current", client, currentFactory);
+        Benchmark.printSpeedup(before, after);
+    }
+
+    private static void runSteadyState(String name, MqttAsyncClient client, SenderFactory senderFactory) throws Exception
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Stats stats = new Stats();
+        List<SimulatedComms> connections = createConnections(client, senderFactory, STEADY_KEEP_ALIVE_MILLIS, 0, stats);
+
+        long startedThreads = threads.getTotalStartedThreadCount();
+        long startNanos = System.nanoTime();
+        for (SimulatedComms connection : connections)
+        {
+            connection.start();
+        }
+        Thread.sleep(STEADY_RUN_MILLIS);
+        long checks = stats.checks.get();
+        long elapsedNanos = System.nanoTime() - startNanos;
+        for (SimulatedComms connection : connections)
+        {
+            connection.stop();
+        }
+        startedThreads = threads.getTotalStartedThreadCount() - startedThreads;
+
+        System.out.println(String.format("%-56s %14d", "threads started, " + name, startedThreads));
+        System.out.println(String.format("%-56s %14.1f of %d", "activity checks/s, " + name,
+                checks * 1e9 / elapsedNanos, CONNECTION_COUNT * 1000 / STEADY_KEEP_ALIVE_MILLIS));
+        System.out.println(String.format("%-56s %14.1f ms", "worst check delay, " + name, stats.worstDelayNanos.get() / 1e6));
+    }
+
+    private static void runStopWhileChecksQueued(String name, MqttAsyncClient client, SenderFactory senderFactory) throws Exception
+    {
+        Stats stats = new Stats();
+        List<SimulatedComms> connections = createConnections(client, senderFactory, STOP_KEEP_ALIVE_MILLIS, SLOW_CHECK_NANOS, stats);
+        for (SimulatedComms connection : connections)
+        {
+            connection.start();
+        }
+        Thread.sleep(STOP_KEEP_ALIVE_MILLIS + STOP_AFTER_CHECKS_MILLIS);
+        for (SimulatedComms connection : connections)
+        {
+            connection.stop();
+        }
+
+        // let the checks which were running when stop was called finish, then watch for new ones
+        Thread.sleep(CONNECTION_COUNT * SLOW_CHECK_NANOS / 1000000 + STOP_KEEP_ALIVE_MILLIS);
+        for (SimulatedComms connection : connections)
+        {
+            connection.checksSinceReset.set(0);
+        }
+        Thread.sleep(3 * STOP_KEEP_ALIVE_MILLIS);
+        int stillPinging = 0;
+        for (SimulatedComms connection : connections)
+        {
+            if (connection.checksSinceReset.get() > 0)
+            {
+                stillPinging++;
+            }
+            connection.stop();
+        }
+        System.out.println(String.format("%-56s %14d", "connections pinging after stop, " + name, stillPinging));
+    }
+
+    private static Benchmark.Result measureStartStop(String name, MqttAsyncClient client, SenderFactory senderFactory) throws Exception
+    {
+        final List<SimulatedComms> connections = createConnections(client, senderFactory, IDLE_KEEP_ALIVE_MILLIS, 0, new Stats());
+        return Benchmark.measure(name, WARMUP_ITERATIONS, ITERATIONS, new Benchmark.Operation()
+        {
+            @Override
+            public Object run()
+            {
+                for (SimulatedComms connection : connections)
+                {
+                    connection.start();
+                }
+                for (SimulatedComms connection : connections)
+                {
+                    connection.stop();
+                }
+                return connections;
+            }
+        });
+    }
+
+    private static List<SimulatedComms> createConnections(MqttAsyncClient client, SenderFactory senderFactory, long keepAliveMillis, long checkNanos,
+                                                          Stats stats) throws MqttException
+    {
+        List<SimulatedComms> connections = new ArrayList<>(CONNECTION_COUNT);
+        for (int i = 0; i < CONNECTION_COUNT; i++)
+        {
+            connections.add(new SimulatedComms(client, senderFactory.create(), keepAliveMillis, checkNanos, stats));
+        }
+        return connections;
+    }
+
+    /* The activity checks of all the connections of a run. */
+    private static final class Stats
+    {
+        final AtomicLong checks = new AtomicLong();
+        final AtomicLong worstDelayNanos = new AtomicLong();
+    }
+
+    /* A connection whose activity check may take a while, and schedules the next one like the one of paho. */
+    private static final class SimulatedComms extends ClientComms
+    {
+        private final MqttPingSender pingSender;
+        private final long keepAliveMillis;
+        private final long checkNanos;
+        private final Stats stats;
+        private final AtomicLong checksSinceReset = new AtomicLong();
+        private volatile long nextCheckNanos;
+
+        SimulatedComms(MqttAsyncClient client, MqttPingSender pingSender, long keepAliveMillis, long checkNanos, Stats stats) throws MqttException
+        {
+            super(client, new MemoryPersistence(), pingSender);
+            this.pingSender = pingSender;
+            this.keepAliveMillis = keepAliveMillis;
+            this.checkNanos = checkNanos;
+            this.stats = stats;
+        }
+
+        void start()
+        {
+            this.nextCheckNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.keepAliveMillis);
+            this.pingSender.start();
+        }
+
+        void stop()
+        {
+            this.pingSender.stop();
+        }
+
+        @Override
+        public long getKeepAlive()
+        {
+            return this.keepAliveMillis;
+        }
+
+        @Override
+        public MqttToken checkForActivity()
+        {
+            long now = System.nanoTime();
+            long delay = now - this.nextCheckNanos;
+            long worstDelay;
+            while (delay > (worstDelay = this.stats.worstDelayNanos.get()) && !this.stats.worstDelayNanos.compareAndSet(worstDelay, delay))
+            {
+                // retry with the new worst delay
+            }
+            this.stats.checks.incrementAndGet();
+            this.checksSinceReset.incrementAndGet();
+
+            if (this.checkNanos > 0)
+            {
+                LockSupport.parkNanos(this.checkNanos);
+            }
+
+            this.nextCheckNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.keepAliveMillis);
+            try
+            {
+                this.pingSender.schedule(this.keepAliveMillis);
+            }
+            catch (IllegalStateException e)
+            {
+                // the timer of TimerPingSender was cancelled by stop
+            }
+            return null;
+        }
+    }
+
+    /* The paho TimerPingSender, which the connections used before MqttPingScheduler. */
+    private static final class TimerPingSender implements MqttPingSender
+    {
+        private ClientComms comms;
+        private Timer timer;
+
+        @Override
+        public void init(ClientComms comms)
+        {
+            this.comms = comms;
+        }
+
+        @Override
+        public void start()
+        {
+            this.timer = new Timer("MQTT Ping");
+            this.timer.schedule(new PingTask(), this.comms.getKeepAlive());
+        }
+
+        @Override
+        public void stop()
+        {
+            if (this.timer != null)
+            {
+                this.timer.cancel();
+            }
+        }
+
+        @Override
+        public void schedule(long delayInMilliseconds)
+        {
+            this.timer.schedule(new PingTask(), delayInMilliseconds);
+        }
+
+        private final class PingTask extends TimerTask
+        {
+            @Override
+            public void run()
+            {
+                comms.checkForActivity();
+            }
+        }
+    }
+
+    /* MqttPingScheduler before stop kept the checks handed to the check threads from running. */
+    private static final class PreviousPingScheduler implements MqttPingSender
+    {
+        private static final ScheduledExecutorService PING_EXECUTOR = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory());
+        private static final ExecutorService CHECK_EXECUTOR = Executors.newFixedThreadPool(
+                Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())), new DaemonThreadFactory());
+
+        private ClientComms comms = null;
+        private ScheduledFuture<?> pendingPing = null;
+
+        @Override
+        public void init(ClientComms comms)
+        {
+            this.comms = comms;
+        }
+
+        @Override
+        public void start()
+        {
+            this.schedule(this.comms.getKeepAlive());
+        }
+
+        @Override
+        public synchronized void stop()
+        {
+            if (this.pendingPing != null)
+            {
+                this.pendingPing.cancel(false);
+                this.pendingPing = null;
+            }
+        }
+
+        @Override
+        public synchronized void schedule(long delayInMilliseconds)
+        {
+            this.pendingPing = PING_EXECUTOR.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    CHECK_EXECUTOR.execute(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            comms.checkForActivity();
+                        }
+                    });
+                }
+            }, delayInMilliseconds, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory
+    {
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
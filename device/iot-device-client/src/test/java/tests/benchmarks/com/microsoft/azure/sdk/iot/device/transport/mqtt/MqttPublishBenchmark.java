@@ -0,0 +1,189 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.benchmarks.com.microsoft.azure.sdk.iot.device.transport.mqtt;
+
+import com.microsoft.azure.sdk.iot.device.IotHubSSLContext;
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttMessaging;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import tests.benchmarks.com.microsoft.azure.sdk.iot.device.Benchmark;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to publish a batch of telemetry messages and get all of them acknowledged,
+ * through MqttMessaging.send with in-flight windows of 10, 100 and 1000, against the publish it
+ * replaced: a sleep of 10 ms while paho held 10 pending delivery tokens, under the connection lock.
+ *
+ * No broker is available to the build, so the paho client is replaced by one which acknowledges
+ * each publish after a fixed round trip on a scheduler thread, and counts it as pending until then.
+ */
+public class MqttPublishBenchmark
+{
+    private static final int BATCH_SIZE = 1000;
+    private static final long ACK_LATENCY_MILLIS = 10;
+    private static final int PREVIOUS_MAX_IN_FLIGHT_COUNT = 10;
+    private static final int[] WINDOWS = { 10, 100, 1000 };
+    private static final int WARMUP_ITERATIONS = 1;
+    private static final int ITERATIONS = 3;
+
+    private static final String DEVICE_ID = "benchmark-device";
+    private static final String PUBLISH_TOPIC = "devices/" + DEVICE_ID + "/messages/events/";
+
+    public static void main(String[] args) throws Exception
+    {
+        Benchmark.quietLogging();
+        ScheduledExecutorService broker = Executors.newSingleThreadScheduledExecutor();
+        final byte[] payload = new byte[256];
+        final Message message = new Message(payload);
+
+        try
+        {
+            final SimulatedBrokerClient previousClient = new SimulatedBrokerClient(broker);
+            final Object mqttLock = new Object();
+            Benchmark.Result before = Benchmark.measure(BATCH_SIZE + " publishes, previous sleep-poll on 10 tokens", WARMUP_ITERATIONS, ITERATIONS,
+                    new Benchmark.Operation()
+                    {
+                        @Override
+                        public Object run() throws Exception
+                        {
+                            for (int i = 0; i < BATCH_SIZE; i++)
+                            {
+                                synchronized (mqttLock)
+                                {
+                                    if (!previousClient.isConnected())
+                                    {
+                                        throw new IOException("Cannot publish when mqtt client is disconnected");
+                                    }
+
+                                    while (previousClient.getPendingDeliveryTokens().length >= PREVIOUS_MAX_IN_FLIGHT_COUNT)
+                                    {
+                                        Thread.sleep(10);
+                                    }
+
+                                    MqttMessage mqttMessage = new MqttMessage(payload);
+                                    mqttMessage.setQos(1);
+                                    previousClient.publish(PUBLISH_TOPIC, mqttMessage);
+                                }
+                            }
+                            previousClient.awaitAcknowledged();
+                            return previousClient;
+                        }
+                    });
+
+            for (int window : WINDOWS)
+            {
+                final SimulatedBrokerClient client = new SimulatedBrokerClient(broker);
+                final MqttMessaging messaging = createMessaging(client, window);
+                Benchmark.Result after = Benchmark.measure(BATCH_SIZE + " publishes, in-flight window of " + window, WARMUP_ITERATIONS, ITERATIONS,
+                        new Benchmark.Operation()
+                        {
+                            @Override
+                            public Object run() throws Exception
+                            {
+                                for (int i = 0; i < BATCH_SIZE; i++)
+                                {
+                                    messaging.send(message, null);
+                                }
+                                client.awaitAcknowledged();
+                                return client;
+                            }
+                        });
+                Benchmark.printSpeedup(before, after);
+            }
+        }
+        finally
+        {
+            broker.shutdownNow();
+        }
+    }
+
+    private static MqttMessaging createMessaging(MqttAsyncClient client, int maxInFlightCount) throws Exception
+    {
+        // the default context, trusting the IotHub certificates, has a protected constructor
+        Constructor<IotHubSSLContext> sslContextConstructor = IotHubSSLContext.class.getDeclaredConstructor();
+        sslContextConstructor.setAccessible(true);
+
+        MqttMessaging messaging = new MqttMessaging("ssl://benchmark.azure-devices.net:8883", DEVICE_ID,
+                "benchmark.azure-devices.net/" + DEVICE_ID, "benchmark-password", sslContextConstructor.newInstance(), maxInFlightCount);
+
+        Benchmark.setField(Benchmark.getField(messaging, "info"), "mqttAsyncClient", client);
+        return messaging;
+    }
+
+    /* A connected paho client which acknowledges each publish ACK_LATENCY_MILLIS after it was sent. */
+    private static final class SimulatedBrokerClient extends MqttAsyncClient
+    {
+        private final ScheduledExecutorService broker;
+        private int pendingCount = 0;
+
+        private SimulatedBrokerClient(ScheduledExecutorService broker) throws MqttException
+        {
+            super("tcp://localhost:1883", DEVICE_ID, new MemoryPersistence());
+            this.broker = broker;
+        }
+
+        @Override
+        public boolean isConnected()
+        {
+            return true;
+        }
+
+        @Override
+        public IMqttDeliveryToken publish(String topic, MqttMessage message) throws MqttException
+        {
+            return this.publish(topic, message, null, null);
+        }
+
+        @Override
+        public IMqttDeliveryToken publish(String topic, MqttMessage message, Object userContext, final IMqttActionListener callback) throws MqttException
+        {
+            synchronized (this)
+            {
+                this.pendingCount++;
+            }
+
+            this.broker.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    synchronized (SimulatedBrokerClient.this)
+                    {
+                        pendingCount--;
+                        SimulatedBrokerClient.this.notifyAll();
+                    }
+                    if (callback != null)
+                    {
+                        callback.onSuccess(null);
+                    }
+                }
+            }, ACK_LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+            return null;
+        }
+
+        @Override
+        public synchronized IMqttDeliveryToken[] getPendingDeliveryTokens()
+        {
+            return new IMqttDeliveryToken[this.pendingCount];
+        }
+
+        private synchronized void awaitAcknowledged() throws InterruptedException
+        {
+            while (this.pendingCount > 0)
+            {
+                this.wait();
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ package tests.unit.com.microsoft.azure.sdk.iot.device;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
 import com.microsoft.azure.sdk.iot.device.CustomLogger;
+import com.microsoft.azure.sdk.iot.device.Message;
 import org.apache.log4j.*;
 import mockit.*;
 import org.junit.Test;
@@ -52,6 +53,64 @@ public class CustomLoggerTest
         assertThat("getExecutingMethodName", is(equalTo(methodName)));
     }
 
+    @Test
+    public void callingMethodNameFormatsAsCallingMethod(@Mocked final Logger mockLogger)
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockLogger.isEnabledFor(Level.INFO);
+                result = true;
+            }
+        };
+
+        new CustomLogger(this.getClass()).LogInfo("method name is %s", CustomLogger.CALLING_METHOD_NAME);
+
+        new Verifications()
+        {
+            {
+                mockLogger.info("method name is callingMethodNameFormatsAsCallingMethod");
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void lazyArgumentsAreNotEvaluatedWhenLevelIsDisabled(@Mocked final Logger mockLogger,
+                                                                @Mocked final Message mockMessage)
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockLogger.isEnabledFor(Level.INFO);
+                result = false;
+            }
+        };
+
+        new CustomLogger(this.getClass()).LogInfo("Content of message is %s, method name is %s ",
+                CustomLogger.lazyMessageBody(mockMessage), CustomLogger.CALLING_METHOD_NAME);
+
+        new Verifications()
+        {
+            {
+                mockMessage.getBytes();
+                times = 0;
+                mockLogger.info(anyString);
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void lazyMessageBodyFormatsAsMessageBody()
+    {
+        final String body = "test-body";
+
+        Object testArgument = CustomLogger.lazyMessageBody(new Message(body));
+
+        assertThat(testArgument.toString(), is(body));
+    }
+
     // Tests_SRS_CUSTOMERLOGGER_25_002: [The function shall print message for INFO level.]
     @Test
     public void testLogInfo(@Mocked final Logger mockLogger)
@@ -217,4 +276,28 @@ public class CustomLoggerTest
             }
         };
     }
+
+    // Tests_SRS_CUSTOMLOGGER_21_021: [The function shall record the formatted message with the stack trace of the throwable, if ERROR level is enabled.]
+    @Test
+    public void testLogErrorWithThrowable(@Mocked final Logger mockLogger)
+    {
+        final Throwable throwable = new Throwable("This is ERROR cause");
+
+        new NonStrictExpectations()
+        {
+            {
+                mockLogger.isEnabledFor(Level.ERROR);
+                result = true;
+            }
+        };
+
+        new CustomLogger(this.getClass()).LogError("This is ERROR message %d", throwable, 1);
+        new Verifications()
+        {
+            {
+                mockLogger.error("This is ERROR message 1", throwable);
+                times = 1;
+            }
+        };
+    }
 }
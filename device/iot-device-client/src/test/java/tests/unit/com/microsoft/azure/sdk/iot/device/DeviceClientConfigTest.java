@@ -4,16 +4,23 @@
 package tests.unit.com.microsoft.azure.sdk.iot.device;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.junit.Assert.*;
 
 import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
 import com.microsoft.azure.sdk.iot.device.IotHubSSLContext;
 import com.microsoft.azure.sdk.iot.device.MessageCallback;
+import com.microsoft.azure.sdk.iot.device.QueueOverflowPolicy;
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenManager;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportWorker;
+import com.microsoft.azure.sdk.iot.deps.ws.WebSocketHeader;
+import com.microsoft.azure.sdk.iot.deps.ws.impl.WebSocketImpl;
 import mockit.Mocked;
 import org.junit.Test;
 
 import java.io.File;
 import java.net.URISyntaxException;
+import java.util.concurrent.Executor;
 
 /** Unit tests for IoTHubClientConfig. */
 public class DeviceClientConfigTest
@@ -165,6 +172,326 @@ public class DeviceClientConfigTest
         assertThat(testgetMessageValidSecs, is(expectedMessageValidSecs));
     }
 
+    // Tests_SRS_DEVICECLIENTCONFIG_21_040: [The function shall return the value of mqttMaxInFlightCount.]
+    // Tests_SRS_DEVICECLIENTCONFIG_21_042: [The function shall set the value of mqttMaxInFlightCount.]
+    @Test
+    public void getAndSetMqttMaxInFlightCountMatch() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        int defaultMaxInFlightCount = config.getMqttMaxInFlightCount();
+        config.setMqttMaxInFlightCount(1000);
+
+        assertThat(defaultMaxInFlightCount, is(DeviceClientConfig.DEFAULT_MQTT_MAX_IN_FLIGHT_COUNT));
+        assertThat(config.getMqttMaxInFlightCount(), is(1000));
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_041: [If maxInFlightCount is less than 1, the function shall throw IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setMqttMaxInFlightCountRejectsZero() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        config.setMqttMaxInFlightCount(0);
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_043: [The function shall return the value of eventDrivenTransport.]
+    // Tests_SRS_DEVICECLIENTCONFIG_21_044: [The function shall set the value of eventDrivenTransport.]
+    @Test
+    public void getAndSetEventDrivenTransportMatch() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        boolean defaultEventDrivenTransport = config.isEventDrivenTransport();
+        config.setEventDrivenTransport(true);
+
+        assertThat(defaultEventDrivenTransport, is(false));
+        assertThat(config.isEventDrivenTransport(), is(true));
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_045: [The function shall return the value of transportWorker.]
+    // Tests_SRS_DEVICECLIENTCONFIG_21_046: [The function shall set the value of transportWorker.]
+    @Test
+    public void getAndSetTransportWorkerMatch(@Mocked final IotHubTransportWorker mockWorker) throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        IotHubTransportWorker defaultTransportWorker = config.getTransportWorker();
+        config.setTransportWorker(mockWorker);
+
+        assertNull(defaultTransportWorker);
+        assertEquals(mockWorker, config.getTransportWorker());
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_047: [The function shall return the value of amqpsMaxQueuedMessages.]
+    // Tests_SRS_DEVICECLIENTCONFIG_21_049: [The function shall set the value of amqpsMaxQueuedMessages.]
+    // Tests_SRS_DEVICECLIENTCONFIG_21_050: [The function shall return the value of amqpsQueueOverflowPolicy.]
+    // Tests_SRS_DEVICECLIENTCONFIG_21_052: [The function shall set the value of amqpsQueueOverflowPolicy.]
+    @Test
+    public void getAndSetAmqpsQueueBoundMatch() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        int defaultMaxQueuedMessages = config.getAmqpsMaxQueuedMessages();
+        QueueOverflowPolicy defaultQueueOverflowPolicy = config.getAmqpsQueueOverflowPolicy();
+        config.setAmqpsMaxQueuedMessages(500);
+        config.setAmqpsQueueOverflowPolicy(QueueOverflowPolicy.BLOCK);
+
+        assertThat(defaultMaxQueuedMessages, is(0));
+        assertThat(defaultQueueOverflowPolicy, is(QueueOverflowPolicy.REJECT));
+        assertThat(config.getAmqpsMaxQueuedMessages(), is(500));
+        assertThat(config.getAmqpsQueueOverflowPolicy(), is(QueueOverflowPolicy.BLOCK));
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_048: [If maxQueuedMessages is negative, the function shall throw IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setAmqpsMaxQueuedMessagesRejectsNegative() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        config.setAmqpsMaxQueuedMessages(-1);
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_068: [The function shall return the value of webSocketMaxFrameSize.]
+    // Tests_SRS_DEVICECLIENTCONFIG_21_070: [The function shall set the value of webSocketMaxFrameSize.]
+    @Test
+    public void setWebSocketMaxFrameSizeSetsFrameSize() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        int defaultMaxFrameSize = config.getWebSocketMaxFrameSize();
+        config.setWebSocketMaxFrameSize(64 * 1024);
+
+        assertThat(defaultMaxFrameSize, is(WebSocketImpl.DEFAULT_MAX_FRAME_SIZE));
+        assertThat(config.getWebSocketMaxFrameSize(), is(64 * 1024));
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_069: [If maxFrameSize is not larger than the largest WebSocket frame header, the function shall throw IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setWebSocketMaxFrameSizeRejectsSizeOfHeader() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        config.setWebSocketMaxFrameSize(WebSocketHeader.MAX_HEADER_LENGTH_MASKED);
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_051: [If queueOverflowPolicy is null, the function shall throw IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setAmqpsQueueOverflowPolicyRejectsNull() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        config.setAmqpsQueueOverflowPolicy(null);
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_065: [The function shall return the value of amqpsQueueBlockTimeoutMillis.]
+    // Tests_SRS_DEVICECLIENTCONFIG_21_067: [The function shall set the value of amqpsQueueBlockTimeoutMillis.]
+    @Test
+    public void getAndSetAmqpsQueueBlockTimeoutMatch() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        long defaultTimeoutMillis = config.getAmqpsQueueBlockTimeoutMillis();
+        config.setAmqpsQueueBlockTimeoutMillis(5000);
+
+        assertThat(defaultTimeoutMillis, is(DeviceClientConfig.DEFAULT_AMQPS_QUEUE_BLOCK_TIMEOUT_MILLIS));
+        assertThat(config.getAmqpsQueueBlockTimeoutMillis(), is(5000L));
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_066: [If timeoutMillis is not positive, the function shall throw IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setAmqpsQueueBlockTimeoutRejectsZero() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        config.setAmqpsQueueBlockTimeoutMillis(0);
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_053: [The function shall return the value of sasTokenRenewalFraction.]
+    // Tests_SRS_DEVICECLIENTCONFIG_21_055: [The function shall set the value of sasTokenRenewalFraction.]
+    @Test
+    public void getAndSetSasTokenRenewalFractionMatch() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        double defaultRenewalFraction = config.getSasTokenRenewalFraction();
+        config.setSasTokenRenewalFraction(0.5);
+
+        assertThat(defaultRenewalFraction, is(DeviceClientConfig.DEFAULT_SAS_TOKEN_RENEWAL_FRACTION));
+        assertThat(config.getSasTokenRenewalFraction(), is(0.5));
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_054: [If renewalFraction is not greater than 0 and less than 1, the function shall throw IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setSasTokenRenewalFractionRejectsOne() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        config.setSasTokenRenewalFraction(1);
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_054: [If renewalFraction is not greater than 0 and less than 1, the function shall throw IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setSasTokenRenewalFractionRejectsZero() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        config.setSasTokenRenewalFraction(0);
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_057: [The function shall return the value of deviceMethodExecutor.]
+    // Tests_SRS_DEVICECLIENTCONFIG_21_058: [The function shall set the value of deviceMethodExecutor.]
+    // Tests_SRS_DEVICECLIENTCONFIG_21_059: [The function shall return the value of deviceMethodTimeoutMillis.]
+    // Tests_SRS_DEVICECLIENTCONFIG_21_061: [The function shall set the value of deviceMethodTimeoutMillis.]
+    @Test
+    public void getAndSetDeviceMethodExecutorAndTimeoutMatch(@Mocked final Executor mockExecutor) throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        Executor defaultExecutor = config.getDeviceMethodExecutor();
+        long defaultTimeout = config.getDeviceMethodTimeoutMillis();
+        config.setDeviceMethodExecutor(mockExecutor);
+        config.setDeviceMethodTimeoutMillis(5000);
+
+        assertNull(defaultExecutor);
+        assertThat(defaultTimeout, is(0L));
+        assertSame(mockExecutor, config.getDeviceMethodExecutor());
+        assertThat(config.getDeviceMethodTimeoutMillis(), is(5000L));
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_060: [If timeoutMillis is negative, the function shall throw IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setDeviceMethodTimeoutMillisRejectsNegative() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        config.setDeviceMethodTimeoutMillis(-1);
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_062: [The function shall return the concurrency limit set for methodName, or 0 if none was set.]
+    // Tests_SRS_DEVICECLIENTCONFIG_21_064: [The function shall set the concurrency limit of methodName.]
+    @Test
+    public void getAndSetDeviceMethodConcurrencyLimitMatch() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        config.setDeviceMethodConcurrencyLimit("reboot", 2);
+
+        assertThat(config.getDeviceMethodConcurrencyLimit("reboot"), is(2));
+        assertThat(config.getDeviceMethodConcurrencyLimit("firmwareCheck"), is(0));
+        assertThat(config.getDeviceMethodConcurrencyLimit(null), is(0));
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_063: [If methodName is null or empty, or limit is less than 1, the function shall throw IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setDeviceMethodConcurrencyLimitRejectsZero() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        config.setDeviceMethodConcurrencyLimit("reboot", 0);
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_063: [If methodName is null or empty, or limit is less than 1, the function shall throw IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setDeviceMethodConcurrencyLimitRejectsEmptyName() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        config.setDeviceMethodConcurrencyLimit("", 1);
+    }
+
+    // Tests_SRS_DEVICECLIENTCONFIG_21_056: [The function shall create the IotHubSasTokenManager for this config on its first call, and return the same one afterwards.]
+    @Test
+    public void getSasTokenManagerReturnsSameManager() throws URISyntaxException
+    {
+        final String iotHubHostname = "test.iothubhostname";
+        final String deviceId = "test-deviceid";
+        final String deviceKey = "test-devicekey";
+        final String sharedAccessToken = null;
+
+        DeviceClientConfig config = new DeviceClientConfig(iotHubHostname, deviceId, deviceKey, sharedAccessToken);
+        IotHubSasTokenManager tokenManager = config.getSasTokenManager();
+
+        assertThat(tokenManager, is(notNullValue()));
+        assertSame(tokenManager, config.getSasTokenManager());
+    }
+
     // Tests_SRS_DEVICECLIENTCONFIG_11_006: [The function shall set the message callback, with its associated context.]
     // Tests_SRS_DEVICECLIENTCONFIG_11_010: [The function shall return the current message callback.]
     @Test
@@ -11,6 +11,7 @@ import com.microsoft.azure.sdk.iot.device.transport.https.HttpsTransport;
 
 import com.microsoft.azure.sdk.iot.device.transport.IotHubReceiveTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubSendTask;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportWorker;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttTransport;
 import mockit.*;
 import org.junit.Test;
@@ -25,10 +26,14 @@ import java.security.cert.CertificateException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
 /** Unit tests for DeviceClient. */
 public class DeviceClientTest
 {
@@ -317,13 +322,15 @@ public class DeviceClientTest
     }
 
     //Tests_SRS_DEVICECLIENT_25_054: [**The function shall create default IotHubSSL context if no certificate input was provided by user and save it by calling setIotHubSSLContext.**]**
+    //Tests_SRS_DEVICECLIENT_21_075: [**The function shall acquire the IotHubSSL context from the IotHubSSLContextCache, so clients trusting the same certificates share it.**]**
     @Test
     public void openCreatesSSLContext(
             @Mocked final ScheduledExecutorService mockScheduler,
             @Mocked final AmqpsTransport mockTransport,
             @Mocked final Message mockMsg,
             @Mocked final IotHubSendTask mockTask,
-            @Mocked final IotHubSSLContext mockIotHubSSLContext)
+            @Mocked final IotHubSSLContext mockIotHubSSLContext,
+            @Mocked final IotHubSSLContextCache mockIotHubSSLContextCache)
             throws URISyntaxException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException, CertificateException
     {
         final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
@@ -333,7 +340,7 @@ public class DeviceClientTest
         new NonStrictExpectations()
         {
             {
-                Deencapsulation.newInstance(IotHubSSLContext.class);
+                Deencapsulation.invoke(IotHubSSLContextCache.class, "acquire");
                 result = mockIotHubSSLContext;
 
             }
@@ -359,7 +366,8 @@ public class DeviceClientTest
             @Mocked final AmqpsTransport mockTransport,
             @Mocked final Message mockMsg,
             @Mocked final IotHubSendTask mockTask,
-            @Mocked final IotHubSSLContext mockIotHubSSLContext)
+            @Mocked final IotHubSSLContext mockIotHubSSLContext,
+            @Mocked final IotHubSSLContextCache mockIotHubSSLContextCache)
             throws URISyntaxException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException, CertificateException
     {
         final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
@@ -369,7 +377,7 @@ public class DeviceClientTest
         new NonStrictExpectations()
         {
             {
-                Deencapsulation.newInstance(IotHubSSLContext.class);
+                Deencapsulation.invoke(IotHubSSLContextCache.class, "acquire");
                 result = new CertificateException();
             }
         };
@@ -394,7 +402,8 @@ public class DeviceClientTest
             @Mocked final AmqpsTransport mockTransport,
             @Mocked final Message mockMsg,
             @Mocked final IotHubSendTask mockTask,
-            @Mocked final IotHubSSLContext mockIotHubSSLContext)
+            @Mocked final IotHubSSLContext mockIotHubSSLContext,
+            @Mocked final IotHubSSLContextCache mockIotHubSSLContextCache)
             throws URISyntaxException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException, CertificateException
     {
         final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
@@ -408,7 +417,7 @@ public class DeviceClientTest
             {
                 mockConfig.getPathToCertificate();
                 result = pathToCert;
-                Deencapsulation.newInstance(IotHubSSLContext.class, pathToCert, true);
+                Deencapsulation.invoke(IotHubSSLContextCache.class, "acquire", pathToCert, true);
                 result = mockIotHubSSLContext;
             }
         };
@@ -432,7 +441,8 @@ public class DeviceClientTest
             @Mocked final AmqpsTransport mockTransport,
             @Mocked final Message mockMsg,
             @Mocked final IotHubSendTask mockTask,
-            @Mocked final IotHubSSLContext mockIotHubSSLContext)
+            @Mocked final IotHubSSLContext mockIotHubSSLContext,
+            @Mocked final IotHubSSLContextCache mockIotHubSSLContextCache)
             throws URISyntaxException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException, CertificateException
     {
         final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
@@ -446,7 +456,7 @@ public class DeviceClientTest
             {
                 mockConfig.getPathToCertificate();
                 result = pathToCert;
-                Deencapsulation.newInstance(IotHubSSLContext.class, pathToCert, true);
+                Deencapsulation.invoke(IotHubSSLContextCache.class, "acquire", pathToCert, true);
                 result = new FileNotFoundException();
             }
         };
@@ -462,7 +472,8 @@ public class DeviceClientTest
             @Mocked final AmqpsTransport mockTransport,
             @Mocked final Message mockMsg,
             @Mocked final IotHubSendTask mockTask,
-            @Mocked final IotHubSSLContext mockIotHubSSLContext)
+            @Mocked final IotHubSSLContext mockIotHubSSLContext,
+            @Mocked final IotHubSSLContextCache mockIotHubSSLContextCache)
             throws URISyntaxException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException, CertificateException
     {
         final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
@@ -476,7 +487,7 @@ public class DeviceClientTest
             {
                 mockConfig.getUserCertificateString();
                 result = userCert;
-                Deencapsulation.newInstance(IotHubSSLContext.class, userCert, false);
+                Deencapsulation.invoke(IotHubSSLContextCache.class, "acquire", userCert, false);
                 result = mockIotHubSSLContext;
             }
         };
@@ -500,7 +511,8 @@ public class DeviceClientTest
             @Mocked final AmqpsTransport mockTransport,
             @Mocked final Message mockMsg,
             @Mocked final IotHubSendTask mockTask,
-            @Mocked final IotHubSSLContext mockIotHubSSLContext)
+            @Mocked final IotHubSSLContext mockIotHubSSLContext,
+            @Mocked final IotHubSSLContextCache mockIotHubSSLContextCache)
             throws URISyntaxException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException, CertificateException
     {
         final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
@@ -514,7 +526,7 @@ public class DeviceClientTest
             {
                 mockConfig.getUserCertificateString();
                 result = userCert;
-                Deencapsulation.newInstance(IotHubSSLContext.class, userCert, false);
+                Deencapsulation.invoke(IotHubSSLContextCache.class, "acquire", userCert, false);
                 result = new IllegalArgumentException();
             }
         };
@@ -585,6 +597,82 @@ public class DeviceClientTest
         };
     }
 
+    // Tests_SRS_DEVICECLIENT_21_061: [If the event driven transport is enabled, the function shall create an IotHubTransportWorker
+    // and save it in the config before opening the transport, so the transport can signal the messages it receives.]
+    // Tests_SRS_DEVICECLIENT_21_062: [If the event driven transport is enabled, the function shall run the IotHubTransportWorker
+    // on a single thread instead of scheduling the send and receive tasks.]
+    @Test
+    public void openWithEventDrivenTransportRunsTransportWorker(
+            @Mocked final ScheduledExecutorService mockScheduler,
+            @Mocked final MqttTransport mockTransport,
+            @Mocked final IotHubTransportWorker mockWorker)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.isEventDrivenTransport();
+                result = true;
+            }
+        };
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+
+        new VerificationsInOrder()
+        {
+            {
+                new IotHubTransportWorker((MqttTransport) any, 10l, 0l);
+                mockConfig.setTransportWorker((IotHubTransportWorker) any);
+                mockTransport.open();
+                Executors.newSingleThreadScheduledExecutor();
+                mockScheduler.execute((IotHubTransportWorker) any);
+            }
+        };
+        new Verifications()
+        {
+            {
+                mockScheduler.scheduleAtFixedRate((Runnable) any, anyLong, anyLong, (TimeUnit) any);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_DEVICECLIENT_21_061: [If the event driven transport is enabled, the function shall create an IotHubTransportWorker
+    // and save it in the config before opening the transport, so the transport can signal the messages it receives.]
+    @Test
+    public void openWithEventDrivenHttpsTransportPollsForMessages(
+            @Mocked final ScheduledExecutorService mockScheduler,
+            @Mocked final HttpsTransport mockTransport,
+            @Mocked final IotHubTransportWorker mockWorker)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.HTTPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.isEventDrivenTransport();
+                result = true;
+            }
+        };
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+
+        new Verifications()
+        {
+            {
+                new IotHubTransportWorker((HttpsTransport) any, 10l, DeviceClient.RECEIVE_PERIOD_MILLIS_HTTPS);
+                times = 1;
+            }
+        };
+    }
+
     // Tests_SRS_DEVICECLIENT_11_036: [If an error occurs in opening the transport, the function shall throw an IOException.]
     @Test(expected = IOException.class)
     public void openThrowsIOExceptionIfTransportOpenFails(
@@ -609,6 +697,50 @@ public class DeviceClientTest
         client.open();
     }
 
+    // Tests_SRS_DEVICECLIENT_21_076: [If the transport fails to open, the function shall release the IotHubSSL context.]
+    @Test
+    public void openReleasesSSLContextIfTransportOpenFails(
+            @Mocked final ScheduledExecutorService mockScheduler,
+            @Mocked final AmqpsTransport mockTransport,
+            @Mocked final IotHubSSLContext mockIotHubSSLContext,
+            @Mocked final IotHubSSLContextCache mockIotHubSSLContextCache)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockTransport.open();
+                result = new IOException();
+                mockConfig.getIotHubSSLContext();
+                result = mockIotHubSSLContext;
+            }
+        };
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        try
+        {
+            client.open();
+            fail("open should have thrown");
+        }
+        catch (IOException e)
+        {
+            // expected
+        }
+
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(IotHubSSLContextCache.class, "release", mockIotHubSSLContext);
+                times = 1;
+                mockConfig.setIotHubSSLContext(null);
+                times = 1;
+            }
+        };
+    }
+
     // Tests_SRS_DEVICECLIENT_11_028: [If the client is already open, the function shall do nothing.]
     @Test
     public void openDoesNothingIfCalledTwice(
@@ -703,6 +835,45 @@ public class DeviceClientTest
         };
     }
 
+    // Tests_SRS_DEVICECLIENT_21_077: [The function shall release the IotHubSSL context, so the cache can drop it once no client uses it.]
+    @Test
+    public void closeReleasesSSLContext(
+            @Mocked final ScheduledExecutorService mockScheduler,
+            @Mocked final HttpsTransport mockTransport,
+            @Mocked final IotHubSendTask mockSendTask,
+            @Mocked final IotHubReceiveTask mockReceiveTask,
+            @Mocked final IotHubSSLContext mockIotHubSSLContext,
+            @Mocked final IotHubSSLContextCache mockIotHubSSLContextCache)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.HTTPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockTransport.isEmpty();
+                result = true;
+                mockConfig.getIotHubSSLContext();
+                result = mockIotHubSSLContext;
+            }
+        };
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+        client.close();
+
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(IotHubSSLContextCache.class, "release", mockIotHubSSLContext);
+                times = 1;
+                mockConfig.setIotHubSSLContext(null);
+                times = 1;
+            }
+        };
+    }
+
     // Tests_SRS_DEVICECLIENT_11_031: [If the client is already closed, the function shall do nothing.]
     @Test
     public void closeDoesNothingOnUnopenedClient(
@@ -797,6 +968,49 @@ public class DeviceClientTest
         };
     }
 
+    // Tests_SRS_DEVICECLIENT_21_064: [If the event driven transport is enabled, the function shall signal the IotHubTransportWorker to send the message.]
+    // Tests_SRS_DEVICECLIENT_21_063: [If the event driven transport is enabled, the function shall stop the IotHubTransportWorker.]
+    @Test
+    public void eventDrivenClientSignalsSendAndStopsTransportWorker(
+            @Mocked final ScheduledExecutorService mockScheduler,
+            @Mocked final AmqpsTransport mockTransport,
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback,
+            @Mocked final IotHubTransportWorker mockWorker)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        final Map<String, Object> context = new HashMap<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.isEventDrivenTransport();
+                result = true;
+                mockTransport.isEmpty();
+                result = true;
+            }
+        };
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+        client.sendEventAsync(mockMsg, mockCallback, context);
+        client.close();
+
+        new VerificationsInOrder()
+        {
+            {
+                mockTransport.addMessage(mockMsg, mockCallback, context);
+                mockWorker.signalSend();
+                mockWorker.stop();
+                mockConfig.setTransportWorker(null);
+                mockScheduler.shutdown();
+                mockTransport.close();
+            }
+        };
+    }
+
     // Tests_SRS_DEVICECLIENT_11_033: [If the message given is null, the function shall throw an IllegalArgumentException.]
     @Test(expected = IllegalArgumentException.class)
     public void sendEventAsyncRejectsNullMessage(
@@ -1634,6 +1848,456 @@ public class DeviceClientTest
         client.setOption("SetSASTokenExpiryTime", "thisIsNotALong");
     }
 
+    //Tests_SRS_DEVICECLIENT_21_058: ["SetMaxInFlightMessages" - number of messages which may be awaiting acknowledgement at the same time.]
+    @Test
+    public void setOptionMaxInFlightMessagesMQTTSucceeds(
+            @Mocked final MqttTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetMaxInFlightMessages", 100);
+
+        new Verifications()
+        {
+            {
+                mockConfig.setMqttMaxInFlightCount(100);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_059: ["SetMaxInFlightMessages" needs to have value type int.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionMaxInFlightMessagesWithStringInsteadOfIntFails(
+            @Mocked final MqttTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetMaxInFlightMessages", "thisIsNotAnInt");
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_060: ["SetMaxInFlightMessages" is available only for MQTT.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionMaxInFlightMessagesWithHTTPFails(
+            @Mocked final HttpsTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.HTTPS;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetMaxInFlightMessages", 100);
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_065: ["SetEventDrivenTransport" - whether the transport queues are processed when work is signaled instead of at a fixed rate.]
+    @Test
+    public void setOptionEventDrivenTransportSucceeds(
+            @Mocked final AmqpsTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetEventDrivenTransport", true);
+
+        new Verifications()
+        {
+            {
+                mockConfig.setEventDrivenTransport(true);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_066: ["SetEventDrivenTransport" needs to have value type boolean.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionEventDrivenTransportWithStringInsteadOfBooleanFails(
+            @Mocked final MqttTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetEventDrivenTransport", "true");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setOptionEventDrivenTransportAfterOpenFails(
+            @Mocked final ScheduledExecutorService mockScheduler,
+            @Mocked final HttpsTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.HTTPS;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+        client.setOption("SetEventDrivenTransport", true);
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_067: ["SetMaxQueuedMessages" - number of messages which may be waiting to be sent at the same time.]
+    //Tests_SRS_DEVICECLIENT_21_070: ["SetQueueOverflowPolicy" - what happens to a new message when the send queue is full.]
+    @Test
+    public void setOptionQueueBoundAmqpsSucceeds(
+            @Mocked final AmqpsTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetMaxQueuedMessages", 100);
+        client.setOption("SetQueueOverflowPolicy", QueueOverflowPolicy.DROP_OLDEST);
+
+        new Verifications()
+        {
+            {
+                mockConfig.setAmqpsMaxQueuedMessages(100);
+                times = 1;
+                mockConfig.setAmqpsQueueOverflowPolicy(QueueOverflowPolicy.DROP_OLDEST);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_068: ["SetMaxQueuedMessages" needs to have value type int.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionMaxQueuedMessagesWithStringInsteadOfIntFails(
+            @Mocked final AmqpsTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetMaxQueuedMessages", "100");
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_069: ["SetMaxQueuedMessages" is available only for AMQP.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionMaxQueuedMessagesMqttFails(
+            @Mocked final MqttTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetMaxQueuedMessages", 100);
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_071: ["SetQueueOverflowPolicy" needs to have value type QueueOverflowPolicy.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionQueueOverflowPolicyWithStringFails(
+            @Mocked final AmqpsTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetQueueOverflowPolicy", "BLOCK");
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_072: ["SetQueueOverflowPolicy" is available only for AMQP.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionQueueOverflowPolicyHttpsFails(
+            @Mocked final HttpsTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.HTTPS;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetQueueOverflowPolicy", QueueOverflowPolicy.BLOCK);
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_087: [The function shall return the number of messages waiting to be sent by the transport.]
+    //Tests_SRS_DEVICECLIENT_21_088: [The function shall return the number of messages in progress in the transport.]
+    //Tests_SRS_DEVICECLIENT_21_089: [If the transport is AMQP, the function shall return its remaining link credit, and -1 otherwise.]
+    @Test
+    public void getMessageCountsAndLinkCreditReadAmqpsTransport(
+            @Mocked final AmqpsTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        new NonStrictExpectations()
+        {
+            {
+                mockTransport.getQueuedMessageCount();
+                result = 3;
+                mockTransport.getInProgressMessageCount();
+                result = 2;
+                mockTransport.getLinkCredit();
+                result = 100;
+            }
+        };
+
+        DeviceClient client = new DeviceClient(connString, IotHubClientProtocol.AMQPS);
+
+        assertEquals(3, client.getQueuedMessageCount());
+        assertEquals(2, client.getInProgressMessageCount());
+        assertEquals(100, client.getLinkCredit());
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_087: [The function shall return the number of messages waiting to be sent by the transport.]
+    //Tests_SRS_DEVICECLIENT_21_088: [The function shall return the number of messages in progress in the transport.]
+    //Tests_SRS_DEVICECLIENT_21_089: [If the transport is AMQP, the function shall return its remaining link credit, and -1 otherwise.]
+    @Test
+    public void getMessageCountsReadMqttTransportWithoutLinkCredit(
+            @Mocked final MqttTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        new NonStrictExpectations()
+        {
+            {
+                mockTransport.getQueuedMessageCount();
+                result = 4;
+                mockTransport.getInProgressMessageCount();
+                result = 1;
+            }
+        };
+
+        DeviceClient client = new DeviceClient(connString, IotHubClientProtocol.MQTT);
+
+        assertEquals(4, client.getQueuedMessageCount());
+        assertEquals(1, client.getInProgressMessageCount());
+        assertEquals(-1, client.getLinkCredit());
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_084: ["SetQueueBlockTimeout" - time a new message waits for room in a full send queue.]
+    @Test
+    public void setOptionQueueBlockTimeoutAmqpsSucceeds(
+            @Mocked final AmqpsTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetQueueBlockTimeout", 5000L);
+
+        new Verifications()
+        {
+            {
+                mockConfig.setAmqpsQueueBlockTimeoutMillis(5000L);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_085: ["SetQueueBlockTimeout" needs to have value type long.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionQueueBlockTimeoutWithIntInsteadOfLongFails(
+            @Mocked final AmqpsTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetQueueBlockTimeout", 5000);
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_086: ["SetQueueBlockTimeout" is available only for AMQP.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionQueueBlockTimeoutMqttFails(
+            @Mocked final MqttTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetQueueBlockTimeout", 5000L);
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_090: ["SetWebSocketMaxFrameSize" - largest WebSocket frame, header included, of the AMQP connection over web sockets.]
+    @Test
+    public void setOptionWebSocketMaxFrameSizeAmqpsWsSucceeds(
+            @Mocked final AmqpsTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS_WS;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetWebSocketMaxFrameSize", 64 * 1024);
+
+        new Verifications()
+        {
+            {
+                mockConfig.setWebSocketMaxFrameSize(64 * 1024);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_091: ["SetWebSocketMaxFrameSize" needs to have value type int.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionWebSocketMaxFrameSizeWithLongInsteadOfIntFails(
+            @Mocked final AmqpsTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS_WS;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetWebSocketMaxFrameSize", 65536L);
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_092: ["SetWebSocketMaxFrameSize" is available only for AMQP.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionWebSocketMaxFrameSizeMqttFails(
+            @Mocked final MqttTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetWebSocketMaxFrameSize", 64 * 1024);
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_073: ["SetSASTokenRenewalFraction" - fraction of the SAS token lifetime after which the token is renewed.]
+    @Test
+    public void setOptionSASTokenRenewalFractionSucceeds(
+            @Mocked final MqttTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+        client.setOption("SetSASTokenRenewalFraction", 0.5);
+
+        new Verifications()
+        {
+            {
+                mockConfig.setSasTokenRenewalFraction(0.5);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_074: ["SetSASTokenRenewalFraction" needs to have value type double.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionSASTokenRenewalFractionWithStringFails(
+            @Mocked final HttpsTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.HTTPS;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetSASTokenRenewalFraction", "0.5");
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_078: ["SetDeviceMethodExecutor" - executor which invokes the device method callbacks.]
+    //Tests_SRS_DEVICECLIENT_21_080: ["SetDeviceMethodTimeout" - time after which a device method without response is answered with a timeout.]
+    //Tests_SRS_DEVICECLIENT_21_082: ["SetDeviceMethodConcurrencyLimit" - number of invocations of a device method which may run at the same time.]
+    @Test
+    public void setOptionDeviceMethodOptionsSucceeds(
+            @Mocked final MqttTransport mockTransport,
+            @Mocked final Executor mockExecutor)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+        client.setOption("SetDeviceMethodExecutor", mockExecutor);
+        client.setOption("SetDeviceMethodTimeout", 5000L);
+        client.setOption("SetDeviceMethodConcurrencyLimit", new Pair<>("reboot", 1));
+
+        new Verifications()
+        {
+            {
+                mockConfig.setDeviceMethodExecutor(mockExecutor);
+                times = 1;
+                mockConfig.setDeviceMethodTimeoutMillis(5000L);
+                times = 1;
+                mockConfig.setDeviceMethodConcurrencyLimit("reboot", 1);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_079: ["SetDeviceMethodExecutor" needs to have value type Executor, or null.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionDeviceMethodExecutorWithStringFails(
+            @Mocked final MqttTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetDeviceMethodExecutor", "executor");
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_081: ["SetDeviceMethodTimeout" needs to have value type long.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionDeviceMethodTimeoutWithIntFails(
+            @Mocked final MqttTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetDeviceMethodTimeout", 5000);
+    }
+
+    //Tests_SRS_DEVICECLIENT_21_083: ["SetDeviceMethodConcurrencyLimit" needs to have value type Pair<String, Integer>.]
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptionDeviceMethodConcurrencyLimitWithWrongPairFails(
+            @Mocked final MqttTransport mockTransport)
+            throws IOException, URISyntaxException
+    {
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.setOption("SetDeviceMethodConcurrencyLimit", new Pair<>("reboot", "1"));
+    }
+
     //Tests_SRS_DEVICECLIENT_25_007: ["SetSASTokenExpiryTime" - time in seconds after which SAS Token expires.]
     @Test
     public void setOptionSASTokenExpiryTimeHTTPSucceeds(
@@ -6,11 +6,26 @@ package tests.unit.com.microsoft.azure.sdk.iot.device.DeviceTwin;
 import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.DeviceTwin.*;
 import mockit.Deencapsulation;
+import mockit.Delegate;
 import mockit.Mocked;
 import mockit.NonStrictExpectations;
 import mockit.Verifications;
+import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceOperations.DEVICE_OPERATION_METHOD_RECEIVE_REQUEST;
 import static com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceOperations.DEVICE_OPERATION_METHOD_SUBSCRIBE_REQUEST;
 import static org.junit.Assert.*;
@@ -32,6 +47,19 @@ public class DeviceMethodTest
     @Mocked
     DeviceMethodCallback mockedDeviceMethodCB;
 
+    @Before
+    public void setUp()
+    {
+        // by default, device methods run on the thread that receives the request
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getDeviceMethodExecutor();
+                result = null;
+            }
+        };
+    }
+
     /*
     **Tests_SRS_DEVICEMETHOD_25_002: [**The constructor shall save the device method messages callback callback, by calling setDeviceMethodMessageCallback, where any further messages for device method shall be delivered.**]**
     **Tests_SRS_DEVICEMETHOD_25_003: [**The constructor shall save all the parameters specified i.e client, config, deviceMethodStatusCallback, deviceMethodStatusCallbackContext.**]**
@@ -397,4 +425,330 @@ public class DeviceMethodTest
 
     }
 
+    private static DeviceMethodMessage createMethodRequest(String methodName, String requestId)
+    {
+        DeviceMethodMessage testMessage = new DeviceMethodMessage("TestPayload".getBytes());
+        testMessage.setDeviceOperationType(DEVICE_OPERATION_METHOD_RECEIVE_REQUEST);
+        testMessage.setMethodName(methodName);
+        testMessage.setRequestId(requestId);
+        return testMessage;
+    }
+
+    /* Executor which keeps the invocations until the test runs them. */
+    private static final class RecordingExecutor implements Executor
+    {
+        private final List<Runnable> invocations = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command)
+        {
+            invocations.add(command);
+        }
+    }
+
+    /*
+    **Tests_SRS_DEVICEMETHOD_21_019: [**If a device method executor is configured, this method shall invoke the user callback on the executor and mark the result as complete.**]**
+     */
+    @Test
+    public void deviceMethodResponseCallbackInvokesUserCallbackOnExecutor() throws IllegalArgumentException
+    {
+        //arrange
+        final RecordingExecutor testExecutor = new RecordingExecutor();
+        final DeviceMethodData testUserData = new DeviceMethodData(200, "done");
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getDeviceMethodExecutor();
+                result = testExecutor;
+                mockedDeviceMethodCB.call(anyString, any, any);
+                result = testUserData;
+            }
+        };
+        DeviceMethod testMethod = new DeviceMethod(mockedClient, mockedConfig, mockedStatusCB, null);
+        testMethod.subscribeToDeviceMethod(mockedDeviceMethodCB, null);
+        MessageCallback testDeviceMethodResponseMessageCallback = Deencapsulation.newInnerInstance("deviceMethodResponseCallback", testMethod);
+
+        //act
+        IotHubMessageResult result = testDeviceMethodResponseMessageCallback.execute(createMethodRequest("testMethod", "1"), null);
+
+        //assert
+        assertEquals(IotHubMessageResult.COMPLETE, result);
+        assertEquals(1, testExecutor.invocations.size());
+        new Verifications()
+        {
+            {
+                mockedDeviceMethodCB.call(anyString, any, any);
+                times = 0;
+            }
+        };
+
+        testExecutor.invocations.get(0).run();
+        new Verifications()
+        {
+            {
+                mockedDeviceMethodCB.call("testMethod", any, any);
+                times = 1;
+                mockedClient.sendEventAsync((Message) any, (IotHubEventCallback) any, null);
+                times = 2;
+            }
+        };
+    }
+
+    /*
+    **Tests_SRS_DEVICEMETHOD_21_017: [**If the number of running invocations of the method reached its concurrency limit, this method shall queue the request, invoke it when a running invocation of the same method ends, and mark the result as complete.**]**
+     */
+    @Test
+    public void deviceMethodResponseCallbackQueuesRequestsOverConcurrencyLimit() throws IllegalArgumentException
+    {
+        //arrange
+        final RecordingExecutor testExecutor = new RecordingExecutor();
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getDeviceMethodExecutor();
+                result = testExecutor;
+                mockedConfig.getDeviceMethodConcurrencyLimit("slowMethod");
+                result = 1;
+                mockedDeviceMethodCB.call(anyString, any, any);
+                result = new DeviceMethodData(200, "done");
+            }
+        };
+        DeviceMethod testMethod = new DeviceMethod(mockedClient, mockedConfig, mockedStatusCB, null);
+        testMethod.subscribeToDeviceMethod(mockedDeviceMethodCB, null);
+        MessageCallback testDeviceMethodResponseMessageCallback = Deencapsulation.newInnerInstance("deviceMethodResponseCallback", testMethod);
+
+        //act
+        IotHubMessageResult result1 = testDeviceMethodResponseMessageCallback.execute(createMethodRequest("slowMethod", "1"), null);
+        IotHubMessageResult result2 = testDeviceMethodResponseMessageCallback.execute(createMethodRequest("slowMethod", "2"), null);
+        IotHubMessageResult result3 = testDeviceMethodResponseMessageCallback.execute(createMethodRequest("otherMethod", "3"), null);
+
+        //assert
+        assertEquals(IotHubMessageResult.COMPLETE, result1);
+        assertEquals(IotHubMessageResult.COMPLETE, result2);
+        assertEquals(IotHubMessageResult.COMPLETE, result3);
+        assertEquals(2, testExecutor.invocations.size());
+
+        testExecutor.invocations.get(0).run();
+        assertEquals(3, testExecutor.invocations.size());
+        testExecutor.invocations.get(2).run();
+        testExecutor.invocations.get(1).run();
+        assertEquals(3, testExecutor.invocations.size());
+        new Verifications()
+        {
+            {
+                mockedDeviceMethodCB.call("slowMethod", any, any);
+                times = 2;
+                mockedDeviceMethodCB.call("otherMethod", any, any);
+                times = 1;
+            }
+        };
+    }
+
+    /*
+    **Tests_SRS_DEVICEMETHOD_21_016: [**If a device method timeout is configured and the user callback has not returned when it expires, this method shall send a response with status METHOD_TIMEOUT_STATUS and the request id of the invoking message, and drop the late response of the user callback.**]**
+     */
+    @Test
+    public void deviceMethodResponseCallbackSendsTimeoutResponse() throws IllegalArgumentException, InterruptedException
+    {
+        //arrange
+        final RecordingExecutor testExecutor = new RecordingExecutor();
+        final List<DeviceMethodMessage> responses = new CopyOnWriteArrayList<>();
+        final CountDownLatch responseSent = new CountDownLatch(1);
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getDeviceMethodExecutor();
+                result = testExecutor;
+                mockedConfig.getDeviceMethodTimeoutMillis();
+                result = 20L;
+                mockedClient.sendEventAsync((Message) any, (IotHubEventCallback) any, null);
+                result = new Delegate()
+                {
+                    void sendEventAsync(Message message, IotHubEventCallback callback, Object callbackContext)
+                    {
+                        DeviceMethodMessage methodMessage = (DeviceMethodMessage) message;
+                        if (methodMessage.getDeviceOperationType() == DeviceOperations.DEVICE_OPERATION_METHOD_SEND_RESPONSE)
+                        {
+                            responses.add(methodMessage);
+                            responseSent.countDown();
+                        }
+                    }
+                };
+            }
+        };
+        DeviceMethod testMethod = new DeviceMethod(mockedClient, mockedConfig, mockedStatusCB, null);
+        testMethod.subscribeToDeviceMethod(mockedDeviceMethodCB, null);
+        MessageCallback testDeviceMethodResponseMessageCallback = Deencapsulation.newInnerInstance("deviceMethodResponseCallback", testMethod);
+
+        //act
+        testDeviceMethodResponseMessageCallback.execute(createMethodRequest("slowMethod", "7"), null);
+
+        //assert
+        assertTrue(responseSent.await(5, TimeUnit.SECONDS));
+        testExecutor.invocations.get(0).run();
+
+        assertEquals(1, responses.size());
+        assertEquals("7", responses.get(0).getRequestId());
+        assertEquals(String.valueOf(DeviceMethod.METHOD_TIMEOUT_STATUS), responses.get(0).getStatus());
+        new Verifications()
+        {
+            {
+                mockedDeviceMethodCB.call(anyString, any, any);
+                times = 0;
+            }
+        };
+    }
+
+    /*
+    **Tests_SRS_DEVICEMETHOD_21_020: [**If the executor rejects the invocation, the user shall be notified on the status callback as ERROR and the result marked as Rejected.**]**
+     */
+    @Test
+    public void deviceMethodResponseCallbackRejectsIfExecutorRejects() throws IllegalArgumentException
+    {
+        //arrange
+        final Executor testExecutor = new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                throw new RejectedExecutionException();
+            }
+        };
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getDeviceMethodExecutor();
+                result = testExecutor;
+            }
+        };
+        DeviceMethod testMethod = new DeviceMethod(mockedClient, mockedConfig, mockedStatusCB, null);
+        testMethod.subscribeToDeviceMethod(mockedDeviceMethodCB, null);
+        MessageCallback testDeviceMethodResponseMessageCallback = Deencapsulation.newInnerInstance("deviceMethodResponseCallback", testMethod);
+
+        //act
+        IotHubMessageResult result = testDeviceMethodResponseMessageCallback.execute(createMethodRequest("testMethod", "1"), null);
+
+        //assert
+        assertEquals(IotHubMessageResult.REJECT, result);
+        new Verifications()
+        {
+            {
+                mockedStatusCB.execute(IotHubStatusCode.ERROR, any);
+                times = 1;
+                mockedDeviceMethodCB.call(anyString, any, any);
+                times = 0;
+            }
+        };
+    }
+
+    /*
+    **Tests_SRS_DEVICEMETHOD_21_017: [**If the number of running invocations of the method reached its concurrency limit, this method shall queue the request, invoke it when a running invocation of the same method ends, and mark the result as complete.**]**
+    **Tests_SRS_DEVICEMETHOD_21_019: [**If a device method executor is configured, this method shall invoke the user callback on the executor and mark the result as complete.**]**
+     */
+    @Test
+    public void concurrentDeviceMethodRequestsAreAllAnsweredWithinConcurrencyLimit() throws IllegalArgumentException, InterruptedException
+    {
+        //arrange
+        final int requesters = 4;
+        final int requestsPerRequester = 25;
+        final int slowMethodLimit = 2;
+        final ExecutorService testExecutor = Executors.newFixedThreadPool(8);
+        final ConcurrentMap<String, AtomicInteger> responsesByRequestId = new ConcurrentHashMap<>();
+        final CountDownLatch allResponses = new CountDownLatch(requesters * requestsPerRequester);
+        final AtomicInteger runningSlowMethods = new AtomicInteger();
+        final AtomicInteger maxRunningSlowMethods = new AtomicInteger();
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getDeviceMethodExecutor();
+                result = testExecutor;
+                mockedConfig.getDeviceMethodConcurrencyLimit("slowMethod");
+                result = slowMethodLimit;
+                mockedClient.sendEventAsync((Message) any, (IotHubEventCallback) any, null);
+                result = new Delegate()
+                {
+                    void sendEventAsync(Message message, IotHubEventCallback callback, Object callbackContext)
+                    {
+                        DeviceMethodMessage methodMessage = (DeviceMethodMessage) message;
+                        if (methodMessage.getDeviceOperationType() == DeviceOperations.DEVICE_OPERATION_METHOD_SEND_RESPONSE)
+                        {
+                            responsesByRequestId.putIfAbsent(methodMessage.getRequestId(), new AtomicInteger());
+                            responsesByRequestId.get(methodMessage.getRequestId()).incrementAndGet();
+                            allResponses.countDown();
+                        }
+                    }
+                };
+            }
+        };
+        DeviceMethodCallback testDeviceMethodCallback = new DeviceMethodCallback()
+        {
+            @Override
+            public DeviceMethodData call(String methodName, Object methodData, Object context)
+            {
+                if ("slowMethod".equals(methodName))
+                {
+                    int running = runningSlowMethods.incrementAndGet();
+                    int max;
+                    while ((max = maxRunningSlowMethods.get()) < running && !maxRunningSlowMethods.compareAndSet(max, running))
+                    {
+                        // retry
+                    }
+                    try
+                    {
+                        Thread.sleep(2);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    runningSlowMethods.decrementAndGet();
+                }
+                return new DeviceMethodData(200, methodName);
+            }
+        };
+        DeviceMethod testMethod = new DeviceMethod(mockedClient, mockedConfig, mockedStatusCB, null);
+        testMethod.subscribeToDeviceMethod(testDeviceMethodCallback, null);
+        final MessageCallback testDeviceMethodResponseMessageCallback = Deencapsulation.newInnerInstance("deviceMethodResponseCallback", testMethod);
+
+        //act
+        Thread[] requesterThreads = new Thread[requesters];
+        for (int i = 0; i < requesters; i++)
+        {
+            final int requester = i;
+            requesterThreads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < requestsPerRequester; j++)
+                    {
+                        String methodName = (j % 2 == 0) ? "slowMethod" : "fastMethod";
+                        testDeviceMethodResponseMessageCallback.execute(createMethodRequest(methodName, requester + "-" + j), null);
+                    }
+                }
+            });
+            requesterThreads[i].start();
+        }
+        for (Thread requesterThread : requesterThreads)
+        {
+            requesterThread.join();
+        }
+
+        //assert
+        try
+        {
+            assertTrue(allResponses.await(30, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            testExecutor.shutdownNow();
+        }
+        assertEquals(requesters * requestsPerRequester, responsesByRequestId.size());
+        for (AtomicInteger responses : responsesByRequestId.values())
+        {
+            assertEquals(1, responses.get());
+        }
+        assertTrue(maxRunningSlowMethods.get() <= slowMethodLimit);
+    }
+
 }
@@ -411,4 +411,18 @@ public class IotHubCertificateManagerTests
         Collection<Certificate> testCerts = Deencapsulation.invoke(testCertManager, "getCertificateCollection");
     }
 
+    //Tests_SRS_IOTHUBCERTIFICATEMANAGER_21_012: [*This method shall return the valid certificate text.**]**
+    @Test
+    public void getValidCertReturnsCert() throws IOException
+    {
+        //arrange
+        IotHubCertificateManager testCertManager = Deencapsulation.newInstance(IotHubCertificateManager.class);
+        Deencapsulation.invoke(testCertManager, "setValidCert", "TestCertString");
+
+        //act
+        String testValidCert = Deencapsulation.invoke(testCertManager, "getValidCert");
+
+        //assert
+        assertEquals("TestCertString", testValidCert);
+    }
 }
@@ -0,0 +1,127 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device;
+
+import com.microsoft.azure.sdk.iot.device.IotHubSSLContext;
+import com.microsoft.azure.sdk.iot.device.IotHubSSLContextCache;
+import mockit.Deencapsulation;
+import mockit.Mocked;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/** Unit tests for IotHubSSLContextCache. */
+public class IotHubSSLContextCacheTest
+{
+    @Mocked
+    private IotHubSSLContext mockedIotHubSSLContext;
+
+    private static IotHubSSLContext acquire(String cert)
+    {
+        return Deencapsulation.invoke(IotHubSSLContextCache.class, "acquire", cert, false);
+    }
+
+    private static void release(IotHubSSLContext iotHubSSLContext)
+    {
+        Deencapsulation.invoke(IotHubSSLContextCache.class, "release", iotHubSSLContext);
+    }
+
+    // Tests_SRS_IOTHUBSSLCONTEXTCACHE_21_001: [The function shall acquire the SSL context for the default certificates.]
+    // Tests_SRS_IOTHUBSSLCONTEXTCACHE_21_006: [The function shall count one more reference to the context and return it.]
+    @Test
+    public void acquireDefaultReturnsSharedContext()
+    {
+        //act
+        IotHubSSLContext first = Deencapsulation.invoke(IotHubSSLContextCache.class, "acquire");
+        IotHubSSLContext second = Deencapsulation.invoke(IotHubSSLContextCache.class, "acquire");
+
+        //assert
+        assertNotNull(first);
+        assertSame(first, second);
+        release(first);
+        release(second);
+    }
+
+    // Tests_SRS_IOTHUBSSLCONTEXTCACHE_21_003: [The function shall read the certificates from the path if isPath is true, or use the cert itself otherwise.]
+    // Tests_SRS_IOTHUBSSLCONTEXTCACHE_21_004: [The function shall key the cache by the text of the trusted certificates.]
+    // Tests_SRS_IOTHUBSSLCONTEXTCACHE_21_005: [If there is no context for the certificates, the function shall create one and cache it.]
+    @Test
+    public void acquireSharesContextPerCertificates()
+    {
+        //act
+        IotHubSSLContext first = acquire("acquireSharesContextPerCertificates-1");
+        IotHubSSLContext sameCerts = acquire("acquireSharesContextPerCertificates-1");
+        IotHubSSLContext otherCerts = acquire("acquireSharesContextPerCertificates-2");
+
+        //assert
+        assertSame(first, sameCerts);
+        assertNotSame(first, otherCerts);
+        release(first);
+        release(sameCerts);
+        release(otherCerts);
+    }
+
+    // Tests_SRS_IOTHUBSSLCONTEXTCACHE_21_002: [If the cert is null, the function shall throw IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void acquireThrowsOnNullCert()
+    {
+        //act
+        Deencapsulation.invoke(IotHubSSLContextCache.class, "acquire", String.class, false);
+    }
+
+    // Tests_SRS_IOTHUBSSLCONTEXTCACHE_21_008: [The function shall remove the context from the cache when its last reference is released.]
+    @Test
+    public void releaseKeepsContextUntilLastReference()
+    {
+        //arrange
+        IotHubSSLContext first = acquire("releaseKeepsContextUntilLastReference");
+        IotHubSSLContext second = acquire("releaseKeepsContextUntilLastReference");
+
+        //act
+        release(first);
+        IotHubSSLContext third = acquire("releaseKeepsContextUntilLastReference");
+
+        //assert
+        assertSame(first, third);
+        release(second);
+        release(third);
+    }
+
+    // Tests_SRS_IOTHUBSSLCONTEXTCACHE_21_008: [The function shall remove the context from the cache when its last reference is released.]
+    @Test
+    public void releaseLastReferenceDropsContext()
+    {
+        //arrange
+        IotHubSSLContext first = acquire("releaseLastReferenceDropsContext");
+
+        //act
+        release(first);
+        IotHubSSLContext second = acquire("releaseLastReferenceDropsContext");
+
+        //assert
+        assertNotSame(first, second);
+        release(second);
+    }
+
+    // Tests_SRS_IOTHUBSSLCONTEXTCACHE_21_007: [If the context is null, the function shall do nothing.]
+    // Tests_SRS_IOTHUBSSLCONTEXTCACHE_21_009: [If the context is not in the cache, the function shall do nothing.]
+    @Test
+    public void releaseIgnoresNullAndUnknownContexts()
+    {
+        //arrange
+        IotHubSSLContext cached = acquire("releaseIgnoresNullAndUnknownContexts");
+
+        //act
+        Deencapsulation.invoke(IotHubSSLContextCache.class, "release", IotHubSSLContext.class);
+        release(mockedIotHubSSLContext);
+        IotHubSSLContext second = acquire("releaseIgnoresNullAndUnknownContexts");
+
+        //assert
+        assertSame(cached, second);
+        release(cached);
+        release(second);
+    }
+}
@@ -162,6 +162,31 @@ public class IotHubSSLContextTest
 
     }
 
+    //Tests_SRS_IOTHUBSSLCONTEXT_21_019: [**The constructor shall create the SSL context with the certificates of the given certificate manager.**]**
+    @Test
+    public void constructorWithCertManagerCreatesSSLContext() throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException, CertificateException
+    {
+        //arrange
+        testCollection.add(mockedCertificate);
+        generateSSLContextExpectations();
+
+        //act
+        IotHubSSLContext testContext = Deencapsulation.newInstance(IotHubSSLContext.class, new Class[] {IotHubCertificateManager.class}, mockedDefaultCert);
+
+        //assert
+        generateSSLContextVerifications();
+        assertNotNull(Deencapsulation.invoke(testContext, "getIotHubSSlContext"));
+        testCollection.remove(mockedCertificate);
+    }
+
+    //Tests_SRS_IOTHUBSSLCONTEXT_21_018: [**The constructor shall throw IllegalArgumentException if the certificate manager is null.**]**
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorWithCertManagerThrowsOnNull() throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException, CertificateException
+    {
+        //act
+        Deencapsulation.newInstance(IotHubSSLContext.class, new Class[] {IotHubCertificateManager.class}, (Object) null);
+    }
+
     //Tests_SRS_IOTHUBSSLCONTEXT_25_008: [**The constructor shall throw IllegalArgumentException if any of the parameters are null.**]**
     @Test (expected = IllegalArgumentException.class)
     public void constructorWithParamsThrowsOnNullCert() throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException, CertificateException
@@ -99,6 +99,28 @@ public class MessagePropertyTest
         new MessageProperty(name, invalidValue);
     }
 
+    // Tests_SRS_MESSAGEPROPERTY_11_003: [If the value contains a character that is not in US-ASCII, the function shall throw an IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorRejectsFirstCharacterAfterUsAscii()
+    {
+        final String name = "test-name";
+        final String invalidValue = "test-value\u0080";
+
+        new MessageProperty(name, invalidValue);
+    }
+
+    // Tests_SRS_MESSAGEPROPERTY_11_001: [The constructor shall save the property name and value.]
+    @Test
+    public void constructorAcceptsWholeUsAsciiRange()
+    {
+        final String name = "test-name";
+        final String value = "\u0000test-value\u007F";
+
+        MessageProperty property = new MessageProperty(name, value);
+
+        assertThat(property.getValue(), is(value));
+    }
+
     // Tests_SRS_MESSAGEPROPERTY_11_006: [The function shall return true if and only if the property has the given name, where the names are compared in a case-insensitive manner.]
     @Test
     public void hasNameMatchesNameInCaseInsensitiveManner()
@@ -5,6 +5,7 @@ package tests.unit.com.microsoft.azure.sdk.iot.device;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 import com.microsoft.azure.sdk.iot.device.Message;
@@ -14,8 +15,14 @@ import mockit.NonStrictExpectations;
 import mockit.Verifications;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 
 /** Unit tests for Message. */
 public class MessageTest
@@ -260,4 +267,140 @@ public class MessageTest
         boolean expectedResult = false;
         assertThat(expectedResult, is(actualResult));
     }
-}
\ No newline at end of file
+
+    // Tests_SRS_MESSAGE_21_037: [The function shall return a read-only buffer over the message body, without copying it.]
+    @Test
+    public void getBodyBufferReturnsReadOnlyViewOfBody()
+    {
+        final byte[] body = { 0x61, 0x62, 0x63 };
+
+        Message msg = new Message(body);
+        ByteBuffer testBody = msg.getBodyBuffer();
+
+        assertThat(testBody.isReadOnly(), is(true));
+        assertThat(testBody, is(ByteBuffer.wrap(body)));
+        body[0] = 0x7a;
+        assertThat(testBody.get(0), is((byte) 0x7a));
+    }
+
+    // Tests_SRS_MESSAGE_21_037: [The function shall return a read-only buffer over the message body, without copying it.]
+    @Test(expected = ReadOnlyBufferException.class)
+    public void getBodyBufferCannotChangeBody()
+    {
+        final byte[] body = { 0x61, 0x62, 0x63 };
+
+        Message msg = new Message(body);
+
+        msg.getBodyBuffer().put(0, (byte) 0x7a);
+    }
+
+    // Tests_SRS_MESSAGE_21_038: [If the message has no body, the function shall return null.]
+    @Test
+    public void getBodyBufferReturnsNullIfNoBody()
+    {
+        Message msg = new Message();
+
+        assertThat(msg.getBodyBuffer(), is(nullValue()));
+    }
+
+    // Tests_SRS_MESSAGE_21_039: [The message shall be created with a unique generated messageId, which the getter returns until another one is set.]
+    // Tests_SRS_MESSAGE_21_040: [The message shall be created with a unique generated correlationId, which the getter returns until another one is set.]
+    @Test
+    public void generatedIdsAreUniqueAndStable()
+    {
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 1000; i++)
+        {
+            Message msg = new Message(new byte[] { 0x61 });
+            String messageId = msg.getMessageId();
+            String correlationId = msg.getCorrelationId();
+
+            assertThat(UUID.fromString(messageId).toString(), is(messageId));
+            assertThat(msg.getMessageId(), is(messageId));
+            assertThat(msg.getCorrelationId(), is(correlationId));
+            assertThat(ids.add(messageId), is(true));
+            assertThat(ids.add(correlationId), is(true));
+        }
+    }
+
+    // Tests_SRS_MESSAGE_21_039: [The message shall be created with a unique generated messageId, which the getter returns until another one is set.]
+    // Tests_SRS_MESSAGE_21_040: [The message shall be created with a unique generated correlationId, which the getter returns until another one is set.]
+    @Test
+    public void setIdsOverrideGeneratedIds()
+    {
+        Message msg = new Message(new byte[] { 0x61 });
+        msg.setMessageId("test-message-id");
+        msg.setCorrelationId(null);
+
+        assertThat(msg.getMessageId(), is("test-message-id"));
+        assertThat(msg.getCorrelationId(), is(nullValue()));
+    }
+
+    // Tests_SRS_MESSAGE_21_041: [The function shall return a read-only view of the message properties, without copying them.]
+    @Test
+    public void getPropertyListReturnsLiveReadOnlyView()
+    {
+        Message msg = new Message(new byte[] { 0x61 });
+        List<MessageProperty> testProperties = msg.getPropertyList();
+        assertThat(testProperties.isEmpty(), is(true));
+
+        msg.setProperty("name1", "value1");
+        msg.setProperty("name2", "value2");
+
+        assertThat(testProperties.size(), is(2));
+        assertThat(testProperties.get(0).getName(), is("name1"));
+        assertThat(testProperties.get(1).getValue(), is("value2"));
+        assertThat(msg.getPropertyList(), is(testProperties));
+    }
+
+    // Tests_SRS_MESSAGE_21_041: [The function shall return a read-only view of the message properties, without copying them.]
+    @Test(expected = UnsupportedOperationException.class)
+    public void getPropertyListCannotChangeProperties()
+    {
+        Message msg = new Message(new byte[] { 0x61 });
+        msg.setProperty("name1", "value1");
+
+        msg.getPropertyList().remove(0);
+    }
+
+    // Tests_SRS_MESSAGE_21_042: [If the property is already set, the function shall replace its value and keep its position.]
+    @Test
+    public void setPropertyReplacesValueInPlace()
+    {
+        Message msg = new Message(new byte[] { 0x61 });
+        msg.setProperty("name1", "value1");
+        msg.setProperty("name2", "value2");
+
+        msg.setProperty("NAME1", "value3");
+
+        List<MessageProperty> testProperties = msg.getPropertyList();
+        assertThat(testProperties.size(), is(2));
+        assertThat(testProperties.get(0).getValue(), is("value3"));
+        assertThat(msg.getProperty("name1"), is("value3"));
+    }
+
+    // Tests_SRS_MESSAGE_11_032: [The function shall return the value associated with the message property name, where the name can be either the HTTPS or AMQPS property name.]
+    // Tests_SRS_MESSAGE_21_042: [If the property is already set, the function shall replace its value and keep its position.]
+    @Test
+    public void setPropertyAndGetPropertyMatchWithManyProperties()
+    {
+        Message msg = new Message(new byte[] { 0x61 });
+        for (int i = 0; i < 30; i++)
+        {
+            msg.setProperty("Name" + i, "value" + i);
+        }
+        msg.setProperty("name3", "newValue3");
+        msg.setProperty("NAME29", "newValue29");
+
+        assertThat(msg.getPropertyList().size(), is(30));
+        for (int i = 0; i < 30; i++)
+        {
+            String expectedValue = (i == 3 || i == 29) ? "newValue" + i : "value" + i;
+            assertThat(msg.getProperty("name" + i), is(expectedValue));
+            assertThat(msg.getProperty("NAME" + i), is(expectedValue));
+            assertThat(msg.getPropertyList().get(i).getValue(), is(expectedValue));
+        }
+        assertThat(msg.getProperty("name30"), is(nullValue()));
+        assertThat(msg.getProperty(null), is(nullValue()));
+    }
+}
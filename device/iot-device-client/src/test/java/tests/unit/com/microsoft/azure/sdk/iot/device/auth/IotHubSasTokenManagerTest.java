@@ -0,0 +1,185 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.auth;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenManager;
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenRenewalListener;
+import mockit.Deencapsulation;
+import mockit.Mocked;
+import mockit.Verifications;
+import org.junit.Test;
+
+import java.net.URISyntaxException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for IotHubSasTokenManager. */
+public class IotHubSasTokenManagerTest
+{
+    private static final String IOT_HUB_HOSTNAME = "sample-iothub-hostname.net";
+    private static final String DEVICE_ID = "sample-device-ID";
+    private static final String DEVICE_KEY = "MTIzNDU2Nzg5MGFiY2RlZmdoaWprbG1ub3BxcnN0dXY=";
+    private static final String SHARED_ACCESS_TOKEN = "SharedAccessSignature sr=sample-iothub-hostname.net%2fdevices%2fsample-device-ID&sig=S3%2flPidfBF48B7%2fOFAxMOYH8rpOneq68nu61D%2fBP6fo%3d&se=1469813873";
+
+    // Tests_SRS_IOTHUBSASTOKENMANAGER_21_001: [The constructor shall throw IllegalArgumentException if the config is null.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullConfig()
+    {
+        new IotHubSasTokenManager(null);
+    }
+
+    // Tests_SRS_IOTHUBSASTOKENMANAGER_21_003: [If there is no current token, or the token was signed with the device key
+    // and it is due for renewal or the token lifetime in the config changed, the function shall create a new IotHubSasToken
+    // valid for the token lifetime in the config.]
+    // Tests_SRS_IOTHUBSASTOKENMANAGER_21_004: [The function shall return the current token.]
+    @Test
+    public void getSasTokenReusesCurrentToken() throws URISyntaxException
+    {
+        IotHubSasTokenManager tokenManager = new IotHubSasTokenManager(new DeviceClientConfig(IOT_HUB_HOSTNAME, DEVICE_ID, DEVICE_KEY, null));
+
+        String token1 = tokenManager.getSasToken();
+        String token2 = tokenManager.getSasToken();
+
+        assertTrue(token1.startsWith("SharedAccessSignature "));
+        assertSame(token1, token2);
+    }
+
+    // Tests_SRS_IOTHUBSASTOKENMANAGER_21_003: [If there is no current token, or the token was signed with the device key
+    // and it is due for renewal or the token lifetime in the config changed, the function shall create a new IotHubSasToken
+    // valid for the token lifetime in the config.]
+    @Test
+    public void getSasTokenRenewsTokenDueForRenewal() throws URISyntaxException
+    {
+        IotHubSasTokenManager tokenManager = new IotHubSasTokenManager(new DeviceClientConfig(IOT_HUB_HOSTNAME, DEVICE_ID, DEVICE_KEY, null));
+        String token1 = tokenManager.getSasToken();
+        Deencapsulation.setField(tokenManager, "renewalTimeMillis", 0L);
+
+        String token2 = tokenManager.getSasToken();
+
+        assertNotSame(token1, token2);
+        assertSame(token2, tokenManager.getSasToken());
+    }
+
+    // Tests_SRS_IOTHUBSASTOKENMANAGER_21_003: [If there is no current token, or the token was signed with the device key
+    // and it is due for renewal or the token lifetime in the config changed, the function shall create a new IotHubSasToken
+    // valid for the token lifetime in the config.]
+    @Test
+    public void getSasTokenRenewsTokenWhenLifetimeChanged() throws URISyntaxException
+    {
+        DeviceClientConfig config = new DeviceClientConfig(IOT_HUB_HOSTNAME, DEVICE_ID, DEVICE_KEY, null);
+        IotHubSasTokenManager tokenManager = new IotHubSasTokenManager(config);
+        String token1 = tokenManager.getSasToken();
+
+        config.setTokenValidSecs(config.getTokenValidSecs() + 1000);
+        String token2 = tokenManager.getSasToken();
+
+        assertNotEquals(token1, token2);
+    }
+
+    // Tests_SRS_IOTHUBSASTOKENMANAGER_21_003: [If there is no current token, or the token was signed with the device key
+    // and it is due for renewal or the token lifetime in the config changed, the function shall create a new IotHubSasToken
+    // valid for the token lifetime in the config.]
+    @Test
+    public void getSasTokenNeverRenewsSharedAccessToken() throws URISyntaxException
+    {
+        IotHubSasTokenManager tokenManager = new IotHubSasTokenManager(new DeviceClientConfig(IOT_HUB_HOSTNAME, DEVICE_ID, null, SHARED_ACCESS_TOKEN));
+        String token1 = tokenManager.getSasToken();
+        Deencapsulation.setField(tokenManager, "renewalTimeMillis", 0L);
+
+        String token2 = tokenManager.getSasToken();
+
+        assertEquals(SHARED_ACCESS_TOKEN, token1);
+        assertSame(token1, token2);
+    }
+
+    // Tests_SRS_IOTHUBSASTOKENMANAGER_21_005: [The function shall throw IllegalArgumentException if the listener is null.]
+    @Test (expected = IllegalArgumentException.class)
+    public void addRenewalListenerThrowsOnNullListener() throws URISyntaxException
+    {
+        IotHubSasTokenManager tokenManager = new IotHubSasTokenManager(new DeviceClientConfig(IOT_HUB_HOSTNAME, DEVICE_ID, DEVICE_KEY, null));
+
+        tokenManager.addRenewalListener(null);
+    }
+
+    // Tests_SRS_IOTHUBSASTOKENMANAGER_21_006: [The function shall add the listener and, if the token was signed with the
+    // device key, schedule the renewal of the current token.]
+    // Tests_SRS_IOTHUBSASTOKENMANAGER_21_007: [The function shall remove the listener and, if there is no listener left,
+    // cancel the scheduled renewal.]
+    // Tests_SRS_IOTHUBSASTOKENMANAGER_21_008: [When the renewal is due, the manager shall create a new token and
+    // schedule its renewal.]
+    // Tests_SRS_IOTHUBSASTOKENMANAGER_21_009: [The manager shall tell every listener about the new token. A listener
+    // which throws shall not keep the others from being told, and its exception shall be logged.]
+    @Test
+    public void renewalListenersAreToldAboutRenewedToken(@Mocked final CustomLogger mockLogger) throws URISyntaxException, InterruptedException
+    {
+        final IllegalStateException listenerException = new IllegalStateException();
+        DeviceClientConfig config = new DeviceClientConfig(IOT_HUB_HOSTNAME, DEVICE_ID, DEVICE_KEY, null);
+        config.setTokenValidSecs(1);
+        IotHubSasTokenManager tokenManager = new IotHubSasTokenManager(config);
+        final String initialToken = tokenManager.getSasToken();
+        final String[] renewedToken = { null };
+        final CountDownLatch renewed = new CountDownLatch(1);
+        IotHubSasTokenRenewalListener throwingListener = new IotHubSasTokenRenewalListener()
+        {
+            @Override
+            public void onSasTokenRenewed(String sasToken)
+            {
+                throw listenerException;
+            }
+        };
+        IotHubSasTokenRenewalListener listener = new IotHubSasTokenRenewalListener()
+        {
+            @Override
+            public void onSasTokenRenewed(String sasToken)
+            {
+                renewedToken[0] = sasToken;
+                renewed.countDown();
+            }
+        };
+
+        tokenManager.addRenewalListener(throwingListener);
+        tokenManager.addRenewalListener(listener);
+
+        assertTrue(renewed.await(10, TimeUnit.SECONDS));
+        assertNotSame(initialToken, renewedToken[0]);
+
+        tokenManager.removeRenewalListener(throwingListener);
+        tokenManager.removeRenewalListener(listener);
+        assertNull(Deencapsulation.getField(tokenManager, "pendingRenewal"));
+        new Verifications()
+        {
+            {
+                mockLogger.LogError(anyString, listenerException, (Object[]) any);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_IOTHUBSASTOKENMANAGER_21_006: [The function shall add the listener and, if the token was signed with the
+    // device key, schedule the renewal of the current token.]
+    @Test
+    public void addRenewalListenerDoesNotScheduleRenewalOfSharedAccessToken() throws URISyntaxException
+    {
+        IotHubSasTokenManager tokenManager = new IotHubSasTokenManager(new DeviceClientConfig(IOT_HUB_HOSTNAME, DEVICE_ID, null, SHARED_ACCESS_TOKEN));
+
+        tokenManager.addRenewalListener(new IotHubSasTokenRenewalListener()
+        {
+            @Override
+            public void onSasTokenRenewed(String sasToken)
+            {
+            }
+        });
+
+        assertNull(Deencapsulation.getField(tokenManager, "pendingRenewal"));
+    }
+}
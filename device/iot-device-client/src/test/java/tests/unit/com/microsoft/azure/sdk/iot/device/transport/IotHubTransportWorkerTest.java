@@ -0,0 +1,199 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportWorker;
+import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttTransport;
+import mockit.Delegate;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/** Unit tests for IotHubTransportWorker. */
+public class IotHubTransportWorkerTest
+{
+    @Mocked
+    MqttTransport mockTransport;
+
+    /* Makes the worker stop once it has finished its current round. */
+    private void stopAfterFirstRound(final IotHubTransportWorker worker)
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockTransport.isEmpty();
+                result = new Delegate()
+                {
+                    boolean isEmpty()
+                    {
+                        worker.stop();
+                        return true;
+                    }
+                };
+            }
+        };
+    }
+
+    // Tests_SRS_IOTHUBTRANSPORTWORKER_21_001: [If the transport is null, the constructor shall throw an IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullTransport()
+    {
+        new IotHubTransportWorker(null, 10, 0);
+    }
+
+    // Tests_SRS_IOTHUBTRANSPORTWORKER_21_002: [If sendRetryPeriodMillis is not positive or receivePeriodMillis is negative, the constructor shall throw an IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsOnZeroSendRetryPeriod()
+    {
+        new IotHubTransportWorker(mockTransport, 0, 0);
+    }
+
+    // Tests_SRS_IOTHUBTRANSPORTWORKER_21_002: [If sendRetryPeriodMillis is not positive or receivePeriodMillis is negative, the constructor shall throw an IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNegativeReceivePeriod()
+    {
+        new IotHubTransportWorker(mockTransport, 10, -1);
+    }
+
+    // Tests_SRS_IOTHUBTRANSPORTWORKER_21_003: [The constructor shall save the transport and create the send and receive tasks for it.]
+    // Tests_SRS_IOTHUBTRANSPORTWORKER_21_005: [The function shall wake up the worker to run the receive task once for each signal.]
+    // Tests_SRS_IOTHUBTRANSPORTWORKER_21_010: [On every wake up, the function shall run the send task, and then the receive task once for each pending receive.]
+    @Test
+    public void runSendsOnceAndHandlesEachSignaledMessage() throws IOException
+    {
+        final IotHubTransportWorker worker = new IotHubTransportWorker(mockTransport, 10, 0);
+        stopAfterFirstRound(worker);
+        worker.signalReceive();
+        worker.signalReceive();
+        worker.signalReceive();
+
+        worker.run();
+
+        new Verifications()
+        {
+            {
+                mockTransport.sendMessages();
+                times = 1;
+                mockTransport.invokeCallbacks();
+                times = 1;
+                mockTransport.handleMessage();
+                times = 3;
+            }
+        };
+    }
+
+    // Tests_SRS_IOTHUBTRANSPORTWORKER_21_009: [If the receive period is positive, the function shall also run the receive task once every receive period.]
+    @Test
+    public void runPollsForMessagesIfReceivePeriodIsPositive() throws IOException
+    {
+        final IotHubTransportWorker worker = new IotHubTransportWorker(mockTransport, 10, 60000);
+        stopAfterFirstRound(worker);
+
+        worker.run();
+
+        new Verifications()
+        {
+            {
+                mockTransport.handleMessage();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_IOTHUBTRANSPORTWORKER_21_006: [The function shall wake up the worker and make run return.]
+    // Tests_SRS_IOTHUBTRANSPORTWORKER_21_008: [If the worker was stopped, the function shall return.]
+    @Test
+    public void runReturnsWithoutProcessingIfStopped() throws IOException
+    {
+        IotHubTransportWorker worker = new IotHubTransportWorker(mockTransport, 10, 0);
+        worker.stop();
+
+        worker.run();
+
+        new Verifications()
+        {
+            {
+                mockTransport.sendMessages();
+                times = 0;
+                mockTransport.handleMessage();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_IOTHUBTRANSPORTWORKER_21_004: [The function shall wake up the worker to run the send task.]
+    // Tests_SRS_IOTHUBTRANSPORTWORKER_21_007: [If no work was signaled, the function shall wait until it is signaled, until the
+    // send retry period elapses while the transport is not empty, or until the next receive poll is due.]
+    @Test
+    public void runWaitsWhileIdleAndSendsWhenSignaled() throws IOException, InterruptedException
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockTransport.isEmpty();
+                result = true;
+            }
+        };
+        IotHubTransportWorker worker = new IotHubTransportWorker(mockTransport, 10, 0);
+        Thread workerThread = new Thread(worker);
+
+        workerThread.start();
+        Thread.sleep(200);
+
+        new Verifications()
+        {
+            {
+                mockTransport.sendMessages();
+                times = 1;
+            }
+        };
+
+        worker.signalSend();
+        Thread.sleep(200);
+        worker.stop();
+        workerThread.join(1000);
+
+        new Verifications()
+        {
+            {
+                mockTransport.sendMessages();
+                times = 2;
+                mockTransport.handleMessage();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_IOTHUBTRANSPORTWORKER_21_007: [If no work was signaled, the function shall wait until it is signaled, until the
+    // send retry period elapses while the transport is not empty, or until the next receive poll is due.]
+    @Test
+    public void runRetriesSendWhileTransportIsNotEmpty() throws IOException, InterruptedException
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockTransport.isEmpty();
+                result = false;
+            }
+        };
+        IotHubTransportWorker worker = new IotHubTransportWorker(mockTransport, 10, 0);
+        Thread workerThread = new Thread(worker);
+
+        workerThread.start();
+        Thread.sleep(200);
+        worker.stop();
+        workerThread.join(1000);
+
+        new Verifications()
+        {
+            {
+                mockTransport.sendMessages();
+                minTimes = 3;
+            }
+        };
+    }
+}
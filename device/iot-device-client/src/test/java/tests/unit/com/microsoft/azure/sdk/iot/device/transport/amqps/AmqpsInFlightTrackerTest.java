@@ -0,0 +1,147 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.device.transport.IotHubOutboundPacket;
+import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsInFlightTracker;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for AmqpsInFlightTracker. */
+public class AmqpsInFlightTrackerTest
+{
+    private static IotHubOutboundPacket packet(long id)
+    {
+        return new IotHubOutboundPacket(null, null, id);
+    }
+
+    // Tests_SRS_AMQPSINFLIGHTTRACKER_21_001: [If timeoutMillis is not positive, the constructor shall throw an IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsOnZeroTimeout()
+    {
+        new AmqpsInFlightTracker(0);
+    }
+
+    // Tests_SRS_AMQPSINFLIGHTTRACKER_21_003: [If the delivery tag is negative or the packet is null, the function shall throw an IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void putThrowsOnNegativeTag()
+    {
+        new AmqpsInFlightTracker(1000).put(-1, packet(0), 0);
+    }
+
+    // Tests_SRS_AMQPSINFLIGHTTRACKER_21_003: [If the delivery tag is negative or the packet is null, the function shall throw an IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void putThrowsOnNullPacket()
+    {
+        new AmqpsInFlightTracker(1000).put(0, null, 0);
+    }
+
+    // Tests_SRS_AMQPSINFLIGHTTRACKER_21_002: [The constructor shall create an empty tracker.]
+    // Tests_SRS_AMQPSINFLIGHTTRACKER_21_004: [The function shall save the packet and the time it was sent under the delivery tag, replacing any packet saved under the same tag.]
+    // Tests_SRS_AMQPSINFLIGHTTRACKER_21_005: [The function shall stop tracking the message sent with the delivery tag and return its packet,
+    // or return null if no message is tracked with this tag.]
+    // Tests_SRS_AMQPSINFLIGHTTRACKER_21_008: [The function shall return the number of tracked messages.]
+    // Tests_SRS_AMQPSINFLIGHTTRACKER_21_009: [The function shall return true if no message is tracked, and false otherwise.]
+    @Test
+    public void putAndRemoveMatch()
+    {
+        AmqpsInFlightTracker tracker = new AmqpsInFlightTracker(1000);
+        IotHubOutboundPacket first = packet(1);
+        IotHubOutboundPacket second = packet(2);
+        assertTrue(tracker.isEmpty());
+
+        tracker.put(1, first, 0);
+        tracker.put(2, second, 0);
+
+        assertEquals(2, tracker.size());
+        assertFalse(tracker.isEmpty());
+        assertNull(tracker.remove(3));
+        assertSame(second, tracker.remove(2));
+        assertNull(tracker.remove(2));
+        assertSame(first, tracker.remove(1));
+        assertTrue(tracker.isEmpty());
+    }
+
+    // Tests_SRS_AMQPSINFLIGHTTRACKER_21_005: [The function shall stop tracking the message sent with the delivery tag and return its packet,
+    // or return null if no message is tracked with this tag.]
+    @Test
+    public void removeCorrelatesEveryTagWithManyMessagesInFlight()
+    {
+        final int count = 200000;
+        AmqpsInFlightTracker tracker = new AmqpsInFlightTracker(1000);
+        IotHubOutboundPacket[] packets = new IotHubOutboundPacket[count];
+        for (int i = 0; i < count; i++)
+        {
+            packets[i] = packet(i);
+            tracker.put(i, packets[i], 0);
+        }
+
+        for (int i = 0; i < count; i += 2)
+        {
+            assertSame(packets[i], tracker.remove(i));
+        }
+
+        assertEquals(count / 2, tracker.size());
+        for (int i = 1; i < count; i += 2)
+        {
+            assertSame(packets[i], tracker.remove(i));
+        }
+        assertTrue(tracker.isEmpty());
+    }
+
+    // Tests_SRS_AMQPSINFLIGHTTRACKER_21_006: [The function shall stop tracking the messages which were sent at least timeoutMillis
+    // before nowMillis, and return their packets ordered by delivery tag.]
+    @Test
+    public void removeExpiredReturnsOnlyExpiredMessagesOldestFirst()
+    {
+        AmqpsInFlightTracker tracker = new AmqpsInFlightTracker(1000);
+        IotHubOutboundPacket first = packet(0);
+        IotHubOutboundPacket third = packet(2);
+        IotHubOutboundPacket fourth = packet(3);
+        tracker.put(0, first, 100);
+        tracker.put(1, packet(1), 200);
+        tracker.put(2, third, 300);
+        tracker.put(3, fourth, 2000);
+        tracker.remove(1);
+
+        List<IotHubOutboundPacket> expired = tracker.removeExpired(1300);
+
+        assertEquals(2, expired.size());
+        assertSame(first, expired.get(0));
+        assertSame(third, expired.get(1));
+        assertEquals(1, tracker.size());
+        assertTrue(tracker.removeExpired(2999).isEmpty());
+        assertSame(fourth, tracker.removeExpired(3000).get(0));
+        assertTrue(tracker.isEmpty());
+    }
+
+    // Tests_SRS_AMQPSINFLIGHTTRACKER_21_007: [The function shall stop tracking all the messages and return their packets ordered by delivery tag.]
+    @Test
+    public void removeAllReturnsMessagesOrderedByTag()
+    {
+        AmqpsInFlightTracker tracker = new AmqpsInFlightTracker(1000);
+        IotHubOutboundPacket low = packet(0);
+        IotHubOutboundPacket middle = packet(1);
+        IotHubOutboundPacket high = packet(2);
+        tracker.put(1000000, high, 0);
+        tracker.put(5, low, 0);
+        tracker.put(70, middle, 0);
+
+        List<IotHubOutboundPacket> all = tracker.removeAll();
+
+        assertEquals(3, all.size());
+        assertSame(low, all.get(0));
+        assertSame(middle, all.get(1));
+        assertSame(high, all.get(2));
+        assertTrue(tracker.isEmpty());
+        assertNull(tracker.remove(70));
+    }
+}
@@ -10,6 +10,8 @@ import com.microsoft.azure.sdk.iot.device.IotHubMessageResult;
 import com.microsoft.azure.sdk.iot.device.IotHubSSLContext;
 import com.microsoft.azure.sdk.iot.device.ObjectLock;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubSasToken;
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenManager;
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenRenewalListener;
 import com.microsoft.azure.sdk.iot.device.net.IotHubUri;
 import com.microsoft.azure.sdk.iot.device.transport.State;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsIotHubConnection;
@@ -21,8 +23,10 @@ import com.microsoft.azure.sdk.iot.deps.ws.WebSocketHandler;
 
 import mockit.*;
 import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Data;
 import org.apache.qpid.proton.amqp.messaging.Source;
 import org.apache.qpid.proton.amqp.messaging.Target;
 import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
@@ -35,11 +39,18 @@ import org.apache.qpid.proton.reactor.Reactor;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class AmqpsIotHubConnectionTest {
 
@@ -83,6 +94,9 @@ public class AmqpsIotHubConnectionTest {
     @Mocked
     protected IotHubSasToken mockSasToken;
 
+    @Mocked
+    protected IotHubSasTokenManager mockTokenManager;
+
     @Mocked
     protected Sender mockSender;
 
@@ -379,17 +393,17 @@ public class AmqpsIotHubConnectionTest {
         new Verifications()
         {
             {
-                new IotHubSasToken(mockConfig, anyLong);
+                mockTokenManager.getSasToken();
                 times = 0;
             }
         };
     }
 
 
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_008: [The function shall create a new sasToken valid for the duration
-    // specified in config to be used for the communication with IoTHub.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_008: [The function shall get the sasToken to be used for the communication
+    // with IoTHub from the IotHubSasTokenManager of the config.]
     @Test
-    public void openCreatesSasToken() throws IOException, InterruptedException
+    public void openGetsSasTokenFromManager() throws IOException, InterruptedException
     {
         baseExpectations();
 
@@ -400,7 +414,7 @@ public class AmqpsIotHubConnectionTest {
         new Verifications()
         {
             {
-                new IotHubSasToken(mockConfig, anyLong);
+                mockTokenManager.getSasToken();
                 times = 1;
             }
         };
@@ -431,7 +445,7 @@ public class AmqpsIotHubConnectionTest {
         new Verifications()
         {
             {
-                new IotHubSasToken(mockConfig, anyLong);
+                mockTokenManager.getSasToken();
                 times = 1;
                 new IotHubReactor((Reactor)any);
                 times = 1;
@@ -592,12 +606,12 @@ public class AmqpsIotHubConnectionTest {
         final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, false);
 
         Deencapsulation.setField(connection, "state", State.CLOSED);
-        Deencapsulation.setField(connection, "linkCredit", 100);
+        ((AtomicInteger) Deencapsulation.getField(connection, "linkCredit")).set(100);
 
-        Integer expectedDeliveryHash = -1;
-        Integer actualDeliveryHash = connection.sendMessage(Message.Factory.create());
+        long expectedDeliveryTag = -1;
+        long actualDeliveryTag = connection.sendMessage(Message.Factory.create());
 
-        assertEquals(expectedDeliveryHash, actualDeliveryHash);
+        assertEquals(expectedDeliveryTag, actualDeliveryTag);
     }
 
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is CLOSED or there is not enough
@@ -610,20 +624,21 @@ public class AmqpsIotHubConnectionTest {
         final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, false);
 
         Deencapsulation.setField(connection, "state", State.OPEN);
-        Deencapsulation.setField(connection, "linkCredit", -1);
+        ((AtomicInteger) Deencapsulation.getField(connection, "linkCredit")).set(-1);
 
-        Integer expectedDeliveryHash = -1;
-        Integer actualDeliveryHash = connection.sendMessage(Message.Factory.create());
+        long expectedDeliveryTag = -1;
+        long actualDeliveryTag = connection.sendMessage(Message.Factory.create());
 
-        assertEquals(expectedDeliveryHash, actualDeliveryHash);
+        assertEquals(expectedDeliveryTag, actualDeliveryTag);
     }
 
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_016: [The function shall encode the message and copy the contents to the byte buffer.]
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_017: [The function shall set the delivery tag for the sender.]
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_018: [The function shall attempt to send the message using the sender link.]
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_019: [The function shall advance the sender link.]
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_020: [The function shall set the delivery hash to the value returned by the sender link.]
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_021: [The function shall return the delivery hash.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_006: [The function shall identify the message by the counter value of its delivery tag,
+    // which unlike the hash of the delivery is never reused during the lifetime of the connection.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_021: [The function shall return the delivery tag.]
     @Test
     public void sendMessage() throws IOException
     {
@@ -641,13 +656,13 @@ public class AmqpsIotHubConnectionTest {
         final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, false);
 
         Deencapsulation.setField(connection, "state", State.OPEN);
-        Deencapsulation.setField(connection, "linkCredit", 100);
+        ((AtomicInteger) Deencapsulation.getField(connection, "linkCredit")).set(100);
         Deencapsulation.setField(connection, "sender", mockSender);
 
-        Integer expectedDeliveryHash = mockDelivery.hashCode();
-        Integer actualDeliveryHash = connection.sendMessage(mockProtonMessage);
+        long expectedDeliveryTag = 0;
+        long actualDeliveryTag = connection.sendMessage(mockProtonMessage);
 
-        assertEquals(expectedDeliveryHash, actualDeliveryHash);
+        assertEquals(expectedDeliveryTag, actualDeliveryTag);
 
         new Verifications()
         {
@@ -660,12 +675,38 @@ public class AmqpsIotHubConnectionTest {
                 times = 1;
                 mockSender.advance();
                 times = 1;
-                mockDelivery.hashCode();
-                times = 1;
             }
         };
     }
 
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_003: [The function shall consume one unit of the saved link credit for every message it sends.]
+    @Test
+    public void sendMessageConsumesLinkCredit() throws IOException
+    {
+        baseExpectations();
+
+        new NonStrictExpectations()
+        {
+            {
+                mockProtonMessage.encode((byte[]) any, anyInt, anyInt);
+                mockSender.delivery((byte[]) any);
+                result = mockDelivery;
+            }
+        };
+
+        final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, false);
+
+        Deencapsulation.setField(connection, "state", State.OPEN);
+        ((AtomicInteger) Deencapsulation.getField(connection, "linkCredit")).set(1);
+        Deencapsulation.setField(connection, "sender", mockSender);
+
+        connection.sendMessage(mockProtonMessage);
+        long actualDeliveryTag = connection.sendMessage(mockProtonMessage);
+
+        assertEquals(0, connection.getLinkCredit());
+        assertEquals(-1, actualDeliveryTag);
+    }
+
     @Test
     public void sendMessageFreesDeliveryIfSendFails() throws IOException
     {
@@ -685,13 +726,14 @@ public class AmqpsIotHubConnectionTest {
         final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, false);
 
         Deencapsulation.setField(connection, "state", State.OPEN);
-        Deencapsulation.setField(connection, "linkCredit", 100);
+        ((AtomicInteger) Deencapsulation.getField(connection, "linkCredit")).set(100);
         Deencapsulation.setField(connection, "sender", mockSender);
 
-        Integer expectedDeliveryHash = -1;
-        Integer actualDeliveryHash = connection.sendMessage(mockProtonMessage);
+        long expectedDeliveryTag = -1;
+        long actualDeliveryTag = connection.sendMessage(mockProtonMessage);
 
-        assertEquals(expectedDeliveryHash, actualDeliveryHash);
+        assertEquals(expectedDeliveryTag, actualDeliveryTag);
+        assertEquals(100, connection.getLinkCredit());
 
         new Verifications()
         {
@@ -711,6 +753,162 @@ public class AmqpsIotHubConnectionTest {
     }
 
 
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_001: [The function shall reuse the encoding buffer of the connection, and shall grow it
+    // up front to the size of the message body plus its overhead instead of waiting for the encoding to overflow.]
+    @Test
+    public void sendMessageReusesEncodeBufferSizedFromBody() throws IOException
+    {
+        baseExpectations();
+
+        final int bodyLength = 32 * 1024;
+        new NonStrictExpectations()
+        {
+            {
+                mockProtonMessage.getBody();
+                result = new Data(new Binary(new byte[bodyLength]));
+                mockSender.delivery((byte[]) any);
+                result = mockDelivery;
+            }
+        };
+
+        final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, false);
+
+        Deencapsulation.setField(connection, "state", State.OPEN);
+        ((AtomicInteger) Deencapsulation.getField(connection, "linkCredit")).set(100);
+        Deencapsulation.setField(connection, "sender", mockSender);
+
+        connection.sendMessage(mockProtonMessage);
+        connection.sendMessage(mockProtonMessage);
+
+        final List<byte[]> encodeBuffers = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockProtonMessage.encode(withCapture(encodeBuffers), anyInt, anyInt);
+                times = 2;
+            }
+        };
+        assertTrue(encodeBuffers.get(0).length > bodyLength);
+        assertSame(encodeBuffers.get(0), encodeBuffers.get(1));
+    }
+
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_012: [If the encoding buffer grew past MAX_RETAINED_ENCODE_BUFFER_SIZE,
+    // the function shall not keep it for the next messages.]
+    @Test
+    public void sendMessageDoesNotKeepOversizedEncodeBuffer() throws IOException
+    {
+        baseExpectations();
+
+        final int bodyLength = 200 * 1024;
+        new NonStrictExpectations()
+        {
+            {
+                mockProtonMessage.getBody();
+                result = new Data(new Binary(new byte[bodyLength]));
+                mockSender.delivery((byte[]) any);
+                result = mockDelivery;
+            }
+        };
+
+        final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, false);
+
+        Deencapsulation.setField(connection, "state", State.OPEN);
+        ((AtomicInteger) Deencapsulation.getField(connection, "linkCredit")).set(100);
+        Deencapsulation.setField(connection, "sender", mockSender);
+
+        connection.sendMessage(mockProtonMessage);
+
+        final List<byte[]> encodeBuffers = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockProtonMessage.encode(withCapture(encodeBuffers), anyInt, anyInt);
+                times = 1;
+            }
+        };
+        assertTrue(encodeBuffers.get(0).length > bodyLength);
+        byte[] encodeBuffer = Deencapsulation.getField(connection, "encodeBuffer");
+        assertEquals(1024, encodeBuffer.length);
+    }
+
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_002: [The delivery tag shall be the big-endian binary value of a counter, without its leading zero bytes.]
+    @Test
+    public void sendMessageUsesCompactBinaryDeliveryTags() throws IOException
+    {
+        baseExpectations();
+
+        new NonStrictExpectations()
+        {
+            {
+                mockSender.delivery((byte[]) any);
+                result = mockDelivery;
+            }
+        };
+
+        final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, false);
+
+        Deencapsulation.setField(connection, "state", State.OPEN);
+        ((AtomicInteger) Deencapsulation.getField(connection, "linkCredit")).set(100);
+        Deencapsulation.setField(connection, "sender", mockSender);
+        Deencapsulation.setField(connection, "nextTag", 255L);
+
+        connection.sendMessage(mockProtonMessage);
+        connection.sendMessage(mockProtonMessage);
+
+        final List<byte[]> tags = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockSender.delivery(withCapture(tags));
+                times = 2;
+            }
+        };
+        assertArrayEquals(new byte[] {(byte) 0xFF}, tags.get(0));
+        assertArrayEquals(new byte[] {0x01, 0x00}, tags.get(1));
+    }
+
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_013: [The function shall return the next value of the delivery tag counter and advance it.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_014: [Without a delivery tag, the function shall send the message with a newly reserved delivery tag.]
+    @Test
+    public void sendMessageUsesReservedDeliveryTag() throws IOException
+    {
+        baseExpectations();
+
+        new NonStrictExpectations()
+        {
+            {
+                mockSender.delivery((byte[]) any);
+                result = mockDelivery;
+            }
+        };
+
+        final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, false);
+
+        Deencapsulation.setField(connection, "state", State.OPEN);
+        ((AtomicInteger) Deencapsulation.getField(connection, "linkCredit")).set(100);
+        Deencapsulation.setField(connection, "sender", mockSender);
+
+        long reservedTag = connection.reserveDeliveryTag();
+        long nextTag = connection.reserveDeliveryTag();
+        long sentTag = connection.sendMessage(mockProtonMessage, reservedTag);
+        long unreservedTag = connection.sendMessage(mockProtonMessage);
+
+        assertEquals(0L, reservedTag);
+        assertEquals(1L, nextTag);
+        assertEquals(reservedTag, sentTag);
+        assertEquals(2L, unreservedTag);
+        final List<byte[]> tags = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockSender.delivery(withCapture(tags));
+                times = 2;
+            }
+        };
+        assertArrayEquals(new byte[] {0x00}, tags.get(0));
+        assertArrayEquals(new byte[] {0x02}, tags.get(1));
+    }
+
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_022: [If the AMQPS Connection is closed, the function shall return false.]
     @Test
     public void sendMessageReturnsFalseIfConnectionIsClosed() throws IOException
@@ -828,6 +1026,7 @@ public class AmqpsIotHubConnectionTest {
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_031: [The event handler shall set the SASL_PLAIN authentication on the transport using the given user name and sas token.]
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_032: [The event handler shall set VERIFY_PEER authentication mode on the domain of the Transport.]
     // Tests_SRS_AMQPSIOTHUBCONNECTION_25_049: [The event handler shall set the SSL Context to IOTHub SSL context containing valid certificates.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_011: [The event handler shall give the IoT Hub host name and port to the SSL layer, so the TLS session can be resumed from the client session cache of the shared SSL context.]
     @Test
     public void onConnectionBoundNoWebSockets() throws IOException
     {
@@ -845,7 +1044,7 @@ public class AmqpsIotHubConnectionTest {
                 mockSasl.plain(anyString, anyString);
                 mockSslDomain.setSslContext(mockIotHubSSLContext.getIotHubSSlContext());
                 mockSslDomain.setPeerAuthentication(SslDomain.VerifyMode.VERIFY_PEER);
-                mockTransport.ssl(mockSslDomain);
+                mockTransport.ssl(mockSslDomain, (SslPeerDetails) any);
             }
         };
 
@@ -868,7 +1067,9 @@ public class AmqpsIotHubConnectionTest {
                 times = 1;
                 mockSslDomain.setPeerAuthentication(SslDomain.VerifyMode.VERIFY_PEER);
                 times = 1;
-                mockTransport.ssl(mockSslDomain);
+                mockTransport.ssl(mockSslDomain, (SslPeerDetails) any);
+                times = 1;
+                Proton.sslPeerDetails(hostName, 5671);
                 times = 1;
             }
         };
@@ -878,6 +1079,7 @@ public class AmqpsIotHubConnectionTest {
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_031: [The event handler shall set the SASL_PLAIN authentication on the transport using the given user name and sas token.]
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_032: [The event handler shall set VERIFY_PEER authentication mode on the domain of the Transport.]
     // Tests_SRS_AMQPSIOTHUBCONNECTION_25_049: [The event handler shall set the SSL Context to IOTHub SSL context containing valid certificates.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_015: [If web sockets are used, the event handler shall add a WebSocket layer with the maximum frame size of the configuration to the Transport.]
     @Test
     public void onConnectionBoundWebSockets() throws IOException
     {
@@ -890,7 +1092,9 @@ public class AmqpsIotHubConnectionTest {
                 result = mockConnection;
                 mockConnection.getTransport();
                 result = mockTransportInternal;
-                new WebSocketImpl();
+                mockConfig.getWebSocketMaxFrameSize();
+                result = 64 * 1024;
+                new WebSocketImpl(64 * 1024);
                 result = mockWebSocket;
                 mockWebSocket.configure(anyString, anyString, anyInt, anyString, (Map<String, String>) any, (WebSocketHandler) any);
                 mockTransportInternal.addTransportLayer(mockWebSocket);
@@ -899,7 +1103,7 @@ public class AmqpsIotHubConnectionTest {
                 mockSasl.plain(anyString, anyString);
                 mockSslDomain.setSslContext(mockIotHubSSLContext.getIotHubSSlContext());
                 mockSslDomain.setPeerAuthentication(SslDomain.VerifyMode.VERIFY_PEER);
-                mockTransportInternal.ssl(mockSslDomain);
+                mockTransportInternal.ssl(mockSslDomain, (SslPeerDetails) any);
             }
         };
 
@@ -928,7 +1132,9 @@ public class AmqpsIotHubConnectionTest {
                 times = 1;
                 mockSslDomain.setPeerAuthentication(SslDomain.VerifyMode.VERIFY_PEER);
                 times = 1;
-                mockTransportInternal.ssl(mockSslDomain);
+                mockTransportInternal.ssl(mockSslDomain, (SslPeerDetails) any);
+                times = 1;
+                Proton.sslPeerDetails(hostName, 443);
                 times = 1;
             }
         };
@@ -1034,7 +1240,7 @@ public class AmqpsIotHubConnectionTest {
     }
 
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_038: [If this link is the Sender link and the event type is DELIVERY, the event handler shall get the Delivery (Proton) object from the event.]
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_039: [The event handler shall note the remote delivery state and use it and the Delivery (Proton) hash code to inform the AmqpsIotHubConnection of the message receipt.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_039: [The event handler shall note the remote delivery state and use it and the Delivery (Proton) tag to inform the AmqpsIotHubConnection of the message receipt.]
     @Test
     public void onDeliverySend() throws IOException
     {
@@ -1053,7 +1259,9 @@ public class AmqpsIotHubConnectionTest {
                 result = mockDelivery;
                 mockDelivery.getRemoteState();
                 result = Accepted.getInstance();
-                mockServerListener.messageSent(anyInt, true);
+                mockDelivery.getTag();
+                result = new byte[] {0x01, 0x00};
+                mockServerListener.messageSent(anyLong, true);
             }
         };
 
@@ -1074,7 +1282,7 @@ public class AmqpsIotHubConnectionTest {
                 times = 1;
                 mockDelivery.getRemoteState();
                 times = 1;
-                mockServerListener.messageSent(mockDelivery.hashCode(), true);
+                mockServerListener.messageSent(256L, true);
                 times = 1;
                 mockDelivery.free();
                 times = 1;
@@ -1102,7 +1310,7 @@ public class AmqpsIotHubConnectionTest {
         connection.onLinkFlow(mockEvent);
 
         Integer expectedLinkCredit = 100;
-        Integer actualLinkCredit = Deencapsulation.getField(connection, "linkCredit");
+        Integer actualLinkCredit = ((AtomicInteger) Deencapsulation.getField(connection, "linkCredit")).get();
 
         assertEquals(expectedLinkCredit, actualLinkCredit);
 
@@ -1117,6 +1325,67 @@ public class AmqpsIotHubConnectionTest {
         };
     }
 
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_004: [If the sender link has credit, all the listeners shall be notified that messages can be sent.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_005: [The function shall return the remaining link credit.]
+    @Test
+    public void onLinkFlowNotifiesListenersOfSenderCredit() throws IOException
+    {
+        baseExpectations();
+
+        new NonStrictExpectations()
+        {
+            {
+                mockEvent.getLink();
+                result = mockSender;
+                mockSender.getCredit();
+                result = 100;
+            }
+        };
+
+        final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, false);
+        connection.addListener(mockServerListener);
+        connection.onLinkFlow(mockEvent);
+
+        assertEquals(100, connection.getLinkCredit());
+        new Verifications()
+        {
+            {
+                mockServerListener.linkCreditAvailable(100);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_004: [If the sender link has credit, all the listeners shall be notified that messages can be sent.]
+    @Test
+    public void onLinkFlowIgnoresReceiverCredit() throws IOException
+    {
+        baseExpectations();
+
+        new NonStrictExpectations()
+        {
+            {
+                mockEvent.getLink();
+                result = mockReceiver;
+                mockReceiver.getCredit();
+                result = 100;
+            }
+        };
+
+        final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, false);
+        connection.addListener(mockServerListener);
+        connection.onLinkFlow(mockEvent);
+
+        assertEquals(-1, connection.getLinkCredit());
+        new Verifications()
+        {
+            {
+                mockServerListener.linkCreditAvailable(anyInt);
+                times = 0;
+            }
+        };
+    }
+
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_041: [The connection state shall be considered OPEN when the sender link is open remotely.]
     @Test
     public void onLinkRemoteOpen() throws IOException
@@ -1210,6 +1479,103 @@ public class AmqpsIotHubConnectionTest {
         };
     }
 
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_007: [The function shall register with the IotHubSasTokenManager of the
+    // config to be told when the SAS token is renewed.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_009: [The function shall stop listening to the SAS token renewals.]
+    @Test
+    public void openAndCloseRegisterAndRemoveSasTokenRenewalListener() throws IOException
+    {
+        baseExpectations();
+
+        AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, false);
+        connection.open();
+        connection.close();
+
+        final IotHubSasTokenRenewalListener listener = Deencapsulation.getField(connection, "sasTokenRenewalListener");
+        new Verifications()
+        {
+            {
+                mockTokenManager.addRenewalListener(listener);
+                times = 1;
+                mockTokenManager.removeRenewalListener(listener);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_008: [When the SAS token is renewed, the connection shall save it for the
+    // reactor thread.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_010: [If the SAS token was renewed while the connection is open, the event
+    // handler shall notify the listeners that the connection was lost, and close the connection to open it again
+    // right away with the renewed token.]
+    @Test
+    public void onReactorQuiescedReconnectsWithRenewedSasToken() throws IOException
+    {
+        baseExpectations();
+
+        final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, false);
+        final Boolean[] closeAsyncCalled = { false };
+        new MockUp<AmqpsIotHubConnection>()
+        {
+            @Mock
+            void closeAsync()
+            {
+                closeAsyncCalled[0] = true;
+                Deencapsulation.setField(connection, "state", State.CLOSED);
+            }
+        };
+        Deencapsulation.setField(connection, "state", State.OPEN);
+        connection.addListener(mockServerListener);
+        IotHubSasTokenRenewalListener listener = Deencapsulation.getField(connection, "sasTokenRenewalListener");
+
+        listener.onSasTokenRenewed("renewed-sas-token");
+        connection.onReactorQuiesced(mockEvent);
+
+        assertEquals(true, closeAsyncCalled[0]);
+        assertEquals(true, Deencapsulation.getField(connection, "reconnectCall"));
+        assertNull(Deencapsulation.getField(connection, "renewedSasToken"));
+        new Verifications()
+        {
+            {
+                mockServerListener.connectionLost();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_21_010: [If the SAS token was renewed while the connection is open, the event
+    // handler shall notify the listeners that the connection was lost, and close the connection to open it again
+    // right away with the renewed token.]
+    @Test
+    public void onReactorQuiescedDoesNothingWithoutRenewedSasToken() throws IOException
+    {
+        baseExpectations();
+
+        final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig, false);
+        final Boolean[] closeAsyncCalled = { false };
+        new MockUp<AmqpsIotHubConnection>()
+        {
+            @Mock
+            void closeAsync()
+            {
+                closeAsyncCalled[0] = true;
+            }
+        };
+        Deencapsulation.setField(connection, "state", State.OPEN);
+        connection.addListener(mockServerListener);
+
+        connection.onReactorQuiesced(mockEvent);
+
+        assertEquals(false, closeAsyncCalled[0]);
+        new Verifications()
+        {
+            {
+                mockServerListener.connectionLost();
+                times = 0;
+            }
+        };
+    }
+
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_043: [If the link is the Sender link, the event handler shall create a new Target (Proton) object using the sender endpoint address member variable.]
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_044: [If the link is the Sender link, the event handler shall set its target to the created Target (Proton) object.]
     // Tests_SRS_AMQPSIOTHUBCONNECTION_14_045: [If the link is the Sender link, the event handler shall set the SenderSettleMode to UNSETTLED.]
@@ -0,0 +1,129 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsMessageCodec;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Properties;
+import org.apache.qpid.proton.message.impl.MessageImpl;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/** Unit tests for AmqpsMessageCodec. */
+public class AmqpsMessageCodecTest
+{
+    private static MessageImpl protonMessage(byte[] body, Properties properties, Map<String, Object> applicationProperties)
+    {
+        MessageImpl protonMessage = (MessageImpl) Proton.message();
+        protonMessage.setBody(new Data(new Binary(body)));
+        protonMessage.setProperties(properties);
+        if (applicationProperties != null)
+        {
+            protonMessage.setApplicationProperties(new ApplicationProperties(applicationProperties));
+        }
+        return protonMessage;
+    }
+
+    // Tests_SRS_AMQPSMESSAGECODEC_21_001: [The function shall copy the body of the Proton message into the IoT Hub message.]
+    @Test
+    public void protonMessageToIoTHubMessageCopiesBody()
+    {
+        final byte[] body = {0x61, 0x62, 0x63};
+
+        Message message = AmqpsMessageCodec.protonMessageToIoTHubMessage(protonMessage(body, new Properties(), null));
+
+        assertArrayEquals(body, message.getBytes());
+    }
+
+    // Tests_SRS_AMQPSMESSAGECODEC_21_002: [The function shall copy every non-null Proton system property whose name is not reserved
+    // and whose value only uses US-ASCII characters into the IoT Hub message properties.]
+    @Test
+    public void protonMessageToIoTHubMessageCopiesSystemProperties()
+    {
+        Properties properties = new Properties();
+        properties.setMessageId("some-message-id");
+        properties.setTo("/devices/device/messages/deviceBound");
+        properties.setSubject("\u00e9t\u00e9");
+        properties.setContentType(Symbol.valueOf("application/json"));
+
+        Message message = AmqpsMessageCodec.protonMessageToIoTHubMessage(protonMessage(new byte[0], properties, null));
+
+        assertEquals("some-message-id", message.getProperty("messageId"));
+        assertEquals("application/json", message.getProperty("contentType"));
+        assertNull(message.getProperty("to"));
+        assertNull(message.getProperty("subject"));
+        assertNull(message.getProperty("correlationId"));
+        assertEquals(2, message.getProperties().length);
+    }
+
+    // Tests_SRS_AMQPSMESSAGECODEC_21_003: [The function shall copy every application property whose name is not reserved into the IoT Hub message properties.]
+    @Test
+    public void protonMessageToIoTHubMessageCopiesApplicationProperties()
+    {
+        Map<String, Object> applicationProperties = new HashMap<>();
+        applicationProperties.put("temperature", "hot");
+        applicationProperties.put("iothub-ack", "full");
+
+        Message message = AmqpsMessageCodec.protonMessageToIoTHubMessage(protonMessage(new byte[0], new Properties(), applicationProperties));
+
+        assertEquals("hot", message.getProperty("temperature"));
+        assertNull(message.getProperty("iothub-ack"));
+    }
+
+    // Tests_SRS_AMQPSMESSAGECODEC_21_004: [The function shall set the message id of the Proton message to the one of the IoT Hub message, if any.]
+    // Tests_SRS_AMQPSMESSAGECODEC_21_006: [The function shall set the body of the IoT Hub message as the data section of the Proton message.]
+    @Test
+    public void iotHubMessageToProtonMessageSetsMessageIdAndBody()
+    {
+        final byte[] body = {0x61, 0x62, 0x63};
+        Message message = new Message(body);
+        message.setMessageId("some-message-id");
+
+        MessageImpl protonMessage = AmqpsMessageCodec.iotHubMessageToProtonMessage(message);
+
+        assertEquals("some-message-id", protonMessage.getProperties().getMessageId());
+        Binary protonBody = ((Data) protonMessage.getBody()).getValue();
+        assertEquals(new Binary(body), protonBody);
+    }
+
+    // Tests_SRS_AMQPSMESSAGECODEC_21_005: [The function shall add every user property whose name is not reserved to the application properties
+    // of the Proton message, and shall not set application properties if there are none.]
+    @Test
+    public void iotHubMessageToProtonMessageAddsUserProperties()
+    {
+        Message message = new Message(new byte[0]);
+        message.setProperty("temperature", "hot");
+        message.setProperty("humidity", "high");
+
+        MessageImpl protonMessage = AmqpsMessageCodec.iotHubMessageToProtonMessage(message);
+
+        Map applicationProperties = protonMessage.getApplicationProperties().getValue();
+        assertEquals(2, applicationProperties.size());
+        assertEquals("hot", applicationProperties.get("temperature"));
+        assertEquals("high", applicationProperties.get("humidity"));
+    }
+
+    // Tests_SRS_AMQPSMESSAGECODEC_21_005: [The function shall add every user property whose name is not reserved to the application properties
+    // of the Proton message, and shall not set application properties if there are none.]
+    @Test
+    public void iotHubMessageToProtonMessageWithoutUserPropertiesSetsNoApplicationProperties()
+    {
+        Message message = new Message(new byte[0]);
+
+        MessageImpl protonMessage = AmqpsMessageCodec.iotHubMessageToProtonMessage(message);
+
+        assertNull(protonMessage.getApplicationProperties());
+    }
+}
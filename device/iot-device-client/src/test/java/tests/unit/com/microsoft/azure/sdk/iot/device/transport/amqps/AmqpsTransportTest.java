@@ -6,7 +6,9 @@ package tests.unit.com.microsoft.azure.sdk.iot.device.transport.amqps;
 import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubCallbackPacket;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubOutboundPacket;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportWorker;
 import com.microsoft.azure.sdk.iot.device.transport.State;
+import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsInFlightTracker;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsIotHubConnection;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsMessage;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsTransport;
@@ -18,11 +20,12 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.LinkedBlockingQueue;
 
@@ -338,6 +341,8 @@ public class AmqpsTransportTest
                 result = mockMsg;
                 mockMsg.getBytes();
                 result = messageBytes;
+                mockMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(messageBytes);
             }
         };
 
@@ -354,7 +359,7 @@ public class AmqpsTransportTest
                 times = 2;
                 mockPacket.getMessage();
                 times = 2;
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any);
+                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, anyLong);
                 times = 2;
             }
         };
@@ -390,7 +395,7 @@ public class AmqpsTransportTest
         new Verifications()
         {
             {
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any);
+                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, anyLong);
                 times = 0;
             }
         };
@@ -427,12 +432,14 @@ public class AmqpsTransportTest
                 result = mockMsg;
                 mockMsg.getBytes();
                 result = messageBytes;
+                mockMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(messageBytes);
                 new MessageImpl();
                 result = mockProtonMessage;
-                mockMsg.getProperties();
-                result = iotHubMessageProperties;
-                mockConnection.sendMessage(mockProtonMessage);
-                result = 1;
+                mockMsg.getPropertyList();
+                result = Arrays.asList(iotHubMessageProperties);
+                mockConnection.sendMessage(mockProtonMessage, anyLong);
+                result = 1L;
                 new ApplicationProperties(userProperties);
             }
         };
@@ -450,7 +457,7 @@ public class AmqpsTransportTest
                 times = 1;
                 mockPacket.getMessage();
                 times = 1;
-                mockConnection.sendMessage(mockProtonMessage);
+                mockConnection.sendMessage(mockProtonMessage, anyLong);
                 times = 1;
                 new ApplicationProperties(userProperties);
                 times = 1;
@@ -480,6 +487,8 @@ public class AmqpsTransportTest
                 result = mockMsg;
                 mockMsg.getBytes();
                 result = new byte[0];
+                mockMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(new byte[0]);
             }
         };
 
@@ -492,7 +501,7 @@ public class AmqpsTransportTest
         new Verifications()
         {
             {
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any);
+                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, anyLong);
                 times = 0;
             }
         };
@@ -519,8 +528,12 @@ public class AmqpsTransportTest
                 result = mockMsg;
                 mockMsg.getBytes();
                 result = messageBytes;
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any);
-                returns (1, 2);
+                mockMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(messageBytes);
+                mockConnection.reserveDeliveryTag();
+                returns (1L, 2L);
+                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, anyLong);
+                returns (1L, 2L);
             }
         };
 
@@ -530,7 +543,7 @@ public class AmqpsTransportTest
         transport.addMessage(mockMsg, mockCallback, context);
         transport.sendMessages();
 
-        Map<Integer, IotHubOutboundPacket> inProgressMessages = Deencapsulation.getField(transport, "inProgressMessages");
+        AmqpsInFlightTracker inProgressMessages = Deencapsulation.getField(transport, "inProgressMessages");
         Assert.assertEquals(2, inProgressMessages.size());
 
         new Verifications()
@@ -540,7 +553,7 @@ public class AmqpsTransportTest
                 times = 2;
                 mockPacket.getMessage();
                 times = 2;
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any);
+                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, anyLong);
                 times = 2;
             }
         };
@@ -567,8 +580,12 @@ public class AmqpsTransportTest
                 result = mockMsg;
                 mockMsg.getBytes();
                 result = messageBytes;
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any);
-                returns (1, -1);
+                mockMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(messageBytes);
+                mockConnection.reserveDeliveryTag();
+                returns (1L, 2L);
+                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, anyLong);
+                returns (1L, -1L);
             }
         };
 
@@ -578,7 +595,7 @@ public class AmqpsTransportTest
         transport.addMessage(mockMsg, mockCallback, context);
         transport.sendMessages();
 
-        Map<Integer, IotHubOutboundPacket> inProgressMessages = Deencapsulation.getField(transport, "inProgressMessages");
+        AmqpsInFlightTracker inProgressMessages = Deencapsulation.getField(transport, "inProgressMessages");
         Assert.assertEquals(1, inProgressMessages.size());
 
         Queue<IotHubOutboundPacket> waitingMessages = Deencapsulation.getField(transport, "waitingMessages");
@@ -591,7 +608,7 @@ public class AmqpsTransportTest
                 times = 2;
                 mockPacket.getMessage();
                 times = 2;
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any);
+                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, anyLong);
                 times = 2;
             }
         };
@@ -619,10 +636,12 @@ public class AmqpsTransportTest
                 result = mockMsg;
                 mockMsg.getBytes();
                 result = messageBytes;
+                mockMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(messageBytes);
                 mockMsg.isExpired();
                 returns (true, false);
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any);
-                result = 1;
+                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, anyLong);
+                result = 1L;
             }
         };
 
@@ -632,7 +651,7 @@ public class AmqpsTransportTest
         transport.addMessage(mockMsg, mockCallback, context);
         transport.sendMessages();
 
-        Map<Integer, IotHubOutboundPacket> inProgressMessages = Deencapsulation.getField(transport, "inProgressMessages");
+        AmqpsInFlightTracker inProgressMessages = Deencapsulation.getField(transport, "inProgressMessages");
         Assert.assertEquals(1, inProgressMessages.size());
 
         Queue<IotHubOutboundPacket> waitingMessages = Deencapsulation.getField(transport, "waitingMessages");
@@ -648,7 +667,7 @@ public class AmqpsTransportTest
                 times = 2;
                 mockPacket.getMessage();
                 times = 2;
-                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any);
+                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, anyLong);
                 times = 1;
                 new IotHubCallbackPacket(IotHubStatusCode.MESSAGE_EXPIRED, (IotHubEventCallback) any, any);
                 times = 1;
@@ -918,7 +937,7 @@ public class AmqpsTransportTest
         AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
         transport.open();
 
-        Map<Integer, IotHubOutboundPacket> inProgressMessages = new ConcurrentHashMap<>();
+        AmqpsInFlightTracker inProgressMessages = new AmqpsInFlightTracker(60000);
         Deencapsulation.setField(transport, "inProgressMessages", inProgressMessages);
 
         transport.messageSent(1, true);
@@ -948,9 +967,9 @@ public class AmqpsTransportTest
         AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
         transport.open();
 
-        Map<Integer, IotHubOutboundPacket> inProgressMessages = new ConcurrentHashMap<>();
-        inProgressMessages.put(1, new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()));
-        inProgressMessages.put(2, new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()));
+        AmqpsInFlightTracker inProgressMessages = new AmqpsInFlightTracker(60000);
+        inProgressMessages.put(1, new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()), System.currentTimeMillis());
+        inProgressMessages.put(2, new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()), System.currentTimeMillis());
         Deencapsulation.setField(transport, "inProgressMessages", inProgressMessages);
 
         transport.messageSent(1, true);
@@ -986,9 +1005,9 @@ public class AmqpsTransportTest
         AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
         transport.open();
 
-        Map<Integer, IotHubOutboundPacket> inProgressMessages = new ConcurrentHashMap<>();
-        inProgressMessages.put(1, new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()));
-        inProgressMessages.put(2, new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()));
+        AmqpsInFlightTracker inProgressMessages = new AmqpsInFlightTracker(60000);
+        inProgressMessages.put(1, new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()), System.currentTimeMillis());
+        inProgressMessages.put(2, new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()), System.currentTimeMillis());
         Deencapsulation.setField(transport, "inProgressMessages", inProgressMessages);
 
         transport.messageSent(1, false);
@@ -1025,9 +1044,9 @@ public class AmqpsTransportTest
         AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
         transport.open();
 
-        Map<Integer, IotHubOutboundPacket> inProgressMessages = new ConcurrentHashMap<>();
-        inProgressMessages.put(1, new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()));
-        inProgressMessages.put(2, new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()));
+        AmqpsInFlightTracker inProgressMessages = new AmqpsInFlightTracker(60000);
+        inProgressMessages.put(1, new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()), System.currentTimeMillis());
+        inProgressMessages.put(2, new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()), System.currentTimeMillis());
         Deencapsulation.setField(transport, "inProgressMessages", inProgressMessages);
 
         Queue<IotHubOutboundPacket> waitingMessages = new LinkedBlockingDeque<>();
@@ -1066,6 +1085,523 @@ public class AmqpsTransportTest
         Assert.assertTrue(receivedMessages.size() == 3);
     }
 
+    // Tests_SRS_AMQPSTRANSPORT_21_042: [The function shall signal the transport worker saved in the config, if any, to handle the message.]
+    @Test
+    public void messageReceivedSignalsTransportWorker(@Mocked final IotHubTransportWorker mockWorker) throws IOException
+    {
+        new NonStrictExpectations()
+        {
+            {
+                new AmqpsIotHubConnection(mockConfig, false);
+                result = mockConnection;
+                mockConfig.getTransportWorker();
+                result = mockWorker;
+            }
+        };
+
+        AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
+        transport.open();
+
+        transport.messageReceived(mockAmqpsMessage);
+
+        new Verifications()
+        {
+            {
+                mockWorker.signalReceive();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSTRANSPORT_21_043: [If the queue is full and the overflow policy is REJECT, the function shall not
+    // queue the message, and shall add a callback with the THROTTLED status to the callback list.]
+    @Test
+    public void addMessageRejectsMessageIfQueueIsFull() throws IOException
+    {
+        final Object rejectedContext = new Object();
+        new NonStrictExpectations()
+        {
+            {
+                new AmqpsIotHubConnection(mockConfig, false);
+                result = mockConnection;
+                mockConfig.getAmqpsMaxQueuedMessages();
+                result = 2;
+                mockConfig.getAmqpsQueueOverflowPolicy();
+                result = QueueOverflowPolicy.REJECT;
+            }
+        };
+
+        AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
+        transport.open();
+        transport.addMessage(new Message(), mockIotHubEventCallback, new Object());
+        transport.addMessage(new Message(), mockIotHubEventCallback, new Object());
+        transport.addMessage(new Message(), mockIotHubEventCallback, rejectedContext);
+
+        assertEquals(2, transport.getQueuedMessageCount());
+        Queue<IotHubCallbackPacket> callbackList = Deencapsulation.getField(transport, "callbackList");
+        assertEquals(1, callbackList.size());
+        new Verifications()
+        {
+            {
+                new IotHubCallbackPacket(IotHubStatusCode.THROTTLED, mockIotHubEventCallback, rejectedContext);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSTRANSPORT_21_044: [If the queue is full and the overflow policy is DROP_OLDEST, the function shall remove
+    // the message which has been waiting the longest, and shall add a callback with the THROTTLED status for it to the callback list.]
+    @Test
+    public void addMessageDropsOldestMessageIfQueueIsFull() throws IOException
+    {
+        final Object oldestContext = new Object();
+        final Object newestContext = new Object();
+        new NonStrictExpectations()
+        {
+            {
+                new AmqpsIotHubConnection(mockConfig, false);
+                result = mockConnection;
+                mockConfig.getAmqpsMaxQueuedMessages();
+                result = 1;
+                mockConfig.getAmqpsQueueOverflowPolicy();
+                result = QueueOverflowPolicy.DROP_OLDEST;
+            }
+        };
+
+        AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
+        transport.open();
+        transport.addMessage(new Message(), mockIotHubEventCallback, oldestContext);
+        transport.addMessage(new Message(), mockIotHubEventCallback, newestContext);
+
+        Queue<IotHubOutboundPacket> waitingMessages = Deencapsulation.getField(transport, "waitingMessages");
+        assertEquals(1, waitingMessages.size());
+        assertEquals(newestContext, waitingMessages.peek().getContext());
+        new Verifications()
+        {
+            {
+                new IotHubCallbackPacket(IotHubStatusCode.THROTTLED, mockIotHubEventCallback, oldestContext);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSTRANSPORT_21_045: [If the queue is full and the overflow policy is BLOCK, the function shall wait until
+    // there is room in the queue, and shall throw an IllegalStateException if the transport is closed or the caller is
+    // interrupted in the meantime.]
+    // Tests_SRS_AMQPSTRANSPORT_21_047: [The function shall wake up the callers blocked waiting for room in the queue.]
+    @Test
+    public void addMessageBlocksUntilMessagesAreSent(@Mocked final Message mockMsg) throws IOException, InterruptedException
+    {
+        new NonStrictExpectations()
+        {
+            {
+                new AmqpsIotHubConnection(mockConfig, false);
+                result = mockConnection;
+                mockConfig.getAmqpsMaxQueuedMessages();
+                result = 1;
+                mockConfig.getAmqpsQueueOverflowPolicy();
+                result = QueueOverflowPolicy.BLOCK;
+                mockConfig.getAmqpsQueueBlockTimeoutMillis();
+                result = 60000L;
+                mockMsg.getBytes();
+                result = new byte[] {1, 2};
+                mockMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(new byte[] {1, 2});
+                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, anyLong);
+                result = 1L;
+            }
+        };
+
+        final AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
+        transport.open();
+        transport.addMessage(mockMsg, mockIotHubEventCallback, new Object());
+        Thread producer = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                transport.addMessage(mockMsg, mockIotHubEventCallback, new Object());
+            }
+        });
+
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+        assertEquals(1, transport.getQueuedMessageCount());
+
+        transport.sendMessages();
+        producer.join(1000);
+
+        assertEquals(false, producer.isAlive());
+        assertEquals(1, transport.getQueuedMessageCount());
+        assertEquals(1, transport.getInProgressMessageCount());
+    }
+
+    // Tests_SRS_AMQPSTRANSPORT_21_057: [If there is no room in the queue within the queue block timeout of the
+    // config, the function shall not queue the message, and shall add a callback with the ERROR status to the callback list.]
+    @Test
+    public void addMessageFailsMessageIfQueueStaysFullPastBlockTimeout() throws IOException
+    {
+        final Object blockedContext = new Object();
+        new NonStrictExpectations()
+        {
+            {
+                new AmqpsIotHubConnection(mockConfig, false);
+                result = mockConnection;
+                mockConfig.getAmqpsMaxQueuedMessages();
+                result = 1;
+                mockConfig.getAmqpsQueueOverflowPolicy();
+                result = QueueOverflowPolicy.BLOCK;
+                mockConfig.getAmqpsQueueBlockTimeoutMillis();
+                result = 50L;
+            }
+        };
+
+        AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
+        transport.open();
+        transport.addMessage(new Message(), mockIotHubEventCallback, new Object());
+        long startMillis = System.currentTimeMillis();
+        transport.addMessage(new Message(), mockIotHubEventCallback, blockedContext);
+
+        assertTrue(System.currentTimeMillis() - startMillis >= 50);
+        assertEquals(1, transport.getQueuedMessageCount());
+        new Verifications()
+        {
+            {
+                new IotHubCallbackPacket(IotHubStatusCode.ERROR, mockIotHubEventCallback, blockedContext);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSTRANSPORT_21_056: [If the queue is full, the overflow policy is BLOCK and the caller is a callback
+    // invoked by this transport, the function shall not wait, since the caller is the thread which sends the queued
+    // messages, and shall add a callback with the THROTTLED status to the callback list.]
+    // Tests_SRS_AMQPSTRANSPORT_21_058: [While it invokes the callbacks, the function shall mark the current thread as invoking
+    // the callbacks of this transport.]
+    @Test
+    public void addMessageFromTransportCallbackDoesNotBlock() throws IOException, InterruptedException
+    {
+        final Object resentContext = new Object();
+        new NonStrictExpectations()
+        {
+            {
+                new AmqpsIotHubConnection(mockConfig, false);
+                result = mockConnection;
+                mockConfig.getAmqpsMaxQueuedMessages();
+                result = 1;
+                mockConfig.getAmqpsQueueOverflowPolicy();
+                result = QueueOverflowPolicy.BLOCK;
+                mockConfig.getAmqpsQueueBlockTimeoutMillis();
+                result = 60000L;
+            }
+        };
+
+        final AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
+        final IotHubEventCallback resendingCallback = new IotHubEventCallback()
+        {
+            private boolean resent = false;
+
+            @Override
+            public void execute(IotHubStatusCode responseStatus, Object callbackContext)
+            {
+                if (!this.resent)
+                {
+                    this.resent = true;
+                    transport.addMessage(new Message(), mockIotHubEventCallback, resentContext);
+                }
+            }
+        };
+        new NonStrictExpectations()
+        {
+            {
+                mockIotHubCallbackPacket.getStatus();
+                result = IotHubStatusCode.OK_EMPTY;
+                mockIotHubCallbackPacket.getCallback();
+                result = resendingCallback;
+            }
+        };
+        transport.open();
+        transport.addMessage(new Message(), mockIotHubEventCallback, new Object());
+        Queue<IotHubCallbackPacket> callbackList = Deencapsulation.getField(transport, "callbackList");
+        callbackList.add(mockIotHubCallbackPacket);
+
+        Thread transportThread = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                transport.invokeCallbacks();
+            }
+        });
+        transportThread.start();
+        transportThread.join(1000);
+
+        assertEquals(false, transportThread.isAlive());
+        assertEquals(1, transport.getQueuedMessageCount());
+        new Verifications()
+        {
+            {
+                new IotHubCallbackPacket(IotHubStatusCode.THROTTLED, mockIotHubEventCallback, resentContext);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSTRANSPORT_21_046: [If the sent message hash is not valid, the function shall put the message back at the head
+    // of the waiting list and stop sending until the IoT Hub grants more link credit.]
+    @Test
+    public void sendMessagesStopsInOrderWhenLinkCreditIsExhausted(@Mocked final Message mockMsg) throws IOException
+    {
+        final Object firstContext = new Object();
+        final Object secondContext = new Object();
+        final Object thirdContext = new Object();
+        new NonStrictExpectations()
+        {
+            {
+                new AmqpsIotHubConnection(mockConfig, false);
+                result = mockConnection;
+                mockMsg.getBytes();
+                result = new byte[] {1, 2};
+                mockMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(new byte[] {1, 2});
+                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, anyLong);
+                returns(1L, -1L);
+            }
+        };
+
+        AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
+        transport.open();
+        transport.addMessage(mockMsg, mockIotHubEventCallback, firstContext);
+        transport.addMessage(mockMsg, mockIotHubEventCallback, secondContext);
+        transport.addMessage(mockMsg, mockIotHubEventCallback, thirdContext);
+        transport.sendMessages();
+
+        Queue<IotHubOutboundPacket> waitingMessages = Deencapsulation.getField(transport, "waitingMessages");
+        assertEquals(2, waitingMessages.size());
+        assertEquals(secondContext, waitingMessages.remove().getContext());
+        assertEquals(thirdContext, waitingMessages.remove().getContext());
+        new Verifications()
+        {
+            {
+                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, anyLong);
+                times = 2;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSTRANSPORT_21_048: [If the waiting list is not empty, the function shall signal the transport worker saved in the config, if any, to send the messages.]
+    @Test
+    public void linkCreditAvailableSignalsTransportWorkerIfMessagesAreWaiting(@Mocked final IotHubTransportWorker mockWorker) throws IOException
+    {
+        new NonStrictExpectations()
+        {
+            {
+                new AmqpsIotHubConnection(mockConfig, false);
+                result = mockConnection;
+                mockConfig.getTransportWorker();
+                result = mockWorker;
+            }
+        };
+
+        AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
+        transport.open();
+
+        transport.linkCreditAvailable(10);
+        transport.addMessage(new Message(), mockIotHubEventCallback, new Object());
+        transport.linkCreditAvailable(10);
+
+        new Verifications()
+        {
+            {
+                mockWorker.signalSend();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSTRANSPORT_21_051: [If the transport is closed, the function shall return -1.]
+    // Tests_SRS_AMQPSTRANSPORT_21_052: [The function shall return the remaining link credit of the connection.]
+    @Test
+    public void getLinkCreditReturnsCreditOfTheConnection() throws IOException
+    {
+        new NonStrictExpectations()
+        {
+            {
+                new AmqpsIotHubConnection(mockConfig, false);
+                result = mockConnection;
+                mockConnection.getLinkCredit();
+                result = 42;
+            }
+        };
+
+        AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
+        assertEquals(-1, transport.getLinkCredit());
+
+        transport.open();
+
+        assertEquals(42, transport.getLinkCredit());
+    }
+
+    // Tests_SRS_AMQPSTRANSPORT_21_054: [The function shall put the messages in progress which were not acknowledged within
+    // the timeout back at the head of the waiting list, oldest first, to be sent again.]
+    @Test
+    public void sendMessagesResendsExpiredMessagesFirst() throws IOException
+    {
+        final Object expiredContext = new Object();
+        final Object waitingContext = new Object();
+        new NonStrictExpectations()
+        {
+            {
+                new AmqpsIotHubConnection(mockConfig, false);
+                result = mockConnection;
+                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, anyLong);
+                result = -1L;
+            }
+        };
+
+        AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
+        transport.open();
+        AmqpsInFlightTracker inProgressMessages = new AmqpsInFlightTracker(60000);
+        inProgressMessages.put(7, new IotHubOutboundPacket(new Message(new byte[] {1}), mockIotHubEventCallback, expiredContext), 0);
+        Deencapsulation.setField(transport, "inProgressMessages", inProgressMessages);
+        transport.addMessage(new Message(new byte[] {1}), mockIotHubEventCallback, waitingContext);
+
+        transport.sendMessages();
+
+        Queue<IotHubOutboundPacket> waitingMessages = Deencapsulation.getField(transport, "waitingMessages");
+        assertEquals(0, transport.getInProgressMessageCount());
+        assertEquals(2, waitingMessages.size());
+        assertEquals(expiredContext, waitingMessages.remove().getContext());
+        assertEquals(waitingContext, waitingMessages.remove().getContext());
+    }
+
+    // Tests_SRS_AMQPSTRANSPORT_21_055: [The messages in progress shall be tracked by the delivery tag they were sent with, along with the time they were sent.]
+    @Test
+    public void messageSentCorrelatesAcknowledgementByDeliveryTag() throws IOException
+    {
+        final Object firstContext = new Object();
+        final Object secondContext = new Object();
+        new NonStrictExpectations()
+        {
+            {
+                new AmqpsIotHubConnection(mockConfig, false);
+                result = mockConnection;
+                mockConnection.reserveDeliveryTag();
+                returns(255L, 256L);
+                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, anyLong);
+                returns(255L, 256L);
+            }
+        };
+
+        AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
+        transport.open();
+        transport.addMessage(new Message(new byte[] {1}), mockIotHubEventCallback, firstContext);
+        transport.addMessage(new Message(new byte[] {1}), mockIotHubEventCallback, secondContext);
+        transport.sendMessages();
+
+        transport.messageSent(256L, true);
+
+        assertEquals(1, transport.getInProgressMessageCount());
+        new Verifications()
+        {
+            {
+                new IotHubCallbackPacket(IotHubStatusCode.OK_EMPTY, mockIotHubEventCallback, secondContext);
+                times = 1;
+                new IotHubCallbackPacket(IotHubStatusCode.OK_EMPTY, mockIotHubEventCallback, firstContext);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSTRANSPORT_21_060: [The function shall track the message under a delivery tag reserved from the connection
+    // before sending it, so an acknowledgement which arrives before the send returns finds the message.]
+    @Test
+    public void messageSentDuringSendFindsTheMessage() throws IOException
+    {
+        final Object context = new Object();
+        final AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
+        new NonStrictExpectations()
+        {
+            {
+                new AmqpsIotHubConnection(mockConfig, false);
+                result = mockConnection;
+                mockConnection.reserveDeliveryTag();
+                result = 7L;
+                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, anyLong);
+                result = new Delegate()
+                {
+                    long sendMessage(org.apache.qpid.proton.message.Message message, long deliveryTag)
+                    {
+                        // the reactor thread acknowledges the message before sendMessage returns
+                        transport.messageSent(deliveryTag, true);
+                        return deliveryTag;
+                    }
+                };
+            }
+        };
+
+        transport.open();
+        transport.addMessage(new Message(new byte[] {1}), mockIotHubEventCallback, context);
+        transport.sendMessages();
+
+        assertEquals(0, transport.getInProgressMessageCount());
+        new Verifications()
+        {
+            {
+                new IotHubCallbackPacket(IotHubStatusCode.OK_EMPTY, mockIotHubEventCallback, context);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSTRANSPORT_21_061: [If the message could not be sent, the function shall stop tracking it.]
+    @Test
+    public void sendMessagesStopsTrackingMessageWhichCouldNotBeSent() throws IOException
+    {
+        new NonStrictExpectations()
+        {
+            {
+                new AmqpsIotHubConnection(mockConfig, false);
+                result = mockConnection;
+                mockConnection.reserveDeliveryTag();
+                result = 3L;
+                mockConnection.sendMessage((org.apache.qpid.proton.message.Message) any, anyLong);
+                result = -1L;
+            }
+        };
+
+        AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
+        transport.open();
+        transport.addMessage(new Message(new byte[] {1}), mockIotHubEventCallback, new Object());
+        transport.sendMessages();
+
+        assertEquals(0, transport.getInProgressMessageCount());
+        assertEquals(1, transport.getQueuedMessageCount());
+    }
+
+    // Tests_SRS_AMQPSTRANSPORT_21_053: [The function shall buffer the messages left in progress by a previous connection to be sent again,
+    // since their delivery tags are not valid on a new connection.]
+    @Test
+    public void openBuffersMessagesLeftInProgressByPreviousConnection() throws IOException
+    {
+        new NonStrictExpectations()
+        {
+            {
+                new AmqpsIotHubConnection(mockConfig, false);
+                result = mockConnection;
+            }
+        };
+
+        AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
+        AmqpsInFlightTracker inProgressMessages = new AmqpsInFlightTracker(60000);
+        inProgressMessages.put(1, new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()), System.currentTimeMillis());
+        Deencapsulation.setField(transport, "inProgressMessages", inProgressMessages);
+
+        transport.open();
+
+        assertEquals(0, transport.getInProgressMessageCount());
+        assertEquals(1, transport.getQueuedMessageCount());
+    }
+
     // Tests_SRS_AMQPSTRANSPORT_15_035: [The function shall return true if the waiting list,
     // in progress list and callback list are all empty, and false otherwise.]
     @Test
@@ -1100,8 +1636,8 @@ public class AmqpsTransportTest
     {
         AmqpsTransport transport = new AmqpsTransport(mockConfig, false);
 
-        Map<Integer, IotHubOutboundPacket> inProgressMessages = new ConcurrentHashMap<>();
-        inProgressMessages.put(1, new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()));
+        AmqpsInFlightTracker inProgressMessages = new AmqpsInFlightTracker(60000);
+        inProgressMessages.put(1, new IotHubOutboundPacket(new Message(), mockIotHubEventCallback, new Object()), System.currentTimeMillis());
         Deencapsulation.setField(transport, "inProgressMessages", inProgressMessages);
 
         Boolean isEmpty = transport.isEmpty();
@@ -13,12 +13,14 @@ import com.microsoft.azure.sdk.iot.device.MessageProperty;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsSingleMessage;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsBatchMessage;
 
+import mockit.Deencapsulation;
 import mockit.Mocked;
 import mockit.NonStrictExpectations;
 import org.junit.Test;
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import javax.naming.SizeLimitExceededException;
 
@@ -69,6 +71,91 @@ public class HttpsBatchMessageTest
         assertThat(testBatchBody, containsString(expectedMsgBody));
     }
 
+    // Tests_SRS_HTTPSBATCHMESSAGE_11_002: [The function shall add the message as a JSON object appended to the current JSON array.]
+    @Test
+    public void addMessageAppendsMessagesAsJsonArray(
+            @Mocked final HttpsSingleMessage mockMsg) throws
+            SizeLimitExceededException
+    {
+        final String msgBody = "test-msg-body";
+        final boolean isBase64Encoded = false;
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBodyAsString();
+                result = msgBody;
+                mockMsg.isBase64Encoded();
+                result = isBase64Encoded;
+            }
+        };
+
+        HttpsBatchMessage batchMsg = new HttpsBatchMessage();
+        batchMsg.addMessage(mockMsg);
+        batchMsg.addMessage(mockMsg);
+        String testBatchBody = new String(batchMsg.getBody(), UTF8);
+
+        final String expectedMsg = "{\"body\":\"" + msgBody + "\",\"base64Encoded\":false}";
+        final String expectedBatchBody = "[" + expectedMsg + "," + expectedMsg + "]";
+        assertThat(testBatchBody, is(expectedBatchBody));
+    }
+
+    // Tests_SRS_HTTPSBATCHMESSAGE_21_013: [The function shall not copy the body again if no message was added since its last call.]
+    @Test
+    public void getBodyReturnsSameBodyUntilMessageIsAdded(
+            @Mocked final HttpsSingleMessage mockMsg) throws
+            SizeLimitExceededException
+    {
+        final String msgBody = "test-msg-body";
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBodyAsString();
+                result = msgBody;
+                mockMsg.isBase64Encoded();
+                result = false;
+            }
+        };
+
+        HttpsBatchMessage batchMsg = new HttpsBatchMessage();
+        batchMsg.addMessage(mockMsg);
+        byte[] firstBody = batchMsg.getBody();
+        byte[] secondBody = batchMsg.getBody();
+        batchMsg.addMessage(mockMsg);
+        byte[] thirdBody = batchMsg.getBody();
+
+        final String expectedMsg = "{\"body\":\"" + msgBody + "\",\"base64Encoded\":false}";
+        assertThat(secondBody == firstBody, is(true));
+        assertThat(new String(firstBody, UTF8), is("[" + expectedMsg + "]"));
+        assertThat(new String(thirdBody, UTF8), is("[" + expectedMsg + "," + expectedMsg + "]"));
+    }
+
+    // Tests_SRS_HTTPSBATCHMESSAGE_11_007: [The batch message body shall be encoded using UTF-8.]
+    @Test
+    public void addMessageEncodesNonAsciiBodyUsingUtf8(
+            @Mocked final HttpsSingleMessage mockMsg) throws
+            SizeLimitExceededException
+    {
+        final String msgBody = "caf\u00e9 \u20ac \ud83d\ude00 \ud800";
+        final boolean isBase64Encoded = false;
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBodyAsString();
+                result = msgBody;
+                mockMsg.isBase64Encoded();
+                result = isBase64Encoded;
+            }
+        };
+
+        HttpsBatchMessage batchMsg = new HttpsBatchMessage();
+        batchMsg.addMessage(mockMsg);
+        byte[] testBatchBody = batchMsg.getBody();
+
+        final byte[] expectedBatchBody =
+                ("[{\"body\":\"" + msgBody + "\",\"base64Encoded\":false}]").getBytes(UTF8);
+        assertThat(testBatchBody, is(expectedBatchBody));
+    }
+
     // Tests_SRS_HTTPSBATCHMESSAGE_11_004: [The JSON object shall have the field "base64Encoded" set to whether the raw message was Base64-encoded.]
     @Test
     public void addMessageSetsBase64Correctly(
@@ -171,6 +258,78 @@ public class HttpsBatchMessageTest
         }
     }
 
+    // Tests_SRS_HTTPSBATCHMESSAGE_11_009: [If the function throws a SizeLimitExceededException, the batched message shall remain as if the message was never added.]
+    @Test
+    public void addMessageRejectsOverflowingMessageAndPreservesExactBody(
+            @Mocked final HttpsSingleMessage mockSmallMsg,
+            @Mocked final HttpsSingleMessage mockLargeMsg) throws
+            SizeLimitExceededException
+    {
+        final String smallMsgBody = "test-msg-body";
+        final String largeMsgBody = new String(new byte[SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES], UTF8);
+        new NonStrictExpectations()
+        {
+            {
+                mockSmallMsg.getBodyAsString();
+                result = smallMsgBody;
+                mockLargeMsg.getBodyAsString();
+                result = largeMsgBody;
+            }
+        };
+
+        HttpsBatchMessage batchMsg = new HttpsBatchMessage();
+        batchMsg.addMessage(mockSmallMsg);
+        final byte[] expectedBatchBody = batchMsg.getBody();
+        boolean sizeLimitExceeded = false;
+        try
+        {
+            batchMsg.addMessage(mockLargeMsg);
+        }
+        catch (SizeLimitExceededException e)
+        {
+            sizeLimitExceeded = true;
+        }
+
+        assertThat(sizeLimitExceeded, is(true));
+        assertThat(batchMsg.getBody(), is(expectedBatchBody));
+        assertThat(batchMsg.numMessages(), is(1));
+    }
+
+    // Tests_SRS_HTTPSBATCHMESSAGE_11_008: [If adding the message causes the batched message to exceed 256 kb in size, the function shall throw a SizeLimitExceededException.]
+    @Test
+    public void addMessageRejectsOverflowingMessageWithoutGrowingBody(
+            @Mocked final HttpsSingleMessage mockMsg)
+    {
+        // every char takes 3 bytes in UTF-8, so the encoded body is 3 times the size limit.
+        final char[] msgBodyChars = new char[SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES];
+        Arrays.fill(msgBodyChars, '\u20AC');
+        final String msgBody = new String(msgBodyChars);
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBodyAsString();
+                result = msgBody;
+            }
+        };
+
+        HttpsBatchMessage batchMsg = new HttpsBatchMessage();
+        boolean sizeLimitExceeded = false;
+        try
+        {
+            batchMsg.addMessage(mockMsg);
+        }
+        catch (SizeLimitExceededException e)
+        {
+            sizeLimitExceeded = true;
+        }
+
+        assertThat(sizeLimitExceeded, is(true));
+        byte[] batchBody = Deencapsulation.getField(batchMsg, "batchBody");
+        assertThat(batchBody.length, is(lessThan(SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES)));
+        assertThat(batchMsg.getBody(), is(new byte[] { '[', ']' }));
+        assertThat(batchMsg.numMessages(), is(0));
+    }
+
     // Tests_SRS_HTTPSBATCHMESSAGE_11_011: [The function shall return 'application/vnd.microsoft.iothub.json'.]
     @Test
     public void getContentTypeReturnsCorrectContentType()
@@ -0,0 +1,63 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport.https;
+
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsConnectionPool;
+import org.junit.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import java.net.Socket;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+
+/** Unit tests for HttpsConnectionPool. */
+public class HttpsConnectionPoolTest
+{
+    private static SSLContext createSSLContext() throws Exception
+    {
+        SSLContext sslContext = SSLContext.getInstance("TLSv1.2");
+        sslContext.init(null, null, null);
+        return sslContext;
+    }
+
+    // Tests_SRS_HTTPSCONNECTIONPOOL_21_001: [The function shall throw IllegalArgumentException if the SSL context is null.]
+    @Test (expected = IllegalArgumentException.class)
+    public void getSocketFactoryThrowsOnNullContext()
+    {
+        HttpsConnectionPool.getSocketFactory(null);
+    }
+
+    // Tests_SRS_HTTPSCONNECTIONPOOL_21_002: [The function shall return the same socket factory for the same SSL context,
+    // creating it on the first call.]
+    @Test
+    public void getSocketFactoryReturnsOneFactoryPerContext() throws Exception
+    {
+        SSLContext sslContext1 = createSSLContext();
+        SSLContext sslContext2 = createSSLContext();
+
+        SSLSocketFactory socketFactory1 = HttpsConnectionPool.getSocketFactory(sslContext1);
+        SSLSocketFactory socketFactory2 = HttpsConnectionPool.getSocketFactory(sslContext2);
+
+        assertSame(socketFactory1, HttpsConnectionPool.getSocketFactory(sslContext1));
+        assertNotSame(socketFactory1, socketFactory2);
+        assertThat(socketFactory1.getSupportedCipherSuites(), is(sslContext1.getSocketFactory().getSupportedCipherSuites()));
+    }
+
+    // Tests_SRS_HTTPSCONNECTIONPOOL_21_003: [The function shall return the number of sockets created by the shared socket factories.]
+    @Test
+    public void getOpenedConnectionCountCountsCreatedSockets() throws Exception
+    {
+        SSLSocketFactory socketFactory = HttpsConnectionPool.getSocketFactory(createSSLContext());
+        long openedConnectionCount = HttpsConnectionPool.getOpenedConnectionCount();
+
+        Socket socket = socketFactory.createSocket();
+        socket.close();
+
+        assertThat(HttpsConnectionPool.getOpenedConnectionCount(), is(openedConnectionCount + 1));
+    }
+}
@@ -4,18 +4,22 @@
 package tests.unit.com.microsoft.azure.sdk.iot.device.transport.https;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 
 import com.microsoft.azure.sdk.iot.device.IotHubSSLContext;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsConnection;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsConnectionPool;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsMethod;
 
 import mockit.Deencapsulation;
+import mockit.Delegate;
 import mockit.Mocked;
 import mockit.NonStrictExpectations;
 import mockit.Verifications;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -26,6 +30,7 @@ import java.util.Map;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
 
 /** Unit tests for HttpsConnection. */
 public class HttpsConnectionTest
@@ -327,6 +332,7 @@ public class HttpsConnectionTest
     }
 
     //Tests_SRS_HTTPSCONNECTION_25_024: [**The function shall set the the SSL context with the given value.**]**
+    // Tests_SRS_HTTPSCONNECTION_21_026: [The function shall use the socket factory shared by the HttpsConnectionPool for the SSL context, so the connection can be reused by later requests.]
     @Test
     public void setSSLContextSetsContext(@Mocked final SSLContext mockedContext) throws IOException
     {
@@ -352,12 +358,65 @@ public class HttpsConnectionTest
         new Verifications()
         {
             {
-                mockUrlConn.setSSLSocketFactory(mockedContext.getSocketFactory());
+                mockUrlConn.setSSLSocketFactory(HttpsConnectionPool.getSocketFactory(mockedContext));
                 times = 1;
             }
         };
     }
 
+    // Tests_SRS_HTTPSCONNECTION_21_026: [The function shall use the socket factory shared by the HttpsConnectionPool for the SSL context, so the connection can be reused by later requests.]
+    @Test
+    public void setSSLContextSharesSocketFactoryBetweenConnections(@Mocked final SSLContext mockedContext) throws IOException
+    {
+        final HttpsMethod httpsMethod = HttpsMethod.POST;
+        final List<SSLSocketFactory> socketFactories = new LinkedList<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+                mockUrl.openConnection();
+                result = mockUrlConn;
+                mockUrlConn.setSSLSocketFactory((SSLSocketFactory) any);
+                result = new Delegate()
+                {
+                    void setSSLSocketFactory(SSLSocketFactory socketFactory)
+                    {
+                        socketFactories.add(socketFactory);
+                    }
+                };
+            }
+        };
+
+        Deencapsulation.invoke(new HttpsConnection(mockUrl, httpsMethod), "setSSLContext", mockedContext);
+        Deencapsulation.invoke(new HttpsConnection(mockUrl, httpsMethod), "setSSLContext", mockedContext);
+
+        assertThat(socketFactories.size(), is(2));
+        assertSame(socketFactories.get(0), socketFactories.get(1));
+    }
+
+    // Tests_SRS_HTTPSCONNECTION_21_027: [The function shall count the request in the HttpsConnectionPool statistics.]
+    @Test
+    public void connectCountsSentRequest() throws IOException
+    {
+        final HttpsMethod httpsMethod = HttpsMethod.GET;
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+                mockUrl.openConnection();
+                result = mockUrlConn;
+            }
+        };
+        HttpsConnection conn = new HttpsConnection(mockUrl, httpsMethod);
+        long sentRequestCount = HttpsConnectionPool.getSentRequestCount();
+
+        conn.connect();
+
+        assertThat(HttpsConnectionPool.getSentRequestCount(), is(sentRequestCount + 1));
+    }
+
     //Tests_SRS_HTTPSCONNECTION_25_025: [The function shall throw IllegalArgumentException if the context is null value.**]**
     @Test (expected = IllegalArgumentException.class)
     public void setSSLContextThrowsOnNullContext(@Mocked final SSLContext mockedContext) throws IOException
@@ -428,8 +487,7 @@ public class HttpsConnectionTest
 
     // Tests_SRS_HTTPSCONNECTION_11_011: [The function shall read from the input stream (response stream) and return the response.]
     @Test
-    public void readInputCompletelyReadsInputStream(
-            @Mocked final InputStream mockIs)
+    public void readInputCompletelyReadsInputStream()
             throws IOException
     {
         final HttpsMethod httpsMethod = HttpsMethod.GET;
@@ -443,9 +501,7 @@ public class HttpsConnectionTest
                 mockUrlConn.getRequestMethod();
                 result = httpsMethod.name();
                 mockUrlConn.getInputStream();
-                result = mockIs;
-                mockIs.read();
-                returns(1, 2, 3, -1);
+                result = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
             }
         };
         HttpsConnection conn = new HttpsConnection(mockUrl, httpsMethod);
@@ -457,6 +513,131 @@ public class HttpsConnectionTest
         assertThat(testResponse, is(expectedResponse));
     }
 
+    // Tests_SRS_HTTPSCONNECTION_11_011: [The function shall read from the input stream (response stream) and return the response.]
+    @Test
+    public void readInputCompletelyReadsInputStreamLargerThanReadBuffer()
+            throws IOException
+    {
+        final HttpsMethod httpsMethod = HttpsMethod.GET;
+        final byte[] expectedResponse = new byte[100 * 1024 + 1];
+        for (int i = 0; i < expectedResponse.length; ++i)
+        {
+            expectedResponse[i] = (byte) i;
+        }
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+                mockUrl.openConnection();
+                result = mockUrlConn;
+                mockUrlConn.getRequestMethod();
+                result = httpsMethod.name();
+                mockUrlConn.getContentLength();
+                result = -1;
+                mockUrlConn.getInputStream();
+                result = new ByteArrayInputStream(expectedResponse);
+            }
+        };
+        HttpsConnection conn = new HttpsConnection(mockUrl, httpsMethod);
+        conn.connect();
+
+        byte[] testResponse = conn.readInput();
+
+        assertThat(testResponse, is(expectedResponse));
+    }
+
+    // Tests_SRS_HTTPSCONNECTION_11_011: [The function shall read from the input stream (response stream) and return the response.]
+    @Test
+    public void readInputCompletelyReadsInputStreamWithContentLength()
+            throws IOException
+    {
+        final HttpsMethod httpsMethod = HttpsMethod.GET;
+        final byte[] expectedResponse = new byte[300 * 1024];
+        for (int i = 0; i < expectedResponse.length; ++i)
+        {
+            expectedResponse[i] = (byte) i;
+        }
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+                mockUrl.openConnection();
+                result = mockUrlConn;
+                mockUrlConn.getRequestMethod();
+                result = httpsMethod.name();
+                mockUrlConn.getContentLength();
+                result = expectedResponse.length;
+                mockUrlConn.getInputStream();
+                result = new ByteArrayInputStream(expectedResponse);
+            }
+        };
+        HttpsConnection conn = new HttpsConnection(mockUrl, httpsMethod);
+        conn.connect();
+
+        byte[] testResponse = conn.readInput();
+
+        assertThat(testResponse, is(expectedResponse));
+    }
+
+    // Tests_SRS_HTTPSCONNECTION_11_011: [The function shall read from the input stream (response stream) and return the response.]
+    @Test
+    public void readInputDoesNotTrustLargeContentLength()
+            throws IOException
+    {
+        final HttpsMethod httpsMethod = HttpsMethod.GET;
+        final byte[] expectedResponse = { 1, 2, 3 };
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+                mockUrl.openConnection();
+                result = mockUrlConn;
+                mockUrlConn.getRequestMethod();
+                result = httpsMethod.name();
+                mockUrlConn.getContentLength();
+                result = Integer.MAX_VALUE;
+                mockUrlConn.getInputStream();
+                result = new ByteArrayInputStream(expectedResponse);
+            }
+        };
+        HttpsConnection conn = new HttpsConnection(mockUrl, httpsMethod);
+        conn.connect();
+
+        byte[] testResponse = conn.readInput();
+
+        assertThat(testResponse, is(expectedResponse));
+    }
+
+    @Test
+    public void getInputStreamReturnsResponseStream(
+            @Mocked final InputStream mockIs)
+            throws IOException
+    {
+        final HttpsMethod httpsMethod = HttpsMethod.GET;
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+                mockUrl.openConnection();
+                result = mockUrlConn;
+                mockUrlConn.getRequestMethod();
+                result = httpsMethod.name();
+                mockUrlConn.getInputStream();
+                result = mockIs;
+            }
+        };
+        HttpsConnection conn = new HttpsConnection(mockUrl, httpsMethod);
+        conn.connect();
+
+        InputStream testStream = conn.getInputStream();
+
+        assertThat(testStream, is(mockIs));
+    }
+
     // Tests_SRS_HTTPSCONNECTION_11_012: [The function shall throw an IOException if the input stream could not be accessed.]
     @Test(expected = IOException.class)
     public void readInputFailsIfCannotAccessInputStream()
@@ -499,7 +680,7 @@ public class HttpsConnectionTest
                 result = httpsMethod.name();
                 mockUrlConn.getInputStream();
                 result = mockIs;
-                mockIs.read();
+                mockIs.read((byte[]) any, anyInt, anyInt);
                 result = -1;
             }
         };
@@ -518,8 +699,7 @@ public class HttpsConnectionTest
 
     // Tests_SRS_HTTPSCONNECTION_11_013: [The function shall read from the error stream and return the response.]
     @Test
-    public void readErrorCompletelyReadsErrorStream(
-            @Mocked final InputStream mockIs)
+    public void readErrorCompletelyReadsErrorStream()
             throws IOException
     {
         final HttpsMethod httpsMethod = HttpsMethod.GET;
@@ -533,9 +713,7 @@ public class HttpsConnectionTest
                 mockUrlConn.getRequestMethod();
                 result = httpsMethod.name();
                 mockUrlConn.getErrorStream();
-                result = mockIs;
-                mockIs.read();
-                returns(1, 2, 3, -1);
+                result = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
             }
         };
         HttpsConnection conn = new HttpsConnection(mockUrl, httpsMethod);
@@ -617,7 +795,7 @@ public class HttpsConnectionTest
                 result = httpsMethod.name();
                 mockUrlConn.getErrorStream();
                 result = mockIs;
-                mockIs.read();
+                mockIs.read((byte[]) any, anyInt, anyInt);
                 result = -1;
             }
         };
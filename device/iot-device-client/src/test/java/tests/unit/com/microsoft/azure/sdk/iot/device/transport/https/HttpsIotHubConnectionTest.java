@@ -8,7 +8,7 @@ import static org.junit.Assert.assertThat;
 import static org.hamcrest.CoreMatchers.is;
 
 import com.microsoft.azure.sdk.iot.device.*;
-import com.microsoft.azure.sdk.iot.device.auth.IotHubSasToken;
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenManager;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsIotHubConnection;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsMethod;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsRequest;
@@ -42,7 +42,7 @@ public class HttpsIotHubConnectionTest
     @Mocked
     HttpsSingleMessage mockMsg;
     @Mocked
-    IotHubSasToken mockToken;
+    IotHubSasTokenManager mockTokenManager;
     @Mocked
     HttpsRequest mockRequest;
     @Mocked
@@ -213,7 +213,7 @@ public class HttpsIotHubConnectionTest
         };
     }
 
-    // Tests_SRS_HTTPSIOTHUBCONNECTION_11_007: [The function shall set the header field 'authorization' to be a valid SAS token generated from the configuration parameters.]
+    // Tests_SRS_HTTPSIOTHUBCONNECTION_11_007: [The function shall set the header field 'authorization' to be the SAS token cached by the IotHubSasTokenManager of the configuration.]
     @Test
     public void sendEventSetsAuthToSasToken(@Mocked final IotHubEventUri mockUri) throws IOException
     {
@@ -230,9 +230,9 @@ public class HttpsIotHubConnectionTest
                 result = deviceId;
                 mockConfig.getDeviceKey();
                 result = deviceKey;
-                new IotHubSasToken(mockConfig, anyLong);
-                result = mockToken;
-                mockToken.toString();
+                mockConfig.getSasTokenManager();
+                result = mockTokenManager;
+                mockTokenManager.getSasToken();
                 result = tokenStr;
             }
         };
@@ -415,7 +415,7 @@ public class HttpsIotHubConnectionTest
         };
     }
 
-    // Tests_SRS_HTTPSIOTHUBCONNECTION_11_016: [The function shall set the header field 'authorization' to be a valid SAS token generated from the configuration parameters.]
+    // Tests_SRS_HTTPSIOTHUBCONNECTION_11_016: [The function shall set the header field 'authorization' to be the SAS token cached by the IotHubSasTokenManager of the configuration.]
     @Test
     public void receiveMessageSetsAuthToSasToken(@Mocked final IotHubMessageUri mockUri) throws IOException
     {
@@ -432,9 +432,9 @@ public class HttpsIotHubConnectionTest
                 result = deviceId;
                 mockConfig.getDeviceKey();
                 result = deviceKey;
-                new IotHubSasToken(mockConfig, anyLong);
-                result = mockToken;
-                mockToken.toString();
+                mockConfig.getSasTokenManager();
+                result = mockTokenManager;
+                mockTokenManager.getSasToken();
                 result = tokenStr;
             }
         };
@@ -1023,7 +1023,7 @@ public class HttpsIotHubConnectionTest
         };
     }
 
-    // Tests_SRS_HTTPSIOTHUBCONNECTION_11_034: [The function shall set the header field 'authorization' to be a valid SAS token generated from the configuration parameters.]
+    // Tests_SRS_HTTPSIOTHUBCONNECTION_11_034: [The function shall set the header field 'authorization' to be the SAS token cached by the IotHubSasTokenManager of the configuration.]
     @Test
     public void sendMessageResultSetsAuthToSasToken(@Mocked final IotHubRejectUri mockUri) throws IOException
     {
@@ -1049,9 +1049,9 @@ public class HttpsIotHubConnectionTest
                 result = deviceId;
                 mockConfig.getDeviceKey();
                 result = deviceKey;
-                new IotHubSasToken(mockConfig, anyLong);
-                result = mockToken;
-                mockToken.toString();
+                mockConfig.getSasTokenManager();
+                result = mockTokenManager;
+                mockTokenManager.getSasToken();
                 result = tokenStr;
             }
         };
@@ -11,6 +11,7 @@ import org.junit.Test;
 
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsResponse;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -58,6 +59,23 @@ public class HttpsResponseTest
         assertThat(testBody, is(not(expectedBody)));
     }
 
+    @Test
+    public void getBodyAsByteBufferReturnsReadOnlyViewOfBody()
+    {
+        final int status = 200;
+        final byte[] body = { 1, 2, 3, 4 };
+        final Map<String, List<String>> headerFields = new HashMap<>();
+        byte[] errorReason = {};
+
+        HttpsResponse response =
+                new HttpsResponse(status, body, headerFields, errorReason);
+        ByteBuffer testBody = response.getBodyAsByteBuffer();
+
+        final ByteBuffer expectedBody = ByteBuffer.wrap(body);
+        assertThat(testBody, is(expectedBody));
+        assertThat(testBody.isReadOnly(), is(true));
+    }
+
     // Tests_SRS_HTTPSRESPONSE_11_001: [The constructor shall store the input arguments so that the getters can return them later.]
     // Tests_SRS_HTTPSRESPONSE_11_004: [The function shall return a comma-separated list of the values associated with the header field name.]
     @Test
@@ -17,6 +17,7 @@ import mockit.NonStrictExpectations;
 import mockit.Verifications;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -38,8 +39,8 @@ public class HttpsSingleMessageTest
             {
                 mockMsg.getBytes();
                 result = body;
-                mockMsg.getProperties();
-                result = properties;
+                mockMsg.getPropertyList();
+                result = Arrays.asList(properties);
                 mockProperty.getName();
                 result = propertyName;
                 mockProperty.getValue();
@@ -73,8 +74,8 @@ public class HttpsSingleMessageTest
             {
                 mockMsg.getBytes();
                 result = body;
-                mockMsg.getProperties();
-                result = properties;
+                mockMsg.getPropertyList();
+                result = Arrays.asList(properties);
                 mockProperty.getName();
                 result = propertyName;
                 mockProperty.getValue();
@@ -145,8 +146,8 @@ public class HttpsSingleMessageTest
             {
                 mockMsg.getBytes();
                 result = body;
-                mockMsg.getProperties();
-                result = properties;
+                mockMsg.getPropertyList();
+                result = Arrays.asList(properties);
                 mockMsg.getMessageId();
                 result = messageidValue;
                 mockProperty.getName();
@@ -370,8 +371,8 @@ public class HttpsSingleMessageTest
             {
                 mockMsg.getBytes();
                 result = body;
-                mockMsg.getProperties();
-                result = properties;
+                mockMsg.getPropertyList();
+                result = Arrays.asList(properties);
                 mockProperty.getName();
                 result = propertyName;
                 mockProperty.getValue();
@@ -406,8 +407,8 @@ public class HttpsSingleMessageTest
             {
                 mockMsg.getBytes();
                 result = body;
-                mockMsg.getProperties();
-                result = properties;
+                mockMsg.getPropertyList();
+                result = Arrays.asList(properties);
                 mockProperty.getName();
                 result = propertyName;
                 mockProperty.getValue();
@@ -439,8 +440,8 @@ public class HttpsSingleMessageTest
             {
                 mockMsg.getBytes();
                 result = body;
-                mockMsg.getProperties();
-                result = properties;
+                mockMsg.getPropertyList();
+                result = Arrays.asList(properties);
                 mockProperty.getName();
                 result = propertyName;
                 mockProperty.getValue();
@@ -472,8 +473,8 @@ public class HttpsSingleMessageTest
             {
                 mockMsg.getBytes();
                 result = body;
-                mockMsg.getProperties();
-                result = properties;
+                mockMsg.getPropertyList();
+                result = Arrays.asList(properties);
                 mockProperty.getName();
                 result = propertyName;
                 result = httpsPropertyName;
@@ -17,6 +17,7 @@ import com.microsoft.azure.sdk.iot.device.transport.https.HttpsTransport;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubCallbackPacket;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubOutboundPacket;
 import junit.framework.AssertionFailedError;
+import mockit.Deencapsulation;
 import mockit.MockUp;
 import mockit.Mocked;
 import mockit.NonStrictExpectations;
@@ -593,6 +594,28 @@ public class HttpsTransportTest
         transport.handleMessage();
     }
 
+    // Tests_SRS_HTTPSTRANSPORT_21_001: [The function shall return the number of messages in the waiting list.]
+    // Tests_SRS_HTTPSTRANSPORT_21_002: [The function shall return the number of messages in the in progress list.]
+    @Test
+    public void getMessageCountsReturnWaitingAndInProgressListSizes(
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback,
+            @Mocked final IotHubOutboundPacket mockPacket)
+            throws IOException
+    {
+        final Map<String, Object> context = new HashMap<>();
+
+        HttpsTransport transport = new HttpsTransport(mockConfig);
+        transport.open();
+        transport.addMessage(mockMsg, mockCallback, context);
+        transport.addMessage(mockMsg, mockCallback, context);
+        Queue<IotHubOutboundPacket> inProgressList = Deencapsulation.getField(transport, "inProgressList");
+        inProgressList.add(mockPacket);
+
+        assertThat(transport.getQueuedMessageCount(), is(2));
+        assertThat(transport.getInProgressMessageCount(), is(1));
+    }
+
     // Tests_SRS_HTTPSTRANSPORT_11_015: [The function shall return true if the waiting list, in progress list, and callback list are all empty, and false otherwise.]
     @Test
     public void isEmptyReturnsFalseIfWaitingListIsNotEmpty(
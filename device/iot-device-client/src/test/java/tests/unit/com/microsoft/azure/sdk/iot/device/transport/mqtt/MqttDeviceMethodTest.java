@@ -10,13 +10,13 @@ import com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceOperations;
 
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.Mqtt;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttDeviceMethod;
+import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttReceivedMessages;
 import mockit.*;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentSkipListMap;
 
 import static com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceOperations.*;
 import static org.junit.Assert.assertNotNull;
@@ -29,7 +29,7 @@ public class MqttDeviceMethodTest
     Mqtt mockedMqtt;
 
     /*
-    Tests_SRS_MqttDeviceMethod_25_001: [**The constructor shall instantiate super class without any parameters.**]**
+    Tests_SRS_MqttDeviceMethod_25_001: [**The constructor shall instantiate super class sharing the mqtt connection of mqttConnection.**]**
 
     Tests_SRS_MqttDeviceMethod_25_002: [**The constructor shall create subscribe and response topics strings for device methods as per the spec.**]**
      */
@@ -41,7 +41,7 @@ public class MqttDeviceMethodTest
         String actualResTopic = "$iothub/methods/res";
 
         //act
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
 
         //assert
         String testSubscribeTopic = Deencapsulation.getField(testMethod, "subscribeTopic");
@@ -61,7 +61,7 @@ public class MqttDeviceMethodTest
     public void startSucceedsCalls() throws IOException
     {
         //arrange
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
 
         //act
         testMethod.start();
@@ -81,7 +81,7 @@ public class MqttDeviceMethodTest
     public void startSucceedsDoesNotCallsSubscribeIfStarted() throws IOException
     {
         //arrange
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
         testMethod.start();
         //act
         testMethod.start();
@@ -103,7 +103,7 @@ public class MqttDeviceMethodTest
     public void stopSucceedsCallsUnSubscribe() throws IOException
     {
         //arrange
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
         testMethod.start();
 
         //act
@@ -124,7 +124,7 @@ public class MqttDeviceMethodTest
     public void stopSucceedsDoesNotCallUnSubscribeIfStopped() throws IOException
     {
         //arrange
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
         testMethod.start();
         testMethod.stop();
 
@@ -145,7 +145,7 @@ public class MqttDeviceMethodTest
     public void stopSucceedsDoesNotCallUnSubscribeIfNotStarted() throws IOException
     {
         //arrange
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
 
         //act
         testMethod.stop();
@@ -176,7 +176,7 @@ public class MqttDeviceMethodTest
         byte[] actualPayload = "TestMessage".getBytes();
         DeviceMethodMessage testMessage = new DeviceMethodMessage(actualPayload);
         testMessage.setDeviceOperationType(DEVICE_OPERATION_METHOD_SUBSCRIBE_REQUEST);
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
         testMethod.start();
 
         //act
@@ -203,7 +203,7 @@ public class MqttDeviceMethodTest
         testMessage.setDeviceOperationType(DEVICE_OPERATION_METHOD_SEND_RESPONSE);
         testMessage.setRequestId("ReqId");
         testMessage.setStatus("testStatus");
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
         Map<String, DeviceOperations> testRequestMap = new HashMap<>();
         testRequestMap.put("ReqId", DEVICE_OPERATION_METHOD_RECEIVE_REQUEST);
         Deencapsulation.setField(testMethod, "requestMap", testRequestMap);
@@ -229,7 +229,7 @@ public class MqttDeviceMethodTest
         final byte[] actualPayload = "TestMessage".getBytes();
         final DeviceMethodMessage testMessage = new DeviceMethodMessage(actualPayload);
         testMessage.setDeviceOperationType(DEVICE_OPERATION_UNKNOWN);
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
         testMethod.start();
 
         //act
@@ -244,7 +244,7 @@ public class MqttDeviceMethodTest
     {
         final byte[] actualPayload = "TestMessage".getBytes();
         final DeviceMethodMessage testMessage = new DeviceMethodMessage(actualPayload);
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
 
         //act
         testMethod.send(testMessage);
@@ -256,7 +256,7 @@ public class MqttDeviceMethodTest
     @Test (expected = IllegalArgumentException.class)
     public void sendThrowsOnMessageNull() throws IOException
     {
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
         testMethod.start();
         //act
         testMethod.send(null);
@@ -271,7 +271,7 @@ public class MqttDeviceMethodTest
         final byte[] actualPayload = "TestMessage".getBytes();
         final DeviceMethodMessage testMessage = new DeviceMethodMessage(actualPayload);
         testMessage.setMessageType(MessageType.DeviceTwin);
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
         testMethod.start();
 
         //act
@@ -300,7 +300,7 @@ public class MqttDeviceMethodTest
         final DeviceMethodMessage testMessage = new DeviceMethodMessage(actualPayload);
         testMessage.setMessageType(MessageType.DeviceMethods);
         testMessage.setDeviceOperationType(DEVICE_OPERATION_METHOD_SEND_RESPONSE);
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
         testMethod.start();
 
         //act
@@ -318,7 +318,7 @@ public class MqttDeviceMethodTest
         testMessage.setDeviceOperationType(DEVICE_OPERATION_METHOD_SEND_RESPONSE);
         testMessage.setRequestId("ReqId");
         testMessage.setStatus("testStatus");
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
         testMethod.start();
 
         //act
@@ -336,7 +336,7 @@ public class MqttDeviceMethodTest
         testMessage.setDeviceOperationType(DEVICE_OPERATION_METHOD_SEND_RESPONSE);
         testMessage.setRequestId("ReqId");
         testMessage.setStatus("testStatus");
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
         Map<String, DeviceOperations> testRequestMap = new HashMap<>();
         testRequestMap.put("ReqId", DEVICE_OPERATION_METHOD_SUBSCRIBE_REQUEST);
         Deencapsulation.setField(testMethod, "requestMap", testRequestMap);
@@ -359,11 +359,11 @@ public class MqttDeviceMethodTest
         //arrange
         String topic = "$iothub/methods/POST/testMethod/?$rid=10";
         byte[] actualPayload = "TestPayload".getBytes();
-        ConcurrentSkipListMap<String, byte[]> testAllReceivedMessages = new ConcurrentSkipListMap<>();
-        testAllReceivedMessages.put(topic, actualPayload);
-        Deencapsulation.setField(mockedMqtt, "allReceivedMessages", testAllReceivedMessages);
+        MqttReceivedMessages testAllReceivedMessages = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+        Deencapsulation.invoke(testAllReceivedMessages, "add", topic, actualPayload);
 
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
+        Deencapsulation.setField(testMethod, "receivedMessages", testAllReceivedMessages);
         testMethod.start();
 
         //act
@@ -387,11 +387,11 @@ public class MqttDeviceMethodTest
         //arrange
         String topic = "$iothub/not_methods/POST/testMethod/?$rid=10";
         byte[] actualPayload = "TestPayload".getBytes();
-        ConcurrentSkipListMap<String, byte[]> testAllReceivedMessages = new ConcurrentSkipListMap<>();
-        testAllReceivedMessages.put(topic, actualPayload);
-        Deencapsulation.setField(mockedMqtt, "allReceivedMessages", testAllReceivedMessages);
+        MqttReceivedMessages testAllReceivedMessages = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+        Deencapsulation.invoke(testAllReceivedMessages, "add", topic, actualPayload);
 
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
+        Deencapsulation.setField(testMethod, "receivedMessages", testAllReceivedMessages);
         testMethod.start();
 
         //act
@@ -410,11 +410,11 @@ public class MqttDeviceMethodTest
         //arrange
         String topic = "$iothub/methods/Not_POST/testMethod/?$rid=10";
         byte[] actualPayload = "TestPayload".getBytes();
-        ConcurrentSkipListMap<String, byte[]> testAllReceivedMessages = new ConcurrentSkipListMap<>();
-        testAllReceivedMessages.put(topic, actualPayload);
-        Deencapsulation.setField(mockedMqtt, "allReceivedMessages", testAllReceivedMessages);
+        MqttReceivedMessages testAllReceivedMessages = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+        Deencapsulation.invoke(testAllReceivedMessages, "add", topic, actualPayload);
 
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
+        Deencapsulation.setField(testMethod, "receivedMessages", testAllReceivedMessages);
         testMethod.start();
 
         //act
@@ -430,11 +430,11 @@ public class MqttDeviceMethodTest
         //arrange
         String topic = "$iothub/methods/POST/";
         byte[] actualPayload = "TestPayload".getBytes();
-        ConcurrentSkipListMap<String, byte[]> testAllReceivedMessages = new ConcurrentSkipListMap<>();
-        testAllReceivedMessages.put(topic, actualPayload);
-        Deencapsulation.setField(mockedMqtt, "allReceivedMessages", testAllReceivedMessages);
+        MqttReceivedMessages testAllReceivedMessages = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+        Deencapsulation.invoke(testAllReceivedMessages, "add", topic, actualPayload);
 
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
+        Deencapsulation.setField(testMethod, "receivedMessages", testAllReceivedMessages);
         testMethod.start();
 
         //act
@@ -450,11 +450,11 @@ public class MqttDeviceMethodTest
         //arrange
         String topic = "$iothub/methods/POST/testMethod/";
         byte[] actualPayload = "TestPayload".getBytes();
-        ConcurrentSkipListMap<String, byte[]> testAllReceivedMessages = new ConcurrentSkipListMap<>();
-        testAllReceivedMessages.put(topic, actualPayload);
-        Deencapsulation.setField(mockedMqtt, "allReceivedMessages", testAllReceivedMessages);
+        MqttReceivedMessages testAllReceivedMessages = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+        Deencapsulation.invoke(testAllReceivedMessages, "add", topic, actualPayload);
 
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
+        Deencapsulation.setField(testMethod, "receivedMessages", testAllReceivedMessages);
         testMethod.start();
 
         //act
@@ -467,11 +467,11 @@ public class MqttDeviceMethodTest
         //arrange
         String topic = "$iothub/methods/POST/testMethod/?$rid=10";
         byte[] actualPayload = "".getBytes();
-        ConcurrentSkipListMap<String, byte[]> testAllReceivedMessages = new ConcurrentSkipListMap<>();
-        testAllReceivedMessages.put(topic, actualPayload);
-        Deencapsulation.setField(mockedMqtt, "allReceivedMessages", testAllReceivedMessages);
+        MqttReceivedMessages testAllReceivedMessages = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+        Deencapsulation.invoke(testAllReceivedMessages, "add", topic, actualPayload);
 
-        MqttDeviceMethod testMethod = new MqttDeviceMethod();
+        MqttDeviceMethod testMethod = new MqttDeviceMethod(mockedMqtt);
+        Deencapsulation.setField(testMethod, "receivedMessages", testAllReceivedMessages);
         testMethod.start();
 
         //act
@@ -9,6 +9,7 @@ import com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceOperations;
 import com.microsoft.azure.sdk.iot.device.MessageType;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.Mqtt;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttDeviceTwin;
+import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttReceivedMessages;
 import mockit.*;
 import mockit.Deencapsulation;
 import mockit.Mocked;
@@ -17,9 +18,9 @@ import mockit.Verifications;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentSkipListMap;
 
 import static com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceOperations.*;
 
@@ -37,7 +38,7 @@ public class MqttDeviceTwinTest
     IOException mockIOException;
 
     /*
-    **Tests_SRS_MQTTDEVICETWIN_25_001: [**The constructor shall instantiate super class without any parameters.**]**
+    **Tests_SRS_MQTTDEVICETWIN_25_001: [**The constructor shall instantiate super class sharing the mqtt connection of mqttConnection.**]**
     **Tests_SRS_MQTTDEVICETWIN_25_002: [**The constructor shall construct device twin response subscribeTopic.**]**
      */
     @Test
@@ -47,7 +48,7 @@ public class MqttDeviceTwinTest
 
 
         //act
-        MqttDeviceTwin testTwin = new MqttDeviceTwin();
+        MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
         //assert
         String actualSubscribeTopic = Deencapsulation.getField(testTwin, "subscribeTopic");
         assertNotNull(actualSubscribeTopic);
@@ -62,7 +63,7 @@ public class MqttDeviceTwinTest
     {
         //arrange
 
-        MqttDeviceTwin testTwin = new MqttDeviceTwin();
+        MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
         //act
 
         testTwin.start();
@@ -95,7 +96,7 @@ public class MqttDeviceTwinTest
                 }
             };
 
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
 
             //act
             testTwin.start();
@@ -115,7 +116,7 @@ public class MqttDeviceTwinTest
     {
         //arrange
 
-        MqttDeviceTwin testTwin = new MqttDeviceTwin();
+        MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
         Deencapsulation.setField(testTwin, "isStarted", true);
         //act
 
@@ -148,7 +149,7 @@ public class MqttDeviceTwinTest
                 }
             };
 
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             Deencapsulation.setField(testTwin, "isStarted", true);
             //act
             testTwin.stop();
@@ -167,12 +168,12 @@ public class MqttDeviceTwinTest
     public void parseTopicLooksForDeviceTwinTopic(@Mocked final Mqtt mockMqtt) throws IOException
     {
         //arrange
-        MqttDeviceTwin testTwin = new MqttDeviceTwin();
+        MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
 
         String insertTopic = "$iothub/twin/res";
-        ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-        testMap.put(insertTopic, "DataData".getBytes());
-        Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+        MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+        Deencapsulation.invoke(testMap, "add", insertTopic, "DataData".getBytes());
+        Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
         //act
 
@@ -190,12 +191,12 @@ public class MqttDeviceTwinTest
     public void parseTopicReturnsNullIfNoDeviceTwinTopicFound(@Mocked final Mqtt mockMqtt) throws IOException
     {
         //arrange
-        MqttDeviceTwin testTwin = new MqttDeviceTwin();
+        MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
 
         String insertTopic = "$iothub/Nottwin/res";
-        ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-        testMap.put(insertTopic, "DataData".getBytes());
-        Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+        MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+        Deencapsulation.invoke(testMap, "add", insertTopic, "DataData".getBytes());
+        Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
         //act
         String parsedTopic = Deencapsulation.invoke(testTwin, "parseTopic") ;
@@ -211,9 +212,9 @@ public class MqttDeviceTwinTest
     public void parseTopicReturnsNullIfRecevedQueueIsEmpty(@Mocked final Mqtt mockMqtt) throws IOException
     {
         //arrange
-        MqttDeviceTwin testTwin = new MqttDeviceTwin();
-        ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-        Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+        MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
+        MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+        Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
         //act
         String parsedTopic = Deencapsulation.invoke(testTwin, "parseTopic") ;
@@ -228,9 +229,9 @@ public class MqttDeviceTwinTest
     public void parseTopicThrowsExceptionIfQueueIsNull(@Mocked final Mqtt mockMqtt) throws IOException
     {
         //arrange
-        MqttDeviceTwin testTwin = new MqttDeviceTwin();
-        ConcurrentSkipListMap<String, byte[]> testMap = null;
-        Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+        MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
+        MqttReceivedMessages testMap = null;
+        Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
         //act
         String parsedTopic = Deencapsulation.invoke(testTwin, "parseTopic") ;
@@ -246,7 +247,7 @@ public class MqttDeviceTwinTest
     public void parsePayloadReturnNullIfTopicIsNull(@Mocked final Mqtt mockMqtt) throws IOException
     {
         //arrange
-        MqttDeviceTwin testTwin = new MqttDeviceTwin();
+        MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
 
         //act
         byte[] parsedPayload = Deencapsulation.invoke(testTwin, "parsePayload", String.class) ;
@@ -263,9 +264,9 @@ public class MqttDeviceTwinTest
     {
 
         //arrange
-        MqttDeviceTwin testTwin = new MqttDeviceTwin();
-        ConcurrentSkipListMap<String, byte[]> testMap = null;
-        Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+        MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
+        MqttReceivedMessages testMap = null;
+        Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
         //act
         byte[] parsedPayload = Deencapsulation.invoke(testTwin, "parsePayload", resTopic) ;
@@ -281,13 +282,13 @@ public class MqttDeviceTwinTest
     {
         //arrange
 
-        MqttDeviceTwin testTwin = new MqttDeviceTwin();
+        MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
 
         String insertTopic = "$iothub/twin/res";
         String notTwinTopic = "$iothub/NotTwin/res";
-        ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-        testMap.put(insertTopic, "DataData".getBytes());
-        Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+        MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+        Deencapsulation.invoke(testMap, "add", insertTopic, "DataData".getBytes());
+        Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
         //act
         byte[] parsedPayload = Deencapsulation.invoke(testTwin, "parsePayload", notTwinTopic);
@@ -302,13 +303,13 @@ public class MqttDeviceTwinTest
     public void parsePayloadReturnsBytesForSpecifiedTopic(@Mocked final Mqtt mockMqtt) throws IOException
     {
         //arrange
-        MqttDeviceTwin testTwin = new MqttDeviceTwin();
+        MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
 
         String insertTopic = "$iothub/twin/"+ anyString;
         final byte[] insertMessage = {0x61, 0x62, 0x63};
-        ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-        testMap.put(insertTopic, insertMessage);
-        Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+        MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+        Deencapsulation.invoke(testMap, "add", insertTopic, insertMessage);
+        Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
         //act
         byte[] parsedPayload = Deencapsulation.invoke(testTwin, "parsePayload", insertTopic);
@@ -329,20 +330,20 @@ public class MqttDeviceTwinTest
     public void parsePayloadRemovesTopicIfFound(@Mocked final Mqtt mockMqtt) throws IOException
     {
         //arrange
-        MqttDeviceTwin testTwin = new MqttDeviceTwin();
+        MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
 
         String insertTopic = "$iothub/twin/"+ anyString;
         final byte[] insertMessage = {0x61, 0x62, 0x63};
-        ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-        testMap.put(insertTopic, insertMessage);
-        Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+        MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+        Deencapsulation.invoke(testMap, "add", insertTopic, insertMessage);
+        Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
         //act
         byte[] parsedPayload = Deencapsulation.invoke(testTwin, "parsePayload", insertTopic);
 
         //assert
-        ConcurrentSkipListMap<String, byte[]> retrieveTestMap  = Deencapsulation.getField(mockMqtt, "allReceivedMessages");
-        assertFalse(retrieveTestMap.containsKey(insertTopic));
+        MqttReceivedMessages retrieveTestMap  = Deencapsulation.getField(testTwin, "receivedMessages");
+        assertTrue((boolean) Deencapsulation.invoke(retrieveTestMap, "isEmpty"));
     }
     /*
     **Tests_SRS_MQTTDEVICETWIN_25_024: [**send method shall build the get request topic of the format mentioned in spec ($iothub/twin/GET/?$rid={request id}) if the operation is of type DEVICE_OPERATION_TWIN_GET_REQUEST.**]**
@@ -353,13 +354,15 @@ public class MqttDeviceTwinTest
         //arrange
         final byte[] actualPayload = {0x61, 0x62, 0x63};
         final String expectedTopic = "$iothub/twin/GET/?$rid="+mockReqId;
-        MqttDeviceTwin testTwin = new MqttDeviceTwin();
+        MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
         testTwin.start();
         new NonStrictExpectations()
         {
             {
                 mockMessage.getBytes();
                 result = actualPayload;
+                mockMessage.getBodyBuffer();
+                result = ByteBuffer.wrap(actualPayload);
                 mockMessage.getMessageType();
                 result = MessageType.DeviceTwin;
                 mockMessage.getDeviceOperationType();
@@ -379,7 +382,7 @@ public class MqttDeviceTwinTest
         {
             {
                 mockMessage.getBytes();
-                times = 2;
+                times = 1;
                 Deencapsulation.invoke(mockMqtt, "publish", expectedTopic, actualPayload);
                 times = 1;
 
@@ -399,12 +402,14 @@ public class MqttDeviceTwinTest
         {
             //arrange
 
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             new NonStrictExpectations()
             {
                 {
                     mockMessage.getBytes();
                     result = actualPayload;
+                    mockMessage.getBodyBuffer();
+                    result = ByteBuffer.wrap(actualPayload);
                     mockMessage.getMessageType();
                     result = MessageType.DeviceTwin;
                     mockMessage.getDeviceOperationType();
@@ -426,7 +431,7 @@ public class MqttDeviceTwinTest
             {
                 {
                     mockMessage.getBytes();
-                    times = 1;
+                    times = 0;
                     Deencapsulation.invoke(mockMqtt, "publish", expectedTopic, actualPayload);
                     times = 0;
 
@@ -444,13 +449,15 @@ public class MqttDeviceTwinTest
         //arrange
         final byte[] actualPayload = {0x61, 0x62, 0x63};
         final String expectedTopic = "$iothub/twin/PATCH/properties/reported/?$rid="+ mockReqId + "&$version=" + mockVersion;
-        MqttDeviceTwin testTwin = new MqttDeviceTwin();
+        MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
         testTwin.start();
         new NonStrictExpectations()
         {
             {
                 mockMessage.getBytes();
                 result = actualPayload;
+                mockMessage.getBodyBuffer();
+                result = ByteBuffer.wrap(actualPayload);
                 mockMessage.getMessageType();
                 result = MessageType.DeviceTwin;
                 mockMessage.getDeviceOperationType();
@@ -471,7 +478,7 @@ public class MqttDeviceTwinTest
         {
             {
                 mockMessage.getBytes();
-                times = 2;
+                times = 1;
                 Deencapsulation.invoke(mockMqtt, "publish", expectedTopic, actualPayload);
                 times = 1;
 
@@ -489,12 +496,14 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             new NonStrictExpectations()
             {
                 {
                     mockMessage.getBytes();
                     result = actualPayload;
+                    mockMessage.getBodyBuffer();
+                    result = ByteBuffer.wrap(actualPayload);
                     mockMessage.getMessageType();
                     result = MessageType.DeviceTwin;
                     mockMessage.getDeviceOperationType();
@@ -514,7 +523,7 @@ public class MqttDeviceTwinTest
             {
                 {
                     mockMessage.getBytes();
-                    times = 1;
+                    times = 0;
                     Deencapsulation.invoke(mockMqtt, "publish", expectedTopic, actualPayload);
                     times = 0;
 
@@ -532,13 +541,15 @@ public class MqttDeviceTwinTest
         //arrange
         final byte[] actualPayload = {0x61, 0x62, 0x63};
         final String expectedTopic = "$iothub/twin/PATCH/properties/desired/#";
-        MqttDeviceTwin testTwin = new MqttDeviceTwin();
+        MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
         testTwin.start();
         new NonStrictExpectations()
         {
             {
                 mockMessage.getBytes();
                 result = actualPayload;
+                mockMessage.getBodyBuffer();
+                result = ByteBuffer.wrap(actualPayload);
                 mockMessage.getMessageType();
                 result = MessageType.DeviceTwin;
                 mockMessage.getDeviceOperationType();
@@ -557,7 +568,7 @@ public class MqttDeviceTwinTest
         {
             {
                 mockMessage.getBytes();
-                times = 1;
+                times = 0;
                 Deencapsulation.invoke(mockMqtt, "subscribe", expectedTopic);
                 times = 1;
                 Deencapsulation.invoke(mockMqtt, "publish", expectedTopic, actualPayload);
@@ -578,7 +589,7 @@ public class MqttDeviceTwinTest
         final byte[] actualPayload = {0x61, 0x62, 0x63};
         final String expectedTopic = "$iothub/twin/PATCH/properties/desired/?$version="+ mockVersion;
         final String expectedSubscribeTopic = "$iothub/twin/PATCH/properties/desired/#";
-        MqttDeviceTwin testTwin = new MqttDeviceTwin();
+        MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
         testTwin.start();
         new NonStrictExpectations()
         {
@@ -591,6 +602,8 @@ public class MqttDeviceTwinTest
                 result = mockVersion;
                 mockMessage.getBytes();
                 result = actualPayload;
+                mockMessage.getBodyBuffer();
+                result = ByteBuffer.wrap(actualPayload);
             }
         };
 
@@ -602,7 +615,7 @@ public class MqttDeviceTwinTest
         {
             {
                 mockMessage.getBytes();
-                times = 1;
+                times = 0;
                 Deencapsulation.invoke(mockMqtt, "subscribe", expectedSubscribeTopic);
                 times = 1;
                 Deencapsulation.invoke(mockMqtt, "publish", expectedTopic, actualPayload);
@@ -623,7 +636,7 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
 
             //act
             testTwin.send(null);
@@ -650,13 +663,15 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             testTwin.start();
             new NonStrictExpectations()
             {
                 {
                     mockMessage.getBytes();
                     result = actualPayload;
+                    mockMessage.getBodyBuffer();
+                    result = ByteBuffer.wrap(actualPayload);
                     mockMessage.getMessageType();
                     result = MessageType.DeviceTwin;
                     mockMessage.getDeviceOperationType();
@@ -675,7 +690,7 @@ public class MqttDeviceTwinTest
             {
                 {
                     mockMessage.getBytes();
-                    times = 2;
+                    times = 1;
                     Deencapsulation.invoke(mockMqtt, "publish", expectedTopic, actualPayload);
                     times = 1;
 
@@ -695,11 +710,11 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             String insertTopic = expectedTopic;
-            ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-            testMap.put(insertTopic, actualPayload);
-            Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+            MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+            Deencapsulation.invoke(testMap, "add", insertTopic, actualPayload);
+            Deencapsulation.setField(testTwin, "receivedMessages", testMap);
             Map<String, DeviceOperations> requestMap = new HashMap<>();
             requestMap.put(mockReqId, DEVICE_OPERATION_TWIN_GET_REQUEST);
             Deencapsulation.setField(testTwin, "requestMap", requestMap);
@@ -732,11 +747,11 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             String insertTopic = expectedTopic;
-            ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-            testMap.put(insertTopic, actualPayload);
-            Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+            MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+            Deencapsulation.invoke(testMap, "add", insertTopic, actualPayload);
+            Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
             Map<String, DeviceOperations> requestMap = new HashMap<>();
             requestMap.put(mockReqId, DEVICE_OPERATION_TWIN_UPDATE_REPORTED_PROPERTIES_REQUEST);
@@ -769,11 +784,11 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             String insertTopic = expectedTopic;
-            ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-            testMap.put(insertTopic, actualPayload);
-            Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+            MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+            Deencapsulation.invoke(testMap, "add", insertTopic, actualPayload);
+            Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
             //act
             receivedMessage = (DeviceTwinMessage) testTwin.receive();
@@ -802,11 +817,11 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             String insertTopic = expectedTopic;
-            ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-            testMap.put(insertTopic, actualPayload);
-            Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+            MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+            Deencapsulation.invoke(testMap, "add", insertTopic, actualPayload);
+            Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
             //act
             receivedMessage = (DeviceTwinMessage) testTwin.receive();
@@ -832,11 +847,11 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             String insertTopic = expectedTopic;
-            ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-            testMap.put(insertTopic, actualPayload);
-            Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+            MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+            Deencapsulation.invoke(testMap, "add", insertTopic, actualPayload);
+            Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
             //act
             receivedMessage = (DeviceTwinMessage) testTwin.receive();
@@ -861,11 +876,11 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             String insertTopic = expectedTopic;
-            ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-            testMap.put(insertTopic, actualPayload);
-            Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+            MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+            Deencapsulation.invoke(testMap, "add", insertTopic, actualPayload);
+            Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
             Map<String, DeviceOperations> requestMap = new HashMap<>();
             requestMap.put(mockReqId, DEVICE_OPERATION_TWIN_GET_REQUEST);
@@ -895,11 +910,11 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             String insertTopic = expectedTopic;
-            ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-            testMap.put(insertTopic, actualPayload);
-            Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+            MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+            Deencapsulation.invoke(testMap, "add", insertTopic, actualPayload);
+            Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
             Map<String, DeviceOperations> requestMap = new HashMap<>();
             requestMap.put(mockReqId, DEVICE_OPERATION_TWIN_GET_REQUEST);
@@ -933,11 +948,11 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             String insertTopic = expectedTopic;
-            ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-            testMap.put(insertTopic, actualPayload);
-            Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+            MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+            Deencapsulation.invoke(testMap, "add", insertTopic, actualPayload);
+            Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
             Map<String, DeviceOperations> requestMap = new HashMap<>();
             requestMap.put(mockReqId, DEVICE_OPERATION_TWIN_GET_REQUEST);
@@ -971,11 +986,11 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             String insertTopic = expectedTopic;
-            ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-            testMap.put(insertTopic, actualPayload);
-            Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+            MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+            Deencapsulation.invoke(testMap, "add", insertTopic, actualPayload);
+            Deencapsulation.setField(testTwin, "receivedMessages", testMap);
             Map<String, DeviceOperations> requestMap = new HashMap<>();
             requestMap.put(mockReqId, DEVICE_OPERATION_TWIN_GET_REQUEST);
             Deencapsulation.setField(testTwin, "requestMap", requestMap);
@@ -1009,11 +1024,11 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             String insertTopic = expectedTopic;
-            ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-            testMap.put(insertTopic, actualPayload);
-            Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+            MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+            Deencapsulation.invoke(testMap, "add", insertTopic, actualPayload);
+            Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
             Map<String, DeviceOperations> requestMap = new HashMap<>();
             requestMap.put(mockReqId, DEVICE_OPERATION_TWIN_GET_REQUEST);
@@ -1059,11 +1074,11 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             String insertTopic = expectedTopic;
-            ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-            testMap.put(insertTopic, actualPayload);
-            Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+            MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+            Deencapsulation.invoke(testMap, "add", insertTopic, actualPayload);
+            Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
             Map<String, DeviceOperations> requestMap = new HashMap<>();
             requestMap.put(mockReqId, DEVICE_OPERATION_TWIN_UPDATE_REPORTED_PROPERTIES_REQUEST);
@@ -1100,11 +1115,11 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             String insertTopic = expectedTopic;
-            ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-            testMap.put(insertTopic, actualPayload);
-            Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+            MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+            Deencapsulation.invoke(testMap, "add", insertTopic, actualPayload);
+            Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
             //act
             receivedMessage = (DeviceTwinMessage) testTwin.receive();
@@ -1142,11 +1157,11 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             String insertTopic = expectedTopic;
-            ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-            testMap.put(insertTopic, actualPayload);
-            Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+            MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+            Deencapsulation.invoke(testMap, "add", insertTopic, actualPayload);
+            Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
             //act
             receivedMessage = (DeviceTwinMessage) testTwin.receive();
@@ -1183,11 +1198,11 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             String insertTopic = expectedTopic;
-            ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-            testMap.put(insertTopic, actualPayload);
-            Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+            MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+            Deencapsulation.invoke(testMap, "add", insertTopic, actualPayload);
+            Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
             //act
             receivedMessage = (DeviceTwinMessage) testTwin.receive();
@@ -1225,11 +1240,11 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             String insertTopic = expectedTopic;
-            ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-            testMap.put(insertTopic, actualPayload);
-            Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+            MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+            Deencapsulation.invoke(testMap, "add", insertTopic, actualPayload);
+            Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
             //act
             receivedMessage = (DeviceTwinMessage) testTwin.receive();
@@ -1253,11 +1268,11 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             String insertTopic = expectedTopic;
-            ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-            testMap.put(insertTopic, actualPayload);
-            Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+            MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+            Deencapsulation.invoke(testMap, "add", insertTopic, actualPayload);
+            Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
             //act
             receivedMessage = (DeviceTwinMessage) testTwin.receive();
@@ -1280,11 +1295,11 @@ public class MqttDeviceTwinTest
         try
         {
             //arrange
-            MqttDeviceTwin testTwin = new MqttDeviceTwin();
+            MqttDeviceTwin testTwin = new MqttDeviceTwin(mockMqtt);
             String insertTopic = expectedTopic;
-            ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-            testMap.put(insertTopic, actualPayload);
-            Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+            MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, "test-deviceId");
+            Deencapsulation.invoke(testMap, "add", insertTopic, actualPayload);
+            Deencapsulation.setField(testTwin, "receivedMessages", testMap);
 
             //act
             receivedMessage = (DeviceTwinMessage) testTwin.receive();
@@ -6,23 +6,33 @@ package tests.unit.com.microsoft.azure.sdk.iot.device.transport.mqtt;
 import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceMethodMessage;
 import com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceTwinMessage;
-import com.microsoft.azure.sdk.iot.device.auth.IotHubSasToken;
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenManager;
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenRenewalListener;
 import com.microsoft.azure.sdk.iot.device.net.IotHubUri;
 import com.microsoft.azure.sdk.iot.device.transport.State;
 import com.microsoft.azure.sdk.iot.device.transport.TransportUtils;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.*;
 import mockit.Deencapsulation;
+import mockit.Delegate;
 import mockit.Mocked;
 import mockit.NonStrictExpectations;
 import mockit.Verifications;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /** Unit tests for MqttIotHubConnection. */
 public class MqttIotHubConnectionTest
@@ -38,6 +48,7 @@ public class MqttIotHubConnectionTest
     final int qos = 1;
     final String publishTopic = "devices/test-deviceId/messages/events/";
     final String subscribeTopic = "devices/test-deviceId/messages/devicebound/#";
+    final String sasToken = "test-sas-token";
 
     @Mocked
     protected DeviceClientConfig mockConfig;
@@ -55,7 +66,7 @@ public class MqttIotHubConnectionTest
     private MqttDeviceMethod mockDeviceMethods;
 
     @Mocked
-    protected IotHubSasToken mockToken;
+    protected IotHubSasTokenManager mockTokenManager;
 
     @Mocked
     IotHubUri mockIotHubUri;
@@ -253,7 +264,7 @@ public class MqttIotHubConnectionTest
         String clientIdentifier = "DeviceClientType=" + URLEncoder.encode(TransportUtils.javaDeviceClientIdentifier + TransportUtils.clientVersion, "UTF-8");
         assertEquals(iotHubHostName + "/" + deviceId + "/" + API_VERSION + "/" + clientIdentifier, actualIotHubUserName);
 
-        String expectedSasToken = mockToken.toString();
+        String expectedSasToken = sasToken;
         String actualUserPassword = Deencapsulation.getField(connection, "iotHubUserPassword");
 
         assertEquals(expectedSasToken, actualUserPassword);
@@ -265,12 +276,12 @@ public class MqttIotHubConnectionTest
         new Verifications()
         {
             {
-                new MqttDeviceMethod();
+                new MqttDeviceMethod((Mqtt) any);
                 times = 1;
-                new MqttMessaging(sslPrefix + iotHubHostName + sslPortSuffix, deviceId, anyString, anyString, mockIotHubSSLContext);
+                new MqttMessaging(sslPrefix + iotHubHostName + sslPortSuffix, deviceId, anyString, anyString, mockIotHubSSLContext, anyInt);
                 mockDeviceMessaging.start();
                 times = 1;
-                new MqttDeviceTwin();
+                new MqttDeviceTwin((Mqtt) any);
                 times = 1;
             }
         };
@@ -285,9 +296,11 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                new IotHubSasToken(mockConfig, anyLong);
-                result = mockToken;
-                new MqttMessaging(sslPrefix + iotHubHostName + sslPortSuffix, deviceId, anyString, anyString, mockIotHubSSLContext);
+                mockConfig.getSasTokenManager();
+                result = mockTokenManager;
+                mockTokenManager.getSasToken();
+                result = sasToken;
+                new MqttMessaging(sslPrefix + iotHubHostName + sslPortSuffix, deviceId, anyString, anyString, mockIotHubSSLContext, anyInt);
                 result = new IOException(anyString);
             }
         };
@@ -318,11 +331,13 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                new IotHubSasToken(mockConfig, anyLong);
-                result = mockToken;
-                new MqttMessaging(sslPrefix + iotHubHostName + sslPortSuffix, deviceId, anyString, anyString, mockIotHubSSLContext);
+                mockConfig.getSasTokenManager();
+                result = mockTokenManager;
+                mockTokenManager.getSasToken();
+                result = sasToken;
+                new MqttMessaging(sslPrefix + iotHubHostName + sslPortSuffix, deviceId, anyString, anyString, mockIotHubSSLContext, anyInt);
                 result = mockDeviceMessaging;
-                new MqttDeviceMethod();
+                new MqttDeviceMethod((Mqtt) any);
                 result = new IOException(anyString);
             }
         };
@@ -354,13 +369,15 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                new IotHubSasToken(mockConfig, anyLong);
-                result = mockToken;
-                new MqttMessaging(sslPrefix + iotHubHostName + sslPortSuffix, deviceId, anyString, anyString, mockIotHubSSLContext);
+                mockConfig.getSasTokenManager();
+                result = mockTokenManager;
+                mockTokenManager.getSasToken();
+                result = sasToken;
+                new MqttMessaging(sslPrefix + iotHubHostName + sslPortSuffix, deviceId, anyString, anyString, mockIotHubSSLContext, anyInt);
                 result = mockDeviceMessaging;
-                new MqttDeviceMethod();
+                new MqttDeviceMethod((Mqtt) any);
                 result = mockDeviceMethods;
-                new MqttDeviceTwin();
+                new MqttDeviceTwin((Mqtt) any);
                 result = new IOException(anyString);
             }
         };
@@ -400,7 +417,7 @@ public class MqttIotHubConnectionTest
         new Verifications()
         {
             {
-                new MqttMessaging(sslPrefix + iotHubHostName + sslPortSuffix, deviceId, anyString, anyString, mockIotHubSSLContext);
+                new MqttMessaging(sslPrefix + iotHubHostName + sslPortSuffix, deviceId, anyString, anyString, mockIotHubSSLContext, anyInt);
                 times = 1;
             }
         };
@@ -444,6 +461,144 @@ public class MqttIotHubConnectionTest
         };
     }
 
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_021: [The function shall register with the IotHubSasTokenManager of the
+    // config to be told when the SAS token is renewed.]
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_023: [The function shall stop listening to the SAS token renewals.]
+    @Test
+    public void openAndCloseRegisterAndRemoveSasTokenRenewalListener() throws IOException
+    {
+        baseExpectations();
+        openExpectations();
+
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+        connection.open();
+        connection.close();
+
+        final IotHubSasTokenRenewalListener listener = Deencapsulation.getField(connection, "sasTokenRenewalListener");
+        new Verifications()
+        {
+            {
+                mockTokenManager.addRenewalListener(listener);
+                times = 1;
+                mockTokenManager.removeRenewalListener(listener);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_022: [When the SAS token is renewed, the connection shall save it and
+    // authenticate again with it on the reauthentication thread, without blocking the thread telling the renewal.]
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_025: [The reauthentication shall update the password of the
+    // connection with the renewed token, which connects again with it.]
+    @Test
+    public void renewedSasTokenUpdatesPasswordOfOpenConnection() throws IOException, InterruptedException
+    {
+        baseExpectations();
+        openExpectations();
+        final String renewedSasToken = "renewed-sas-token";
+
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+        connection.open();
+        IotHubSasTokenRenewalListener listener = Deencapsulation.getField(connection, "sasTokenRenewalListener");
+        listener.onSasTokenRenewed(renewedSasToken);
+        awaitReauthentication(connection);
+
+        assertEquals(renewedSasToken, Deencapsulation.getField(connection, "iotHubUserPassword"));
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockDeviceMessaging, "updatePassword", renewedSasToken);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_024: [If the connection is closed, the reauthentication shall do nothing,
+    // because the next open gets the renewed token from the IotHubSasTokenManager.]
+    @Test
+    public void renewedSasTokenDoesNothingIfConnectionClosed() throws IOException, InterruptedException
+    {
+        baseExpectations();
+        openExpectations();
+
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+        connection.open();
+        connection.close();
+        IotHubSasTokenRenewalListener listener = Deencapsulation.getField(connection, "sasTokenRenewalListener");
+        listener.onSasTokenRenewed("renewed-sas-token");
+        awaitReauthentication(connection);
+
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockDeviceMessaging, "updatePassword", "renewed-sas-token");
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_022: [When the SAS token is renewed, the connection shall save it and
+    // authenticate again with it on the reauthentication thread, without blocking the thread telling the renewal.]
+    @Test
+    public void renewedSasTokenDoesNotWaitForConnectionLock() throws IOException, InterruptedException
+    {
+        baseExpectations();
+        openExpectations();
+        final String renewedSasToken = "renewed-sas-token";
+
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+        connection.open();
+        IotHubSasTokenRenewalListener listener = Deencapsulation.getField(connection, "sasTokenRenewalListener");
+        Object connectionLock = Deencapsulation.getField(connection, "MQTT_CONNECTION_LOCK");
+        synchronized (connectionLock)
+        {
+            // would deadlock if the listener reconnected on the calling thread
+            listener.onSasTokenRenewed(renewedSasToken);
+            assertEquals(sasToken, Deencapsulation.getField(connection, "iotHubUserPassword"));
+        }
+        awaitReauthentication(connection);
+
+        assertEquals(renewedSasToken, Deencapsulation.getField(connection, "iotHubUserPassword"));
+    }
+
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_026: [If the connection fails to connect again, the reauthentication
+    // shall retry with exponential backoff, without holding the connection lock while it waits.]
+    @Test
+    public void renewedSasTokenRetriesIfReconnectFails(final @Mocked TransportUtils mockTransportUtils) throws IOException, InterruptedException
+    {
+        baseExpectations();
+        openExpectations();
+        final String renewedSasToken = "renewed-sas-token";
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockDeviceMessaging, "updatePassword", renewedSasToken);
+                result = new IOException();
+                result = null;
+                TransportUtils.generateSleepInterval(anyInt);
+                result = 0;
+            }
+        };
+
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+        connection.open();
+        IotHubSasTokenRenewalListener listener = Deencapsulation.getField(connection, "sasTokenRenewalListener");
+        listener.onSasTokenRenewed(renewedSasToken);
+        awaitReauthentication(connection);
+
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockDeviceMessaging, "updatePassword", renewedSasToken);
+                times = 2;
+                TransportUtils.generateSleepInterval(1);
+                times = 1;
+                mockDeviceMessaging.connectionLost((Throwable) any);
+                times = 0;
+            }
+        };
+    }
+
     // Tests_SRS_MQTTIOTHUBCONNECTION_15_007: [If the MQTT connection is closed, the function shall do nothing.]
     @Test
     public void closeDoesNothingIfConnectionNotYetOpened() throws IOException
@@ -512,7 +667,9 @@ public class MqttIotHubConnectionTest
             {
                 mockMsg.getBytes();
                 result = msgBody;
-                mockDeviceMessaging.send(mockMsg);
+                mockMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(msgBody);
+                mockDeviceMessaging.send(mockMsg, (IMqttActionListener) any);
             }
         };
 
@@ -525,7 +682,7 @@ public class MqttIotHubConnectionTest
         new Verifications()
         {
             {
-                mockDeviceMessaging.send(mockMsg);
+                mockDeviceMessaging.send(mockMsg, (IMqttActionListener) any);
                 times = 1;
             }
         };
@@ -560,6 +717,8 @@ public class MqttIotHubConnectionTest
             {
                 mockMsg.getBytes();
                 result = msgBody;
+                mockMsg.getBodyBuffer();
+                result = null;
             }
         };
 
@@ -582,6 +741,8 @@ public class MqttIotHubConnectionTest
             {
                 mockMsg.getBytes();
                 result = new byte[0];
+                mockMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(new byte[0]);
             }
         };
 
@@ -605,6 +766,8 @@ public class MqttIotHubConnectionTest
             {
                 mockMsg.getBytes();
                 result = msgBody;
+                mockMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(msgBody);
             }
         };
 
@@ -625,6 +788,8 @@ public class MqttIotHubConnectionTest
             {
                 mockMsg.getBytes();
                 result = msgBody;
+                mockMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(msgBody);
             }
         };
 
@@ -647,7 +812,9 @@ public class MqttIotHubConnectionTest
             {
                 mockMsg.getBytes();
                 result = msgBody;
-                mockDeviceMessaging.send(mockMsg);
+                mockMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(msgBody);
+                mockDeviceMessaging.send(mockMsg, (IMqttActionListener) any);
                 result = new IOException(anyString);
             }
         };
@@ -672,6 +839,8 @@ public class MqttIotHubConnectionTest
             {
                 mockDeviceTwinMsg.getBytes();
                 result = msgBody;
+                mockDeviceTwinMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(msgBody);
                 mockDeviceTwinMsg.getMessageType();
                 result = MessageType.DeviceTwin;
 
@@ -689,7 +858,7 @@ public class MqttIotHubConnectionTest
             {
                 mockDeviceMethods.send((DeviceMethodMessage)any);
                 times = 0;
-                mockDeviceMessaging.send(mockDeviceTwinMsg);
+                mockDeviceMessaging.send(mockDeviceTwinMsg, (IMqttActionListener) any);
                 times = 0;
                 mockDeviceTwin.start();
                 times = 1;
@@ -699,6 +868,122 @@ public class MqttIotHubConnectionTest
         };
     }
 
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_018: [The function shall pass completionListener
+    // to the messaging client, to be notified when the IoT Hub acknowledges the event.]
+    @Test
+    public void sendEventPassesCompletionListenerToMessaging(@Mocked final Message mockMsg,
+                                                             @Mocked final IMqttActionListener mockListener) throws IOException
+    {
+        baseExpectations();
+        openExpectations();
+
+        final byte[] msgBody = { 0x61, 0x62, 0x63 };
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBytes();
+                result = msgBody;
+                mockMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(msgBody);
+                mockMsg.getMessageType();
+                result = MessageType.Telemetry;
+            }
+        };
+
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+        connection.open();
+        IotHubStatusCode result = connection.sendEvent(mockMsg, mockListener);
+
+        assertEquals(IotHubStatusCode.OK_EMPTY, result);
+        new Verifications()
+        {
+            {
+                mockDeviceMessaging.send(mockMsg, mockListener);
+                times = 1;
+                mockListener.onSuccess((IMqttToken) any);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_027: [The function shall publish the message without holding the
+    // connection lock, so a publish waiting for room in the in-flight window does not block close,
+    // reauthentication or the other sends.]
+    @Test
+    public void sendEventPublishesWithoutHoldingConnectionLock(@Mocked final Message mockMsg,
+                                                               @Mocked final IMqttActionListener mockListener) throws IOException
+    {
+        baseExpectations();
+        openExpectations();
+
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+        connection.open();
+        final Object connectionLock = Deencapsulation.getField(connection, "MQTT_CONNECTION_LOCK");
+        final AtomicBoolean publishedUnderLock = new AtomicBoolean(true);
+        final byte[] msgBody = { 0x61, 0x62, 0x63 };
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(msgBody);
+                mockMsg.getMessageType();
+                result = MessageType.Telemetry;
+                mockDeviceMessaging.send(mockMsg, mockListener);
+                result = new Delegate()
+                {
+                    @SuppressWarnings("unused")
+                    void send(Message message, IMqttActionListener completionListener)
+                    {
+                        publishedUnderLock.set(Thread.holdsLock(connectionLock));
+                    }
+                };
+            }
+        };
+
+        IotHubStatusCode result = connection.sendEvent(mockMsg, mockListener);
+
+        assertEquals(IotHubStatusCode.OK_EMPTY, result);
+        assertFalse(publishedUnderLock.get());
+    }
+
+    // Tests_SRS_MQTTIOTHUBCONNECTION_21_019: [If the device twin or device method message was sent,
+    // the function shall notify completionListener right away.]
+    @Test
+    public void sendEventNotifiesCompletionListenerForDeviceTwinMessage(@Mocked final DeviceTwinMessage mockDeviceTwinMsg,
+                                                                        @Mocked final IMqttActionListener mockListener) throws IOException
+    {
+        baseExpectations();
+        openExpectations();
+
+        final byte[] msgBody = { 0x61, 0x62, 0x63 };
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceTwinMsg.getBytes();
+                result = msgBody;
+                mockDeviceTwinMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(msgBody);
+                mockDeviceTwinMsg.getMessageType();
+                result = MessageType.DeviceTwin;
+            }
+        };
+
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+        connection.open();
+        IotHubStatusCode result = connection.sendEvent(mockDeviceTwinMsg, mockListener);
+
+        assertEquals(IotHubStatusCode.OK_EMPTY, result);
+        new Verifications()
+        {
+            {
+                mockDeviceTwin.send(mockDeviceTwinMsg);
+                times = 1;
+                mockListener.onSuccess(null);
+                times = 1;
+            }
+        };
+    }
+
     @Test
     public void sendEventSendsDeviceMethodMessage(@Mocked final DeviceMethodMessage mockDeviceMethodMsg) throws IOException
     {
@@ -711,6 +996,8 @@ public class MqttIotHubConnectionTest
             {
                 mockDeviceMethodMsg.getBytes();
                 result = msgBody;
+                mockDeviceMethodMsg.getBodyBuffer();
+                result = ByteBuffer.wrap(msgBody);
                 mockDeviceMethodMsg.getMessageType();
                 result = MessageType.DeviceMethods;
 
@@ -730,7 +1017,7 @@ public class MqttIotHubConnectionTest
                 times = 1;
                 mockDeviceMethods.send(mockDeviceMethodMsg);
                 times = 1;
-                mockDeviceMessaging.send(mockDeviceMethodMsg);
+                mockDeviceMessaging.send(mockDeviceMethodMsg, (IMqttActionListener) any);
                 times = 0;
                 mockDeviceTwin.send(mockDeviceMethodMsg);
                 times = 0;
@@ -885,6 +1172,13 @@ public class MqttIotHubConnectionTest
         connection.receiveMessage();
     }
 
+    private static void awaitReauthentication(MqttIotHubConnection connection) throws InterruptedException
+    {
+        ExecutorService reauthenticationExecutor = Deencapsulation.getField(connection, "reauthenticationExecutor");
+        reauthenticationExecutor.shutdown();
+        assertTrue(reauthenticationExecutor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
     private void baseExpectations()
     {
         new NonStrictExpectations() {
@@ -902,13 +1196,15 @@ public class MqttIotHubConnectionTest
         new NonStrictExpectations()
         {
             {
-                new IotHubSasToken(mockConfig, anyLong);
-                result = mockToken;
-                new MqttMessaging(sslPrefix + iotHubHostName + sslPortSuffix, deviceId, anyString, anyString, mockIotHubSSLContext);
+                mockConfig.getSasTokenManager();
+                result = mockTokenManager;
+                mockTokenManager.getSasToken();
+                result = sasToken;
+                new MqttMessaging(sslPrefix + iotHubHostName + sslPortSuffix, deviceId, anyString, anyString, mockIotHubSSLContext, anyInt);
                 result = mockDeviceMessaging;
-                new MqttDeviceMethod();
+                new MqttDeviceMethod((Mqtt) any);
                 result = mockDeviceMethods;
-                new MqttDeviceTwin();
+                new MqttDeviceTwin((Mqtt) any);
                 result = mockDeviceTwin;
                 mockDeviceMessaging.start();
                 result = null;
@@ -10,13 +10,16 @@ import com.microsoft.azure.sdk.iot.device.Message;
 import com.microsoft.azure.sdk.iot.device.MessageProperty;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.Mqtt;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttMessaging;
+import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttReceivedMessages;
 import mockit.*;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.InvalidParameterException;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.Arrays;
 import java.util.concurrent.Semaphore;
 
 import static org.junit.Assert.*;
@@ -243,9 +246,9 @@ public class MqttMessagingTest {
         MqttMessaging testMqttMessaging = new MqttMessaging(serverUri, clientId, userName, password, mockIotHubSSLContext);
 
         String insertTopic = "devices/" + clientId + "/messages/devicebound/abc";
-        ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-        testMap.put(insertTopic, "DataData".getBytes());
-        Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+        MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, clientId);
+        Deencapsulation.invoke(testMap, "add", insertTopic, "DataData".getBytes());
+        Deencapsulation.setField(testMqttMessaging, "receivedMessages", testMap);
 
         String retrieveTopic = Deencapsulation.invoke(testMqttMessaging, "parseTopic");
 
@@ -264,9 +267,9 @@ public class MqttMessagingTest {
     {
         MqttMessaging testMqttMessaging = new MqttMessaging(serverUri, clientId, userName, password, mockIotHubSSLContext);;
 
-        ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
+        MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, clientId);
 
-        Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+        Deencapsulation.setField(testMqttMessaging, "receivedMessages", testMap);
 
         String retrieveTopic = Deencapsulation.invoke(testMqttMessaging, "parseTopic");
 
@@ -282,9 +285,9 @@ public class MqttMessagingTest {
         MqttMessaging testMqttMessaging = new MqttMessaging(serverUri, clientId, userName, password, mockIotHubSSLContext);;
 
         String insertTopic = "devices/" + clientId + "/fakemessages/devicebound/abc";
-        ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-        testMap.put(insertTopic, "DataData".getBytes());
-        Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+        MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, clientId);
+        Deencapsulation.invoke(testMap, "add", insertTopic, "DataData".getBytes());
+        Deencapsulation.setField(testMqttMessaging, "receivedMessages", testMap);
 
         String retrieveTopic = Deencapsulation.invoke(testMqttMessaging, "parseTopic");
 
@@ -302,9 +305,9 @@ public class MqttMessagingTest {
 
         final String insertTopic = "devices/" + clientId + "/messages/devicebound/abc";
         final byte[] insertMessage = {0x61, 0x62, 0x63};
-        ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-        testMap.put(insertTopic, insertMessage);
-        Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+        MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, clientId);
+        Deencapsulation.invoke(testMap, "add", insertTopic, insertMessage);
+        Deencapsulation.setField(testMqttMessaging, "receivedMessages", testMap);
 
         byte[] retrieveMessage = Deencapsulation.invoke(testMqttMessaging, "parsePayload", insertTopic);
 
@@ -326,16 +329,43 @@ public class MqttMessagingTest {
 
         final String insertTopic = "devices/" + clientId + "/messages/devicebound/abc";
         final byte[] insertMessage = {0x61, 0x62, 0x63};
-        ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-        testMap.put(insertTopic, insertMessage);
-        Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+        MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, clientId);
+        Deencapsulation.invoke(testMap, "add", insertTopic, insertMessage);
+        Deencapsulation.setField(testMqttMessaging, "receivedMessages", testMap);
 
         byte[] retrieveMessage = Deencapsulation.invoke(testMqttMessaging, "parsePayload", insertTopic);
 
-        assertTrue(testMap.isEmpty());
+        assertTrue((boolean) Deencapsulation.invoke(testMap, "isEmpty"));
 
     }
 
+    /*
+    **Tests_SRS_MqttMessaging_25_010: [**This parsePayload method look for payload for the corresponding topic from the received messagesqueue.**]**
+    **Tests_SRS_MqttMessaging_25_014: [**If the topic is found in the message queue then parsePayload shall delete it from the queue.**]**
+     */
+    @Test
+    public void parsePayloadKeepsMessagesOnTheSameTopicInArrivalOrder(@Mocked final Mqtt mockMqtt) throws IOException
+    {
+        MqttMessaging testMqttMessaging = new MqttMessaging(serverUri, clientId, userName, password, mockIotHubSSLContext);
+
+        final String insertTopic = "devices/" + clientId + "/messages/devicebound/abc";
+        final byte[] insertMessage1 = {0x61, 0x62, 0x63};
+        final byte[] insertMessage2 = {0x64, 0x65, 0x66};
+        MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, clientId);
+        Deencapsulation.invoke(testMap, "add", insertTopic, insertMessage1);
+        Deencapsulation.invoke(testMap, "add", insertTopic, insertMessage2);
+        Deencapsulation.setField(testMqttMessaging, "receivedMessages", testMap);
+
+        String retrieveTopic1 = Deencapsulation.invoke(testMqttMessaging, "parseTopic");
+        byte[] retrieveMessage1 = Deencapsulation.invoke(testMqttMessaging, "parsePayload", retrieveTopic1);
+        String retrieveTopic2 = Deencapsulation.invoke(testMqttMessaging, "parseTopic");
+        byte[] retrieveMessage2 = Deencapsulation.invoke(testMqttMessaging, "parsePayload", retrieveTopic2);
+
+        assertSame(insertMessage1, retrieveMessage1);
+        assertSame(insertMessage2, retrieveMessage2);
+        assertTrue((boolean) Deencapsulation.invoke(testMap, "isEmpty"));
+    }
+
     @Test (expected = IOException.class)
     public void parsePayloadShallThrowIOExceptionIfQueueIsEmpty(@Mocked final Mqtt mockMqtt) throws IOException
     {
@@ -343,9 +373,9 @@ public class MqttMessagingTest {
 
         final String insertTopic = "devices/" + clientId + "/messages/devicebound/abc";
         final byte[] insertMessage = {0x61, 0x62, 0x63};
-        ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
+        MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, clientId);
 
-        Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+        Deencapsulation.setField(testMqttMessaging, "receivedMessages", testMap);
 
         byte[] retrieveMessage = Deencapsulation.invoke(testMqttMessaging, "parsePayload", insertTopic);
         assertNull(retrieveMessage);
@@ -362,9 +392,9 @@ public class MqttMessagingTest {
 
         final String insertTopic_messaging = "devices/" + clientId + "/messages/devicebound/abc";
         final byte[] insertMessage = {0x61, 0x62, 0x63};
-        ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-        testMap.put(insertTopic_messaging, insertMessage);
-        Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+        MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, clientId);
+        Deencapsulation.invoke(testMap, "add", insertTopic_messaging, insertMessage);
+        Deencapsulation.setField(testMqttMessaging, "receivedMessages", testMap);
 
 
         byte[] retrieveMessage = Deencapsulation.invoke(testMqttMessaging, "parsePayload", String.class);
@@ -382,9 +412,9 @@ public class MqttMessagingTest {
         final String insertTopic_actual = "$iothub/twin/PATCH/properties/desired/#";
         final String insertTopic_messaging = "devices/" + clientId + "/messages/devicebound/abc";
         final byte[] insertMessage = {0x61, 0x62, 0x63};
-        ConcurrentSkipListMap<String, byte[]> testMap = new ConcurrentSkipListMap<String, byte[]>();
-        testMap.put(insertTopic_actual, insertMessage);
-        Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+        MqttReceivedMessages testMap = Deencapsulation.newInstance(MqttReceivedMessages.class, clientId);
+        Deencapsulation.invoke(testMap, "add", insertTopic_actual, insertMessage);
+        Deencapsulation.setField(testMqttMessaging, "receivedMessages", testMap);
 
 
         byte[] retrieveMessage = Deencapsulation.invoke(testMqttMessaging, "parsePayload", insertTopic_messaging);
@@ -400,9 +430,9 @@ public class MqttMessagingTest {
         MqttMessaging testMqttMessaging = new MqttMessaging(serverUri, clientId, userName, password, mockIotHubSSLContext);;
 
         final String insertTopic = "$iothub/twin/PATCH/properties/desired/#";
-        ConcurrentSkipListMap<String, byte[]> testMap = null;
+        MqttReceivedMessages testMap = null;
 
-        Deencapsulation.setField(mockMqtt, "allReceivedMessages", testMap);
+        Deencapsulation.setField(testMqttMessaging, "receivedMessages", testMap);
 
 
         byte[] retrieveMessage = Deencapsulation.invoke(testMqttMessaging, "parsePayload", insertTopic);
@@ -421,7 +451,9 @@ public class MqttMessagingTest {
             {
                 mockMessage.getBytes();
                 result = messageBody;
-                Deencapsulation.invoke(mockMqtt, "publish", anyString, messageBody);
+                mockMessage.getBodyBuffer();
+                result = ByteBuffer.wrap(messageBody);
+                Deencapsulation.invoke(mockMqtt, "publish", new Class[] {String.class, byte[].class, IMqttActionListener.class}, anyString, messageBody, null);
             }
         };
 
@@ -432,8 +464,8 @@ public class MqttMessagingTest {
         {
             {
                 mockMessage.getBytes();
-                times = 2;
-                Deencapsulation.invoke(mockMqtt, "publish", anyString, messageBody);
+                times = 1;
+                Deencapsulation.invoke(mockMqtt, "publish", new Class[] {String.class, byte[].class, IMqttActionListener.class}, anyString, messageBody, null);
                 times = 1;
 
             }
@@ -441,6 +473,36 @@ public class MqttMessagingTest {
 
     }
 
+    /*
+    **Tests_SRS_MqttMessaging_25_024: [**send method shall publish a message to the IOT Hub on the publish topic by calling method publish().**]**
+     */
+    @Test
+    public void sendShallPassCompletionListenerToLowerLayer(@Mocked final Mqtt mockMqtt,
+                                                            @Mocked final IMqttActionListener mockListener) throws IOException
+    {
+        final byte[] messageBody = {0x61, 0x62, 0x63};
+        new NonStrictExpectations()
+        {
+            {
+                mockMessage.getBytes();
+                result = messageBody;
+                mockMessage.getBodyBuffer();
+                result = ByteBuffer.wrap(messageBody);
+            }
+        };
+
+        MqttMessaging testMqttMessaging = new MqttMessaging(serverUri, clientId, userName, password, mockIotHubSSLContext);
+        testMqttMessaging.send(mockMessage, mockListener);
+
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockMqtt, "publish", new Class[] {String.class, byte[].class, IMqttActionListener.class}, anyString, messageBody, mockListener);
+                times = 1;
+            }
+        };
+    }
+
     @Test (expected =  IOException.class)
     public void sendShallThrowIOExceptionIfMessageIsEmpty(@Mocked final Mqtt mockMqtt) throws IOException
     {
@@ -450,7 +512,9 @@ public class MqttMessagingTest {
             {
                 mockMessage.getBytes();
                 result = messageBody;
-                Deencapsulation.invoke(mockMqtt, "publish", anyString, messageBody);
+                mockMessage.getBodyBuffer();
+                result = ByteBuffer.wrap(messageBody);
+                Deencapsulation.invoke(mockMqtt, "publish", new Class[] {String.class, byte[].class, IMqttActionListener.class}, anyString, messageBody, null);
                 result = mockIOException;
 
             }
@@ -464,7 +528,7 @@ public class MqttMessagingTest {
             {
                 mockMessage.getBytes();
                 times = 1;
-                Deencapsulation.invoke(mockMqtt, "publish", mockParseTopic,  new byte[1]);
+                Deencapsulation.invoke(mockMqtt, "publish", new Class[] {String.class, byte[].class, IMqttActionListener.class}, mockParseTopic, new byte[1], null);
                 times = 1;
 
             }
@@ -487,7 +551,7 @@ public class MqttMessagingTest {
             {
                 mockMessage.getBytes();
                 times = 0;
-                Deencapsulation.invoke(mockMqtt, "publish", mockParseTopic,  new byte[1]);
+                Deencapsulation.invoke(mockMqtt, "publish", new Class[] {String.class, byte[].class, IMqttActionListener.class}, mockParseTopic, new byte[1], null);
                 times = 0;
 
             }
@@ -513,9 +577,11 @@ public class MqttMessagingTest {
             {
                 mockMessage.getBytes();
                 result = messageBody;
-                mockMessage.getProperties();
-                result = messageProperties;
-                Deencapsulation.invoke(mockMqtt, "publish", anyString, messageBody);
+                mockMessage.getBodyBuffer();
+                result = ByteBuffer.wrap(messageBody);
+                mockMessage.getPropertyList();
+                result = Arrays.asList(messageProperties);
+                Deencapsulation.invoke(mockMqtt, "publish", new Class[] {String.class, byte[].class, IMqttActionListener.class}, anyString, messageBody, null);
             }
         };
 
@@ -528,9 +594,9 @@ public class MqttMessagingTest {
         {
             {
                 mockMessage.getBytes();
-                times = 2;
-                mockMessage.getProperties();
-                Deencapsulation.invoke(mockMqtt, "publish", publishTopicWithProperties,  messageBody);
+                times = 1;
+                mockMessage.getPropertyList();
+                Deencapsulation.invoke(mockMqtt, "publish", new Class[] {String.class, byte[].class, IMqttActionListener.class}, publishTopicWithProperties, messageBody, null);
                 times = 1;
             }
         };
@@ -555,11 +621,13 @@ public class MqttMessagingTest {
             {
                 mockMessage.getBytes();
                 result = messageBody;
-                mockMessage.getProperties();
-                result = messageProperties;
+                mockMessage.getBodyBuffer();
+                result = ByteBuffer.wrap(messageBody);
+                mockMessage.getPropertyList();
+                result = Arrays.asList(messageProperties);
                 mockMessage.getMessageId();
                 result = messageidValue;
-                Deencapsulation.invoke(mockMqtt, "publish", anyString, messageBody);
+                Deencapsulation.invoke(mockMqtt, "publish", new Class[] {String.class, byte[].class, IMqttActionListener.class}, anyString, messageBody, null);
             }
         };
 
@@ -572,9 +640,9 @@ public class MqttMessagingTest {
         {
             {
                 mockMessage.getBytes();
-                times = 2;
-                mockMessage.getProperties();
-                Deencapsulation.invoke(mockMqtt, "publish", publishTopicWithProperties, messageBody);
+                times = 1;
+                mockMessage.getPropertyList();
+                Deencapsulation.invoke(mockMqtt, "publish", new Class[] {String.class, byte[].class, IMqttActionListener.class}, publishTopicWithProperties, messageBody, null);
                 times = 1;
                 mockMessage.getMessageId();
                 times = 2;
@@ -0,0 +1,333 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport.mqtt;
+
+import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttPingScheduler;
+import mockit.Deencapsulation;
+import mockit.Delegate;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import org.eclipse.paho.client.mqttv3.MqttToken;
+import org.eclipse.paho.client.mqttv3.internal.ClientComms;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/* Unit tests for MqttPingScheduler */
+public class MqttPingSchedulerTest
+{
+    @Mocked
+    ClientComms mockComms;
+
+    /*
+    Tests_SRS_MQTTPINGSCHEDULER_25_001: [**init shall throw IllegalArgumentException if comms is null.**]**
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void initThrowsOnNullComms()
+    {
+        //act
+        new MqttPingScheduler().init(null);
+    }
+
+    /*
+    Tests_SRS_MQTTPINGSCHEDULER_25_002: [**init shall save the comms whose keep alive is to be scheduled.**]**
+     */
+    @Test
+    public void initSavesComms()
+    {
+        //arrange
+        MqttPingScheduler testScheduler = new MqttPingScheduler();
+
+        //act
+        testScheduler.init(mockComms);
+
+        //assert
+        ClientComms actualComms = Deencapsulation.getField(testScheduler, "comms");
+        assertEquals(mockComms, actualComms);
+    }
+
+    /*
+    Tests_SRS_MQTTPINGSCHEDULER_25_003: [**start shall schedule the first activity check after the keep alive interval of comms.**]**
+    Tests_SRS_MQTTPINGSCHEDULER_25_004: [**stop shall cancel the pending activity check, if any, and keep the checks scheduled before it from running, even the ones already handed to the check thread pool.**]**
+     */
+    @Test
+    public void startSchedulesCheckAfterKeepAliveAndStopCancelsIt()
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockComms.getKeepAlive();
+                result = 60000L;
+            }
+        };
+        MqttPingScheduler testScheduler = new MqttPingScheduler();
+        testScheduler.init(mockComms);
+
+        //act
+        testScheduler.start();
+
+        //assert
+        ScheduledFuture<?> pendingPing = Deencapsulation.getField(testScheduler, "pendingPing");
+        assertNotNull(pendingPing);
+
+        //act
+        testScheduler.stop();
+
+        //assert
+        assertNull(Deencapsulation.getField(testScheduler, "pendingPing"));
+        assertEquals(true, pendingPing.isCancelled());
+        new Verifications()
+        {
+            {
+                mockComms.checkForActivity();
+                times = 0;
+            }
+        };
+    }
+
+    /*
+    Tests_SRS_MQTTPINGSCHEDULER_25_004: [**stop shall cancel the pending activity check, if any, and keep the checks scheduled before it from running, even the ones already handed to the check thread pool.**]**
+     */
+    @Test
+    public void stopKeepsCheckAlreadyHandedToCheckPoolFromRunning() throws Exception
+    {
+        //arrange
+        final int checkThreadCount = Deencapsulation.getField(MqttPingScheduler.class, "CHECK_THREAD_COUNT");
+        final CountDownLatch blockingChecks = new CountDownLatch(checkThreadCount);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger checkCount = new AtomicInteger();
+        new NonStrictExpectations()
+        {
+            {
+                mockComms.checkForActivity();
+                result = new Delegate()
+                {
+                    MqttToken checkForActivity() throws InterruptedException
+                    {
+                        if (checkCount.incrementAndGet() <= checkThreadCount)
+                        {
+                            // keep every check thread busy, so the next check waits in the queue of the pool
+                            blockingChecks.countDown();
+                            release.await(10, TimeUnit.SECONDS);
+                        }
+                        return null;
+                    }
+                };
+            }
+        };
+        for (int i = 0; i < checkThreadCount; i++)
+        {
+            MqttPingScheduler blockingScheduler = new MqttPingScheduler();
+            blockingScheduler.init(mockComms);
+            blockingScheduler.schedule(0);
+        }
+        MqttPingScheduler testScheduler = new MqttPingScheduler();
+        testScheduler.init(mockComms);
+
+        try
+        {
+            assertTrue(blockingChecks.await(5, TimeUnit.SECONDS));
+            testScheduler.schedule(0);
+            // let the ping thread hand the check to the busy pool
+            Thread.sleep(100);
+
+            //act
+            testScheduler.stop();
+        }
+        finally
+        {
+            release.countDown();
+        }
+
+        //assert
+        Thread.sleep(100);
+        assertEquals(checkThreadCount, checkCount.get());
+    }
+
+    /*
+    Tests_SRS_MQTTPINGSCHEDULER_25_006: [**schedule shall do nothing after stop until start is called again, since a check which was running when stop was called schedules the next one.**]**
+     */
+    @Test
+    public void scheduleDoesNothingAfterStopUntilStart()
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockComms.getKeepAlive();
+                result = 60000L;
+            }
+        };
+        MqttPingScheduler testScheduler = new MqttPingScheduler();
+        testScheduler.init(mockComms);
+        testScheduler.start();
+        testScheduler.stop();
+
+        //act
+        testScheduler.schedule(60000);
+
+        //assert
+        assertNull(Deencapsulation.getField(testScheduler, "pendingPing"));
+
+        //act
+        testScheduler.start();
+
+        //assert
+        ScheduledFuture<?> pendingPing = Deencapsulation.getField(testScheduler, "pendingPing");
+        assertNotNull(pendingPing);
+        testScheduler.stop();
+    }
+
+    /*
+    Tests_SRS_MQTTPINGSCHEDULER_25_005: [**schedule shall run comms.checkForActivity on the check thread pool after delayInMilliseconds, so the shared ping thread never blocks on a connection.**]**
+     */
+    @Test
+    public void scheduleRunsActivityCheckOfEachConnection() throws Exception
+    {
+        //arrange
+        final CountDownLatch checks = new CountDownLatch(2);
+        new NonStrictExpectations()
+        {
+            {
+                mockComms.checkForActivity();
+                result = new Delegate()
+                {
+                    MqttToken checkForActivity()
+                    {
+                        checks.countDown();
+                        return null;
+                    }
+                };
+            }
+        };
+        MqttPingScheduler testScheduler1 = new MqttPingScheduler();
+        MqttPingScheduler testScheduler2 = new MqttPingScheduler();
+        testScheduler1.init(mockComms);
+        testScheduler2.init(mockComms);
+
+        //act
+        testScheduler1.schedule(0);
+        testScheduler2.schedule(0);
+
+        //assert
+        assertTrue(checks.await(5, TimeUnit.SECONDS));
+    }
+
+    /*
+    Tests_SRS_MQTTPINGSCHEDULER_25_005: [**schedule shall run comms.checkForActivity on the check thread pool after delayInMilliseconds, so the shared ping thread never blocks on a connection.**]**
+     */
+    @Test
+    public void activityChecksOfManyConnectionsShareBoundedDaemonThreads() throws Exception
+    {
+        //arrange
+        final int connections = 50;
+        final CountDownLatch checks = new CountDownLatch(connections);
+        final Set<Thread> checkThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+        new NonStrictExpectations()
+        {
+            {
+                mockComms.checkForActivity();
+                result = new Delegate()
+                {
+                    MqttToken checkForActivity() throws InterruptedException
+                    {
+                        checkThreads.add(Thread.currentThread());
+                        // slow checks, so an unbounded pool would start a thread for each of them
+                        Thread.sleep(20);
+                        checks.countDown();
+                        return null;
+                    }
+                };
+            }
+        };
+
+        //act
+        for (int i = 0; i < connections; i++)
+        {
+            MqttPingScheduler testScheduler = new MqttPingScheduler();
+            testScheduler.init(mockComms);
+            testScheduler.schedule(0);
+        }
+
+        //assert
+        assertTrue(checks.await(10, TimeUnit.SECONDS));
+        int checkThreadCount = Deencapsulation.getField(MqttPingScheduler.class, "CHECK_THREAD_COUNT");
+        assertTrue(checkThreadCount >= 2 && checkThreadCount <= 4);
+        assertTrue(checkThreads.size() <= checkThreadCount);
+        for (Thread checkThread : checkThreads)
+        {
+            assertTrue(checkThread.isDaemon());
+        }
+    }
+
+    /*
+    Tests_SRS_MQTTPINGSCHEDULER_25_005: [**schedule shall run comms.checkForActivity on the check thread pool after delayInMilliseconds, so the shared ping thread never blocks on a connection.**]**
+     */
+    @Test
+    public void blockedActivityCheckDoesNotStopOtherConnections() throws Exception
+    {
+        //arrange
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch otherChecks = new CountDownLatch(3);
+        final AtomicBoolean firstCheck = new AtomicBoolean(true);
+        new NonStrictExpectations()
+        {
+            {
+                mockComms.checkForActivity();
+                result = new Delegate()
+                {
+                    MqttToken checkForActivity() throws InterruptedException
+                    {
+                        if (firstCheck.getAndSet(false))
+                        {
+                            // a connection which is being lost, retrying inside paho
+                            release.await(10, TimeUnit.SECONDS);
+                        }
+                        else
+                        {
+                            otherChecks.countDown();
+                        }
+                        return null;
+                    }
+                };
+            }
+        };
+        MqttPingScheduler blockedScheduler = new MqttPingScheduler();
+        MqttPingScheduler otherScheduler = new MqttPingScheduler();
+        blockedScheduler.init(mockComms);
+        otherScheduler.init(mockComms);
+
+        try
+        {
+            //act
+            blockedScheduler.schedule(0);
+            for (int i = 0; i < 3; i++)
+            {
+                otherScheduler.schedule(20);
+                Thread.sleep(40);
+            }
+
+            //assert
+            assertTrue(otherChecks.await(5, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            release.countDown();
+        }
+    }
+}
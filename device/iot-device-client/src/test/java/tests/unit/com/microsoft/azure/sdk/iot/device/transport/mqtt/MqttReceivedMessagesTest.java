@@ -0,0 +1,247 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.mqtt;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+import mockit.Mocked;
+import mockit.Verifications;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/* Unit tests for MqttReceivedMessages */
+public class MqttReceivedMessagesTest
+{
+    private static final String DEVICE_ID = "test-deviceId";
+    private static final String MESSAGING_TOPIC = "devices/" + DEVICE_ID + "/messages/devicebound/%24.mid=1";
+    private static final String TWIN_TOPIC = "$iothub/twin/PATCH/properties/desired/?$version=2";
+    private static final String METHOD_TOPIC = "$iothub/methods/POST/testMethod/?$rid=10";
+
+    /*
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_001: [**The constructor shall throw IllegalArgumentException if the deviceId is null or empty.**]**
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullDeviceId()
+    {
+        new MqttReceivedMessages(null);
+    }
+
+    /*
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_001: [**The constructor shall throw IllegalArgumentException if the deviceId is null or empty.**]**
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnEmptyDeviceId()
+    {
+        new MqttReceivedMessages("");
+    }
+
+    /*
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_002: [**The constructor shall throw IllegalArgumentException if the highWaterMark is less than 1.**]**
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnZeroHighWaterMark()
+    {
+        new MqttReceivedMessages(DEVICE_ID, 0);
+    }
+
+    /*
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_003: [**The constructor shall create one queue of the provided capacity for each channel.**]**
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_013: [**The function shall return true only if the queues of all channels are empty.**]**
+     */
+    @Test
+    public void constructorCreatesEmptyQueues()
+    {
+        MqttReceivedMessages receivedMessages = new MqttReceivedMessages(DEVICE_ID);
+
+        assertTrue(receivedMessages.isEmpty());
+        for (MqttReceivedMessages.Channel channel : MqttReceivedMessages.Channel.values())
+        {
+            assertNull(receivedMessages.peekTopic(channel));
+        }
+    }
+
+    /*
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_004: [**The function shall route topics starting with `$iothub/twin/` to the device twin channel and topics starting with `$iothub/methods/` to the device method channel.**]**
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_005: [**The function shall route topics starting with `devices/<deviceId>/messages/devicebound/` to the messaging channel.**]**
+     */
+    @Test
+    public void routeFindsChannelByTopicPrefix()
+    {
+        MqttReceivedMessages receivedMessages = new MqttReceivedMessages(DEVICE_ID);
+
+        assertEquals(MqttReceivedMessages.Channel.MESSAGING, receivedMessages.route(MESSAGING_TOPIC));
+        assertEquals(MqttReceivedMessages.Channel.DEVICE_TWIN, receivedMessages.route(TWIN_TOPIC));
+        assertEquals(MqttReceivedMessages.Channel.DEVICE_TWIN, receivedMessages.route("$iothub/twin/res/200/?$rid=5"));
+        assertEquals(MqttReceivedMessages.Channel.DEVICE_METHOD, receivedMessages.route(METHOD_TOPIC));
+    }
+
+    /*
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_006: [**The function shall return null if no channel consumes the topic.**]**
+     */
+    @Test
+    public void routeReturnsNullForUnknownTopics()
+    {
+        MqttReceivedMessages receivedMessages = new MqttReceivedMessages(DEVICE_ID);
+
+        assertNull(receivedMessages.route(null));
+        assertNull(receivedMessages.route("testTopic"));
+        assertNull(receivedMessages.route("$iothub/twins"));
+        assertNull(receivedMessages.route("devices/" + DEVICE_ID + "/messages/devicebound/"));
+        assertNull(receivedMessages.route("devices/otherDevice/messages/devicebound/abc"));
+        assertNull(receivedMessages.route("devices/" + DEVICE_ID + "/fakemessages/devicebound/abc"));
+    }
+
+    /*
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_007: [**If no channel consumes the topic, the function shall not queue the message and return false.**]**
+     */
+    @Test
+    public void addIgnoresUnknownTopics()
+    {
+        MqttReceivedMessages receivedMessages = new MqttReceivedMessages(DEVICE_ID);
+
+        assertFalse(receivedMessages.add("testTopic", new byte[] {0x61}));
+
+        assertTrue(receivedMessages.isEmpty());
+    }
+
+    /*
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_008: [**The function shall add the topic and payload to the end of the queue of the channel of the topic, and return true.**]**
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_010: [**The function shall return the topic of the oldest message of the channel, or null if the channel queue is empty.**]**
+     */
+    @Test
+    public void addQueuesMessageOnItsChannelOnly()
+    {
+        MqttReceivedMessages receivedMessages = new MqttReceivedMessages(DEVICE_ID);
+
+        assertTrue(receivedMessages.add(TWIN_TOPIC, new byte[] {0x61}));
+
+        assertFalse(receivedMessages.isEmpty());
+        assertEquals(TWIN_TOPIC, receivedMessages.peekTopic(MqttReceivedMessages.Channel.DEVICE_TWIN));
+        assertNull(receivedMessages.peekTopic(MqttReceivedMessages.Channel.MESSAGING));
+        assertNull(receivedMessages.peekTopic(MqttReceivedMessages.Channel.DEVICE_METHOD));
+    }
+
+    /*
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_008: [**The function shall add the topic and payload to the end of the queue of the channel of the topic, and return true.**]**
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_012: [**The function shall remove the oldest message of the channel and return its payload.**]**
+     */
+    @Test
+    public void messagesOnTheSameTopicAreKeptInArrivalOrder()
+    {
+        MqttReceivedMessages receivedMessages = new MqttReceivedMessages(DEVICE_ID);
+        final byte[] payload1 = {0x61};
+        final byte[] payload2 = {0x62};
+        final byte[] payload3 = {0x63};
+        receivedMessages.add(MESSAGING_TOPIC, payload1);
+        receivedMessages.add(METHOD_TOPIC, payload3);
+        receivedMessages.add(MESSAGING_TOPIC, payload2);
+
+        String topic = receivedMessages.peekTopic(MqttReceivedMessages.Channel.MESSAGING);
+        assertSame(payload1, receivedMessages.poll(MqttReceivedMessages.Channel.MESSAGING, topic));
+        topic = receivedMessages.peekTopic(MqttReceivedMessages.Channel.MESSAGING);
+        assertSame(payload2, receivedMessages.poll(MqttReceivedMessages.Channel.MESSAGING, topic));
+        assertNull(receivedMessages.peekTopic(MqttReceivedMessages.Channel.MESSAGING));
+        assertSame(payload3, receivedMessages.poll(MqttReceivedMessages.Channel.DEVICE_METHOD, METHOD_TOPIC));
+        assertTrue(receivedMessages.isEmpty());
+    }
+
+    /*
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_009: [**If the queue of the channel holds more messages than the highWaterMark, the function shall still queue the message, without blocking or throwing, and count it in the messages above the high-water mark.**]**
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_015: [**The function shall return the number of messages in the queue of the channel.**]**
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_016: [**The function shall return the number of messages queued while their channel held more messages than the highWaterMark.**]**
+     */
+    @Test
+    public void addQueuesMessagesAboveHighWaterMark()
+    {
+        MqttReceivedMessages receivedMessages = new MqttReceivedMessages(DEVICE_ID, 1);
+        assertTrue(receivedMessages.add(MESSAGING_TOPIC, new byte[] {0x61}));
+        assertTrue(receivedMessages.add(TWIN_TOPIC, new byte[] {0x62}));
+        assertEquals(0, receivedMessages.getMessagesAboveHighWaterMarkCount());
+
+        assertTrue(receivedMessages.add(MESSAGING_TOPIC, new byte[] {0x63}));
+        assertTrue(receivedMessages.add(MESSAGING_TOPIC, new byte[] {0x64}));
+
+        assertEquals(3, receivedMessages.size(MqttReceivedMessages.Channel.MESSAGING));
+        assertEquals(1, receivedMessages.size(MqttReceivedMessages.Channel.DEVICE_TWIN));
+        assertEquals(0, receivedMessages.size(MqttReceivedMessages.Channel.DEVICE_METHOD));
+        assertEquals(2, receivedMessages.getMessagesAboveHighWaterMarkCount());
+        assertArrayEquals(new byte[] {0x61}, receivedMessages.poll(MqttReceivedMessages.Channel.MESSAGING, MESSAGING_TOPIC));
+        assertArrayEquals(new byte[] {0x63}, receivedMessages.poll(MqttReceivedMessages.Channel.MESSAGING, MESSAGING_TOPIC));
+        assertArrayEquals(new byte[] {0x64}, receivedMessages.poll(MqttReceivedMessages.Channel.MESSAGING, MESSAGING_TOPIC));
+        assertNull(receivedMessages.peekTopic(MqttReceivedMessages.Channel.MESSAGING));
+    }
+
+    /*
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_014: [**The function shall log a warning when the queue of the channel grows past the highWaterMark.**]**
+     */
+    @Test
+    public void addWarnsOnceWhenQueueGrowsPastHighWaterMark(@Mocked final CustomLogger mockLogger)
+    {
+        MqttReceivedMessages receivedMessages = new MqttReceivedMessages(DEVICE_ID, 1);
+        receivedMessages.add(MESSAGING_TOPIC, new byte[] {0x61});
+        receivedMessages.add(MESSAGING_TOPIC, new byte[] {0x62});
+        receivedMessages.add(MESSAGING_TOPIC, new byte[] {0x63});
+
+        new Verifications()
+        {
+            {
+                mockLogger.LogWarn(anyString, (Object[]) any);
+                times = 1;
+            }
+        };
+    }
+
+    /*
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_017: [**The constructor shall throw IllegalArgumentException if the capacity is less than the highWaterMark.**]**
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnCapacityBelowHighWaterMark()
+    {
+        new MqttReceivedMessages(DEVICE_ID, 2, 1);
+    }
+
+    /*
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_018: [**If the queue of the channel is full, the function shall not queue the message, count it in the rejected messages, log a warning and return false, without blocking or throwing.**]**
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_019: [**The function shall return the number of messages rejected because the queue of their channel was full.**]**
+     */
+    @Test
+    public void addRejectsMessageWhenQueueIsFull(@Mocked final CustomLogger mockLogger)
+    {
+        MqttReceivedMessages receivedMessages = new MqttReceivedMessages(DEVICE_ID, 2, 2);
+        assertTrue(receivedMessages.add(MESSAGING_TOPIC, new byte[] {0x61}));
+        assertTrue(receivedMessages.add(MESSAGING_TOPIC, new byte[] {0x62}));
+
+        assertFalse(receivedMessages.add(MESSAGING_TOPIC, new byte[] {0x63}));
+        assertTrue(receivedMessages.add(TWIN_TOPIC, new byte[] {0x64}));
+
+        assertEquals(2, receivedMessages.size(MqttReceivedMessages.Channel.MESSAGING));
+        assertEquals(1, receivedMessages.getRejectedMessagesCount());
+        assertArrayEquals(new byte[] {0x61}, receivedMessages.poll(MqttReceivedMessages.Channel.MESSAGING, MESSAGING_TOPIC));
+        assertTrue(receivedMessages.add(MESSAGING_TOPIC, new byte[] {0x65}));
+        assertArrayEquals(new byte[] {0x62}, receivedMessages.poll(MqttReceivedMessages.Channel.MESSAGING, MESSAGING_TOPIC));
+        assertArrayEquals(new byte[] {0x65}, receivedMessages.poll(MqttReceivedMessages.Channel.MESSAGING, MESSAGING_TOPIC));
+        new Verifications()
+        {
+            {
+                mockLogger.LogWarn(anyString, (Object[]) any);
+                times = 1;
+            }
+        };
+    }
+
+    /*
+    **Tests_SRS_MQTTRECEIVEDMESSAGES_21_011: [**If the oldest message of the channel is not on the provided topic, the function shall return null and keep the queue unchanged.**]**
+     */
+    @Test
+    public void pollReturnsNullIfOldestMessageIsOnAnotherTopic()
+    {
+        MqttReceivedMessages receivedMessages = new MqttReceivedMessages(DEVICE_ID);
+        receivedMessages.add(TWIN_TOPIC, new byte[] {0x61});
+
+        assertNull(receivedMessages.poll(MqttReceivedMessages.Channel.DEVICE_TWIN, "$iothub/twin/res/200/?$rid=5"));
+        assertNull(receivedMessages.poll(MqttReceivedMessages.Channel.MESSAGING, TWIN_TOPIC));
+
+        assertEquals(TWIN_TOPIC, receivedMessages.peekTopic(MqttReceivedMessages.Channel.DEVICE_TWIN));
+    }
+}
@@ -6,6 +6,7 @@ package com.microsoft.azure.sdk.iot.device.transport.mqtt;
 
 import com.microsoft.azure.sdk.iot.device.IotHubSSLContext;
 import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportWorker;
 
 import mockit.*;
 import org.eclipse.paho.client.mqttv3.*;
@@ -15,7 +16,9 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.security.InvalidParameterException;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
 
 import static org.junit.Assert.*;
 
@@ -26,6 +29,7 @@ public class MqttTest {
     final String userName = "test-deviceId";
     final String password = "test-devicekey?&test";
     final String mockParseTopic = "testTopic";
+    final String mockMessagingTopic = "devices/" + clientId + "/messages/devicebound/testTopic";
 
     @Mocked
     private MqttAsyncClient mockMqttAsyncClient;
@@ -108,6 +112,24 @@ public class MqttTest {
         }
     }
 
+    private Mqtt instantiateMqtt(Mqtt mqttConnection) throws IOException
+    {
+        return new Mqtt(mqttConnection)
+        {
+            @Override
+            String parseTopic() throws IOException
+            {
+                return mockParseTopic;
+            }
+
+            @Override
+            byte[] parsePayload(String topic) throws IOException
+            {
+                return new byte[0];
+            }
+        };
+    }
+
     private void baseConstructorExpectations(boolean withParameter) throws MqttException
     {
 
@@ -118,7 +140,7 @@ public class MqttTest {
                 {
                     new MemoryPersistence();
                     result = mockMemoryPersistence;
-                    new MqttAsyncClient(serverUri, clientId, mockMemoryPersistence);
+                    new MqttAsyncClient(serverUri, clientId, mockMemoryPersistence, (MqttPingSender) any);
                     result = mockMqttAsyncClient;
                     new MqttConnectOptions();
                     result = mockMqttConnectionOptions;
@@ -170,7 +192,7 @@ public class MqttTest {
                 result = true;
                 new MqttMessage(payload);
                 result = mockMqttMessage;
-                mockMqttAsyncClient.publish(mockParseTopic, mockMqttMessage);
+                mockMqttAsyncClient.publish(mockParseTopic, mockMqttMessage, null, (IMqttActionListener) any);
                 result = mockMqttDeliveryToken;
             }
         };
@@ -189,7 +211,7 @@ public class MqttTest {
                 times = 1;
                 mockMqttMessage.setQos(anyInt);
                 times = 1;
-                mockMqttAsyncClient.publish(mockParseTopic, mockMqttMessage);
+                mockMqttAsyncClient.publish(mockParseTopic, mockMqttMessage, null, (IMqttActionListener) any);
                 times = 1;
                 mockMqttDeliveryToken.waitForCompletion();
                 times = 1;
@@ -241,10 +263,12 @@ public class MqttTest {
             new Verifications()
             {
                 {
-                    new MqttAsyncClient(serverUri, clientId, mockMemoryPersistence);
+                    new MqttAsyncClient(serverUri, clientId, mockMemoryPersistence, (MqttPingSender) any);
                     times = 1;
                     mockMqttAsyncClient.setCallback((Mqtt) any);
                     times = 1;
+                    mockMqttAsyncClient.setManualAcks(true);
+                    times = 1;
                     mockMqttConnectionOptions.setKeepAliveInterval(anyInt);
                     times = 1;
                     mockMqttConnectionOptions.setCleanSession(anyBoolean);
@@ -257,7 +281,7 @@ public class MqttTest {
                     times = 1;
                     mockMqttConnectionOptions.setSocketFactory(mockIotHubSSLContext.getIotHubSSlContext().getSocketFactory());
                     times = 1;
-                    new ConcurrentSkipListMap<>();
+                    mockMqttConnectionOptions.setMaxInflight(10);
                     times = 1;
                     new Object();
                     times = 1;
@@ -288,40 +312,45 @@ public class MqttTest {
     }
 
     /*
-    ** Tests_SRS_Mqtt_25_004: [**If an instance of the inner class MqttConnectionInfo is already created than it shall return doing nothing.**]**
+    ** Tests_SRS_Mqtt_25_050: [**The constructor shall share the connection information, received messages queue and lock of mqttConnection.**]**
      */
     @Test
-    public void manyExtendsOfAbstractClassDoesntChangeConfig() throws IOException, MqttException
+    public void constructorWithConnectionSharesConfigOfConnection() throws IOException, MqttException
     {
         //arrange
         baseConstructorExpectations(true);
-        baseConstructorExpectations(false);
-
-        //act
         Mqtt mockMqtt1 = instantiateMqtt(true);
-        Mqtt.MqttConnectionInfo actualInfoInstance1 = Deencapsulation.getField(mockMqtt1, "info");
-        ConcurrentSkipListMap<String, byte[]> actualMap1 = Deencapsulation.getField(mockMqtt1, "allReceivedMessages");
-        Object actualLock1 = Deencapsulation.getField(mockMqtt1, "MQTT_LOCK");
 
-        Mqtt mockMqtt2 = instantiateMqtt(false);
-        Mqtt.MqttConnectionInfo actualInfoInstance2 = Deencapsulation.getField(mockMqtt2, "info");
-        ConcurrentSkipListMap<String, byte[]> actualMap2 = Deencapsulation.getField(mockMqtt2, "allReceivedMessages");
-        Object actualLock2 = Deencapsulation.getField(mockMqtt2, "MQTT_LOCK");
+        //act
+        Mqtt mockMqtt2 = instantiateMqtt(mockMqtt1);
 
         //assert
-        assertEquals(actualInfoInstance1, actualInfoInstance2);
-        assertEquals(actualMap1, actualMap2);
-        assertEquals(actualLock1, actualLock2);
+        Mqtt.MqttConnectionInfo actualInfoInstance1 = Deencapsulation.getField(mockMqtt1, "info");
+        MqttReceivedMessages actualMap1 = Deencapsulation.getField(mockMqtt1, "receivedMessages");
+        Object actualLock1 = Deencapsulation.getField(mockMqtt1, "mqttLock");
+        Mqtt.MqttConnectionInfo actualInfoInstance2 = Deencapsulation.getField(mockMqtt2, "info");
+        MqttReceivedMessages actualMap2 = Deencapsulation.getField(mockMqtt2, "receivedMessages");
+        Object actualLock2 = Deencapsulation.getField(mockMqtt2, "mqttLock");
 
+        assertSame(actualInfoInstance1, actualInfoInstance2);
+        assertSame(actualMap1, actualMap2);
+        assertSame(actualLock1, actualLock2);
         baseConstructorVerifications(true);
-        baseConstructorVerifications(false);
+    }
 
-        //cleanup
-        testCleanUp(mockMqtt1);
+    /*
+    ** Tests_SRS_Mqtt_25_049: [**The constructor shall throw InvalidParameter Exception if mqttConnection is null.**]**
+     */
+    @Test(expected = InvalidParameterException.class)
+    public void constructorWithConnectionThrowsOnNullConnection() throws IOException
+    {
+        //act
+        instantiateMqtt(null);
     }
 
     /*
-    **Tests_SRS_Mqtt_25_003: [**The constructor shall use the configuration to instantiate an instance of the inner class MqttConnectionInfo if not already created.**]**
+    **Tests_SRS_Mqtt_25_003: [**The constructor shall use the configuration to instantiate an instance of the inner class MqttConnectionInfo.**]**
+    **Tests_SRS_Mqtt_21_063: [**The constructor shall make the connection acknowledge the received messages only when asked, so a message the received messages queue rejects stays with the IoT Hub.**]**
      */
     @Test
     public void constructorInitiliasesWithConfig() throws IOException, MqttException
@@ -338,9 +367,9 @@ public class MqttTest {
         assertNotNull(actualInfo.mqttAsyncClient);
         MqttConnectOptions actualConnectionOptions = Deencapsulation.getField(actualInfo, "connectionOptions");
         assertNotNull(actualConnectionOptions);
-        ConcurrentSkipListMap<String, byte[]> actualMap = Deencapsulation.getField(mockMqtt, "allReceivedMessages");
+        MqttReceivedMessages actualMap = Deencapsulation.getField(mockMqtt, "receivedMessages");
         assertNotNull(actualMap);
-        Object actualLock = Deencapsulation.getField(mockMqtt, "MQTT_LOCK");
+        Object actualLock = Deencapsulation.getField(mockMqtt, "mqttLock");
         assertNotNull(actualLock);
 
 
@@ -362,7 +391,7 @@ public class MqttTest {
                 {
                     new MemoryPersistence();
                     result = mockMemoryPersistence;
-                    new MqttAsyncClient(serverUri, clientId, mockMemoryPersistence);
+                    new MqttAsyncClient(serverUri, clientId, mockMemoryPersistence, (MqttPingSender) any);
                     result = mockMqttException;
                 }
             };
@@ -430,47 +459,46 @@ public class MqttTest {
         //assert
         Mqtt.MqttConnectionInfo actualInfoInstance = Deencapsulation.getField(mockMqtt, "info");
         assertNull(actualInfoInstance);
-        ConcurrentSkipListMap<String, byte[]> actualMap = Deencapsulation.getField(mockMqtt, "allReceivedMessages");
+        MqttReceivedMessages actualMap = Deencapsulation.getField(mockMqtt, "receivedMessages");
         assertNull(actualMap);
 
-        Object actualLock = Deencapsulation.getField(mockMqtt, "MQTT_LOCK");
+        Object actualLock = Deencapsulation.getField(mockMqtt, "mqttLock");
         assertNotNull(actualLock);
         baseConstructorVerifications(false);
         mockMqtt.restartBaseMqtt();
     }
 
     /*
-    ** Tests_SRS_Mqtt_25_004: [**If an instance of the inner class MqttConnectionInfo is already created than it shall return doing nothing.**]**
+    **Tests_SRS_Mqtt_25_003: [**The constructor shall use the configuration to instantiate an instance of the inner class MqttConnectionInfo.**]**
      */
     @Test
-    public void constructorWithParametersIfCalledMultipleTimesDoesntReinitialize() throws IOException, MqttException
+    public void constructorWithParametersCreatesSeparateConnectionPerInstance() throws IOException, MqttException
     {
         //arrange
         baseConstructorExpectations(true);
-        baseConstructorExpectations(true);
 
         //act
         Mqtt mockMqtt1 = instantiateMqtt(true);
+        Mqtt mockMqtt2 = instantiateMqtt(true);
 
         //assert
         Mqtt.MqttConnectionInfo actualInfoInstance1 = Deencapsulation.getField(mockMqtt1, "info");
-        ConcurrentSkipListMap<String, byte[]> actualMap1 = Deencapsulation.getField(mockMqtt1, "allReceivedMessages");
-        Mqtt mockMqtt2 = instantiateMqtt(false);
+        MqttReceivedMessages actualMap1 = Deencapsulation.getField(mockMqtt1, "receivedMessages");
+        Object actualLock1 = Deencapsulation.getField(mockMqtt1, "mqttLock");
         Mqtt.MqttConnectionInfo actualInfoInstance2 = Deencapsulation.getField(mockMqtt2, "info");
-        ConcurrentSkipListMap<String, byte[]> actualMap2 = Deencapsulation.getField(mockMqtt2, "allReceivedMessages");
-
-        Object actualLock1 = Deencapsulation.getField(mockMqtt1, "MQTT_LOCK");
-        Object actualLock2 = Deencapsulation.getField(mockMqtt2, "MQTT_LOCK");
-
-
-        assertEquals(actualInfoInstance1, actualInfoInstance2);
-        assertEquals(actualMap1, actualMap2);
-        assertEquals(actualLock1, actualLock2);
-
-        baseConstructorVerifications(true);
-        baseConstructorVerifications(false);
-        mockMqtt1.restartBaseMqtt();
+        MqttReceivedMessages actualMap2 = Deencapsulation.getField(mockMqtt2, "receivedMessages");
+        Object actualLock2 = Deencapsulation.getField(mockMqtt2, "mqttLock");
 
+        assertNotSame(actualInfoInstance1, actualInfoInstance2);
+        assertNotSame(actualMap1, actualMap2);
+        assertNotSame(actualLock1, actualLock2);
+        new Verifications()
+        {
+            {
+                new MqttAsyncClient(serverUri, clientId, mockMemoryPersistence, (MqttPingSender) any);
+                times = 2;
+            }
+        };
     }
 
     /*
@@ -707,7 +735,7 @@ public class MqttTest {
             {
                 mockMqttAsyncClient.isConnected();
                 minTimes = 2;
-                mockMqttAsyncClient.publish(mockParseTopic, mockMqttMessage);
+                mockMqttAsyncClient.publish(mockParseTopic, mockMqttMessage, null, (IMqttActionListener) any);
                 times = 1;
             }
         };
@@ -715,6 +743,162 @@ public class MqttTest {
     }
 
 
+    /*
+    **Tests_SRS_Mqtt_25_048: [**publish shall wait until the number of publishes awaiting acknowledgement is less than the in-flight window of the connection.**]**
+    **Tests_SRS_Mqtt_21_052: [**When the publish completes or fails, the function shall free its place in the in-flight window and notify completionListener, if any.**]**
+     */
+    @Test
+    public void publishHoldsWindowPlaceUntilAcknowledged(@Mocked final IMqttActionListener mockListener) throws IOException, MqttException
+    {
+        //arrange
+        baseConstructorExpectations(true);
+        baseConnectExpectation();
+        basePublishExpectations();
+
+        final byte[] payload = {0x61, 0x62, 0x63};
+        Mqtt mockMqtt = instantiateMqtt(true);
+        mockMqtt.connect();
+        Mqtt.MqttConnectionInfo actualInfo = Deencapsulation.getField(mockMqtt, "info");
+        Semaphore inFlightWindow = Deencapsulation.getField(actualInfo, "inFlightWindow");
+
+        //act
+        mockMqtt.publish(mockParseTopic, payload, mockListener);
+        mockMqtt.publish(mockParseTopic, payload, mockListener);
+
+        //assert
+        assertEquals(8, inFlightWindow.availablePermits());
+        final List<IMqttActionListener> pahoListeners = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockMqttAsyncClient.publish(mockParseTopic, mockMqttMessage, null, withCapture(pahoListeners));
+                times = 2;
+            }
+        };
+
+        //act
+        pahoListeners.get(0).onSuccess(mockMqttToken);
+        pahoListeners.get(1).onFailure(mockMqttToken, mockMqttException);
+
+        //assert
+        assertEquals(10, inFlightWindow.availablePermits());
+        new Verifications()
+        {
+            {
+                mockListener.onSuccess(mockMqttToken);
+                times = 1;
+                mockListener.onFailure(mockMqttToken, mockMqttException);
+                times = 1;
+            }
+        };
+        testCleanUp(mockMqtt);
+    }
+
+    /*
+    **Tests_SRS_Mqtt_21_062: [**The function shall free the window place and notify completionListener only for the first completion of the publish, because paho may fail a kept in-flight publish when the connection drops and complete it again after redelivering it.**]**
+     */
+    @Test
+    public void publishCompletesOnceIfPahoFailsThenSucceeds(@Mocked final IMqttActionListener mockListener) throws IOException, MqttException
+    {
+        //arrange
+        baseConstructorExpectations(true);
+        baseConnectExpectation();
+        basePublishExpectations();
+
+        final byte[] payload = {0x61, 0x62, 0x63};
+        Mqtt mockMqtt = instantiateMqtt(true);
+        mockMqtt.connect();
+        Mqtt.MqttConnectionInfo actualInfo = Deencapsulation.getField(mockMqtt, "info");
+        Semaphore inFlightWindow = Deencapsulation.getField(actualInfo, "inFlightWindow");
+        mockMqtt.publish(mockParseTopic, payload, mockListener);
+        final List<IMqttActionListener> pahoListeners = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockMqttAsyncClient.publish(mockParseTopic, mockMqttMessage, null, withCapture(pahoListeners));
+                times = 1;
+            }
+        };
+
+        //act
+        pahoListeners.get(0).onFailure(mockMqttToken, mockMqttException);
+        pahoListeners.get(0).onSuccess(mockMqttToken);
+        pahoListeners.get(0).onFailure(mockMqttToken, mockMqttException);
+
+        //assert
+        assertEquals(10, inFlightWindow.availablePermits());
+        new Verifications()
+        {
+            {
+                mockListener.onFailure(mockMqttToken, mockMqttException);
+                times = 1;
+                mockListener.onSuccess(mockMqttToken);
+                times = 0;
+            }
+        };
+        testCleanUp(mockMqtt);
+    }
+
+    /*
+    **Tests_SRS_Mqtt_21_052: [**When the publish completes or fails, the function shall free its place in the in-flight window and notify completionListener, if any.**]**
+     */
+    @Test
+    public void publishFreesWindowPlaceIfPublishThrows() throws IOException, MqttException
+    {
+        //arrange
+        baseConstructorExpectations(true);
+        new NonStrictExpectations()
+        {
+            {
+                mockMqttAsyncClient.isConnected();
+                result = true;
+                mockMqttAsyncClient.publish(anyString, (MqttMessage) any, null, (IMqttActionListener) any);
+                result = mockMqttException;
+            }
+        };
+        Mqtt mockMqtt = instantiateMqtt(true);
+        Mqtt.MqttConnectionInfo actualInfo = Deencapsulation.getField(mockMqtt, "info");
+        Semaphore inFlightWindow = Deencapsulation.getField(actualInfo, "inFlightWindow");
+
+        //act
+        try
+        {
+            mockMqtt.publish(mockParseTopic, new byte[] {0x61});
+            fail("publish should have thrown");
+        }
+        catch (IOException e)
+        {
+            // expected
+        }
+
+        //assert
+        assertEquals(10, inFlightWindow.availablePermits());
+        testCleanUp(mockMqtt);
+    }
+
+    /*
+    ** Tests_SRS_Mqtt_21_051: [**The constructor shall throw InvalidParameter Exception if maxInFlightCount is less than 1.**]**
+     */
+    @Test(expected = InvalidParameterException.class)
+    public void constructorThrowsOnInvalidMaxInFlightCount() throws IOException
+    {
+        //act
+        new Mqtt(serverUri, clientId, userName, password, mockIotHubSSLContext, 0)
+        {
+            @Override
+            String parseTopic() throws IOException
+            {
+                return mockParseTopic;
+            }
+
+            @Override
+            byte[] parsePayload(String topic) throws IOException
+            {
+                return new byte[0];
+            }
+        };
+    }
+
     /*
     **Tests_SRS_Mqtt_25_012: [**If the MQTT connection is closed, the function shall throw an IOException.**]**
      */
@@ -758,7 +942,6 @@ public class MqttTest {
     {
         //arrange
         baseConstructorExpectations(true);
-        baseConstructorExpectations(false);
         baseConnectExpectation();
         basePublishExpectations();
         basePublishExpectations();
@@ -766,7 +949,7 @@ public class MqttTest {
         final byte[] payload = {0x61, 0x62, 0x63};
         String mockParseTopic2 = mockParseTopic + 2;
         Mqtt mockMqtt1 = instantiateMqtt(true);
-        Mqtt mockMqtt2 = instantiateMqtt(false);
+        Mqtt mockMqtt2 = instantiateMqtt(mockMqtt1);
 
         mockMqtt2.connect();
 
@@ -780,7 +963,7 @@ public class MqttTest {
             {
                 mockMqttAsyncClient.isConnected();
                 minTimes = 3;
-                mockMqttAsyncClient.publish(anyString, mockMqttMessage);
+                mockMqttAsyncClient.publish(anyString, mockMqttMessage, null, (IMqttActionListener) any);
                 times = 2;
             }
         };
@@ -809,7 +992,7 @@ public class MqttTest {
                     result = true;
                     new MqttMessage(payload);
                     result = mockMqttMessage;
-                    mockMqttAsyncClient.publish(mockParseTopic, mockMqttMessage);
+                    mockMqttAsyncClient.publish(mockParseTopic, mockMqttMessage, null, (IMqttActionListener) any);
                     result = mockMqttException;
                 }
             };
@@ -1307,13 +1490,13 @@ public class MqttTest {
             mockMqtt.connect();
 
             //act
-            mockMqtt.messageArrived(mockParseTopic, new MqttMessage(actualPayload));
+            mockMqtt.messageArrived(mockMessagingTopic, new MqttMessage(actualPayload));
 
             //assert
-            ConcurrentSkipListMap<String, byte[]> actualMap = Deencapsulation.getField(mockMqtt, "allReceivedMessages");
-            assertTrue(actualMap.containsKey(mockParseTopic));
+            MqttReceivedMessages actualMap = Deencapsulation.getField(mockMqtt, "receivedMessages");
+            assertEquals(mockMessagingTopic, actualMap.peekTopic(MqttReceivedMessages.Channel.MESSAGING));
 
-            byte[] receivedPayload = actualMap.get(mockParseTopic);
+            byte[] receivedPayload = actualMap.poll(MqttReceivedMessages.Channel.MESSAGING, mockMessagingTopic);
             assertTrue(actualPayload.length == receivedPayload.length);
             for (int i = 0; i < actualPayload.length; i++)
             {
@@ -1328,6 +1511,322 @@ public class MqttTest {
 
     }
 
+    /*
+    **Tests_SRS_Mqtt_21_054: [**The function shall save the transportWorker for every Mqtt instance sharing this connection.**]**
+    **Tests_SRS_Mqtt_21_055: [**If a transportWorker was set, the function shall signal it to handle the received message.**]**
+     */
+    @Test
+    public void messageArrivedSignalsTransportWorker(@Mocked final IotHubTransportWorker mockWorker) throws IOException, MqttException
+    {
+        //arrange
+        Mqtt mockMqtt = null;
+        try
+        {
+            final byte[] actualPayload = {0x61, 0x62, 0x63};
+            baseConstructorExpectations(true);
+            baseConnectExpectation();
+
+            mockMqtt = instantiateMqtt(true);
+            mockMqtt.connect();
+            mockMqtt.setTransportWorker(mockWorker);
+
+            //act
+            mockMqtt.messageArrived(mockParseTopic, new MqttMessage(actualPayload));
+
+            //assert
+            new Verifications()
+            {
+                {
+                    mockWorker.signalReceive();
+                    times = 1;
+                }
+            };
+        }
+        finally
+        {
+            testCleanUp(mockMqtt);
+        }
+    }
+
+    /*
+    **Tests_SRS_Mqtt_21_061: [**The function shall not block nor throw when the received messages queue of the topic holds more messages than its high-water mark, so the connection is kept.**]**
+     */
+    @Test
+    public void messageArrivedQueuesMessagesAboveHighWaterMark() throws IOException, MqttException
+    {
+        //arrange
+        Mqtt mockMqtt = null;
+        try
+        {
+            final byte[] actualPayload = {0x61, 0x62, 0x63};
+            baseConstructorExpectations(true);
+            baseConnectExpectation();
+
+            mockMqtt = instantiateMqtt(true);
+            mockMqtt.connect();
+            MqttReceivedMessages receivedMessages = new MqttReceivedMessages(clientId, 1);
+            Deencapsulation.setField(mockMqtt, "receivedMessages", receivedMessages);
+            mockMqtt.messageArrived(mockMessagingTopic, new MqttMessage(actualPayload));
+
+            //act
+            mockMqtt.messageArrived(mockMessagingTopic, new MqttMessage(actualPayload));
+
+            //assert
+            assertEquals(2, receivedMessages.size(MqttReceivedMessages.Channel.MESSAGING));
+            assertEquals(1, receivedMessages.getMessagesAboveHighWaterMarkCount());
+        }
+        finally
+        {
+            testCleanUp(mockMqtt);
+        }
+    }
+
+    /*
+    **Tests_SRS_Mqtt_21_064: [**The function shall acknowledge the message if it was queued, or if no channel consumes its topic.**]**
+    **Tests_SRS_Mqtt_21_065: [**If the received messages queue of the topic is full, the function shall not acknowledge the message, so the IoT Hub delivers it again when the session resumes.**]**
+     */
+    @Test
+    public void messageArrivedAcknowledgesOnlyQueuedOrUnroutedMessages() throws IOException, MqttException
+    {
+        //arrange
+        Mqtt mockMqtt = null;
+        try
+        {
+            final byte[] actualPayload = {0x61, 0x62, 0x63};
+            baseConstructorExpectations(true);
+            baseConnectExpectation();
+            new NonStrictExpectations()
+            {
+                {
+                    mockMqttMessage.getId();
+                    result = 7;
+                    mockMqttMessage.getQos();
+                    result = 1;
+                }
+            };
+
+            mockMqtt = instantiateMqtt(true);
+            mockMqtt.connect();
+            MqttReceivedMessages receivedMessages = new MqttReceivedMessages(clientId, 1, 1);
+            Deencapsulation.setField(mockMqtt, "receivedMessages", receivedMessages);
+
+            //act
+            mockMqtt.messageArrived(mockMessagingTopic, new MqttMessage(actualPayload));
+            mockMqtt.messageArrived(mockMessagingTopic, new MqttMessage(actualPayload));
+
+            //assert
+            assertEquals(1, receivedMessages.size(MqttReceivedMessages.Channel.MESSAGING));
+            assertEquals(1, receivedMessages.getRejectedMessagesCount());
+            new Verifications()
+            {
+                {
+                    mockMqttAsyncClient.messageArrivedComplete(7, 1);
+                    times = 1;
+                }
+            };
+
+            //act
+            mockMqtt.messageArrived("unknown/topic", new MqttMessage(actualPayload));
+
+            //assert
+            new Verifications()
+            {
+                {
+                    mockMqttAsyncClient.messageArrivedComplete(7, 1);
+                    times = 2;
+                }
+            };
+        }
+        finally
+        {
+            testCleanUp(mockMqtt);
+        }
+    }
+
+    /*
+    **Tests_SRS_Mqtt_21_053: [**If the inner class MqttConnectionInfo has not been instantiated then the function shall throw IOException.**]**
+     */
+    @Test (expected = IOException.class)
+    public void setTransportWorkerThrowsIfNotInitialised(@Mocked final IotHubTransportWorker mockWorker) throws IOException
+    {
+        //arrange
+        Mqtt mockMqtt = instantiateMqtt(false);
+
+        //act
+        mockMqtt.setTransportWorker(mockWorker);
+    }
+
+    /*
+    **Tests_SRS_Mqtt_21_058: [**The function shall save userPassword in the connection options, so every later connect uses it.**]**
+    **Tests_SRS_Mqtt_21_059: [**The function shall disconnect the MQTT connection if it is open, and connect again with the new password.**]**
+     */
+    @Test
+    public void updatePasswordReconnectsOpenConnectionWithNewPassword() throws IOException, MqttException
+    {
+        //arrange
+        final String newPassword = "new-sas-token";
+        Mqtt mockMqtt = null;
+        try
+        {
+            baseConstructorExpectations(true);
+            mockMqtt = instantiateMqtt(true);
+            new NonStrictExpectations()
+            {
+                {
+                    mockMqttAsyncClient.isConnected();
+                    returns(true, false);
+                    mockMqttAsyncClient.disconnect();
+                    result = mockMqttToken;
+                    mockMqttAsyncClient.connect(mockMqttConnectionOptions);
+                    result = mockMqttToken;
+                }
+            };
+
+            //act
+            mockMqtt.updatePassword(newPassword);
+
+            //assert
+            new VerificationsInOrder()
+            {
+                {
+                    mockMqttConnectionOptions.setPassword(newPassword.toCharArray());
+                    times = 1;
+                    mockMqttAsyncClient.disconnect();
+                    times = 1;
+                    mockMqttAsyncClient.connect(mockMqttConnectionOptions);
+                    times = 1;
+                }
+            };
+            Object info = Deencapsulation.getField(mockMqtt, "info");
+            assertNotNull(Deencapsulation.getField(info, "mqttAsyncClient"));
+        }
+        finally
+        {
+            testCleanUp(mockMqtt);
+        }
+    }
+
+    /*
+    **Tests_SRS_Mqtt_21_058: [**The function shall save userPassword in the connection options, so every later connect uses it.**]**
+    **Tests_SRS_Mqtt_21_059: [**The function shall disconnect the MQTT connection if it is open, and connect again with the new password.**]**
+     */
+    @Test
+    public void updatePasswordConnectsWhenNotConnected() throws IOException, MqttException
+    {
+        //arrange
+        final String newPassword = "new-sas-token";
+        Mqtt mockMqtt = null;
+        try
+        {
+            baseConstructorExpectations(true);
+            mockMqtt = instantiateMqtt(true);
+            new NonStrictExpectations()
+            {
+                {
+                    mockMqttAsyncClient.isConnected();
+                    result = false;
+                }
+            };
+
+            //act
+            mockMqtt.updatePassword(newPassword);
+
+            //assert
+            new Verifications()
+            {
+                {
+                    mockMqttConnectionOptions.setPassword(newPassword.toCharArray());
+                    times = 1;
+                    mockMqttAsyncClient.disconnect();
+                    times = 0;
+                    mockMqttAsyncClient.connect((MqttConnectOptions) any);
+                    times = 1;
+                }
+            };
+        }
+        finally
+        {
+            testCleanUp(mockMqtt);
+        }
+    }
+
+    /*
+    **Tests_SRS_Mqtt_21_060: [**If the function fails to disconnect or connect again, it shall throw IOException.**]**
+     */
+    @Test
+    public void updatePasswordThrowsWithoutReconnectingIfConnectFails() throws IOException, MqttException
+    {
+        //arrange
+        final String newPassword = "new-sas-token";
+        Mqtt mockMqtt = null;
+        boolean thrown = false;
+        try
+        {
+            baseConstructorExpectations(true);
+            mockMqtt = instantiateMqtt(true);
+            new NonStrictExpectations()
+            {
+                {
+                    mockMqttAsyncClient.isConnected();
+                    result = false;
+                    mockMqttAsyncClient.connect((MqttConnectOptions) any);
+                    result = mockMqttException;
+                }
+            };
+
+            //act
+            try
+            {
+                mockMqtt.updatePassword(newPassword);
+            }
+            catch (IOException e)
+            {
+                thrown = true;
+            }
+
+            //assert
+            assertTrue(thrown);
+            new Verifications()
+            {
+                {
+                    mockMqttAsyncClient.connect((MqttConnectOptions) any);
+                    times = 1;
+                }
+            };
+        }
+        finally
+        {
+            testCleanUp(mockMqtt);
+        }
+    }
+
+    /*
+    **Tests_SRS_Mqtt_21_056: [**If userPassword is null or empty, the function shall throw InvalidParameter Exception.**]**
+     */
+    @Test (expected = InvalidParameterException.class)
+    public void updatePasswordThrowsOnNullPassword() throws IOException, MqttException
+    {
+        //arrange
+        baseConstructorExpectations(true);
+        Mqtt mockMqtt = instantiateMqtt(true);
+
+        //act
+        mockMqtt.updatePassword(null);
+    }
+
+    /*
+    **Tests_SRS_Mqtt_21_057: [**If the inner class MqttConnectionInfo has not been instantiated then the function shall throw IOException.**]**
+     */
+    @Test (expected = IOException.class)
+    public void updatePasswordThrowsIfNotInitialised() throws IOException
+    {
+        //arrange
+        Mqtt mockMqtt = instantiateMqtt(false);
+
+        //act
+        mockMqtt.updatePassword("new-sas-token");
+    }
+
     /*
     **Tests_SRS_Mqtt_25_026: [**The function shall notify all its concrete classes by calling abstract method onReconnect at the entry of the function**]**
      */
@@ -1348,9 +1847,10 @@ public class MqttTest {
                 {
                     new MemoryPersistence();
                     result = mockMemoryPersistence;
-                    new MqttAsyncClient(serverUri, clientId, mockMemoryPersistence);
+                    new MqttAsyncClient(serverUri, clientId, mockMemoryPersistence, (MqttPingSender) any);
                     result = mockMqttAsyncClient;
                     mockMqttAsyncClient.setCallback((Mqtt) any);
+                    mockMqttAsyncClient.setManualAcks(true);
 
                     new MqttConnectOptions();
                     result = mockMqttConnectionOptions;
@@ -1360,6 +1860,7 @@ public class MqttTest {
                     mockMqttConnectionOptions.setUserName(anyString);
                     mockMqttConnectionOptions.setPassword(password.toCharArray());
                     mockMqttConnectionOptions.setSocketFactory(mockIotHubSSLContext.getIotHubSSlContext().getSocketFactory());
+                    mockMqttConnectionOptions.setMaxInflight(anyInt);
                     mockMqttAsyncClient.isConnected();
                     result = false;
                     mockMqttAsyncClient.isConnected();
@@ -1408,9 +1909,10 @@ public class MqttTest {
                 {
                     new MemoryPersistence();
                     result = mockMemoryPersistence;
-                    new MqttAsyncClient(serverUri, clientId, mockMemoryPersistence);
+                    new MqttAsyncClient(serverUri, clientId, mockMemoryPersistence, (MqttPingSender) any);
                     result = mockMqttAsyncClient;
                     mockMqttAsyncClient.setCallback((Mqtt) any);
+                    mockMqttAsyncClient.setManualAcks(true);
 
                     new MqttConnectOptions();
                     result = mockMqttConnectionOptions;
@@ -1420,6 +1922,7 @@ public class MqttTest {
                     mockMqttConnectionOptions.setUserName(anyString);
                     mockMqttConnectionOptions.setPassword(password.toCharArray());
                     mockMqttConnectionOptions.setSocketFactory(mockIotHubSSLContext.getIotHubSSlContext().getSocketFactory());
+                    mockMqttConnectionOptions.setMaxInflight(anyInt);
 
                     mockMqttAsyncClient.isConnected();
                     result = false;
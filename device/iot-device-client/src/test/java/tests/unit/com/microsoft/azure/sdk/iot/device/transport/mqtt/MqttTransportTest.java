@@ -10,11 +10,14 @@ import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttIotHubConnection;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttTransport;
 import junit.framework.AssertionFailedError;
 import mockit.*;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 
@@ -224,14 +227,14 @@ public class MqttTransportTest {
         new Verifications()
         {
             {
-                expectedConnection.sendEvent(mockMsg);
+                expectedConnection.sendEvent(mockMsg, (IMqttActionListener) any);
                 times = 2;
             }
         };
     }
 
-    // Tests_SRS_MQTTTRANSPORT_15_010: [For each message being sent, the function shall send the message
-    // and add the IoT Hub status code along with the callback and context to the callback list.]
+    // Tests_SRS_MQTTTRANSPORT_15_010: [For each message that could not be sent, the function shall add
+    // the IoT Hub status code along with the callback and context to the callback list.]
     @Test
     public <T extends Queue> void sendMessagesAddsToCallbackQueue(
             @Mocked final Message mockMsg,
@@ -256,9 +259,9 @@ public class MqttTransportTest {
                 result = mockCallback;
                 mockPacket.getContext();
                 result = context;
-                mockConnection.sendEvent((Message) any);
-                returns(IotHubStatusCode.OK_EMPTY, IotHubStatusCode.ERROR);
-                new IotHubCallbackPacket(IotHubStatusCode.OK_EMPTY, mockCallback, context);
+                mockConnection.sendEvent((Message) any, (IMqttActionListener) any);
+                returns(IotHubStatusCode.BAD_FORMAT, IotHubStatusCode.ERROR);
+                new IotHubCallbackPacket(IotHubStatusCode.BAD_FORMAT, mockCallback, context);
                 result = mockCallbackPacket;
                 new IotHubCallbackPacket(IotHubStatusCode.ERROR, mockCallback, context);
                 result = mockCallbackPacket;
@@ -274,7 +277,7 @@ public class MqttTransportTest {
         new VerificationsInOrder()
         {
             {
-                new IotHubCallbackPacket(IotHubStatusCode.OK_EMPTY, mockCallback, context);
+                new IotHubCallbackPacket(IotHubStatusCode.BAD_FORMAT, mockCallback, context);
                 mockQueue.add(mockCallbackPacket);
                 new IotHubCallbackPacket(IotHubStatusCode.ERROR, mockCallback, context);
                 mockQueue.add(mockCallbackPacket);
@@ -282,6 +285,58 @@ public class MqttTransportTest {
         };
     }
 
+    // Tests_SRS_MQTTTRANSPORT_21_020: [Once the IoT Hub acknowledges a sent message, the function
+    // shall add the status code OK_EMPTY along with the callback and context to the callback list.]
+    // Tests_SRS_MQTTTRANSPORT_21_021: [If the delivery of a sent message fails, the function
+    // shall add the status code ERROR along with the callback and context to the callback list.]
+    @Test
+    public void sendMessagesAddsToCallbackQueueOnAcknowledgement(
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback)
+            throws IOException
+    {
+        final Map<String, Object> context = new HashMap<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockConnection.sendEvent((Message) any, (IMqttActionListener) any);
+                result = IotHubStatusCode.OK_EMPTY;
+            }
+        };
+
+        MqttTransport transport = new MqttTransport(mockConfig);
+        transport.open();
+        transport.addMessage(mockMsg, mockCallback, context);
+        transport.addMessage(mockMsg, mockCallback, context);
+        transport.sendMessages();
+        transport.invokeCallbacks();
+
+        final List<IMqttActionListener> listeners = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockConnection.sendEvent(mockMsg, withCapture(listeners));
+                times = 2;
+                mockCallback.execute((IotHubStatusCode) any, any);
+                times = 0;
+            }
+        };
+        assertThat(transport.isEmpty(), is(false));
+
+        listeners.get(0).onSuccess(null);
+        listeners.get(1).onFailure(null, new Exception());
+        transport.invokeCallbacks();
+
+        new VerificationsInOrder()
+        {
+            {
+                mockCallback.execute(IotHubStatusCode.OK_EMPTY, context);
+                mockCallback.execute(IotHubStatusCode.ERROR, context);
+            }
+        };
+        assertThat(transport.isEmpty(), is(true));
+    }
+
     // Tests_SRS_MQTTTRANSPORT_15_011: [If the IoT Hub could not be reached, 
     // the message shall be buffered to be sent again next time.]
     @Test
@@ -294,7 +349,7 @@ public class MqttTransportTest {
         new NonStrictExpectations()
         {
             {
-                mockConnection.sendEvent((Message) any);
+                mockConnection.sendEvent((Message) any, (IMqttActionListener) any);
                 result = new IllegalStateException(anyString);
                 result = IotHubStatusCode.OK_EMPTY;
             }
@@ -310,7 +365,7 @@ public class MqttTransportTest {
         new Verifications()
         {
             {
-                expectedConnection.sendEvent(mockMsg);
+                expectedConnection.sendEvent(mockMsg, (IMqttActionListener) any);
                 times = 2;
             }
         };
@@ -446,6 +501,36 @@ public class MqttTransportTest {
         };
     }
 
+    // Tests_SRS_MQTTTRANSPORT_21_023: [The function shall return the number of messages in the waiting list.]
+    // Tests_SRS_MQTTTRANSPORT_21_024: [The function shall return the number of messages published and still waiting for the IoT Hub acknowledgement.]
+    @Test
+    public void getMessageCountsReturnWaitingAndInFlightMessages(
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback)
+            throws IOException
+    {
+        final Map<String, Object> context = new HashMap<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockConnection.sendEvent((Message) any, (IMqttActionListener) any);
+                result = IotHubStatusCode.OK_EMPTY;
+            }
+        };
+
+        MqttTransport transport = new MqttTransport(mockConfig);
+        transport.open();
+        transport.addMessage(mockMsg, mockCallback, context);
+        transport.addMessage(mockMsg, mockCallback, context);
+        assertThat(transport.getQueuedMessageCount(), is(2));
+        assertThat(transport.getInProgressMessageCount(), is(0));
+
+        transport.sendMessages();
+
+        assertThat(transport.getQueuedMessageCount(), is(0));
+        assertThat(transport.getInProgressMessageCount(), is(2));
+    }
+
     // Tests_SRS_MqttTransport_11_019: [The function shall return true if the waiting list
     // and callback list are all empty, and false otherwise.]
     @Test
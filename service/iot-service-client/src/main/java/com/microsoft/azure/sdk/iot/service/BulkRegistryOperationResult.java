@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of a bulk registry operation. A device succeeded if it has no
+ * error; it may have warnings.
+ */
+public class BulkRegistryOperationResult
+{
+    @SerializedName("isSuccessful")
+    private boolean isSuccessful;
+
+    @SerializedName("errors")
+    private List<DeviceRegistryOperationError> errors;
+
+    @SerializedName("warnings")
+    private List<DeviceRegistryOperationError> warnings;
+
+    /**
+     * Constructor for an empty successful result.
+     */
+    public BulkRegistryOperationResult()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_BULKREGISTRYOPERATIONRESULT_21_001: [The constructor shall create a successful result without errors or warnings.]
+        this.isSuccessful = true;
+        this.errors = new ArrayList<>();
+        this.warnings = new ArrayList<>();
+    }
+
+    /**
+     * Getter for the success of the operation.
+     * @return true if every device succeeded.
+     */
+    public boolean isSuccessful()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_BULKREGISTRYOPERATIONRESULT_21_002: [The function shall return true only if no device has an error.]
+        return this.isSuccessful && ((this.errors == null) || this.errors.isEmpty());
+    }
+
+    /**
+     * Getter for the errors.
+     * @return The errors of the devices which failed.
+     */
+    public List<DeviceRegistryOperationError> getErrors()
+    {
+        return (this.errors == null) ? new ArrayList<DeviceRegistryOperationError>() : this.errors;
+    }
+
+    /**
+     * Getter for the warnings.
+     * @return The warnings of the devices which succeeded with a warning.
+     */
+    public List<DeviceRegistryOperationError> getWarnings()
+    {
+        return (this.warnings == null) ? new ArrayList<DeviceRegistryOperationError>() : this.warnings;
+    }
+
+    /**
+     * Adds the errors and warnings of another part of the operation to this result.
+     *
+     * @param other The result of the other part.
+     */
+    synchronized void merge(BulkRegistryOperationResult other)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_BULKREGISTRYOPERATIONRESULT_21_003: [The function shall add the errors and warnings of the other result, and keep the result successful only if both are.]
+        this.isSuccessful = this.isSuccessful && other.isSuccessful();
+        this.errors.addAll(other.getErrors());
+        this.warnings.addAll(other.getWarnings());
+    }
+
+    /**
+     * Adds an error to this result.
+     *
+     * @param error The error of a device.
+     */
+    synchronized void addError(DeviceRegistryOperationError error)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_BULKREGISTRYOPERATIONRESULT_21_004: [The function shall add the error and make the result unsuccessful.]
+        this.isSuccessful = false;
+        this.errors.add(error);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentSend;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * CloudToDeviceSender keeps one AMQP connection to the IoT Hub open and sends
+ * many cloud to device messages over it without waiting for each acknowledgement
+ * in turn. Use it instead of {@link ServiceClient#send(String, Message)} to send
+ * messages to many devices.
+ */
+public class CloudToDeviceSender
+{
+    private AmqpPersistentSend amqpPersistentSend;
+
+    /**
+     * Constructor to verify initialization parameters
+     * Create instance of AmqpPersistentSend
+     *
+     * @param iotHubConnectionString The iot hub connection string
+     * @param iotHubServiceClientProtocol The iot hub protocol name
+     */
+    public CloudToDeviceSender(IotHubConnectionString iotHubConnectionString, IotHubServiceClientProtocol iotHubServiceClientProtocol)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_001: [The constructor shall throw IllegalArgumentException if the connection string or the protocol is null]
+        if (iotHubConnectionString == null)
+        {
+            throw new IllegalArgumentException("iotHubConnectionString cannot be null");
+        }
+        if (iotHubServiceClientProtocol == null)
+        {
+            throw new IllegalArgumentException("iotHubServiceClientProtocol cannot be null");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_002: [The constructor shall create a new instance of AmqpPersistentSend object with the connection string, so it renews its SAS token on each connect]
+        this.amqpPersistentSend = new AmqpPersistentSend(iotHubConnectionString, iotHubServiceClientProtocol);
+    }
+
+    /**
+     * Open the connection to the IoT Hub
+     *
+     * @throws IOException This exception is thrown if the connection cannot be started
+     */
+    public void open() throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_003: [The function shall call open() on the member AmqpPersistentSend object]
+        this.amqpPersistentSend.open();
+    }
+
+    /**
+     * Close the connection to the IoT Hub. The messages which were not
+     * acknowledged yet fail with an IOException.
+     */
+    public void close()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_004: [The function shall call close() on the member AmqpPersistentSend object]
+        this.amqpPersistentSend.close();
+    }
+
+    /**
+     * Set the largest WebSocket frame, header included, used over AMQPS_WS from the next open() on
+     *
+     * @param webSocketMaxFrameSize The maximum frame size in bytes
+     */
+    void setWebSocketMaxFrameSize(int webSocketMaxFrameSize)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_009: [The function shall call setWebSocketMaxFrameSize() on the member AmqpPersistentSend object]
+        this.amqpPersistentSend.setWebSocketMaxFrameSize(webSocketMaxFrameSize);
+    }
+
+    /**
+     * Send a one-way message to the specified device without waiting for the
+     * previous messages to be acknowledged
+     *
+     * @param deviceId The device identifier for the target device
+     * @param message The message for the device
+     * @return The future which completes when the IoT Hub acknowledges the message
+     */
+    public CompletableFuture<Void> sendAsync(String deviceId, Message message)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_005: [The function shall call sendAsync() on the member AmqpPersistentSend object and return its future]
+        return this.amqpPersistentSend.sendAsync(deviceId, message);
+    }
+
+    /**
+     * Send a one-way message to the specified device and wait for its acknowledgement
+     *
+     * @param deviceId The device identifier for the target device
+     * @param message The message for the device
+     * @throws IOException This exception is thrown if the connection was lost before the message was acknowledged
+     * @throws IotHubException This exception is thrown if the IoT Hub rejected the message
+     * @throws InterruptedException This exception is thrown if the wait has been interrupted
+     */
+    public void send(String deviceId, Message message) throws IOException, IotHubException, InterruptedException
+    {
+        try
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_006: [The function shall call sendAsync() and wait for the acknowledgement]
+            sendAsync(deviceId, message).get();
+        }
+        catch (ExecutionException e)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_007: [The function shall throw the IOException or IotHubException which failed the message]
+            Throwable cause = e.getCause();
+            if (cause instanceof IotHubException)
+            {
+                throw (IotHubException) cause;
+            }
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Get the number of messages waiting to be sent or acknowledged
+     *
+     * @return The number of messages which were not acknowledged yet
+     */
+    public int getPendingCount()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_008: [The function shall return the pending count of the member AmqpPersistentSend object]
+        return this.amqpPersistentSend.getPendingCount();
+    }
+}
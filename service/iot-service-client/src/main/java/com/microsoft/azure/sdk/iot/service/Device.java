@@ -95,6 +95,13 @@ public class Device
         this.setForceUpdate(false);
     }
 
+    /**
+     * Create an empty Device for the decoders, which set the properties they read
+     */
+    Device()
+    {
+    }
+
     // Codes_SRS_SERVICE_SDK_JAVA_DEVICE_12_001: [The Device class has the following properties: Id, Etag,
     // Authentication.SymmetricKey, State, StateReason, StateUpdatedTime,
     // ConnectionState, ConnectionStateUpdatedTime, LastActivityTime]
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpStreamResponse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the devices of the registry. The devices are queried page by
+ * page, following the continuation token of the IotHub, and each device is
+ * decoded from the response stream when it is reached, so the memory used does
+ * not depend on the number of devices.
+ *
+ * The query returns the twin document of each device, which has no
+ * authentication keys, so the devices have no symmetric key.
+ *
+ * This class is not thread safe.
+ */
+public class DeviceIterator implements Closeable
+{
+    private static final String CONTINUATION_TOKEN_HEADER = "x-ms-continuation";
+    private static final Gson gson = new GsonBuilder().registerTypeAdapter(Device.class, new TwinDeviceAdapter()).create();
+
+    private final RegistryManager registryManager;
+    private final int pageSize;
+    private String continuationToken;
+    private boolean isLastPageRequested;
+    private HttpStreamResponse pageResponse;
+    private JsonReader pageReader;
+
+    DeviceIterator(RegistryManager registryManager, Integer pageSize)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_001: [The constructor shall throw IllegalArgumentException if the registry manager is null, or if the page size is null or less than 1.]
+        if (registryManager == null)
+        {
+            throw new IllegalArgumentException("registryManager cannot be null");
+        }
+        if ((pageSize == null) || (pageSize < 1))
+        {
+            throw new IllegalArgumentException("pageSize cannot be null or less than 1");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_002: [The constructor shall not send any request.]
+        this.registryManager = registryManager;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Tells if there is another device, requesting the next page if the
+     * current one was read to its end.
+     *
+     * @return true if there is another device.
+     * @throws IOException This exception is thrown if the IO operation failed
+     * @throws IotHubException This exception is thrown if the response verification failed
+     */
+    public boolean hasNext() throws IOException, IotHubException
+    {
+        while (true)
+        {
+            if (this.pageReader != null)
+            {
+                // Codes_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_003: [The function shall return true if the current page has another device.]
+                if (this.pageReader.hasNext())
+                {
+                    return true;
+                }
+
+                this.pageReader.endArray();
+                closePage();
+            }
+
+            // Codes_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_004: [The function shall return false if the current page is read and the IotHub returned no continuation token with it.]
+            if (this.isLastPageRequested)
+            {
+                return false;
+            }
+
+            // Codes_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_005: [The function shall request the next page with the continuation token of the previous one, and verify the response status.]
+            openNextPage();
+        }
+    }
+
+    /**
+     * Decodes the next device from the response stream.
+     *
+     * @return The next device.
+     * @throws IOException This exception is thrown if the IO operation failed
+     * @throws IotHubException This exception is thrown if the response verification failed
+     * @throws NoSuchElementException This exception is thrown if there is no other device
+     */
+    public Device next() throws IOException, IotHubException, JsonSyntaxException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_006: [The function shall throw NoSuchElementException if there is no other device.]
+        if (!hasNext())
+        {
+            throw new NoSuchElementException("There are no more devices");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_007: [The function shall decode the twin document of the next device token by token from the response stream,
+        // and return the device with its id, etag, status, connection state and activity.]
+        return gson.fromJson(this.pageReader, Device.class);
+    }
+
+    /**
+     * Stops the iteration and releases the response of the current page.
+     *
+     * @throws IOException This exception is thrown if the IO operation failed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_008: [The function shall close the response of the current page, and the iteration shall have no other device.]
+        this.isLastPageRequested = true;
+        closePage();
+    }
+
+    private void openNextPage() throws IOException, IotHubException
+    {
+        HttpStreamResponse response = this.registryManager.SendDevicesPageRequest(this.pageSize, this.continuationToken);
+        try
+        {
+            IotHubExceptionManager.httpResponseVerification(response);
+
+            String previousContinuationToken = this.continuationToken;
+            this.continuationToken = response.getHeaderFields().get(CONTINUATION_TOKEN_HEADER);
+            this.isLastPageRequested = Tools.isNullOrEmpty(this.continuationToken);
+
+            // Codes_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_009: [The function shall throw IOException if the IotHub returned the continuation token
+            // it was sent, since the iteration would then never end.]
+            if (!this.isLastPageRequested && this.continuationToken.equals(previousContinuationToken))
+            {
+                throw new IOException("The IotHub returned the same continuation token twice, so the end of the devices cannot be detected");
+            }
+
+            JsonReader reader = new JsonReader(new InputStreamReader(response.getBodyStream(), StandardCharsets.UTF_8));
+            reader.beginArray();
+            this.pageResponse = response;
+            this.pageReader = reader;
+        }
+        catch (IOException | IotHubException | RuntimeException e)
+        {
+            this.isLastPageRequested = true;
+            try
+            {
+                response.close();
+            }
+            catch (IOException closeException)
+            {
+                e.addSuppressed(closeException);
+            }
+            throw e;
+        }
+    }
+
+    private void closePage() throws IOException
+    {
+        this.pageReader = null;
+        if (this.pageResponse != null)
+        {
+            HttpStreamResponse response = this.pageResponse;
+            this.pageResponse = null;
+            response.close();
+        }
+    }
+
+    /**
+     * Decodes a Device from its twin document as the stream delivers it, without building a tree.
+     * The twin names the device etag and the status time differently than the device registry, and
+     * its own etag is the etag of the twin, so it is skipped with the other twin properties.
+     */
+    private static final class TwinDeviceAdapter extends TypeAdapter<Device>
+    {
+        private static final Gson enumGson = new Gson();
+        private final TypeAdapter<DeviceStatus> statusAdapter = enumGson.getAdapter(DeviceStatus.class);
+        private final TypeAdapter<DeviceConnectionState> connectionStateAdapter = enumGson.getAdapter(DeviceConnectionState.class);
+
+        @Override
+        public Device read(JsonReader in) throws IOException
+        {
+            if (in.peek() == JsonToken.NULL)
+            {
+                in.nextNull();
+                return null;
+            }
+
+            Device device = new Device();
+            in.beginObject();
+            while (in.hasNext())
+            {
+                switch (in.nextName())
+                {
+                    case "deviceId":
+                        device.deviceId = readString(in);
+                        break;
+                    case "generationId":
+                        device.generationId = readString(in);
+                        break;
+                    case "deviceEtag":
+                        device.eTag = readString(in);
+                        break;
+                    case "status":
+                        device.status = this.statusAdapter.read(in);
+                        break;
+                    case "statusReason":
+                        device.statusReason = readString(in);
+                        break;
+                    case "statusUpdateTime":
+                        device.statusUpdatedTime = readString(in);
+                        break;
+                    case "connectionState":
+                        device.connectionState = this.connectionStateAdapter.read(in);
+                        break;
+                    case "connectionStateUpdatedTime":
+                        device.connectionStateUpdatedTime = readString(in);
+                        break;
+                    case "lastActivityTime":
+                        device.lastActivityTime = readString(in);
+                        break;
+                    case "cloudToDeviceMessageCount":
+                        if (in.peek() == JsonToken.NULL)
+                        {
+                            in.nextNull();
+                        }
+                        else
+                        {
+                            device.cloudToDeviceMessageCount = in.nextLong();
+                        }
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return device;
+        }
+
+        @Override
+        public void write(JsonWriter out, Device device)
+        {
+            throw new UnsupportedOperationException("The twin document of a device is only read");
+        }
+
+        private static String readString(JsonReader in) throws IOException
+        {
+            if (in.peek() == JsonToken.NULL)
+            {
+                in.nextNull();
+                return null;
+            }
+            return in.nextString();
+        }
+    }
+}
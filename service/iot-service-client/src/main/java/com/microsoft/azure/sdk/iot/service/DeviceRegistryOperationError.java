@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * The error of one device in a bulk registry operation.
+ */
+public class DeviceRegistryOperationError
+{
+    @SerializedName("deviceId")
+    private String deviceId;
+
+    @SerializedName("errorCode")
+    private String errorCode;
+
+    @SerializedName("errorStatus")
+    private String errorStatus;
+
+    /**
+     * Constructor.
+     *
+     * @param deviceId The id of the device.
+     * @param errorCode The error code from the IotHub, null if the request of the device failed as a whole.
+     * @param errorStatus The description of the error.
+     */
+    public DeviceRegistryOperationError(String deviceId, String errorCode, String errorStatus)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_DEVICEREGISTRYOPERATIONERROR_21_001: [The constructor shall store the device id, error code and error status.]
+        this.deviceId = deviceId;
+        this.errorCode = errorCode;
+        this.errorStatus = errorStatus;
+    }
+
+    /**
+     * Getter for the device id.
+     * @return The id of the device.
+     */
+    public String getDeviceId()
+    {
+        return this.deviceId;
+    }
+
+    /**
+     * Getter for the error code, like DeviceAlreadyExists.
+     * @return The error code from the IotHub, or null if the request of the device failed as a whole.
+     */
+    public String getErrorCode()
+    {
+        return this.errorCode;
+    }
+
+    /**
+     * Getter for the error status.
+     * @return The description of the error.
+     */
+    public String getErrorStatus()
+    {
+        return this.errorStatus;
+    }
+}
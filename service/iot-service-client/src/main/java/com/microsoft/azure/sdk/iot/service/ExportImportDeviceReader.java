@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the newline-delimited ExportImportDevice records of an export blob,
+ * or of an import blob, from a stream. The records are decoded one at a time
+ * as they are read, so the memory used does not depend on the size of the blob.
+ *
+ * This class is not thread safe.
+ */
+public class ExportImportDeviceReader implements Closeable
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final TypeAdapter<ExportImportDevice> adapter = new Gson().getAdapter(ExportImportDevice.class);
+
+    private final JsonReader jsonReader;
+    private long count;
+
+    /**
+     * Constructor for a stream of uncompressed records.
+     *
+     * @param inputStream The stream to read the records from.
+     * @throws IOException This exception is thrown if the stream could not be read
+     */
+    public ExportImportDeviceReader(InputStream inputStream) throws IOException
+    {
+        this(inputStream, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inputStream The stream to read the records from.
+     * @param isGzip True if the records are compressed with gzip.
+     * @throws IOException This exception is thrown if the stream could not be read, or if its gzip header is invalid
+     */
+    public ExportImportDeviceReader(InputStream inputStream, boolean isGzip) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEREADER_21_001: [The constructor shall throw IllegalArgumentException if the input stream is null.]
+        if (inputStream == null)
+        {
+            throw new IllegalArgumentException("inputStream cannot be null");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEREADER_21_002: [The constructor shall read the records as UTF-8, decompressing them with gzip if requested.]
+        InputStream source = isGzip ? new GZIPInputStream(inputStream, BUFFER_SIZE) : inputStream;
+        this.jsonReader = new JsonReader(new BufferedReader(new InputStreamReader(source, StandardCharsets.UTF_8), BUFFER_SIZE));
+
+        // The records are consecutive top level values separated by new lines
+        this.jsonReader.setLenient(true);
+    }
+
+    /**
+     * Tells if there is another record.
+     *
+     * @return true if there is another record.
+     * @throws IOException This exception is thrown if the stream could not be read
+     */
+    public boolean hasNext() throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEREADER_21_003: [The function shall return true if the stream has another record, ignoring the new lines between the records.]
+        try
+        {
+            return this.jsonReader.peek() != JsonToken.END_DOCUMENT;
+        }
+        catch (EOFException e)
+        {
+            // The reader only reports the end of the document after a first value, so a stream with no record ends here
+            if (this.count == 0)
+            {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Decodes the next record.
+     *
+     * @return The next device.
+     * @throws IOException This exception is thrown if the stream could not be read, or if the record is malformed
+     * @throws NoSuchElementException This exception is thrown if there is no other record
+     */
+    public ExportImportDevice next() throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEREADER_21_004: [The function shall throw NoSuchElementException if there is no other record.]
+        if (!hasNext())
+        {
+            throw new NoSuchElementException("There are no more devices");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEREADER_21_005: [The function shall decode the next record straight from the stream and return it.]
+        ExportImportDevice device = adapter.read(this.jsonReader);
+        this.count++;
+        return device;
+    }
+
+    /**
+     * Getter for the number of records read.
+     *
+     * @return The number of records returned by next.
+     */
+    public long getCount()
+    {
+        return this.count;
+    }
+
+    /**
+     * Closes the stream.
+     *
+     * @throws IOException This exception is thrown if the stream could not be closed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEREADER_21_006: [The function shall close the input stream.]
+        this.jsonReader.close();
+    }
+}
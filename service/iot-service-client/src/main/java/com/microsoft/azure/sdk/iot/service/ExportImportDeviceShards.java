@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Splits the ExportImportDevice records of a large blob into shards, and
+ * processes the shards in parallel, one thread per shard.
+ */
+public class ExportImportDeviceShards
+{
+    /**
+     * Copies the records of the reader to the shard writers. A device always
+     * goes to the same shard, chosen from its id.
+     *
+     * @param reader The reader of the records to split.
+     * @param shards The writers of the shards.
+     * @return The number of records copied.
+     * @throws IOException This exception is thrown if a record could not be read or written
+     */
+    public static long split(ExportImportDeviceReader reader, List<ExportImportDeviceWriter> shards) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICESHARDS_21_001: [The function shall throw IllegalArgumentException if the reader is null, or if the list of shards is null, empty, or contains a null writer.]
+        if (reader == null)
+        {
+            throw new IllegalArgumentException("reader cannot be null");
+        }
+        validateShards(shards);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICESHARDS_21_002: [The function shall write each record to the shard chosen from the hash of its device id, and return the number of records.]
+        long count = 0;
+        while (reader.hasNext())
+        {
+            ExportImportDevice device = reader.next();
+            shards.get(getShardIndex(device.getId(), shards.size())).write(device);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Reads the shards in parallel, one thread per shard, and passes every
+     * record to the consumer. The consumer is called from several threads at
+     * the same time. If a shard fails, the other shards are interrupted and
+     * stop before their next record.
+     *
+     * @param shards The readers of the shards.
+     * @param consumer The thread safe consumer of the records.
+     * @return The number of records read.
+     * @throws IOException This exception is thrown if a shard could not be read
+     * @throws InterruptedException This exception is thrown if the thread was interrupted while waiting for the shards
+     */
+    public static long readInParallel(List<ExportImportDeviceReader> shards, final Consumer<ExportImportDevice> consumer)
+            throws IOException, InterruptedException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICESHARDS_21_003: [The function shall throw IllegalArgumentException if the list of shards is null, empty, or contains a null reader, or if the consumer is null.]
+        validateShards(shards);
+        if (consumer == null)
+        {
+            throw new IllegalArgumentException("consumer cannot be null");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICESHARDS_21_004: [The function shall read each shard on its own thread, pass every record to the consumer, and return the number of records.]
+        ExecutorService executor = Executors.newFixedThreadPool(shards.size());
+        try
+        {
+            CompletionService<Long> results = new ExecutorCompletionService<>(executor);
+            for (final ExportImportDeviceReader shard : shards)
+            {
+                results.submit(() ->
+                {
+                    long count = 0;
+                    while (!Thread.currentThread().isInterrupted() && shard.hasNext())
+                    {
+                        consumer.accept(shard.next());
+                        count++;
+                    }
+                    return count;
+                });
+            }
+
+            // take the shards as they finish, so the first failure is seen without waiting for the shards before it
+            long count = 0;
+            for (int i = 0; i < shards.size(); i++)
+            {
+                count += results.take().get();
+            }
+            return count;
+        }
+        catch (ExecutionException e)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICESHARDS_21_005: [If a shard fails, the function shall stop the other shards and throw the exception of the failed shard.]
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private static int getShardIndex(String deviceId, int shardCount)
+    {
+        if (deviceId == null)
+        {
+            return 0;
+        }
+        return (deviceId.hashCode() & Integer.MAX_VALUE) % shardCount;
+    }
+
+    private static void validateShards(List<?> shards)
+    {
+        if ((shards == null) || shards.isEmpty())
+        {
+            throw new IllegalArgumentException("shards cannot be null or empty");
+        }
+        for (Object shard : shards)
+        {
+            if (shard == null)
+            {
+                throw new IllegalArgumentException("shards cannot contain a null shard");
+            }
+        }
+    }
+}
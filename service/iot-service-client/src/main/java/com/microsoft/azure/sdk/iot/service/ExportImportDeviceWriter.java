@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes ExportImportDevice records to a stream, one per line, in the format
+ * of the import blob. Each record is encoded straight into the stream, so the
+ * memory used does not depend on the number of records.
+ *
+ * This class is not thread safe.
+ */
+public class ExportImportDeviceWriter implements Closeable, Flushable
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String RECORD_SEPARATOR = "\r\n";
+    private static final TypeAdapter<ExportImportDevice> adapter = new Gson().getAdapter(ExportImportDevice.class);
+
+    private final Writer writer;
+    private final JsonWriter jsonWriter;
+    private long count;
+
+    /**
+     * Constructor for a stream of uncompressed records.
+     *
+     * @param outputStream The stream to write the records to.
+     * @throws IOException This exception is thrown if the stream could not be written
+     */
+    public ExportImportDeviceWriter(OutputStream outputStream) throws IOException
+    {
+        this(outputStream, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param outputStream The stream to write the records to.
+     * @param isGzip True if the records shall be compressed with gzip.
+     * @throws IOException This exception is thrown if the stream could not be written
+     */
+    public ExportImportDeviceWriter(OutputStream outputStream, boolean isGzip) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEWRITER_21_001: [The constructor shall throw IllegalArgumentException if the output stream is null.]
+        if (outputStream == null)
+        {
+            throw new IllegalArgumentException("outputStream cannot be null");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEWRITER_21_002: [The constructor shall write the records as UTF-8, compressing them with gzip if requested.]
+        OutputStream target = isGzip ? new GZIPOutputStream(outputStream, BUFFER_SIZE) : outputStream;
+        this.writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.jsonWriter = new JsonWriter(this.writer);
+
+        // The records are consecutive top level values, with the same options as the Gson serialization
+        this.jsonWriter.setLenient(true);
+        this.jsonWriter.setHtmlSafe(false);
+        this.jsonWriter.setSerializeNulls(false);
+    }
+
+    /**
+     * Encodes the device as the next record.
+     *
+     * @param device The device to write.
+     * @throws IOException This exception is thrown if the stream could not be written
+     */
+    public void write(ExportImportDevice device) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEWRITER_21_003: [The function shall throw IllegalArgumentException if the device is null.]
+        if (device == null)
+        {
+            throw new IllegalArgumentException("device cannot be null");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEWRITER_21_004: [The function shall write the device as a JSON record, separated from the previous one by a new line.]
+        if (this.count > 0)
+        {
+            this.writer.write(RECORD_SEPARATOR);
+        }
+        adapter.write(this.jsonWriter, device);
+        this.count++;
+    }
+
+    /**
+     * Getter for the number of records written.
+     *
+     * @return The number of records written.
+     */
+    public long getCount()
+    {
+        return this.count;
+    }
+
+    /**
+     * Flushes the records written so far to the stream.
+     *
+     * @throws IOException This exception is thrown if the stream could not be written
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        this.writer.flush();
+    }
+
+    /**
+     * Writes the buffered records, finishes the gzip stream if any, and closes the stream.
+     *
+     * @throws IOException This exception is thrown if the stream could not be written
+     */
+    @Override
+    public void close() throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEWRITER_21_005: [The function shall write the buffered records, finish the gzip stream if any, and close the output stream.]
+        this.writer.close();
+    }
+}
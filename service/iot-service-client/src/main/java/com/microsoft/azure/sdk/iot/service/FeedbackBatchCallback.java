@@ -0,0 +1,21 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+/**
+ * Callback invoked by a FeedbackSubscription for every feedback batch received from the IoT Hub.
+ */
+public interface FeedbackBatchCallback
+{
+    /**
+     * Handle a received feedback batch. The batch is acknowledged to the IoT Hub
+     * once this method returns; if it throws, the batch is released so that the
+     * IoT Hub delivers it again.
+     *
+     * @param feedbackBatch The received feedback batch
+     */
+    void onFeedbackBatchReceived(FeedbackBatch feedbackBatch);
+}
@@ -129,6 +129,17 @@ public class FeedbackReceiver extends Receiver
         this.amqpReceive.close();
     }
 
+    /**
+     * Set the largest WebSocket frame, header included, used over AMQPS_WS from the next open() on
+     *
+     * @param webSocketMaxFrameSize The maximum frame size in bytes
+     */
+    void setWebSocketMaxFrameSize(int webSocketMaxFrameSize)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_FEEDBACKRECEIVER_21_015: [The function shall call setWebSocketMaxFrameSize() on the member AmqpReceive object]
+        this.amqpReceive.setWebSocketMaxFrameSize(webSocketMaxFrameSize);
+    }
+
     /**
      * Receive FeedbackBatch with default timeout
      *
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentReceive;
+
+import java.io.IOException;
+
+/**
+ * FeedbackSubscription keeps one AMQP link to the IoT Hub feedback endpoint open
+ * and pushes every received FeedbackBatch to a callback, instead of connecting
+ * for every call like {@link FeedbackReceiver#receive()}.
+ */
+public class FeedbackSubscription
+{
+    /** The default number of feedback messages the IoT Hub may send ahead of the callback. */
+    public static final int DEFAULT_PREFETCH_CREDIT = 1024;
+
+    private AmqpPersistentReceive amqpPersistentReceive;
+
+    /**
+     * Constructor to verify initialization parameters
+     * Create instance of AmqpPersistentReceive
+     *
+     * @param iotHubConnectionString The iot hub connection string
+     * @param iotHubServiceClientProtocol The iot hub protocol name
+     * @param feedbackBatchCallback The callback to push the received feedback batches to
+     * @param prefetchCredit The number of feedback messages the IoT Hub may send ahead of the callback
+     */
+    public FeedbackSubscription(IotHubConnectionString iotHubConnectionString, IotHubServiceClientProtocol iotHubServiceClientProtocol,
+                                FeedbackBatchCallback feedbackBatchCallback, int prefetchCredit)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_FEEDBACKSUBSCRIPTION_21_001: [The constructor shall throw IllegalArgumentException if the connection string or the protocol is null]
+        if (iotHubConnectionString == null)
+        {
+            throw new IllegalArgumentException("iotHubConnectionString cannot be null");
+        }
+        if (iotHubServiceClientProtocol == null)
+        {
+            throw new IllegalArgumentException("iotHubServiceClientProtocol cannot be null");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_FEEDBACKSUBSCRIPTION_21_002: [The constructor shall create a new instance of AmqpPersistentReceive object with the connection string, so it renews its SAS token on each connect]
+        this.amqpPersistentReceive = new AmqpPersistentReceive(iotHubConnectionString, iotHubServiceClientProtocol,
+                feedbackBatchCallback, prefetchCredit);
+    }
+
+    /**
+     * Open the link to the feedback endpoint and start pushing the received batches to the callback
+     *
+     * @throws IOException This exception is thrown if the connection cannot be started
+     */
+    public void open() throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_FEEDBACKSUBSCRIPTION_21_003: [The function shall call open() on the member AmqpPersistentReceive object]
+        this.amqpPersistentReceive.open();
+    }
+
+    /**
+     * Close the link to the feedback endpoint
+     */
+    public void close()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_FEEDBACKSUBSCRIPTION_21_004: [The function shall call close() on the member AmqpPersistentReceive object]
+        this.amqpPersistentReceive.close();
+    }
+
+    /**
+     * Set the largest WebSocket frame, header included, used over AMQPS_WS from the next open() on
+     *
+     * @param webSocketMaxFrameSize The maximum frame size in bytes
+     */
+    void setWebSocketMaxFrameSize(int webSocketMaxFrameSize)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_FEEDBACKSUBSCRIPTION_21_005: [The function shall call setWebSocketMaxFrameSize() on the member AmqpPersistentReceive object]
+        this.amqpPersistentReceive.setWebSocketMaxFrameSize(webSocketMaxFrameSize);
+    }
+}
@@ -9,26 +9,29 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
-import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
 
-import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonObject;
-import javax.json.JsonReader;
+import com.google.gson.stream.JsonReader;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpStreamResponse;
+
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStreamReader;
 import java.lang.reflect.Type;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Use the RegistryManager class to manage the identity registry in IoT Hubs.
@@ -40,7 +43,13 @@ public class RegistryManager
             .registerTypeAdapter(Device.class, new DeviceSerializer())
             .create();
     private final Integer DEFAULT_HTTP_TIMEOUT_MS = 24000;
-    private final ExecutorService executor = Executors.newFixedThreadPool(10);
+    private static final int MAX_DEVICES_PER_BULK_REQUEST = 100;
+    private static final int DEFAULT_BULK_OPERATION_CONCURRENCY = 4;
+    private int bulkOperationConcurrency = DEFAULT_BULK_OPERATION_CONCURRENCY;
+    private static final String CONTINUATION_TOKEN_HEADER = "x-ms-continuation";
+    private static final String MAX_ITEM_COUNT_HEADER = "x-ms-max-item-count";
+    private static final byte[] ALL_DEVICES_QUERY = "{\"query\":\"SELECT * FROM devices\"}".getBytes(StandardCharsets.UTF_8);
+    private static final Type DEVICE_LIST_TYPE = new TypeToken<ArrayList<Device>>() {}.getType();
     private IotHubConnectionString iotHubConnectionString;
 
     /**
@@ -98,8 +107,8 @@ public class RegistryManager
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_006: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDevice(device.getDeviceId());
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_007: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_007: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the device]
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_008: [The function shall create a new HttpRequest for adding the device to IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.PUT, deviceJson.getBytes(), sasTokenString);
@@ -119,7 +128,7 @@ public class RegistryManager
     }
 
     /**
-     * Async wrapper for add() operation
+     * Add device using the given Device object, without blocking
      *
      * @param device The device object to add
      * @return The future object for the requested operation
@@ -134,21 +143,11 @@ public class RegistryManager
             throw new IllegalArgumentException("device cannot be null");
         }
 
-        // Codes_SRS_SERVICE_SDK_JAVA_ REGISTRYMANAGER_12_013: [The function shall create an async wrapper around the addDevice() function call, handle the return value or delegate exception]
-        final CompletableFuture<Device> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                Device responseDevice = addDevice(device);
-                future.complete(responseDevice);
-            }
-            catch (IOException | IotHubException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        // Codes_SRS_SERVICE_SDK_JAVA_ REGISTRYMANAGER_12_013: [The function shall send the request for adding the device without blocking, and complete the future with the device in the response, or exceptionally with the exception of the request]
+        URL url = iotHubConnectionString.getUrlDevice(device.getDeviceId());
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
+        HttpRequest request = CreateAsyncRequest(url, HttpMethod.PUT, gson.toJson(device).getBytes(), sasTokenString);
+        return SendRequestAsync(request, response -> ProcessDeviceResponse(response));
     }
 
     /**
@@ -169,8 +168,8 @@ public class RegistryManager
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_015: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDevice(deviceId);
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_016: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_016: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the device]
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_017: [The function shall create a new HttpRequest for getting a device from IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
@@ -188,7 +187,7 @@ public class RegistryManager
     }
 
     /**
-     * Async wrapper for getDevice() operation
+     * Get device data by device Id from IotHub, without blocking
      *
      * @param deviceId The id of requested device
      * @return The future object for the requested operation
@@ -203,21 +202,11 @@ public class RegistryManager
             throw new IllegalArgumentException("deviceId cannot be null or empty");
         }
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_022: [The function shall create an async wrapper around the addDevice() function call, handle the return value or delegate exception]
-        final CompletableFuture<Device> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                Device responseDevice = getDevice(deviceId);
-                future.complete(responseDevice);
-            }
-            catch (IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_022: [The function shall send the request for getting the device without blocking, and complete the future with the device in the response, or exceptionally with the exception of the request]
+        URL url = iotHubConnectionString.getUrlDevice(deviceId);
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
+        HttpRequest request = CreateAsyncRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
+        return SendRequestAsync(request, response -> ProcessDeviceResponse(response));
     }
 
     /**
@@ -238,8 +227,8 @@ public class RegistryManager
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_024: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDeviceList(maxCount);
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_025: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_025: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the device]
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_026: [The function shall create a new HttpRequest for getting a device list from IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
@@ -251,24 +240,28 @@ public class RegistryManager
         IotHubExceptionManager.httpResponseVerification(response);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_029: [The function shall create a new ArrayList<Device> object from the response and return with it]
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
-        try (JsonReader jsonReader = Json.createReader(new StringReader(bodyStr)))
-        {
-            ArrayList<Device> deviceList = new ArrayList<>();
-            JsonArray deviceArray = jsonReader.readArray();
-            
-            for (int i = 0; i < deviceArray.size(); i++)
-            {
-                JsonObject jsonObject = deviceArray.getJsonObject(i);
-                Device iotHubDevice = gson.fromJson(jsonObject.toString(), Device.class);
-                deviceList.add(iotHubDevice);
-            }
-            return deviceList;
-        }
+        return ProcessDevicesResponse(response);
+    }
+
+    /**
+     * Get an iterator over all the devices of the registry. The devices are
+     * queried page by page, following the continuation token of the IotHub,
+     * and decoded one by one from the response stream. The query does not
+     * return the authentication keys, so the devices have no symmetric key;
+     * use getDevice to get the keys of a device.
+     *
+     * @param pageSize The largest count of devices in one page
+     * @return The iterator over the devices; close it to stop the iteration early
+     */
+    public DeviceIterator getDeviceIterator(Integer pageSize)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_098: [The function shall throw IllegalArgumentException if the page size is null or less than 1]
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_099: [The function shall return a DeviceIterator which requests the devices page by page when it is iterated]
+        return new DeviceIterator(this, pageSize);
     }
 
     /**
-     * Async wrapper for getDevices() operation
+     * Get list of devices, without blocking
      *
      * @param maxCount The requested count of devices
      * @return The future object for the requested operation
@@ -283,21 +276,11 @@ public class RegistryManager
             throw new IllegalArgumentException("maxCount cannot be less then 1");
         }
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_031: [The function shall create an async wrapper around the getDevices() function call, handle the return value or delegate exception]
-        final CompletableFuture<ArrayList<Device>> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                ArrayList<Device> response = getDevices(maxCount);
-                future.complete(response);
-            }
-            catch (IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_031: [The function shall send the request for getting the device list without blocking, and complete the future with the devices in the response, or exceptionally with the exception of the request]
+        URL url = iotHubConnectionString.getUrlDeviceList(maxCount);
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
+        HttpRequest request = CreateAsyncRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
+        return SendRequestAsync(request, response -> ProcessDevicesResponse(response));
     }
 
     /**
@@ -369,8 +352,8 @@ public class RegistryManager
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_036: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDevice(device.getDeviceId());
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_037: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_037: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the device]
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_038: [The function shall create a new HttpRequest for updating the device on IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.PUT, gson.toJson(device).getBytes(), sasTokenString);
@@ -389,7 +372,7 @@ public class RegistryManager
     }
 
     /**
-     * Async wrapper for updateDevice() operation
+     * Update device not forced, without blocking
      *
      * @param device The device object containing updated data
      * @return The future object for the requested operation
@@ -403,25 +386,12 @@ public class RegistryManager
         {
             throw new IllegalArgumentException("device cannot be null");
         }
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_043: [The function shall create an async wrapper around the updateDevice() function call, handle the return value or delegate exception]
-        final CompletableFuture<Device> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                Device responseDevice = updateDevice(device);
-                future.complete(responseDevice);
-            }
-            catch (IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_043: [The function shall call updateDeviceAsync with forceUpdate = false]
+        return updateDeviceAsync(device, false);
     }
 
     /**
-     * Async wrapper for forced updateDevice() operation
+     * Update device with forceUpdate input parameter, without blocking
      *
      * @param device The device object containing updated data
      * @param forceUpdate True is the update has to be forced regardless if the device state
@@ -436,21 +406,13 @@ public class RegistryManager
         {
             throw new IllegalArgumentException("device cannot be null");
         }
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_045: [The function shall create an async wrapper around the updateDevice(Device, device, Boolean forceUpdate) function call, handle the return value or delegate exception]
-        final CompletableFuture<Device> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                Device responseDevice = updateDevice(device, forceUpdate);
-                future.complete(responseDevice);
-            }
-            catch (IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_045: [The function shall set forceUpdate on the device, send the request for updating the device without blocking, and complete the future with the device in the response, or exceptionally with the exception of the request]
+        device.setForceUpdate(forceUpdate);
+        URL url = iotHubConnectionString.getUrlDevice(device.getDeviceId());
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
+        HttpRequest request = CreateAsyncRequest(url, HttpMethod.PUT, gson.toJson(device).getBytes(), sasTokenString);
+        request.setHeaderField("If-Match", "*");
+        return SendRequestAsync(request, response -> ProcessDeviceResponse(response));
     }
 
     /**
@@ -471,8 +433,8 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_047: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDevice(deviceId);
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_048: [The function shall create a new SAS token for the device]
-        String sasToken = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_048: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the device]
+        String sasToken = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_049: [The function shall create a new HttpRequest for removing the device from IotHub]
         HttpRequest request = new HttpRequest(url, HttpMethod.DELETE, new byte[0]);
@@ -488,7 +450,7 @@ public class RegistryManager
     }
 
     /**
-     * Async wrapper for removeDevice() operation
+     * Remove device, without blocking
      *
      * @param deviceId The device object to remove
      * @return The future object for the requested operation
@@ -503,21 +465,130 @@ public class RegistryManager
             throw new IllegalArgumentException("deviceId cannot be null or empty");
         }
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_053: [The function shall create an async wrapper around the removeDevice() function call, handle the return value or delegate exception]
-        final CompletableFuture<Boolean> future = new CompletableFuture<Boolean>();
-        executor.submit(() ->
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_053: [The function shall send the request for removing the device without blocking, and complete the future with true, or exceptionally with the exception of the request]
+        URL url = iotHubConnectionString.getUrlDevice(deviceId);
+        String sasToken = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
+        HttpRequest request = HttpRequest.createAsync(url, HttpMethod.DELETE, new byte[0]);
+        request.setReadTimeoutMillis(DEFAULT_HTTP_TIMEOUT_MS);
+        request.setHeaderField("authorization", sasToken);
+        request.setHeaderField("If-Match", "*");
+        return SendRequestAsync(request, response -> true);
+    }
+
+    /**
+     * Sets the largest number of bulk requests that one bulk operation sends
+     * at the same time. Each bulk request carries up to 100 devices.
+     *
+     * @param bulkOperationConcurrency The largest number of concurrent bulk requests
+     */
+    public void setBulkOperationConcurrency(int bulkOperationConcurrency)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_087: [The function shall throw IllegalArgumentException if the input number is less than 1]
+        if (bulkOperationConcurrency < 1)
         {
-            try
-            {
-                removeDevice(deviceId);
-                future.complete(true);
-            }
-            catch (IotHubException | IOException e)
+            throw new IllegalArgumentException("bulkOperationConcurrency cannot be less than 1");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_088: [The function shall set the largest number of concurrent bulk requests]
+        this.bulkOperationConcurrency = bulkOperationConcurrency;
+    }
+
+    /**
+     * Add the given devices with bulk requests
+     *
+     * @param devices The device objects to add
+     * @return The result of the operation, with the errors of the devices which were not added
+     * @throws IOException This exception is thrown if the IO operation failed
+     */
+    public BulkRegistryOperationResult addDevices(Collection<Device> devices) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_089: [The function shall call addDevicesAsync and wait for its result]
+        return WaitForBulkResult(addDevicesAsync(devices));
+    }
+
+    /**
+     * Add the given devices with bulk requests, without blocking
+     *
+     * @param devices The device objects to add
+     * @return The future of the result of the operation, with the errors of the devices which were not added
+     * @throws IOException This exception is thrown if the IO operation failed
+     */
+    public CompletableFuture<BulkRegistryOperationResult> addDevicesAsync(Collection<Device> devices) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_090: [The function shall throw IllegalArgumentException if the input collection is null, or if it contains a null device]
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_091: [The function shall send the devices with ImportMode Create, with their status and keys]
+        return SendBulkRequestsAsync(CreateBulkDevices(devices, ImportMode.Create));
+    }
+
+    /**
+     * Update the given devices with bulk requests, like updateDevice
+     *
+     * @param devices The device objects to update
+     * @return The result of the operation, with the errors of the devices which were not updated
+     * @throws IOException This exception is thrown if the IO operation failed
+     */
+    public BulkRegistryOperationResult updateDevices(Collection<Device> devices) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_092: [The function shall call updateDevicesAsync and wait for its result]
+        return WaitForBulkResult(updateDevicesAsync(devices));
+    }
+
+    /**
+     * Update the given devices with bulk requests, like updateDevice, without blocking
+     *
+     * @param devices The device objects to update
+     * @return The future of the result of the operation, with the errors of the devices which were not updated
+     * @throws IOException This exception is thrown if the IO operation failed
+     */
+    public CompletableFuture<BulkRegistryOperationResult> updateDevicesAsync(Collection<Device> devices) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_093: [The function shall throw IllegalArgumentException if the input collection is null, or if it contains a null device]
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_094: [The function shall send the devices with ImportMode Update, with their status and keys and without their ETags, so like updateDevice the update is unconditional]
+        return SendBulkRequestsAsync(CreateBulkDevices(devices, ImportMode.Update));
+    }
+
+    /**
+     * Remove the given devices with bulk requests
+     *
+     * @param deviceIds The ids of the devices to remove
+     * @return The result of the operation, with the errors of the devices which were not removed
+     * @throws IOException This exception is thrown if the IO operation failed
+     */
+    public BulkRegistryOperationResult removeDevices(Collection<String> deviceIds) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_095: [The function shall call removeDevicesAsync and wait for its result]
+        return WaitForBulkResult(removeDevicesAsync(deviceIds));
+    }
+
+    /**
+     * Remove the given devices with bulk requests, without blocking
+     *
+     * @param deviceIds The ids of the devices to remove
+     * @return The future of the result of the operation, with the errors of the devices which were not removed
+     * @throws IOException This exception is thrown if the IO operation failed
+     */
+    public CompletableFuture<BulkRegistryOperationResult> removeDevicesAsync(Collection<String> deviceIds) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_096: [The function shall throw IllegalArgumentException if the input collection is null, or if it contains a null or empty id]
+        if (deviceIds == null)
+        {
+            throw new IllegalArgumentException("deviceIds cannot be null");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_097: [The function shall send the device ids with ImportMode Delete]
+        List<ExportImportDevice> bulkDevices = new ArrayList<>(deviceIds.size());
+        for (String deviceId : deviceIds)
+        {
+            if (Tools.isNullOrEmpty(deviceId))
             {
-                future.completeExceptionally(e);
+                throw new IllegalArgumentException("deviceIds cannot contain a null or empty id");
             }
-        });
-        return future;
+            ExportImportDevice bulkDevice = new ExportImportDevice();
+            bulkDevice.setId(deviceId);
+            bulkDevice.setImportMode(ImportMode.Delete);
+            bulkDevices.add(bulkDevice);
+        }
+        return SendBulkRequestsAsync(bulkDevices);
     }
 
     /**
@@ -532,8 +603,8 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_054: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDeviceStatistics();
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_055: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_055: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the device]
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_056: [The function shall create a new HttpRequest for getting statistics a device from IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
@@ -551,7 +622,7 @@ public class RegistryManager
     }
 
     /**
-     * Async wrapper for getStatistics() operation
+     * Get device statistics, without blocking
      *
      * @return The future object for the requested operation
      * @throws IOException This exception is thrown if the IO operation failed
@@ -559,21 +630,12 @@ public class RegistryManager
      */
     public CompletableFuture<RegistryStatistics> getStatisticsAsync() throws IOException, IotHubException
     {
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_060: [The function shall create an async wrapper around the getStatistics() function call, handle the return value or delegate exception]
-        final CompletableFuture<RegistryStatistics> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                RegistryStatistics responseDevice = getStatistics();
-                future.complete(responseDevice);
-            }
-            catch (IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_060: [The function shall send the request for getting the statistics without blocking, and complete the future with the statistics in the response, or exceptionally with the exception of the request]
+        URL url = iotHubConnectionString.getUrlDeviceStatistics();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
+        HttpRequest request = CreateAsyncRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
+        return SendRequestAsync(request,
+                response -> gson.fromJson(new String(response.getBody(), StandardCharsets.UTF_8), RegistryStatistics.class));
     }
 
     /**
@@ -601,8 +663,8 @@ public class RegistryManager
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_062: [The function shall get the URL for the bulk export job creation]
         URL url = iotHubConnectionString.getUrlCreateExportImportJob();
 
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_063: [The function shall create a new SAS token for the bulk export job]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_063: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the bulk export job]
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_064: [The function shall create a new HttpRequest for the bulk export job creation ]
         String jobPropertiesJson = CreateExportJobPropertiesJson(exportBlobContainerUri, excludeKeys);
@@ -617,7 +679,7 @@ public class RegistryManager
     }
 
     /**
-     * Async wrapper for exportDevices() operation
+     * Create a bulk export job, without blocking
      *
      * @return The future object for the requested operation
      *
@@ -628,22 +690,19 @@ public class RegistryManager
     public CompletableFuture<JobProperties> exportDevicesAsync(String exportBlobContainerUri, Boolean excludeKeys)
             throws IllegalArgumentException, IOException, IotHubException, JsonSyntaxException
     {
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_068: [The function shall create an async wrapper around the
-        // exportDevices() function call, handle the return value or delegate exception]
-        final CompletableFuture<JobProperties> future = new CompletableFuture<>();
-        executor.submit(() ->
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_068: [The function shall throw IllegalArgumentException if any of the
+        // input parameters is null, send the request for the bulk export job creation without blocking, and complete the future
+        // with the job properties in the response, or exceptionally with the exception of the request]
+        if (exportBlobContainerUri == null || excludeKeys == null)
         {
-            try
-            {
-                JobProperties responseJobProperties = exportDevices(exportBlobContainerUri, excludeKeys);
-                future.complete(responseJobProperties);
-            }
-            catch (IllegalArgumentException | IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+            throw new IllegalArgumentException("Export blob uri cannot be null");
+        }
+
+        URL url = iotHubConnectionString.getUrlCreateExportImportJob();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
+        String jobPropertiesJson = CreateExportJobPropertiesJson(exportBlobContainerUri, excludeKeys);
+        HttpRequest request = CreateAsyncRequest(url, HttpMethod.POST, jobPropertiesJson.getBytes(), sasTokenString);
+        return SendRequestAsync(request, response -> ParseJobProperties(response));
     }
 
     /**
@@ -670,8 +729,8 @@ public class RegistryManager
         //CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_070: [The function shall get the URL for the bulk import job creation]
         URL url = iotHubConnectionString.getUrlCreateExportImportJob();
 
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_071: [The function shall create a new SAS token for the bulk import job]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_071: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the bulk import job]
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_072: [The function shall create a new HttpRequest for the bulk import job creation]
         String jobPropertiesJson = CreateImportJobPropertiesJson(importBlobContainerUri, outputBlobContainerUri);
@@ -686,7 +745,7 @@ public class RegistryManager
     }
 
     /**
-     * Async wrapper for importDevices() operation
+     * Create a bulk import job, without blocking
      *
      * @return The future object for the requested operation
      *
@@ -697,22 +756,19 @@ public class RegistryManager
     public CompletableFuture<JobProperties> importDevicesAsync(String importBlobContainerUri, String outputBlobContainerUri)
             throws IllegalArgumentException, IOException, IotHubException, JsonSyntaxException
     {
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_076: [The function shall create an async wrapper around
-        // the importDevices() function call, handle the return value or delegate exception]
-        final CompletableFuture<JobProperties> future = new CompletableFuture<>();
-        executor.submit(() ->
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_076: [The function shall throw IllegalArgumentException if any of the
+        // input parameters is null, send the request for the bulk import job creation without blocking, and complete the future
+        // with the job properties in the response, or exceptionally with the exception of the request]
+        if (importBlobContainerUri == null || outputBlobContainerUri == null)
         {
-            try
-            {
-                JobProperties responseJobProperties = importDevices(importBlobContainerUri, outputBlobContainerUri);
-                future.complete(responseJobProperties);
-            }
-            catch (IllegalArgumentException | IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+            throw new IllegalArgumentException("Import blob uri or output blob uri cannot be null");
+        }
+
+        URL url = iotHubConnectionString.getUrlCreateExportImportJob();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
+        String jobPropertiesJson = CreateImportJobPropertiesJson(importBlobContainerUri, outputBlobContainerUri);
+        HttpRequest request = CreateAsyncRequest(url, HttpMethod.POST, jobPropertiesJson.getBytes(), sasTokenString);
+        return SendRequestAsync(request, response -> ParseJobProperties(response));
     }
 
     /**
@@ -737,8 +793,8 @@ public class RegistryManager
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_078: [The function shall get the URL for the get request]
         URL url = iotHubConnectionString.getUrlImportExportJob(jobId);
 
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_079: [The function shall create a new SAS token for the get request **]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_079: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the get request **]
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_080: [The function shall create a new HttpRequest for getting the properties of a job]
         HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
@@ -752,7 +808,7 @@ public class RegistryManager
     }
 
     /**
-     * Async wrapper for getJob() operation
+     * Get the properties of an existing job, without blocking
      *
      * @return The future object for the requested operation
      *
@@ -763,22 +819,18 @@ public class RegistryManager
     public CompletableFuture<JobProperties> getJobAsync(
             String jobId) throws IllegalArgumentException, IOException, IotHubException
     {
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_084: [The function shall create an async wrapper around
-        // the getJob() function call, handle the return value or delegate exception]
-        final CompletableFuture<JobProperties> future = new CompletableFuture<>();
-        executor.submit(() ->
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_084: [The function shall throw IllegalArgumentException if the
+        // input parameter is null, send the request for getting the properties of the job without blocking, and complete the
+        // future with the job properties in the response, or exceptionally with the exception of the request]
+        if (jobId == null)
         {
-            try
-            {
-                JobProperties responseJobProperties = getJob(jobId);
-                future.complete(responseJobProperties);
-            }
-            catch (IllegalArgumentException | IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+            throw new IllegalArgumentException("Job id cannot be null");
+        }
+
+        URL url = iotHubConnectionString.getUrlImportExportJob(jobId);
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
+        HttpRequest request = CreateAsyncRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
+        return SendRequestAsync(request, response -> ParseJobProperties(response));
     }
 
     private String CreateExportJobPropertiesJson(String exportBlobContainerUri, Boolean excludeKeysInExport)
@@ -803,14 +855,257 @@ public class RegistryManager
 
     private JobProperties ProcessJobResponse(HttpResponse response) throws IotHubException, JsonSyntaxException {
         IotHubExceptionManager.httpResponseVerification(response);
+        return ParseJobProperties(response);
+    }
+
+    private Device ProcessDeviceResponse(HttpResponse response) throws JsonSyntaxException
+    {
+        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
+        return gson.fromJson(bodyStr, Device.class);
+    }
+
+    private ArrayList<Device> ProcessDevicesResponse(HttpResponse response) throws JsonSyntaxException
+    {
+        // Decode the devices in one pass over the body, without an intermediate string or tree of the whole list
+        JsonReader jsonReader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(response.getBody()), StandardCharsets.UTF_8));
+        ArrayList<Device> deviceList = gson.fromJson(jsonReader, DEVICE_LIST_TYPE);
+        return (deviceList == null) ? new ArrayList<Device>() : deviceList;
+    }
+
+    /**
+     * Queries one page of the devices. Unlike GET /devices, which returns at most
+     * the top devices and never a continuation token, the query returns a
+     * continuation token with every page but the last one.
+     */
+    HttpStreamResponse SendDevicesPageRequest(int pageSize, String continuationToken) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_100: [The function shall POST the query of all the devices to the device query URL,
+        // asking for at most pageSize devices, with the continuation token of the previous page if there is one]
+        URL url = iotHubConnectionString.getUrlDeviceQuery();
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
+        HttpRequest request = CreateRequest(url, HttpMethod.POST, ALL_DEVICES_QUERY, sasTokenString);
+        request.setHeaderField(MAX_ITEM_COUNT_HEADER, String.valueOf(pageSize));
+        if (continuationToken != null)
+        {
+            request.setHeaderField(CONTINUATION_TOKEN_HEADER, continuationToken);
+        }
+        return request.sendStreaming();
+    }
+
+    private JobProperties ParseJobProperties(HttpResponse response) throws JsonSyntaxException
+    {
         String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
-        JobProperties resultJobProperties = gson.fromJson(bodyStr, JobProperties.class);
-        return resultJobProperties;
+        return gson.fromJson(bodyStr, JobProperties.class);
+    }
+
+    private static List<ExportImportDevice> CreateBulkDevices(Collection<Device> devices, ImportMode importMode)
+    {
+        if (devices == null)
+        {
+            throw new IllegalArgumentException("devices cannot be null");
+        }
+
+        List<ExportImportDevice> bulkDevices = new ArrayList<>(devices.size());
+        for (Device device : devices)
+        {
+            if (device == null)
+            {
+                throw new IllegalArgumentException("devices cannot contain a null device");
+            }
+            // No ETag: ImportMode Create and Update ignore it, and sending it would suggest the update depends on it.
+            ExportImportDevice bulkDevice = new ExportImportDevice();
+            bulkDevice.setId(device.getDeviceId());
+            bulkDevice.setImportMode(importMode);
+            bulkDevice.setStatus(device.getStatus());
+            bulkDevice.setStatusReason(device.getStatusReason());
+            bulkDevice.setAuthentication(new AuthenticationMechanism(device.getSymmetricKey()));
+            bulkDevices.add(bulkDevice);
+        }
+        return bulkDevices;
+    }
+
+    /**
+     * Sends the devices in bulk requests of up to MAX_DEVICES_PER_BULK_REQUEST
+     * devices, with at most bulkOperationConcurrency requests at the same time.
+     * A request which fails as a whole is reported as an error of each of its
+     * devices, so the result always tells which devices succeeded.
+     */
+    private CompletableFuture<BulkRegistryOperationResult> SendBulkRequestsAsync(List<ExportImportDevice> bulkDevices)
+    {
+        final BulkRegistryOperationResult result = new BulkRegistryOperationResult();
+        final CompletableFuture<BulkRegistryOperationResult> future = new CompletableFuture<>();
+        if (bulkDevices.isEmpty())
+        {
+            future.complete(result);
+            return future;
+        }
+
+        final List<List<ExportImportDevice>> chunks = new ArrayList<>();
+        for (int i = 0; i < bulkDevices.size(); i += MAX_DEVICES_PER_BULK_REQUEST)
+        {
+            chunks.add(bulkDevices.subList(i, Math.min(bulkDevices.size(), i + MAX_DEVICES_PER_BULK_REQUEST)));
+        }
+
+        final AtomicInteger nextChunk = new AtomicInteger();
+        final AtomicInteger remainingChunks = new AtomicInteger(chunks.size());
+        int concurrency = Math.min(this.bulkOperationConcurrency, chunks.size());
+        for (int i = 0; i < concurrency; i++)
+        {
+            SendNextBulkRequest(chunks, nextChunk, remainingChunks, result, future);
+        }
+        return future;
+    }
+
+    /**
+     * Sends the next bulk requests, one at a time. Requests which are already
+     * completed when they return are merged in this loop, so a long run of
+     * them does not nest one call in the callback of the other.
+     */
+    private void SendNextBulkRequest(final List<List<ExportImportDevice>> chunks, final AtomicInteger nextChunk,
+                                     final AtomicInteger remainingChunks, final BulkRegistryOperationResult result,
+                                     final CompletableFuture<BulkRegistryOperationResult> future)
+    {
+        while (true)
+        {
+            int chunkIndex = nextChunk.getAndIncrement();
+            if (chunkIndex >= chunks.size())
+            {
+                return;
+            }
+
+            final List<ExportImportDevice> chunk = chunks.get(chunkIndex);
+            CompletableFuture<BulkRegistryOperationResult> chunkFuture;
+            try
+            {
+                URL url = iotHubConnectionString.getUrlBulkDevices();
+                String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
+                HttpRequest request = CreateAsyncRequest(url, HttpMethod.POST, gson.toJson(chunk).getBytes(StandardCharsets.UTF_8), sasTokenString);
+                chunkFuture = SendRequestAsync(request, response -> ParseBulkResult(response));
+            }
+            catch (IOException | RuntimeException e)
+            {
+                chunkFuture = new CompletableFuture<>();
+                chunkFuture.completeExceptionally(e);
+            }
+
+            if (chunkFuture.isDone())
+            {
+                chunkFuture.whenComplete((chunkResult, throwable) ->
+                        MergeBulkResult(chunk, chunkResult, throwable, remainingChunks, result, future));
+            }
+            else
+            {
+                chunkFuture.whenComplete((chunkResult, throwable) ->
+                {
+                    MergeBulkResult(chunk, chunkResult, throwable, remainingChunks, result, future);
+                    SendNextBulkRequest(chunks, nextChunk, remainingChunks, result, future);
+                });
+                return;
+            }
+        }
+    }
+
+    private static void MergeBulkResult(List<ExportImportDevice> chunk, BulkRegistryOperationResult chunkResult, Throwable throwable,
+                                        AtomicInteger remainingChunks, BulkRegistryOperationResult result,
+                                        CompletableFuture<BulkRegistryOperationResult> future)
+    {
+        if (throwable != null)
+        {
+            Throwable cause = ((throwable instanceof CompletionException) && (throwable.getCause() != null)) ? throwable.getCause() : throwable;
+            for (ExportImportDevice bulkDevice : chunk)
+            {
+                result.addError(new DeviceRegistryOperationError(bulkDevice.getId(), null, cause.toString()));
+            }
+        }
+        else
+        {
+            result.merge(chunkResult);
+        }
+
+        if (remainingChunks.decrementAndGet() == 0)
+        {
+            future.complete(result);
+        }
+    }
+
+    private BulkRegistryOperationResult ParseBulkResult(HttpResponse response) throws JsonSyntaxException
+    {
+        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
+        BulkRegistryOperationResult result = gson.fromJson(bodyStr, BulkRegistryOperationResult.class);
+        return (result == null) ? new BulkRegistryOperationResult() : result;
+    }
+
+    private static BulkRegistryOperationResult WaitForBulkResult(CompletableFuture<BulkRegistryOperationResult> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the bulk operation", e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Sends the request with the shared HttpAsyncClient. Once the response
+     * arrives, it is verified and given to the parser on an I/O thread, so the
+     * parser must not block.
+     */
+    private static <T> CompletableFuture<T> SendRequestAsync(HttpRequest request, ResponseParser<T> parser) throws IOException
+    {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        request.sendAsync().whenComplete((response, throwable) ->
+        {
+            if (throwable != null)
+            {
+                future.completeExceptionally(throwable);
+                return;
+            }
+
+            try
+            {
+                IotHubExceptionManager.httpResponseVerification(response);
+                future.complete(parser.parse(response));
+            }
+            catch (IotHubException | RuntimeException e)
+            {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private interface ResponseParser<T>
+    {
+        T parse(HttpResponse response) throws IotHubException;
     }
 
     private HttpRequest CreateRequest(URL url, HttpMethod method, byte[] payload, String sasToken) throws IOException
     {
-        HttpRequest request = new HttpRequest(url, method, payload);
+        return SetRequestFields(new HttpRequest(url, method, payload), sasToken);
+    }
+
+    /**
+     * Creates a request to be sent with SendRequestAsync, which does not set up
+     * an HTTPS connection like the requests sent synchronously.
+     */
+    private HttpRequest CreateAsyncRequest(URL url, HttpMethod method, byte[] payload, String sasToken)
+    {
+        return SetRequestFields(HttpRequest.createAsync(url, method, payload), sasToken);
+    }
+
+    private HttpRequest SetRequestFields(HttpRequest request, String sasToken)
+    {
         request.setReadTimeoutMillis(DEFAULT_HTTP_TIMEOUT_MS);
         request.setHeaderField("authorization", sasToken);
         request.setHeaderField("Request-Id", "1001");
@@ -8,6 +8,8 @@ package com.microsoft.azure.sdk.iot.service;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpSend;
+import com.microsoft.azure.sdk.iot.deps.ws.WebSocketHeader;
+import com.microsoft.azure.sdk.iot.deps.ws.impl.WebSocketImpl;
 
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
@@ -27,6 +29,7 @@ public class ServiceClient
     private final String sasToken;
     protected IotHubConnectionString iotHubConnectionString;
     private IotHubServiceClientProtocol iotHubServiceClientProtocol;
+    private int webSocketMaxFrameSize = WebSocketImpl.DEFAULT_MAX_FRAME_SIZE;
 
     /**
      * Create ServiceClient from the specified connection string
@@ -204,6 +207,8 @@ public class ServiceClient
     {
         // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_017: [The function shall create a FeedbackReceiver object and returns with it. This API is deprecated.]
         FeedbackReceiver feedbackReceiver = new FeedbackReceiver(hostName, userName, sasToken, iotHubServiceClientProtocol, deviceId);
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_025: [The functions which create a FeedbackReceiver, FeedbackSubscription or CloudToDeviceSender object shall set the WebSocket maximum frame size of the client on the created object]
+        feedbackReceiver.setWebSocketMaxFrameSize(this.webSocketMaxFrameSize);
         return feedbackReceiver;
     }
     
@@ -218,8 +223,78 @@ public class ServiceClient
     {
         // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_018: [The function shall create a FeedbackReceiver object and returns with it. This API doesn't need deviceId as an input parameter]
         FeedbackReceiver feedbackReceiver = new FeedbackReceiver(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_025: [The functions which create a FeedbackReceiver, FeedbackSubscription or CloudToDeviceSender object shall set the WebSocket maximum frame size of the client on the created object]
+        feedbackReceiver.setWebSocketMaxFrameSize(this.webSocketMaxFrameSize);
         return feedbackReceiver;
     }
-    
+
+    /**
+     * Get a FeedbackSubscription object, which keeps its link open and pushes
+     * every received FeedbackBatch to the callback.
+     *
+     * @param feedbackBatchCallback The callback to push the received feedback batches to
+     * @return The instance of the FeedbackSubscription
+     */
+    public FeedbackSubscription getFeedbackSubscription(FeedbackBatchCallback feedbackBatchCallback)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_020: [The function shall create a FeedbackSubscription object with the default prefetch credit and returns with it]
+        return getFeedbackSubscription(feedbackBatchCallback, FeedbackSubscription.DEFAULT_PREFETCH_CREDIT);
+    }
+
+    /**
+     * Get a FeedbackSubscription object, which keeps its link open and pushes
+     * every received FeedbackBatch to the callback.
+     *
+     * @param feedbackBatchCallback The callback to push the received feedback batches to
+     * @param prefetchCredit The number of feedback messages the IoT Hub may send ahead of the callback
+     * @return The instance of the FeedbackSubscription
+     */
+    public FeedbackSubscription getFeedbackSubscription(FeedbackBatchCallback feedbackBatchCallback, int prefetchCredit)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_021: [The function shall create a FeedbackSubscription object with the given prefetch credit and returns with it]
+        FeedbackSubscription feedbackSubscription = new FeedbackSubscription(iotHubConnectionString, iotHubServiceClientProtocol,
+                feedbackBatchCallback, prefetchCredit);
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_025: [The functions which create a FeedbackReceiver, FeedbackSubscription or CloudToDeviceSender object shall set the WebSocket maximum frame size of the client on the created object]
+        feedbackSubscription.setWebSocketMaxFrameSize(this.webSocketMaxFrameSize);
+        return feedbackSubscription;
+    }
+
+    /**
+     * Get a CloudToDeviceSender object, which keeps its connection open and
+     * sends many messages without waiting for each acknowledgement in turn.
+     *
+     * @return The instance of the CloudToDeviceSender
+     */
+    public CloudToDeviceSender getCloudToDeviceSender()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_019: [The function shall create a CloudToDeviceSender object with the connection string and returns with it]
+        CloudToDeviceSender cloudToDeviceSender = new CloudToDeviceSender(iotHubConnectionString, iotHubServiceClientProtocol);
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_025: [The functions which create a FeedbackReceiver, FeedbackSubscription or CloudToDeviceSender object shall set the WebSocket maximum frame size of the client on the created object]
+        cloudToDeviceSender.setWebSocketMaxFrameSize(this.webSocketMaxFrameSize);
+        return cloudToDeviceSender;
+    }
+
+    /**
+     * Set the largest WebSocket frame, header included, which the AMQPS_WS connections send and
+     * receive. Larger frames carry a big message in fewer frames. The value applies to the sender of
+     * this client from its next open() on, and to the receivers and senders got from it afterwards.
+     *
+     * @param webSocketMaxFrameSize The maximum frame size in bytes, WebSocketImpl.DEFAULT_MAX_FRAME_SIZE by default
+     * @throws IllegalArgumentException if the size cannot hold the largest WebSocket frame header
+     */
+    public void setWebSocketMaxFrameSize(int webSocketMaxFrameSize)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_022: [The function shall throw IllegalArgumentException if the size is not larger than the largest WebSocket frame header]
+        if (webSocketMaxFrameSize <= WebSocketHeader.MAX_HEADER_LENGTH_MASKED)
+        {
+            throw new IllegalArgumentException("webSocketMaxFrameSize must be larger than the WebSocket frame header");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_023: [The function shall store the size for the receivers and senders created afterwards]
+        this.webSocketMaxFrameSize = webSocketMaxFrameSize;
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_024: [The function shall call setWebSocketMaxFrameSize() on the member AMQP sender object]
+        this.amqpMessageSender.setWebSocketMaxFrameSize(webSocketMaxFrameSize);
+    }
+
     
 }
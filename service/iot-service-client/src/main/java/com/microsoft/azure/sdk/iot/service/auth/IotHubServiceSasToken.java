@@ -12,6 +12,7 @@ import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
 
 /** 
  * Grants device access to an IoT Hub for the specified amount of time. 
@@ -30,6 +31,23 @@ public final class IotHubServiceSasToken
      */
     public static final String TOKEN_FORMAT = "SharedAccessSignature sr=%s&sig=%s&se=%s&skn=%s";
 
+    /* Mac.getInstance looks the algorithm up through the security providers, so keep one Mac per thread. */
+    private static final ThreadLocal<Mac> HMAC_SHA256 = new ThreadLocal<Mac>()
+    {
+        @Override
+        protected Mac initialValue()
+        {
+            try
+            {
+                return Mac.getInstance("HmacSHA256");
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
     /* The URI for a connection to an IoT Hub */
     protected final String resourceUri;
     /* The value of the SharedAccessKey */
@@ -86,8 +104,8 @@ public final class IotHubServiceSasToken
             byte[] keyBytes = Base64.decodeBase64(this.keyValue.getBytes("UTF-8"));
             SecretKeySpec signingKey = new SecretKeySpec(keyBytes, "HmacSHA256");
 
-            // Get an hmac_sha1 Mac instance and initialize with the signing key
-            Mac mac = Mac.getInstance("HmacSHA256");
+            // Get the hmac_sha256 Mac instance of this thread and initialize it with the signing key
+            Mac mac = HMAC_SHA256.get();
             mac.init(signingKey);
 
             // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKEN_12_005: [The constructor shall compute the final signature by url encoding the signed key]
@@ -120,6 +138,17 @@ public final class IotHubServiceSasToken
         return expiresOnDate / 1000;
     }
 
+    /**
+     * Returns the time, as a UNIX timestamp, before which the token is valid.
+     *
+     * @return The expiry time in seconds.
+     */
+    public long getExpiryTime()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKEN_21_009: [The function shall return the expiry time of the token in seconds since the epoch]
+        return this.expiryTime;
+    }
+
     /**
      * Returns the string representation of the SAS token.
      *
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.auth;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Shares one SAS token per connection string between all the service requests.
+ * The token is signed once, handed out until it gets close to its expiry, and
+ * renewed in the background before it expires.
+ */
+public final class IotHubServiceSasTokenProvider
+{
+    /* Tokens closer than this to their expiry are renewed in the background. */
+    private static final long RENEWAL_MARGIN_SECS = 24 * 60 * 60;
+    /* Tokens closer than this to their expiry are never handed out. */
+    private static final long EXPIRY_MARGIN_SECS = 60;
+
+    private static final ConcurrentMap<String, CachedToken> tokens = new ConcurrentHashMap<>();
+
+    private static final Executor renewalExecutor = Executors.newSingleThreadExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "azure-iot-sdk-IotHubServiceSasTokenProvider");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final class CachedToken
+    {
+        private final IotHubServiceSasToken sasToken;
+        private final AtomicBoolean renewing = new AtomicBoolean(false);
+
+        private CachedToken(IotHubServiceSasToken sasToken)
+        {
+            this.sasToken = sasToken;
+        }
+    }
+
+    private IotHubServiceSasTokenProvider()
+    {
+    }
+
+    /**
+     * Returns a valid SAS token for the given connection string, signing a new one
+     * only if there is no cached token or the cached one is about to expire.
+     *
+     * @param iotHubConnectionString Connection string object containing the connection parameters
+     * @return The string representation of the SAS token
+     */
+    public static String getSasToken(final IotHubConnectionString iotHubConnectionString)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_001: [The function shall throw IllegalArgumentException if the input object is null]
+        if (iotHubConnectionString == null)
+        {
+            throw new IllegalArgumentException("iotHubConnectionString cannot be null");
+        }
+
+        final String key = iotHubConnectionString.getHostName() + ";" +
+                iotHubConnectionString.getSharedAccessKeyName() + ";" +
+                iotHubConnectionString.getSharedAccessKey();
+        final long now = System.currentTimeMillis() / 1000;
+
+        CachedToken cachedToken = tokens.get(key);
+        if ((cachedToken == null) || (now >= cachedToken.sasToken.getExpiryTime() - EXPIRY_MARGIN_SECS))
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_002: [If there is no cached token for the connection string, or the cached one is about to expire, the function shall create a new IotHubServiceSasToken and cache it]
+            cachedToken = new CachedToken(new IotHubServiceSasToken(iotHubConnectionString));
+            tokens.put(key, cachedToken);
+        }
+        else if ((now >= cachedToken.sasToken.getExpiryTime() - RENEWAL_MARGIN_SECS) && cachedToken.renewing.compareAndSet(false, true))
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_003: [If the cached token is close to its expiry, the function shall renew it once in the background, and return the cached token meanwhile]
+            final CachedToken expiringToken = cachedToken;
+            renewalExecutor.execute(() ->
+            {
+                try
+                {
+                    tokens.replace(key, expiringToken, new CachedToken(new IotHubServiceSasToken(iotHubConnectionString)));
+                }
+                finally
+                {
+                    expiringToken.renewing.set(false);
+                }
+            });
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_004: [The function shall return the string representation of the cached token]
+        return cachedToken.sasToken.toString();
+    }
+}
@@ -15,6 +15,7 @@ import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * DeviceMethod enables service client to directly invoke methods on various devices from service client.
@@ -60,7 +61,49 @@ public class DeviceMethod
      * @throws IotHubException This exception is thrown if the response verification failed
      * @throws IOException This exception is thrown if the IO operation failed
      */
-    public synchronized MethodResult invoke(String deviceId, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload) throws IotHubException, IOException
+    public MethodResult invoke(String deviceId, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload) throws IotHubException, IOException
+    {
+        String json = createMethodJson(deviceId, methodName, responseTimeoutInSeconds, connectTimeoutInSeconds, payload);
+
+        /* Codes_SRS_DEVICEMETHOD_21_008: [The invoke shall build the Method URL `{iot hub}/twins/{device id}/methods/` by calling getUrlMethod.] */
+        URL url = this.iotHubConnectionString.getUrlMethod(deviceId);
+
+        /* Codes_SRS_DEVICEMETHOD_21_009: [The invoke shall send the created request and get the response using the HttpRequester.] */
+        /* Codes_SRS_DEVICEMETHOD_21_010: [The invoke shall create a new HttpRequest with http method as `POST`.] */
+        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.POST, json.getBytes(StandardCharsets.UTF_8), nextRequestId());
+
+        /* Codes_SRS_DEVICEMETHOD_21_013: [The invoke shall deserialize the payload using the `serializer.Method`.] */
+        /* Codes_SRS_DEVICEMETHOD_21_015: [If the HttpStatus represents success, the invoke shall return the status and payload using the `MethodResult` class.] */
+        return createMethodResult(response);
+    }
+
+    /**
+     * Directly invokes a method on the device, without waiting for its result. Many
+     * invocations can wait for their device at the same time, without a thread each.
+     * The returned future completes on an I/O thread, so the actions chained to it
+     * must not block.
+     *
+     * @param deviceId is the device identification.
+     * @param methodName is the name of the method that shall be invoked on the device.
+     * @param responseTimeoutInSeconds is the maximum waiting time for a response from the device in seconds.
+     * @param connectTimeoutInSeconds is the maximum waiting time for a response from the connection in seconds.
+     * @param payload is the the method parameter
+     * @return the future of the status and payload resulted from the method invoke
+     * @throws IOException This exception is thrown if the request could not be created
+     */
+    public CompletableFuture<MethodResult> invokeAsync(String deviceId, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload) throws IOException
+    {
+        /* Codes_SRS_DEVICEMETHOD_21_016: [The invokeAsync shall validate the parameters and create the Json of the method in the same way as invoke.] */
+        String json = createMethodJson(deviceId, methodName, responseTimeoutInSeconds, connectTimeoutInSeconds, payload);
+        URL url = this.iotHubConnectionString.getUrlMethod(deviceId);
+
+        /* Codes_SRS_DEVICEMETHOD_21_017: [The invokeAsync shall send the request with http method `POST` by calling DeviceOperations.requestAsync.] */
+        /* Codes_SRS_DEVICEMETHOD_21_018: [The invokeAsync shall complete the future with the status and payload of the response, or exceptionally with the Exception of the request.] */
+        return DeviceOperations.requestAsync(this.iotHubConnectionString, url, HttpMethod.POST, json.getBytes(StandardCharsets.UTF_8), nextRequestId())
+                .thenApply(response -> createMethodResult(response));
+    }
+
+    private String createMethodJson(String deviceId, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload)
     {
         /* Codes_SRS_DEVICEMETHOD_21_004: [The invoke shall throw IllegalArgumentException if the provided deviceId is null or empty.] */
         if((deviceId == null) || deviceId.isEmpty())
@@ -87,19 +130,19 @@ public class DeviceMethod
             throw new IllegalArgumentException("Method return null Json");
         }
 
-        /* Codes_SRS_DEVICEMETHOD_21_008: [The invoke shall build the Method URL `{iot hub}/twins/{device id}/methods/` by calling getUrlMethod.] */
-        URL url = this.iotHubConnectionString.getUrlMethod(deviceId);
-
-        /* Codes_SRS_DEVICEMETHOD_21_009: [The invoke shall send the created request and get the response using the HttpRequester.] */
-        /* Codes_SRS_DEVICEMETHOD_21_010: [The invoke shall create a new HttpRequest with http method as `POST`.] */
-        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.POST, json.getBytes(StandardCharsets.UTF_8), String.valueOf(requestId++));
+        return json;
+    }
 
-        /* Codes_SRS_DEVICEMETHOD_21_013: [The invoke shall deserialize the payload using the `serializer.Method`.] */
+    private static MethodResult createMethodResult(HttpResponse response)
+    {
         Method methodResponse = new Method();
         methodResponse.fromJson(new String(response.getBody(), StandardCharsets.UTF_8));
-
-        /* Codes_SRS_DEVICEMETHOD_21_015: [If the HttpStatus represents success, the invoke shall return the status and payload using the `MethodResult` class.] */
         return new MethodResult(methodResponse.getStatus(), methodResponse.getPayload());
     }
 
+    private synchronized String nextRequestId()
+    {
+        return String.valueOf(requestId++);
+    }
+
 }
@@ -4,7 +4,7 @@
 package com.microsoft.azure.sdk.iot.service.devicetwin;
 
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
-import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
@@ -14,6 +14,7 @@ import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Set of common operations for Twin and Method.
@@ -51,6 +52,73 @@ public class DeviceOperations
             byte[] payload, 
             String requestId) 
             throws IOException, IotHubException, IllegalArgumentException
+    {
+        HttpRequest request = createRequest(iotHubConnectionString, url, method, payload, requestId, false);
+
+        /* Codes_SRS_DEVICE_OPERATIONS_21_015: [The request shall send the created request and get the response.] */
+        HttpResponse response = request.send();
+
+        /* Codes_SRS_DEVICE_OPERATIONS_21_016: [If the resulted HttpResponseStatus represents fail, the request shall throw proper Exception by calling httpResponseVerification.] */
+        IotHubExceptionManager.httpResponseVerification(response);
+        
+        /* Codes_SRS_DEVICE_OPERATIONS_21_017: [If the resulted status represents success, the request shall return the http response.] */
+        return response;
+    }
+
+    /**
+     * Send a http request to the IoTHub using the Twin/Method standard, without waiting for its response.
+     * The returned future completes on an I/O thread, so the actions chained to it must not block.
+     *
+     * @param iotHubConnectionString is the connection string for the IoTHub
+     * @param url is the Twin URL for the device ID.
+     * @param method is the HTTP method (GET, POST, DELETE, PATCH, PUT).
+     * @param payload is the array of bytes that contains the payload.
+     * @param requestId is an unique number that identify the request.
+     * @return the future of the result of the request.
+     * @throws IOException This exception is thrown if the request could not be created
+     */
+    public static CompletableFuture<HttpResponse> requestAsync(
+            IotHubConnectionString iotHubConnectionString,
+            URL url,
+            HttpMethod method,
+            byte[] payload,
+            String requestId)
+            throws IOException, IllegalArgumentException
+    {
+        HttpRequest request = createRequest(iotHubConnectionString, url, method, payload, requestId, true);
+
+        /* Codes_SRS_DEVICE_OPERATIONS_21_018: [The requestAsync shall send the created request without waiting for the response.] */
+        final CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        request.sendAsync().whenComplete((response, throwable) ->
+        {
+            if (throwable != null)
+            {
+                future.completeExceptionally(throwable);
+                return;
+            }
+
+            /* Codes_SRS_DEVICE_OPERATIONS_21_019: [The requestAsync shall complete the future with the http response if its status represents success, or else exceptionally with the proper Exception from httpResponseVerification.] */
+            try
+            {
+                IotHubExceptionManager.httpResponseVerification(response);
+                future.complete(response);
+            }
+            catch (IotHubException | RuntimeException e)
+            {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private static HttpRequest createRequest(
+            IotHubConnectionString iotHubConnectionString,
+            URL url,
+            HttpMethod method,
+            byte[] payload,
+            String requestId,
+            boolean forAsyncClient)
+            throws IOException, IllegalArgumentException
     {
         /* Codes_SRS_DEVICE_OPERATIONS_21_001: [The request shall throw IllegalArgumentException if the provided `iotHubConnectionString` is null.] */
         if(iotHubConnectionString == null)
@@ -82,8 +150,8 @@ public class DeviceOperations
             throw new IllegalArgumentException("requestId is null or empty");
         }
 
-        /* Codes_SRS_DEVICE_OPERATIONS_21_006: [The request shall create a new SASToken with the ServiceConnect rights.] */
-        String sasTokenString = new IotHubServiceSasToken(iotHubConnectionString).toString();
+        /* Codes_SRS_DEVICE_OPERATIONS_21_006: [The request shall get the SASToken with the ServiceConnect rights from the IotHubServiceSasTokenProvider.] */
+        String sasTokenString = IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
         /* Codes_SRS_DEVICE_OPERATIONS_21_007: [If the SASToken is null or empty, the request shall throw IOException.] */
          if((sasTokenString == null) || sasTokenString.isEmpty())
         {
@@ -91,7 +159,8 @@ public class DeviceOperations
         }
 
         /* Codes_SRS_DEVICE_OPERATIONS_21_008: [The request shall create a new HttpRequest with the provided `url`, http `method`, and `payload`.] */
-        HttpRequest request = new HttpRequest(url, method, payload);
+        /* Codes_SRS_DEVICE_OPERATIONS_21_020: [The requestAsync shall create the HttpRequest for the asynchronous client, which does not open a connection.] */
+        HttpRequest request = forAsyncClient ? HttpRequest.createAsync(url, method, payload) : new HttpRequest(url, method, payload);
 
         /* Codes_SRS_DEVICE_OPERATIONS_21_009: [The request shall add to the HTTP header an default timeout in milliseconds.] */
         request.setReadTimeoutMillis(DEFAULT_HTTP_TIMEOUT_MS);
@@ -111,13 +180,6 @@ public class DeviceOperations
         /* Codes_SRS_DEVICE_OPERATIONS_21_014: [The request shall add to the HTTP header a `Content-Type` key with `application/json; charset=utf-8`.] */
         request.setHeaderField(CONTENT_TYPE, ACCEPT_VALUE + "; " + ACCEPT_CHARSET);
 
-        /* Codes_SRS_DEVICE_OPERATIONS_21_015: [The request shall send the created request and get the response.] */
-        HttpResponse response = request.send();
-
-        /* Codes_SRS_DEVICE_OPERATIONS_21_016: [If the resulted HttpResponseStatus represents fail, the request shall throw proper Exception by calling httpResponseVerification.] */
-        IotHubExceptionManager.httpResponseVerification(response);
-        
-        /* Codes_SRS_DEVICE_OPERATIONS_21_017: [If the resulted status represents success, the request shall return the http response.] */
-        return response;
+        return request;
     }
 }
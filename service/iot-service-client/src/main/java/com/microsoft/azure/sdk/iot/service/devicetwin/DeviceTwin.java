@@ -15,6 +15,7 @@ import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 
 
 public class DeviceTwin
@@ -85,22 +86,78 @@ public class DeviceTwin
          **Codes_SRS_DEVICETWIN_25_009: [** The function shall send the created request and get the response **]**
          **Codes_SRS_DEVICETWIN_25_010: [** The function shall verify the response status and throw proper Exception **]**
          */
-        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.GET, new byte[0], String.valueOf(requestId++));
-        String twin = new String(response.getBody(), StandardCharsets.UTF_8);
+        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.GET, new byte[0], nextRequestId());
 
         /*
         **Codes_SRS_DEVICETWIN_25_011: [** The function shall deserialize the payload by calling updateTwin Api on the twin object **]**
+        **Codes_SRS_DEVICETWIN_25_012: [** The function shall set tags, desired property map, reported property map on the user device **]**
          */
-        device.getTwinObject().updateTwin(twin);
+        updateDevice(device, response);
+    }
+
+    /**
+     * This method retrieves device twin for the specified device, without waiting
+     * for the response. Many twins can be retrieved at the same time, without a
+     * thread each. The returned future completes on an I/O thread, so the actions
+     * chained to it must not block.
+     *
+     * @param device The device with a valid id for which device twin is to be retrieved.
+     * @return The future completed with the given device, once its twin is retrieved.
+     * @throws IOException This exception is thrown if the request could not be created
+     */
+    public CompletableFuture<DeviceTwinDevice> getTwinAsync(DeviceTwinDevice device) throws IOException
+    {
+        if (device == null || device.getDeviceId() == null || device.getDeviceId().length() == 0)
+        {
+            /*
+            **Codes_SRS_DEVICETWIN_21_045: [** The function shall throw IllegalArgumentException if the input device is null or if deviceId is null or empty **]**
+             */
+            throw new IllegalArgumentException("Instantiate a device and set device id to be used");
+        }
 
         /*
-        **Codes_SRS_DEVICETWIN_25_012: [** The function shall set tags, desired property map, reported property map on the user device **]**
+        **Codes_SRS_DEVICETWIN_21_046: [** The function shall send the request for the twin of the device by calling DeviceOperations.requestAsync with http method as Get **]**
          */
+        URL url = this.iotHubConnectionString.getUrlTwin(device.getDeviceId());
+        final CompletableFuture<DeviceTwinDevice> future = new CompletableFuture<>();
+        DeviceOperations.requestAsync(this.iotHubConnectionString, url, HttpMethod.GET, new byte[0], nextRequestId()).whenComplete((response, throwable) ->
+        {
+            /*
+            **Codes_SRS_DEVICETWIN_21_047: [** The function shall set the twin in the response on the device and complete the future with the device, or else complete it exceptionally with the Exception of the request **]**
+             */
+            if (throwable != null)
+            {
+                future.completeExceptionally(throwable);
+                return;
+            }
+
+            try
+            {
+                updateDevice(device, response);
+                future.complete(device);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private static void updateDevice(DeviceTwinDevice device, HttpResponse response) throws IOException
+    {
+        String twin = new String(response.getBody(), StandardCharsets.UTF_8);
+        device.getTwinObject().updateTwin(twin);
         device.setTags(device.getTwinObject().getTagsMap());
         device.setDesiredProperties(device.getTwinObject().getDesiredPropertyMap());
         device.setReportedProperties(device.getTwinObject().getReportedPropertyMap());
     }
 
+    private synchronized String nextRequestId()
+    {
+        return String.valueOf(requestId++);
+    }
+
     /**
      * This method updates device twin for the specified device.
      *
@@ -163,7 +220,7 @@ public class DeviceTwin
 
         **Codes_SRS_DEVICETWIN_25_020: [** The function shall verify the response status and throw proper Exception **]**
          */
-        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.PATCH, twinJson.getBytes(StandardCharsets.UTF_8), String.valueOf(requestId++));
+        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.PATCH, twinJson.getBytes(StandardCharsets.UTF_8), nextRequestId());
     }
 
     /**
@@ -224,7 +281,7 @@ public class DeviceTwin
         **Codes_SRS_DEVICETWIN_25_028: [** The function shall verify the response status and throw proper Exception **]**
          */
        /*
-        HttpResponse response = this.processHttpTwinRequest(url, HttpMethod.PATCH, desiredJson.getBytes(), String.valueOf(requestId++));
+        HttpResponse response = this.processHttpTwinRequest(url, HttpMethod.PATCH, desiredJson.getBytes(), nextRequestId());
         */
     }
 
@@ -44,6 +44,7 @@ public class AmqpFeedbackReceivedHandler extends BaseHandler
 
     protected final IotHubServiceClientProtocol iotHubServiceClientProtocol;
     protected final String webSocketHostName;
+    private int webSocketMaxFrameSize = WebSocketImpl.DEFAULT_MAX_FRAME_SIZE;
 
     private AmqpFeedbackReceivedEvent amqpFeedbackReceivedEvent;
 
@@ -56,6 +57,21 @@ public class AmqpFeedbackReceivedHandler extends BaseHandler
      * @param amqpFeedbackReceivedEvent callback to delegate the received message to the user API
      */
     public AmqpFeedbackReceivedHandler(String hostName, String userName, String sasToken, IotHubServiceClientProtocol iotHubServiceClientProtocol, AmqpFeedbackReceivedEvent amqpFeedbackReceivedEvent)
+    {
+        this(hostName, userName, sasToken, iotHubServiceClientProtocol, amqpFeedbackReceivedEvent, true);
+    }
+
+    /**
+     * Constructor for the handlers which grant the link credit themselves
+     * instead of topping it up after every delivery
+     * @param hostName The address string of the service (example: AAA.BBB.CCC)
+     * @param userName The username string to use SASL authentication (example: user@sas.service)
+     * @param sasToken The SAS token string
+     * @param amqpFeedbackReceivedEvent callback to delegate the received message to the user API
+     * @param addFlowController true to add the default FlowController (Proton) object
+     */
+    protected AmqpFeedbackReceivedHandler(String hostName, String userName, String sasToken, IotHubServiceClientProtocol iotHubServiceClientProtocol,
+                                          AmqpFeedbackReceivedEvent amqpFeedbackReceivedEvent, boolean addFlowController)
     {
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_12_001: [The constructor shall copy all input parameters to private member variables for event processing]
         this.iotHubServiceClientProtocol = iotHubServiceClientProtocol;
@@ -79,7 +95,10 @@ public class AmqpFeedbackReceivedHandler extends BaseHandler
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_12_002: [The constructor shall initialize a new Handshaker (Proton) object to handle communication handshake]
         add(new Handshaker());
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_12_003: [The constructor shall initialize a new FlowController (Proton) object to handle communication handshake]
-        add(new FlowController());
+        if (addFlowController)
+        {
+            add(new FlowController());
+        }
     }
 
     /**
@@ -143,12 +162,13 @@ public class AmqpFeedbackReceivedHandler extends BaseHandler
         {
             if (this.iotHubServiceClientProtocol == IotHubServiceClientProtocol.AMQPS_WS)
             {
-                WebSocketImpl webSocket = new WebSocketImpl();
+                // Codes_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_12_018: [The event handler shall initialize WebSocket with the configured maximum frame size if the protocol is AMQP_WS]
+                WebSocketImpl webSocket = new WebSocketImpl(this.webSocketMaxFrameSize);
                 webSocket.configure(this.webSocketHostName, WEBSOCKET_PATH, 0, WEBSOCKET_SUB_PROTOCOL, null, null);
                 ((TransportInternal)transport).addTransportLayer(webSocket);
             }
             Sasl sasl = transport.sasl();
-            sasl.plain(this.userName, this.sasToken);
+            sasl.plain(this.userName, getSasToken());
 
             SslDomain domain = makeDomain(SslDomain.Mode.CLIENT);
             domain.setPeerAuthentication(SslDomain.VerifyMode.ANONYMOUS_PEER);
@@ -156,6 +176,25 @@ public class AmqpFeedbackReceivedHandler extends BaseHandler
         }
     }
 
+    /**
+     * Get the SAS token to authenticate a new connection with
+     * @return The SAS token string
+     */
+    protected String getSasToken()
+    {
+        return this.sasToken;
+    }
+
+    /**
+     * Set the largest WebSocket frame, header included, of the connections bound after the call
+     * @param webSocketMaxFrameSize The maximum frame size in bytes
+     */
+    public void setWebSocketMaxFrameSize(int webSocketMaxFrameSize)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_21_018: [The function shall set the maximum frame size of the WebSocket layer added by the connection bound event]
+        this.webSocketMaxFrameSize = webSocketMaxFrameSize;
+    }
+
     @Override
     public void onConnectionInit(Event event)
     {
@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.FeedbackBatch;
+import com.microsoft.azure.sdk.iot.service.FeedbackBatchCallback;
+import com.microsoft.azure.sdk.iot.service.FeedbackBatchMessage;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Rejected;
+import org.apache.qpid.proton.amqp.messaging.Released;
+import org.apache.qpid.proton.amqp.messaging.Section;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.apache.qpid.proton.reactor.Task;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Long-lived receiver of feedback batches.
+ * <p>
+ * Unlike {@link AmqpReceive}, which runs a new reactor and opens a new connection
+ * for every call, this receiver keeps one connection, session and receiver link
+ * open on a dedicated reactor thread, and pushes every received feedback batch
+ * to a callback. The link is granted a fixed prefetch credit which is topped up
+ * once half of it is used, so the flow frames do not grow with the number of
+ * batches. Each delivery is settled as soon as its callback returns; Proton
+ * sends one disposition frame per delivery, so settling them in groups would
+ * only delay the acknowledgements. If the connection is lost, the receiver
+ * reconnects, and the IoT Hub delivers again the batches which were not
+ * settled yet. Each connection authenticates with the SAS token which the
+ * IotHubServiceSasTokenProvider holds for the connection string at that time,
+ * so a receiver which reconnects after its first token expired still connects.
+ * <p>
+ * The callback runs on the reactor thread, and should hand long work over to
+ * another thread.
+ */
+public class AmqpPersistentReceive extends AmqpFeedbackReceivedHandler
+{
+    private static final int RECONNECT_DELAY_MILLIS = 1000;
+    private static final int MAX_RECONNECT_DELAY_MILLIS = 30000;
+    private static final long CLOSE_TIMEOUT_MILLIS = 10000;
+    private static final int INITIAL_RECEIVE_BUFFER_SIZE = 1024;
+
+    private final IotHubConnectionString iotHubConnectionString;
+    private final FeedbackBatchCallback feedbackBatchCallback;
+    private final int prefetchCredit;
+
+    private volatile boolean isOpen = false;
+    private Reactor reactor;
+    private Thread reactorThread;
+
+    // only used on the reactor thread
+    private Connection connection;
+    private Task reconnectTask;
+    private int reconnectDelayMillis = RECONNECT_DELAY_MILLIS;
+    private byte[] receiveBuffer = new byte[INITIAL_RECEIVE_BUFFER_SIZE];
+
+    /**
+     * Constructor to set up connection parameters. The receiver outlives any single
+     * SAS token, so it keeps the connection string and takes a valid token from
+     * the IotHubServiceSasTokenProvider each time it connects.
+     *
+     * @param iotHubConnectionString The connection string of the IoT Hub
+     * @param iotHubServiceClientProtocol The protocol to connect with
+     * @param feedbackBatchCallback The callback to push the received feedback batches to
+     * @param prefetchCredit The number of feedback messages the IoT Hub may send ahead of the callback
+     */
+    public AmqpPersistentReceive(IotHubConnectionString iotHubConnectionString, IotHubServiceClientProtocol iotHubServiceClientProtocol,
+                                 FeedbackBatchCallback feedbackBatchCallback, int prefetchCredit)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_001: [The constructor shall set up the connection parameters the same way as the AmqpFeedbackReceivedHandler,
+        // without its FlowController, with the host name and user name of the connection string and a SAS token from the IotHubServiceSasTokenProvider]
+        super(requireConnectionString(iotHubConnectionString).getHostName(), iotHubConnectionString.getUserString(),
+                IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString), iotHubServiceClientProtocol, null, false);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_002: [The constructor shall throw IllegalArgumentException if the connection string, the protocol
+        // or the callback is null, or the prefetch credit is not positive]
+        if (iotHubServiceClientProtocol == null)
+        {
+            throw new IllegalArgumentException("iotHubServiceClientProtocol cannot be null");
+        }
+        if (feedbackBatchCallback == null)
+        {
+            throw new IllegalArgumentException("feedbackBatchCallback cannot be null");
+        }
+        if (prefetchCredit <= 0)
+        {
+            throw new IllegalArgumentException("prefetchCredit must be positive");
+        }
+
+        this.iotHubConnectionString = iotHubConnectionString;
+        this.feedbackBatchCallback = feedbackBatchCallback;
+        this.prefetchCredit = prefetchCredit;
+    }
+
+    private static IotHubConnectionString requireConnectionString(IotHubConnectionString iotHubConnectionString)
+    {
+        if (iotHubConnectionString == null)
+        {
+            throw new IllegalArgumentException("iotHubConnectionString cannot be null");
+        }
+        return iotHubConnectionString;
+    }
+
+    /**
+     * Start the reactor thread which connects to the IoT Hub and keeps the connection open
+     * @throws IOException This exception is thrown if the Proton reactor cannot be created
+     */
+    public synchronized void open() throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_003: [If the receiver is already open, the function shall do nothing]
+        if (this.isOpen)
+        {
+            return;
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_023: [If the reactor thread of the previous open is still running, the function shall throw an IOException,
+        // because both reactors would share the connection state of this object]
+        if (this.reactorThread != null && this.reactorThread.isAlive())
+        {
+            throw new IOException("The AMQP receiver is still closing its previous connection");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_004: [The function shall create a Proton reactor handled by this object and run it on a new daemon thread]
+        final Reactor newReactor = Proton.reactor(this);
+        this.reactor = newReactor;
+        this.isOpen = true;
+        this.reactorThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    newReactor.run();
+                }
+                finally
+                {
+                    // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_005: [When the reactor stops, the reactor shall be freed and, if it is still the reactor
+                    // of this receiver, the receiver shall be closed]
+                    synchronized (AmqpPersistentReceive.this)
+                    {
+                        if (reactor == newReactor)
+                        {
+                            isOpen = false;
+                        }
+                    }
+                    newReactor.free();
+                }
+            }
+        }, "azure-iot-sdk-AmqpPersistentReceive");
+        this.reactorThread.setDaemon(true);
+        this.reactorThread.start();
+    }
+
+    /**
+     * Close the connection and stop the reactor thread
+     */
+    public void close()
+    {
+        synchronized (this)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_006: [If the receiver is not open, the function shall do nothing]
+            if (!this.isOpen)
+            {
+                return;
+            }
+            this.isOpen = false;
+
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_007: [The function shall wake the reactor up to close the connection, and wait for the reactor thread to end]
+            this.reactor.wakeup();
+        }
+
+        try
+        {
+            this.reactorThread.join(CLOSE_TIMEOUT_MILLIS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get the SAS token to authenticate a new connection with
+     * @return The SAS token string
+     */
+    @Override
+    protected String getSasToken()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_024: [The function shall return the SAS token of the connection string from the IotHubServiceSasTokenProvider,
+        // so every connection and reconnection authenticates with a token which did not expire]
+        return IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
+    }
+
+    /**
+     * Event handler for the reactor init event
+     * @param event The proton event object
+     */
+    @Override
+    public void onReactorInit(Event event)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_008: [The event handler shall open a connection handled by this object]
+        this.connection = event.getReactor().connection(this);
+    }
+
+    /**
+     * Event handler for the reactor quiesced event, raised every time the reactor
+     * runs out of events, including after it is woken up
+     * @param event The proton event object
+     */
+    @Override
+    public void onReactorQuiesced(Event event)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_010: [If the receiver was closed, the event handler shall cancel any reconnection and close the connection, which lets the reactor stop]
+        if (!this.isOpen)
+        {
+            if (this.reconnectTask != null)
+            {
+                this.reconnectTask.cancel();
+                this.reconnectTask = null;
+            }
+            if (this.connection != null)
+            {
+                this.connection.close();
+                this.connection = null;
+            }
+        }
+    }
+
+    /**
+     * Event handler for the link local open event
+     * @param event The proton event object
+     */
+    @Override
+    public void onLinkLocalOpen(Event event)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_011: [The event handler shall grant the prefetch credit to the Receiver link]
+        Link link = event.getLink();
+        if (link instanceof Receiver)
+        {
+            ((Receiver) link).flow(this.prefetchCredit);
+        }
+    }
+
+    /**
+     * Event handler for the link remote open event
+     * @param event The proton event object
+     */
+    @Override
+    public void onLinkRemoteOpen(Event event)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_012: [The event handler shall reset the reconnection delay]
+        this.reconnectDelayMillis = RECONNECT_DELAY_MILLIS;
+    }
+
+    /**
+     * Event handler for the delivery event. Pushes the feedback batch to the
+     * callback, and keeps the link open.
+     * @param event The proton event object
+     */
+    @Override
+    public void onDelivery(Event event)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_013: [The event handler shall ignore the delivery until it is fully received]
+        Receiver receiver = (Receiver) event.getLink();
+        Delivery delivery = event.getDelivery();
+        if (delivery == null || !delivery.isReadable() || delivery.isPartial())
+        {
+            return;
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_014: [The event handler shall read the delivery into a reused buffer and decode the Message (Proton) object from it]
+        int size = delivery.pending();
+        if (size > this.receiveBuffer.length)
+        {
+            this.receiveBuffer = new byte[Math.max(size, this.receiveBuffer.length * 2)];
+        }
+        int read = receiver.recv(this.receiveBuffer, 0, size);
+        receiver.advance();
+
+        DeliveryState outcome;
+        FeedbackBatch feedbackBatch = null;
+        try
+        {
+            org.apache.qpid.proton.message.Message message = Proton.message();
+            message.decode(this.receiveBuffer, 0, read);
+            feedbackBatch = FeedbackBatchMessage.parse(bodyToString(message.getBody()));
+        }
+        catch (RuntimeException e)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_015: [If the message cannot be parsed to a FeedbackBatch, the event handler shall reject it]
+            feedbackBatch = null;
+        }
+
+        if (feedbackBatch == null)
+        {
+            outcome = new Rejected();
+        }
+        else
+        {
+            try
+            {
+                // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_016: [The event handler shall push the FeedbackBatch to the callback and accept it]
+                this.feedbackBatchCallback.onFeedbackBatchReceived(feedbackBatch);
+                outcome = Accepted.getInstance();
+            }
+            catch (RuntimeException e)
+            {
+                // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_017: [If the callback throws, the event handler shall release the batch so that the IoT Hub delivers it again]
+                outcome = Released.getInstance();
+            }
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_018: [The event handler shall settle the delivery with its outcome]
+        delivery.disposition(outcome);
+        delivery.settle();
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_019: [The event handler shall top the link credit up to the prefetch credit once half of it is used]
+        int credit = receiver.getCredit();
+        if (credit <= this.prefetchCredit / 2)
+        {
+            receiver.flow(this.prefetchCredit - credit);
+        }
+    }
+
+    /**
+     * Event handler for the transport error event. This triggers reconnection attempts until successful.
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onTransportError(Event event)
+    {
+        connectionLost(event);
+    }
+
+    /**
+     * Event handler for the connection remote close event
+     * @param event The proton event object
+     */
+    @Override
+    public void onConnectionRemoteClose(Event event)
+    {
+        connectionLost(event);
+    }
+
+    /**
+     * Event handler for the session remote close event
+     * @param event The proton event object
+     */
+    @Override
+    public void onSessionRemoteClose(Event event)
+    {
+        connectionLost(event);
+    }
+
+    /**
+     * Event handler for the link remote close event
+     * @param event The proton event object
+     */
+    @Override
+    public void onLinkRemoteClose(Event event)
+    {
+        connectionLost(event);
+    }
+
+    /**
+     * Event handler for the timer task event, which reconnects to the IoT Hub
+     * @param event The proton event object
+     */
+    @Override
+    public void onTimerTask(Event event)
+    {
+        this.reconnectTask = null;
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_022: [If the receiver is still open and not connected, the event handler shall open a new connection handled by this object]
+        if (this.isOpen && this.connection == null)
+        {
+            this.connection = event.getReactor().connection(this);
+        }
+    }
+
+    /**
+     * Drop the current connection and schedule a reconnection
+     */
+    private void connectionLost(Event event)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_020: [If the event is about the current connection, the event handler shall close it]
+        if (this.connection == null || event.getConnection() != this.connection)
+        {
+            return;
+        }
+
+        this.connection.close();
+        this.connection = null;
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_021: [If the receiver is still open, the event handler shall schedule a reconnection,
+        // doubling the delay after each failed attempt up to a maximum]
+        if (this.isOpen && this.reconnectTask == null)
+        {
+            this.reconnectTask = event.getReactor().schedule(this.reconnectDelayMillis, this);
+            this.reconnectDelayMillis = Math.min(this.reconnectDelayMillis * 2, MAX_RECONNECT_DELAY_MILLIS);
+        }
+    }
+
+    private static String bodyToString(Section body)
+    {
+        if (body instanceof Data)
+        {
+            Binary binary = ((Data) body).getValue();
+            return new String(binary.getArray(), binary.getArrayOffset(), binary.getLength(), StandardCharsets.UTF_8);
+        }
+        if (body instanceof AmqpValue)
+        {
+            return String.valueOf(((AmqpValue) body).getValue());
+        }
+
+        return null;
+    }
+}
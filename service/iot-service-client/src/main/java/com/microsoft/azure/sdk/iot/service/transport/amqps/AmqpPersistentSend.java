@@ -0,0 +1,646 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.Message;
+import com.microsoft.azure.sdk.iot.service.Tools;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.apache.qpid.proton.reactor.Task;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Long-lived sender of cloud to device messages.
+ * <p>
+ * Unlike {@link AmqpSend}, which runs a new reactor and opens a new connection
+ * for every message, this sender keeps one connection, session and sender link
+ * open on a dedicated reactor thread. Messages are queued by the callers and
+ * sent as long as the IoT Hub grants link credit, so many of them can wait for
+ * their acknowledgement at the same time. Each message gets a future that
+ * completes when the IoT Hub settles its delivery. If the connection is lost,
+ * the messages waiting for an acknowledgement fail with an IOException, and the
+ * sender reconnects and keeps sending the queued messages.
+ * <p>
+ * The queue is bounded, and a message which is not acknowledged within
+ * {@link #SEND_TIMEOUT_MILLIS} fails with a TimeoutException, so callers do not
+ * wait forever while the sender cannot reconnect.
+ * <p>
+ * Each connection authenticates with the SAS token which the
+ * IotHubServiceSasTokenProvider holds for the connection string at that time,
+ * so a sender which reconnects after its first token expired still connects.
+ * <p>
+ * The Proton objects are only used on the reactor thread. Callers only touch
+ * the queue and wake the reactor up.
+ */
+public class AmqpPersistentSend extends AmqpSendHandler
+{
+    private static final int RECONNECT_DELAY_MILLIS = 1000;
+    private static final int MAX_RECONNECT_DELAY_MILLIS = 30000;
+    private static final long CLOSE_TIMEOUT_MILLIS = 10000;
+    private static final int INITIAL_ENCODE_BUFFER_SIZE = 1024;
+    private static final int MAX_QUEUED_MESSAGES = 10000;
+    /** Time a message can wait to be sent and acknowledged before its future fails. */
+    public static final long SEND_TIMEOUT_MILLIS = 60000;
+    private static final int EXPIRY_CHECK_MILLIS = 1000;
+
+    private static final class PendingMessage
+    {
+        private final org.apache.qpid.proton.message.Message protonMessage;
+        private final CompletableFuture<Void> future;
+        private final long deadlineNanos;
+
+        private PendingMessage(org.apache.qpid.proton.message.Message protonMessage, CompletableFuture<Void> future, long deadlineNanos)
+        {
+            this.protonMessage = protonMessage;
+            this.future = future;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    private final BlockingQueue<PendingMessage> pendingMessages = new LinkedBlockingQueue<>(MAX_QUEUED_MESSAGES);
+    // future of each message waiting for its acknowledgement, with its deadline, in the order the messages were sent;
+    // every message gets the same timeout when it is queued, so this is also the order of their deadlines
+    private final Map<CompletableFuture<Void>, Long> inFlightMessages = Collections.synchronizedMap(new LinkedHashMap<CompletableFuture<Void>, Long>());
+
+    private final IotHubConnectionString iotHubConnectionString;
+    private volatile boolean isOpen = false;
+    private Reactor reactor;
+    private Thread reactorThread;
+
+    // only used on the reactor thread
+    private Connection connection;
+    private Sender sender;
+    private Task reconnectTask;
+    private Task expiryTask;
+    private int reconnectDelayMillis = RECONNECT_DELAY_MILLIS;
+    private byte[] encodeBuffer = new byte[INITIAL_ENCODE_BUFFER_SIZE];
+    private long nextTag = 0;
+
+    /**
+     * Constructor to set up connection parameters. The sender outlives any single
+     * SAS token, so it keeps the connection string and takes a valid token from
+     * the IotHubServiceSasTokenProvider each time it connects.
+     *
+     * @param iotHubConnectionString The connection string of the IoT Hub
+     * @param iotHubServiceClientProtocol The protocol to connect with
+     */
+    public AmqpPersistentSend(IotHubConnectionString iotHubConnectionString, IotHubServiceClientProtocol iotHubServiceClientProtocol)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_001: [The constructor shall throw IllegalArgumentException if the connection string or the protocol is null]
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_002: [The constructor shall set up the connection parameters the same way as the AmqpSendHandler,
+        // with the host name and user name of the connection string and a SAS token from the IotHubServiceSasTokenProvider]
+        super(requireConnectionString(iotHubConnectionString).getHostName(), iotHubConnectionString.getUserString(),
+                IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString), iotHubServiceClientProtocol);
+        this.iotHubConnectionString = iotHubConnectionString;
+    }
+
+    private static IotHubConnectionString requireConnectionString(IotHubConnectionString iotHubConnectionString)
+    {
+        if (iotHubConnectionString == null)
+        {
+            throw new IllegalArgumentException("iotHubConnectionString can not be null");
+        }
+        return iotHubConnectionString;
+    }
+
+    /**
+     * Start the reactor thread which connects to the IoT Hub and keeps the connection open
+     * @throws IOException This exception is thrown if the Proton reactor cannot be created
+     */
+    public synchronized void open() throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_003: [If the sender is already open, the function shall do nothing]
+        if (this.isOpen)
+        {
+            return;
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_027: [If the reactor thread of the previous open is still running, the function shall throw an IOException,
+        // because both reactors would share the connection state of this object]
+        if (this.reactorThread != null && this.reactorThread.isAlive())
+        {
+            throw new IOException("The AMQP sender is still closing its previous connection");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_004: [The function shall create a Proton reactor handled by this object and run it on a new daemon thread]
+        final Reactor newReactor = Proton.reactor(this);
+        this.reactor = newReactor;
+        this.isOpen = true;
+        this.reactorThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    newReactor.run();
+                }
+                finally
+                {
+                    // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_005: [When the reactor stops, the reactor shall be freed and, if it is still the reactor
+                    // of this sender, the sender shall be closed and all the messages waiting to be sent or acknowledged shall fail with an IOException]
+                    boolean isCurrentReactor;
+                    synchronized (AmqpPersistentSend.this)
+                    {
+                        isCurrentReactor = (reactor == newReactor);
+                        if (isCurrentReactor)
+                        {
+                            isOpen = false;
+                        }
+                    }
+                    newReactor.free();
+                    if (isCurrentReactor)
+                    {
+                        failAll(new IOException("The AMQP sender stopped"));
+                    }
+                }
+            }
+        }, "azure-iot-sdk-AmqpPersistentSend");
+        this.reactorThread.setDaemon(true);
+        this.reactorThread.start();
+    }
+
+    /**
+     * Close the connection and stop the reactor thread. The messages which were
+     * not acknowledged yet fail with an IOException.
+     */
+    public void close()
+    {
+        synchronized (this)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_006: [If the sender is not open, the function shall do nothing]
+            if (!this.isOpen)
+            {
+                return;
+            }
+            this.isOpen = false;
+
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_007: [The function shall wake the reactor up to close the connection, and wait for the reactor thread to end]
+            this.reactor.wakeup();
+        }
+
+        try
+        {
+            this.reactorThread.join(CLOSE_TIMEOUT_MILLIS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_008: [The function shall fail all the messages waiting to be sent or acknowledged with an IOException]
+        failAll(new IOException("The AMQP sender was closed"));
+    }
+
+    /**
+     * Queue a message to the device and wake the reactor up to send it
+     * @param deviceId The device name string
+     * @param message The message to be sent
+     * @return The future which completes when the IoT Hub acknowledges the message
+     */
+    public CompletableFuture<Void> sendAsync(String deviceId, Message message)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_009: [The function shall throw IllegalArgumentException if the deviceId is null or empty, or the message is null]
+        if (Tools.isNullOrEmpty(deviceId))
+        {
+            throw new IllegalArgumentException("deviceId can not be null or empty");
+        }
+        if (message == null)
+        {
+            throw new IllegalArgumentException("message can not be null");
+        }
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        org.apache.qpid.proton.message.Message protonMessage = buildProtonMessage(deviceId, message);
+        synchronized (this)
+        {
+            if (!this.isOpen)
+            {
+                // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_010: [If the sender is not open, the function shall return a future failed with an IOException]
+                future.completeExceptionally(new IOException("AMQP sender is not open. call open before send"));
+                return future;
+            }
+
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_011: [The function shall queue the Proton message with a new future and the deadline
+            // of the message, and wake the reactor up]
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_028: [If the queue is full, the function shall return a future failed with an IOException]
+            long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SEND_TIMEOUT_MILLIS);
+            if (!this.pendingMessages.offer(new PendingMessage(protonMessage, future, deadlineNanos)))
+            {
+                future.completeExceptionally(new IOException("Too many messages are waiting to be sent"));
+                return future;
+            }
+            this.reactor.wakeup();
+        }
+
+        return future;
+    }
+
+    /**
+     * Get the number of messages waiting to be sent or acknowledged
+     * @return The number of messages which were not acknowledged yet
+     */
+    public int getPendingCount()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_012: [The function shall return the number of messages waiting to be sent plus the number of messages waiting to be acknowledged]
+        return this.pendingMessages.size() + this.inFlightMessages.size();
+    }
+
+    /**
+     * Get the SAS token to authenticate a new connection with
+     * @return The SAS token string
+     */
+    @Override
+    protected String getSasToken()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_033: [The function shall return the SAS token of the connection string from the IotHubServiceSasTokenProvider,
+        // so every connection and reconnection authenticates with a token which did not expire]
+        return IotHubServiceSasTokenProvider.getSasToken(this.iotHubConnectionString);
+    }
+
+    /**
+     * Event handler for the reactor init event
+     * @param event The proton event object
+     */
+    @Override
+    public void onReactorInit(Event event)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_013: [The event handler shall open a connection handled by this object]
+        this.connection = event.getReactor().connection(this);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_029: [The event handler shall schedule the check of the message deadlines]
+        this.expiryTask = event.getReactor().schedule(EXPIRY_CHECK_MILLIS, this);
+    }
+
+    /**
+     * Event handler for the reactor quiesced event, raised every time the reactor
+     * runs out of events, including after it is woken up
+     * @param event The proton event object
+     */
+    @Override
+    public void onReactorQuiesced(Event event)
+    {
+        if (this.isOpen)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_014: [If the sender is open, the event handler shall send the queued messages]
+            sendPendingMessages();
+        }
+        else
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_015: [If the sender was closed, the event handler shall cancel any reconnection and deadline check,
+            // and close the connection, which lets the reactor stop]
+            if (this.reconnectTask != null)
+            {
+                this.reconnectTask.cancel();
+                this.reconnectTask = null;
+            }
+            if (this.expiryTask != null)
+            {
+                this.expiryTask.cancel();
+                this.expiryTask = null;
+            }
+            if (this.connection != null)
+            {
+                this.connection.close();
+                this.connection = null;
+                this.sender = null;
+            }
+        }
+    }
+
+    /**
+     * Event handler for the link init event
+     * @param event The proton event object
+     */
+    @Override
+    public void onLinkInit(Event event)
+    {
+        super.onLinkInit(event);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_016: [The event handler shall keep the Sender link to send the messages on it]
+        Link link = event.getLink();
+        if (link instanceof Sender)
+        {
+            this.sender = (Sender) link;
+        }
+    }
+
+    /**
+     * Event handler for the link remote open event
+     * @param event The proton event object
+     */
+    @Override
+    public void onLinkRemoteOpen(Event event)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_017: [The event handler shall reset the reconnection delay]
+        this.reconnectDelayMillis = RECONNECT_DELAY_MILLIS;
+    }
+
+    /**
+     * Event handler for the link flow event
+     * @param event The proton event object
+     */
+    @Override
+    public void onLinkFlow(Event event)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_018: [The event handler shall send the queued messages]
+        sendPendingMessages();
+    }
+
+    /**
+     * Event handler for the delivery event. Completes the future of the
+     * acknowledged message, and keeps the link open.
+     * @param event The proton event object
+     */
+    @Override
+    public void onDelivery(Event event)
+    {
+        Delivery delivery = event.getDelivery();
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_019: [The event handler shall ignore the delivery until the IoT Hub updates its remote state or settles it]
+        if (delivery == null || (delivery.getRemoteState() == null && !delivery.remotelySettled()))
+        {
+            return;
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_020: [The event handler shall verify the Amqp response and settle the delivery]
+        IotHubException exception = new AmqpResponseVerification(delivery.getRemoteState()).getException();
+        Object context = delivery.getContext();
+        delivery.settle();
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_021: [The event handler shall complete the future of the message sent with this delivery,
+        // exceptionally with the exception from the response if it is not null]
+        if (context instanceof CompletableFuture && this.inFlightMessages.remove(context) != null)
+        {
+            @SuppressWarnings("unchecked")
+            CompletableFuture<Void> future = (CompletableFuture<Void>) context;
+            if (exception == null)
+            {
+                future.complete(null);
+            }
+            else
+            {
+                future.completeExceptionally(exception);
+            }
+        }
+    }
+
+    /**
+     * Event handler for the transport error event. This triggers reconnection attempts until successful.
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onTransportError(Event event)
+    {
+        super.onTransportError(event);
+        connectionLost(event);
+    }
+
+    /**
+     * Event handler for the connection remote close event
+     * @param event The proton event object
+     */
+    @Override
+    public void onConnectionRemoteClose(Event event)
+    {
+        connectionLost(event);
+    }
+
+    /**
+     * Event handler for the session remote close event
+     * @param event The proton event object
+     */
+    @Override
+    public void onSessionRemoteClose(Event event)
+    {
+        connectionLost(event);
+    }
+
+    /**
+     * Event handler for the link remote close event
+     * @param event The proton event object
+     */
+    @Override
+    public void onLinkRemoteClose(Event event)
+    {
+        connectionLost(event);
+    }
+
+    /**
+     * Event handler for the timer task event, which either checks the message
+     * deadlines or reconnects to the IoT Hub
+     * @param event The proton event object
+     */
+    @Override
+    public void onTimerTask(Event event)
+    {
+        if (this.expiryTask != null && event.getTask() == this.expiryTask)
+        {
+            this.expiryTask = null;
+
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_030: [If the sender is still open, the event handler shall fail the messages which passed
+            // their deadline with a TimeoutException, and schedule the next check]
+            if (this.isOpen)
+            {
+                expireMessages(System.nanoTime());
+                this.expiryTask = event.getReactor().schedule(EXPIRY_CHECK_MILLIS, this);
+            }
+            return;
+        }
+
+        this.reconnectTask = null;
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_024: [If the sender is still open and not connected, the event handler shall open a new connection handled by this object]
+        if (this.isOpen && this.connection == null)
+        {
+            this.connection = event.getReactor().connection(this);
+        }
+    }
+
+    /**
+     * Send the queued messages while the IoT Hub grants link credit
+     */
+    private void sendPendingMessages()
+    {
+        if (this.sender == null)
+        {
+            return;
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_025: [The function shall send queued messages, oldest first, while the Sender link has credit,
+        // without waiting for the previous messages to be acknowledged]
+        while (this.sender.getCredit() > 0)
+        {
+            PendingMessage pendingMessage = this.pendingMessages.poll();
+            if (pendingMessage == null)
+            {
+                break;
+            }
+
+            int length;
+            while (true)
+            {
+                try
+                {
+                    length = pendingMessage.protonMessage.encode(this.encodeBuffer, 0, this.encodeBuffer.length);
+                    break;
+                }
+                catch (BufferOverflowException e)
+                {
+                    this.encodeBuffer = new byte[this.encodeBuffer.length * 2];
+                }
+            }
+
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_026: [The function shall send each message with a unique delivery tag, and keep its future on the delivery]
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_031: [The delivery tag shall be the big-endian binary value of a counter, without its leading zero bytes]
+            Delivery delivery = this.sender.delivery(toDeliveryTag(this.nextTag++));
+            delivery.setContext(pendingMessage.future);
+            this.inFlightMessages.put(pendingMessage.future, pendingMessage.deadlineNanos);
+            this.sender.send(this.encodeBuffer, 0, length);
+            this.sender.advance();
+        }
+    }
+
+    /**
+     * Drop the current connection, fail the messages waiting for their
+     * acknowledgement, and schedule a reconnection
+     */
+    private void connectionLost(Event event)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_022: [If the event is about the current connection, the event handler shall close it
+        // and fail the messages waiting to be acknowledged with an IOException]
+        if (this.connection == null || event.getConnection() != this.connection)
+        {
+            return;
+        }
+
+        this.connection.close();
+        this.connection = null;
+        this.sender = null;
+        failInFlight(new IOException("Connection to the IoT Hub was lost before the message was acknowledged"));
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_023: [If the sender is still open, the event handler shall schedule a reconnection,
+        // doubling the delay after each failed attempt up to a maximum]
+        if (this.isOpen && this.reconnectTask == null)
+        {
+            this.reconnectTask = event.getReactor().schedule(this.reconnectDelayMillis, this);
+            this.reconnectDelayMillis = Math.min(this.reconnectDelayMillis * 2, MAX_RECONNECT_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Fail the messages, queued or waiting for their acknowledgement, which passed their deadline
+     * @param nowNanos The current value of System.nanoTime
+     */
+    private void expireMessages(long nowNanos)
+    {
+        TimeoutException exception = new TimeoutException("The IoT Hub did not acknowledge the message within " + SEND_TIMEOUT_MILLIS + " milliseconds");
+
+        // the queue is in deadline order, so only its head can be expired
+        PendingMessage pendingMessage;
+        while ((pendingMessage = this.pendingMessages.peek()) != null && nowNanos - pendingMessage.deadlineNanos >= 0)
+        {
+            if (this.pendingMessages.remove(pendingMessage))
+            {
+                pendingMessage.future.completeExceptionally(exception);
+            }
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_032: [The function shall check the messages waiting for their acknowledgement
+        // in the order they were sent, and stop at the first one which did not pass its deadline]
+        List<CompletableFuture<Void>> expired = new ArrayList<>();
+        synchronized (this.inFlightMessages)
+        {
+            Iterator<Map.Entry<CompletableFuture<Void>, Long>> inFlight = this.inFlightMessages.entrySet().iterator();
+            while (inFlight.hasNext())
+            {
+                Map.Entry<CompletableFuture<Void>, Long> entry = inFlight.next();
+                if (nowNanos - entry.getValue() < 0)
+                {
+                    break;
+                }
+                expired.add(entry.getKey());
+                inFlight.remove();
+            }
+        }
+
+        for (CompletableFuture<Void> future : expired)
+        {
+            future.completeExceptionally(exception);
+        }
+    }
+
+    private void failInFlight(IOException exception)
+    {
+        List<CompletableFuture<Void>> futures;
+        synchronized (this.inFlightMessages)
+        {
+            futures = new ArrayList<>(this.inFlightMessages.keySet());
+            this.inFlightMessages.clear();
+        }
+
+        for (CompletableFuture<Void> future : futures)
+        {
+            future.completeExceptionally(exception);
+        }
+    }
+
+    /**
+     * Encode a delivery tag counter as the big-endian binary value of the
+     * counter, without its leading zero bytes
+     * @param tag The value of the counter
+     * @return The delivery tag
+     */
+    private static byte[] toDeliveryTag(long tag)
+    {
+        int length = 1;
+        for (long rest = tag >>> 8; rest != 0; rest >>>= 8)
+        {
+            length++;
+        }
+
+        byte[] deliveryTag = new byte[length];
+        for (int i = length - 1; i >= 0; i--)
+        {
+            deliveryTag[i] = (byte) tag;
+            tag >>>= 8;
+        }
+
+        return deliveryTag;
+    }
+
+    private void failAll(IOException exception)
+    {
+        failInFlight(exception);
+        PendingMessage pendingMessage;
+        while ((pendingMessage = this.pendingMessages.poll()) != null)
+        {
+            pendingMessage.future.completeExceptionally(exception);
+        }
+    }
+}
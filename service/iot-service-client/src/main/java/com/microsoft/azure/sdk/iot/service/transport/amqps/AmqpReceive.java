@@ -8,6 +8,7 @@ package com.microsoft.azure.sdk.iot.service.transport.amqps;
 import com.microsoft.azure.sdk.iot.service.FeedbackBatch;
 import com.microsoft.azure.sdk.iot.service.FeedbackBatchMessage;
 import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.deps.ws.impl.WebSocketImpl;
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.engine.BaseHandler;
 import org.apache.qpid.proton.engine.Event;
@@ -27,6 +28,7 @@ public class AmqpReceive extends BaseHandler implements AmqpFeedbackReceivedEven
     private final String sasToken;
     private AmqpFeedbackReceivedHandler amqpReceiveHandler;
     private IotHubServiceClientProtocol iotHubServiceClientProtocol;
+    private int webSocketMaxFrameSize = WebSocketImpl.DEFAULT_MAX_FRAME_SIZE;
     private Reactor reactor = null;
     private FeedbackBatch feedbackBatch;
     private static final int REACTOR_TIMEOUT = 3141; // reactor timeout in milliseconds
@@ -70,6 +72,18 @@ public class AmqpReceive extends BaseHandler implements AmqpFeedbackReceivedEven
     {
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_12_003: [The function shall create an AmqpsReceiveHandler object to handle reactor events]
         amqpReceiveHandler = new AmqpFeedbackReceivedHandler(this.hostName, this.userName, this.sasToken, this.iotHubServiceClientProtocol, this);
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_21_011: [The function shall set the configured WebSocket maximum frame size on the created AmqpsReceiveHandler object]
+        amqpReceiveHandler.setWebSocketMaxFrameSize(this.webSocketMaxFrameSize);
+    }
+
+    /**
+     * Set the largest WebSocket frame, header included, used over AMQPS_WS from the next open() on
+     * @param webSocketMaxFrameSize The maximum frame size in bytes
+     */
+    public void setWebSocketMaxFrameSize(int webSocketMaxFrameSize)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_21_012: [The function shall store the maximum frame size to pass to the AmqpsReceiveHandler objects created by open]
+        this.webSocketMaxFrameSize = webSocketMaxFrameSize;
     }
 
     /**
@@ -9,6 +9,7 @@ import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
 import com.microsoft.azure.sdk.iot.service.Message;
 import com.microsoft.azure.sdk.iot.service.Tools;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import com.microsoft.azure.sdk.iot.deps.ws.impl.WebSocketImpl;
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.engine.BaseHandler;
 import org.apache.qpid.proton.engine.Event;
@@ -30,6 +31,7 @@ public class AmqpSend extends BaseHandler
     protected Reactor reactor = null;
     protected AmqpSendHandler amqpSendHandler;
     protected IotHubServiceClientProtocol iotHubServiceClientProtocol;
+    protected int webSocketMaxFrameSize = WebSocketImpl.DEFAULT_MAX_FRAME_SIZE;
 
     /**
      * Constructor to set up connection parameters
@@ -89,6 +91,18 @@ public class AmqpSend extends BaseHandler
     {
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_004: [The function shall create an AmqpsSendHandler object to handle reactor events]
         amqpSendHandler = new AmqpSendHandler(this.hostName, this.userName, this.sasToken, this.iotHubServiceClientProtocol);
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_21_011: [The function shall set the configured WebSocket maximum frame size on the created AmqpSendHandler object]
+        amqpSendHandler.setWebSocketMaxFrameSize(this.webSocketMaxFrameSize);
+    }
+
+    /**
+     * Set the largest WebSocket frame, header included, used over AMQPS_WS from the next open() on
+     * @param webSocketMaxFrameSize The maximum frame size in bytes
+     */
+    public void setWebSocketMaxFrameSize(int webSocketMaxFrameSize)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_21_012: [The function shall store the maximum frame size to pass to the AmqpSendHandler objects created by open]
+        this.webSocketMaxFrameSize = webSocketMaxFrameSize;
     }
 
     /**
@@ -52,6 +52,7 @@ public class AmqpSendHandler extends BaseHandler
 
     protected final IotHubServiceClientProtocol iotHubServiceClientProtocol;
     protected final String webSocketHostName;
+    private int webSocketMaxFrameSize = WebSocketImpl.DEFAULT_MAX_FRAME_SIZE;
 
     private boolean isConnected = false;
     private boolean isConnectionError = false;
@@ -121,6 +122,17 @@ public class AmqpSendHandler extends BaseHandler
      * @param message The message to be sent
      */
     public void createProtonMessage(String deviceId, com.microsoft.azure.sdk.iot.service.Message message)
+    {
+        messagesToBeSent.add(buildProtonMessage(deviceId, message));
+    }
+
+    /**
+     * Build the Proton message addressed to the device from the service message
+     * @param deviceId The device name string
+     * @param message The message to be sent
+     * @return The Proton message
+     */
+    protected org.apache.qpid.proton.message.Message buildProtonMessage(String deviceId, com.microsoft.azure.sdk.iot.service.Message message)
     {
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_005: [The function shall create a new Message (Proton) object]
         org.apache.qpid.proton.message.Message protonMessage = Proton.message();
@@ -157,7 +169,7 @@ public class AmqpSendHandler extends BaseHandler
         Section section = new Data(binary);
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_009: [The function shall set the Message body to the created data section]
         protonMessage.setBody(section);
-        messagesToBeSent.add(protonMessage);
+        return protonMessage;
     }
 
     /**
@@ -187,12 +199,13 @@ public class AmqpSendHandler extends BaseHandler
         {
             if (this.iotHubServiceClientProtocol == IotHubServiceClientProtocol.AMQPS_WS)
             {
-                WebSocketImpl webSocket = new WebSocketImpl();
+                // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_024: [The event handler shall initialize WebSocket with the configured maximum frame size if the protocol is AMQP_WS]
+                WebSocketImpl webSocket = new WebSocketImpl(this.webSocketMaxFrameSize);
                 webSocket.configure(this.webSocketHostName, WEBSOCKET_PATH, 0, WEBSOCKET_SUB_PROTOCOL, null, null);
                 ((TransportInternal)transport).addTransportLayer(webSocket);
             }
             Sasl sasl = transport.sasl();
-            sasl.plain(this.userName, this.sasToken);
+            sasl.plain(this.userName, getSasToken());
 
             SslDomain domain = makeDomain(SslDomain.Mode.CLIENT);
             domain.setPeerAuthentication(SslDomain.VerifyMode.ANONYMOUS_PEER);
@@ -200,6 +213,25 @@ public class AmqpSendHandler extends BaseHandler
         }
     }
 
+    /**
+     * Get the SAS token to authenticate a new connection with
+     * @return The SAS token string
+     */
+    protected String getSasToken()
+    {
+        return this.sasToken;
+    }
+
+    /**
+     * Set the largest WebSocket frame, header included, of the connections bound after the call
+     * @param webSocketMaxFrameSize The maximum frame size in bytes
+     */
+    public void setWebSocketMaxFrameSize(int webSocketMaxFrameSize)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_21_032: [The function shall set the maximum frame size of the WebSocket layer added by the connection bound event]
+        this.webSocketMaxFrameSize = webSocketMaxFrameSize;
+    }
+
     /**
      * Event handler for the connection init event
      * @param event The proton event object
@@ -0,0 +1,583 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.http;
+
+import javax.net.ssl.SSLContext;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking HTTPS client. No thread waits for a request: the requests are
+ * written and their responses parsed by the completion handlers of a small
+ * group of I/O threads, and each request completes a future.
+ * <p>
+ * Every host gets a pool of persistent HTTP/1.1 connections. A request uses an
+ * idle connection of the pool, or opens a new one while the pool is not full,
+ * or waits in the queue of the host for the next connection to be released.
+ * Requests are not pipelined on a connection: the device methods and registry
+ * writes are not idempotent, and a failed pipelined connection would leave them
+ * in an unknown state. For the same reason, a request which fails on a reused
+ * connection after it was completely written is only sent again if it is a GET.
+ * <p>
+ * The futures complete on the I/O threads, so the actions chained to them must
+ * not block. The client connects directly to the host, without going through
+ * a proxy. The address of each host is resolved on a separate thread, since a
+ * DNS lookup blocks, and kept until a connection to it fails.
+ */
+public class HttpAsyncClient
+{
+    private static final int HTTPS_PORT = 443;
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 100;
+    private static final int DEFAULT_IO_THREAD_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /** The idle connections are closed before the IoT Hub gives up on them. */
+    private static final long MAX_IDLE_MILLIS = 60000;
+
+    private static HttpAsyncClient defaultClient = null;
+
+    private final SSLContext sslContext;
+    private final int maxConnectionsPerHost;
+    private final AsynchronousChannelGroup channelGroup;
+    private final ExecutorService resolver;
+    private final Map<String, HostPool> hostPools = new ConcurrentHashMap<>();
+
+    private final AtomicLong openedConnectionCount = new AtomicLong();
+    private final AtomicLong sentRequestCount = new AtomicLong();
+
+    /**
+     * Getter for the client shared by the requests of the service client, which
+     * uses the default SSL context.
+     *
+     * @return the shared client.
+     * @throws IOException if the client could not be created.
+     */
+    public static synchronized HttpAsyncClient getDefault() throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_001: [The function shall create the shared client on the first call, with the default SSL context, and return it.]
+        if (defaultClient == null)
+        {
+            try
+            {
+                defaultClient = new HttpAsyncClient(SSLContext.getDefault(), DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_IO_THREAD_COUNT);
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                throw new IOException("The default SSL context is not available", e);
+            }
+        }
+        return defaultClient;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param sslContext the SSL context of the connections.
+     * @param maxConnectionsPerHost the largest number of connections to a host.
+     * @param ioThreadCount the number of threads which write the requests and parse the responses.
+     * @throws IOException if the I/O threads could not be created.
+     * @throws IllegalArgumentException if the SSL context is null, or a count is not positive.
+     */
+    public HttpAsyncClient(SSLContext sslContext, int maxConnectionsPerHost, int ioThreadCount) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_002: [The constructor shall throw IllegalArgumentException if the SSL context is null, or if the number of connections per host or of I/O threads is not positive.]
+        if (sslContext == null)
+        {
+            throw new IllegalArgumentException("sslContext cannot be null");
+        }
+        if ((maxConnectionsPerHost < 1) || (ioThreadCount < 1))
+        {
+            throw new IllegalArgumentException("maxConnectionsPerHost and ioThreadCount must be positive");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_003: [The constructor shall create a group of daemon I/O threads of the given size.]
+        this.sslContext = sslContext;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.channelGroup = AsynchronousChannelGroup.withFixedThreadPool(ioThreadCount, new ThreadFactory()
+        {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "azure-iot-sdk-http-io-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_016: [The constructor shall create a daemon thread which resolves the host addresses, so the I/O threads never wait for the DNS.]
+        this.resolver = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "azure-iot-sdk-http-resolver");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Sends a request without waiting for its response.
+     *
+     * @param url the HTTPS URL of the request.
+     * @param method the HTTP method.
+     * @param headerFields the header fields of the request.
+     * @param body the body of the request, an array of size 0 if there is none.
+     * @param timeoutMillis the read timeout, 0 for none.
+     * @return the future completed with the response, or exceptionally with the
+     * IOException of a failed request.
+     * @throws IllegalArgumentException if a parameter is null, or if the URL does not use HTTPS.
+     */
+    public CompletableFuture<HttpResponse> send(URL url, HttpMethod method, Map<String, String> headerFields, byte[] body, int timeoutMillis)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_004: [The function shall throw IllegalArgumentException if the URL, method, header fields or body is null, or if the URL does not use HTTPS.]
+        if ((url == null) || (method == null) || (headerFields == null) || (body == null))
+        {
+            throw new IllegalArgumentException("url, method, headerFields and body cannot be null");
+        }
+        if (!url.getProtocol().equalsIgnoreCase("HTTPS"))
+        {
+            throw new IllegalArgumentException("Expected URL that uses HTTPS but received one that uses '" + url.getProtocol() + "'");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_005: [The function shall send the request on a connection of the pool of the host, and complete the future with the response.]
+        int port = (url.getPort() < 0) ? HTTPS_PORT : url.getPort();
+        String hostKey = url.getHost() + ":" + port;
+        HostPool hostPool = this.hostPools.get(hostKey);
+        if (hostPool == null)
+        {
+            hostPool = new HostPool(url.getHost(), port);
+            HostPool existingHostPool = this.hostPools.putIfAbsent(hostKey, hostPool);
+            if (existingHostPool != null)
+            {
+                hostPool = existingHostPool;
+            }
+        }
+
+        Exchange exchange = new Exchange(hostPool, encodeRequest(url, port, method, headerFields, body), method == HttpMethod.GET, timeoutMillis);
+        hostPool.acquire(exchange);
+        return exchange.future;
+    }
+
+    /**
+     * Getter for the number of TLS connections opened by the client.
+     *
+     * @return the number of opened connections.
+     */
+    public long getOpenedConnectionCount()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_011: [The function shall return the number of connections opened by the client.]
+        return this.openedConnectionCount.get();
+    }
+
+    /**
+     * Getter for the number of requests sent by the client. Together with
+     * {@link #getOpenedConnectionCount()}, tells how often the requests reused
+     * a connection.
+     *
+     * @return the number of sent requests.
+     */
+    public long getSentRequestCount()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_012: [The function shall return the number of requests sent by the client.]
+        return this.sentRequestCount.get();
+    }
+
+    /**
+     * Closes the connections and stops the I/O threads. The requests which are
+     * not complete fail.
+     *
+     * @throws IOException if the I/O threads could not be stopped.
+     */
+    public void close() throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_013: [The function shall close all the connections and stop the I/O and resolver threads.]
+        this.channelGroup.shutdownNow();
+        this.resolver.shutdownNow();
+        for (HostPool hostPool : this.hostPools.values())
+        {
+            hostPool.failWaitingExchanges(new IOException("The HTTP client is closed"));
+        }
+    }
+
+    private static ByteBuffer encodeRequest(URL url, int port, HttpMethod method, Map<String, String> headerFields, byte[] body)
+    {
+        StringBuilder head = new StringBuilder(512);
+        String target = url.getFile();
+        head.append(method.name()).append(' ').append(target.isEmpty() ? "/" : target).append(" HTTP/1.1\r\n");
+        head.append("Host: ").append(url.getHost());
+        if (port != HTTPS_PORT)
+        {
+            head.append(':').append(port);
+        }
+        head.append("\r\n");
+
+        for (Map.Entry<String, String> headerField : headerFields.entrySet())
+        {
+            String field = headerField.getKey();
+            if (!field.equalsIgnoreCase("Host") && !field.equalsIgnoreCase("Content-Length") && !field.equalsIgnoreCase("Connection"))
+            {
+                head.append(field).append(": ").append(headerField.getValue()).append("\r\n");
+            }
+        }
+
+        if ((body.length > 0) || (method == HttpMethod.POST) || (method == HttpMethod.PUT) || (method == HttpMethod.PATCH))
+        {
+            head.append("Content-Length: ").append(body.length).append("\r\n");
+        }
+        head.append("\r\n");
+
+        byte[] headBytes = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer request = ByteBuffer.allocate(headBytes.length + body.length);
+        request.put(headBytes).put(body);
+        request.flip();
+        return request;
+    }
+
+    /**
+     * The connections to one host, and the requests waiting for one of them.
+     */
+    private final class HostPool
+    {
+        private final String host;
+        private final int port;
+
+        private final Deque<HttpAsyncConnection> idleConnections = new ArrayDeque<>();
+        private final Queue<Exchange> waitingExchanges = new ArrayDeque<>();
+        private int connectionCount = 0;
+
+        /* the resolved address of the host, null until it is resolved or after a connection to it failed */
+        private volatile InetSocketAddress address;
+
+        private HostPool(String host, int port)
+        {
+            this.host = host;
+            this.port = port;
+        }
+
+        private void acquire(Exchange exchange)
+        {
+            HttpAsyncConnection connection = null;
+            boolean openConnection = false;
+            synchronized (this)
+            {
+                // Codes_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_006: [The request shall use the most recently released idle connection of the host, closing the connections idle for too long.]
+                long now = System.currentTimeMillis();
+                while ((connection == null) && !this.idleConnections.isEmpty())
+                {
+                    connection = this.idleConnections.pollLast();
+                    if (now - connection.getIdleSinceMillis() > MAX_IDLE_MILLIS)
+                    {
+                        connection.close();
+                        connection = null;
+                        this.connectionCount--;
+                    }
+                }
+
+                // Codes_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_007: [If there is no idle connection, the request shall open a new connection if the host has less than the largest number of connections, or else wait for a connection to be released.]
+                if (connection == null)
+                {
+                    if (this.connectionCount < maxConnectionsPerHost)
+                    {
+                        this.connectionCount++;
+                        openConnection = true;
+                    }
+                    else
+                    {
+                        this.waitingExchanges.add(exchange);
+                    }
+                }
+            }
+
+            if (connection != null)
+            {
+                exchange.start(connection, true);
+            }
+            else if (openConnection)
+            {
+                open(exchange);
+            }
+        }
+
+        private void open(final Exchange exchange)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_017: [A new connection shall use the cached address of the host, or else resolve it
+            // on the resolver thread and cache it. A connection which fails to open shall drop the cached address, so the next one resolves it again.]
+            InetSocketAddress resolvedAddress = this.address;
+            if (resolvedAddress != null)
+            {
+                open(resolvedAddress, exchange);
+                return;
+            }
+
+            try
+            {
+                resolver.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        InetSocketAddress newAddress = new InetSocketAddress(host, port);
+                        if (newAddress.isUnresolved())
+                        {
+                            release(null, false);
+                            exchange.fail(new UnknownHostException(host));
+                            return;
+                        }
+                        address = newAddress;
+                        open(newAddress, exchange);
+                    }
+                });
+            }
+            catch (RejectedExecutionException e)
+            {
+                release(null, false);
+                exchange.fail(new IOException("The HTTP client is closed"));
+            }
+        }
+
+        private void open(final InetSocketAddress resolvedAddress, final Exchange exchange)
+        {
+            HttpAsyncConnection.open(channelGroup, sslContext, this.host, resolvedAddress, exchange.timeoutMillis,
+                    new CompletionHandler<HttpAsyncConnection, Void>()
+                    {
+                        @Override
+                        public void completed(HttpAsyncConnection connection, Void attachment)
+                        {
+                            openedConnectionCount.incrementAndGet();
+                            exchange.start(connection, false);
+                        }
+
+                        @Override
+                        public void failed(Throwable exc, Void attachment)
+                        {
+                            address = null;
+                            release(null, false);
+                            exchange.fail(exc);
+                        }
+                    });
+        }
+
+        private void release(HttpAsyncConnection connection, boolean reusable)
+        {
+            Exchange nextExchange;
+            synchronized (this)
+            {
+                // Codes_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_008: [A released connection shall be handed to the next waiting request, or kept idle if it can be reused.]
+                nextExchange = this.waitingExchanges.poll();
+                if (!reusable)
+                {
+                    this.connectionCount--;
+                    if (nextExchange != null)
+                    {
+                        this.connectionCount++;
+                    }
+                }
+                else if (nextExchange == null)
+                {
+                    connection.setIdleSinceMillis(System.currentTimeMillis());
+                    this.idleConnections.addLast(connection);
+                }
+            }
+
+            if (!reusable && (connection != null))
+            {
+                connection.close();
+            }
+
+            if (nextExchange != null)
+            {
+                if (reusable)
+                {
+                    nextExchange.start(connection, true);
+                }
+                else
+                {
+                    open(nextExchange);
+                }
+            }
+        }
+
+        private void failWaitingExchanges(IOException exception)
+        {
+            Exchange exchange;
+            while (true)
+            {
+                synchronized (this)
+                {
+                    exchange = this.waitingExchanges.poll();
+                }
+                if (exchange == null)
+                {
+                    return;
+                }
+                exchange.future.completeExceptionally(exception);
+            }
+        }
+    }
+
+    /**
+     * One request and its response.
+     */
+    private final class Exchange
+    {
+        private final HostPool hostPool;
+        private final ByteBuffer request;
+        private final boolean idempotent;
+        private final int timeoutMillis;
+        private final CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+
+        private HttpAsyncConnection connection;
+        private boolean reusedConnection;
+        private boolean requestWritten;
+        private boolean responseStarted;
+        private HttpResponseParser parser;
+
+        private Exchange(HostPool hostPool, ByteBuffer request, boolean idempotent, int timeoutMillis)
+        {
+            this.hostPool = hostPool;
+            this.request = request;
+            this.idempotent = idempotent;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        private void start(HttpAsyncConnection connection, boolean reusedConnection)
+        {
+            this.connection = connection;
+            this.reusedConnection = reusedConnection;
+            this.requestWritten = false;
+            this.responseStarted = false;
+            this.parser = new HttpResponseParser(true);
+
+            sentRequestCount.incrementAndGet();
+            connection.write(this.request.duplicate(), this.timeoutMillis, new CompletionHandler<Void, Void>()
+            {
+                @Override
+                public void completed(Void result, Void attachment)
+                {
+                    requestWritten = true;
+                    readResponse();
+                }
+
+                @Override
+                public void failed(Throwable exc, Void attachment)
+                {
+                    fail(exc);
+                }
+            });
+        }
+
+        private void readResponse()
+        {
+            this.connection.read(this.timeoutMillis, new CompletionHandler<ByteBuffer, Void>()
+            {
+                @Override
+                public void completed(ByteBuffer data, Void attachment)
+                {
+                    try
+                    {
+                        if (data == null)
+                        {
+                            if (parser.endOfStream())
+                            {
+                                complete(false);
+                            }
+                            else
+                            {
+                                fail(new EOFException("The connection was closed before the end of the HTTP response"));
+                            }
+                        }
+                        else
+                        {
+                            responseStarted = true;
+                            if (parser.parse(data))
+                            {
+                                // Codes_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_010: [The connection shall only be reused if the response allows it and nothing follows the response.]
+                                complete(parser.isKeepAlive() && !data.hasRemaining());
+                            }
+                            else
+                            {
+                                readResponse();
+                            }
+                        }
+                    }
+                    catch (IOException e)
+                    {
+                        fail(e);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable exc, Void attachment)
+                {
+                    fail(exc);
+                }
+            });
+        }
+
+        private void complete(boolean reusable)
+        {
+            this.hostPool.release(this.connection, reusable);
+
+            // Like HttpRequest.send(), the body of an error response is its error reason.
+            int status = this.parser.getStatus();
+            byte[] content = this.parser.getContent();
+            if (status >= 400)
+            {
+                this.future.complete(new HttpResponse(status, new byte[0], this.parser.getHeaderFields(), content));
+            }
+            else
+            {
+                this.future.complete(new HttpResponse(status, content, this.parser.getHeaderFields(), new byte[0]));
+            }
+        }
+
+        private void fail(Throwable exc)
+        {
+            if (this.connection != null)
+            {
+                this.hostPool.release(this.connection, false);
+            }
+
+            // Codes_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_009: [If a reused connection fails before any byte of the response, the request shall be sent again on another connection, since the host may have closed the idle connection.]
+            // Codes_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_014: [A request which was completely written shall only be sent again if its method is GET, since the host may have executed it.]
+            if (this.reusedConnection && !this.responseStarted && !(exc instanceof SocketTimeoutException)
+                    && (!this.requestWritten || this.idempotent))
+            {
+                this.connection = null;
+                this.reusedConnection = false;
+                this.hostPool.acquire(this);
+            }
+            else
+            {
+                this.future.completeExceptionally(exc);
+            }
+        }
+    }
+}
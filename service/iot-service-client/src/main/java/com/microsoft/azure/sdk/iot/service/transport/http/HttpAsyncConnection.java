@@ -0,0 +1,522 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.http;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.InterruptedByTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One persistent TLS connection of the {@link HttpAsyncClient}. Every
+ * operation returns at once and reports its outcome to a completion handler,
+ * which runs on a thread of the channel group.
+ * <p>
+ * The connection is used by one request at a time, so there is at most one
+ * pending read and one pending write.
+ */
+final class HttpAsyncConnection
+{
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+    private final AsynchronousSocketChannel channel;
+    private final SSLEngine sslEngine;
+
+    /* network bytes received but not unwrapped yet, kept ready to be filled */
+    private ByteBuffer netIn;
+    /* application bytes unwrapped but not delivered yet, kept ready to be filled */
+    private ByteBuffer appIn;
+    /* network bytes wrapped but not written yet, kept ready to be drained */
+    private ByteBuffer netOut;
+
+    private long idleSinceMillis;
+
+    private HttpAsyncConnection(AsynchronousSocketChannel channel, SSLEngine sslEngine)
+    {
+        this.channel = channel;
+        this.sslEngine = sslEngine;
+        this.netIn = ByteBuffer.allocate(sslEngine.getSession().getPacketBufferSize());
+        this.appIn = ByteBuffer.allocate(sslEngine.getSession().getApplicationBufferSize());
+        this.netOut = ByteBuffer.allocate(sslEngine.getSession().getPacketBufferSize());
+        this.netOut.flip();
+    }
+
+    /**
+     * Connects to the host and completes the TLS handshake.
+     *
+     * @param channelGroup the group whose threads run the completion handlers.
+     * @param sslContext the SSL context of the connection.
+     * @param host the host name, verified against the server certificate.
+     * @param address the resolved address of the host. The address must be resolved
+     *                before, since resolving it here would block the thread of the group.
+     * @param timeoutMillis the timeout of each read and write of the handshake, 0 for none.
+     * @param handler the handler told about the open connection.
+     */
+    static void open(AsynchronousChannelGroup channelGroup, SSLContext sslContext, String host, InetSocketAddress address,
+                     final int timeoutMillis, final CompletionHandler<HttpAsyncConnection, Void> handler)
+    {
+        AsynchronousSocketChannel channel = null;
+        try
+        {
+            SSLEngine sslEngine = sslContext.createSSLEngine(host, address.getPort());
+            sslEngine.setUseClientMode(true);
+            SSLParameters sslParameters = sslEngine.getSSLParameters();
+            sslParameters.setEndpointIdentificationAlgorithm("HTTPS");
+            sslEngine.setSSLParameters(sslParameters);
+            sslEngine.beginHandshake();
+
+            channel = AsynchronousSocketChannel.open(channelGroup);
+            // Codes_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_015: [The connections shall disable Nagle's algorithm, since a request larger
+            // than one TLS record takes several writes, which it would hold back until the server acknowledges.]
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            final HttpAsyncConnection connection = new HttpAsyncConnection(channel, sslEngine);
+            channel.connect(address, null, new CompletionHandler<Void, Void>()
+            {
+                @Override
+                public void completed(Void result, Void attachment)
+                {
+                    connection.handshake(timeoutMillis, new CompletionHandler<Void, Void>()
+                    {
+                        @Override
+                        public void completed(Void result, Void attachment)
+                        {
+                            handler.completed(connection, null);
+                        }
+
+                        @Override
+                        public void failed(Throwable exc, Void attachment)
+                        {
+                            connection.close();
+                            handler.failed(exc, null);
+                        }
+                    });
+                }
+
+                @Override
+                public void failed(Throwable exc, Void attachment)
+                {
+                    connection.close();
+                    handler.failed(exc, null);
+                }
+            });
+        }
+        catch (IOException | RuntimeException e)
+        {
+            if (channel != null)
+            {
+                try
+                {
+                    channel.close();
+                }
+                catch (IOException closeException)
+                {
+                    // the connection failed anyway.
+                }
+            }
+            handler.failed(e, null);
+        }
+    }
+
+    /**
+     * Encrypts and writes all the remaining bytes of the buffer.
+     *
+     * @param source the bytes to be written.
+     * @param timeoutMillis the timeout of each network write, 0 for none.
+     * @param handler the handler told when all the bytes were written.
+     */
+    void write(final ByteBuffer source, final int timeoutMillis, final CompletionHandler<Void, Void> handler)
+    {
+        try
+        {
+            wrap(source);
+        }
+        catch (IOException e)
+        {
+            handler.failed(e, null);
+            return;
+        }
+
+        flush(timeoutMillis, new CompletionHandler<Void, Void>()
+        {
+            @Override
+            public void completed(Void result, Void attachment)
+            {
+                if (source.hasRemaining())
+                {
+                    write(source, timeoutMillis, handler);
+                }
+                else
+                {
+                    handler.completed(null, null);
+                }
+            }
+
+            @Override
+            public void failed(Throwable exc, Void attachment)
+            {
+                handler.failed(exc, null);
+            }
+        });
+    }
+
+    /**
+     * Reads and decrypts the next bytes from the server. The handler gets a
+     * buffer which it may keep, or null if the server closed the connection.
+     *
+     * @param timeoutMillis the timeout of each network read, 0 for none.
+     * @param handler the handler told about the bytes read.
+     */
+    void read(final int timeoutMillis, final CompletionHandler<ByteBuffer, Void> handler)
+    {
+        try
+        {
+            while (true)
+            {
+                if (this.appIn.position() > 0)
+                {
+                    this.appIn.flip();
+                    ByteBuffer data = ByteBuffer.allocate(this.appIn.remaining());
+                    data.put(this.appIn);
+                    data.flip();
+                    this.appIn.clear();
+                    handler.completed(data, null);
+                    return;
+                }
+
+                SSLEngineResult result = unwrap();
+                switch (result.getStatus())
+                {
+                    case BUFFER_UNDERFLOW:
+                        readNetwork(timeoutMillis, new CompletionHandler<Boolean, Void>()
+                        {
+                            @Override
+                            public void completed(Boolean endOfStream, Void attachment)
+                            {
+                                if (endOfStream)
+                                {
+                                    handler.completed(null, null);
+                                }
+                                else
+                                {
+                                    read(timeoutMillis, handler);
+                                }
+                            }
+
+                            @Override
+                            public void failed(Throwable exc, Void attachment)
+                            {
+                                handler.failed(exc, null);
+                            }
+                        });
+                        return;
+
+                    case CLOSED:
+                        if (this.appIn.position() == 0)
+                        {
+                            handler.completed(null, null);
+                            return;
+                        }
+                        break;
+
+                    default:
+                        // the server may start a new handshake, or send handshake messages after the first one.
+                        if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK)
+                        {
+                            runDelegatedTasks();
+                        }
+                        if (this.sslEngine.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP)
+                        {
+                            handshake(timeoutMillis, new CompletionHandler<Void, Void>()
+                            {
+                                @Override
+                                public void completed(Void result, Void attachment)
+                                {
+                                    read(timeoutMillis, handler);
+                                }
+
+                                @Override
+                                public void failed(Throwable exc, Void attachment)
+                                {
+                                    handler.failed(exc, null);
+                                }
+                            });
+                            return;
+                        }
+                        break;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            handler.failed(e, null);
+        }
+    }
+
+    /**
+     * Closes the connection. Pending operations fail.
+     */
+    void close()
+    {
+        this.sslEngine.closeOutbound();
+        try
+        {
+            this.channel.close();
+        }
+        catch (IOException e)
+        {
+            // nothing else can be done with a connection that cannot be closed.
+        }
+    }
+
+    /**
+     * Getter for the time since the connection is waiting in the pool.
+     *
+     * @return the time when the connection was released, in milliseconds.
+     */
+    long getIdleSinceMillis()
+    {
+        return this.idleSinceMillis;
+    }
+
+    /**
+     * Setter for the time since the connection is waiting in the pool.
+     *
+     * @param idleSinceMillis the time when the connection was released, in milliseconds.
+     */
+    void setIdleSinceMillis(long idleSinceMillis)
+    {
+        this.idleSinceMillis = idleSinceMillis;
+    }
+
+    private void handshake(final int timeoutMillis, final CompletionHandler<Void, Void> handler)
+    {
+        CompletionHandler<Void, Void> nextStep = new CompletionHandler<Void, Void>()
+        {
+            @Override
+            public void completed(Void result, Void attachment)
+            {
+                handshake(timeoutMillis, handler);
+            }
+
+            @Override
+            public void failed(Throwable exc, Void attachment)
+            {
+                handler.failed(exc, null);
+            }
+        };
+
+        try
+        {
+            while (true)
+            {
+                switch (this.sslEngine.getHandshakeStatus())
+                {
+                    case NEED_TASK:
+                        runDelegatedTasks();
+                        break;
+
+                    case NEED_WRAP:
+                        wrap(EMPTY_BUFFER);
+                        flush(timeoutMillis, nextStep);
+                        return;
+
+                    case NEED_UNWRAP:
+                        SSLEngineResult result = unwrap();
+                        if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW)
+                        {
+                            readNetwork(timeoutMillis, new CompletionHandler<Boolean, Void>()
+                            {
+                                @Override
+                                public void completed(Boolean endOfStream, Void attachment)
+                                {
+                                    if (endOfStream)
+                                    {
+                                        handler.failed(new SSLException("Connection closed during the TLS handshake"), null);
+                                    }
+                                    else
+                                    {
+                                        handshake(timeoutMillis, handler);
+                                    }
+                                }
+
+                                @Override
+                                public void failed(Throwable exc, Void attachment)
+                                {
+                                    handler.failed(exc, null);
+                                }
+                            });
+                            return;
+                        }
+                        if (result.getStatus() == SSLEngineResult.Status.CLOSED)
+                        {
+                            throw new SSLException("Connection closed during the TLS handshake");
+                        }
+                        break;
+
+                    default:
+                        handler.completed(null, null);
+                        return;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            handler.failed(e, null);
+        }
+    }
+
+    private void wrap(ByteBuffer source) throws IOException
+    {
+        this.netOut.compact();
+        try
+        {
+            while (true)
+            {
+                SSLEngineResult result = this.sslEngine.wrap(source, this.netOut);
+                if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW)
+                {
+                    this.netOut = enlarge(this.netOut, this.sslEngine.getSession().getPacketBufferSize());
+                }
+                else if (result.getStatus() == SSLEngineResult.Status.CLOSED)
+                {
+                    throw new SSLException("The TLS connection is closed");
+                }
+                else
+                {
+                    return;
+                }
+            }
+        }
+        finally
+        {
+            this.netOut.flip();
+        }
+    }
+
+    private SSLEngineResult unwrap() throws SSLException
+    {
+        while (true)
+        {
+            this.netIn.flip();
+            SSLEngineResult result;
+            try
+            {
+                result = this.sslEngine.unwrap(this.netIn, this.appIn);
+            }
+            finally
+            {
+                this.netIn.compact();
+            }
+
+            if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW)
+            {
+                this.appIn = enlarge(this.appIn, this.sslEngine.getSession().getApplicationBufferSize());
+            }
+            else
+            {
+                if ((result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) && !this.netIn.hasRemaining())
+                {
+                    // the record does not fit in the buffer.
+                    this.netIn = enlarge(this.netIn, this.sslEngine.getSession().getPacketBufferSize());
+                }
+                return result;
+            }
+        }
+    }
+
+    private void flush(final int timeoutMillis, final CompletionHandler<Void, Void> handler)
+    {
+        if (!this.netOut.hasRemaining())
+        {
+            handler.completed(null, null);
+            return;
+        }
+
+        try
+        {
+            this.channel.write(this.netOut, timeoutMillis, TimeUnit.MILLISECONDS, null, new CompletionHandler<Integer, Void>()
+            {
+                @Override
+                public void completed(Integer result, Void attachment)
+                {
+                    flush(timeoutMillis, handler);
+                }
+
+                @Override
+                public void failed(Throwable exc, Void attachment)
+                {
+                    handler.failed(toIOException(exc), null);
+                }
+            });
+        }
+        catch (RuntimeException e)
+        {
+            handler.failed(e, null);
+        }
+    }
+
+    private void readNetwork(int timeoutMillis, final CompletionHandler<Boolean, Void> handler)
+    {
+        try
+        {
+            this.channel.read(this.netIn, timeoutMillis, TimeUnit.MILLISECONDS, null, new CompletionHandler<Integer, Void>()
+            {
+                @Override
+                public void completed(Integer result, Void attachment)
+                {
+                    handler.completed(result < 0, null);
+                }
+
+                @Override
+                public void failed(Throwable exc, Void attachment)
+                {
+                    handler.failed(toIOException(exc), null);
+                }
+            });
+        }
+        catch (RuntimeException e)
+        {
+            handler.failed(e, null);
+        }
+    }
+
+    private void runDelegatedTasks()
+    {
+        Runnable task;
+        while ((task = this.sslEngine.getDelegatedTask()) != null)
+        {
+            task.run();
+        }
+    }
+
+    private static ByteBuffer enlarge(ByteBuffer buffer, int minimumCapacity)
+    {
+        ByteBuffer enlarged = ByteBuffer.allocate(Math.max(minimumCapacity, 2 * buffer.capacity()));
+        buffer.flip();
+        enlarged.put(buffer);
+        return enlarged;
+    }
+
+    private static Throwable toIOException(Throwable exc)
+    {
+        if (exc instanceof InterruptedByTimeoutException)
+        {
+            return new SocketTimeoutException("Read timed out");
+        }
+        return exc;
+    }
+}
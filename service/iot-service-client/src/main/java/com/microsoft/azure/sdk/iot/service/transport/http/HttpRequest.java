@@ -7,16 +7,27 @@ package com.microsoft.azure.sdk.iot.service.transport.http;
 
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class HttpRequest
 {
-    /** The underlying HTTPS connection stream. */
+    /** The underlying HTTPS connection stream, or null for a request created for the {@link HttpAsyncClient}. */
     protected final HttpConnection connection;
 
+    /** The parts of the request, for sending it with the {@link HttpAsyncClient}. */
+    private final URL url;
+    private final HttpMethod method;
+    private final byte[] body;
+    private final Map<String, String> headerFields = new LinkedHashMap<>();
+    private int readTimeoutMillis = 0;
+
     /**
      * Constructor. Takes a URL as an argument and returns an HTTPS request that
      * is ready to be sent.
@@ -36,9 +47,50 @@ public class HttpRequest
         // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_12_003: [The function shall use the given HTTPS method (i.e. GET) as the request method.]
         // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_12_004: [If an IOException occurs in setting up the HTTPS connection, the function shall throw an IOException.]
         this.connection = new HttpConnection(url, method);
-        this.connection.setRequestHeader("User-Agent", TransportUtils.javaServiceClientIdentifier + TransportUtils.serviceVersion);
+        this.url = url;
+        this.method = method;
+        this.setHeaderField("User-Agent", TransportUtils.javaServiceClientIdentifier + TransportUtils.serviceVersion);
         // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_12_002: [The function shall write the body to the connection.]
         this.connection.writeOutput(body);
+        this.body = body;
+    }
+
+    /**
+     * Creates a request which is only sent with {@link #sendAsync()}, so unlike
+     * the constructor it does not set up an HTTPS connection for it.
+     *
+     * @param url The URL for the request.
+     * @param method The HTTPS request method (i.e. GET).
+     * @param body The request body. Must be an array of size 0 if the request method is GET or DELETE.
+     *
+     * @return The request, ready to be sent asynchronously.
+     *
+     * @throws IllegalArgumentException This exception thrown if a parameter is
+     * null, or if the endpoint given does not use the HTTPS protocol.
+     */
+    public static HttpRequest createAsync(URL url, HttpMethod method, byte[] body)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_21_016: [The function shall throw IllegalArgumentException if the URL, method or body is null, or if the URL does not use HTTPS.]
+        if ((url == null) || (method == null) || (body == null))
+        {
+            throw new IllegalArgumentException("url, method and body cannot be null");
+        }
+        if (!url.getProtocol().equalsIgnoreCase("HTTPS"))
+        {
+            throw new IllegalArgumentException("Expected URL that uses HTTPS but received one that uses '" + url.getProtocol() + "'");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_21_017: [The function shall create a request with the given URL, method and body, without opening a connection.]
+        return new HttpRequest(url, method, body, null);
+    }
+
+    private HttpRequest(URL url, HttpMethod method, byte[] body, HttpConnection connection)
+    {
+        this.connection = connection;
+        this.url = url;
+        this.method = method;
+        this.body = body;
+        this.setHeaderField("User-Agent", TransportUtils.javaServiceClientIdentifier + TransportUtils.serviceVersion);
     }
 
     /**
@@ -48,9 +100,13 @@ public class HttpRequest
      *
      * @throws IOException This exception thrown if the connection could not be
      * established, or the input/output streams could not be accessed.
+     * @throws IllegalStateException This exception thrown if the request was
+     * created for the asynchronous client.
      */
     public HttpResponse send() throws IOException
     {
+        checkConnection();
+
         int responseStatus = -1;
         byte[] responseBody = new byte[0];
         byte[] errorReason = new byte[0];
@@ -87,6 +143,84 @@ public class HttpRequest
                 errorReason);
     }
 
+    /**
+     * Executes the HTTPS request and returns the response without reading its
+     * body, so that the caller can parse the body as it arrives. The caller
+     * must close the response.
+     *
+     * @return The HTTPS response, with the body stream.
+     *
+     * @throws IOException This exception thrown if the connection could not be
+     * established, or the input/output streams could not be accessed.
+     * @throws IllegalStateException This exception thrown if the request was
+     * created for the asynchronous client.
+     */
+    public HttpStreamResponse sendStreaming() throws IOException
+    {
+        checkConnection();
+
+        int responseStatus;
+        InputStream responseBody;
+        byte[] errorReason = new byte[0];
+        Map<String, List<String>> headerFields;
+        try
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_21_014: [The function shall send an HTTPS request as formatted in the constructor, and return the response with the unread body stream.]
+            this.connection.connect();
+
+            responseStatus = this.connection.getResponseStatus();
+            headerFields = this.connection.getResponseHeaders();
+            responseBody = this.connection.getInputStream();
+        }
+        catch (IOException e)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_21_015: [If the response has a bad status code, the function shall read the error stream and return the response with an empty body stream. If the client cannot connect to the server, the function shall throw an IOException.]
+            responseStatus = this.connection.getResponseStatus();
+            headerFields = this.connection.getResponseHeaders();
+            errorReason = this.connection.readError();
+            responseBody = new ByteArrayInputStream(new byte[0]);
+        }
+
+        return new HttpStreamResponse(responseStatus, responseBody, headerFields, errorReason);
+    }
+
+    /**
+     * Sends the request with the shared {@link HttpAsyncClient}, without
+     * waiting for the response.
+     *
+     * @return The future completed with the HTTPS response, or exceptionally
+     * with the IOException of a failed request.
+     *
+     * @throws IOException This exception thrown if the shared client could not
+     * be created.
+     */
+    public CompletableFuture<HttpResponse> sendAsync() throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_21_011: [The function shall send the request with the shared HttpAsyncClient.]
+        return sendAsync(HttpAsyncClient.getDefault());
+    }
+
+    /**
+     * Sends the request with the given {@link HttpAsyncClient}, without
+     * waiting for the response.
+     *
+     * @param client The client which sends the request.
+     *
+     * @return The future completed with the HTTPS response, or exceptionally
+     * with the IOException of a failed request.
+     */
+    public CompletableFuture<HttpResponse> sendAsync(HttpAsyncClient client)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_21_012: [The function shall throw IllegalArgumentException if the client is null.]
+        if (client == null)
+        {
+            throw new IllegalArgumentException("client cannot be null");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_21_013: [The function shall send the request as formatted in the constructor, with its header fields and read timeout, and return the future of the response.]
+        return client.send(this.url, this.method, this.headerFields, this.body, this.readTimeoutMillis);
+    }
+
     /**
      * Sets the header field to the given value.
      *
@@ -98,7 +232,11 @@ public class HttpRequest
     public HttpRequest setHeaderField(String field, String value)
     {
         // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_12_009: [The function shall set the header field with the given name to the given value.]
-        this.connection.setRequestHeader(field, value);
+        if (this.connection != null)
+        {
+            this.connection.setRequestHeader(field, value);
+        }
+        this.headerFields.put(field, value);
         return this;
     }
 
@@ -114,12 +252,28 @@ public class HttpRequest
     public HttpRequest setReadTimeoutMillis(int timeout)
     {
         // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_12_010: [The function shall set the read timeout for the request to the given value.]
-        this.connection.setReadTimeoutMillis(timeout);
+        if (this.connection != null)
+        {
+            this.connection.setReadTimeoutMillis(timeout);
+        }
+        this.readTimeoutMillis = timeout;
         return this;
     }
 
+    private void checkConnection()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_21_018: [If the request was created for the asynchronous client, the function shall throw IllegalStateException.]
+        if (this.connection == null)
+        {
+            throw new IllegalStateException("The request was created to be sent with sendAsync");
+        }
+    }
+
     protected HttpRequest()
     {
         this.connection = null;
+        this.url = null;
+        this.method = null;
+        this.body = null;
     }
 }
@@ -5,6 +5,7 @@
 
 package com.microsoft.azure.sdk.iot.service.transport.http;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -74,6 +75,17 @@ public class HttpResponse
         return Arrays.copyOf(this.body, this.body.length);
     }
 
+    /**
+     * Getter for a read-only view of the response body. Unlike
+     * {@link #getBody()}, the body is not copied.
+     *
+     * @return A read-only view of the response body.
+     */
+    public ByteBuffer getBodyAsByteBuffer()
+    {
+        return ByteBuffer.wrap(this.body).asReadOnlyBuffer();
+    }
+
     /**
      * Getter for a header field.
      *
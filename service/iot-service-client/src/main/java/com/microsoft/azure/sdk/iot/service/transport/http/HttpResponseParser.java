@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental parser of an HTTP/1.1 response. The response is fed to the parser
+ * in pieces as they arrive from the network, so no thread has to wait for the
+ * rest of it. Supports bodies delimited by the 'Content-Length' header, by the
+ * chunked transfer coding, or by the end of the connection.
+ */
+public class HttpResponseParser
+{
+    /** The longest status line, header line or chunk size line that is accepted. */
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private enum State
+    {
+        STATUS_LINE,
+        HEADER_LINE,
+        FIXED_LENGTH_BODY,
+        CHUNK_SIZE_LINE,
+        CHUNK_DATA,
+        CHUNK_DATA_END,
+        TRAILER_LINE,
+        BODY_UNTIL_CLOSE,
+        COMPLETE
+    }
+
+    private final boolean hasBody;
+
+    private State state = State.STATUS_LINE;
+    private byte[] line = new byte[256];
+    private int lineLength = 0;
+
+    private int status = -1;
+    private final Map<String, List<String>> headerFields = new LinkedHashMap<>();
+    private boolean keepAlive = true;
+
+    private byte[] content = new byte[0];
+    private int contentLength = 0;
+    private long remainingLength = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param hasBody false if the response cannot have a body whatever its
+     * headers say, as for the responses to HEAD requests.
+     */
+    public HttpResponseParser(boolean hasBody)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_001: [The constructor shall create a parser waiting for the status line of the response.]
+        this.hasBody = hasBody;
+    }
+
+    /**
+     * Parses the next piece of the response. Only the bytes which belong to
+     * the response are consumed, anything after its end is left in the buffer.
+     *
+     * @param buffer the next bytes of the response.
+     * @return true if the response is complete.
+     * @throws IOException if the response is not a valid HTTP/1.1 response.
+     */
+    public boolean parse(ByteBuffer buffer) throws IOException
+    {
+        while ((this.state != State.COMPLETE) && buffer.hasRemaining())
+        {
+            switch (this.state)
+            {
+                case STATUS_LINE:
+                    if (readLine(buffer))
+                    {
+                        parseStatusLine();
+                    }
+                    break;
+
+                case HEADER_LINE:
+                    if (readLine(buffer))
+                    {
+                        parseHeaderLine();
+                    }
+                    break;
+
+                case FIXED_LENGTH_BODY:
+                case CHUNK_DATA:
+                    readContent(buffer);
+                    break;
+
+                case CHUNK_SIZE_LINE:
+                    if (readLine(buffer))
+                    {
+                        parseChunkSizeLine();
+                    }
+                    break;
+
+                case CHUNK_DATA_END:
+                    if (readLine(buffer))
+                    {
+                        // Codes_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_007: [If the data of a chunk is not followed by a line break, the function shall throw IOException.]
+                        if (this.lineLength != 0)
+                        {
+                            throw new IOException("Invalid HTTP chunk, the data does not end with a line break");
+                        }
+                        this.state = State.CHUNK_SIZE_LINE;
+                    }
+                    break;
+
+                case TRAILER_LINE:
+                    // the trailer fields are not needed, they are skipped up to the empty line.
+                    if (readLine(buffer) && takeLine().isEmpty())
+                    {
+                        this.state = State.COMPLETE;
+                    }
+                    break;
+
+                case BODY_UNTIL_CLOSE:
+                    // Codes_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_008: [If the response has neither a 'Content-Length' nor a chunked 'Transfer-Encoding' header, the body shall last until the end of the connection.]
+                    ensureContentCapacity(this.contentLength + buffer.remaining());
+                    int length = buffer.remaining();
+                    buffer.get(this.content, this.contentLength, length);
+                    this.contentLength += length;
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_002: [The function shall return true once the whole response was parsed, and false if it needs more bytes.]
+        return this.state == State.COMPLETE;
+    }
+
+    /**
+     * Tells the parser that the connection was closed by the server.
+     *
+     * @return true if the response is complete.
+     */
+    public boolean endOfStream()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_009: [The function shall complete a response whose body lasts until the end of the connection, and return if the response is complete.]
+        if (this.state == State.BODY_UNTIL_CLOSE)
+        {
+            this.state = State.COMPLETE;
+        }
+        this.keepAlive = false;
+        return this.state == State.COMPLETE;
+    }
+
+    /**
+     * Getter for the status code.
+     *
+     * @return the status code, or -1 if the status line was not parsed yet.
+     */
+    public int getStatus()
+    {
+        return this.status;
+    }
+
+    /**
+     * Getter for the header fields, in the form expected by {@link HttpResponse}.
+     *
+     * @return the map of the header field names to their values.
+     */
+    public Map<String, List<String>> getHeaderFields()
+    {
+        return this.headerFields;
+    }
+
+    /**
+     * Getter for the body of the response, without any transfer coding.
+     *
+     * @return the body of the response.
+     */
+    public byte[] getContent()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_010: [The function shall return the body of the response, with the chunks of a chunked body joined together.]
+        if (this.content.length == this.contentLength)
+        {
+            return this.content;
+        }
+        return Arrays.copyOf(this.content, this.contentLength);
+    }
+
+    /**
+     * Tells if the connection can be used for another request once the
+     * response is complete.
+     *
+     * @return true if the connection can be reused.
+     */
+    public boolean isKeepAlive()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_011: [The function shall return false if the response is HTTP/1.0 without 'Connection: keep-alive', if it has 'Connection: close', or if its body lasts until the end of the connection.]
+        return this.keepAlive;
+    }
+
+    private boolean readLine(ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            byte b = buffer.get();
+            if (b == '\n')
+            {
+                if ((this.lineLength > 0) && (this.line[this.lineLength - 1] == '\r'))
+                {
+                    this.lineLength--;
+                }
+                return true;
+            }
+
+            // Codes_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_012: [If a line of the response is longer than 64KB, the function shall throw IOException.]
+            if (this.lineLength == MAX_LINE_LENGTH)
+            {
+                throw new IOException("HTTP response line is too long");
+            }
+            if (this.lineLength == this.line.length)
+            {
+                this.line = Arrays.copyOf(this.line, Math.min(2 * this.line.length, MAX_LINE_LENGTH));
+            }
+            this.line[this.lineLength++] = b;
+        }
+
+        return false;
+    }
+
+    private String takeLine()
+    {
+        String value = new String(this.line, 0, this.lineLength, StandardCharsets.ISO_8859_1);
+        this.lineLength = 0;
+        return value;
+    }
+
+    private void parseStatusLine() throws IOException
+    {
+        String statusLine = takeLine();
+        if (statusLine.isEmpty())
+        {
+            // tolerate empty lines before the status line.
+            return;
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_003: [If the status line is not `HTTP/x.y code [reason]`, the function shall throw IOException.]
+        int firstSpace = statusLine.indexOf(' ');
+        if (!statusLine.startsWith("HTTP/") || (firstSpace < 0))
+        {
+            throw new IOException("Invalid HTTP status line: " + statusLine);
+        }
+
+        int secondSpace = statusLine.indexOf(' ', firstSpace + 1);
+        String code = (secondSpace < 0) ? statusLine.substring(firstSpace + 1) : statusLine.substring(firstSpace + 1, secondSpace);
+        try
+        {
+            this.status = Integer.parseInt(code);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException("Invalid HTTP status code: " + statusLine);
+        }
+
+        this.keepAlive = !statusLine.startsWith("HTTP/1.0");
+        this.headerFields.put(null, Collections.singletonList(statusLine));
+        this.state = State.HEADER_LINE;
+    }
+
+    private void parseHeaderLine() throws IOException
+    {
+        if (this.lineLength == 0)
+        {
+            takeLine();
+            endOfHeaders();
+            return;
+        }
+
+        String headerLine = takeLine();
+
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_004: [If a header line has no colon, the function shall throw IOException.]
+        int colon = headerLine.indexOf(':');
+        if (colon <= 0)
+        {
+            throw new IOException("Invalid HTTP header line: " + headerLine);
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_005: [The function shall collect the values of the header fields by field name.]
+        String field = headerLine.substring(0, colon).trim();
+        String value = headerLine.substring(colon + 1).trim();
+        List<String> values = this.headerFields.get(field);
+        if (values == null)
+        {
+            values = new ArrayList<>(1);
+            this.headerFields.put(field, values);
+        }
+        values.add(value);
+    }
+
+    private void endOfHeaders() throws IOException
+    {
+        // 1xx responses are followed by the final response.
+        if ((this.status >= 100) && (this.status < 200))
+        {
+            this.headerFields.clear();
+            this.status = -1;
+            this.state = State.STATUS_LINE;
+            return;
+        }
+
+        String connection = getHeaderValue("Connection");
+        if (connection != null)
+        {
+            if (connection.equalsIgnoreCase("close"))
+            {
+                this.keepAlive = false;
+            }
+            else if (connection.equalsIgnoreCase("keep-alive"))
+            {
+                this.keepAlive = true;
+            }
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_006: [The response shall have no body if the request cannot have one, or if the status is 204 or 304.]
+        if (!this.hasBody || (this.status == 204) || (this.status == 304))
+        {
+            this.state = State.COMPLETE;
+            return;
+        }
+
+        String transferEncoding = getHeaderValue("Transfer-Encoding");
+        String contentLengthValue = getHeaderValue("Content-Length");
+        if ((transferEncoding != null) && !transferEncoding.equalsIgnoreCase("identity"))
+        {
+            this.state = State.CHUNK_SIZE_LINE;
+        }
+        else if (contentLengthValue != null)
+        {
+            try
+            {
+                this.remainingLength = Long.parseLong(contentLengthValue);
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IOException("Invalid HTTP Content-Length: " + contentLengthValue);
+            }
+            if ((this.remainingLength < 0) || (this.remainingLength > Integer.MAX_VALUE))
+            {
+                throw new IOException("Invalid HTTP Content-Length: " + contentLengthValue);
+            }
+
+            this.content = new byte[(int) this.remainingLength];
+            this.state = (this.remainingLength == 0) ? State.COMPLETE : State.FIXED_LENGTH_BODY;
+        }
+        else
+        {
+            this.keepAlive = false;
+            this.state = State.BODY_UNTIL_CLOSE;
+        }
+    }
+
+    private void parseChunkSizeLine() throws IOException
+    {
+        String chunkSizeLine = takeLine();
+        int extension = chunkSizeLine.indexOf(';');
+        String chunkSize = ((extension < 0) ? chunkSizeLine : chunkSizeLine.substring(0, extension)).trim();
+        try
+        {
+            this.remainingLength = Long.parseLong(chunkSize, 16);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException("Invalid HTTP chunk size: " + chunkSizeLine);
+        }
+        if ((this.remainingLength < 0) || (this.contentLength + this.remainingLength > Integer.MAX_VALUE))
+        {
+            throw new IOException("Invalid HTTP chunk size: " + chunkSizeLine);
+        }
+
+        if (this.remainingLength == 0)
+        {
+            this.state = State.TRAILER_LINE;
+        }
+        else
+        {
+            ensureContentCapacity(this.contentLength + (int) this.remainingLength);
+            this.state = State.CHUNK_DATA;
+        }
+    }
+
+    private void readContent(ByteBuffer buffer)
+    {
+        int length = (int) Math.min(this.remainingLength, buffer.remaining());
+        buffer.get(this.content, this.contentLength, length);
+        this.contentLength += length;
+        this.remainingLength -= length;
+
+        if (this.remainingLength == 0)
+        {
+            this.state = (this.state == State.CHUNK_DATA) ? State.CHUNK_DATA_END : State.COMPLETE;
+        }
+    }
+
+    private void ensureContentCapacity(int capacity)
+    {
+        if (capacity > this.content.length)
+        {
+            this.content = Arrays.copyOf(this.content, Math.max(capacity, 2 * this.content.length));
+        }
+    }
+
+    private String getHeaderValue(String field)
+    {
+        for (Map.Entry<String, List<String>> headerField : this.headerFields.entrySet())
+        {
+            if ((headerField.getKey() != null) && headerField.getKey().equalsIgnoreCase(field))
+            {
+                List<String> values = headerField.getValue();
+                return values.get(values.size() - 1);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An HTTPS response whose body has not been read. The body is parsed from
+ * {@link #getBodyStream()} as it arrives, so {@link #getBody()} is empty.
+ */
+public class HttpStreamResponse extends HttpResponse implements Closeable
+{
+    private static final int DRAIN_BUFFER_SIZE = 4096;
+
+    private final InputStream bodyStream;
+
+    /**
+     * Constructor.
+     *
+     * @param status The HTTPS status code.
+     * @param bodyStream The unread response body.
+     * @param headerFields The map of header field names and the values associated with the field name.
+     * @param errorReason The error reason.
+     */
+    public HttpStreamResponse(int status, InputStream bodyStream,
+                              Map<String, List<String>> headerFields,
+                              byte[] errorReason)
+    {
+        super(status, new byte[0], headerFields, errorReason);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPSTREAMRESPONSE_21_001: [The constructor shall throw IllegalArgumentException if the body stream is null.]
+        if (bodyStream == null)
+        {
+            throw new IllegalArgumentException("bodyStream cannot be null");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPSTREAMRESPONSE_21_002: [The constructor shall store the body stream so that getBodyStream can return it later.]
+        this.bodyStream = bodyStream;
+    }
+
+    /**
+     * Getter for the unread response body.
+     *
+     * @return The response body stream.
+     */
+    public InputStream getBodyStream()
+    {
+        return this.bodyStream;
+    }
+
+    /**
+     * Reads the rest of the body and closes the stream, so that the
+     * underlying HTTPS connection can be reused.
+     *
+     * @throws IOException This exception thrown if the stream could not be read.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_HTTPSTREAMRESPONSE_21_003: [The function shall read the body stream to its end and close it.]
+        try
+        {
+            byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+            while (this.bodyStream.read(buffer) != -1)
+            {
+                // Discard the part of the body that was not parsed.
+            }
+        }
+        finally
+        {
+            this.bodyStream.close();
+        }
+    }
+}
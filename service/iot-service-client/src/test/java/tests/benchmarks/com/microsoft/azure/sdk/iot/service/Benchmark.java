@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.benchmarks.com.microsoft.azure.sdk.iot.service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+
+/**
+ * Minimal harness for the service client benchmarks. JMH is not part of the build, so each benchmark
+ * is a class with a main method which measures its operations with this harness: a warm-up, then
+ * timed iterations on the calling thread, reporting the time and, on JVMs which count them, the bytes
+ * allocated per operation.
+ *
+ * The benchmarks are not unit tests, so surefire does not run them. Run one from
+ * service/iot-service-client with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=tests.benchmarks.com.microsoft.azure.sdk.iot.service.XxxBenchmark
+ * </pre>
+ */
+public final class Benchmark
+{
+    /** An operation to be measured. Its result is consumed, so the JIT cannot drop the work. */
+    @FunctionalInterface
+    public interface Operation
+    {
+        Object run() throws Exception;
+    }
+
+    /** The time and allocation of one operation. */
+    public static final class Result
+    {
+        public final double nanosPerOperation;
+        public final double bytesPerOperation;
+
+        private Result(double nanosPerOperation, double bytesPerOperation)
+        {
+            this.nanosPerOperation = nanosPerOperation;
+            this.bytesPerOperation = bytesPerOperation;
+        }
+    }
+
+    private static volatile int sink;
+
+    private Benchmark()
+    {
+    }
+
+    /**
+     * Runs the operation warmupIterations times, then measures iterations runs of it and prints the
+     * time and the allocated bytes per operation.
+     *
+     * @param name the name printed with the result.
+     * @param warmupIterations the number of runs before the measure.
+     * @param iterations the number of measured runs.
+     * @param operation the operation to be measured.
+     * @return the measured result.
+     * @throws Exception if the operation failed.
+     */
+    public static Result measure(String name, int warmupIterations, int iterations, Operation operation) throws Exception
+    {
+        for (int i = 0; i < warmupIterations; i++)
+        {
+            consume(operation.run());
+        }
+
+        long startBytes = allocatedBytes();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+        {
+            consume(operation.run());
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long endBytes = allocatedBytes();
+
+        Result result = new Result((double) elapsedNanos / iterations,
+                (startBytes < 0) ? Double.NaN : (double) (endBytes - startBytes) / iterations);
+        System.out.println(String.format("%-56s %14.1f ns/op %14.1f B/op", name, result.nanosPerOperation, result.bytesPerOperation));
+        return result;
+    }
+
+    /**
+     * Prints how many times faster the second result is than the first one.
+     *
+     * @param before the result of the baseline.
+     * @param after the result of the current code.
+     */
+    public static void printSpeedup(Result before, Result after)
+    {
+        System.out.println(String.format("%-56s %14.1fx", "speedup", before.nanosPerOperation / after.nanosPerOperation));
+    }
+
+    /**
+     * Sets a private field, so a benchmark can bring an object into the state it measures without
+     * the network.
+     *
+     * @param target the object which holds the field.
+     * @param fieldName the name of the field.
+     * @param value the new value of the field.
+     * @throws ReflectiveOperationException if the field cannot be set.
+     */
+    public static void setField(Object target, String fieldName, Object value) throws ReflectiveOperationException
+    {
+        findField(target.getClass(), fieldName).set(target, value);
+    }
+
+    /**
+     * Gets a private field.
+     *
+     * @param target the object which holds the field.
+     * @param fieldName the name of the field.
+     * @param <T> the type of the field.
+     * @return the value of the field.
+     * @throws ReflectiveOperationException if the field cannot be read.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T getField(Object target, String fieldName) throws ReflectiveOperationException
+    {
+        return (T) findField(target.getClass(), fieldName).get(target);
+    }
+
+    private static Field findField(Class<?> clazz, String fieldName) throws NoSuchFieldException
+    {
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass())
+        {
+            try
+            {
+                Field field = c.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                return field;
+            }
+            catch (NoSuchFieldException e)
+            {
+                // look in the superclass
+            }
+        }
+        throw new NoSuchFieldException(fieldName);
+    }
+
+    private static void consume(Object value)
+    {
+        sink += System.identityHashCode(value);
+    }
+
+    private static long allocatedBytes()
+    {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean)
+        {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.benchmarks.com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.CloudToDeviceSender;
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.Message;
+import com.microsoft.azure.sdk.iot.service.ServiceClient;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Measures the throughput of cloud to device messages sent to a LocalAmqpHub: ServiceClient.send,
+ * which opens a TLS connection, a session and a link for each message and closes them once the
+ * message is acknowledged, against CloudToDeviceSender, which keeps its connection open, first
+ * sending one message at a time, then sending batches of messages without waiting for each
+ * acknowledgement in turn.
+ *
+ * The stand-in runs on the same machine, so the numbers hold the TLS handshakes and the AMQP frames
+ * but not the network latency, which adds a round trip to each connection and each blocking send.
+ */
+public class CloudToDeviceSenderBenchmark
+{
+    private static final String CONNECTION_STRING = "HostName=" + LocalAmqpHub.HOST_NAME
+            + ";SharedAccessKeyName=iothubowner;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+    private static final String DEVICE_ID = "benchmark-device";
+    private static final byte[] BODY = "{\"command\":\"reboot\"}".getBytes();
+    private static final int CONNECTION_PER_MESSAGE_WARMUP = 50;
+    private static final int CONNECTION_PER_MESSAGE_ITERATIONS = 500;
+    private static final int BLOCKING_WARMUP = 1000;
+    private static final int BLOCKING_ITERATIONS = 5000;
+    private static final int BATCH_SIZE = 1000;
+    private static final int BATCH_WARMUP = 20;
+    private static final int BATCH_ITERATIONS = 100;
+
+    public static void main(String[] args) throws Exception
+    {
+        try (LocalAmqpHub hub = new LocalAmqpHub())
+        {
+            ServiceClient serviceClient = ServiceClient.createFromConnectionString(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+            serviceClient.open();
+            Benchmark.Result connectionPerMessage = Benchmark.measure("ServiceClient.send, connection per message",
+                    CONNECTION_PER_MESSAGE_WARMUP, CONNECTION_PER_MESSAGE_ITERATIONS, () ->
+                    {
+                        serviceClient.send(DEVICE_ID, new Message(BODY));
+                        return null;
+                    });
+            serviceClient.close();
+            double before = connectionPerMessage.nanosPerOperation;
+
+            CloudToDeviceSender sender = serviceClient.getCloudToDeviceSender();
+            sender.open();
+            try
+            {
+                Benchmark.Result blocking = Benchmark.measure("CloudToDeviceSender.send, one at a time",
+                        BLOCKING_WARMUP, BLOCKING_ITERATIONS, () ->
+                        {
+                            sender.send(DEVICE_ID, new Message(BODY));
+                            return null;
+                        });
+
+                Benchmark.Result pipelined = Benchmark.measure("CloudToDeviceSender.sendAsync, batch of " + BATCH_SIZE,
+                        BATCH_WARMUP, BATCH_ITERATIONS, () ->
+                        {
+                            CompletableFuture<?>[] futures = new CompletableFuture<?>[BATCH_SIZE];
+                            for (int i = 0; i < BATCH_SIZE; i++)
+                            {
+                                futures[i] = sender.sendAsync(DEVICE_ID, new Message(BODY));
+                            }
+                            return CompletableFuture.allOf(futures).get();
+                        });
+
+                printThroughput("connection per message", before, before);
+                printThroughput("persistent connection, one at a time", blocking.nanosPerOperation, before);
+                printThroughput("persistent connection, pipelined", pipelined.nanosPerOperation / BATCH_SIZE, before);
+            }
+            finally
+            {
+                sender.close();
+            }
+
+            System.out.println(String.format("%-56s %14d", "messages received by the hub", hub.getReceivedMessages()));
+            System.out.println(String.format("%-56s %14d", "connections accepted by the hub", hub.getAcceptedConnections()));
+        }
+    }
+
+    private static void printThroughput(String name, double nanosPerMessage, double baselineNanosPerMessage)
+    {
+        System.out.println(String.format("%-56s %14.1f msg/s %12.1fx", name, 1e9 / nanosPerMessage, baselineNanosPerMessage / nanosPerMessage));
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.benchmarks.com.microsoft.azure.sdk.iot.service;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.microsoft.azure.sdk.iot.service.AuthenticationMechanism;
+import com.microsoft.azure.sdk.iot.service.Device;
+import com.microsoft.azure.sdk.iot.service.DeviceStatus;
+import com.microsoft.azure.sdk.iot.service.ExportImportDevice;
+import com.microsoft.azure.sdk.iot.service.ExportImportDeviceReader;
+import com.microsoft.azure.sdk.iot.service.ExportImportDeviceShards;
+import com.microsoft.azure.sdk.iot.service.ExportImportDeviceWriter;
+import com.microsoft.azure.sdk.iot.service.ImportMode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures ExportImportDeviceWriter and ExportImportDeviceReader on generated local blobs, plain
+ * and gzip, the split of a blob into 4 gzip shards and their parallel read, against the way the
+ * samples read a blob before: the whole blob as a String, then one Gson call for each line.
+ *
+ * The number of devices is the first argument, 500000 by default. The streaming phases run in any
+ * heap; the previous read needs the whole blob in memory, so it is skipped with a second argument
+ * of "streamingOnly", for instance to run 5000000 devices with -Xmx32m.
+ */
+public class ExportImportDeviceBenchmark
+{
+    private static final int DEFAULT_DEVICE_COUNT = 500000;
+    private static final int SHARD_COUNT = 4;
+
+    public static void main(String[] args) throws Exception
+    {
+        final int deviceCount = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_DEVICE_COUNT;
+        final boolean streamingOnly = (args.length > 1) && args[1].equals("streamingOnly");
+
+        File directory = Files.createTempDirectory("ExportImportDeviceBenchmark").toFile();
+        final File plainBlob = new File(directory, "devices.txt");
+        final File gzipBlob = new File(directory, "devices.txt.gz");
+        final List<File> shardBlobs = new ArrayList<>();
+        for (int i = 0; i < SHARD_COUNT; i++)
+        {
+            shardBlobs.add(new File(directory, "devices-" + i + ".txt.gz"));
+        }
+
+        try
+        {
+            phase("write plain", deviceCount, () -> writeDevices(plainBlob, false, deviceCount));
+            System.out.println(String.format("%-40s %10d MB", "plain blob", plainBlob.length() / (1024 * 1024)));
+            phase("read plain", deviceCount, () -> readDevices(plainBlob, false));
+            phase("write gzip", deviceCount, () -> writeDevices(gzipBlob, true, deviceCount));
+            System.out.println(String.format("%-40s %10d MB", "gzip blob", gzipBlob.length() / (1024 * 1024)));
+            phase("read gzip", deviceCount, () -> readDevices(gzipBlob, true));
+            phase("split into " + SHARD_COUNT + " gzip shards", deviceCount, () -> splitDevices(gzipBlob, shardBlobs));
+            phase("parallel read of " + SHARD_COUNT + " shards", deviceCount, () -> readShards(shardBlobs));
+
+            if (!streamingOnly)
+            {
+                phase("read plain, previous whole blob String", deviceCount, () -> previousReadDevices(plainBlob));
+            }
+        }
+        finally
+        {
+            for (File file : directory.listFiles())
+            {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    private static long writeDevices(File blob, boolean isGzip, int deviceCount) throws Exception
+    {
+        try (ExportImportDeviceWriter writer = new ExportImportDeviceWriter(new BufferedOutputStream(new FileOutputStream(blob)), isGzip))
+        {
+            for (int i = 0; i < deviceCount; i++)
+            {
+                String deviceId = UUID.randomUUID().toString();
+                Device device = Device.createFromId(deviceId, null, null);
+
+                ExportImportDevice exportImportDevice = new ExportImportDevice();
+                exportImportDevice.setId(deviceId);
+                exportImportDevice.setAuthentication(new AuthenticationMechanism(device.getSymmetricKey()));
+                exportImportDevice.setStatus(DeviceStatus.Enabled);
+                exportImportDevice.setImportMode(ImportMode.CreateOrUpdate);
+                writer.write(exportImportDevice);
+            }
+            return writer.getCount();
+        }
+    }
+
+    private static long readDevices(File blob, boolean isGzip) throws IOException
+    {
+        try (ExportImportDeviceReader reader = new ExportImportDeviceReader(new FileInputStream(blob), isGzip))
+        {
+            while (reader.hasNext())
+            {
+                reader.next();
+            }
+            return reader.getCount();
+        }
+    }
+
+    private static long splitDevices(File blob, List<File> shardBlobs) throws IOException
+    {
+        List<ExportImportDeviceWriter> shards = new ArrayList<>();
+        try (ExportImportDeviceReader reader = new ExportImportDeviceReader(new FileInputStream(blob), true))
+        {
+            for (File shardBlob : shardBlobs)
+            {
+                shards.add(new ExportImportDeviceWriter(new BufferedOutputStream(new FileOutputStream(shardBlob)), true));
+            }
+            return ExportImportDeviceShards.split(reader, shards);
+        }
+        finally
+        {
+            for (ExportImportDeviceWriter shard : shards)
+            {
+                shard.close();
+            }
+        }
+    }
+
+    private static long readShards(List<File> shardBlobs) throws IOException, InterruptedException
+    {
+        List<ExportImportDeviceReader> shards = new ArrayList<>();
+        try
+        {
+            for (File shardBlob : shardBlobs)
+            {
+                shards.add(new ExportImportDeviceReader(new BufferedInputStream(new FileInputStream(shardBlob)), true));
+            }
+            AtomicLong enabledCount = new AtomicLong();
+            ExportImportDeviceShards.readInParallel(shards, device ->
+            {
+                if (device.getStatus() == DeviceStatus.Enabled)
+                {
+                    enabledCount.incrementAndGet();
+                }
+            });
+            return enabledCount.get();
+        }
+        finally
+        {
+            for (ExportImportDeviceReader shard : shards)
+            {
+                shard.close();
+            }
+        }
+    }
+
+    /* The read of the samples before the streaming reader: the whole blob as a String, then one Gson call per line. */
+    private static long previousReadDevices(File blob) throws IOException
+    {
+        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+        String devices = new String(Files.readAllBytes(blob.toPath()), StandardCharsets.UTF_8);
+
+        long count = 0;
+        for (String line : devices.split("\r?\n"))
+        {
+            if (!line.isEmpty())
+            {
+                gson.fromJson(line, ExportImportDevice.class);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private interface Phase
+    {
+        long run() throws Exception;
+    }
+
+    private static void phase(String name, int deviceCount, Phase phase) throws Exception
+    {
+        long startNanos = System.nanoTime();
+        long count = phase.run();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        if (count != deviceCount)
+        {
+            throw new IllegalStateException(name + " processed " + count + " devices instead of " + deviceCount);
+        }
+        System.out.println(String.format("%-40s %10.1f s %10.0f devices/s", name, seconds, deviceCount / seconds));
+    }
+}
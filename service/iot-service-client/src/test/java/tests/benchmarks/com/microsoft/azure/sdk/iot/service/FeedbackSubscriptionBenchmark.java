@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.benchmarks.com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.FeedbackBatch;
+import com.microsoft.azure.sdk.iot.service.FeedbackReceiver;
+import com.microsoft.azure.sdk.iot.service.FeedbackSubscription;
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.ServiceClient;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the throughput of feedback batches received from a LocalAmqpHub with an endless
+ * feedback backlog: FeedbackReceiver.receive, which opens a TLS connection, a session and a link
+ * for each batch and closes them once the batch arrives, against FeedbackSubscription, which keeps
+ * its link open and pushes each batch to a callback, granting the credit back as it goes.
+ *
+ * A receive call which times out counts in the time of the previous receiver, as it does for its
+ * caller, and the number of these calls is printed with the results.
+ *
+ * The stand-in runs on the same machine, so the numbers hold the TLS handshakes and the AMQP frames
+ * but not the network latency, which adds a round trip to each connection.
+ */
+public class FeedbackSubscriptionBenchmark
+{
+    private static final String CONNECTION_STRING = "HostName=" + LocalAmqpHub.HOST_NAME
+            + ";SharedAccessKeyName=iothubowner;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+    private static final String FEEDBACK_JSON = "[{\"originalMessageId\":\"a\",\"description\":\"Success\",\"deviceGenerationId\":\"1\","
+            + "\"deviceId\":\"benchmark-device\",\"enqueuedTimeUtc\":\"2017-01-01T00:00:00.000Z\",\"statusCode\":\"Success\"}]";
+    private static final long RECEIVE_TIMEOUT_MILLIS = 10000;
+    private static final int CONNECTION_PER_BATCH_WARMUP = 50;
+    private static final int CONNECTION_PER_BATCH_ITERATIONS = 500;
+    private static final int SUBSCRIPTION_WARMUP = 50000;
+    private static final int SUBSCRIPTION_ITERATIONS = 500000;
+
+    public static void main(String[] args) throws Exception
+    {
+        try (LocalAmqpHub hub = new LocalAmqpHub())
+        {
+            hub.setFeedback(FEEDBACK_JSON);
+            ServiceClient serviceClient = ServiceClient.createFromConnectionString(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+
+            AtomicInteger missedBatches = new AtomicInteger();
+            FeedbackReceiver feedbackReceiver = serviceClient.getFeedbackReceiver();
+            feedbackReceiver.open();
+            Benchmark.Result connectionPerBatch = Benchmark.measure("FeedbackReceiver.receive, connection per batch",
+                    CONNECTION_PER_BATCH_WARMUP, CONNECTION_PER_BATCH_ITERATIONS, () ->
+                    {
+                        FeedbackBatch feedbackBatch = feedbackReceiver.receive(RECEIVE_TIMEOUT_MILLIS);
+                        if (feedbackBatch == null)
+                        {
+                            missedBatches.incrementAndGet();
+                        }
+                        return feedbackBatch;
+                    });
+            feedbackReceiver.close();
+            double before = connectionPerBatch.nanosPerOperation;
+
+            Semaphore receivedBatches = new Semaphore(0);
+            FeedbackSubscription feedbackSubscription = serviceClient.getFeedbackSubscription(feedbackBatch -> receivedBatches.release());
+            feedbackSubscription.open();
+            try
+            {
+                Benchmark.Result subscription = Benchmark.measure("FeedbackSubscription, callback per batch",
+                        SUBSCRIPTION_WARMUP, SUBSCRIPTION_ITERATIONS, () ->
+                        {
+                            receivedBatches.acquire();
+                            return null;
+                        });
+
+                printThroughput("connection per batch", before, before);
+                printThroughput("subscription", subscription.nanosPerOperation, before);
+            }
+            finally
+            {
+                feedbackSubscription.close();
+            }
+
+            System.out.println(String.format("%-56s %14d", "receive calls which timed out, connection per batch", missedBatches.get()));
+            System.out.println(String.format("%-56s %14d", "feedback messages sent by the hub", hub.getSentFeedback()));
+            System.out.println(String.format("%-56s %14d", "feedback messages settled by the clients", hub.getAcknowledgedFeedback()));
+            System.out.println(String.format("%-56s %14d", "connections accepted by the hub", hub.getAcceptedConnections()));
+        }
+    }
+
+    private static void printThroughput(String name, double nanosPerBatch, double baselineNanosPerBatch)
+    {
+        System.out.println(String.format("%-56s %14.1f batch/s %10.1fx", name, 1e9 / nanosPerBatch, baselineNanosPerBatch / nanosPerBatch));
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.benchmarks.com.microsoft.azure.sdk.iot.service;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.engine.Collector;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sasl;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Transport;
+
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local stand-in for the AMQP endpoint of an IoT Hub, for the benchmarks of the AMQP senders and
+ * receivers. It listens with TLS on 127.0.0.1 at the port the service client connects to, accepts
+ * any SASL PLAIN token, opens every link the client opens, and accepts and settles every message
+ * the client sends, granting the credit back as soon as a message arrives. Once a feedback message
+ * is set, it also sends that message on the links the client receives from, as many times as the
+ * client grants credit, like a hub with an endless feedback backlog.
+ *
+ * Each connection runs a Proton engine on its own thread over a JSSE socket. The server certificate
+ * is a LocalCertificate made at startup; the client does not verify it.
+ * Proton adds the anonymous cipher suites to the client when it does not verify the peer, and fails
+ * if the JDK disabled all of them, as recent JDKs do, so the stand-in enables them again. Create it
+ * before anything else in the JVM uses TLS.
+ */
+public final class LocalAmqpHub implements Closeable
+{
+    /** The host name to put in the connection string of the client. */
+    public static final String HOST_NAME = "127.0.0.1";
+    /** The port of AMQPS, which the service client always connects to. */
+    public static final int AMQPS_PORT = 5671;
+
+    private static final String DISABLED_TLS_ALGORITHMS = "jdk.tls.disabledAlgorithms";
+    private static final int LINK_CREDIT = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File directory;
+    private final SSLServerSocket serverSocket;
+    private final AtomicLong receivedMessages = new AtomicLong();
+    private final AtomicLong acceptedConnections = new AtomicLong();
+    private final AtomicLong sentFeedback = new AtomicLong();
+    private final AtomicLong acknowledgedFeedback = new AtomicLong();
+    private final AtomicLong nextTag = new AtomicLong();
+    private volatile byte[] encodedFeedback;
+
+    /**
+     * Creates the server certificate and starts to accept connections.
+     *
+     * @throws Exception if the certificate cannot be made or the port is in use.
+     */
+    public LocalAmqpHub() throws Exception
+    {
+        String disabledAlgorithms = Security.getProperty(DISABLED_TLS_ALGORITHMS);
+        if (disabledAlgorithms != null)
+        {
+            Security.setProperty(DISABLED_TLS_ALGORITHMS, disabledAlgorithms.replaceAll("(^|,)\\s*anon\\s*(?=,|$)", ""));
+        }
+
+        this.directory = Files.createTempDirectory("LocalAmqpHub").toFile();
+        this.serverSocket = new LocalCertificate(this.directory, HOST_NAME).createServerSocket(HOST_NAME, AMQPS_PORT, 50);
+
+        Thread acceptor = new Thread(() ->
+        {
+            while (!this.serverSocket.isClosed())
+            {
+                try
+                {
+                    SSLSocket socket = (SSLSocket) this.serverSocket.accept();
+                    this.acceptedConnections.incrementAndGet();
+                    Thread connectionThread = new Thread(() -> serve(socket), "LocalAmqpHub-connection");
+                    connectionThread.setDaemon(true);
+                    connectionThread.start();
+                }
+                catch (IOException e)
+                {
+                    // the benchmark closed the server
+                }
+            }
+        }, "LocalAmqpHub-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Sets the feedback message to send to the clients, as a Data body like the IoT Hub sends it.
+     *
+     * @param feedbackJson the JSON array of feedback records.
+     */
+    public void setFeedback(String feedbackJson)
+    {
+        org.apache.qpid.proton.message.Message message = Proton.message();
+        message.setBody(new Data(new Binary(feedbackJson.getBytes(StandardCharsets.UTF_8))));
+        byte[] encoded = new byte[BUFFER_SIZE];
+        int length = message.encode(encoded, 0, encoded.length);
+        this.encodedFeedback = Arrays.copyOf(encoded, length);
+    }
+
+    /** @return the number of feedback messages sent to the clients so far. */
+    public long getSentFeedback()
+    {
+        return this.sentFeedback.get();
+    }
+
+    /** @return the number of feedback messages the clients settled so far. */
+    public long getAcknowledgedFeedback()
+    {
+        return this.acknowledgedFeedback.get();
+    }
+
+    /** @return the number of messages the clients sent so far. */
+    public long getReceivedMessages()
+    {
+        return this.receivedMessages.get();
+    }
+
+    /** @return the number of connections the clients opened so far. */
+    public long getAcceptedConnections()
+    {
+        return this.acceptedConnections.get();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.serverSocket.close();
+        File[] files = this.directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+        this.directory.delete();
+    }
+
+    /* Runs a Proton engine for the connection until the client closes it. */
+    private void serve(SSLSocket socket)
+    {
+        Transport transport = Proton.transport();
+        Sasl sasl = transport.sasl();
+        sasl.server();
+        sasl.setMechanisms("PLAIN");
+        Connection connection = Proton.connection();
+        Collector collector = Proton.collector();
+        connection.collect(collector);
+        transport.bind(connection);
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (SSLSocket closeable = socket)
+        {
+            socket.setTcpNoDelay(true);
+            InputStream input = socket.getInputStream();
+            OutputStream output = socket.getOutputStream();
+            while (true)
+            {
+                if (sasl.getOutcome() == Sasl.SaslOutcome.PN_SASL_NONE && sasl.pending() > 0)
+                {
+                    // any token is valid
+                    sasl.recv(new byte[sasl.pending()], 0, sasl.pending());
+                    sasl.done(Sasl.SaslOutcome.PN_SASL_OK);
+                }
+
+                Event event;
+                while ((event = collector.peek()) != null)
+                {
+                    handle(event);
+                    collector.pop();
+                }
+
+                int pending;
+                while ((pending = transport.pending()) > 0)
+                {
+                    int length = Math.min(pending, buffer.length);
+                    transport.head().get(buffer, 0, length);
+                    transport.pop(length);
+                    output.write(buffer, 0, length);
+                }
+                output.flush();
+                if (pending < 0 || transport.capacity() < 0)
+                {
+                    return;
+                }
+
+                int read = input.read(buffer);
+                if (read < 0)
+                {
+                    transport.close_tail();
+                    continue;
+                }
+                for (int offset = 0; offset < read; )
+                {
+                    ByteBuffer tail = transport.tail();
+                    int length = Math.min(tail.remaining(), read - offset);
+                    tail.put(buffer, offset, length);
+                    transport.process();
+                    offset += length;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            // the client dropped the connection
+        }
+    }
+
+    private void handle(Event event)
+    {
+        switch (event.getType())
+        {
+            case CONNECTION_REMOTE_OPEN:
+                event.getConnection().open();
+                break;
+            case CONNECTION_REMOTE_CLOSE:
+                event.getConnection().close();
+                break;
+            case SESSION_REMOTE_OPEN:
+                event.getSession().open();
+                break;
+            case SESSION_REMOTE_CLOSE:
+                event.getSession().close();
+                break;
+            case LINK_REMOTE_OPEN:
+                Link link = event.getLink();
+                link.setSource(link.getRemoteSource());
+                link.setTarget(link.getRemoteTarget());
+                link.open();
+                if (link instanceof Receiver)
+                {
+                    ((Receiver) link).flow(LINK_CREDIT);
+                }
+                else
+                {
+                    sendFeedback((Sender) link);
+                }
+                break;
+            case LINK_FLOW:
+                if (event.getLink() instanceof Sender)
+                {
+                    sendFeedback((Sender) event.getLink());
+                }
+                break;
+            case LINK_REMOTE_CLOSE:
+                event.getLink().close();
+                break;
+            case DELIVERY:
+                Delivery delivery = event.getDelivery();
+                if (delivery.getLink() instanceof Receiver && delivery.isReadable() && !delivery.isPartial())
+                {
+                    Receiver receiver = (Receiver) delivery.getLink();
+                    byte[] message = new byte[delivery.pending()];
+                    receiver.recv(message, 0, message.length);
+                    receiver.advance();
+                    delivery.disposition(Accepted.getInstance());
+                    delivery.settle();
+                    receiver.flow(1);
+                    this.receivedMessages.incrementAndGet();
+                }
+                else if (delivery.getLink() instanceof Sender && delivery.remotelySettled())
+                {
+                    delivery.settle();
+                    this.acknowledgedFeedback.incrementAndGet();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void sendFeedback(Sender sender)
+    {
+        byte[] feedback = this.encodedFeedback;
+        if (feedback == null || sender.getLocalState() != EndpointState.ACTIVE)
+        {
+            return;
+        }
+
+        while (sender.getCredit() > 0)
+        {
+            long tag = this.nextTag.getAndIncrement();
+            sender.delivery(new byte[] { (byte) (tag >>> 24), (byte) (tag >>> 16), (byte) (tag >>> 8), (byte) tag });
+            sender.send(feedback, 0, feedback.length);
+            sender.advance();
+            this.sentFeedback.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.benchmarks.com.microsoft.azure.sdk.iot.service;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.security.KeyStore;
+
+/**
+ * The server certificate of the local stand-ins of the IoT Hub: an RSA 2048 self-signed certificate
+ * for 127.0.0.1, made by keytool in a given directory, with the server socket which presents it and
+ * the SSL context of a client which trusts it.
+ */
+final class LocalCertificate
+{
+    private static final char[] KEYSTORE_PASSWORD = "benchmark".toCharArray();
+
+    private final KeyStore keyStore;
+
+    /**
+     * Makes the certificate.
+     *
+     * @param directory the directory of the key store, deleted by the caller.
+     * @param hostAddress the IP address the certificate is issued to.
+     * @throws Exception if keytool failed.
+     */
+    LocalCertificate(File directory, String hostAddress) throws Exception
+    {
+        File keyStoreFile = new File(directory, "server.jks");
+        String[] command = {
+                new File(new File(System.getProperty("java.home"), "bin"), "keytool").getPath(),
+                "-genkeypair", "-alias", "server", "-keyalg", "RSA", "-keysize", "2048", "-validity", "1",
+                "-dname", "CN=" + hostAddress, "-ext", "SAN=ip:" + hostAddress, "-keystore", keyStoreFile.getPath(),
+                "-storepass", new String(KEYSTORE_PASSWORD), "-keypass", new String(KEYSTORE_PASSWORD) };
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        InputStream output = process.getInputStream();
+        while (output.read() != -1)
+        {
+            // discard the output of keytool
+        }
+        if (process.waitFor() != 0)
+        {
+            throw new IOException("keytool failed");
+        }
+
+        this.keyStore = KeyStore.getInstance("JKS");
+        try (FileInputStream input = new FileInputStream(keyStoreFile))
+        {
+            this.keyStore.load(input, KEYSTORE_PASSWORD);
+        }
+    }
+
+    /**
+     * Creates a server socket which presents the certificate. It only accepts TLS 1.2, like the IoT
+     * Hub: the SSL layer of Proton sometimes stalls in a TLS 1.3 handshake.
+     *
+     * @param hostAddress the IP address to listen on.
+     * @param port the port to listen on.
+     * @param backlog the largest number of connections waiting to be accepted.
+     * @return the listening socket.
+     * @throws Exception if the port is in use.
+     */
+    SSLServerSocket createServerSocket(String hostAddress, int port, int backlog) throws Exception
+    {
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(this.keyStore, KEYSTORE_PASSWORD);
+        SSLContext serverContext = SSLContext.getInstance("TLSv1.2");
+        serverContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        SSLServerSocket serverSocket = (SSLServerSocket) serverContext.getServerSocketFactory()
+                .createServerSocket(port, backlog, InetAddress.getByName(hostAddress));
+        serverSocket.setEnabledProtocols(new String[] { "TLSv1.2" });
+        return serverSocket;
+    }
+
+    /** @return a TLS 1.2 context which trusts the certificate, and no other. */
+    SSLContext createClientContext() throws Exception
+    {
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(this.keyStore);
+        SSLContext clientContext = SSLContext.getInstance("TLSv1.2");
+        clientContext.init(null, trustManagerFactory.getTrustManagers(), null);
+        return clientContext;
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.benchmarks.com.microsoft.azure.sdk.iot.service;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local stand-in for the HTTPS endpoint of an IoT Hub, for the benchmarks and load tests of the
+ * HTTPS clients. It listens with TLS on 127.0.0.1, keeps the HTTP/1.1 connections alive, and
+ * answers each request with status 200 and the body its handler returns, after an optional delay
+ * which stands for the work of the hub. It counts the connections open at the same time, so a test
+ * can check how many connections a client opens to one host.
+ *
+ * To check how a client recovers from a hub which closes an idle connection while a request is on
+ * its way, the stand-in can drop every n-th request which arrives on a connection that already
+ * served one: it reads the request, then closes the connection without a byte of response.
+ *
+ * Each connection runs on its own thread over a blocking JSSE socket. The server certificate is a
+ * LocalCertificate, which only the context of {@link #getClientContext()} trusts.
+ */
+public final class LocalHttpsHub implements Closeable
+{
+    /** The host name to put in the URLs and the connection string of the client. */
+    public static final String HOST_NAME = "127.0.0.1";
+
+    /** Makes the body of the response to a request. */
+    @FunctionalInterface
+    public interface Handler
+    {
+        byte[] handle(String method, String target, byte[] body) throws Exception;
+    }
+
+    private static final int ACCEPT_BACKLOG = 1024;
+    private static final byte[] EMPTY_JSON = "{}".getBytes(StandardCharsets.UTF_8);
+
+    private final File directory;
+    private final SSLServerSocket serverSocket;
+    private final SSLContext clientContext;
+
+    private final AtomicLong acceptedConnections = new AtomicLong();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicInteger peakConnections = new AtomicInteger();
+    private final AtomicLong reusedConnectionRequests = new AtomicLong();
+    private final ConcurrentHashMap<String, AtomicLong> receivedRequests = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> droppedRequests = new ConcurrentHashMap<>();
+
+    private volatile Handler handler = (method, target, body) -> EMPTY_JSON;
+    private volatile int responseDelayMillis = 0;
+    private volatile int dropEvery = 0;
+
+    /**
+     * Creates the server certificate and starts to accept connections.
+     *
+     * @param port the port to listen on.
+     * @throws Exception if the certificate cannot be made or the port is in use.
+     */
+    public LocalHttpsHub(int port) throws Exception
+    {
+        this.directory = Files.createTempDirectory("LocalHttpsHub").toFile();
+        LocalCertificate certificate = new LocalCertificate(this.directory, HOST_NAME);
+        this.clientContext = certificate.createClientContext();
+        this.serverSocket = certificate.createServerSocket(HOST_NAME, port, ACCEPT_BACKLOG);
+
+        Thread acceptor = new Thread(() ->
+        {
+            while (!this.serverSocket.isClosed())
+            {
+                try
+                {
+                    SSLSocket socket = (SSLSocket) this.serverSocket.accept();
+                    this.acceptedConnections.incrementAndGet();
+                    Thread connectionThread = new Thread(() -> serve(socket), "LocalHttpsHub-connection");
+                    connectionThread.setDaemon(true);
+                    connectionThread.start();
+                }
+                catch (IOException e)
+                {
+                    // the benchmark closed the server
+                }
+            }
+        }, "LocalHttpsHub-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /** @return a TLS context for the clients, which trusts the certificate of the stand-in. */
+    public SSLContext getClientContext()
+    {
+        return this.clientContext;
+    }
+
+    /**
+     * Sets the handler which makes the body of the responses. The default one answers "{}".
+     *
+     * @param handler the handler, called on the thread of the connection.
+     */
+    public void setHandler(Handler handler)
+    {
+        this.handler = handler;
+    }
+
+    /**
+     * Sets the time the stand-in waits before it answers each request.
+     *
+     * @param responseDelayMillis the delay, 0 for none.
+     */
+    public void setResponseDelayMillis(int responseDelayMillis)
+    {
+        this.responseDelayMillis = responseDelayMillis;
+    }
+
+    /**
+     * Makes the stand-in drop every n-th request which arrives on a connection that already served one.
+     *
+     * @param dropEvery n, 0 to drop none.
+     */
+    public void setDropEvery(int dropEvery)
+    {
+        this.dropEvery = dropEvery;
+    }
+
+    /** Forgets the largest number of open connections, so the next phase of a test measures its own. */
+    public void resetPeakConnections()
+    {
+        this.peakConnections.set(this.openConnections.get());
+    }
+
+    /** @return the number of connections open now. */
+    public int getOpenConnections()
+    {
+        return this.openConnections.get();
+    }
+
+    /** @return the largest number of connections open at the same time since the last reset. */
+    public int getPeakConnections()
+    {
+        return this.peakConnections.get();
+    }
+
+    /** @return the number of connections the clients opened so far. */
+    public long getAcceptedConnections()
+    {
+        return this.acceptedConnections.get();
+    }
+
+    /**
+     * @param method the HTTP method.
+     * @return the number of requests with the method received so far, including the dropped ones.
+     */
+    public long getReceivedRequests(String method)
+    {
+        AtomicLong count = this.receivedRequests.get(method);
+        return (count == null) ? 0 : count.get();
+    }
+
+    /**
+     * @param method the HTTP method.
+     * @return the number of requests with the method dropped so far.
+     */
+    public long getDroppedRequests(String method)
+    {
+        AtomicLong count = this.droppedRequests.get(method);
+        return (count == null) ? 0 : count.get();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.serverSocket.close();
+        File[] files = this.directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+        this.directory.delete();
+    }
+
+    /* Answers the requests of the connection until the client closes it, or a request is dropped. */
+    private void serve(SSLSocket socket)
+    {
+        int open = this.openConnections.incrementAndGet();
+        this.peakConnections.accumulateAndGet(open, Math::max);
+        try (SSLSocket closeable = socket)
+        {
+            socket.setTcpNoDelay(true);
+            InputStream input = new BufferedInputStream(socket.getInputStream());
+            OutputStream output = socket.getOutputStream();
+            boolean reused = false;
+            String requestLine;
+            while ((requestLine = readLine(input)) != null)
+            {
+                String[] requestParts = requestLine.split(" ");
+                String method = requestParts[0];
+                int contentLength = 0;
+                String headerLine;
+                while (!(headerLine = readLine(input)).isEmpty())
+                {
+                    int colon = headerLine.indexOf(':');
+                    if (headerLine.substring(0, colon).trim().equalsIgnoreCase("Content-Length"))
+                    {
+                        contentLength = Integer.parseInt(headerLine.substring(colon + 1).trim());
+                    }
+                }
+                byte[] body = new byte[contentLength];
+                for (int offset = 0; offset < contentLength; )
+                {
+                    int read = input.read(body, offset, contentLength - offset);
+                    if (read < 0)
+                    {
+                        throw new EOFException();
+                    }
+                    offset += read;
+                }
+                count(this.receivedRequests, method);
+
+                int drop = this.dropEvery;
+                if (reused && (drop > 0) && (this.reusedConnectionRequests.incrementAndGet() % drop == 0))
+                {
+                    count(this.droppedRequests, method);
+                    return;
+                }
+                reused = true;
+
+                if (this.responseDelayMillis > 0)
+                {
+                    Thread.sleep(this.responseDelayMillis);
+                }
+                byte[] responseBody = this.handler.handle(method, requestParts[1], body);
+                String head = "HTTP/1.1 200 OK\r\nContent-Type: application/json; charset=utf-8\r\nContent-Length: "
+                        + responseBody.length + "\r\n\r\n";
+                output.write(head.getBytes(StandardCharsets.ISO_8859_1));
+                output.write(responseBody);
+                output.flush();
+            }
+        }
+        catch (Exception e)
+        {
+            // the client dropped the connection
+        }
+        finally
+        {
+            this.openConnections.decrementAndGet();
+        }
+    }
+
+    private static String readLine(InputStream input) throws IOException
+    {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = input.read()) != '\n')
+        {
+            if (b < 0)
+            {
+                if (line.size() == 0)
+                {
+                    return null;
+                }
+                throw new EOFException();
+            }
+            if (b != '\r')
+            {
+                line.write(b);
+            }
+        }
+        return new String(line.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    private static void count(ConcurrentHashMap<String, AtomicLong> counts, String method)
+    {
+        counts.computeIfAbsent(method, key -> new AtomicLong()).incrementAndGet();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.benchmarks.com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.BulkRegistryOperationResult;
+import com.microsoft.azure.sdk.iot.service.Device;
+import com.microsoft.azure.sdk.iot.service.DeviceStatus;
+import com.microsoft.azure.sdk.iot.service.RegistryManager;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how long it takes to add 1000 devices to a LocalHttpsHub which answers each request
+ * after 5 ms: with addDevice, one blocking request for each device, with addDeviceAsync, one request
+ * for each device without waiting, and with addDevices, bulk requests of 100 devices. Then it
+ * measures updateDevices on the same devices, and checks in the bodies the hub received that the
+ * bulk updates carry ImportMode Update and no ETag.
+ *
+ * The service client always connects to port 443, so the stand-in listens there, which needs the
+ * right to bind a privileged port. It runs on the same machine, so the numbers hold the TLS
+ * handshakes but not the network latency, which adds a round trip to each request.
+ */
+public class RegistryManagerBulkBenchmark
+{
+    private static final String CONNECTION_STRING = "HostName=" + LocalHttpsHub.HOST_NAME
+            + ";SharedAccessKeyName=iothubowner;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+    private static final int HTTPS_PORT = 443;
+    private static final int RESPONSE_DELAY_MILLIS = 5;
+    private static final int DEVICE_COUNT = 1000;
+    private static final int ONE_BY_ONE_WARMUP = 1;
+    private static final int ONE_BY_ONE_ITERATIONS = 3;
+    private static final int WARMUP = 10;
+    private static final int ITERATIONS = 50;
+    private static final byte[] BULK_RESULT = "{\"isSuccessful\":true,\"errors\":[],\"warnings\":[]}".getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws Exception
+    {
+        try (LocalHttpsHub hub = new LocalHttpsHub(HTTPS_PORT))
+        {
+            AtomicLong bulkUpdates = new AtomicLong();
+            AtomicLong bulkBodiesWithETag = new AtomicLong();
+            hub.setResponseDelayMillis(RESPONSE_DELAY_MILLIS);
+            hub.setHandler((method, target, body) ->
+            {
+                if (method.equals("POST"))
+                {
+                    String bulkDevices = new String(body, StandardCharsets.UTF_8);
+                    if (bulkDevices.contains("\"importMode\":\"update\""))
+                    {
+                        bulkUpdates.incrementAndGet();
+                    }
+                    if (bulkDevices.contains("\"eTag\""))
+                    {
+                        bulkBodiesWithETag.incrementAndGet();
+                    }
+                    return BULK_RESULT;
+                }
+                // the hub answers a device PUT with the device
+                return body;
+            });
+            SSLContext.setDefault(hub.getClientContext());
+            HttpsURLConnection.setDefaultSSLSocketFactory(hub.getClientContext().getSocketFactory());
+
+            List<Device> devices = new ArrayList<>(DEVICE_COUNT);
+            for (int i = 0; i < DEVICE_COUNT; i++)
+            {
+                devices.add(Device.createFromId("benchmark-device-" + i, DeviceStatus.Enabled, null));
+            }
+            RegistryManager registryManager = RegistryManager.createFromConnectionString(CONNECTION_STRING);
+
+            Benchmark.Result oneByOne = Benchmark.measure("addDevice, " + DEVICE_COUNT + " devices one by one",
+                    ONE_BY_ONE_WARMUP, ONE_BY_ONE_ITERATIONS, () ->
+                    {
+                        for (Device device : devices)
+                        {
+                            registryManager.addDevice(device);
+                        }
+                        return null;
+                    });
+
+            Benchmark.Result async = Benchmark.measure("addDeviceAsync, " + DEVICE_COUNT + " devices",
+                    WARMUP, ITERATIONS, () ->
+                    {
+                        CompletableFuture<?>[] futures = new CompletableFuture<?>[DEVICE_COUNT];
+                        for (int i = 0; i < DEVICE_COUNT; i++)
+                        {
+                            futures[i] = registryManager.addDeviceAsync(devices.get(i));
+                        }
+                        return CompletableFuture.allOf(futures).get();
+                    });
+            Benchmark.printSpeedup(oneByOne, async);
+
+            Benchmark.Result bulk = Benchmark.measure("addDevices, " + DEVICE_COUNT + " devices in bulk",
+                    WARMUP, ITERATIONS, () -> checkSuccessful(registryManager.addDevices(devices)));
+            Benchmark.printSpeedup(oneByOne, bulk);
+
+            Benchmark.Result bulkUpdate = Benchmark.measure("updateDevices, " + DEVICE_COUNT + " devices in bulk",
+                    WARMUP, ITERATIONS, () -> checkSuccessful(registryManager.updateDevices(devices)));
+            Benchmark.printSpeedup(oneByOne, bulkUpdate);
+
+            System.out.println(String.format("%-56s %14d", "bulk update requests received by the hub", bulkUpdates.get()));
+            System.out.println(String.format("%-56s %14d", "bulk requests which carried an ETag", bulkBodiesWithETag.get()));
+            System.out.println(String.format("%-56s %14d", "connections accepted by the hub", hub.getAcceptedConnections()));
+        }
+    }
+
+    private static BulkRegistryOperationResult checkSuccessful(BulkRegistryOperationResult result)
+    {
+        if (!result.isSuccessful())
+        {
+            throw new IllegalStateException("The bulk operation failed: " + result.getErrors());
+        }
+        return result;
+    }
+}
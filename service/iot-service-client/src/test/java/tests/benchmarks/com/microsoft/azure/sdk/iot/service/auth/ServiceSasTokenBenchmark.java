@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.benchmarks.com.microsoft.azure.sdk.iot.service.auth;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
+import org.apache.commons.codec.binary.Base64;
+import tests.benchmarks.com.microsoft.azure.sdk.iot.service.Benchmark;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Measures the SAS token of a service request: signed for each request, as RegistryManager and
+ * DeviceOperations did before, with a new HmacSHA256 Mac for each token; signed by the current
+ * IotHubServiceSasToken, which keeps one Mac per thread; and returned from the cache of
+ * IotHubServiceSasTokenProvider, which is what the requests now do.
+ */
+public class ServiceSasTokenBenchmark
+{
+    private static final String CONNECTION_STRING =
+            "HostName=benchmark.azure-devices.net;SharedAccessKeyName=iothubowner;SharedAccessKey=YmVuY2htYXJrLWtleS1vZi10aGUtc2VydmljZQ==";
+    private static final String TOKEN_FORMAT = "SharedAccessSignature sr=%s&sig=%s&se=%s&skn=%s";
+    private static final long TOKEN_VALID_SECS = 365 * 24 * 60 * 60;
+    private static final int WARMUP_ITERATIONS = 50000;
+    private static final int ITERATIONS = 200000;
+
+    public static void main(String[] args) throws Exception
+    {
+        IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+
+        Benchmark.Result before = Benchmark.measure("SAS token, previous signing for each request", WARMUP_ITERATIONS, ITERATIONS,
+                () -> previousSasToken(iotHubConnectionString));
+        Benchmark.Result signed = Benchmark.measure("SAS token, signed with a per-thread Mac", WARMUP_ITERATIONS, ITERATIONS,
+                () -> new IotHubServiceSasToken(iotHubConnectionString).toString());
+        Benchmark.printSpeedup(before, signed);
+        Benchmark.Result cached = Benchmark.measure("SAS token, cached by the provider", WARMUP_ITERATIONS, ITERATIONS,
+                () -> IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString));
+        Benchmark.printSpeedup(before, cached);
+    }
+
+    /* The token of IotHubServiceSasToken before the provider, signed with a new Mac each time. */
+    private static String previousSasToken(IotHubConnectionString iotHubConnectionString) throws Exception
+    {
+        long expiryTime = (System.currentTimeMillis() + TOKEN_VALID_SECS * 1000) / 1000;
+
+        String targetUri = URLEncoder.encode(iotHubConnectionString.getHostName().toLowerCase(), String.valueOf(StandardCharsets.UTF_8));
+        String toSign = targetUri + "\n" + expiryTime;
+
+        byte[] keyBytes = Base64.decodeBase64(iotHubConnectionString.getSharedAccessKey().getBytes("UTF-8"));
+        SecretKeySpec signingKey = new SecretKeySpec(keyBytes, "HmacSHA256");
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(signingKey);
+
+        byte[] rawHmac = mac.doFinal(toSign.getBytes("UTF-8"));
+        String signature = URLEncoder.encode(Base64.encodeBase64String(rawHmac), "UTF-8");
+
+        return String.format(TOKEN_FORMAT, targetUri, signature, expiryTime, iotHubConnectionString.getSharedAccessKeyName());
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.benchmarks.com.microsoft.azure.sdk.iot.service.transport.http;
+
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpAsyncClient;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
+import tests.benchmarks.com.microsoft.azure.sdk.iot.service.Benchmark;
+import tests.benchmarks.com.microsoft.azure.sdk.iot.service.LocalHttpsHub;
+
+import javax.net.ssl.HttpsURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test of HttpAsyncClient against a LocalHttpsHub which answers each request after 5 ms.
+ *
+ * First it measures batches of 1000 GETs: sent with HttpRequest.send, the blocking path over
+ * HttpsURLConnection, from 100 threads, against sent with HttpRequest.sendAsync on a client with
+ * the default pool of 100 connections per host. The hub reports the largest number of connections
+ * which were open at the same time, which for the client must be the size of its pool. The idle
+ * connections HttpsURLConnection keeps alive are closed before the client starts.
+ *
+ * Then the hub drops every 20th request which arrives on a reused connection, and the client sends
+ * GETs and POSTs mixed. A dropped GET must be sent again and succeed; a dropped POST must fail,
+ * since the hub may have executed it.
+ *
+ * The stand-in runs on the same machine, so the numbers hold the TLS handshakes but not the network
+ * latency, which adds a round trip to each handshake and each request.
+ */
+public class HttpAsyncClientBenchmark
+{
+    private static final int PORT = 8443;
+    private static final int MAX_CONNECTIONS_PER_HOST = 100;
+    private static final int IO_THREAD_COUNT = 4;
+    private static final int BLOCKING_THREAD_COUNT = 100;
+    private static final int RESPONSE_DELAY_MILLIS = 5;
+    private static final int BATCH_SIZE = 1000;
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 20;
+    private static final int DROP_EVERY = 20;
+    private static final int RESEND_REQUESTS = 10000;
+    private static final byte[] NO_BODY = new byte[0];
+    private static final byte[] POST_BODY = "{\"methodName\":\"reboot\"}".getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws Exception
+    {
+        try (LocalHttpsHub hub = new LocalHttpsHub(PORT))
+        {
+            hub.setResponseDelayMillis(RESPONSE_DELAY_MILLIS);
+            URL url = new URL("https://" + LocalHttpsHub.HOST_NAME + ":" + PORT + "/devices/benchmark-device?api-version=2016-11-14");
+
+            HttpsURLConnection.setDefaultSSLSocketFactory(hub.getClientContext().getSocketFactory());
+            ExecutorService blockingThreads = Executors.newFixedThreadPool(BLOCKING_THREAD_COUNT);
+            long acceptedBefore = hub.getAcceptedConnections();
+            Benchmark.Result blocking = Benchmark.measure("HttpRequest.send, " + BLOCKING_THREAD_COUNT + " threads",
+                    WARMUP, ITERATIONS, () ->
+                    {
+                        List<Future<?>> futures = new ArrayList<>(BATCH_SIZE);
+                        for (int i = 0; i < BATCH_SIZE; i++)
+                        {
+                            futures.add(blockingThreads.submit(() -> new HttpRequest(url, HttpMethod.GET, NO_BODY).send()));
+                        }
+                        for (Future<?> future : futures)
+                        {
+                            future.get();
+                        }
+                        return null;
+                    });
+            blockingThreads.shutdown();
+            long blockingConnections = hub.getAcceptedConnections() - acceptedBefore;
+            int blockingPeak = hub.getPeakConnections();
+
+            // HttpsURLConnection keeps up to 5 idle connections for 5 seconds; wait for them to close
+            while (hub.getOpenConnections() > 0)
+            {
+                Thread.sleep(100);
+            }
+
+            HttpAsyncClient client = new HttpAsyncClient(hub.getClientContext(), MAX_CONNECTIONS_PER_HOST, IO_THREAD_COUNT);
+            try
+            {
+                hub.resetPeakConnections();
+                Benchmark.Result async = Benchmark.measure("HttpRequest.sendAsync, pool of " + MAX_CONNECTIONS_PER_HOST,
+                        WARMUP, ITERATIONS, () ->
+                        {
+                            CompletableFuture<?>[] futures = new CompletableFuture<?>[BATCH_SIZE];
+                            for (int i = 0; i < BATCH_SIZE; i++)
+                            {
+                                futures[i] = HttpRequest.createAsync(url, HttpMethod.GET, NO_BODY).sendAsync(client);
+                            }
+                            return CompletableFuture.allOf(futures).get();
+                        });
+                Benchmark.printSpeedup(blocking, async);
+
+                System.out.println(String.format("%-56s %14d", "connections opened, blocking", blockingConnections));
+                System.out.println(String.format("%-56s %14d", "most connections open at once, blocking", blockingPeak));
+                System.out.println(String.format("%-56s %14d", "connections opened, pool", client.getOpenedConnectionCount()));
+                System.out.println(String.format("%-56s %14d", "most connections open at once, pool", hub.getPeakConnections()));
+
+                hub.setDropEvery(DROP_EVERY);
+                long sentBefore = client.getSentRequestCount();
+                AtomicInteger failedGets = new AtomicInteger();
+                AtomicInteger failedPosts = new AtomicInteger();
+                CompletableFuture<?>[] futures = new CompletableFuture<?>[RESEND_REQUESTS];
+                for (int i = 0; i < RESEND_REQUESTS; i++)
+                {
+                    boolean get = (i % 2 == 0);
+                    AtomicInteger failures = get ? failedGets : failedPosts;
+                    futures[i] = HttpRequest.createAsync(url, get ? HttpMethod.GET : HttpMethod.POST, get ? NO_BODY : POST_BODY)
+                            .sendAsync(client)
+                            .handle((response, throwable) -> (throwable == null) ? response : failures.incrementAndGet());
+                }
+                CompletableFuture.allOf(futures).get();
+
+                System.out.println(String.format("%-56s %14d", "requests sent, with the resent ones", client.getSentRequestCount() - sentBefore));
+                System.out.println(String.format("%-56s %14d", "GETs dropped by the hub", hub.getDroppedRequests("GET")));
+                System.out.println(String.format("%-56s %14d", "GETs failed", failedGets.get()));
+                System.out.println(String.format("%-56s %14d", "POSTs dropped by the hub", hub.getDroppedRequests("POST")));
+                System.out.println(String.format("%-56s %14d", "POSTs failed", failedPosts.get()));
+                System.out.println(String.format("%-56s %14d", "POSTs received by the hub", hub.getReceivedRequests("POST")));
+            }
+            finally
+            {
+                client.close();
+            }
+        }
+    }
+}
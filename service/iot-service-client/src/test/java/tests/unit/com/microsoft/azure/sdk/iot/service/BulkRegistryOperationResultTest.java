@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service;
+
+import com.google.gson.Gson;
+import com.microsoft.azure.sdk.iot.service.BulkRegistryOperationResult;
+import com.microsoft.azure.sdk.iot.service.DeviceRegistryOperationError;
+import mockit.Deencapsulation;
+import mockit.integration.junit4.JMockit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for BulkRegistryOperationResult and DeviceRegistryOperationError */
+@RunWith(JMockit.class)
+public class BulkRegistryOperationResultTest
+{
+    // Tests_SRS_SERVICE_SDK_JAVA_BULKREGISTRYOPERATIONRESULT_21_001: [The constructor shall create a successful result without errors or warnings.]
+    @Test
+    public void constructor_empty_result()
+    {
+        // Act
+        BulkRegistryOperationResult result = new BulkRegistryOperationResult();
+
+        // Assert
+        assertTrue(result.isSuccessful());
+        assertEquals(0, result.getErrors().size());
+        assertEquals(0, result.getWarnings().size());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_BULKREGISTRYOPERATIONRESULT_21_002: [The function shall return true only if no device has an error.]
+    @Test
+    public void isSuccessful_json_with_errors()
+    {
+        // Arrange
+        String json = "{\"isSuccessful\":false,\"errors\":[{\"deviceId\":\"somedevice\",\"errorCode\":\"DeviceNotFound\",\"errorStatus\":\"not found\"}]}";
+
+        // Act
+        BulkRegistryOperationResult result = new Gson().fromJson(json, BulkRegistryOperationResult.class);
+
+        // Assert
+        assertFalse(result.isSuccessful());
+        assertEquals(1, result.getErrors().size());
+        assertEquals("DeviceNotFound", result.getErrors().get(0).getErrorCode());
+        assertEquals(0, result.getWarnings().size());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_BULKREGISTRYOPERATIONRESULT_21_003: [The function shall add the errors and warnings of the other result, and keep the result successful only if both are.]
+    @Test
+    public void merge_unsuccessful_result()
+    {
+        // Arrange
+        BulkRegistryOperationResult result = new BulkRegistryOperationResult();
+        BulkRegistryOperationResult other = new Gson().fromJson(
+                "{\"isSuccessful\":false,\"errors\":[{\"deviceId\":\"somedevice\",\"errorCode\":\"DeviceNotFound\",\"errorStatus\":\"not found\"}],\"warnings\":[]}",
+                BulkRegistryOperationResult.class);
+
+        // Act
+        Deencapsulation.invoke(result, "merge", other);
+
+        // Assert
+        assertFalse(result.isSuccessful());
+        assertEquals("somedevice", result.getErrors().get(0).getDeviceId());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_BULKREGISTRYOPERATIONRESULT_21_004: [The function shall add the error and make the result unsuccessful.]
+    // Tests_SRS_SERVICE_SDK_JAVA_DEVICEREGISTRYOPERATIONERROR_21_001: [The constructor shall store the device id, error code and error status.]
+    @Test
+    public void addError_makes_result_unsuccessful()
+    {
+        // Arrange
+        BulkRegistryOperationResult result = new BulkRegistryOperationResult();
+        DeviceRegistryOperationError error = new DeviceRegistryOperationError("somedevice", null, "java.io.IOException");
+
+        // Act
+        Deencapsulation.invoke(result, "addError", error);
+
+        // Assert
+        assertFalse(result.isSuccessful());
+        assertEquals("somedevice", result.getErrors().get(0).getDeviceId());
+        assertEquals(null, result.getErrors().get(0).getErrorCode());
+        assertEquals("java.io.IOException", result.getErrors().get(0).getErrorStatus());
+    }
+}
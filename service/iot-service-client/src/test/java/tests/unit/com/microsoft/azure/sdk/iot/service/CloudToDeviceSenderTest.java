@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.CloudToDeviceSender;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.Message;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubNotFoundException;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentSend;
+import mockit.Deencapsulation;
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.Verifications;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/** Unit tests for CloudToDeviceSender */
+public class CloudToDeviceSenderTest
+{
+    @Mocked
+    AmqpPersistentSend amqpPersistentSend;
+
+    @Mocked
+    Message message;
+
+    @Mocked
+    IotHubConnectionString iotHubConnectionString;
+
+    private static final String DEVICE_ID = "xxx";
+    private static final IotHubServiceClientProtocol PROTOCOL = IotHubServiceClientProtocol.AMQPS;
+
+    // Tests_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_001: [The constructor shall throw IllegalArgumentException if the connection string or the protocol is null]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_input_connectionString_null()
+    {
+        new CloudToDeviceSender(null, PROTOCOL);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_001: [The constructor shall throw IllegalArgumentException if the connection string or the protocol is null]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_input_protocol_null()
+    {
+        new CloudToDeviceSender(iotHubConnectionString, null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_002: [The constructor shall create a new instance of AmqpPersistentSend object with the connection string, so it renews its SAS token on each connect]
+    @Test
+    public void constructor_creates_AmqpPersistentSend()
+    {
+        // Act
+        new CloudToDeviceSender(iotHubConnectionString, PROTOCOL);
+        // Assert
+        new Verifications()
+        {
+            {
+                new AmqpPersistentSend(iotHubConnectionString, PROTOCOL);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_003: [The function shall call open() on the member AmqpPersistentSend object]
+    // Tests_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_004: [The function shall call close() on the member AmqpPersistentSend object]
+    @Test
+    public void open_and_close_call_AmqpPersistentSend() throws IOException
+    {
+        // Arrange
+        CloudToDeviceSender cloudToDeviceSender = new CloudToDeviceSender(iotHubConnectionString, PROTOCOL);
+        // Act
+        cloudToDeviceSender.open();
+        cloudToDeviceSender.close();
+        // Assert
+        new Verifications()
+        {
+            {
+                amqpPersistentSend.open();
+                times = 1;
+                amqpPersistentSend.close();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_005: [The function shall call sendAsync() on the member AmqpPersistentSend object and return its future]
+    // Tests_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_008: [The function shall return the pending count of the member AmqpPersistentSend object]
+    @Test
+    public void sendAsync_returns_AmqpPersistentSend_future()
+    {
+        // Arrange
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        new Expectations()
+        {
+            {
+                amqpPersistentSend.sendAsync(DEVICE_ID, message);
+                result = future;
+                amqpPersistentSend.getPendingCount();
+                result = 1;
+            }
+        };
+        CloudToDeviceSender cloudToDeviceSender = new CloudToDeviceSender(iotHubConnectionString, PROTOCOL);
+        // Act
+        CompletableFuture<Void> result = cloudToDeviceSender.sendAsync(DEVICE_ID, message);
+        // Assert
+        assertSame(future, result);
+        assertEquals(1, cloudToDeviceSender.getPendingCount());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_006: [The function shall call sendAsync() and wait for the acknowledgement]
+    @Test
+    public void send_waits_for_acknowledgement() throws Exception
+    {
+        // Arrange
+        final CompletableFuture<Void> future = CompletableFuture.completedFuture(null);
+        new Expectations()
+        {
+            {
+                amqpPersistentSend.sendAsync(DEVICE_ID, message);
+                result = future;
+            }
+        };
+        CloudToDeviceSender cloudToDeviceSender = new CloudToDeviceSender(iotHubConnectionString, PROTOCOL);
+        // Act
+        cloudToDeviceSender.send(DEVICE_ID, message);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_007: [The function shall throw the IOException or IotHubException which failed the message]
+    @Test (expected = IotHubNotFoundException.class)
+    public void send_throws_IotHubException_of_rejected_message() throws Exception
+    {
+        // Arrange
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        future.completeExceptionally(new IotHubNotFoundException("not found"));
+        new Expectations()
+        {
+            {
+                amqpPersistentSend.sendAsync(DEVICE_ID, message);
+                result = future;
+            }
+        };
+        CloudToDeviceSender cloudToDeviceSender = new CloudToDeviceSender(iotHubConnectionString, PROTOCOL);
+        // Act
+        cloudToDeviceSender.send(DEVICE_ID, message);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_007: [The function shall throw the IOException or IotHubException which failed the message]
+    @Test (expected = IOException.class)
+    public void send_throws_IOException_of_lost_message() throws IOException, IotHubException, InterruptedException
+    {
+        // Arrange
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        future.completeExceptionally(new IOException("connection lost"));
+        new Expectations()
+        {
+            {
+                amqpPersistentSend.sendAsync(DEVICE_ID, message);
+                result = future;
+            }
+        };
+        CloudToDeviceSender cloudToDeviceSender = new CloudToDeviceSender(iotHubConnectionString, PROTOCOL);
+        // Act
+        cloudToDeviceSender.send(DEVICE_ID, message);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_CLOUDTODEVICESENDER_21_009: [The function shall call setWebSocketMaxFrameSize() on the member AmqpPersistentSend object]
+    @Test
+    public void setWebSocketMaxFrameSize_calls_AmqpPersistentSend()
+    {
+        // Arrange
+        CloudToDeviceSender cloudToDeviceSender = new CloudToDeviceSender(iotHubConnectionString, PROTOCOL);
+        // Act
+        Deencapsulation.invoke(cloudToDeviceSender, "setWebSocketMaxFrameSize", 64 * 1024);
+        // Assert
+        new Verifications()
+        {
+            {
+                amqpPersistentSend.setWebSocketMaxFrameSize(64 * 1024);
+                times = 1;
+            }
+        };
+    }
+}
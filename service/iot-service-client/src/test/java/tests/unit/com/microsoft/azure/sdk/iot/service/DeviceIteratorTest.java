@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.Device;
+import com.microsoft.azure.sdk.iot.service.DeviceConnectionState;
+import com.microsoft.azure.sdk.iot.service.DeviceIterator;
+import com.microsoft.azure.sdk.iot.service.DeviceStatus;
+import com.microsoft.azure.sdk.iot.service.RegistryManager;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubNotFoundException;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpStreamResponse;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** Unit tests for DeviceIterator */
+@RunWith(JMockit.class)
+public class DeviceIteratorTest
+{
+    @Mocked
+    HttpRequest mockHttpRequest;
+    @Mocked
+    IotHubServiceSasTokenProvider mockSasTokenProvider;
+
+    final String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+
+    /* The twin document of a device, as returned by the device query. */
+    private static String deviceJson(String deviceId)
+    {
+        return "{\"deviceId\":\"" + deviceId + "\",\"etag\":\"AAAAAAAAAAE=\",\"deviceEtag\":\"MA==\"," +
+                "\"status\":\"enabled\",\"statusUpdateTime\":\"0001-01-01T00:00:00\"," +
+                "\"connectionState\":\"Disconnected\",\"lastActivityTime\":\"0001-01-01T00:00:00\"," +
+                "\"cloudToDeviceMessageCount\":3,\"authenticationType\":\"sas\",\"x509Thumbprint\":" +
+                "{\"primaryThumbprint\":null,\"secondaryThumbprint\":null},\"version\":2," +
+                "\"properties\":{\"desired\":{\"$version\":1},\"reported\":{\"$version\":1}}}";
+    }
+
+    private static HttpStreamResponse page(int status, String body, String continuationToken)
+    {
+        Map<String, List<String>> headerFields = new HashMap<>();
+        if (continuationToken != null)
+        {
+            headerFields.put("x-ms-continuation", Collections.singletonList(continuationToken));
+        }
+        return new HttpStreamResponse(status, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), headerFields, new byte[0]);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_098: [The function shall throw IllegalArgumentException if the page size is null or less than 1]
+    // Tests_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_001: [The constructor shall throw IllegalArgumentException if the registry manager is null, or if the page size is null or less than 1.]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_page_size_zero() throws Exception
+    {
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.getDeviceIterator(0);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_001: [The constructor shall throw IllegalArgumentException if the registry manager is null, or if the page size is null or less than 1.]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_page_size_null() throws Exception
+    {
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.getDeviceIterator(null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_099: [The function shall return a DeviceIterator which requests the devices page by page when it is iterated]
+    // Tests_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_002: [The constructor shall not send any request.]
+    @Test
+    public void constructor_sends_no_request() throws Exception
+    {
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.getDeviceIterator(100);
+
+        new Verifications()
+        {
+            {
+                mockHttpRequest.sendStreaming();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_003: [The function shall return true if the current page has another device.]
+    // Tests_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_004: [The function shall return false if the current page is read and the IotHub returned no continuation token with it.]
+    // Tests_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_005: [The function shall request the next page with the continuation token of the previous one, and verify the response status.]
+    // Tests_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_007: [The function shall decode the twin document of the next device token by token from the response stream,
+    // and return the device with its id, etag, status, connection state and activity.]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_100: [Each page shall be requested by POSTing the query of all the devices to the device query URL,
+    // asking for at most pageSize devices, with the continuation token of the previous page if there is one]
+    @Test
+    public void iterates_over_all_pages() throws Exception
+    {
+        final HttpStreamResponse firstPage = page(200, "[" + deviceJson("device1") + "," + deviceJson("device2") + "]", "token1");
+        final HttpStreamResponse secondPage = page(200, "[" + deviceJson("device3") + "]", null);
+        new NonStrictExpectations()
+        {
+            {
+                mockHttpRequest.sendStreaming();
+                returns(firstPage, secondPage);
+            }
+        };
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        DeviceIterator deviceIterator = registryManager.getDeviceIterator(2);
+
+        assertTrue(deviceIterator.hasNext());
+        Device device1 = deviceIterator.next();
+        Device device2 = deviceIterator.next();
+        assertTrue(deviceIterator.hasNext());
+        Device device3 = deviceIterator.next();
+        assertFalse(deviceIterator.hasNext());
+
+        assertEquals("device1", device1.getDeviceId());
+        assertEquals("device2", device2.getDeviceId());
+        assertEquals("device3", device3.getDeviceId());
+        assertEquals("MA==", device3.geteTag());
+        assertEquals(DeviceStatus.Enabled, device3.getStatus());
+        assertEquals("0001-01-01T00:00:00", device3.getStatusUpdatedTime());
+        assertEquals(DeviceConnectionState.Disconnected, device3.getConnectionState());
+        assertEquals(3, device3.getCloudToDeviceMessageCount());
+        assertNull(device3.getSymmetricKey());
+        new Verifications()
+        {
+            {
+                new HttpRequest(new URL("https://aaa.bbb.ccc/devices/query?api-version=2016-11-14"), HttpMethod.POST,
+                        "{\"query\":\"SELECT * FROM devices\"}".getBytes(StandardCharsets.UTF_8));
+                times = 2;
+                mockHttpRequest.setHeaderField("x-ms-max-item-count", "2");
+                times = 2;
+                mockHttpRequest.sendStreaming();
+                times = 2;
+                mockHttpRequest.setHeaderField("x-ms-continuation", "token1");
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_007: [The function shall decode the twin document of the next device token by token from the response stream,
+    // and return the device with its id, etag, status, connection state and activity.]
+    @Test
+    public void next_skips_twin_properties_and_reads_null_values() throws Exception
+    {
+        final String twin = "{\"tags\":{\"location\":{\"floors\":[1,2,{\"deviceId\":\"wrong\"}]}}," +
+                "\"deviceId\":\"device1\",\"etag\":\"AAAAAAAAAAE=\",\"deviceEtag\":null,\"statusReason\":null," +
+                "\"status\":\"disabled\",\"connectionState\":\"Connected\",\"connectionStateUpdatedTime\":\"2017-01-01T00:00:00\"}";
+        final HttpStreamResponse onlyPage = page(200, "[" + twin + "," + deviceJson("device2") + "]", null);
+        new NonStrictExpectations()
+        {
+            {
+                mockHttpRequest.sendStreaming();
+                result = onlyPage;
+            }
+        };
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        DeviceIterator deviceIterator = registryManager.getDeviceIterator(2);
+
+        Device device1 = deviceIterator.next();
+        Device device2 = deviceIterator.next();
+
+        assertEquals("device1", device1.getDeviceId());
+        assertNull(device1.geteTag());
+        assertNull(device1.getStatusReason());
+        assertEquals(DeviceStatus.Disabled, device1.getStatus());
+        assertEquals(DeviceConnectionState.Connected, device1.getConnectionState());
+        assertEquals("2017-01-01T00:00:00", device1.getConnectionStateUpdatedTime());
+        assertEquals(0, device1.getCloudToDeviceMessageCount());
+        assertEquals("device2", device2.getDeviceId());
+        assertFalse(deviceIterator.hasNext());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_004: [The function shall return false if the current page is read and the IotHub returned no continuation token with it.]
+    @Test
+    public void empty_registry_has_no_device() throws Exception
+    {
+        final HttpStreamResponse emptyPage = page(200, "[]", null);
+        new NonStrictExpectations()
+        {
+            {
+                mockHttpRequest.sendStreaming();
+                result = emptyPage;
+            }
+        };
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        DeviceIterator deviceIterator = registryManager.getDeviceIterator(100);
+
+        assertFalse(deviceIterator.hasNext());
+        assertFalse(deviceIterator.hasNext());
+        new Verifications()
+        {
+            {
+                mockHttpRequest.sendStreaming();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_005: [The function shall request the next page with the continuation token of the previous one, and verify the response status.]
+    // Assert
+    @Test (expected = IotHubNotFoundException.class)
+    public void hasNext_throws_on_bad_status() throws Exception
+    {
+        final HttpStreamResponse notFoundPage = page(404, "", null);
+        new NonStrictExpectations()
+        {
+            {
+                mockHttpRequest.sendStreaming();
+                result = notFoundPage;
+            }
+        };
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        DeviceIterator deviceIterator = registryManager.getDeviceIterator(100);
+
+        deviceIterator.hasNext();
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_009: [The function shall throw IOException if the IotHub returned the continuation token it was sent,
+    // since the iteration would then never end.]
+    @Test
+    public void hasNext_throws_if_continuation_token_repeats() throws Exception
+    {
+        final HttpStreamResponse firstPage = page(200, "[" + deviceJson("device1") + "]", "token1");
+        final HttpStreamResponse samePage = page(200, "[" + deviceJson("device1") + "]", "token1");
+        new NonStrictExpectations()
+        {
+            {
+                mockHttpRequest.sendStreaming();
+                returns(firstPage, samePage);
+            }
+        };
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        DeviceIterator deviceIterator = registryManager.getDeviceIterator(1);
+        deviceIterator.next();
+
+        try
+        {
+            deviceIterator.hasNext();
+            fail("The iteration shall fail if the IotHub repeats the continuation token");
+        }
+        catch (IOException e)
+        {
+            assertFalse(deviceIterator.hasNext());
+            assertEquals(-1, samePage.getBodyStream().read());
+        }
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_006: [The function shall throw NoSuchElementException if there is no other device.]
+    // Assert
+    @Test (expected = NoSuchElementException.class)
+    public void next_throws_after_last_device() throws Exception
+    {
+        final HttpStreamResponse lastPage = page(200, "[" + deviceJson("device1") + "]", null);
+        new NonStrictExpectations()
+        {
+            {
+                mockHttpRequest.sendStreaming();
+                result = lastPage;
+            }
+        };
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        DeviceIterator deviceIterator = registryManager.getDeviceIterator(100);
+        deviceIterator.next();
+
+        deviceIterator.next();
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_DEVICEITERATOR_21_008: [The function shall close the response of the current page, and the iteration shall have no other device.]
+    @Test
+    public void close_stops_iteration() throws Exception
+    {
+        final HttpStreamResponse firstPage = page(200, "[" + deviceJson("device1") + "," + deviceJson("device2") + "]", "token1");
+        new NonStrictExpectations()
+        {
+            {
+                mockHttpRequest.sendStreaming();
+                result = firstPage;
+            }
+        };
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        DeviceIterator deviceIterator = registryManager.getDeviceIterator(2);
+        deviceIterator.next();
+
+        deviceIterator.close();
+
+        assertFalse(deviceIterator.hasNext());
+        assertEquals(-1, firstPage.getBodyStream().read());
+        new Verifications()
+        {
+            {
+                mockHttpRequest.sendStreaming();
+                times = 1;
+            }
+        };
+    }
+}
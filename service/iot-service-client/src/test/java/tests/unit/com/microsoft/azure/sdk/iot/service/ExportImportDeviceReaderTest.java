@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.DeviceStatus;
+import com.microsoft.azure.sdk.iot.service.ExportImportDevice;
+import com.microsoft.azure.sdk.iot.service.ExportImportDeviceReader;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for ExportImportDeviceReader */
+public class ExportImportDeviceReaderTest
+{
+    private static final String exportedDevices =
+            "{\"id\":\"device1\",\"eTag\":\"MA==\",\"status\":\"enabled\",\"authentication\":{\"symmetricKey\":{\"primaryKey\":\"key1\",\"secondaryKey\":\"key2\"}},\"twinETag\":\"AAAA\",\"tags\":{}}\r\n" +
+            "{\"id\":\"device2\",\"status\":\"disabled\",\"statusReason\":\"test\"}\n" +
+            "\n" +
+            "{\"id\":\"device3\",\"importMode\":\"delete\"}\r\n";
+
+    private static ByteArrayInputStream stream(String records)
+    {
+        return new ByteArrayInputStream(records.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEREADER_21_001: [The constructor shall throw IllegalArgumentException if the input stream is null.]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_input_null() throws IOException
+    {
+        // Act
+        new ExportImportDeviceReader(null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEREADER_21_003: [The function shall return true if the stream has another record, ignoring the new lines between the records.]
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEREADER_21_005: [The function shall decode the next record straight from the stream and return it.]
+    @Test
+    public void reads_all_records() throws IOException
+    {
+        // Arrange
+        ExportImportDeviceReader reader = new ExportImportDeviceReader(stream(exportedDevices));
+
+        // Act
+        ExportImportDevice device1 = reader.next();
+        ExportImportDevice device2 = reader.next();
+        assertTrue(reader.hasNext());
+        ExportImportDevice device3 = reader.next();
+
+        // Assert
+        assertFalse(reader.hasNext());
+        assertEquals(3, reader.getCount());
+        assertEquals("device1", device1.getId());
+        assertEquals("MA==", device1.getETag());
+        assertEquals(DeviceStatus.Enabled, device1.getStatus());
+        assertEquals("key1", device1.getAuthentication().getSymmetricKey().getPrimaryKey());
+        assertEquals("device2", device2.getId());
+        assertEquals(DeviceStatus.Disabled, device2.getStatus());
+        assertEquals("test", device2.getStatusReason());
+        assertEquals("device3", device3.getId());
+        assertEquals(com.microsoft.azure.sdk.iot.service.ImportMode.Delete, device3.getImportMode());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEREADER_21_003: [The function shall return true if the stream has another record, ignoring the new lines between the records.]
+    @Test
+    public void empty_stream_has_no_record() throws IOException
+    {
+        // Arrange
+        ExportImportDeviceReader reader = new ExportImportDeviceReader(stream(""));
+
+        // Act
+        boolean hasNext = reader.hasNext();
+
+        // Assert
+        assertFalse(hasNext);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEREADER_21_002: [The constructor shall read the records as UTF-8, decompressing them with gzip if requested.]
+    @Test
+    public void reads_gzip_records() throws IOException
+    {
+        // Arrange
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(compressed))
+        {
+            gzipStream.write(exportedDevices.getBytes(StandardCharsets.UTF_8));
+        }
+        ExportImportDeviceReader reader = new ExportImportDeviceReader(new ByteArrayInputStream(compressed.toByteArray()), true);
+
+        // Act
+        long count = 0;
+        while (reader.hasNext())
+        {
+            reader.next();
+            count++;
+        }
+
+        // Assert
+        assertEquals(3, count);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEREADER_21_004: [The function shall throw NoSuchElementException if there is no other record.]
+    // Assert
+    @Test (expected = NoSuchElementException.class)
+    public void next_throws_after_last_record() throws IOException
+    {
+        // Arrange
+        ExportImportDeviceReader reader = new ExportImportDeviceReader(stream("{\"id\":\"device1\"}\r\n"));
+        reader.next();
+
+        // Act
+        reader.next();
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEREADER_21_005: [The function shall decode the next record straight from the stream and return it.]
+    // Assert
+    @Test (expected = IOException.class)
+    public void next_throws_on_truncated_record() throws IOException
+    {
+        // Arrange
+        ExportImportDeviceReader reader = new ExportImportDeviceReader(stream("{\"id\":\"device1\",\"status\":"));
+
+        // Act
+        reader.next();
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEREADER_21_006: [The function shall close the input stream.]
+    @Test
+    public void close_closes_stream() throws IOException
+    {
+        // Arrange
+        final boolean[] closed = { false };
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(new byte[0])
+        {
+            @Override
+            public void close() throws IOException
+            {
+                closed[0] = true;
+            }
+        };
+        ExportImportDeviceReader reader = new ExportImportDeviceReader(inputStream);
+
+        // Act
+        reader.close();
+
+        // Assert
+        assertTrue(closed[0]);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.ExportImportDevice;
+import com.microsoft.azure.sdk.iot.service.ExportImportDeviceReader;
+import com.microsoft.azure.sdk.iot.service.ExportImportDeviceShards;
+import com.microsoft.azure.sdk.iot.service.ExportImportDeviceWriter;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** Unit tests for ExportImportDeviceShards */
+public class ExportImportDeviceShardsTest
+{
+    private static final int NUMBER_OF_DEVICES = 1000;
+    private static final int NUMBER_OF_SHARDS = 4;
+
+    private static ExportImportDeviceReader createReader(int numberOfDevices) throws IOException
+    {
+        StringBuilder records = new StringBuilder();
+        for (int i = 0; i < numberOfDevices; i++)
+        {
+            records.append("{\"id\":\"device").append(i).append("\"}\r\n");
+        }
+        return new ExportImportDeviceReader(new ByteArrayInputStream(records.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static List<ByteArrayOutputStream> split(List<ExportImportDeviceWriter> writers) throws IOException
+    {
+        List<ByteArrayOutputStream> outputStreams = new ArrayList<>();
+        for (int i = 0; i < NUMBER_OF_SHARDS; i++)
+        {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            outputStreams.add(outputStream);
+            writers.add(new ExportImportDeviceWriter(outputStream, true));
+        }
+        return outputStreams;
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICESHARDS_21_001: [The function shall throw IllegalArgumentException if the reader is null, or if the list of shards is null, empty, or contains a null writer.]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void split_empty_shards() throws IOException
+    {
+        // Act
+        ExportImportDeviceShards.split(createReader(1), new ArrayList<ExportImportDeviceWriter>());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICESHARDS_21_003: [The function shall throw IllegalArgumentException if the list of shards is null, empty, or contains a null reader, or if the consumer is null.]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void readInParallel_null_consumer() throws Exception
+    {
+        // Act
+        ExportImportDeviceShards.readInParallel(Collections.singletonList(createReader(1)), null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICESHARDS_21_002: [The function shall write each record to the shard chosen from the hash of its device id, and return the number of records.]
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICESHARDS_21_004: [The function shall read each shard on its own thread, pass every record to the consumer, and return the number of records.]
+    @Test
+    public void split_and_read_in_parallel() throws Exception
+    {
+        // Arrange
+        List<ExportImportDeviceWriter> writers = new ArrayList<>();
+        List<ByteArrayOutputStream> outputStreams = split(writers);
+
+        // Act
+        long splitCount = ExportImportDeviceShards.split(createReader(NUMBER_OF_DEVICES), writers);
+        for (ExportImportDeviceWriter writer : writers)
+        {
+            writer.close();
+        }
+        List<ExportImportDeviceReader> readers = new ArrayList<>();
+        for (ByteArrayOutputStream outputStream : outputStreams)
+        {
+            readers.add(new ExportImportDeviceReader(new ByteArrayInputStream(outputStream.toByteArray()), true));
+        }
+        final Set<String> deviceIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        long readCount = ExportImportDeviceShards.readInParallel(readers, device -> deviceIds.add(device.getId()));
+
+        // Assert
+        assertEquals(NUMBER_OF_DEVICES, splitCount);
+        assertEquals(NUMBER_OF_DEVICES, readCount);
+        assertEquals(NUMBER_OF_DEVICES, deviceIds.size());
+        for (ExportImportDeviceWriter writer : writers)
+        {
+            assertTrue(writer.getCount() > 0);
+        }
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICESHARDS_21_002: [The function shall write each record to the shard chosen from the hash of its device id, and return the number of records.]
+    @Test
+    public void split_is_stable() throws IOException
+    {
+        // Arrange
+        List<ExportImportDeviceWriter> firstWriters = new ArrayList<>();
+        List<ByteArrayOutputStream> firstShards = split(firstWriters);
+        List<ExportImportDeviceWriter> secondWriters = new ArrayList<>();
+        List<ByteArrayOutputStream> secondShards = split(secondWriters);
+
+        // Act
+        ExportImportDeviceShards.split(createReader(NUMBER_OF_DEVICES), firstWriters);
+        ExportImportDeviceShards.split(createReader(NUMBER_OF_DEVICES), secondWriters);
+
+        // Assert
+        for (int i = 0; i < NUMBER_OF_SHARDS; i++)
+        {
+            assertEquals(firstWriters.get(i).getCount(), secondWriters.get(i).getCount());
+        }
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICESHARDS_21_005: [If a shard fails, the function shall stop the other shards and throw the exception of the failed shard.]
+    // Assert
+    @Test (expected = IOException.class)
+    public void readInParallel_throws_failed_shard() throws Exception
+    {
+        // Arrange
+        List<ExportImportDeviceReader> readers = new ArrayList<>();
+        readers.add(createReader(10));
+        readers.add(new ExportImportDeviceReader(new ByteArrayInputStream("{\"id\":".getBytes(StandardCharsets.UTF_8))));
+
+        // Act
+        ExportImportDeviceShards.readInParallel(readers, (ExportImportDevice device) -> { });
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICESHARDS_21_005: [If a shard fails, the function shall stop the other shards and throw the exception of the failed shard,
+    // as soon as the shard fails, without waiting for the other shards to finish.]
+    @Test (timeout = 10000)
+    public void readInParallel_throws_failed_shard_without_waiting_for_slow_shard() throws Exception
+    {
+        // Arrange
+        List<ExportImportDeviceReader> readers = new ArrayList<>();
+        readers.add(createReader(NUMBER_OF_DEVICES));
+        readers.add(new ExportImportDeviceReader(new ByteArrayInputStream("{\"id\":".getBytes(StandardCharsets.UTF_8))));
+        final AtomicLong slowRecords = new AtomicLong();
+
+        // Act
+        try
+        {
+            ExportImportDeviceShards.readInParallel(readers, (ExportImportDevice device) ->
+            {
+                if (device.getId() != null)
+                {
+                    slowRecords.incrementAndGet();
+                    try
+                    {
+                        Thread.sleep(1000);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            fail("readInParallel shall throw the exception of the failed shard");
+        }
+        catch (IOException e)
+        {
+            // Assert
+            assertTrue(slowRecords.get() < NUMBER_OF_DEVICES);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.AuthenticationMechanism;
+import com.microsoft.azure.sdk.iot.service.DeviceStatus;
+import com.microsoft.azure.sdk.iot.service.ExportImportDevice;
+import com.microsoft.azure.sdk.iot.service.ExportImportDeviceReader;
+import com.microsoft.azure.sdk.iot.service.ExportImportDeviceWriter;
+import com.microsoft.azure.sdk.iot.service.ImportMode;
+import com.microsoft.azure.sdk.iot.service.auth.SymmetricKey;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/** Unit tests for ExportImportDeviceWriter */
+public class ExportImportDeviceWriterTest
+{
+    private static ExportImportDevice createDevice(String deviceId)
+    {
+        ExportImportDevice device = new ExportImportDevice();
+        device.setId(deviceId);
+        device.setStatus(DeviceStatus.Enabled);
+        device.setImportMode(ImportMode.CreateOrUpdate);
+        return device;
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEWRITER_21_001: [The constructor shall throw IllegalArgumentException if the output stream is null.]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_output_null() throws IOException
+    {
+        // Act
+        new ExportImportDeviceWriter(null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEWRITER_21_003: [The function shall throw IllegalArgumentException if the device is null.]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void write_input_null() throws IOException
+    {
+        // Arrange
+        ExportImportDeviceWriter writer = new ExportImportDeviceWriter(new ByteArrayOutputStream());
+
+        // Act
+        writer.write(null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEWRITER_21_004: [The function shall write the device as a JSON record, separated from the previous one by a new line.]
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEWRITER_21_005: [The function shall write the buffered records, finish the gzip stream if any, and close the output stream.]
+    @Test
+    public void writes_one_record_per_line() throws IOException
+    {
+        // Arrange
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ExportImportDeviceWriter writer = new ExportImportDeviceWriter(outputStream);
+
+        // Act
+        writer.write(createDevice("device1"));
+        writer.write(createDevice("device<2>"));
+        writer.close();
+
+        // Assert
+        assertEquals(2, writer.getCount());
+        assertEquals("{\"id\":\"device1\",\"importMode\":\"createOrUpdate\",\"status\":\"enabled\"}\r\n" +
+                        "{\"id\":\"device<2>\",\"importMode\":\"createOrUpdate\",\"status\":\"enabled\"}",
+                new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_EXPORTIMPORTDEVICEWRITER_21_002: [The constructor shall write the records as UTF-8, compressing them with gzip if requested.]
+    @Test
+    public void gzip_records_read_back() throws IOException
+    {
+        // Arrange
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ExportImportDeviceWriter writer = new ExportImportDeviceWriter(outputStream, true);
+        ExportImportDevice device = createDevice("device1");
+        SymmetricKey symmetricKey = new SymmetricKey();
+        device.setAuthentication(new AuthenticationMechanism(symmetricKey));
+
+        // Act
+        for (int i = 0; i < 1000; i++)
+        {
+            writer.write(device);
+        }
+        writer.close();
+
+        // Assert
+        ExportImportDeviceReader reader = new ExportImportDeviceReader(new ByteArrayInputStream(outputStream.toByteArray()), true);
+        for (int i = 0; i < 1000; i++)
+        {
+            assertEquals(device, reader.next());
+        }
+        assertFalse(reader.hasNext());
+    }
+}
@@ -12,6 +12,7 @@ import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpReceive;
 import mockit.Deencapsulation;
 import mockit.Expectations;
 import mockit.Mocked;
+import mockit.Verifications;
 import org.junit.Test;
 
 import java.io.IOException;
@@ -751,4 +752,22 @@ public class FeedbackReceiverTest
         CompletableFuture<FeedbackBatch> completableFuture = feedbackReceiver.receiveAsync(timeoutMs);
         completableFuture.get();
     }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_FEEDBACKRECEIVER_21_015: [The function shall call setWebSocketMaxFrameSize() on the member AMQPReceive object]
+    @Test
+    public void setWebSocketMaxFrameSize_calls_AmqpReceive()
+    {
+        // Arrange
+        FeedbackReceiver feedbackReceiver = new FeedbackReceiver("xxx", "xxx", "xxx", IotHubServiceClientProtocol.AMQPS_WS);
+        // Act
+        Deencapsulation.invoke(feedbackReceiver, "setWebSocketMaxFrameSize", 64 * 1024);
+        // Assert
+        new Verifications()
+        {
+            {
+                amqpReceive.setWebSocketMaxFrameSize(64 * 1024);
+                times = 1;
+            }
+        };
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.FeedbackBatchCallback;
+import com.microsoft.azure.sdk.iot.service.FeedbackSubscription;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpPersistentReceive;
+import mockit.Deencapsulation;
+import mockit.Mocked;
+import mockit.Verifications;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/** Unit tests for FeedbackSubscription */
+public class FeedbackSubscriptionTest
+{
+    @Mocked
+    AmqpPersistentReceive amqpPersistentReceive;
+
+    @Mocked
+    FeedbackBatchCallback callback;
+
+    @Mocked
+    IotHubConnectionString iotHubConnectionString;
+
+    private static final IotHubServiceClientProtocol PROTOCOL = IotHubServiceClientProtocol.AMQPS;
+
+    // Tests_SRS_SERVICE_SDK_JAVA_FEEDBACKSUBSCRIPTION_21_001: [The constructor shall throw IllegalArgumentException if the connection string or the protocol is null]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_input_connectionString_null()
+    {
+        new FeedbackSubscription(null, PROTOCOL, callback, 10);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_FEEDBACKSUBSCRIPTION_21_001: [The constructor shall throw IllegalArgumentException if the connection string or the protocol is null]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_input_protocol_null()
+    {
+        new FeedbackSubscription(iotHubConnectionString, null, callback, 10);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_FEEDBACKSUBSCRIPTION_21_002: [The constructor shall create a new instance of AmqpPersistentReceive object with the connection string, so it renews its SAS token on each connect]
+    // Tests_SRS_SERVICE_SDK_JAVA_FEEDBACKSUBSCRIPTION_21_003: [The function shall call open() on the member AmqpPersistentReceive object]
+    // Tests_SRS_SERVICE_SDK_JAVA_FEEDBACKSUBSCRIPTION_21_004: [The function shall call close() on the member AmqpPersistentReceive object]
+    @Test
+    public void open_and_close_call_AmqpPersistentReceive() throws IOException
+    {
+        // Arrange
+        FeedbackSubscription feedbackSubscription = new FeedbackSubscription(iotHubConnectionString, PROTOCOL, callback, 10);
+        // Act
+        feedbackSubscription.open();
+        feedbackSubscription.close();
+        // Assert
+        new Verifications()
+        {
+            {
+                new AmqpPersistentReceive(iotHubConnectionString, PROTOCOL, callback, 10);
+                times = 1;
+                amqpPersistentReceive.open();
+                times = 1;
+                amqpPersistentReceive.close();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_FEEDBACKSUBSCRIPTION_21_005: [The function shall call setWebSocketMaxFrameSize() on the member AmqpPersistentReceive object]
+    @Test
+    public void setWebSocketMaxFrameSize_calls_AmqpPersistentReceive()
+    {
+        // Arrange
+        FeedbackSubscription feedbackSubscription = new FeedbackSubscription(iotHubConnectionString, PROTOCOL, callback, FeedbackSubscription.DEFAULT_PREFETCH_CREDIT);
+        // Act
+        Deencapsulation.invoke(feedbackSubscription, "setWebSocketMaxFrameSize", 64 * 1024);
+        // Assert
+        new Verifications()
+        {
+            {
+                amqpPersistentReceive.setWebSocketMaxFrameSize(64 * 1024);
+                times = 1;
+            }
+        };
+    }
+}
@@ -152,6 +152,44 @@ public class IotHubConnectionStringTest
         assertEquals("DeviceList URL mismatch!", expected, actual);
     }
 
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBCONNECTIONSTRING_21_018: [The function shall create a URL object from the object properties using the following format: https:hostname/devices?api-version=201X-XX-XX]
+    @Test
+    public void getUrlBulkDevices_good_case() throws Exception
+    {
+        // Arrange
+        String iotHubName = "b.c.d";
+        String hostName = "HOSTNAME." + iotHubName;
+        String sharedAccessKeyName = "ACCESSKEYNAME";
+        String policyName = "SharedAccessKey";
+        String sharedAccessKey = "1234567890abcdefghijklmnopqrstvwxyz=";
+        String connectionString = "HostName=" + hostName + ";SharedAccessKeyName=" + sharedAccessKeyName + ";" + policyName + "=" + sharedAccessKey;
+        IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(connectionString);
+        String expected = "https://HOSTNAME.b.c.d/devices?api-version=2016-11-14";
+        // Act
+        String actual = iotHubConnectionString.getUrlBulkDevices().toString();
+        // Assert
+        assertEquals("BulkDevices URL mismatch!", expected, actual);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBCONNECTIONSTRING_21_019: [The function shall create a URL object from the object properties using the following format: https:hostname/devices/query?api-version=201X-XX-XX]
+    @Test
+    public void getUrlDeviceQuery_good_case() throws Exception
+    {
+        // Arrange
+        String iotHubName = "b.c.d";
+        String hostName = "HOSTNAME." + iotHubName;
+        String sharedAccessKeyName = "ACCESSKEYNAME";
+        String policyName = "SharedAccessKey";
+        String sharedAccessKey = "1234567890abcdefghijklmnopqrstvwxyz=";
+        String connectionString = "HostName=" + hostName + ";SharedAccessKeyName=" + sharedAccessKeyName + ";" + policyName + "=" + sharedAccessKey;
+        IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(connectionString);
+        String expected = "https://HOSTNAME.b.c.d/devices/query?api-version=2016-11-14";
+        // Act
+        String actual = iotHubConnectionString.getUrlDeviceQuery().toString();
+        // Assert
+        assertEquals("DeviceQuery URL mismatch!", expected, actual);
+    }
+
     // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBCONNECTIONSTRING_12_006: [The function shall create a URL object from the object properties using the following format: https:hostname/statistics/devices?api-version=201X-XX-XX]
     @Test
     public void getUrlDeviceStatistics_good_case() throws Exception
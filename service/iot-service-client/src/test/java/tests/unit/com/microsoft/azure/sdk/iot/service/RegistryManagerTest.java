@@ -7,7 +7,6 @@ package tests.unit.com.microsoft.azure.sdk.iot.service;
 
 import com.microsoft.azure.sdk.iot.service.*;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
-import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
@@ -19,11 +18,18 @@ import org.junit.runner.RunWith;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(JMockit.class)
 public class RegistryManagerTest
@@ -53,6 +59,8 @@ public class RegistryManagerTest
             "{\"symmetricKey\":{\"primaryKey\":\"L1jehoyM+E2gQ5/x446tv9trVrQ2/AoS0BsXUnw3vgE=\",\"" +
             "secondaryKey\":\"JyJdmx4UnIj3KX1HAkTSguDEEDiz2VW4TmbjdY0+vaw=\"}}}";
 
+    final String bulkResultJson = "{\"isSuccessful\":true,\"errors\":[],\"warnings\":[]}";
+
     final String devicesJson = "[{\"encryptionMethod\":\"AES\",\"utcTimeDefault\":\"0001-01-01T00:00:00\",\"" +
             "deviceId\":\"java-crud-e2e-test-873e7831-5778-4b1e-a998-cf11fffa6415\",\"generationId\":\"\",\"" +
             "etag\":\"\",\"status\":\"disabled\",\"statusReason\":\"\",\"statusUpdatedTime\":\"0001-01-01T00:00:00\",\"" +
@@ -134,7 +142,7 @@ public class RegistryManagerTest
 
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_005: [The function shall deserialize the given device object to Json string]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_006: [The function shall get the URL for the device]
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_007: [The function shall create a new SAS token for the device]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_007: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the device]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_008: [The function shall create a new HttpRequest for adding the device to IotHub]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_009: [The function shall send the created request and get the response]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_010: [The function shall verify the response status and throw proper Exception]
@@ -173,7 +181,7 @@ public class RegistryManagerTest
         registryManager.addDeviceAsync(null);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_ REGISTRYMANAGER_12_013: [The function shall create an async wrapper around the addDevice() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_ REGISTRYMANAGER_12_013: [The function shall send the request for adding the device without blocking, and complete the future with the device in the response, or exceptionally with the exception of the request]
     @Test
     public void addDeviceAsync_future_return_ok() throws Exception
     {
@@ -193,25 +201,17 @@ public class RegistryManagerTest
         CompletableFuture<Device> completableFuture =  registryManager.addDeviceAsync(device);
         Device returnDevice = completableFuture.get();
 
-        commonVerifications(HttpMethod.PUT, deviceId, returnDevice);
+        commonAsyncVerifications(HttpMethod.PUT, deviceId, returnDevice);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_ REGISTRYMANAGER_12_013: [The function shall create an async wrapper around the addDevice() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_ REGISTRYMANAGER_12_013: [The function shall send the request for adding the device without blocking, and complete the future with the device in the response, or exceptionally with the exception of the request]
     // Assert
     @Test (expected = Exception.class)
     public void addDeviceAsync_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
-        {
-            @Mock
-            public Device addDevice(Device device) throws IOException, IotHubException
-            {
-                throw new IOException();
-            }
-        };
-
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
         RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        asyncFailureExpectations();
 
         CompletableFuture<Device> completableFuture =  registryManager.addDeviceAsync(device);
         completableFuture.get();
@@ -229,7 +229,7 @@ public class RegistryManagerTest
     }
 
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_015: [The function shall get the URL for the device]
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_016: [The function shall create a new SAS token for the device]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_016: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the device]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_017: [The function shall create a new HttpRequest for getting a device from IotHub]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_018: [The function shall send the created request and get the response]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_019: [The function shall verify the response status and throw proper Exception]
@@ -259,7 +259,7 @@ public class RegistryManagerTest
         registryManager.getDeviceAsync(null);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_022: [The function shall create an async wrapper around the addDevice() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_022: [The function shall send the request for getting the device without blocking, and complete the future with the device in the response, or exceptionally with the exception of the request]
     @Test
     public void getDeviceAsync_future_return_ok() throws Exception
     {
@@ -272,25 +272,18 @@ public class RegistryManagerTest
         CompletableFuture<Device> completableFuture =  registryManager.getDeviceAsync(deviceId);
         Device returnDevice = completableFuture.get();
 
-        commonVerifications(HttpMethod.GET, deviceId, returnDevice);
+        commonAsyncVerifications(HttpMethod.GET, deviceId, returnDevice);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_022: [The function shall create an async wrapper around the addDevice() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_022: [The function shall send the request for getting the device without blocking, and complete the future with the device in the response, or exceptionally with the exception of the request]
     // Assert
     @Test (expected = Exception.class)
     public void getDeviceAsync_future_throw() throws Exception
     {
         String deviceId = "somedevice";
-        new MockUp<RegistryManager>()
-        {
-            @Mock
-            public Device getDevice(String deviceId) throws IOException, IotHubException
-            {
-                throw new IOException();
-            }
-        };
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
         RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        asyncFailureExpectations();
 
         CompletableFuture<Device> completableFuture =  registryManager.getDeviceAsync(deviceId);
         completableFuture.get();
@@ -309,7 +302,7 @@ public class RegistryManagerTest
     }
 
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_024: [The function shall get the URL for the device]
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_025: [The function shall create a new SAS token for the device]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_025: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the device]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_026: [The function shall create a new HttpRequest for getting a device list from IotHub]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_027: [The function shall send the created request and get the response]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_028: [The function shall verify the response status and throw proper Exception]
@@ -340,7 +333,7 @@ public class RegistryManagerTest
         registryManager.getDevicesAsync(0);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_031: [The function shall create an async wrapper around the getDevices() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_031: [The function shall send the request for getting the device list without blocking, and complete the future with the devices in the response, or exceptionally with the exception of the request]
     @Test
     public void getDevicesAsync_future_return_ok() throws Exception
     {
@@ -353,7 +346,7 @@ public class RegistryManagerTest
         CompletableFuture<ArrayList<Device>> completableFuture =  registryManager.getDevicesAsync(10);
         ArrayList<Device> devices = completableFuture.get();
 
-        getDevicesVerifications(numberOfDevices, devices);
+        getDevicesAsyncVerifications(numberOfDevices, devices);
     }
 
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_085: [The function shall return a connectionString for the input device]
@@ -514,21 +507,14 @@ public class RegistryManagerTest
         registryManager.getDeviceConnectionString(returnDevice);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_031: [The function shall create an async wrapper around the getDevices() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_031: [The function shall send the request for getting the device list without blocking, and complete the future with the devices in the response, or exceptionally with the exception of the request]
     // Assert
     @Test (expected = Exception.class)
     public void getDevicesAsync_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
-        {
-            @Mock
-            public Device getDevices(Integer maxCount) throws IOException, IotHubException
-            {
-                throw new IOException();
-            }
-        };
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
         RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        asyncFailureExpectations();
 
         CompletableFuture<ArrayList<Device>> completableFuture = registryManager.getDevicesAsync(10);
         completableFuture.get();
@@ -588,7 +574,7 @@ public class RegistryManagerTest
 
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_035: [The function shall set forceUpdate on the device]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_036: [The function shall get the URL for the device]
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_037: [The function shall create a new SAS token for the device]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_037: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the device]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_038: [The function shall create a new HttpRequest for updating the device on IotHub]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_039: [The function shall send the created request and get the response]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_040: [The function shall verify the response status and throw proper Exception]
@@ -634,7 +620,7 @@ public class RegistryManagerTest
         registryManager.updateDeviceAsync(null);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_043: [The function shall create an async wrapper around the updateDevice() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_043: [The function shall call updateDeviceAsync with forceUpdate = false]
     @Test
     public void updateDeviceAsync_future_return_ok() throws Exception
     {
@@ -655,7 +641,7 @@ public class RegistryManagerTest
         CompletableFuture<Device> completableFuture = registryManager.updateDeviceAsync(device);
         Device returnDevice = completableFuture.get();
 
-        commonVerifications(HttpMethod.PUT, deviceId, returnDevice);
+        commonAsyncVerifications(HttpMethod.PUT, deviceId, returnDevice);
 
         new VerificationsInOrder()
         {
@@ -666,21 +652,14 @@ public class RegistryManagerTest
         };
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_043: [The function shall create an async wrapper around the updateDevice() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_043: [The function shall call updateDeviceAsync with forceUpdate = false]
     // Assert
     @Test (expected = Exception.class)
     public void updateDeviceAsync_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
-        {
-            @Mock
-            public Device updateDevice(Device device) throws IOException, IotHubException
-            {
-                throw new IOException();
-            }
-        };
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
         RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        asyncFailureExpectations();
 
         CompletableFuture<Device> completableFuture = registryManager.updateDeviceAsync(device);
         completableFuture.get();
@@ -697,7 +676,7 @@ public class RegistryManagerTest
         registryManager.updateDeviceAsync(null, true);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_045: [The function shall create an async wrapper around the updateDevice(Device, device, Boolean forceUpdate) function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_045: [The function shall set forceUpdate on the device, send the request for updating the device without blocking, and complete the future with the device in the response, or exceptionally with the exception of the request]
     @Test
     public void updateDeviceAsyncForce_future_return_ok() throws Exception
     {
@@ -718,7 +697,7 @@ public class RegistryManagerTest
         CompletableFuture<Device> completableFuture =  registryManager.updateDeviceAsync(device, true);
         Device returnDevice = completableFuture.get();
 
-        commonVerifications(HttpMethod.PUT, deviceId, returnDevice);
+        commonAsyncVerifications(HttpMethod.PUT, deviceId, returnDevice);
 
         new VerificationsInOrder()
         {
@@ -729,21 +708,14 @@ public class RegistryManagerTest
         };
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_045: [The function shall create an async wrapper around the updateDevice(Device, device, Boolean forceUpdate) function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_045: [The function shall set forceUpdate on the device, send the request for updating the device without blocking, and complete the future with the device in the response, or exceptionally with the exception of the request]
     // Assert
     @Test (expected = Exception.class)
     public void updateDeviceAsyncForce_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
-        {
-            @Mock
-            public Device updateDevice(Device device, Boolean forceUpdate) throws IOException, IotHubException
-            {
-                throw new IOException();
-            }
-        };
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
         RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        asyncFailureExpectations();
 
         CompletableFuture<Device> completableFuture =  registryManager.updateDeviceAsync(device, true);
         completableFuture.get();
@@ -772,7 +744,7 @@ public class RegistryManagerTest
     }
 
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_047: [The function shall get the URL for the device]
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_048: [The function shall create a new SAS token for the device]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_048: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the device]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_049: [The function shall create a new HttpRequest for removing the device from IotHub]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_050: [The function shall send the created request and get the response]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_051: [The function shall verify the response status and throw proper Exception]
@@ -823,7 +795,7 @@ public class RegistryManagerTest
         registryManager.removeDeviceAsync("");
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_053: [The function shall create an async wrapper around the removeDevice() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_053: [The function shall send the request for removing the device without blocking, and complete the future with true, or exceptionally with the exception of the request]
     @Test
     public void removeDeviceAsync_future_return_ok() throws Exception
     {
@@ -841,37 +813,260 @@ public class RegistryManagerTest
             {
                 iotHubConnectionString.getUrlDevice(deviceId);
                 times = 1;
-                new HttpRequest(mockUrl, HttpMethod.DELETE, new byte[0]);
+                HttpRequest.createAsync(mockUrl, HttpMethod.DELETE, new byte[0]);
                 times = 1;
                 mockHttpRequest.setReadTimeoutMillis(anyInt);
                 mockHttpRequest.setHeaderField("authorization", anyString);
                 mockHttpRequest.setHeaderField("If-Match", "*");
+                mockHttpRequest.sendAsync();
             }
         };
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_053: [The function shall create an async wrapper around the removeDevice() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_053: [The function shall send the request for removing the device without blocking, and complete the future with true, or exceptionally with the exception of the request]
     // Assert
     @Test (expected = Exception.class)
     public void removeDeviceAsync_future_throw() throws Exception
     {
         String deviceId = "somedevice";
-        new MockUp<RegistryManager>()
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        asyncFailureExpectations();
+
+        CompletableFuture completableFuture = registryManager.removeDeviceAsync(deviceId);
+        completableFuture.get();
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_087: [The function shall throw IllegalArgumentException if the concurrency is less than 1]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void setBulkOperationConcurrency_input_zero() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.setBulkOperationConcurrency(0);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_090: [The function shall throw IllegalArgumentException if the input collection is null, or if it contains a null device]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void addDevicesAsync_input_null() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.addDevicesAsync(null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_090: [The function shall throw IllegalArgumentException if the input collection is null, or if it contains a null device]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void addDevicesAsync_input_null_device() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.addDevicesAsync(Arrays.asList(device, null));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_089: [The function shall call addDevicesAsync and wait for its result]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_091: [The function shall send the devices with ImportMode Create, in bulk requests of up to 100 devices, with at most the configured number of requests at the same time, and complete the future with the merged result of the requests]
+    @Test
+    public void addDevices_good_case() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        bulkExpectations(connectionString, bulkResultJson);
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        BulkRegistryOperationResult result = registryManager.addDevices(Collections.nCopies(250, device));
+
+        assertTrue(result.isSuccessful());
+        List<byte[]> bodies = bulkVerifications(3);
+        assertTrue(new String(bodies.get(0), StandardCharsets.UTF_8).contains("\"importMode\":\"create\""));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_091: [The function shall send the devices with ImportMode Create, in bulk requests of up to 100 devices, with at most the configured number of requests at the same time, and complete the future with the merged result of the requests]
+    @Test
+    public void addDevicesAsync_future_return_device_errors() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        bulkExpectations(connectionString,
+                "{\"isSuccessful\":false,\"errors\":[{\"deviceId\":\"somedevice\",\"errorCode\":\"DeviceAlreadyExists\",\"errorStatus\":\"exists\"}],\"warnings\":[]}");
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        registryManager.setBulkOperationConcurrency(1);
+        BulkRegistryOperationResult result = registryManager.addDevicesAsync(Collections.nCopies(150, device)).get();
+
+        assertFalse(result.isSuccessful());
+        assertEquals(2, result.getErrors().size());
+        assertEquals("somedevice", result.getErrors().get(0).getDeviceId());
+        assertEquals("DeviceAlreadyExists", result.getErrors().get(0).getErrorCode());
+        bulkVerifications(2);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_091: [The function shall send the devices with ImportMode Create, in bulk requests of up to 100 devices, with at most the configured number of requests at the same time, and complete the future with the merged result of the requests]
+    @Test
+    public void addDevicesAsync_future_request_failed() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        CompletableFuture<HttpResponse> failedFuture = new CompletableFuture<>();
+        failedFuture.completeExceptionally(new IOException());
+        new NonStrictExpectations()
         {
-            @Mock
-            public Device removeDevice(String deviceId) throws IOException, IotHubException
             {
-                throw new IOException();
+                IotHubConnectionStringBuilder.createConnectionString(connectionString);
+                result = iotHubConnectionString;
+                iotHubConnectionString.getUrlBulkDevices();
+                result = mockUrl;
+                device.getDeviceId();
+                result = "somedevice";
+                mockHttpRequest.sendAsync();
+                result = failedFuture;
             }
         };
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        BulkRegistryOperationResult result = registryManager.addDevicesAsync(Collections.nCopies(120, device)).get();
+
+        assertFalse(result.isSuccessful());
+        assertEquals(120, result.getErrors().size());
+        assertEquals("somedevice", result.getErrors().get(0).getDeviceId());
+        assertNull(result.getErrors().get(0).getErrorCode());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_091: [The function shall send the devices with ImportMode Create, in bulk requests of up to 100 devices, with at most the configured number of requests at the same time, and complete the future with the merged result of the requests]
+    @Test
+    public void addDevicesAsync_empty_collection() throws Exception
+    {
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
         RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
 
-        CompletableFuture completableFuture = registryManager.removeDeviceAsync(deviceId);
+        BulkRegistryOperationResult result = registryManager.addDevicesAsync(new ArrayList<Device>()).get();
+
+        assertTrue(result.isSuccessful());
+        new Verifications()
+        {
+            {
+                mockHttpRequest.sendAsync();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_093: [The function shall throw IllegalArgumentException if the input collection is null, or if it contains a null device]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void updateDevicesAsync_input_null() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.updateDevicesAsync(null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_092: [The function shall call updateDevicesAsync and wait for its result]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_094: [The function shall send the devices with ImportMode Update, with their status and keys and without their ETags, so like updateDevice the update is unconditional]
+    @Test
+    public void updateDevices_good_case() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        bulkExpectations(connectionString, bulkResultJson);
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        BulkRegistryOperationResult result = registryManager.updateDevices(Collections.nCopies(100, device));
+
+        assertTrue(result.isSuccessful());
+        List<byte[]> bodies = bulkVerifications(1);
+        assertTrue(new String(bodies.get(0), StandardCharsets.UTF_8).contains("\"importMode\":\"update\""));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_094: [The function shall send the devices with ImportMode Update, with their status and keys and without their ETags, so like updateDevice the update is unconditional]
+    @Test
+    public void updateDevices_does_not_send_etag() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        bulkExpectations(connectionString, bulkResultJson);
+        new NonStrictExpectations()
+        {
+            {
+                device.geteTag();
+                result = "someETag";
+            }
+        };
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        registryManager.updateDevices(Collections.nCopies(10, device));
+
+        List<byte[]> bodies = bulkVerifications(1);
+        String body = new String(bodies.get(0), StandardCharsets.UTF_8);
+        assertTrue(body.contains("\"importMode\":\"update\""));
+        assertFalse(body.contains("eTag"));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_096: [The function shall throw IllegalArgumentException if the input collection is null, or if it contains a null or empty id]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void removeDevicesAsync_input_null() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.removeDevicesAsync(null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_096: [The function shall throw IllegalArgumentException if the input collection is null, or if it contains a null or empty id]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void removeDevicesAsync_input_empty_id() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.removeDevicesAsync(Arrays.asList("somedevice", ""));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_095: [The function shall call removeDevicesAsync and wait for its result]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_097: [The function shall send the device ids with ImportMode Delete]
+    @Test
+    public void removeDevices_good_case() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        bulkExpectations(connectionString, bulkResultJson);
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        BulkRegistryOperationResult result = registryManager.removeDevices(Collections.nCopies(201, "somedevice"));
+
+        assertTrue(result.isSuccessful());
+        List<byte[]> bodies = bulkVerifications(3);
+        String body = new String(bodies.get(2), StandardCharsets.UTF_8);
+        assertTrue(body.contains("\"id\":\"somedevice\""));
+        assertTrue(body.contains("\"importMode\":\"delete\""));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_097: [The function shall send the device ids with ImportMode Delete]
+    @Test
+    public void removeDevicesAsync_many_completed_requests() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        bulkExpectations(connectionString, bulkResultJson);
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        registryManager.setBulkOperationConcurrency(1);
+        BulkRegistryOperationResult result = registryManager.removeDevicesAsync(Collections.nCopies(2000000, "somedevice")).get();
+
+        assertTrue(result.isSuccessful());
+        new Verifications()
+        {
+            {
+                mockHttpRequest.sendAsync();
+                times = 20000;
+            }
+        };
     }
 
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_054: [The function shall get the URL for the device]
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_055: [The function shall create a new SAS token for the device]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_055: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the device]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_056: [The function shall create a new HttpRequest for getting statistics a device from IotHub]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_057: [The function shall send the created request and get the response]
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_058: [The function shall verify the response status and throw proper Exception]
@@ -906,7 +1101,7 @@ public class RegistryManagerTest
         assertNotEquals(null, statistics);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_060: [The function shall create an async wrapper around the getStatistics() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_060: [The function shall send the request for getting the statistics without blocking, and complete the future with the statistics in the response, or exceptionally with the exception of the request]
     @Test
     public void getStatisticsAsync_future_return_ok() throws Exception
     {
@@ -924,37 +1119,31 @@ public class RegistryManagerTest
         {
             {
                 iotHubConnectionString.getUrlDeviceStatistics();
-                new HttpRequest(mockUrl, HttpMethod.GET, new byte[0]);
+                HttpRequest.createAsync(mockUrl, HttpMethod.GET, new byte[0]);
                 mockHttpRequest.setReadTimeoutMillis(anyInt);
                 mockHttpRequest.setHeaderField("authorization", anyString);
                 mockHttpRequest.setHeaderField("Request-Id", "1001");
                 mockHttpRequest.setHeaderField("Accept", "application/json");
                 mockHttpRequest.setHeaderField("Content-Type", "application/json");
                 mockHttpRequest.setHeaderField("charset", "utf-8");
-                mockHttpRequest.send();
+                mockHttpRequest.sendAsync();
                 mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
             }
         };
         assertNotEquals(null, statistics);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_060: [The function shall create an async wrapper around the getStatistics() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_060: [The function shall send the request for getting the statistics without blocking, and complete the future with the statistics in the response, or exceptionally with the exception of the request]
     // Assert
     @Test (expected = Exception.class)
     public void getStatisticsAsync_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
-        {
-            @Mock
-            public Device getStatistics() throws IOException, IotHubException
-            {
-                throw new IOException();
-            }
-        };
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
         RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        asyncFailureExpectations();
 
-        registryManager.getStatisticsAsync();
+        CompletableFuture<RegistryStatistics> completableFuture = registryManager.getStatisticsAsync();
+        completableFuture.get();
     }
 
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_061: [The function shall throw IllegalArgumentException if any of the input parameters is null]
@@ -978,7 +1167,7 @@ public class RegistryManagerTest
 
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_061: [The function shall throw IllegalArgumentException if any of the input parameters is null]
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_062: [The function shall get the URL for the bulk export job creation]
-    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_063: [The function shall create a new SAS token for the bulk export job]
+    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_063: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the bulk export job]
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_064: [The function shall create a new HttpRequest for the export job creation]
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_065: [The function shall send the created request and get the response]
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_066: [The function shall verify the response status and throw proper Exception]
@@ -1024,23 +1213,27 @@ public class RegistryManagerTest
         assertNotEquals(null, jobProperties);
     }
 
-    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_068: [The function shall create an async wrapper around
-    // the exportDevices() function call, handle the return value or delegate exception ]
+    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_068: [The function shall throw IllegalArgumentException if any of the
+    // input parameters is null, send the request for the bulk export job creation without blocking, and complete the future
+    // with the job properties in the response, or exceptionally with the exception of the request]
+    @Test (expected = IllegalArgumentException.class)
+    public void exportDevicesAsync_exclude_keys_null() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.exportDevicesAsync("www.someurl.com", null);
+    }
+
+    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_068: [The function shall throw IllegalArgumentException if any of the
+    // input parameters is null, send the request for the bulk export job creation without blocking, and complete the future
+    // with the job properties in the response, or exceptionally with the exception of the request]
     @Test (expected = Exception.class)
     public void exportDevicesAsync_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
-        {
-            @Mock
-            public JobProperties exportDevices(String url, Boolean excludeKeys)
-                    throws IllegalArgumentException, IOException, IotHubException
-            {
-                throw new IllegalArgumentException();
-            }
-        };
-
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
         RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        asyncFailureExpectations();
 
         CompletableFuture<JobProperties> completableFuture =  registryManager.exportDevicesAsync("blah", true);
         completableFuture.get();
@@ -1067,7 +1260,7 @@ public class RegistryManagerTest
     }
 
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_070: [The function shall get the URL for the bulk import job creation]
-    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_071: [The function shall create a new SAS token for the bulk import job]
+    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_071: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the bulk import job]
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_072: [The function shall create a new HttpRequest for the bulk import job creation]
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_073: [The function shall send the created request and get the response]
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_074: [The function shall verify the response status and throw proper Exception]
@@ -1113,23 +1306,27 @@ public class RegistryManagerTest
         assertNotEquals(null, jobProperties);
     }
 
-    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_076: [The function shall create an async wrapper around
-    // the importDevices() function call, handle the return value or delegate exception]
+    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_076: [The function shall throw IllegalArgumentException if any of the
+    // input parameters is null, send the request for the bulk import job creation without blocking, and complete the future
+    // with the job properties in the response, or exceptionally with the exception of the request]
+    @Test (expected = IllegalArgumentException.class)
+    public void importDevicesAsync_blob_output_null() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.importDevicesAsync("importblob", null);
+    }
+
+    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_076: [The function shall throw IllegalArgumentException if any of the
+    // input parameters is null, send the request for the bulk import job creation without blocking, and complete the future
+    // with the job properties in the response, or exceptionally with the exception of the request]
     @Test (expected = Exception.class)
     public void importDevicesAsync_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
-        {
-            @Mock
-            public JobProperties importDevices(String importBlobContainerUri, String outputBlobContainerUri)
-                    throws IllegalArgumentException, IOException, IotHubException
-            {
-                throw new IllegalArgumentException();
-            }
-        };
-
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
         RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        asyncFailureExpectations();
 
         CompletableFuture<JobProperties> completableFuture =  registryManager.importDevicesAsync("importblob", "outputblob");
         completableFuture.get();
@@ -1146,7 +1343,7 @@ public class RegistryManagerTest
     }
 
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_078: [The function shall get the URL for the get request]
-    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_079: [The function shall create a new SAS token for the get request]
+    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_079: [The function shall get a SAS token from the IotHubServiceSasTokenProvider for the get request]
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_080: [The function shall create a new HttpRequest for getting the properties of a job]
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_081: [The function shall send the created request and get the response]
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_082: [The function shall verify the response status and throw proper Exception]
@@ -1193,23 +1390,72 @@ public class RegistryManagerTest
         assertNotEquals(null, jobProperties);
     }
 
-    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_084: [The function shall create an async wrapper
-    // around the getJob() function call, handle the return value or delegate exception]
-    @Test (expected = Exception.class)
-    public void getJobAsync_future_throw() throws Exception
+    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_084: [The function shall throw IllegalArgumentException if the
+    // input parameter is null, send the request for getting the properties of the job without blocking, and complete the
+    // future with the job properties in the response, or exceptionally with the exception of the request]
+    @Test (expected = IllegalArgumentException.class)
+    public void getJobAsync_job_id_null() throws Exception
     {
-        new MockUp<RegistryManager>()
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.getJobAsync(null);
+    }
+
+    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_084: [The function shall throw IllegalArgumentException if the
+    // input parameter is null, send the request for getting the properties of the job without blocking, and complete the
+    // future with the job properties in the response, or exceptionally with the exception of the request]
+    @Test
+    public void getJobAsync_good_case() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        String jobId = "somejobid";
+
+        new NonStrictExpectations()
+        {
+            {
+                IotHubConnectionStringBuilder.createConnectionString(connectionString);
+                result = iotHubConnectionString;
+                iotHubConnectionString.getUrlImportExportJob(jobId);
+                result = mockUrl;
+                mockHttpRequest.sendAsync();
+                result = CompletableFuture.completedFuture(mockHttpResponse);
+                mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
+                mockHttpResponse.getBody();
+                result = jobPropertiesJson.getBytes();
+            }
+        };
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        JobProperties jobProperties = registryManager.getJobAsync(jobId).get();
+
+        new VerificationsInOrder()
         {
-            @Mock
-            public JobProperties getJob(String jobId)
-                    throws IllegalArgumentException, IOException, IotHubException
             {
-                throw new IllegalArgumentException();
+                iotHubConnectionString.getUrlImportExportJob(jobId);
+                HttpRequest.createAsync(mockUrl, HttpMethod.GET, (byte[]) any);
+                mockHttpRequest.setReadTimeoutMillis(anyInt);
+                mockHttpRequest.setHeaderField("authorization", anyString);
+                mockHttpRequest.setHeaderField("Request-Id", "1001");
+                mockHttpRequest.setHeaderField("Accept", "application/json");
+                mockHttpRequest.setHeaderField("Content-Type", "application/json");
+                mockHttpRequest.setHeaderField("charset", "utf-8");
+                mockHttpRequest.sendAsync();
+                mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
             }
         };
+        assertNotEquals(null, jobProperties);
+    }
 
+    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_084: [The function shall throw IllegalArgumentException if the
+    // input parameter is null, send the request for getting the properties of the job without blocking, and complete the
+    // future with the job properties in the response, or exceptionally with the exception of the request]
+    @Test (expected = Exception.class)
+    public void getJobAsync_future_throw() throws Exception
+    {
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
         RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        asyncFailureExpectations();
 
         CompletableFuture<JobProperties> completableFuture =  registryManager.getJobAsync("someJobId");
         completableFuture.get();
@@ -1226,6 +1472,8 @@ public class RegistryManagerTest
                 result = mockUrl;
                 mockHttpRequest.send();
                 result = mockHttpResponse;
+                mockHttpRequest.sendAsync();
+                result = CompletableFuture.completedFuture(mockHttpResponse);
                 mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
                 mockHttpResponse.getBody();
                 result = deviceJson.getBytes();
@@ -1253,6 +1501,26 @@ public class RegistryManagerTest
         assertNotEquals(null, responseDevice);
     }
 
+    private void commonAsyncVerifications(HttpMethod httpMethod, String requestDeviceId, Device responseDevice) throws Exception
+    {
+        new VerificationsInOrder()
+        {
+            {
+                iotHubConnectionString.getUrlDevice(requestDeviceId);
+                HttpRequest.createAsync(mockUrl, httpMethod, (byte[]) any);
+                mockHttpRequest.setReadTimeoutMillis(anyInt);
+                mockHttpRequest.setHeaderField("authorization", anyString);
+                mockHttpRequest.setHeaderField("Request-Id", "1001");
+                mockHttpRequest.setHeaderField("Accept", "application/json");
+                mockHttpRequest.setHeaderField("Content-Type", "application/json");
+                mockHttpRequest.setHeaderField("charset", "utf-8");
+                mockHttpRequest.sendAsync();
+                mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
+            }
+        };
+        assertNotEquals(null, responseDevice);
+    }
+
     private void getDevicesExpectations(String connectionString, int numberOfDevices) throws Exception
     {
         new NonStrictExpectations()
@@ -1264,6 +1532,8 @@ public class RegistryManagerTest
                 result = mockUrl;
                 mockHttpRequest.send();
                 result = mockHttpResponse;
+                mockHttpRequest.sendAsync();
+                result = CompletableFuture.completedFuture(mockHttpResponse);
                 mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
                 mockHttpResponse.getBody();
                 result = devicesJson.getBytes();
@@ -1291,4 +1561,74 @@ public class RegistryManagerTest
         };
         assertNotEquals(null, devices);
     }
+
+    private void getDevicesAsyncVerifications(int numberOfDevices, ArrayList<Device> devices) throws Exception
+    {
+        new VerificationsInOrder()
+        {
+            {
+                iotHubConnectionString.getUrlDeviceList(numberOfDevices);
+                times = 1;
+                HttpRequest.createAsync(mockUrl, HttpMethod.GET, (byte[]) any);
+                times = 1;
+                mockHttpRequest.setReadTimeoutMillis(anyInt);
+                mockHttpRequest.setHeaderField("authorization", anyString);
+                mockHttpRequest.setHeaderField("Request-Id", "1001");
+                mockHttpRequest.setHeaderField("Accept", "application/json");
+                mockHttpRequest.setHeaderField("Content-Type", "application/json");
+                mockHttpRequest.setHeaderField("charset", "utf-8");
+                mockHttpRequest.sendAsync();
+            }
+        };
+        assertNotEquals(null, devices);
+    }
+
+    private void bulkExpectations(String connectionString, String responseJson) throws Exception
+    {
+        new NonStrictExpectations()
+        {
+            {
+                IotHubConnectionStringBuilder.createConnectionString(connectionString);
+                result = iotHubConnectionString;
+                iotHubConnectionString.getUrlBulkDevices();
+                result = mockUrl;
+                device.getDeviceId();
+                result = "somedevice";
+                mockHttpRequest.sendAsync();
+                result = CompletableFuture.completedFuture(mockHttpResponse);
+                mockHttpResponse.getBody();
+                result = responseJson.getBytes();
+            }
+        };
+    }
+
+    private List<byte[]> bulkVerifications(int numberOfRequests) throws Exception
+    {
+        List<byte[]> bodies = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                iotHubConnectionString.getUrlBulkDevices();
+                times = numberOfRequests;
+                HttpRequest.createAsync(mockUrl, HttpMethod.POST, withCapture(bodies));
+                times = numberOfRequests;
+                mockHttpRequest.sendAsync();
+                times = numberOfRequests;
+            }
+        };
+        return bodies;
+    }
+
+    private void asyncFailureExpectations() throws Exception
+    {
+        CompletableFuture<HttpResponse> failedFuture = new CompletableFuture<>();
+        failedFuture.completeExceptionally(new IOException());
+        new NonStrictExpectations()
+        {
+            {
+                mockHttpRequest.sendAsync();
+                result = failedFuture;
+            }
+        };
+    }
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ package com.microsoft.azure.sdk.iot.service;
 import com.microsoft.azure.sdk.iot.service.*;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpSend;
+import com.microsoft.azure.sdk.iot.deps.ws.WebSocketHeader;
 import mockit.*;
 import org.junit.Test;
 
@@ -478,4 +479,163 @@ public class ServiceClientTest
         // Assert
         assertNotEquals(null, feedbackReceiver);
     }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_019: [The function shall create a CloudToDeviceSender object with the connection string and returns with it]
+    @Test
+    public void getCloudToDeviceSender_good_case(final @Mocked CloudToDeviceSender mockedCloudToDeviceSender) throws Exception
+    {
+        // Arrange
+        String iotHubName = "IOTHUBNAME";
+        String hostName = "HOSTNAME";
+        String sharedAccessKeyName = "ACCESSKEYNAME";
+        String policyName = "SharedAccessKey";
+        String sharedAccessKey = "1234567890abcdefghijklmnopqrstvwxyz=";
+        String connectionString = "HostName=" + hostName + "." + iotHubName + ";SharedAccessKeyName=" + sharedAccessKeyName + ";" + policyName + "=" + sharedAccessKey;
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        ServiceClient serviceClient = ServiceClient.createFromConnectionString(connectionString, iotHubServiceClientProtocol);
+        // Assert
+        new Expectations()
+        {
+            {
+                new CloudToDeviceSender((IotHubConnectionString) any, iotHubServiceClientProtocol);
+            }
+        };
+        // Act
+        CloudToDeviceSender cloudToDeviceSender = serviceClient.getCloudToDeviceSender();
+        // Assert
+        assertNotEquals(null, cloudToDeviceSender);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_020: [The function shall create a FeedbackSubscription object with the default prefetch credit and returns with it]
+    @Test
+    public void getFeedbackSubscription_default_good_case(final @Mocked FeedbackSubscription mockedFeedbackSubscription,
+                                                          final @Mocked FeedbackBatchCallback mockedCallback) throws Exception
+    {
+        // Arrange
+        String iotHubName = "IOTHUBNAME";
+        String hostName = "HOSTNAME";
+        String sharedAccessKeyName = "ACCESSKEYNAME";
+        String policyName = "SharedAccessKey";
+        String sharedAccessKey = "1234567890abcdefghijklmnopqrstvwxyz=";
+        String connectionString = "HostName=" + hostName + "." + iotHubName + ";SharedAccessKeyName=" + sharedAccessKeyName + ";" + policyName + "=" + sharedAccessKey;
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        ServiceClient serviceClient = ServiceClient.createFromConnectionString(connectionString, iotHubServiceClientProtocol);
+        // Assert
+        new Expectations()
+        {
+            {
+                new FeedbackSubscription((IotHubConnectionString) any, iotHubServiceClientProtocol, mockedCallback,
+                        FeedbackSubscription.DEFAULT_PREFETCH_CREDIT);
+            }
+        };
+        // Act
+        FeedbackSubscription feedbackSubscription = serviceClient.getFeedbackSubscription(mockedCallback);
+        // Assert
+        assertNotEquals(null, feedbackSubscription);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_021: [The function shall create a FeedbackSubscription object with the given prefetch credit and returns with it]
+    @Test
+    public void getFeedbackSubscription_good_case(final @Mocked FeedbackSubscription mockedFeedbackSubscription,
+                                                  final @Mocked FeedbackBatchCallback mockedCallback) throws Exception
+    {
+        // Arrange
+        String iotHubName = "IOTHUBNAME";
+        String hostName = "HOSTNAME";
+        String sharedAccessKeyName = "ACCESSKEYNAME";
+        String policyName = "SharedAccessKey";
+        String sharedAccessKey = "1234567890abcdefghijklmnopqrstvwxyz=";
+        String connectionString = "HostName=" + hostName + "." + iotHubName + ";SharedAccessKeyName=" + sharedAccessKeyName + ";" + policyName + "=" + sharedAccessKey;
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        ServiceClient serviceClient = ServiceClient.createFromConnectionString(connectionString, iotHubServiceClientProtocol);
+        // Assert
+        new Expectations()
+        {
+            {
+                new FeedbackSubscription((IotHubConnectionString) any, iotHubServiceClientProtocol, mockedCallback, 100);
+            }
+        };
+        // Act
+        FeedbackSubscription feedbackSubscription = serviceClient.getFeedbackSubscription(mockedCallback, 100);
+        // Assert
+        assertNotEquals(null, feedbackSubscription);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_022: [The function shall throw IllegalArgumentException if the size is not larger than the largest WebSocket frame header]
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void setWebSocketMaxFrameSize_throws_if_size_cannot_hold_header() throws Exception
+    {
+        // Arrange
+        String iotHubName = "IOTHUBNAME";
+        String hostName = "HOSTNAME";
+        String sharedAccessKeyName = "ACCESSKEYNAME";
+        String policyName = "SharedAccessKey";
+        String sharedAccessKey = "1234567890abcdefghijklmnopqrstvwxyz=";
+        String connectionString = "HostName=" + hostName + "." + iotHubName + ";SharedAccessKeyName=" + sharedAccessKeyName + ";" + policyName + "=" + sharedAccessKey;
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS_WS;
+        ServiceClient serviceClient = ServiceClient.createFromConnectionString(connectionString, iotHubServiceClientProtocol);
+        // Act
+        serviceClient.setWebSocketMaxFrameSize(WebSocketHeader.MAX_HEADER_LENGTH_MASKED);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_024: [The function shall call setWebSocketMaxFrameSize() on the member AMQP sender object]
+    @Test
+    public void setWebSocketMaxFrameSize_sets_size_on_sender() throws Exception
+    {
+        // Arrange
+        String iotHubName = "IOTHUBNAME";
+        String hostName = "HOSTNAME";
+        String sharedAccessKeyName = "ACCESSKEYNAME";
+        String policyName = "SharedAccessKey";
+        String sharedAccessKey = "1234567890abcdefghijklmnopqrstvwxyz=";
+        String connectionString = "HostName=" + hostName + "." + iotHubName + ";SharedAccessKeyName=" + sharedAccessKeyName + ";" + policyName + "=" + sharedAccessKey;
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS_WS;
+        ServiceClient serviceClient = ServiceClient.createFromConnectionString(connectionString, iotHubServiceClientProtocol);
+        // Act
+        serviceClient.setWebSocketMaxFrameSize(64 * 1024);
+        // Assert
+        new Verifications()
+        {
+            {
+                amqpSend.setWebSocketMaxFrameSize(64 * 1024);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_023: [The function shall store the size for the receivers and senders created afterwards]
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_21_025: [The functions which create a FeedbackReceiver, FeedbackSubscription or CloudToDeviceSender object shall set the WebSocket maximum frame size of the client on the created object]
+    @Test
+    public void getters_set_configured_WebSocket_frame_size(final @Mocked CloudToDeviceSender mockedCloudToDeviceSender,
+                                                            final @Mocked FeedbackSubscription mockedFeedbackSubscription,
+                                                            final @Mocked FeedbackBatchCallback mockedCallback) throws Exception
+    {
+        // Arrange
+        String iotHubName = "IOTHUBNAME";
+        String hostName = "HOSTNAME";
+        String sharedAccessKeyName = "ACCESSKEYNAME";
+        String policyName = "SharedAccessKey";
+        String sharedAccessKey = "1234567890abcdefghijklmnopqrstvwxyz=";
+        String connectionString = "HostName=" + hostName + "." + iotHubName + ";SharedAccessKeyName=" + sharedAccessKeyName + ";" + policyName + "=" + sharedAccessKey;
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS_WS;
+        ServiceClient serviceClient = ServiceClient.createFromConnectionString(connectionString, iotHubServiceClientProtocol);
+        serviceClient.setWebSocketMaxFrameSize(64 * 1024);
+        // Act
+        serviceClient.getFeedbackReceiver();
+        serviceClient.getFeedbackSubscription(mockedCallback);
+        serviceClient.getCloudToDeviceSender();
+        // Assert
+        new Verifications()
+        {
+            {
+                feedbackReceiver.setWebSocketMaxFrameSize(64 * 1024);
+                times = 1;
+                mockedFeedbackSubscription.setWebSocketMaxFrameSize(64 * 1024);
+                times = 1;
+                mockedCloudToDeviceSender.setWebSocketMaxFrameSize(64 * 1024);
+                times = 1;
+            }
+        };
+    }
 }
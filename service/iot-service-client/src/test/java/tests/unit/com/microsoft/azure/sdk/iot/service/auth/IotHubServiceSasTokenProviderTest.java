@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.auth;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
+import mockit.Deencapsulation;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/** Unit tests for IotHubServiceSasTokenProvider */
+public class IotHubServiceSasTokenProviderTest
+{
+    private static final String SHARED_ACCESS_KEY_NAME = "ACCESSKEYNAME";
+    private static final String SHARED_ACCESS_KEY = "1234567890abcdefghijklmnopqrstvwxyz=";
+
+    private static IotHubConnectionString createConnectionString(String hostName) throws Exception
+    {
+        String connectionString = "HostName=" + hostName + ";SharedAccessKeyName=" + SHARED_ACCESS_KEY_NAME + ";SharedAccessKey=" + SHARED_ACCESS_KEY;
+        return IotHubConnectionStringBuilder.createConnectionString(connectionString);
+    }
+
+    private static IotHubServiceSasToken getCachedToken(String hostName)
+    {
+        Map<String, Object> tokens = Deencapsulation.getField(IotHubServiceSasTokenProvider.class, "tokens");
+        Object cachedToken = tokens.get(hostName + ";" + SHARED_ACCESS_KEY_NAME + ";" + SHARED_ACCESS_KEY);
+        return (cachedToken == null) ? null : Deencapsulation.getField(cachedToken, "sasToken");
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_001: [The function shall throw IllegalArgumentException if the input object is null]
+    @Test (expected = IllegalArgumentException.class)
+    public void getSasToken_input_null()
+    {
+        IotHubServiceSasTokenProvider.getSasToken(null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_002: [If there is no cached token for the connection string, or the cached one is about to expire, the function shall create a new IotHubServiceSasToken and cache it]
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_004: [The function shall return the string representation of the cached token]
+    @Test
+    public void getSasToken_reuses_token_for_same_connection_string() throws Exception
+    {
+        // Arrange
+        String hostName = "HOSTNAME.cache.b.c.d";
+        IotHubConnectionString iotHubConnectionString = createConnectionString(hostName);
+
+        // Act
+        String token1 = IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
+        IotHubServiceSasToken cachedToken = getCachedToken(hostName);
+        String token2 = IotHubServiceSasTokenProvider.getSasToken(createConnectionString(hostName));
+
+        // Assert
+        assertEquals(cachedToken.toString(), token1);
+        assertSame(token1, token2);
+        assertSame(cachedToken, getCachedToken(hostName));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_002: [If there is no cached token for the connection string, or the cached one is about to expire, the function shall create a new IotHubServiceSasToken and cache it]
+    @Test
+    public void getSasToken_keeps_one_token_per_connection_string() throws Exception
+    {
+        // Act
+        String token1 = IotHubServiceSasTokenProvider.getSasToken(createConnectionString("HOSTNAME1.b.c.d"));
+        String token2 = IotHubServiceSasTokenProvider.getSasToken(createConnectionString("HOSTNAME2.b.c.d"));
+
+        // Assert
+        assertNotEquals(token1, token2);
+        assertEquals(token1, getCachedToken("HOSTNAME1.b.c.d").toString());
+        assertEquals(token2, getCachedToken("HOSTNAME2.b.c.d").toString());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_002: [If there is no cached token for the connection string, or the cached one is about to expire, the function shall create a new IotHubServiceSasToken and cache it]
+    @Test
+    public void getSasToken_replaces_token_about_to_expire() throws Exception
+    {
+        // Arrange
+        String hostName = "HOSTNAME.expire.b.c.d";
+        IotHubConnectionString iotHubConnectionString = createConnectionString(hostName);
+        IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
+        IotHubServiceSasToken expiringToken = getCachedToken(hostName);
+        Deencapsulation.setField(expiringToken, "expiryTime", System.currentTimeMillis() / 1000 + 10);
+
+        // Act
+        String token = IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
+
+        // Assert
+        IotHubServiceSasToken newToken = getCachedToken(hostName);
+        assertNotSame(expiringToken, newToken);
+        assertEquals(newToken.toString(), token);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENPROVIDER_21_003: [If the cached token is close to its expiry, the function shall renew it once in the background, and return the cached token meanwhile]
+    @Test
+    public void getSasToken_renews_token_close_to_expiry_in_background() throws Exception
+    {
+        // Arrange
+        String hostName = "HOSTNAME.renew.b.c.d";
+        IotHubConnectionString iotHubConnectionString = createConnectionString(hostName);
+        IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
+        IotHubServiceSasToken expiringToken = getCachedToken(hostName);
+        Deencapsulation.setField(expiringToken, "expiryTime", System.currentTimeMillis() / 1000 + 60 * 60);
+
+        // Act
+        String token = IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
+
+        // Assert
+        assertSame(expiringToken.toString(), token);
+        for (int i = 0; (i < 500) && (getCachedToken(hostName) == expiringToken); i++)
+        {
+            Thread.sleep(10);
+        }
+        assertNotSame(expiringToken, getCachedToken(hostName));
+    }
+}
@@ -56,6 +56,7 @@ public class IotHubServiceSasTokenTest
         String expectedToken = "SharedAccessSignature sr=hostname.b.c.d&sig=M%2FT5oCM8WWs%2B%2FMv7okAVmfrzVM%2FGUyA7EIp%2FfKo8BeQ%3D&se=1474065852&skn=ACCESSKEYNAME";
 
         IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(connectionString);
+        Deencapsulation.<ThreadLocal>getField(IotHubServiceSasToken.class, "HMAC_SHA256").remove();
 
         // Assert
         new Expectations()
@@ -126,4 +127,41 @@ public class IotHubServiceSasTokenTest
         Deencapsulation.setField(iotHubConnectionString, "hostName", null);
         IotHubServiceSasToken iotHubServiceSasToken = new IotHubServiceSasToken(iotHubConnectionString);
     }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKEN_21_009: [The function shall return the expiry time of the token in seconds since the epoch]
+    @Test
+    public void getExpiryTime_returns_expiry_in_seconds() throws Exception
+    {
+        // Arrange
+        String hostName = "HOSTNAME.b.c.d";
+        String connectionString = "HostName=" + hostName + ";SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+        IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(connectionString);
+        long expectedExpiry = System.currentTimeMillis() / 1000 + 365 * 24 * 60 * 60;
+
+        // Act
+        IotHubServiceSasToken iotHubServiceSasToken = new IotHubServiceSasToken(iotHubConnectionString);
+
+        // Assert
+        long expiryTime = iotHubServiceSasToken.getExpiryTime();
+        assertEquals(true, (expiryTime >= expectedExpiry) && (expiryTime <= expectedExpiry + 60));
+        assertEquals(true, iotHubServiceSasToken.toString().contains("&se=" + expiryTime + "&"));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKEN_12_004: [The constructor shall create a key from the shared access key signing with HmacSHA256]
+    @Test
+    public void constructor_reuses_mac_on_the_same_thread() throws Exception
+    {
+        // Arrange
+        String connectionString = "HostName=HOSTNAME.b.c.d;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+        IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(connectionString);
+        ThreadLocal<Mac> macs = Deencapsulation.getField(IotHubServiceSasToken.class, "HMAC_SHA256");
+
+        // Act
+        new IotHubServiceSasToken(iotHubConnectionString);
+        Mac mac = macs.get();
+        new IotHubServiceSasToken(iotHubConnectionString);
+
+        // Assert
+        assertEquals(mac, macs.get());
+    }
 }
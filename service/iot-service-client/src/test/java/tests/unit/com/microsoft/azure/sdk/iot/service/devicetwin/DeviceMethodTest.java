@@ -20,9 +20,12 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 
@@ -393,4 +396,104 @@ public class DeviceMethodTest
         };
     }
 
+    /* Tests_SRS_DEVICEMETHOD_21_016: [The invokeAsync shall validate the parameters and create the Json of the method in the same way as invoke.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void invokeAsync_throwOnNullDeviceId_failed(
+            @Mocked final DeviceOperations request,
+            @Mocked final IotHubServiceSasToken iotHubServiceSasToken,
+            @Mocked final IotHubConnectionStringBuilder mockedConnectionStringBuilder)
+            throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+
+        //act
+        testMethod.invokeAsync(null, STANDARD_METHODNAME, STANDARD_TIMEOUT_SECONDS, STANDARD_TIMEOUT_SECONDS, STANDARD_PAYLOAD_MAP);
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_21_017: [The invokeAsync shall send the request with http method `POST` by calling DeviceOperations.requestAsync.] */
+    /* Tests_SRS_DEVICEMETHOD_21_018: [The invokeAsync shall complete the future with the status and payload of the response, or exceptionally with the Exception of the request.] */
+    @Test
+    public void invokeAsync_succeed(
+            @Mocked final Method method,
+            @Mocked final DeviceOperations request,
+            @Mocked final HttpResponse response,
+            @Mocked final IotHubServiceSasToken iotHubServiceSasToken,
+            @Mocked final IotHubConnectionStringBuilder mockedConnectionStringBuilder)
+            throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+        new NonStrictExpectations()
+        {
+            {
+                iotHubConnectionString.getUrlMethod(STANDARD_DEVICEID);
+                result = STANDARD_URL;
+                DeviceOperations.requestAsync(iotHubConnectionString, (URL)any, HttpMethod.POST, (byte[])any, anyString);
+                result = CompletableFuture.completedFuture(response);
+                method.toJson();
+                result = STANDARD_JSON;
+                method.getPayload();
+                result = STANDARD_PAYLOAD_STR;
+                method.getStatus();
+                result = 123;
+            }
+        };
+
+        //act
+        MethodResult result = testMethod.invokeAsync(STANDARD_DEVICEID, STANDARD_METHODNAME, STANDARD_TIMEOUT_SECONDS, STANDARD_TIMEOUT_SECONDS, STANDARD_PAYLOAD_MAP).get();
+
+        //assert
+        assertThat(result.getStatus(), is(123));
+        assertThat(result.getPayload().toString(), is(STANDARD_PAYLOAD_STR));
+        new Verifications()
+        {
+            {
+                DeviceOperations.requestAsync(iotHubConnectionString, (URL)any, HttpMethod.POST, (byte[])any, anyString);
+                times = 1;
+                DeviceOperations.request(iotHubConnectionString, (URL)any, (HttpMethod)any, (byte[])any, anyString);
+                times = 0;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_21_018: [The invokeAsync shall complete the future with the status and payload of the response, or exceptionally with the Exception of the request.] */
+    @Test
+    public void invokeAsync_requestFailed(
+            @Mocked final Method method,
+            @Mocked final DeviceOperations request,
+            @Mocked final IotHubServiceSasToken iotHubServiceSasToken,
+            @Mocked final IotHubConnectionStringBuilder mockedConnectionStringBuilder)
+            throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+        final CompletableFuture<HttpResponse> failedFuture = new CompletableFuture<>();
+        failedFuture.completeExceptionally(new IotHubNotFoundException());
+        new NonStrictExpectations()
+        {
+            {
+                iotHubConnectionString.getUrlMethod(STANDARD_DEVICEID);
+                result = STANDARD_URL;
+                DeviceOperations.requestAsync(iotHubConnectionString, (URL)any, HttpMethod.POST, (byte[])any, anyString);
+                result = failedFuture;
+                method.toJson();
+                result = STANDARD_JSON;
+            }
+        };
+
+        //act
+        CompletableFuture<MethodResult> future = testMethod.invokeAsync(STANDARD_DEVICEID, STANDARD_METHODNAME, STANDARD_TIMEOUT_SECONDS, STANDARD_TIMEOUT_SECONDS, STANDARD_PAYLOAD_MAP);
+
+        //assert
+        try
+        {
+            future.get();
+            fail("The future shall complete exceptionally");
+        }
+        catch (ExecutionException e)
+        {
+            assertThat(e.getCause() instanceof IotHubNotFoundException, is(true));
+        }
+    }
 }
@@ -7,6 +7,7 @@ import com.microsoft.azure.sdk.iot.service.devicetwin.DeviceOperations;
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubBadFormatException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
@@ -23,8 +24,12 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
 
 /**
  * Unit tests for Http requester
@@ -167,11 +172,12 @@ public class DeviceOperationsTest
         //assert
     }
 
-    /* Tests_SRS_DEVICE_OPERATIONS_21_006: [The request shall create a new SASToken with the ServiceConnect rights.] */
+    /* Tests_SRS_DEVICE_OPERATIONS_21_006: [The request shall get the SASToken with the ServiceConnect rights from the IotHubServiceSasTokenProvider.] */
     @Test (expected = IllegalArgumentException.class)
     public void invoke_throwOnCreateIotHubServiceSasToken_failed() throws Exception
     {
         //arrange
+        Deencapsulation.<Map>getField(IotHubServiceSasTokenProvider.class, "tokens").clear();
         new MockUp<IotHubServiceSasToken>()
         {
             @Mock
@@ -605,4 +611,147 @@ public class DeviceOperationsTest
         };
     }
 
+    /* Tests_SRS_DEVICE_OPERATIONS_21_001: [The request shall throw IllegalArgumentException if the provided `iotHubConnectionString` is null.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void requestAsync_nullConnectionString_failed() throws Exception
+    {
+        //act
+        DeviceOperations.requestAsync(
+                null,
+                new URL(STANDARD_URL),
+                HttpMethod.POST,
+                STANDARD_PAYLOAD,
+                STANDARD_REQUEST_ID);
+    }
+
+    /* Tests_SRS_DEVICE_OPERATIONS_21_018: [The requestAsync shall send the created request without waiting for the response.] */
+    /* Tests_SRS_DEVICE_OPERATIONS_21_019: [The requestAsync shall complete the future with the http response if its status represents success, or else exceptionally with the proper Exception from httpResponseVerification.] */
+    /* Tests_SRS_DEVICE_OPERATIONS_21_020: [The requestAsync shall create the HttpRequest for the asynchronous client, which does not open a connection.] */
+    @Test
+    public void requestAsync_succeed(
+            @Mocked IotHubServiceSasToken iotHubServiceSasToken,
+            @Mocked HttpRequest httpRequest)
+            throws Exception
+    {
+        //arrange
+        final HttpResponse sendResponse = new HttpResponse(200, new byte[] { 1 }, new HashMap<String, List<String>>(), "succeed".getBytes());
+
+        new NonStrictExpectations()
+        {
+            {
+                iotHubServiceSasToken.toString();
+                result = STANDARD_SASTOKEN_STRING;
+                httpRequest.sendAsync();
+                result = CompletableFuture.completedFuture(sendResponse);
+                IotHubExceptionManager.httpResponseVerification(sendResponse);
+            }
+        };
+
+        //act
+        CompletableFuture<HttpResponse> future = DeviceOperations.requestAsync(
+                IOT_HUB_CONNECTION_STRING,
+                new URL(STANDARD_URL),
+                HttpMethod.POST,
+                STANDARD_PAYLOAD,
+                STANDARD_REQUEST_ID);
+
+        //assert
+        assertEquals(future.get(), sendResponse);
+        new Verifications()
+        {
+            {
+                HttpRequest.createAsync((URL) any, HttpMethod.POST, STANDARD_PAYLOAD);
+                times = 1;
+                new HttpRequest((URL) any, (HttpMethod) any, (byte[]) any);
+                times = 0;
+                httpRequest.setHeaderField(REQUEST_ID, STANDARD_REQUEST_ID);
+                times = 1;
+                httpRequest.sendAsync();
+                times = 1;
+                httpRequest.send();
+                times = 0;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_OPERATIONS_21_019: [The requestAsync shall complete the future with the http response if its status represents success, or else exceptionally with the proper Exception from httpResponseVerification.] */
+    @Test
+    public void requestAsync_httpResponseVerification_failed(
+            @Mocked IotHubServiceSasToken iotHubServiceSasToken,
+            @Mocked HttpRequest httpRequest)
+            throws Exception
+    {
+        //arrange
+        final HttpResponse sendResponse = new HttpResponse(400, new byte[0], new HashMap<String, List<String>>(), "{\"ExceptionMessage\":\"This is the error message\"}".getBytes());
+
+        new NonStrictExpectations()
+        {
+            {
+                iotHubServiceSasToken.toString();
+                result = STANDARD_SASTOKEN_STRING;
+                httpRequest.sendAsync();
+                result = CompletableFuture.completedFuture(sendResponse);
+            }
+        };
+
+        //act
+        CompletableFuture<HttpResponse> future = DeviceOperations.requestAsync(
+                IOT_HUB_CONNECTION_STRING,
+                new URL(STANDARD_URL),
+                HttpMethod.POST,
+                STANDARD_PAYLOAD,
+                STANDARD_REQUEST_ID);
+
+        //assert
+        try
+        {
+            future.get();
+            fail("The future shall complete exceptionally");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IotHubBadFormatException);
+        }
+    }
+
+    /* Tests_SRS_DEVICE_OPERATIONS_21_019: [The requestAsync shall complete the future with the http response if its status represents success, or else exceptionally with the proper Exception from httpResponseVerification.] */
+    @Test
+    public void requestAsync_send_failed(
+            @Mocked IotHubServiceSasToken iotHubServiceSasToken,
+            @Mocked HttpRequest httpRequest)
+            throws Exception
+    {
+        //arrange
+        final CompletableFuture<HttpResponse> failedFuture = new CompletableFuture<>();
+        failedFuture.completeExceptionally(new IOException());
+
+        new NonStrictExpectations()
+        {
+            {
+                iotHubServiceSasToken.toString();
+                result = STANDARD_SASTOKEN_STRING;
+                httpRequest.sendAsync();
+                result = failedFuture;
+            }
+        };
+
+        //act
+        CompletableFuture<HttpResponse> future = DeviceOperations.requestAsync(
+                IOT_HUB_CONNECTION_STRING,
+                new URL(STANDARD_URL),
+                HttpMethod.POST,
+                STANDARD_PAYLOAD,
+                STANDARD_REQUEST_ID);
+
+        //assert
+        try
+        {
+            future.get();
+            fail("The future shall complete exceptionally");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
 }
@@ -24,8 +24,13 @@ import org.junit.Test;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class DeviceTwinTest
 {
@@ -228,6 +233,105 @@ public class DeviceTwinTest
         testTwin.getTwin(mockedDevice);
     }
 
+    /*
+    **Tests_SRS_DEVICETWIN_21_046: [** The function shall send the request for the twin of the device by calling DeviceOperations.requestAsync with http method as Get **]**
+    **Tests_SRS_DEVICETWIN_21_047: [** The function shall set the twin in the response on the device and complete the future with the device, or else complete it exceptionally with the Exception of the request **]**
+     */
+    @Test
+    public void getTwinAsyncSucceeds() throws Exception
+    {
+        //arrange
+        final String connectionString = "testString";
+        DeviceTwin testTwin = DeviceTwin.createFromConnectionString(connectionString);
+        new NonStrictExpectations()
+        {
+            {
+                mockedDevice.getDeviceId();
+                result = "SomeDevID";
+                Deencapsulation.invoke(mockedDevice, "getTwinObject");
+                result = mockedTwinObject;
+                mockedHttpRequest.sendAsync();
+                result = CompletableFuture.completedFuture(mockedHttpResponse);
+            }
+        };
+
+        //act
+        DeviceTwinDevice result = testTwin.getTwinAsync(mockedDevice).get();
+
+        //assert
+        assertEquals(mockedDevice, result);
+        new Verifications()
+        {
+            {
+                mockedConnectionString.getUrlTwin(anyString);
+                times = 1;
+                mockedHttpRequest.sendAsync();
+                times = 1;
+                mockedHttpRequest.send();
+                times = 0;
+                mockedTwinObject.updateTwin(anyString);
+                times = 1;
+            }
+        };
+    }
+
+    /*
+    **Tests_SRS_DEVICETWIN_21_045: [** The function shall throw IllegalArgumentException if the input device is null or if deviceId is null or empty **]**
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void getTwinAsyncThrowsOnNullDevice() throws Exception
+    {
+        //arrange
+        final String connectionString = "testString";
+        DeviceTwin testTwin = DeviceTwin.createFromConnectionString(connectionString);
+
+        //act
+        testTwin.getTwinAsync(null);
+    }
+
+    /*
+    **Tests_SRS_DEVICETWIN_21_047: [** The function shall set the twin in the response on the device and complete the future with the device, or else complete it exceptionally with the Exception of the request **]**
+     */
+    @Test
+    public void getTwinAsyncCompletesExceptionallyOnFailedRequest() throws Exception
+    {
+        //arrange
+        final String connectionString = "testString";
+        DeviceTwin testTwin = DeviceTwin.createFromConnectionString(connectionString);
+        final CompletableFuture<HttpResponse> failedFuture = new CompletableFuture<>();
+        failedFuture.completeExceptionally(new IOException());
+        new NonStrictExpectations()
+        {
+            {
+                mockedDevice.getDeviceId();
+                result = "SomeDevID";
+                mockedHttpRequest.sendAsync();
+                result = failedFuture;
+            }
+        };
+
+        //act
+        CompletableFuture<DeviceTwinDevice> future = testTwin.getTwinAsync(mockedDevice);
+
+        //assert
+        try
+        {
+            future.get();
+            fail("The future shall complete exceptionally");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        new Verifications()
+        {
+            {
+                mockedTwinObject.updateTwin(anyString);
+                times = 0;
+            }
+        };
+    }
+
     /*
     **Tests_SRS_DEVICETWIN_25_010: [** The function shall verify the response status and throw proper Exception **]**
      */
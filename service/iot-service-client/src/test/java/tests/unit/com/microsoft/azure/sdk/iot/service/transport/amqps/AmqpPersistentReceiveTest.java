@@ -0,0 +1,498 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.FeedbackBatch;
+import com.microsoft.azure.sdk.iot.service.FeedbackBatchCallback;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
+import mockit.Deencapsulation;
+import mockit.Delegate;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Rejected;
+import org.apache.qpid.proton.amqp.messaging.Released;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Handler;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for AmqpPersistentReceive */
+public class AmqpPersistentReceiveTest
+{
+    private static final String CONNECTION_STRING = "HostName=aaa.bbb.ccc;SharedAccessKeyName=ddd;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+    private static final String FEEDBACK_JSON = "[{\"originalMessageId\":\"a\",\"description\":\"Success\",\"deviceGenerationId\":\"1\","
+            + "\"deviceId\":\"d\",\"enqueuedTimeUtc\":\"2017-01-01T00:00:00.000Z\",\"statusCode\":\"Success\"}]";
+
+    @Mocked Reactor reactor;
+    @Mocked Connection connection;
+    @Mocked Receiver receiver;
+    @Mocked Delivery delivery;
+    @Mocked Event event;
+
+    private final List<FeedbackBatch> received = new ArrayList<>();
+
+    private final FeedbackBatchCallback callback = new FeedbackBatchCallback()
+    {
+        @Override
+        public void onFeedbackBatchReceived(FeedbackBatch feedbackBatch)
+        {
+            received.add(feedbackBatch);
+        }
+    };
+
+    private static IotHubConnectionString createConnectionString()
+    {
+        try
+        {
+            return IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+        }
+        catch (IOException e)
+        {
+            throw new AssertionError(e);
+        }
+    }
+
+    /* Creates a receiver which is open and connected, without starting the reactor thread. */
+    private AmqpPersistentReceive createConnectedReceiver(FeedbackBatchCallback feedbackBatchCallback)
+    {
+        AmqpPersistentReceive amqpPersistentReceive = new AmqpPersistentReceive(createConnectionString(), IotHubServiceClientProtocol.AMQPS,
+                feedbackBatchCallback, 10);
+        Deencapsulation.setField(amqpPersistentReceive, "reactor", reactor);
+        Deencapsulation.setField(amqpPersistentReceive, "isOpen", true);
+        Deencapsulation.setField(amqpPersistentReceive, "connection", connection);
+        return amqpPersistentReceive;
+    }
+
+    /* Makes every delivery carry the encoded feedback message. */
+    private void deliverFeedback(final String json, final int credit)
+    {
+        org.apache.qpid.proton.message.Message message = Proton.message();
+        message.setBody(new Data(new Binary(json.getBytes(StandardCharsets.UTF_8))));
+        final byte[] encoded = new byte[1024];
+        final int length = message.encode(encoded, 0, encoded.length);
+        new NonStrictExpectations()
+        {
+            {
+                event.getLink();
+                result = receiver;
+                event.getDelivery();
+                result = delivery;
+                delivery.isReadable();
+                result = true;
+                delivery.isPartial();
+                result = false;
+                delivery.pending();
+                result = length;
+                receiver.recv((byte[]) any, 0, length);
+                result = new Delegate()
+                {
+                    int recv(byte[] bytes, int offset, int size)
+                    {
+                        System.arraycopy(encoded, 0, bytes, offset, size);
+                        return size;
+                    }
+                };
+                receiver.getCredit();
+                result = credit;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_002: [The constructor shall throw IllegalArgumentException if the connection string, the protocol
+    // or the callback is null, or the prefetch credit is not positive]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_checks_if_connectionString_null()
+    {
+        new AmqpPersistentReceive(null, IotHubServiceClientProtocol.AMQPS, callback, 10);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_002: [The constructor shall throw IllegalArgumentException if the connection string, the protocol
+    // or the callback is null, or the prefetch credit is not positive]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_checks_if_protocol_null()
+    {
+        new AmqpPersistentReceive(createConnectionString(), null, callback, 10);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_024: [The function shall return the SAS token of the connection string from the IotHubServiceSasTokenProvider,
+    // so every connection and reconnection authenticates with a token which did not expire]
+    @Test
+    public void getSasToken_takes_token_from_provider_on_each_connect(final @Mocked IotHubServiceSasTokenProvider mockedProvider)
+    {
+        // Arrange
+        final IotHubConnectionString iotHubConnectionString = createConnectionString();
+        new NonStrictExpectations()
+        {
+            {
+                IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
+                returns("firstToken", "renewedToken");
+            }
+        };
+        AmqpPersistentReceive amqpPersistentReceive = new AmqpPersistentReceive(iotHubConnectionString, IotHubServiceClientProtocol.AMQPS, callback, 10);
+        // Act
+        String reconnectToken = amqpPersistentReceive.getSasToken();
+        // Assert
+        assertEquals("renewedToken", reconnectToken);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_002: [The constructor shall throw IllegalArgumentException if the connection string, the protocol
+    // or the callback is null, or the prefetch credit is not positive]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_checks_if_callback_null()
+    {
+        new AmqpPersistentReceive(createConnectionString(), IotHubServiceClientProtocol.AMQPS, null, 10);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_002: [The constructor shall throw IllegalArgumentException if the connection string, the protocol
+    // or the callback is null, or the prefetch credit is not positive]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_checks_if_prefetchCredit_zero()
+    {
+        new AmqpPersistentReceive(createConnectionString(), IotHubServiceClientProtocol.AMQPS, callback, 0);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_023: [If the reactor thread of the previous open is still running, the function shall throw an IOException,
+    // because both reactors would share the connection state of this object]
+    @Test (expected = IOException.class)
+    public void open_throws_if_previous_reactor_thread_still_running() throws IOException, InterruptedException
+    {
+        // Arrange
+        AmqpPersistentReceive amqpPersistentReceive = new AmqpPersistentReceive(createConnectionString(), IotHubServiceClientProtocol.AMQPS, callback, 10);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread oldReactorThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        oldReactorThread.start();
+        Deencapsulation.setField(amqpPersistentReceive, "reactorThread", oldReactorThread);
+        // Act
+        try
+        {
+            amqpPersistentReceive.open();
+        }
+        finally
+        {
+            release.countDown();
+            oldReactorThread.join();
+        }
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_004: [The function shall create a Proton reactor handled by this object and run it on a new daemon thread]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_005: [When the reactor stops, the reactor shall be freed and, if it is still the reactor
+    // of this receiver, the receiver shall be closed]
+    @Test
+    public void open_runs_reactor_on_new_thread(final @Mocked Proton proton) throws IOException, InterruptedException
+    {
+        // Arrange
+        AmqpPersistentReceive amqpPersistentReceive = new AmqpPersistentReceive(createConnectionString(), IotHubServiceClientProtocol.AMQPS, callback, 10);
+        new NonStrictExpectations()
+        {
+            {
+                Proton.reactor((Handler) any);
+                result = reactor;
+            }
+        };
+        // Act
+        amqpPersistentReceive.open();
+        Thread reactorThread = Deencapsulation.getField(amqpPersistentReceive, "reactorThread");
+        reactorThread.join(1000);
+        // Assert
+        assertTrue(reactorThread.isDaemon());
+        assertFalse((Boolean) Deencapsulation.getField(amqpPersistentReceive, "isOpen"));
+        new Verifications()
+        {
+            {
+                reactor.run();
+                times = 1;
+                reactor.free();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_005: [When the reactor stops, the reactor shall be freed and, if it is still the reactor
+    // of this receiver, the receiver shall be closed]
+    @Test
+    public void reactor_thread_does_not_close_receiver_of_another_reactor(final @Mocked Proton proton, final @Mocked Reactor newReactor) throws IOException, InterruptedException
+    {
+        // Arrange
+        AmqpPersistentReceive amqpPersistentReceive = new AmqpPersistentReceive(createConnectionString(), IotHubServiceClientProtocol.AMQPS, callback, 10);
+        final CountDownLatch release = new CountDownLatch(1);
+        new NonStrictExpectations()
+        {
+            {
+                Proton.reactor((Handler) any);
+                result = reactor;
+                reactor.run();
+                result = new Delegate()
+                {
+                    void run() throws InterruptedException
+                    {
+                        release.await();
+                    }
+                };
+            }
+        };
+        amqpPersistentReceive.open();
+        Thread reactorThread = Deencapsulation.getField(amqpPersistentReceive, "reactorThread");
+        Deencapsulation.setField(amqpPersistentReceive, "reactor", newReactor);
+        // Act
+        release.countDown();
+        reactorThread.join(1000);
+        // Assert
+        assertTrue((Boolean) Deencapsulation.getField(amqpPersistentReceive, "isOpen"));
+        new Verifications()
+        {
+            {
+                reactor.free();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_011: [The event handler shall grant the prefetch credit to the Receiver link]
+    @Test
+    public void onLinkLocalOpen_grants_prefetch_credit()
+    {
+        // Arrange
+        AmqpPersistentReceive amqpPersistentReceive = createConnectedReceiver(callback);
+        new NonStrictExpectations()
+        {
+            {
+                event.getLink();
+                result = receiver;
+            }
+        };
+        // Act
+        amqpPersistentReceive.onLinkLocalOpen(event);
+        // Assert
+        new Verifications()
+        {
+            {
+                receiver.flow(10);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_014: [The event handler shall read the delivery into a reused buffer and decode the Message (Proton) object from it]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_016: [The event handler shall push the FeedbackBatch to the callback and accept it]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_018: [The event handler shall settle the delivery with its outcome]
+    @Test
+    public void onDelivery_pushes_batches_and_settles_each_of_them()
+    {
+        // Arrange
+        AmqpPersistentReceive amqpPersistentReceive = createConnectedReceiver(callback);
+        deliverFeedback(FEEDBACK_JSON, 10);
+        // Act
+        amqpPersistentReceive.onDelivery(event);
+        amqpPersistentReceive.onDelivery(event);
+        // Assert
+        assertEquals(2, received.size());
+        assertEquals("d", received.get(0).getRecords().get(0).getDeviceId());
+        new Verifications()
+        {
+            {
+                delivery.disposition(Accepted.getInstance());
+                times = 2;
+                delivery.settle();
+                times = 2;
+                connection.close();
+                times = 0;
+                receiver.flow(anyInt);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_013: [The event handler shall ignore the delivery until it is fully received]
+    @Test
+    public void onDelivery_ignores_partial_delivery()
+    {
+        // Arrange
+        AmqpPersistentReceive amqpPersistentReceive = createConnectedReceiver(callback);
+        new NonStrictExpectations()
+        {
+            {
+                event.getLink();
+                result = receiver;
+                event.getDelivery();
+                result = delivery;
+                delivery.isReadable();
+                result = true;
+                delivery.isPartial();
+                result = true;
+            }
+        };
+        // Act
+        amqpPersistentReceive.onDelivery(event);
+        // Assert
+        assertTrue(received.isEmpty());
+        new Verifications()
+        {
+            {
+                receiver.recv((byte[]) any, anyInt, anyInt);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_015: [If the message cannot be parsed to a FeedbackBatch, the event handler shall reject it]
+    @Test
+    public void onDelivery_rejects_invalid_feedback()
+    {
+        // Arrange
+        AmqpPersistentReceive amqpPersistentReceive = createConnectedReceiver(callback);
+        deliverFeedback("{not json", 10);
+        // Act
+        amqpPersistentReceive.onDelivery(event);
+        // Assert
+        assertTrue(received.isEmpty());
+        new Verifications()
+        {
+            {
+                delivery.disposition((DeliveryState) withInstanceOf(Rejected.class));
+                times = 1;
+                delivery.settle();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_017: [If the callback throws, the event handler shall release the batch so that the IoT Hub delivers it again]
+    @Test
+    public void onDelivery_releases_batch_if_callback_throws()
+    {
+        // Arrange
+        AmqpPersistentReceive amqpPersistentReceive = createConnectedReceiver(new FeedbackBatchCallback()
+        {
+            @Override
+            public void onFeedbackBatchReceived(FeedbackBatch feedbackBatch)
+            {
+                throw new IllegalStateException();
+            }
+        });
+        deliverFeedback(FEEDBACK_JSON, 10);
+        // Act
+        amqpPersistentReceive.onDelivery(event);
+        // Assert
+        new Verifications()
+        {
+            {
+                delivery.disposition(Released.getInstance());
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_019: [The event handler shall top the link credit up to the prefetch credit once half of it is used]
+    @Test
+    public void onDelivery_tops_credit_up_once_half_is_used()
+    {
+        // Arrange
+        AmqpPersistentReceive amqpPersistentReceive = createConnectedReceiver(callback);
+        deliverFeedback(FEEDBACK_JSON, 5);
+        // Act
+        amqpPersistentReceive.onDelivery(event);
+        // Assert
+        new Verifications()
+        {
+            {
+                receiver.flow(5);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_010: [If the receiver was closed, the event handler shall cancel any reconnection and close the connection, which lets the reactor stop]
+    @Test
+    public void onReactorQuiesced_closes_connection_if_closed()
+    {
+        // Arrange
+        AmqpPersistentReceive amqpPersistentReceive = createConnectedReceiver(callback);
+        Deencapsulation.setField(amqpPersistentReceive, "isOpen", false);
+        // Act
+        amqpPersistentReceive.onReactorQuiesced(event);
+        // Assert
+        new Verifications()
+        {
+            {
+                connection.close();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_020: [If the event is about the current connection, the event handler shall close it]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_021: [If the receiver is still open, the event handler shall schedule a reconnection,
+    // doubling the delay after each failed attempt up to a maximum]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTRECEIVE_21_022: [If the receiver is still open and not connected, the event handler shall open a new connection handled by this object]
+    @Test
+    public void onTransportError_closes_connection_and_reconnects()
+    {
+        // Arrange
+        final AmqpPersistentReceive amqpPersistentReceive = createConnectedReceiver(callback);
+        new NonStrictExpectations()
+        {
+            {
+                event.getConnection();
+                result = connection;
+                event.getReactor();
+                result = reactor;
+            }
+        };
+        // Act
+        amqpPersistentReceive.onTransportError(event);
+        amqpPersistentReceive.onConnectionRemoteClose(event);
+        amqpPersistentReceive.onReactorQuiesced(event);
+        amqpPersistentReceive.onTimerTask(event);
+        // Assert
+        new Verifications()
+        {
+            {
+                connection.close();
+                times = 1;
+                reactor.schedule(1000, amqpPersistentReceive);
+                times = 1;
+                reactor.connection(amqpPersistentReceive);
+                times = 1;
+            }
+        };
+    }
+}
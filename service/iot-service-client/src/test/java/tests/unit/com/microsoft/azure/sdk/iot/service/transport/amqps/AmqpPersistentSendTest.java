@@ -0,0 +1,613 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenProvider;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubNotFoundException;
+import mockit.Deencapsulation;
+import mockit.Delegate;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Rejected;
+import org.apache.qpid.proton.amqp.transport.ErrorCondition;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Handler;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.apache.qpid.proton.reactor.Task;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for AmqpPersistentSend */
+public class AmqpPersistentSendTest
+{
+    private static final String CONNECTION_STRING = "HostName=aaa.bbb.ccc;SharedAccessKeyName=ddd;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+    private static final String DEVICE_ID = "deviceId";
+    private static final byte[] BODY = {0x61, 0x62, 0x63};
+
+    @Mocked Reactor reactor;
+    @Mocked Connection connection;
+    @Mocked Sender sender;
+    @Mocked Delivery delivery;
+    @Mocked Event event;
+
+    private static IotHubConnectionString createConnectionString()
+    {
+        try
+        {
+            return IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+        }
+        catch (IOException e)
+        {
+            throw new AssertionError(e);
+        }
+    }
+
+    /* Creates a sender which is open and connected, without starting the reactor thread. */
+    private AmqpPersistentSend createConnectedSender()
+    {
+        AmqpPersistentSend amqpPersistentSend = new AmqpPersistentSend(createConnectionString(), IotHubServiceClientProtocol.AMQPS);
+        Deencapsulation.setField(amqpPersistentSend, "reactor", reactor);
+        Deencapsulation.setField(amqpPersistentSend, "isOpen", true);
+        Deencapsulation.setField(amqpPersistentSend, "connection", connection);
+        Deencapsulation.setField(amqpPersistentSend, "sender", sender);
+        return amqpPersistentSend;
+    }
+
+    private static Throwable causeOf(CompletableFuture<Void> future) throws InterruptedException
+    {
+        try
+        {
+            future.get();
+            return null;
+        }
+        catch (ExecutionException e)
+        {
+            return e.getCause();
+        }
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_001: [The constructor shall throw IllegalArgumentException if the connection string or the protocol is null]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_checks_if_connectionString_null()
+    {
+        new AmqpPersistentSend(null, IotHubServiceClientProtocol.AMQPS);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_001: [The constructor shall throw IllegalArgumentException if the connection string or the protocol is null]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_checks_if_protocol_null()
+    {
+        new AmqpPersistentSend(createConnectionString(), null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_033: [The function shall return the SAS token of the connection string from the IotHubServiceSasTokenProvider,
+    // so every connection and reconnection authenticates with a token which did not expire]
+    @Test
+    public void getSasToken_takes_token_from_provider_on_each_connect(final @Mocked IotHubServiceSasTokenProvider mockedProvider)
+    {
+        // Arrange
+        final IotHubConnectionString iotHubConnectionString = createConnectionString();
+        new NonStrictExpectations()
+        {
+            {
+                IotHubServiceSasTokenProvider.getSasToken(iotHubConnectionString);
+                returns("firstToken", "renewedToken");
+            }
+        };
+        AmqpPersistentSend amqpPersistentSend = new AmqpPersistentSend(iotHubConnectionString, IotHubServiceClientProtocol.AMQPS);
+        // Act
+        String reconnectToken = amqpPersistentSend.getSasToken();
+        // Assert
+        assertEquals("renewedToken", reconnectToken);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_009: [The function shall throw IllegalArgumentException if the deviceId is null or empty, or the message is null]
+    @Test (expected = IllegalArgumentException.class)
+    public void sendAsync_checks_if_deviceId_empty()
+    {
+        createConnectedSender().sendAsync("", new com.microsoft.azure.sdk.iot.service.Message(BODY));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_010: [If the sender is not open, the function shall return a future failed with an IOException]
+    @Test
+    public void sendAsync_fails_if_not_open() throws InterruptedException
+    {
+        // Arrange
+        AmqpPersistentSend amqpPersistentSend = new AmqpPersistentSend(createConnectionString(), IotHubServiceClientProtocol.AMQPS);
+        // Act
+        CompletableFuture<Void> future = amqpPersistentSend.sendAsync(DEVICE_ID, new com.microsoft.azure.sdk.iot.service.Message(BODY));
+        // Assert
+        assertTrue(causeOf(future) instanceof IOException);
+        assertEquals(0, amqpPersistentSend.getPendingCount());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_004: [The function shall create a Proton reactor handled by this object and run it on a new daemon thread]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_005: [When the reactor stops, the sender shall be closed, the reactor freed,
+    // and all the messages waiting to be sent or acknowledged shall fail with an IOException]
+    @Test
+    public void open_runs_reactor_on_new_thread(final @Mocked Proton proton) throws IOException, InterruptedException
+    {
+        // Arrange
+        AmqpPersistentSend amqpPersistentSend = new AmqpPersistentSend(createConnectionString(), IotHubServiceClientProtocol.AMQPS);
+        new NonStrictExpectations()
+        {
+            {
+                Proton.reactor((Handler) any);
+                result = reactor;
+            }
+        };
+        // Act
+        amqpPersistentSend.open();
+        Thread reactorThread = Deencapsulation.getField(amqpPersistentSend, "reactorThread");
+        reactorThread.join(1000);
+        // Assert
+        assertTrue(reactorThread.isDaemon());
+        assertFalse((Boolean) Deencapsulation.getField(amqpPersistentSend, "isOpen"));
+        new Verifications()
+        {
+            {
+                reactor.run();
+                times = 1;
+                reactor.free();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_027: [If the reactor thread of the previous open is still running, the function shall throw an IOException,
+    // because both reactors would share the connection state of this object]
+    @Test (expected = IOException.class)
+    public void open_throws_if_previous_reactor_thread_still_running() throws IOException, InterruptedException
+    {
+        // Arrange
+        AmqpPersistentSend amqpPersistentSend = new AmqpPersistentSend(createConnectionString(), IotHubServiceClientProtocol.AMQPS);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread oldReactorThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        oldReactorThread.start();
+        Deencapsulation.setField(amqpPersistentSend, "reactorThread", oldReactorThread);
+        // Act
+        try
+        {
+            amqpPersistentSend.open();
+        }
+        finally
+        {
+            release.countDown();
+            oldReactorThread.join();
+        }
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_005: [When the reactor stops, the reactor shall be freed and, if it is still the reactor
+    // of this sender, the sender shall be closed and all the messages waiting to be sent or acknowledged shall fail with an IOException]
+    @Test
+    public void reactor_thread_does_not_close_sender_of_another_reactor(final @Mocked Proton proton, final @Mocked Reactor newReactor) throws IOException, InterruptedException
+    {
+        // Arrange
+        final AmqpPersistentSend amqpPersistentSend = new AmqpPersistentSend(createConnectionString(), IotHubServiceClientProtocol.AMQPS);
+        final CountDownLatch release = new CountDownLatch(1);
+        new NonStrictExpectations()
+        {
+            {
+                Proton.reactor((Handler) any);
+                result = reactor;
+                reactor.run();
+                result = new Delegate()
+                {
+                    void run() throws InterruptedException
+                    {
+                        release.await();
+                    }
+                };
+            }
+        };
+        amqpPersistentSend.open();
+        Thread reactorThread = Deencapsulation.getField(amqpPersistentSend, "reactorThread");
+        Deencapsulation.setField(amqpPersistentSend, "reactor", newReactor);
+        CompletableFuture<Void> queued = amqpPersistentSend.sendAsync(DEVICE_ID, new com.microsoft.azure.sdk.iot.service.Message(BODY));
+        // Act
+        release.countDown();
+        reactorThread.join(1000);
+        // Assert
+        assertTrue((Boolean) Deencapsulation.getField(amqpPersistentSend, "isOpen"));
+        assertFalse(queued.isDone());
+        assertEquals(1, amqpPersistentSend.getPendingCount());
+        new Verifications()
+        {
+            {
+                reactor.free();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_028: [If the queue is full, the function shall return a future failed with an IOException]
+    @Test
+    public void sendAsync_fails_if_queue_full() throws InterruptedException
+    {
+        // Arrange
+        AmqpPersistentSend amqpPersistentSend = createConnectedSender();
+        int maxQueuedMessages = Deencapsulation.getField(AmqpPersistentSend.class, "MAX_QUEUED_MESSAGES");
+        for (int i = 0; i < maxQueuedMessages; i++)
+        {
+            amqpPersistentSend.sendAsync(DEVICE_ID, new com.microsoft.azure.sdk.iot.service.Message(BODY));
+        }
+        // Act
+        CompletableFuture<Void> future = amqpPersistentSend.sendAsync(DEVICE_ID, new com.microsoft.azure.sdk.iot.service.Message(BODY));
+        // Assert
+        assertTrue(causeOf(future) instanceof IOException);
+        assertEquals(maxQueuedMessages, amqpPersistentSend.getPendingCount());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_011: [The function shall queue the Proton message with a new future, and wake the reactor up]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_012: [The function shall return the number of messages waiting to be sent plus the number of messages waiting to be acknowledged]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_025: [The function shall send queued messages, oldest first, while the Sender link has credit,
+    // without waiting for the previous messages to be acknowledged]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_026: [The function shall send each message with a unique delivery tag, and keep its future on the delivery]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_031: [The delivery tag shall be the big-endian binary value of a counter, without its leading zero bytes]
+    @Test
+    public void onLinkFlow_sends_many_messages_while_link_has_credit()
+    {
+        // Arrange
+        final int count = 1000;
+        AmqpPersistentSend amqpPersistentSend = createConnectedSender();
+        new NonStrictExpectations()
+        {
+            {
+                sender.delivery((byte[]) any);
+                result = delivery;
+                sender.getCredit();
+                result = new Delegate()
+                {
+                    int credit = count;
+                    int getCredit()
+                    {
+                        return credit--;
+                    }
+                };
+            }
+        };
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < count + 1; i++)
+        {
+            futures.add(amqpPersistentSend.sendAsync(DEVICE_ID + i, new com.microsoft.azure.sdk.iot.service.Message(BODY)));
+        }
+        // Act
+        amqpPersistentSend.onLinkFlow(event);
+        // Assert
+        assertEquals(count + 1, amqpPersistentSend.getPendingCount());
+        for (CompletableFuture<Void> future : futures)
+        {
+            assertFalse(future.isDone());
+        }
+        new Verifications()
+        {
+            {
+                reactor.wakeup();
+                times = count + 1;
+                sender.delivery(new byte[] {0x00});
+                times = 1;
+                sender.delivery(new byte[] {(byte) 0xFF});
+                times = 1;
+                sender.delivery(new byte[] {0x01, 0x00});
+                times = 1;
+                sender.delivery(new byte[] {0x03, (byte) 0xE7});
+                times = 1;
+                sender.send((byte[]) any, 0, anyInt);
+                times = count;
+                sender.advance();
+                times = count;
+                delivery.setContext(futures.get(0));
+                times = 1;
+                connection.close();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_019: [The event handler shall ignore the delivery until the IoT Hub updates its remote state or settles it]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_020: [The event handler shall verify the Amqp response and settle the delivery]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_021: [The event handler shall complete the future of the message sent with this delivery,
+    // exceptionally with the exception from the response if it is not null]
+    @Test
+    public void onDelivery_completes_future_of_acknowledged_message() throws InterruptedException
+    {
+        // Arrange
+        AmqpPersistentSend amqpPersistentSend = createConnectedSender();
+        final CompletableFuture<Void> future = amqpPersistentSend.sendAsync(DEVICE_ID, new com.microsoft.azure.sdk.iot.service.Message(BODY));
+        new NonStrictExpectations()
+        {
+            {
+                sender.delivery((byte[]) any);
+                result = delivery;
+                sender.getCredit();
+                returns(1, 0);
+                event.getDelivery();
+                result = delivery;
+                delivery.getContext();
+                result = future;
+                delivery.getRemoteState();
+                returns(null, Accepted.getInstance(), Accepted.getInstance());
+                delivery.remotelySettled();
+                result = false;
+            }
+        };
+        amqpPersistentSend.onLinkFlow(event);
+        // Act
+        amqpPersistentSend.onDelivery(event);
+        assertFalse(future.isDone());
+        amqpPersistentSend.onDelivery(event);
+        // Assert
+        assertEquals(null, causeOf(future));
+        assertEquals(0, amqpPersistentSend.getPendingCount());
+        new Verifications()
+        {
+            {
+                delivery.settle();
+                times = 1;
+                sender.close();
+                times = 0;
+                connection.close();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_021: [The event handler shall complete the future of the message sent with this delivery,
+    // exceptionally with the exception from the response if it is not null]
+    @Test
+    public void onDelivery_fails_future_of_rejected_message() throws InterruptedException
+    {
+        // Arrange
+        AmqpPersistentSend amqpPersistentSend = createConnectedSender();
+        final CompletableFuture<Void> future = amqpPersistentSend.sendAsync(DEVICE_ID, new com.microsoft.azure.sdk.iot.service.Message(BODY));
+        final Rejected rejected = new Rejected();
+        rejected.setError(new ErrorCondition(Symbol.getSymbol("amqp:not-found"), "not found"));
+        new NonStrictExpectations()
+        {
+            {
+                sender.delivery((byte[]) any);
+                result = delivery;
+                sender.getCredit();
+                returns(1, 0);
+                event.getDelivery();
+                result = delivery;
+                delivery.getContext();
+                result = future;
+                delivery.getRemoteState();
+                result = rejected;
+            }
+        };
+        amqpPersistentSend.onLinkFlow(event);
+        // Act
+        amqpPersistentSend.onDelivery(event);
+        // Assert
+        assertTrue(causeOf(future) instanceof IotHubNotFoundException);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_022: [If the event is about the current connection, the event handler shall close it
+    // and fail the messages waiting to be acknowledged with an IOException]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_023: [If the sender is still open, the event handler shall schedule a reconnection,
+    // doubling the delay after each failed attempt up to a maximum]
+    @Test
+    public void onTransportError_fails_inflight_messages_and_schedules_reconnect() throws InterruptedException
+    {
+        // Arrange
+        final AmqpPersistentSend amqpPersistentSend = createConnectedSender();
+        CompletableFuture<Void> inFlight = amqpPersistentSend.sendAsync(DEVICE_ID, new com.microsoft.azure.sdk.iot.service.Message(BODY));
+        new NonStrictExpectations()
+        {
+            {
+                sender.delivery((byte[]) any);
+                result = delivery;
+                sender.getCredit();
+                returns(1, 0);
+                event.getConnection();
+                result = connection;
+                event.getReactor();
+                result = reactor;
+            }
+        };
+        amqpPersistentSend.onLinkFlow(event);
+        CompletableFuture<Void> queued = amqpPersistentSend.sendAsync(DEVICE_ID, new com.microsoft.azure.sdk.iot.service.Message(BODY));
+        // Act
+        amqpPersistentSend.onTransportError(event);
+        amqpPersistentSend.onConnectionRemoteClose(event);
+        // Assert
+        assertTrue(causeOf(inFlight) instanceof IOException);
+        assertFalse(queued.isDone());
+        assertEquals(1, amqpPersistentSend.getPendingCount());
+        assertEquals(2000, (int) Deencapsulation.getField(amqpPersistentSend, "reconnectDelayMillis"));
+        new Verifications()
+        {
+            {
+                connection.close();
+                times = 1;
+                reactor.schedule(1000, amqpPersistentSend);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_013: [The event handler shall open a connection handled by this object]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_024: [If the sender is still open and not connected, the event handler shall open a new connection handled by this object]
+    @Test
+    public void onTimerTask_reconnects_if_open()
+    {
+        // Arrange
+        final AmqpPersistentSend amqpPersistentSend = createConnectedSender();
+        Deencapsulation.setField(amqpPersistentSend, "connection", null);
+        new NonStrictExpectations()
+        {
+            {
+                event.getReactor();
+                result = reactor;
+            }
+        };
+        // Act
+        amqpPersistentSend.onTimerTask(event);
+        // Assert
+        new Verifications()
+        {
+            {
+                reactor.connection(amqpPersistentSend);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_029: [The event handler shall schedule the check of the message deadlines]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_030: [If the sender is still open, the event handler shall fail the messages which passed
+    // their deadline with a TimeoutException, and schedule the next check]
+    @Test
+    public void onTimerTask_fails_expired_messages_and_schedules_next_check(final @Mocked Task expiryTask) throws InterruptedException
+    {
+        // Arrange
+        final AmqpPersistentSend amqpPersistentSend = createConnectedSender();
+        new NonStrictExpectations()
+        {
+            {
+                event.getReactor();
+                result = reactor;
+                reactor.schedule(anyInt, amqpPersistentSend);
+                result = expiryTask;
+                event.getTask();
+                result = expiryTask;
+                sender.delivery((byte[]) any);
+                result = delivery;
+                sender.getCredit();
+                returns(1, 0);
+            }
+        };
+        amqpPersistentSend.onReactorInit(event);
+        CompletableFuture<Void> inFlight = amqpPersistentSend.sendAsync(DEVICE_ID, new com.microsoft.azure.sdk.iot.service.Message(BODY));
+        amqpPersistentSend.onLinkFlow(event);
+        CompletableFuture<Void> queued = amqpPersistentSend.sendAsync(DEVICE_ID, new com.microsoft.azure.sdk.iot.service.Message(BODY));
+        // Act
+        amqpPersistentSend.onTimerTask(event);
+        // Assert
+        assertFalse(inFlight.isDone());
+        assertFalse(queued.isDone());
+        // Act
+        Deencapsulation.invoke(amqpPersistentSend, "expireMessages", System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(AmqpPersistentSend.SEND_TIMEOUT_MILLIS));
+        // Assert
+        assertTrue(causeOf(inFlight) instanceof TimeoutException);
+        assertTrue(causeOf(queued) instanceof TimeoutException);
+        assertEquals(0, amqpPersistentSend.getPendingCount());
+        new Verifications()
+        {
+            {
+                reactor.schedule(1000, amqpPersistentSend);
+                times = 2;
+                reactor.connection(amqpPersistentSend);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_032: [The function shall check the messages waiting for their acknowledgement
+    // in the order they were sent, and stop at the first one which did not pass its deadline]
+    @Test
+    public void expireMessages_stops_at_first_message_which_did_not_expire() throws InterruptedException
+    {
+        // Arrange
+        AmqpPersistentSend amqpPersistentSend = createConnectedSender();
+        long nowNanos = System.nanoTime();
+        CompletableFuture<Void> expired = new CompletableFuture<>();
+        CompletableFuture<Void> notExpired = new CompletableFuture<>();
+        CompletableFuture<Void> sentLater = new CompletableFuture<>();
+        Map<CompletableFuture<Void>, Long> inFlightMessages = Deencapsulation.getField(amqpPersistentSend, "inFlightMessages");
+        inFlightMessages.put(expired, nowNanos - 1);
+        inFlightMessages.put(notExpired, nowNanos + 1);
+        // a deadline in the past after a later one cannot happen, and shows that the scan stopped
+        inFlightMessages.put(sentLater, nowNanos - 1);
+        // Act
+        Deencapsulation.invoke(amqpPersistentSend, "expireMessages", nowNanos);
+        // Assert
+        assertTrue(causeOf(expired) instanceof TimeoutException);
+        assertFalse(notExpired.isDone());
+        assertFalse(sentLater.isDone());
+        assertEquals(2, amqpPersistentSend.getPendingCount());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_015: [If the sender was closed, the event handler shall cancel any reconnection and deadline check,
+    // and close the connection, which lets the reactor stop]
+    @Test
+    public void onReactorQuiesced_closes_connection_if_closed(final @Mocked Task expiryTask)
+    {
+        // Arrange
+        AmqpPersistentSend amqpPersistentSend = createConnectedSender();
+        Deencapsulation.setField(amqpPersistentSend, "isOpen", false);
+        Deencapsulation.setField(amqpPersistentSend, "expiryTask", expiryTask);
+        // Act
+        amqpPersistentSend.onReactorQuiesced(event);
+        // Assert
+        new Verifications()
+        {
+            {
+                connection.close();
+                times = 1;
+                expiryTask.cancel();
+                times = 1;
+                sender.send((byte[]) any, anyInt, anyInt);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_007: [The function shall wake the reactor up to close the connection, and wait for the reactor thread to end]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPPERSISTENTSEND_21_008: [The function shall fail all the messages waiting to be sent or acknowledged with an IOException]
+    @Test
+    public void close_fails_pending_messages() throws InterruptedException
+    {
+        // Arrange
+        AmqpPersistentSend amqpPersistentSend = createConnectedSender();
+        Deencapsulation.setField(amqpPersistentSend, "reactorThread", new Thread());
+        CompletableFuture<Void> queued = amqpPersistentSend.sendAsync(DEVICE_ID, new com.microsoft.azure.sdk.iot.service.Message(BODY));
+        // Act
+        amqpPersistentSend.close();
+        // Assert
+        assertTrue(causeOf(queued) instanceof IOException);
+        assertEquals(0, amqpPersistentSend.getPendingCount());
+        assertTrue(causeOf(amqpPersistentSend.sendAsync(DEVICE_ID, new com.microsoft.azure.sdk.iot.service.Message(BODY))) instanceof IOException);
+    }
+}
@@ -162,7 +162,7 @@ public class AmqpReceiveHandlerTest
 
     // Tests_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_12_009: [The event handler shall set the SASL PLAIN authentication on the Transport using the given user name and sas token]
     // Tests_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_12_010: [The event handler shall set ANONYMUS_PEER authentication mode on the domain of the Transport]
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_12_018: [The event handler shall initialize WebSocket if the protocol is AMQP_WS]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_12_018: [The event handler shall initialize WebSocket with the configured maximum frame size if the protocol is AMQP_WS]
     @Test
     public void onConnectionBound_call_flow_and_init_ok_amqps()
     {
@@ -180,7 +180,7 @@ public class AmqpReceiveHandlerTest
                 result = connection;
                 connection.getTransport();
                 result = transportInternal;
-                new WebSocketImpl();
+                new WebSocketImpl(WebSocketImpl.DEFAULT_MAX_FRAME_SIZE);
                 result = webSocket;
                 webSocket.configure(anyString, anyString, 0, anyString, null, null);
                 transportInternal.addTransportLayer(webSocket);
@@ -196,6 +196,37 @@ public class AmqpReceiveHandlerTest
         amqpReceiveHandler.onConnectionBound(event);
     }
 
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_12_018: [The event handler shall initialize WebSocket with the configured maximum frame size if the protocol is AMQP_WS]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_21_018: [The function shall set the maximum frame size of the WebSocket layer added by the connection bound event]
+    @Test
+    public void onConnectionBound_initializes_WebSocket_with_configured_frame_size()
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        int webSocketMaxFrameSize = 64 * 1024;
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS_WS;
+        AmqpFeedbackReceivedHandler amqpReceiveHandler = new AmqpFeedbackReceivedHandler(hostName, userName, sasToken, iotHubServiceClientProtocol, null);
+        amqpReceiveHandler.setWebSocketMaxFrameSize(webSocketMaxFrameSize);
+        // Assert
+        new Expectations()
+        {
+            {
+                event.getConnection();
+                result = connection;
+                connection.getTransport();
+                result = transportInternal;
+                new WebSocketImpl(webSocketMaxFrameSize);
+                result = webSocket;
+                webSocket.configure(anyString, anyString, 0, anyString, null, null);
+                transportInternal.addTransportLayer(webSocket);
+            }
+        };
+        // Act
+        amqpReceiveHandler.onConnectionBound(event);
+    }
+
     // Tests_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_12_011: [The event handler shall set the host name on the connection]
     // Tests_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_12_012: [The event handler shall create a Session (Proton) object from the connection]
     // Tests_SRS_SERVICE_SDK_JAVA_AMQPFEEDBACKRECEIVEDHANDLER_12_013: [The event handler shall create a Receiver (Proton) object and set the protocol tag on it to a predefined constant]
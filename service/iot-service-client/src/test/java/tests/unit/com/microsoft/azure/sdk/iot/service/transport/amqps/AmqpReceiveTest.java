@@ -10,6 +10,7 @@ import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
 import mockit.Deencapsulation;
 import mockit.Expectations;
 import mockit.Mocked;
+import mockit.Verifications;
 import mockit.integration.junit4.JMockit;
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.engine.Connection;
@@ -182,4 +183,29 @@ public class AmqpReceiveTest
         // Act
         amqpReceive.onFeedbackReceived(jsonData);
     }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_21_011: [The function shall set the configured WebSocket maximum frame size on the created AmqpsReceiveHandler object]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_21_012: [The function shall store the maximum frame size to pass to the AmqpsReceiveHandler objects created by open]
+    @Test
+    public void open_sets_configured_WebSocket_frame_size_on_handler(@Mocked AmqpFeedbackReceivedHandler mockedHandler)
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        int webSocketMaxFrameSize = 64 * 1024;
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS_WS;
+        AmqpReceive amqpReceive = new AmqpReceive(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        amqpReceive.setWebSocketMaxFrameSize(webSocketMaxFrameSize);
+        // Act
+        amqpReceive.open();
+        // Assert
+        new Verifications()
+        {
+            {
+                mockedHandler.setWebSocketMaxFrameSize(webSocketMaxFrameSize);
+                times = 1;
+            }
+        };
+    }
 }
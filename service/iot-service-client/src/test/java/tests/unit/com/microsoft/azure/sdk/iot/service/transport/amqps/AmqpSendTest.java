@@ -9,6 +9,7 @@ import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
 import com.microsoft.azure.sdk.iot.service.Message;
 import mockit.Expectations;
 import mockit.Mocked;
+import mockit.Verifications;
 import mockit.integration.junit4.JMockit;
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.engine.Connection;
@@ -288,4 +289,29 @@ public class AmqpSendTest
         // Act
         amqpSend.send(deviceId, message);
     }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_21_011: [The function shall set the configured WebSocket maximum frame size on the created AmqpSendHandler object]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_21_012: [The function shall store the maximum frame size to pass to the AmqpSendHandler objects created by open]
+    @Test
+    public void open_sets_configured_WebSocket_frame_size_on_handler(@Mocked AmqpSendHandler mockedHandler)
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        int webSocketMaxFrameSize = 64 * 1024;
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS_WS;
+        AmqpSend amqpSend = new AmqpSend(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        amqpSend.setWebSocketMaxFrameSize(webSocketMaxFrameSize);
+        // Act
+        amqpSend.open();
+        // Assert
+        new Verifications()
+        {
+            {
+                mockedHandler.setWebSocketMaxFrameSize(webSocketMaxFrameSize);
+                times = 1;
+            }
+        };
+    }
 }
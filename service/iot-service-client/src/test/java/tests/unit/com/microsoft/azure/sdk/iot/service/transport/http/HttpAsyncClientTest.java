@@ -0,0 +1,455 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service.transport.http;
+
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpAsyncClient;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
+import mockit.Deencapsulation;
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.integration.junit4.JMockit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/** Unit tests for HttpAsyncClient. */
+@RunWith(JMockit.class)
+public class HttpAsyncClientTest
+{
+    private static final String CONNECTION_CLASS = "com.microsoft.azure.sdk.iot.service.transport.http.HttpAsyncConnection";
+    private static final String KEEP_ALIVE_RESPONSE = "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n";
+    private static final String CLOSE_RESPONSE = "HTTP/1.1 200 OK\r\nContent-Length: 0\r\nConnection: close\r\n\r\n";
+    private static final String RESOLVER_THREAD = "azure-iot-sdk-http-resolver";
+
+    /**
+     * Replaces the TLS connections with a single fake connection, which answers the first request and
+     * then, as a connection closed by the host, fails either the write or the read of the next one.
+     *
+     * @param failWrite {@code true} to fail the write of the second request, {@code false} to fail its read.
+     * @param writeCount counts the writes of requests on any connection.
+     */
+    private static void fakeConnections(final boolean failWrite, final AtomicInteger writeCount) throws Exception
+    {
+        final Class<?> connectionClass = Class.forName(CONNECTION_CLASS);
+        new MockUp<Object>(connectionClass)
+        {
+            @Mock
+            void $init(AsynchronousSocketChannel channel, SSLEngine sslEngine)
+            {
+            }
+
+            @Mock
+            void open(AsynchronousChannelGroup channelGroup, SSLContext sslContext, String host, InetSocketAddress address,
+                      int timeoutMillis, CompletionHandler<Object, Void> handler)
+            {
+                handler.completed(Deencapsulation.newInstance(connectionClass,
+                        new Class<?>[] { AsynchronousSocketChannel.class, SSLEngine.class }, null, null), null);
+            }
+
+            @Mock
+            void write(ByteBuffer source, int timeoutMillis, CompletionHandler<Void, Void> handler)
+            {
+                if ((writeCount.incrementAndGet() == 2) && failWrite)
+                {
+                    handler.failed(new IOException("Connection reset"), null);
+                }
+                else
+                {
+                    handler.completed(null, null);
+                }
+            }
+
+            @Mock
+            void read(int timeoutMillis, CompletionHandler<ByteBuffer, Void> handler)
+            {
+                if ((writeCount.get() == 2) && !failWrite)
+                {
+                    handler.failed(new IOException("Connection reset"), null);
+                }
+                else
+                {
+                    handler.completed(ByteBuffer.wrap(KEEP_ALIVE_RESPONSE.getBytes()), null);
+                }
+            }
+
+            @Mock
+            long getIdleSinceMillis()
+            {
+                return System.currentTimeMillis();
+            }
+
+            @Mock
+            void setIdleSinceMillis(long idleSinceMillis)
+            {
+            }
+
+            @Mock
+            void close()
+            {
+            }
+        };
+    }
+
+    /**
+     * Replaces the opening of the TLS connections with a fake one, which records the thread and the
+     * address of each open. The fake connections answer every request and then close.
+     *
+     * @param connect {@code true} to open the connections, {@code false} to fail them.
+     * @param openThreads the names of the threads which opened the connections.
+     * @param addresses the addresses of the opened connections.
+     */
+    private static void fakeOpens(final boolean connect, final List<String> openThreads, final List<InetSocketAddress> addresses) throws Exception
+    {
+        final Class<?> connectionClass = Class.forName(CONNECTION_CLASS);
+        new MockUp<Object>(connectionClass)
+        {
+            @Mock
+            void $init(AsynchronousSocketChannel channel, SSLEngine sslEngine)
+            {
+            }
+
+            @Mock
+            void open(AsynchronousChannelGroup channelGroup, SSLContext sslContext, String host, InetSocketAddress address,
+                      int timeoutMillis, CompletionHandler<Object, Void> handler)
+            {
+                openThreads.add(Thread.currentThread().getName());
+                addresses.add(address);
+                if (connect)
+                {
+                    handler.completed(Deencapsulation.newInstance(connectionClass,
+                            new Class<?>[] { AsynchronousSocketChannel.class, SSLEngine.class }, null, null), null);
+                }
+                else
+                {
+                    handler.failed(new IOException("Connection refused"), null);
+                }
+            }
+
+            @Mock
+            void write(ByteBuffer source, int timeoutMillis, CompletionHandler<Void, Void> handler)
+            {
+                handler.completed(null, null);
+            }
+
+            @Mock
+            void read(int timeoutMillis, CompletionHandler<ByteBuffer, Void> handler)
+            {
+                handler.completed(ByteBuffer.wrap(CLOSE_RESPONSE.getBytes()), null);
+            }
+
+            @Mock
+            void close()
+            {
+            }
+        };
+    }
+
+    private static CompletableFuture<HttpResponse> send(HttpAsyncClient client, HttpMethod method) throws Exception
+    {
+        return client.send(new URL("https://localhost/devices"), method, new HashMap<String, String>(), new byte[0], 1000);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_001: [The function shall create the shared client on the first call, with the default SSL context, and return it.]
+    @Test
+    public void getDefaultReturnsSharedClient() throws IOException
+    {
+        // Act
+        HttpAsyncClient first = HttpAsyncClient.getDefault();
+        HttpAsyncClient second = HttpAsyncClient.getDefault();
+
+        // Assert
+        assertThat(second, is(sameInstance(first)));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_002: [The constructor shall throw IllegalArgumentException if the SSL context is null, or if the number of connections per host or of I/O threads is not positive.]
+    // Assert
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullSslContext() throws IOException
+    {
+        // Act
+        new HttpAsyncClient(null, 1, 1);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_002: [The constructor shall throw IllegalArgumentException if the SSL context is null, or if the number of connections per host or of I/O threads is not positive.]
+    // Assert
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsOnZeroConnections() throws Exception
+    {
+        // Act
+        new HttpAsyncClient(SSLContext.getDefault(), 0, 1);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_002: [The constructor shall throw IllegalArgumentException if the SSL context is null, or if the number of connections per host or of I/O threads is not positive.]
+    // Assert
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsOnZeroThreads() throws Exception
+    {
+        // Act
+        new HttpAsyncClient(SSLContext.getDefault(), 1, 0);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_004: [The function shall throw IllegalArgumentException if the URL, method, header fields or body is null, or if the URL does not use HTTPS.]
+    // Assert
+    @Test(expected = IllegalArgumentException.class)
+    public void sendThrowsOnNullUrl() throws Exception
+    {
+        // Arrange
+        HttpAsyncClient client = HttpAsyncClient.getDefault();
+
+        // Act
+        client.send(null, HttpMethod.GET, new HashMap<String, String>(), new byte[0], 0);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_004: [The function shall throw IllegalArgumentException if the URL, method, header fields or body is null, or if the URL does not use HTTPS.]
+    // Assert
+    @Test(expected = IllegalArgumentException.class)
+    public void sendThrowsOnNullBody() throws Exception
+    {
+        // Arrange
+        HttpAsyncClient client = HttpAsyncClient.getDefault();
+
+        // Act
+        client.send(new URL("https://aaa.bbb.ccc/devices"), HttpMethod.GET, new HashMap<String, String>(), null, 0);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_004: [The function shall throw IllegalArgumentException if the URL, method, header fields or body is null, or if the URL does not use HTTPS.]
+    // Assert
+    @Test(expected = IllegalArgumentException.class)
+    public void sendThrowsOnHttpUrl() throws Exception
+    {
+        // Arrange
+        HttpAsyncClient client = HttpAsyncClient.getDefault();
+
+        // Act
+        client.send(new URL("http://aaa.bbb.ccc/devices"), HttpMethod.GET, new HashMap<String, String>(), new byte[0], 0);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_005: [The function shall send the request on a connection of the pool of the host, and complete the future with the response.]
+    @Test
+    public void sendCompletesExceptionallyIfConnectionFails() throws Exception
+    {
+        // Arrange
+        int closedPort;
+        try (ServerSocket serverSocket = new ServerSocket(0))
+        {
+            closedPort = serverSocket.getLocalPort();
+        }
+        HttpAsyncClient client = new HttpAsyncClient(SSLContext.getDefault(), 1, 1);
+
+        try
+        {
+            // Act
+            CompletableFuture<HttpResponse> future = client.send(new URL("https://127.0.0.1:" + closedPort + "/devices"),
+                    HttpMethod.GET, new HashMap<String, String>(), new byte[0], 1000);
+            future.get(10, TimeUnit.SECONDS);
+            fail("The request to a closed port shall fail");
+        }
+        catch (ExecutionException e)
+        {
+            // Assert
+            assertThat(e.getCause(), is(instanceOf(IOException.class)));
+            assertThat(client.getSentRequestCount(), is(0L));
+        }
+        finally
+        {
+            client.close();
+        }
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_016: [The constructor shall create a daemon thread which resolves the host addresses, so the I/O threads never wait for the DNS.]
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_017: [A new connection shall use the cached address of the host, or else resolve it
+    // on the resolver thread and cache it. A connection which fails to open shall drop the cached address, so the next one resolves it again.]
+    @Test
+    public void sendResolvesHostOnceOffTheIoThreads() throws Exception
+    {
+        // Arrange
+        List<String> openThreads = Collections.synchronizedList(new ArrayList<String>());
+        List<InetSocketAddress> addresses = Collections.synchronizedList(new ArrayList<InetSocketAddress>());
+        fakeOpens(true, openThreads, addresses);
+        HttpAsyncClient client = new HttpAsyncClient(SSLContext.getDefault(), 1, 1);
+
+        try
+        {
+            // Act
+            send(client, HttpMethod.GET).get(10, TimeUnit.SECONDS);
+            send(client, HttpMethod.GET).get(10, TimeUnit.SECONDS);
+
+            // Assert
+            assertThat(openThreads.size(), is(2));
+            assertThat(openThreads.get(0), is(RESOLVER_THREAD));
+            assertThat(openThreads.get(1), is(Thread.currentThread().getName()));
+            assertThat(addresses.get(0).isUnresolved(), is(false));
+            assertThat(addresses.get(0).getPort(), is(443));
+            assertThat(addresses.get(1), is(sameInstance(addresses.get(0))));
+        }
+        finally
+        {
+            client.close();
+        }
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_017: [A new connection shall use the cached address of the host, or else resolve it
+    // on the resolver thread and cache it. A connection which fails to open shall drop the cached address, so the next one resolves it again.]
+    @Test
+    public void sendResolvesHostAgainAfterConnectionFails() throws Exception
+    {
+        // Arrange
+        List<String> openThreads = Collections.synchronizedList(new ArrayList<String>());
+        List<InetSocketAddress> addresses = Collections.synchronizedList(new ArrayList<InetSocketAddress>());
+        fakeOpens(false, openThreads, addresses);
+        HttpAsyncClient client = new HttpAsyncClient(SSLContext.getDefault(), 1, 1);
+
+        try
+        {
+            // Act
+            for (int i = 0; i < 2; i++)
+            {
+                try
+                {
+                    send(client, HttpMethod.GET).get(10, TimeUnit.SECONDS);
+                    fail("The request shall fail with its connection");
+                }
+                catch (ExecutionException e)
+                {
+                    assertThat(e.getCause(), is(instanceOf(IOException.class)));
+                }
+            }
+
+            // Assert
+            assertThat(openThreads.size(), is(2));
+            assertThat(openThreads.get(0), is(RESOLVER_THREAD));
+            assertThat(openThreads.get(1), is(RESOLVER_THREAD));
+        }
+        finally
+        {
+            client.close();
+        }
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_013: [The function shall close all the connections and stop the I/O and resolver threads.]
+    @Test
+    public void closeStopsTheClient() throws Exception
+    {
+        // Arrange
+        HttpAsyncClient client = new HttpAsyncClient(SSLContext.getDefault(), 1, 1);
+
+        // Act
+        client.close();
+
+        // Assert
+        assertThat(client.getOpenedConnectionCount(), is(0L));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_009: [If a reused connection fails before any byte of the response, the request shall be sent again on another connection, since the host may have closed the idle connection.]
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_014: [A request which was completely written shall only be sent again if its method is GET, since the host may have executed it.]
+    @Test
+    public void sendResendsWrittenGetOnReusedConnection() throws Exception
+    {
+        // Arrange
+        AtomicInteger writeCount = new AtomicInteger();
+        fakeConnections(false, writeCount);
+        HttpAsyncClient client = new HttpAsyncClient(SSLContext.getDefault(), 1, 1);
+
+        try
+        {
+            send(client, HttpMethod.GET).get(10, TimeUnit.SECONDS);
+
+            // Act
+            HttpResponse response = send(client, HttpMethod.GET).get(10, TimeUnit.SECONDS);
+
+            // Assert
+            assertThat(response.getStatus(), is(200));
+            assertThat(writeCount.get(), is(3));
+            assertThat(client.getOpenedConnectionCount(), is(2L));
+        }
+        finally
+        {
+            client.close();
+        }
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_014: [A request which was completely written shall only be sent again if its method is GET, since the host may have executed it.]
+    @Test
+    public void sendDoesNotResendWrittenPostOnReusedConnection() throws Exception
+    {
+        // Arrange
+        AtomicInteger writeCount = new AtomicInteger();
+        fakeConnections(false, writeCount);
+        HttpAsyncClient client = new HttpAsyncClient(SSLContext.getDefault(), 1, 1);
+
+        try
+        {
+            send(client, HttpMethod.GET).get(10, TimeUnit.SECONDS);
+
+            // Act
+            send(client, HttpMethod.POST).get(10, TimeUnit.SECONDS);
+            fail("A POST which was written shall not be sent again");
+        }
+        catch (ExecutionException e)
+        {
+            // Assert
+            assertThat(e.getCause(), is(instanceOf(IOException.class)));
+            assertThat(writeCount.get(), is(2));
+            assertThat(client.getOpenedConnectionCount(), is(1L));
+        }
+        finally
+        {
+            client.close();
+        }
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPASYNCCLIENT_21_009: [If a reused connection fails before any byte of the response, the request shall be sent again on another connection, since the host may have closed the idle connection.]
+    @Test
+    public void sendResendsUnwrittenPostOnReusedConnection() throws Exception
+    {
+        // Arrange
+        AtomicInteger writeCount = new AtomicInteger();
+        fakeConnections(true, writeCount);
+        HttpAsyncClient client = new HttpAsyncClient(SSLContext.getDefault(), 1, 1);
+
+        try
+        {
+            send(client, HttpMethod.GET).get(10, TimeUnit.SECONDS);
+
+            // Act
+            HttpResponse response = send(client, HttpMethod.POST).get(10, TimeUnit.SECONDS);
+
+            // Assert
+            assertThat(response.getStatus(), is(200));
+            assertThat(writeCount.get(), is(3));
+            assertThat(client.getOpenedConnectionCount(), is(2L));
+        }
+        finally
+        {
+            client.close();
+        }
+    }
+}
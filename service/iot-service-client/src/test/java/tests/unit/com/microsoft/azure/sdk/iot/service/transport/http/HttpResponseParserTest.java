@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service.transport.http;
+
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponseParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+/** Unit tests for HttpResponseParser. */
+public class HttpResponseParserTest
+{
+    private static ByteBuffer bytes(String text)
+    {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_001: [The constructor shall create a parser waiting for the status line of the response.]
+    @Test
+    public void constructorWaitsForStatusLine()
+    {
+        // Act
+        HttpResponseParser parser = new HttpResponseParser(true);
+
+        // Assert
+        assertThat(parser.getStatus(), is(-1));
+        assertThat(parser.getHeaderFields().isEmpty(), is(true));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_002: [The function shall return true once the whole response was parsed, and false if it needs more bytes.]
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_005: [The function shall collect the values of the header fields by field name.]
+    @Test
+    public void parseFixedLengthResponse() throws IOException
+    {
+        // Arrange
+        HttpResponseParser parser = new HttpResponseParser(true);
+
+        // Act
+        boolean complete = parser.parse(bytes("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nx-test: a\r\nx-test: b\r\nContent-Length: 4\r\n\r\ntest"));
+
+        // Assert
+        assertThat(complete, is(true));
+        assertThat(parser.getStatus(), is(200));
+        assertThat(parser.getHeaderFields().get(null).get(0), is("HTTP/1.1 200 OK"));
+        assertThat(parser.getHeaderFields().get("Content-Type").get(0), is("application/json"));
+        assertThat(parser.getHeaderFields().get("x-test"), is(Arrays.asList("a", "b")));
+        assertArrayEquals("test".getBytes(StandardCharsets.UTF_8), parser.getContent());
+        assertThat(parser.isKeepAlive(), is(true));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_002: [The function shall return true once the whole response was parsed, and false if it needs more bytes.]
+    @Test
+    public void parseResponseSplitInSingleBytes() throws IOException
+    {
+        // Arrange
+        HttpResponseParser parser = new HttpResponseParser(true);
+        byte[] response = "HTTP/1.1 201 Created\r\nContent-Length: 3\r\n\r\nabc".getBytes(StandardCharsets.UTF_8);
+        boolean complete = false;
+
+        // Act
+        for (int i = 0; i < response.length; i++)
+        {
+            assertThat(complete, is(false));
+            complete = parser.parse(ByteBuffer.wrap(response, i, 1));
+        }
+
+        // Assert
+        assertThat(complete, is(true));
+        assertThat(parser.getStatus(), is(201));
+        assertArrayEquals("abc".getBytes(StandardCharsets.UTF_8), parser.getContent());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_002: [The function shall return true once the whole response was parsed, and false if it needs more bytes.]
+    @Test
+    public void parseSkipsInterimResponse() throws IOException
+    {
+        // Arrange
+        HttpResponseParser parser = new HttpResponseParser(true);
+
+        // Act
+        boolean complete = parser.parse(bytes("HTTP/1.1 100 Continue\r\n\r\nHTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n"));
+
+        // Assert
+        assertThat(complete, is(true));
+        assertThat(parser.getStatus(), is(200));
+        assertThat(parser.getContent().length, is(0));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_002: [The function shall return true once the whole response was parsed, and false if it needs more bytes.]
+    @Test
+    public void parseLeavesFollowingBytesInBuffer() throws IOException
+    {
+        // Arrange
+        HttpResponseParser parser = new HttpResponseParser(true);
+        ByteBuffer buffer = bytes("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nokHTTP");
+
+        // Act
+        parser.parse(buffer);
+
+        // Assert
+        assertThat(buffer.remaining(), is(4));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_003: [If the status line is not `HTTP/x.y code [reason]`, the function shall throw IOException.]
+    // Assert
+    @Test(expected = IOException.class)
+    public void parseThrowsOnInvalidStatusLine() throws IOException
+    {
+        // Arrange
+        HttpResponseParser parser = new HttpResponseParser(true);
+
+        // Act
+        parser.parse(bytes("SSH-2.0-OpenSSH\r\n"));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_003: [If the status line is not `HTTP/x.y code [reason]`, the function shall throw IOException.]
+    // Assert
+    @Test(expected = IOException.class)
+    public void parseThrowsOnInvalidStatusCode() throws IOException
+    {
+        // Arrange
+        HttpResponseParser parser = new HttpResponseParser(true);
+
+        // Act
+        parser.parse(bytes("HTTP/1.1 OK\r\n"));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_004: [If a header line has no colon, the function shall throw IOException.]
+    // Assert
+    @Test(expected = IOException.class)
+    public void parseThrowsOnInvalidHeaderLine() throws IOException
+    {
+        // Arrange
+        HttpResponseParser parser = new HttpResponseParser(true);
+
+        // Act
+        parser.parse(bytes("HTTP/1.1 200 OK\r\nContent-Length 2\r\n\r\n"));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_006: [The response shall have no body if the request cannot have one, or if the status is 204 or 304.]
+    @Test
+    public void parseNoContentResponseHasNoBody() throws IOException
+    {
+        // Arrange
+        HttpResponseParser parser = new HttpResponseParser(true);
+
+        // Act
+        boolean complete = parser.parse(bytes("HTTP/1.1 204 No Content\r\n\r\n"));
+
+        // Assert
+        assertThat(complete, is(true));
+        assertThat(parser.getContent().length, is(0));
+        assertThat(parser.isKeepAlive(), is(true));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_006: [The response shall have no body if the request cannot have one, or if the status is 204 or 304.]
+    @Test
+    public void parseIgnoresContentLengthIfRequestCannotHaveBody() throws IOException
+    {
+        // Arrange
+        HttpResponseParser parser = new HttpResponseParser(false);
+
+        // Act
+        boolean complete = parser.parse(bytes("HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\n"));
+
+        // Assert
+        assertThat(complete, is(true));
+        assertThat(parser.getContent().length, is(0));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_007: [If the data of a chunk is not followed by a line break, the function shall throw IOException.]
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_010: [The function shall return the body of the response, with the chunks of a chunked body joined together.]
+    @Test
+    public void parseChunkedResponse() throws IOException
+    {
+        // Arrange
+        HttpResponseParser parser = new HttpResponseParser(true);
+
+        // Act
+        boolean complete = parser.parse(bytes("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "4;name=value\r\nWiki\r\n5\r\npedia\r\n0\r\nx-trailer: 1\r\n\r\n"));
+
+        // Assert
+        assertThat(complete, is(true));
+        assertArrayEquals("Wikipedia".getBytes(StandardCharsets.UTF_8), parser.getContent());
+        assertThat(parser.isKeepAlive(), is(true));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_007: [If the data of a chunk is not followed by a line break, the function shall throw IOException.]
+    // Assert
+    @Test(expected = IOException.class)
+    public void parseThrowsOnChunkWithoutLineBreak() throws IOException
+    {
+        // Arrange
+        HttpResponseParser parser = new HttpResponseParser(true);
+
+        // Act
+        parser.parse(bytes("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n2\r\nabc\r\n"));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_007: [If the data of a chunk is not followed by a line break, the function shall throw IOException.]
+    // Assert
+    @Test(expected = IOException.class)
+    public void parseThrowsOnInvalidChunkSize() throws IOException
+    {
+        // Arrange
+        HttpResponseParser parser = new HttpResponseParser(true);
+
+        // Act
+        parser.parse(bytes("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\nxyz\r\n"));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_008: [If the response has neither a 'Content-Length' nor a chunked 'Transfer-Encoding' header, the body shall last until the end of the connection.]
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_009: [The function shall complete a response whose body lasts until the end of the connection, and return if the response is complete.]
+    @Test
+    public void parseBodyUntilEndOfStream() throws IOException
+    {
+        // Arrange
+        HttpResponseParser parser = new HttpResponseParser(true);
+
+        // Act
+        boolean completeBeforeClose = parser.parse(bytes("HTTP/1.1 200 OK\r\n\r\nbody"));
+        boolean completeAfterClose = parser.endOfStream();
+
+        // Assert
+        assertThat(completeBeforeClose, is(false));
+        assertThat(completeAfterClose, is(true));
+        assertArrayEquals("body".getBytes(StandardCharsets.UTF_8), parser.getContent());
+        assertThat(parser.isKeepAlive(), is(false));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_009: [The function shall complete a response whose body lasts until the end of the connection, and return if the response is complete.]
+    @Test
+    public void endOfStreamBeforeEndOfBodyIsIncomplete() throws IOException
+    {
+        // Arrange
+        HttpResponseParser parser = new HttpResponseParser(true);
+        parser.parse(bytes("HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\nabc"));
+
+        // Act
+        boolean complete = parser.endOfStream();
+
+        // Assert
+        assertThat(complete, is(false));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_011: [The function shall return false if the response is HTTP/1.0 without 'Connection: keep-alive', if it has 'Connection: close', or if its body lasts until the end of the connection.]
+    @Test
+    public void isKeepAliveFalseOnConnectionClose() throws IOException
+    {
+        // Arrange
+        HttpResponseParser parser = new HttpResponseParser(true);
+
+        // Act
+        parser.parse(bytes("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 0\r\n\r\n"));
+
+        // Assert
+        assertThat(parser.isKeepAlive(), is(false));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_011: [The function shall return false if the response is HTTP/1.0 without 'Connection: keep-alive', if it has 'Connection: close', or if its body lasts until the end of the connection.]
+    @Test
+    public void isKeepAliveForHttp10() throws IOException
+    {
+        // Arrange
+        HttpResponseParser closeParser = new HttpResponseParser(true);
+        HttpResponseParser keepAliveParser = new HttpResponseParser(true);
+
+        // Act
+        closeParser.parse(bytes("HTTP/1.0 200 OK\r\nContent-Length: 0\r\n\r\n"));
+        keepAliveParser.parse(bytes("HTTP/1.0 200 OK\r\nConnection: Keep-Alive\r\nContent-Length: 0\r\n\r\n"));
+
+        // Assert
+        assertThat(closeParser.isKeepAlive(), is(false));
+        assertThat(keepAliveParser.isKeepAlive(), is(true));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPRESPONSEPARSER_21_012: [If a line of the response is longer than 64KB, the function shall throw IOException.]
+    // Assert
+    @Test(expected = IOException.class)
+    public void parseThrowsOnTooLongLine() throws IOException
+    {
+        // Arrange
+        HttpResponseParser parser = new HttpResponseParser(true);
+        byte[] longHeader = new byte[65 * 1024];
+        Arrays.fill(longHeader, (byte)'a');
+        parser.parse(bytes("HTTP/1.1 200 OK\r\n"));
+
+        // Act
+        parser.parse(ByteBuffer.wrap(longHeader));
+    }
+
+    @Test
+    public void getHeaderFieldsHasNoStatusLineBeforeParse()
+    {
+        // Arrange
+        HttpResponseParser parser = new HttpResponseParser(true);
+
+        // Assert
+        assertThat(parser.getHeaderFields().get(null), is(nullValue()));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service.transport.http;
+
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpStreamResponse;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/** Unit tests for HttpStreamResponse. */
+public class HttpStreamResponseTest
+{
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPSTREAMRESPONSE_21_001: [The constructor shall throw IllegalArgumentException if the body stream is null.]
+    // Assert
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullBodyStream()
+    {
+        // Act
+        new HttpStreamResponse(200, null, new HashMap<String, List<String>>(), new byte[0]);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPSTREAMRESPONSE_21_002: [The constructor shall store the body stream so that getBodyStream can return it later.]
+    @Test
+    public void getBodyStreamReturnsBodyStream()
+    {
+        // Arrange
+        ByteArrayInputStream bodyStream = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
+        Map<String, List<String>> headerFields = new HashMap<>();
+
+        // Act
+        HttpStreamResponse response = new HttpStreamResponse(200, bodyStream, headerFields, new byte[0]);
+
+        // Assert
+        assertThat(response.getBodyStream() == bodyStream, is(true));
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.getBody().length, is(0));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPSTREAMRESPONSE_21_003: [The function shall read the body stream to its end and close it.]
+    @Test
+    public void closeDrainsBodyStream() throws IOException
+    {
+        // Arrange
+        final boolean[] closed = { false };
+        ByteArrayInputStream bodyStream = new ByteArrayInputStream(new byte[10000])
+        {
+            @Override
+            public void close() throws IOException
+            {
+                closed[0] = true;
+                super.close();
+            }
+        };
+        HttpStreamResponse response = new HttpStreamResponse(200, bodyStream, new HashMap<String, List<String>>(), new byte[0]);
+        bodyStream.read();
+
+        // Act
+        response.close();
+
+        // Assert
+        assertThat(bodyStream.available(), is(0));
+        assertThat(closed[0], is(true));
+    }
+}
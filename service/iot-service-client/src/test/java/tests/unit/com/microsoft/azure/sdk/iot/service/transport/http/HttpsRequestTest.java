@@ -12,12 +12,15 @@ import mockit.integration.junit4.JMockit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
@@ -547,6 +550,96 @@ public class HttpsRequestTest
         request.send();
     }
 
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPSREQUEST_21_014: [The function shall send an HTTPS request as formatted in the constructor, and return the response with the unread body stream.]
+    @Test
+    public void sendStreamingReturnsUnreadBodyStream(@Mocked final HttpConnection mockConn) throws IOException
+    {
+        // Arrange
+        final HttpMethod httpsMethod = HttpMethod.GET;
+        final byte[] body = new byte[0];
+        final InputStream responseStream = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "http";
+                mockConn.getResponseStatus();
+                result = 200;
+                mockConn.getInputStream();
+                result = responseStream;
+            }
+        };
+        HttpRequest request = new HttpRequest(mockUrl, httpsMethod, body);
+        // Act
+        HttpStreamResponse response = request.sendStreaming();
+        // Assert
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.getBodyStream(), is(responseStream));
+        new Verifications()
+        {
+            {
+                mockConn.connect();
+                times = 1;
+                mockConn.readInput();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPSREQUEST_21_015: [If the response has a bad status code, the function shall read the error stream and return the response with an empty body stream. If the client cannot connect to the server, the function shall throw an IOException.]
+    @Test
+    public void sendStreamingReturnsErrorOnBadStatusException(@Mocked final HttpConnection mockConn) throws IOException
+    {
+        // Arrange
+        final HttpMethod httpsMethod = HttpMethod.GET;
+        final byte[] body = new byte[0];
+        final byte[] error = { 5, 6, 7 };
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "http";
+                mockConn.connect();
+                result = new IOException();
+                mockConn.getResponseStatus();
+                result = 404;
+                mockConn.readError();
+                result = error;
+            }
+        };
+        HttpRequest request = new HttpRequest(mockUrl, httpsMethod, body);
+        // Act
+        HttpStreamResponse response = request.sendStreaming();
+        // Assert
+        assertThat(response.getStatus(), is(404));
+        assertThat(response.getErrorReason(), is(error));
+        assertThat(response.getBodyStream().read(), is(-1));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPSREQUEST_21_015: [If the response has a bad status code, the function shall read the error stream and return the response with an empty body stream. If the client cannot connect to the server, the function shall throw an IOException.]
+    // Assert
+    @Test(expected = IOException.class)
+    public void sendStreamingThrowsIoExceptionIfCannotConnect(@Mocked final HttpConnection mockConn) throws IOException
+    {
+        // Arrange
+        final HttpMethod httpsMethod = HttpMethod.GET;
+        final byte[] body = new byte[0];
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "http";
+                mockConn.connect();
+                result = new IOException();
+                mockConn.getResponseStatus();
+                result = new IOException();
+            }
+        };
+        HttpRequest request = new HttpRequest(mockUrl, httpsMethod, body);
+        // Act
+        request.sendStreaming();
+    }
+
     // Tests_SRS_SERVICE_SDK_JAVA_HTTPSREQUEST_12_008: [If an I/O exception occurs because of a bad response status code, the function shall attempt to flush or read the error stream so that the underlying HTTPS connection can be reused.]
     @Test
     public void sendReturnsHeaderFieldsOnBadStatusException(@Mocked final HttpConnection mockConn) throws IOException
@@ -635,4 +728,195 @@ public class HttpsRequestTest
             }
         };
     }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPSREQUEST_21_011: [The function shall send the request with the shared HttpAsyncClient.]
+    @Test
+    public void sendAsyncUsesSharedClient(@Mocked final HttpConnection mockConn,
+            @Mocked final HttpAsyncClient mockClient) throws IOException
+    {
+        // Arrange
+        final HttpMethod httpsMethod = HttpMethod.GET;
+        final byte[] body = new byte[0];
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "http";
+                HttpAsyncClient.getDefault();
+                result = mockClient;
+            }
+        };
+        HttpRequest request = new HttpRequest(mockUrl, httpsMethod, body);
+        // Act
+        request.sendAsync();
+        // Assert
+        new Verifications()
+        {
+            {
+                mockClient.send(mockUrl, httpsMethod, (Map<String, String>) any, body, anyInt);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPSREQUEST_21_012: [The function shall throw IllegalArgumentException if the client is null.]
+    // Assert
+    @Test(expected = IllegalArgumentException.class)
+    public void sendAsyncThrowsOnNullClient(@Mocked final HttpConnection mockConn) throws IOException
+    {
+        // Arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "http";
+            }
+        };
+        HttpRequest request = new HttpRequest(mockUrl, HttpMethod.GET, new byte[0]);
+        // Act
+        request.sendAsync(null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPSREQUEST_21_013: [The function shall send the request as formatted in the constructor, with its header fields and read timeout, and return the future of the response.]
+    @Test
+    public void sendAsyncSendsFormattedRequest(@Mocked final HttpConnection mockConn,
+            @Mocked final HttpAsyncClient mockClient,
+            @Mocked final HttpResponse mockResponse) throws Exception
+    {
+        // Arrange
+        final HttpMethod httpsMethod = HttpMethod.PUT;
+        final byte[] body = { 1, 2, 3 };
+        final int readTimeout = 1234;
+        final CompletableFuture<HttpResponse> expectedFuture = CompletableFuture.completedFuture(mockResponse);
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "http";
+                mockClient.send(mockUrl, httpsMethod, (Map<String, String>) any, body, readTimeout);
+                result = expectedFuture;
+            }
+        };
+        HttpRequest request = new HttpRequest(mockUrl, httpsMethod, body);
+        request.setHeaderField("test-field", "test-value");
+        request.setReadTimeoutMillis(readTimeout);
+        // Act
+        CompletableFuture<HttpResponse> future = request.sendAsync(mockClient);
+        // Assert
+        assertThat(future, is(expectedFuture));
+        new Verifications()
+        {
+            {
+                Map<String, String> headerFields;
+                mockClient.send(mockUrl, httpsMethod, headerFields = withCapture(), body, readTimeout);
+                assertThat(headerFields.get("test-field"), is("test-value"));
+                assertThat(headerFields.containsKey("User-Agent"), is(true));
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPSREQUEST_21_016: [The function shall throw IllegalArgumentException if the URL, method or body is null, or if the URL does not use HTTPS.]
+    // Assert
+    @Test(expected = IllegalArgumentException.class)
+    public void createAsyncThrowsOnNullBody() throws IOException
+    {
+        // Arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+            }
+        };
+        // Act
+        HttpRequest.createAsync(mockUrl, HttpMethod.POST, null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPSREQUEST_21_016: [The function shall throw IllegalArgumentException if the URL, method or body is null, or if the URL does not use HTTPS.]
+    // Assert
+    @Test(expected = IllegalArgumentException.class)
+    public void createAsyncThrowsOnHttpUrl() throws IOException
+    {
+        // Arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "http";
+            }
+        };
+        // Act
+        HttpRequest.createAsync(mockUrl, HttpMethod.GET, new byte[0]);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPSREQUEST_21_017: [The function shall create a request with the given URL, method and body, without opening a connection.]
+    @Test
+    public void createAsyncDoesNotOpenConnection(@Mocked final HttpConnection mockConn,
+            @Mocked final HttpAsyncClient mockClient) throws Exception
+    {
+        // Arrange
+        final HttpMethod httpsMethod = HttpMethod.POST;
+        final byte[] body = { 1, 2, 3 };
+        final int readTimeout = 1234;
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+            }
+        };
+        // Act
+        HttpRequest request = HttpRequest.createAsync(mockUrl, httpsMethod, body);
+        request.setHeaderField("test-field", "test-value");
+        request.setReadTimeoutMillis(readTimeout);
+        request.sendAsync(mockClient);
+        // Assert
+        new Verifications()
+        {
+            {
+                new HttpConnection((URL) any, (HttpMethod) any);
+                times = 0;
+                Map<String, String> headerFields;
+                mockClient.send(mockUrl, httpsMethod, headerFields = withCapture(), body, readTimeout);
+                assertThat(headerFields.get("test-field"), is("test-value"));
+                assertThat(headerFields.containsKey("User-Agent"), is(true));
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPSREQUEST_21_018: [If the request was created for the asynchronous client, the function shall throw IllegalStateException.]
+    // Assert
+    @Test(expected = IllegalStateException.class)
+    public void sendThrowsOnAsyncRequest() throws IOException
+    {
+        // Arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+            }
+        };
+        HttpRequest request = HttpRequest.createAsync(mockUrl, HttpMethod.GET, new byte[0]);
+        // Act
+        request.send();
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_HTTPSREQUEST_21_018: [If the request was created for the asynchronous client, the function shall throw IllegalStateException.]
+    // Assert
+    @Test(expected = IllegalStateException.class)
+    public void sendStreamingThrowsOnAsyncRequest() throws IOException
+    {
+        // Arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+            }
+        };
+        HttpRequest request = HttpRequest.createAsync(mockUrl, HttpMethod.GET, new byte[0]);
+        // Act
+        request.sendStreaming();
+    }
 }
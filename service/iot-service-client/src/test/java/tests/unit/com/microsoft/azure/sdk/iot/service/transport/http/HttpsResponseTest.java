@@ -10,6 +10,7 @@ import mockit.integration.junit4.JMockit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -61,6 +62,23 @@ public class HttpsResponseTest
         assertThat(testBody, is(not(expectedBody)));
     }
 
+    @Test
+    public void getBodyAsByteBufferReturnsReadOnlyViewOfBody()
+    {
+        // Arrange
+        final int status = 200;
+        final byte[] body = { 1, 2, 3, 4 };
+        final Map<String, List<String>> headerFields = new HashMap<>();
+        byte[] errorReason = {};
+        final ByteBuffer expectedBody = ByteBuffer.wrap(body);
+        // Act
+        HttpResponse response = new HttpResponse(status, body, headerFields, errorReason);
+        ByteBuffer testBody = response.getBodyAsByteBuffer();
+        // Assert
+        assertThat(testBody, is(expectedBody));
+        assertThat(testBody.isReadOnly(), is(true));
+    }
+
     // Tests_SRS_SERVICE_SDK_JAVA_HTTPSRESPONSE_12_001: [The constructor shall store the input arguments so that the getters can return them later.]
     // Tests_SRS_SERVICE_SDK_JAVA_HTTPSRESPONSE_12_004: [The function shall return a comma-separated list of the values associated with the header field name.]
     @Test
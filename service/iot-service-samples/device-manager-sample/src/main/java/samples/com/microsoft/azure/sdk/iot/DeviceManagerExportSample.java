@@ -5,6 +5,8 @@
 
 package samples.com.microsoft.azure.sdk.iot;
 
+import com.microsoft.azure.sdk.iot.service.ExportImportDeviceReader;
+import com.microsoft.azure.sdk.iot.service.ExportImportDeviceWriter;
 import com.microsoft.azure.sdk.iot.service.JobProperties;
 import com.microsoft.azure.sdk.iot.service.RegistryManager;
 import com.microsoft.azure.storage.CloudStorageAccount;
@@ -47,8 +49,23 @@ public class DeviceManagerExportSample
         {
             if (blobItem instanceof CloudBlob)
             {
+                // Copying the exported devices one record at a time, so that any size of registry fits in memory
                 CloudBlob blob = (CloudBlob) blobItem;
-                blob.download(new FileOutputStream(SampleUtils.exportFileLocation + blob.getName()));
+                ExportImportDeviceReader reader = new ExportImportDeviceReader(blob.openInputStream());
+                ExportImportDeviceWriter writer = new ExportImportDeviceWriter(new FileOutputStream(SampleUtils.exportFileLocation + blob.getName()));
+                try
+                {
+                    while (reader.hasNext())
+                    {
+                        writer.write(reader.next());
+                    }
+                    System.out.println("Exported " + writer.getCount() + " devices from " + blob.getName());
+                }
+                finally
+                {
+                    writer.close();
+                    reader.close();
+                }
             }
         }
 
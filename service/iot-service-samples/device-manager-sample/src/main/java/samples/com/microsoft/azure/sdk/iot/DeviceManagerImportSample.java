@@ -5,22 +5,16 @@
 
 package samples.com.microsoft.azure.sdk.iot;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.microsoft.azure.sdk.iot.service.*;
 import com.microsoft.azure.storage.CloudStorageAccount;
 import com.microsoft.azure.storage.blob.*;
 
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 public class DeviceManagerImportSample
 {
     private static String importContainerName = "importcontainersample";
     private static String importBlobName = "devices.txt";
-    private static Gson gson = new GsonBuilder().disableHtmlEscaping().create();
     private static Integer numberOfDevice = 10;
 
     public static void main(String[] args) throws Exception
@@ -34,36 +28,32 @@ public class DeviceManagerImportSample
         container.createIfNotExists();
         String containerSasUri = SampleUtils.getContainerSasUri(container);
 
-        // Creating the list of devices to be submitted for import
-        StringBuilder devicesToImport = new StringBuilder();
-        for (int i = 0; i < 1; i++)
+        // Creating the Azure storage blob and streaming the serialized devices into it, one record per line
+        CloudBlockBlob importBlob = container.getBlockBlobReference(DeviceManagerImportSample.importBlobName);
+        importBlob.deleteIfExists();
+        ExportImportDeviceWriter writer = new ExportImportDeviceWriter(importBlob.openOutputStream());
+        try
         {
-            String deviceId = UUID.randomUUID().toString();
-            Device device = Device.createFromId(deviceId, null, null);
-            AuthenticationMechanism authentication = new AuthenticationMechanism(device.getSymmetricKey());
-
-            ExportImportDevice deviceToAdd = new ExportImportDevice();
-            deviceToAdd.setId(deviceId);
-            deviceToAdd.setAuthentication(authentication);
-            deviceToAdd.setStatus(DeviceStatus.Enabled);
-            deviceToAdd.setImportMode(ImportMode.CreateOrUpdate);
+            for (int i = 0; i < numberOfDevice; i++)
+            {
+                String deviceId = UUID.randomUUID().toString();
+                Device device = Device.createFromId(deviceId, null, null);
+                AuthenticationMechanism authentication = new AuthenticationMechanism(device.getSymmetricKey());
 
-            devicesToImport.append(gson.toJson(deviceToAdd));
+                ExportImportDevice deviceToAdd = new ExportImportDevice();
+                deviceToAdd.setId(deviceId);
+                deviceToAdd.setAuthentication(authentication);
+                deviceToAdd.setStatus(DeviceStatus.Enabled);
+                deviceToAdd.setImportMode(ImportMode.CreateOrUpdate);
 
-            if (i < numberOfDevice - 1)
-            {
-                devicesToImport.append("\r\n");
+                writer.write(deviceToAdd);
             }
+            System.out.println("Uploading " + writer.getCount() + " devices into Azure storage.");
+        }
+        finally
+        {
+            writer.close();
         }
-
-        byte[] blobToImport = devicesToImport.toString().getBytes(StandardCharsets.UTF_8);
-
-        // Creating the Azure storage blob and uploading the serialized string of devices
-        System.out.println("Uploading " + blobToImport.length + " bytes into Azure storage.");
-        InputStream stream = new ByteArrayInputStream(blobToImport);
-        CloudBlockBlob importBlob = container.getBlockBlobReference(DeviceManagerImportSample.importBlobName);
-        importBlob.deleteIfExists();
-        importBlob.upload(stream, blobToImport.length);
 
         // Starting the import job
         RegistryManager registryManager = RegistryManager.createFromConnectionString(SampleUtils.iotHubConnectionString);